@@ -16,6 +16,7 @@ import com.neo.neopayplus.api.EmvConfigApiFactory;
 import com.neo.neopayplus.api.EmvConfigApiService;
 import com.neo.neopayplus.api.PaymentApiFactory;
 import com.neo.neopayplus.api.PaymentApiService;
+import com.neo.neopayplus.app.StartupOrchestrator;
 import com.neo.neopayplus.emv.EmvConfigurationManager;
 import com.neo.neopayplus.emv.EmvTTS;
 import com.neo.neopayplus.keys.KeyRegistry;
@@ -53,6 +54,8 @@ import com.sunmi.pay.hardware.aidl.AidlConstants;
 public class MyApplication extends Application {
     public static MyApplication app;
 
+    private static final long TIME_SYNC_INTERVAL_MS = 15 * 60 * 1000L; // Time drift check
+
     public BasicOptV2 basicOptV2; // 获取基础操作模块
     public ReadCardOptV2 readCardOptV2; // 获取读卡模块
     public PinPadOptV2 pinPadOptV2; // 获取PinPad操作模块
@@ -72,6 +75,13 @@ public class MyApplication extends Application {
 
     private boolean connectPaySDK;// 是否已连接PaySDK
 
+    /** Startup task that marks the terminal ready for the first card tap */
+    public static final String STARTUP_READY = "ready";
+    private static final long PAY_SDK_CONNECT_TIMEOUT_MS = 60_000L;
+    private static final int STARTUP_THREADS = 3;
+
+    private StartupOrchestrator startup;
+
     /**
      * Terminal Configuration
      * Loaded from backend on boot with local cache fallback
@@ -318,132 +328,143 @@ public class MyApplication extends Application {
     public void onCreate() {
         super.onCreate();
         app = this;
-        KeyRegistry.init(this);
-
-        // CRITICAL: Initialize EMV service binding ONCE (singleton pattern)
-        // This prevents repeated "new EmvManager" logs and ensures stable service
-        // lifecycle
-        com.neo.neopayplus.emv.TransactionManager.init(this);
-
-        // Register callback to sync service instances and run provisioning when
-        // services are ready
-        com.neo.neopayplus.emv.TransactionManager.setOnServicesReadyCallback(new Runnable() {
-            @Override
-            public void run() {
-                syncServiceInstances();
-                runProvisioning();
-            }
-        });
-
-        // Critical initialization that must happen on main thread
-        initLocaleLanguage();
-        bindPrintService();
-        bindScannerService();
-
-        // Defer heavy initialization to background thread to avoid blocking UI
-        new Thread(() -> {
-            try {
-                // Load terminal config from cache (SharedPreferences can be slow on first
-                // access)
-                loadTerminalConfigFromCache();
 
-                // Load ISO socket config from cache
-                com.neo.neopayplus.config.PaymentConfig.loadIsoSocketConfigFromCache();
-
-                // Sign-on is handled via PaymentApiService when needed
-                com.neo.neopayplus.utils.LogUtil.e(Constant.TAG, "Host sign-on OK");
-
-                // Initialize TTS (can be slow)
-                initEmvTTS();
+        startup = buildStartupGraph();
+        startup.start();
+    }
 
-            } catch (Exception e) {
-                com.neo.neopayplus.utils.ErrorHandler.logError(Constant.TAG, "Background initialization", e);
+    /**
+     * Startup task graph
+     *
+     * Main thread: key registry, locale, peripheral binding and the PaySDK
+     * bind (which completes from TransactionManager's services-ready callback
+     * instead of being polled). Everything else runs on the startup pool as
+     * soon as what it needs is done; "ready" marks the terminal ready for the
+     * first card tap (AIDs/CAPKs installed and keys provisioned).
+     */
+    private StartupOrchestrator buildStartupGraph() {
+        android.os.Handler mainHandler = new android.os.Handler(android.os.Looper.getMainLooper());
+        java.util.concurrent.Executor mainExecutor = r -> {
+            if (android.os.Looper.myLooper() == android.os.Looper.getMainLooper()) {
+                r.run();
+            } else {
+                mainHandler.post(r);
             }
-        }).start();
-
-        // Initialize network monitor
-        com.neo.neopayplus.utils.NetworkMonitor.getInstance(this).startMonitoring();
-
-        // Fetch terminal config from backend (already async, uses callbacks)
-        fetchTerminalConfig();
-
-        // Start TamperGuard after PaySDK connects
-        // Will be called from onConnectPaySDK()
-
-        // Start background operations: reversal retry + time sync
-        startBackgroundOperations();
+        };
+        java.util.concurrent.atomic.AtomicInteger threadCount = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.ScheduledThreadPoolExecutor pool = new java.util.concurrent.ScheduledThreadPoolExecutor(
+                STARTUP_THREADS, r -> new Thread(r, "startup-" + threadCount.incrementAndGet()));
+        pool.setKeepAliveTime(30, java.util.concurrent.TimeUnit.SECONDS);
+        pool.allowCoreThreadTimeOut(true);
+
+        return new StartupOrchestrator(mainExecutor, pool)
+                .task("keyRegistry", true, () -> KeyRegistry.init(this))
+                .asyncTask("paySdk", true, PAY_SDK_CONNECT_TIMEOUT_MS, done -> {
+                    // Called again on reconnect: instances are re-synced, the task is already done
+                    com.neo.neopayplus.emv.TransactionManager.setOnServicesReadyCallback(() -> {
+                        syncServiceInstances();
+                        done.success();
+                    });
+                    // CRITICAL: Initialize EMV service binding ONCE (singleton pattern)
+                    // This prevents repeated "new EmvManager" logs and ensures stable service
+                    // lifecycle
+                    com.neo.neopayplus.emv.TransactionManager.init(this);
+                })
+                .task("locale", true, MyApplication::initLocaleLanguage)
+                .task("peripherals", true, () -> {
+                    bindPrintService();
+                    bindScannerService();
+                })
+                .task("terminalConfig", false, this::loadTerminalConfigFromCache)
+                .task("logFile", false, () -> {
+                    com.neo.neopayplus.utils.LogSink sink = com.neo.neopayplus.utils.LogSink.get();
+                    sink.attachFile(new java.io.File(getFilesDir(), "logs"));
+                    sink.flushOnCrash();
+                })
+                .task("latency", false, () -> com.neo.neopayplus.utils.LatencyTracer.init(getFilesDir()))
+                .task("receiptRaster", false, () -> {
+                    // Decode and threshold the receipt logos/header now (or load them from disk), not on first print
+                    com.neo.neopayplus.receipt.ReceiptRasterCache.init(getFilesDir());
+                    com.neo.neopayplus.receipt.ReceiptRasterCache.warmUp(
+                            com.neo.neopayplus.config.PaymentConfig.MERCHANT_NAME);
+                })
+                .task("isoSocket", false, () -> {
+                    com.neo.neopayplus.config.PaymentConfig.loadIsoSocketConfigFromCache();
+                    if (com.neo.neopayplus.config.PaymentConfig.isIsoSocketMode()) {
+                        // Open the host connection now so the first sale skips the TCP connect
+                        com.neo.neopayplus.iso.IsoHostConnection.getInstance().warmUp();
+                    }
+                }, "latency")
+                .task("tts", false, this::initEmvTTS)
+                .task("network", false, () -> com.neo.neopayplus.utils.NetworkMonitor.getInstance(this)
+                        .startMonitoring())
+                .task("terminalConfigFetch", false, this::fetchTerminalConfig, "terminalConfig", "network")
+                .task("kernelConfig", false, this::applyKernelConfig, "paySdk")
+                .task("emvProvisioning", false, this::provisionEmv, "kernelConfig", "terminalConfig")
+                .task("keys", false,
+                        () -> initializeMasterSessionKeys(com.neo.neopayplus.emv.TransactionManager.getSecurity()),
+                        "paySdk", "keyRegistry", "terminalConfig", "network")
+                .task("tamperGuard", false, () -> com.neo.neopayplus.security.TamperGuard.start(this), "paySdk")
+                .task("reversals", false, this::startReversalDispatcher, "paySdk", "network")
+                .task("timeSync", false, () -> pool.scheduleWithFixedDelay(this::syncTime,
+                        0, TIME_SYNC_INTERVAL_MS, java.util.concurrent.TimeUnit.MILLISECONDS), "paySdk")
+                .task(STARTUP_READY, false, this::onStartupReady, "emvProvisioning", "keys");
     }
 
     /**
-     * Start background operations: reversal worker + time sync
+     * Startup timing, for the debug screen (null before onCreate)
      */
-    private void startBackgroundOperations() {
-        new Thread(() -> {
-            try {
-                // Wait for PaySDK to connect
-                int maxWait = 60; // 60 seconds max wait
-                int waited = 0;
-                while (!connectPaySDK && waited < maxWait) {
-                    Thread.sleep(1000);
-                    waited++;
-                }
-
-                if (!connectPaySDK) {
-                    com.neo.neopayplus.utils.LogUtil.e(Constant.TAG,
-                            "⚠️ PaySDK not connected after " + maxWait + " seconds - background ops may not work");
-                    return;
-                }
-
-                // Start tamper guard
-                com.neo.neopayplus.security.TamperGuard.start(this);
-
-                // Start reversal worker and time sync loop
-                com.neo.neopayplus.payment.ReversalWorker worker = new com.neo.neopayplus.payment.ReversalWorker(this);
-
-                while (true) {
-                    try {
-                        // Process pending reversals
-                        worker.tick();
+    public StartupOrchestrator startup() {
+        return startup;
+    }
 
-                        // Sync time from server (every 30 seconds)
-                        com.neo.neopayplus.utils.TimeSync.sync(new com.neo.neopayplus.utils.TimeSync.OnTime() {
-                            @Override
-                            public void ok(String isoUtc) {
-                                // Compare device time with server time
-                                long drift = com.neo.neopayplus.utils.TimeSync.calculateDrift(isoUtc);
-                                if (Math.abs(drift) > 60) { // More than 60 seconds drift
-                                    com.neo.neopayplus.utils.LogUtil.e(Constant.TAG,
-                                            "⚠️ Time drift detected: " + drift + " seconds");
-                                }
-                            }
+    private void onStartupReady() {
+        long sinceProcessStart = android.os.SystemClock.elapsedRealtime()
+                - android.os.Process.getStartElapsedRealtime();
+        LogUtil.e(Constant.TAG, "✓ Ready for first tap " + sinceProcessStart + " ms after process start");
+        LogUtil.e(Constant.TAG, "Startup tasks:\n" + startup.report());
+    }
 
-                            @Override
-                            public void err(String m) {
-                                // Ignore time sync errors (non-critical)
-                            }
-                        });
+    /**
+     * Reversal dispatcher, paused while the network is down
+     *
+     * Reversals are sent by the dispatcher when one is queued or the network
+     * returns (no polling).
+     */
+    private void startReversalDispatcher() {
+        com.neo.neopayplus.payment.ReversalDispatcher dispatcher =
+                com.neo.neopayplus.payment.ReversalWorker.start(this);
+        if (dispatcher != null) {
+            com.neo.neopayplus.utils.NetworkMonitor.getInstance(this)
+                    .addConnectivityListener(dispatcher::setNetworkAvailable);
+        }
+    }
 
-                        // Sleep 30 seconds before next tick
-                        Thread.sleep(30_000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    } catch (Exception e) {
+    /**
+     * Time drift check, every TIME_SYNC_INTERVAL_MS
+     */
+    private void syncTime() {
+        try {
+            com.neo.neopayplus.utils.TimeSync.sync(new com.neo.neopayplus.utils.TimeSync.OnTime() {
+                @Override
+                public void ok(String isoUtc) {
+                    // Compare device time with server time
+                    long drift = com.neo.neopayplus.utils.TimeSync.calculateDrift(isoUtc);
+                    if (Math.abs(drift) > 60) { // More than 60 seconds drift
                         com.neo.neopayplus.utils.LogUtil.e(Constant.TAG,
-                                "Background operations error: " + e.getMessage());
-                        // Continue loop on error
-                        try {
-                            Thread.sleep(30_000);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
+                                "⚠️ Time drift detected: " + drift + " seconds");
                     }
                 }
-            } catch (Exception e) {
-                com.neo.neopayplus.utils.ErrorHandler.logError(Constant.TAG, "Background operations thread", e);
-            }
-        }, "bg-ops").start();
+
+                @Override
+                public void err(String m) {
+                    // Ignore time sync errors (non-critical)
+                }
+            });
+        } catch (Exception e) {
+            // Keep the schedule alive: a throwing periodic task is never run again
+            com.neo.neopayplus.utils.LogUtil.e(Constant.TAG, "Time sync error: " + e.getMessage());
+        }
     }
 
     /**
@@ -535,135 +556,64 @@ public class MyApplication extends Application {
     }
 
     /**
-     * Run provisioning and terminal configuration (called when services are ready)
-     * 
+     * Terminal params and contactless kernel TLVs
+     *
      * CRITICAL: This method MUST use the singleton EMVOptV2 instance from
      * TransactionManager.
-     * It should only be called ONCE per app lifetime.
      */
-    private static volatile boolean provisioningInProgress = false;
-    private static volatile boolean provisioningCompleted = false;
-
-    private void runProvisioning() {
-        // CRITICAL: Prevent multiple concurrent provisioning calls
-        synchronized (MyApplication.class) {
-            if (provisioningInProgress) {
-                LogUtil.e(Constant.TAG, "⚠️ Provisioning already in progress - skipping duplicate call");
-                return;
-            }
-            if (provisioningCompleted) {
-                LogUtil.e(Constant.TAG, "⚠️ Provisioning already completed - skipping duplicate call");
-                return;
-            }
-            provisioningInProgress = true;
+    private void applyKernelConfig() throws Exception {
+        com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2 emvSingleton = com.neo.neopayplus.emv.TransactionManager.getEmv();
+        if (emvSingleton == null) {
+            throw new IllegalStateException("EMV service not available");
         }
+        LogUtil.e(Constant.TAG, "✓ Using singleton EMV instance from TransactionManager:");
+        LogUtil.e(Constant.TAG, "  - emv instance ID: " + System.identityHashCode(emvSingleton));
 
-        // This runs the old provisioning logic from onConnectPaySDK callback
-        // but now it's triggered by TransactionManager when services are ready
-        new Thread(() -> {
-            try {
-                LogUtil.e(Constant.TAG, "═══════════════════════════════════════════════════════");
-                LogUtil.e(Constant.TAG, "=== Starting EMV provisioning (ONCE) ===");
-                LogUtil.e(Constant.TAG, "═══════════════════════════════════════════════════════");
-                LogUtil.e(Constant.TAG, "CRITICAL: This should happen ONLY ONCE per app lifetime");
-                LogUtil.e(Constant.TAG, "");
-
-                // CRITICAL: Get singleton instance from TransactionManager (single source of
-                // truth)
-                com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2 emvSingleton = com.neo.neopayplus.emv.TransactionManager
-                        .getEmv();
-                com.sunmi.pay.hardware.aidlv2.system.BasicOptV2 basicSingleton = com.neo.neopayplus.emv.TransactionManager
-                        .getBasic();
-                com.sunmi.pay.hardware.aidlv2.security.SecurityOptV2 securitySingleton = com.neo.neopayplus.emv.TransactionManager
-                        .getSecurity();
-
-                if (emvSingleton == null || basicSingleton == null) {
-                    LogUtil.e(Constant.TAG, "⚠️ Services not available for provisioning");
-                    synchronized (MyApplication.class) {
-                        provisioningInProgress = false;
-                    }
-                    return;
-                }
-
-                LogUtil.e(Constant.TAG, "✓ Using singleton EMV instance from TransactionManager:");
-                LogUtil.e(Constant.TAG, "  - emv instance ID: " + System.identityHashCode(emvSingleton));
-                LogUtil.e(Constant.TAG, "  - basic instance ID: " + System.identityHashCode(basicSingleton));
-                LogUtil.e(Constant.TAG, "  - security instance ID: " + System.identityHashCode(securitySingleton));
-                LogUtil.e(Constant.TAG, "");
-
-                // Wait a bit for services to fully initialize
-                Thread.sleep(500);
+        android.os.Bundle termParams = com.neo.neopayplus.emv.config.EmvKernelConfig.buildTerminalParamsEgypt();
 
-                // Terminal params and kernel TLVs
-                try {
-                    android.os.Bundle termParams = com.neo.neopayplus.emv.config.EmvKernelConfig
-                            .buildTerminalParamsEgypt();
+        boolean supportNFC = termParams.getBoolean("supportNFC", false);
+        boolean supportClss = termParams.getBoolean("supportClss", false);
+        LogUtil.e(Constant.TAG, "=== VERIFYING TERMINAL PARAMETERS ===");
+        LogUtil.e(Constant.TAG, "  supportNFC: " + supportNFC + (supportNFC ? " ✓" : " ❌ REQUIRED!"));
+        LogUtil.e(Constant.TAG, "  supportClss: " + supportClss + (supportClss ? " ✓" : " ❌ REQUIRED!"));
 
-                    boolean supportNFC = termParams.getBoolean("supportNFC", false);
-                    boolean supportClss = termParams.getBoolean("supportClss", false);
-                    LogUtil.e(Constant.TAG, "=== VERIFYING TERMINAL PARAMETERS ===");
-                    LogUtil.e(Constant.TAG, "  supportNFC: " + supportNFC + (supportNFC ? " ✓" : " ❌ REQUIRED!"));
-                    LogUtil.e(Constant.TAG, "  supportClss: " + supportClss + (supportClss ? " ✓" : " ❌ REQUIRED!"));
+        emvSingleton.setTermParamEx(termParams);
+        LogUtil.e(Constant.TAG, "✓ Terminal parameters applied (using singleton instance)");
 
-                    emvSingleton.setTermParamEx(termParams);
-                    LogUtil.e(Constant.TAG, "✓ Terminal parameters applied (using singleton instance)");
+        com.neo.neopayplus.emv.config.EmvKernelConfig.applyContactlessKernelConfig(emvSingleton);
+        LogUtil.e(Constant.TAG, "✓ Contactless kernel TLVs applied (using singleton instance)");
 
-                    com.neo.neopayplus.emv.config.EmvKernelConfig.applyContactlessKernelConfig(emvSingleton);
-                    LogUtil.e(Constant.TAG, "✓ Contactless kernel TLVs applied (using singleton instance)");
-
-                    com.neo.neopayplus.emv.EmvKernelDebug.validateAllKernels(emvSingleton);
-                } catch (Exception e) {
-                    LogUtil.e(Constant.TAG, "❌ Failed to apply kernel TLVs: " + e.getMessage());
-                }
-
-                // Provision AIDs/CAPKs from backend
-                // CRITICAL: Use singleton instance to ensure AIDs are added to the same EMV
-                // service
-                try {
-                    String bundleUrl = BuildConfig.API_BASE_URL + "/emv/bundle";
-                    LogUtil.e(Constant.TAG, "=== EMV Provisioning from: " + bundleUrl + " ===");
-                    LogUtil.e(Constant.TAG,
-                            "  Using singleton emv instance ID: " + System.identityHashCode(emvSingleton));
-                    LogUtil.e(Constant.TAG, "  CRITICAL: All AIDs will be added to this SAME instance");
-
-                    boolean success = com.neo.neopayplus.emv.EmvProvisioner.provisionSync(emvSingleton, bundleUrl);
-                    if (success) {
-                        LogUtil.e(Constant.TAG, "✓ EMV AIDs/CAPKs provisioned (using singleton instance)");
-                    } else {
-                        throw new Exception("Provisioning returned false");
-                    }
-                } catch (Exception e) {
-                    LogUtil.e(Constant.TAG, "⚠️ EMV provisioning failed: " + e.getMessage());
-                }
-
-                // Validate AID/CAPK configuration
-                try {
-                    com.neo.neopayplus.emv.config.EmvKernelConfig.provisionAndValidate();
-                    LogUtil.e(Constant.TAG, "✓ EMV configuration validated");
-                } catch (Exception e) {
-                    LogUtil.e(Constant.TAG, "⚠️ EMV validation failed: " + e.getMessage());
-                }
+        com.neo.neopayplus.emv.EmvKernelDebug.validateAllKernels(emvSingleton);
+    }
 
-                // Initialize keys (TMK/TPK provisioning from backend)
-                initializeMasterSessionKeys(securitySingleton);
+    /**
+     * Provision AIDs/CAPKs from backend, then validate them
+     *
+     * CRITICAL: Use singleton instance to ensure AIDs are added to the same EMV
+     * service
+     */
+    private void provisionEmv() throws Exception {
+        com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2 emvSingleton = com.neo.neopayplus.emv.TransactionManager.getEmv();
+        String bundleUrl = BuildConfig.API_BASE_URL + "/emv/bundle";
+        LogUtil.e(Constant.TAG, "=== EMV Provisioning from: " + bundleUrl + " ===");
+        LogUtil.e(Constant.TAG, "  Using singleton emv instance ID: " + System.identityHashCode(emvSingleton));
+
+        boolean success = com.neo.neopayplus.emv.EmvProvisioner.provisionSync(emvSingleton, bundleUrl);
+        if (success) {
+            LogUtil.e(Constant.TAG, "✓ EMV AIDs/CAPKs provisioned (using singleton instance)");
+        }
 
-                LogUtil.e(Constant.TAG, "");
-                LogUtil.e(Constant.TAG, "═══════════════════════════════════════════════════════");
-                LogUtil.e(Constant.TAG, "=== EMV provisioning complete (ONCE) ===");
-                LogUtil.e(Constant.TAG, "═══════════════════════════════════════════════════════");
+        // Validate AID/CAPK configuration
+        try {
+            com.neo.neopayplus.emv.config.EmvKernelConfig.provisionAndValidate();
+            LogUtil.e(Constant.TAG, "✓ EMV configuration validated");
+        } catch (Exception e) {
+            LogUtil.e(Constant.TAG, "⚠️ EMV validation failed: " + e.getMessage());
+        }
 
-                synchronized (MyApplication.class) {
-                    provisioningCompleted = true;
-                    provisioningInProgress = false;
-                }
-            } catch (Exception e) {
-                LogUtil.e(Constant.TAG, "❌ Error in provisioning thread: " + e.getMessage());
-                e.printStackTrace();
-                synchronized (MyApplication.class) {
-                    provisioningInProgress = false;
-                }
-            }
-        }).start();
+        if (!success) {
+            throw new IllegalStateException("EMV provisioning returned false");
+        }
     }
 
     /**
@@ -0,0 +1,934 @@
+package com.neo.neopayplus.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.neo.neopayplus.api.EmvConfigApiService.AidConfig;
+import com.neo.neopayplus.api.EmvConfigApiService.CapkConfig;
+import com.neo.neopayplus.api.SettlementApiService.BatchUploadResponse;
+import com.neo.neopayplus.api.SettlementApiService.BrandTotalsData;
+import com.neo.neopayplus.api.SettlementApiService.BrandTransactionTotals;
+import com.neo.neopayplus.api.SettlementApiService.SettlementTotals;
+import com.neo.neopayplus.api.SettlementApiService.SettlementTransaction;
+import com.neo.neopayplus.config.PaymentConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * API JSON
+ *
+ * Hand-written streaming decoders for the backend responses: each one walks
+ * the body token by token straight into the result, without building a
+ * JsonObject tree first or reflecting over DTO fields. Callers hand them the
+ * response body's character stream (see {@link #read(Decoder, Reader)}).
+ *
+ * Field names, aliases and defaults are those of the backend API; unknown
+ * fields are skipped, and a JSON null reads as an absent field.
+ */
+public final class ApiJson {
+
+    private ApiJson() {
+        throw new AssertionError("create instance of ApiJson is prohibited");
+    }
+
+    /**
+     * Decode one value from {@code in} (the reader is closed)
+     */
+    public static <T> T read(Decoder<T> decoder, Reader in) throws IOException {
+        try (JsonReader reader = new JsonReader(in)) {
+            T value = decoder.read(reader);
+            if (value == null) {
+                throw new IOException("Empty JSON body");
+            }
+            return value;
+        }
+    }
+
+    // ==================== VALUES ====================
+
+    /**
+     * String, number or boolean as text; null for null (objects and arrays are skipped)
+     */
+    public static String nextString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case STRING:
+            case NUMBER:
+                return in.nextString();
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                in.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Like {@link #nextString(JsonReader)}, with {@code fallback} for null
+     */
+    public static String nextString(JsonReader in, String fallback) throws IOException {
+        String value = nextString(in);
+        return value != null ? value : fallback;
+    }
+
+    public static int nextInt(JsonReader in, int fallback) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            return in.nextInt();
+        }
+        in.skipValue();
+        return fallback;
+    }
+
+    public static double nextDouble(JsonReader in, double fallback) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            return in.nextDouble();
+        }
+        in.skipValue();
+        return fallback;
+    }
+
+    public static boolean nextBoolean(JsonReader in, boolean fallback) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+        if (token == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        in.skipValue();
+        return fallback;
+    }
+
+    /**
+     * Array of strings (null entries dropped); null when the value is not an array
+     */
+    public static List<String> nextStrings(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            String value = nextString(in);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        in.endArray();
+        return values;
+    }
+
+    /**
+     * Begin an object, or skip the value and return false if it is not one
+     */
+    static boolean beginObject(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return false;
+        }
+        in.beginObject();
+        return true;
+    }
+
+    /**
+     * Begin an array, or skip the value and return false if it is not one
+     */
+    static boolean beginArray(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return false;
+        }
+        in.beginArray();
+        return true;
+    }
+
+    /**
+     * Reads one value from a stream positioned at it; null when the value is
+     * not the expected shape (it is skipped)
+     */
+    public interface Decoder<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    // ==================== AUTHORIZATION ====================
+
+    /**
+     * /tx/authorize body: response_code, response_message, auth_code, rrn,
+     * issuer_auth_data, field_55, issuer_scripts[{tag, value}]
+     */
+    public static final class AuthorizationBody {
+        public String responseCode = "XX";
+        public String responseMessage = "";
+        public String authCode = "";
+        public String rrn = "";
+        public String issuerAuthData = "";
+        public String field55 = "";
+        public int issuerScriptCount;              // Entries in issuer_scripts (valid or not)
+        public final List<String> scriptTags = new ArrayList<>();
+        public final List<String> scriptValues = new ArrayList<>();
+    }
+
+    public static final Decoder<AuthorizationBody> AUTHORIZATION = new Decoder<AuthorizationBody>() {
+        @Override
+        public AuthorizationBody read(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            AuthorizationBody body = new AuthorizationBody();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "response_code":
+                        body.responseCode = nextString(in, body.responseCode);
+                        break;
+                    case "response_message":
+                        body.responseMessage = nextString(in, "");
+                        break;
+                    case "auth_code":
+                        body.authCode = nextString(in, "");
+                        break;
+                    case "rrn":
+                        body.rrn = nextString(in, "");
+                        break;
+                    case "issuer_auth_data":
+                        body.issuerAuthData = nextString(in, "");
+                        break;
+                    case "field_55":
+                        body.field55 = nextString(in, "");
+                        break;
+                    case "issuer_scripts":
+                        readScripts(in, body);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return body;
+        }
+
+        private void readScripts(JsonReader in, AuthorizationBody body) throws IOException {
+            if (!beginArray(in)) {
+                return;
+            }
+            while (in.hasNext()) {
+                body.issuerScriptCount++;
+                if (!beginObject(in)) {
+                    continue;
+                }
+                String tag = null;
+                String value = null;
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if ("tag".equals(name)) {
+                        tag = nextString(in);
+                    } else if ("value".equals(name)) {
+                        value = nextString(in);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (tag != null && !tag.isEmpty() && value != null && !value.isEmpty()) {
+                    body.scriptTags.add(tag);
+                    body.scriptValues.add(value);
+                }
+            }
+            in.endArray();
+        }
+    };
+
+    // ==================== SETTLEMENT ====================
+
+    /**
+     * /tx/settlement result: success when status is "success" or a batch_id is
+     * present, otherwise an error carrying the backend's message
+     */
+    public static final Decoder<BatchUploadResponse> SETTLEMENT = new Decoder<BatchUploadResponse>() {
+        @Override
+        public BatchUploadResponse read(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            String status = "";
+            String batchId = null;
+            String batchNumber = null;
+            String batchDate = "";
+            String batchTime = "";
+            String terminalId = "";
+            String message = null;
+            int totalCount = 0;
+            int acceptedCount = 0;
+            int rejectedCount = 0;
+            List<String> acceptedRrns = null;
+            List<String> rejectedRrns = null;
+            SettlementTotals totals = null;
+            List<SettlementTransaction> transactions = null;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status":
+                        status = nextString(in, "");
+                        break;
+                    case "batch_id":
+                        batchId = nextString(in, "");
+                        break;
+                    case "batch_number":
+                        batchNumber = nextString(in);
+                        break;
+                    case "batch_date":
+                        batchDate = nextString(in, "");
+                        break;
+                    case "batch_time":
+                        batchTime = nextString(in, "");
+                        break;
+                    case "terminal_id":
+                        terminalId = nextString(in, "");
+                        break;
+                    case "total_count":
+                        totalCount = nextInt(in, 0);
+                        break;
+                    case "accepted_count":
+                        acceptedCount = nextInt(in, 0);
+                        break;
+                    case "rejected_count":
+                        rejectedCount = nextInt(in, 0);
+                        break;
+                    case "accepted_rrns":
+                        acceptedRrns = nextStrings(in);
+                        break;
+                    case "rejected_rrns":
+                        rejectedRrns = nextStrings(in);
+                        break;
+                    case "totals":
+                        totals = readTotals(in);
+                        break;
+                    case "transactions":
+                        transactions = readTransactions(in);
+                        break;
+                    case "message":
+                        message = nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (!"success".equals(status) && batchId == null) {
+                if (message == null) {
+                    message = "Batch upload failed";
+                }
+                return BatchUploadResponse.error(new IOException(message), message);
+            }
+            if (batchId == null) {
+                batchId = "";
+            }
+            BatchUploadResponse response = BatchUploadResponse.success(batchId, totalCount, acceptedCount,
+                    rejectedCount, acceptedRrns != null ? acceptedRrns : new ArrayList<>(),
+                    rejectedRrns != null ? rejectedRrns : new ArrayList<>());
+            response.batchNumber = batchNumber != null ? batchNumber : batchId;
+            response.batchDate = batchDate;
+            response.batchTime = batchTime;
+            response.terminalId = terminalId;
+            response.totals = totals != null ? totals : new SettlementTotals();
+            response.transactions = transactions != null ? transactions : new ArrayList<>();
+            return response;
+        }
+
+        private SettlementTotals readTotals(JsonReader in) throws IOException {
+            SettlementTotals totals = new SettlementTotals();
+            totals.totalSales = "0.00";
+            totals.totalRefund = "0.00";
+            totals.totalVoid = "0.00";
+            totals.totalDeclined = "0.00";
+            totals.grandTotal = "0.00";
+            totals.currency = "EGP";
+            if (!beginObject(in)) {
+                return totals;
+            }
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "count_sales":
+                        totals.countSales = nextInt(in, 0);
+                        break;
+                    case "total_sales":
+                        totals.totalSales = nextString(in, "0.00");
+                        break;
+                    case "count_refund":
+                        totals.countRefund = nextInt(in, 0);
+                        break;
+                    case "total_refund":
+                        totals.totalRefund = nextString(in, "0.00");
+                        break;
+                    case "count_void":
+                        totals.countVoid = nextInt(in, 0);
+                        break;
+                    case "total_void":
+                        totals.totalVoid = nextString(in, "0.00");
+                        break;
+                    case "count_declined":
+                        totals.countDeclined = nextInt(in, 0);
+                        break;
+                    case "total_declined":
+                        totals.totalDeclined = nextString(in, "0.00");
+                        break;
+                    case "grand_total":
+                        totals.grandTotal = nextString(in, "0.00");
+                        break;
+                    case "currency":
+                        totals.currency = nextString(in, "EGP");
+                        break;
+                    case "brands":
+                        readBrands(in, totals);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return totals;
+        }
+
+        private void readBrands(JsonReader in, SettlementTotals totals) throws IOException {
+            if (!beginObject(in)) {
+                return;
+            }
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "visa":
+                        totals.visa = readBrand(in);
+                        break;
+                    case "mastercard":
+                        totals.mastercard = readBrand(in);
+                        break;
+                    case "meeza":
+                        totals.meeza = readBrand(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+
+        private BrandTotalsData readBrand(JsonReader in) throws IOException {
+            BrandTotalsData brand = new BrandTotalsData();
+            brand.total = "0.00";
+            if (beginObject(in)) {
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "sales":
+                            brand.sales = readBrandTotals(in);
+                            break;
+                        case "voids":
+                            brand.voids = readBrandTotals(in);
+                            break;
+                        case "refunds":
+                            brand.refunds = readBrandTotals(in);
+                            break;
+                        case "total":
+                            brand.total = nextString(in, "0.00");
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            if (brand.sales == null) {
+                brand.sales = emptyBrandTotals();
+            }
+            if (brand.voids == null) {
+                brand.voids = emptyBrandTotals();
+            }
+            if (brand.refunds == null) {
+                brand.refunds = emptyBrandTotals();
+            }
+            return brand;
+        }
+
+        private BrandTransactionTotals readBrandTotals(JsonReader in) throws IOException {
+            BrandTransactionTotals totals = emptyBrandTotals();
+            if (!beginObject(in)) {
+                return totals;
+            }
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("count".equals(name)) {
+                    totals.count = nextInt(in, 0);
+                } else if ("total".equals(name)) {
+                    totals.total = nextString(in, "0.00");
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return totals;
+        }
+
+        private BrandTransactionTotals emptyBrandTotals() {
+            BrandTransactionTotals totals = new BrandTransactionTotals();
+            totals.total = "0.00";
+            return totals;
+        }
+
+        private List<SettlementTransaction> readTransactions(JsonReader in) throws IOException {
+            List<SettlementTransaction> transactions = new ArrayList<>();
+            if (!beginArray(in)) {
+                return transactions;
+            }
+            while (in.hasNext()) {
+                if (!beginObject(in)) {
+                    continue;
+                }
+                SettlementTransaction tx = new SettlementTransaction();
+                tx.transactionId = "";
+                tx.rrn = "";
+                tx.amount = "0";
+                tx.pan = "";
+                tx.authCode = "";
+                tx.transactionType = "00";
+                tx.status = "";
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "transaction_id":
+                            tx.transactionId = nextString(in, "");
+                            break;
+                        case "rrn":
+                            tx.rrn = nextString(in, "");
+                            break;
+                        case "amount":
+                            // Major units on the wire, minor units in SettlementTransaction
+                            tx.amount = String.valueOf((int) (nextDouble(in, 0) * 100));
+                            break;
+                        case "pan":
+                            tx.pan = nextString(in, "");
+                            break;
+                        case "auth_code":
+                            tx.authCode = nextString(in, "");
+                            break;
+                        case "transaction_type":
+                            tx.transactionType = nextString(in, "00");
+                            break;
+                        case "status":
+                            tx.status = nextString(in, "");
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                transactions.add(tx);
+            }
+            in.endArray();
+            return transactions;
+        }
+    };
+
+    // ==================== EMV BUNDLE ====================
+
+    /**
+     * /emv/bundle body. AIDs and CAPKs are decoded straight into
+     * {@link AidConfig}/{@link CapkConfig} with the scheme defaults applied;
+     * terminal parameters not in the bundle are left to the caller.
+     */
+    public static final class EmvBundleBody {
+        public boolean ok = true;
+        public List<AidConfig> aidsFlat;           // "aids_flat" (preferred)
+        public List<AidConfig> aids;               // "aids" (hierarchical)
+        public List<CapkConfig> capks;
+        public String currencyCode;
+        public String countryCode;
+        public IsoSocket isoSocket;                // null when the bundle has no iso_socket object
+    }
+
+    /**
+     * ISO 8583 socket settings carried in the bundle
+     */
+    public static final class IsoSocket {
+        public String host;
+        public int port = -1;                      // -1 = not in the bundle
+        public boolean enabled;
+    }
+
+    public static final Decoder<EmvBundleBody> EMV_BUNDLE = new Decoder<EmvBundleBody>() {
+        @Override
+        public EmvBundleBody read(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            EmvBundleBody body = new EmvBundleBody();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "ok":
+                        body.ok = nextBoolean(in, true);
+                        break;
+                    case "aids_flat":
+                        body.aidsFlat = readAids(in);
+                        break;
+                    case "aids":
+                        body.aids = readAids(in);
+                        break;
+                    case "capks":
+                        body.capks = readCapks(in);
+                        break;
+                    case "currency_code":
+                        body.currencyCode = nextString(in);
+                        break;
+                    case "country_code":
+                        body.countryCode = nextString(in);
+                        break;
+                    case "iso_socket":
+                        body.isoSocket = readIsoSocket(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return body;
+        }
+
+        private IsoSocket readIsoSocket(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            IsoSocket socket = new IsoSocket();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "host":
+                        socket.host = nextString(in);
+                        break;
+                    case "port":
+                        socket.port = nextInt(in, -1);
+                        break;
+                    case "enabled":
+                        socket.enabled = nextBoolean(in, false);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return socket;
+        }
+
+        private List<AidConfig> readAids(JsonReader in) throws IOException {
+            if (!beginArray(in)) {
+                return null;
+            }
+            List<AidConfig> aids = new ArrayList<>();
+            while (in.hasNext()) {
+                if (beginObject(in)) {
+                    aids.add(readAid(in));
+                }
+            }
+            in.endArray();
+            return aids;
+        }
+
+        private AidConfig readAid(JsonReader in) throws IOException {
+            AidConfig aid = new AidConfig();
+            String aidHex = null;
+            String aidHexAlt = null;
+            String kernel = null;
+            int selFlag = 0;
+            String tacDefault = null;
+            String tacDefaultAlt = null;
+            String tacDenial = null;
+            String tacDenialAlt = null;
+            String tacOnline = null;
+            String tacOnlineAlt = null;
+            String ddol = null;
+            String ddolAlt = null;
+            String tdol = null;
+            String tdolAlt = null;
+            String udol = null;
+            String udolAlt = null;
+            // Nested contactless values win over the flat ones, wherever they appear
+            String ctlsTtq = null;
+            String ctlsCtq = null;
+            String ctlsNoCvmLimit = null;
+            String ctlsCvmLimit = null;
+            String ctlsFloorLimit = null;
+
+            aid.priority = 1;
+            aid.threshold = PaymentConfig.TACConfig.THRESHOLD_ZERO;
+            aid.floorLimit = "000000000000";
+            aid.ttq = "2600C080";
+            aid.ctq = "00000000";
+            aid.noCvmLimit = "000000000000";
+            aid.cvmLimit = "000000000000";
+            aid.contactlessFloorLimit = "000000000000";
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "aid":
+                        aidHex = nextString(in);
+                        break;
+                    case "aidHex":
+                        aidHexAlt = nextString(in);
+                        break;
+                    case "label":
+                        aid.label = nextString(in);
+                        break;
+                    case "kernel":
+                        kernel = nextString(in);
+                        break;
+                    case "selFlag":
+                        selFlag = nextInt(in, 0);
+                        break;
+                    case "priority":
+                        aid.priority = nextInt(in, 1);
+                        break;
+                    case "version":
+                        aid.version = nextString(in);
+                        break;
+                    case "tac_default":
+                        tacDefault = nextString(in);
+                        break;
+                    case "tacDefault":
+                        tacDefaultAlt = nextString(in);
+                        break;
+                    case "tac_denial":
+                        tacDenial = nextString(in);
+                        break;
+                    case "tacDenial":
+                        tacDenialAlt = nextString(in);
+                        break;
+                    case "tac_online":
+                        tacOnline = nextString(in);
+                        break;
+                    case "tacOnline":
+                        tacOnlineAlt = nextString(in);
+                        break;
+                    case "threshold":
+                        aid.threshold = nextString(in, aid.threshold);
+                        break;
+                    case "floorLimit":
+                        aid.floorLimit = nextString(in, aid.floorLimit);
+                        break;
+                    case "targetPer":
+                        aid.targetPer = nextInt(in, 0);
+                        break;
+                    case "maxTargetPer":
+                        aid.maxTargetPer = nextInt(in, 0);
+                        break;
+                    case "ttq":
+                        aid.ttq = nextString(in, aid.ttq);
+                        break;
+                    case "ctq":
+                        aid.ctq = nextString(in, aid.ctq);
+                        break;
+                    case "noCvmLimit":
+                        aid.noCvmLimit = nextString(in, aid.noCvmLimit);
+                        break;
+                    case "cvmLimit":
+                        aid.cvmLimit = nextString(in, aid.cvmLimit);
+                        break;
+                    case "contactlessFloorLimit":
+                        aid.contactlessFloorLimit = nextString(in, aid.contactlessFloorLimit);
+                        break;
+                    case "contactless":
+                        if (beginObject(in)) {
+                            while (in.hasNext()) {
+                                switch (in.nextName()) {
+                                    case "ttq":
+                                        ctlsTtq = nextString(in);
+                                        break;
+                                    case "ctq":
+                                        ctlsCtq = nextString(in);
+                                        break;
+                                    case "merchantRiskParameters":
+                                        if (beginObject(in)) {
+                                            while (in.hasNext()) {
+                                                switch (in.nextName()) {
+                                                    case "contactless_no_cvm_limit":
+                                                        ctlsNoCvmLimit = nextString(in);
+                                                        break;
+                                                    case "contactless_cvm_limit":
+                                                        ctlsCvmLimit = nextString(in);
+                                                        break;
+                                                    case "reader_contactless_floor_limit":
+                                                        ctlsFloorLimit = nextString(in);
+                                                        break;
+                                                    default:
+                                                        in.skipValue();
+                                                }
+                                            }
+                                            in.endObject();
+                                        }
+                                        break;
+                                    default:
+                                        in.skipValue();
+                                }
+                            }
+                            in.endObject();
+                        }
+                        break;
+                    case "dDOL":
+                        ddol = nextString(in);
+                        break;
+                    case "ddol":
+                        ddolAlt = nextString(in);
+                        break;
+                    case "tDOL":
+                        tdol = nextString(in);
+                        break;
+                    case "tdol":
+                        tdolAlt = nextString(in);
+                        break;
+                    case "uDOL":
+                        udol = nextString(in);
+                        break;
+                    case "udol":
+                        udolAlt = nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            aid.aidHex = first(aidHex, aidHexAlt, "");
+            aid.kernel = kernel != null ? kernel : "EMV";
+            // VISA/MC kernels are contactless-enabled; otherwise as sent (default contact)
+            aid.selFlag = "VISA".equals(aid.kernel) || "MC".equals(aid.kernel) ? 1 : selFlag;
+            if (aid.version == null) {
+                aid.version = defaultVersion(aid.aidHex);
+            }
+            aid.tacDefault = first(tacDefault, tacDefaultAlt, "0010000000");
+            aid.tacDenial = first(tacDenial, tacDenialAlt, "0000000000");
+            aid.tacOnline = first(tacOnline, tacOnlineAlt, "0010000000");
+            if (ctlsTtq != null) {
+                aid.ttq = ctlsTtq;
+            }
+            if (ctlsCtq != null) {
+                aid.ctq = ctlsCtq;
+            }
+            if (ctlsNoCvmLimit != null) {
+                aid.noCvmLimit = ctlsNoCvmLimit;
+            }
+            if (ctlsCvmLimit != null) {
+                aid.cvmLimit = ctlsCvmLimit;
+            }
+            if (ctlsFloorLimit != null) {
+                aid.contactlessFloorLimit = ctlsFloorLimit;
+            }
+            aid.ddol = first(ddol, ddolAlt, "");
+            aid.tdol = first(tdol, tdolAlt, "");
+            aid.udol = first(udol, udolAlt, "");
+            return aid;
+        }
+
+        private List<CapkConfig> readCapks(JsonReader in) throws IOException {
+            if (!beginArray(in)) {
+                return null;
+            }
+            List<CapkConfig> capks = new ArrayList<>();
+            while (in.hasNext()) {
+                if (!beginObject(in)) {
+                    continue;
+                }
+                CapkConfig capk = new CapkConfig();
+                String rid = null;
+                String ridAlt = null;
+                String index = null;
+                String indexAlt = null;
+                String modulus = null;
+                String modulusAlt = null;
+                String exponent = null;
+                String exponentAlt = null;
+                String expiry = null;
+                String expiryAlt = null;
+                capk.hashIndHex = "01"; // SHA-1
+                capk.arithIndHex = "01"; // RSA
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "rid":
+                            rid = nextString(in);
+                            break;
+                        case "ridHex":
+                            ridAlt = nextString(in);
+                            break;
+                        case "index":
+                            index = nextString(in);
+                            break;
+                        case "indexHex":
+                            indexAlt = nextString(in);
+                            break;
+                        case "modulus":
+                            modulus = nextString(in);
+                            break;
+                        case "modulusHex":
+                            modulusAlt = nextString(in);
+                            break;
+                        case "exponent":
+                            exponent = nextString(in);
+                            break;
+                        case "exponentHex":
+                            exponentAlt = nextString(in);
+                            break;
+                        case "expiry":
+                            expiry = nextString(in);
+                            break;
+                        case "expiryDate":
+                            expiryAlt = nextString(in);
+                            break;
+                        case "hashIndHex":
+                            capk.hashIndHex = nextString(in, capk.hashIndHex);
+                            break;
+                        case "arithIndHex":
+                            capk.arithIndHex = nextString(in, capk.arithIndHex);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                capk.ridHex = first(rid, ridAlt, "");
+                capk.indexHex = first(index, indexAlt, "");
+                capk.modulusHex = first(modulus, modulusAlt, "");
+                capk.exponentHex = first(exponent, exponentAlt, "");
+                capk.expiryDate = toYymmdd(first(expiry, expiryAlt, ""));
+                capks.add(capk);
+            }
+            in.endArray();
+            return capks;
+        }
+    };
+
+    private static String first(String value, String alias, String fallback) {
+        return value != null ? value : alias != null ? alias : fallback;
+    }
+
+    /**
+     * Scheme default AID version when the bundle has none
+     */
+    static String defaultVersion(String aidHex) {
+        if (aidHex.startsWith("A000000004") || aidHex.startsWith("A000000005")
+                || aidHex.startsWith("A000000732")) {
+            return "0002"; // Mastercard PayPass / Meeza
+        }
+        if (aidHex.startsWith("A000000003")) {
+            return "0097"; // Visa payWave
+        }
+        return "008C"; // Generic EMV
+    }
+
+    /**
+     * CAPK expiry: ISO date (YYYY-MM-DD) to YYMMDD, anything else as-is
+     */
+    static String toYymmdd(String expiry) {
+        if (expiry.length() == 10 && expiry.contains("-")) {
+            return expiry.substring(2, 4) + expiry.substring(5, 7) + expiry.substring(8, 10);
+        }
+        return expiry;
+    }
+}
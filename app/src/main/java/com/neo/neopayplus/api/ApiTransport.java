@@ -0,0 +1,196 @@
+package com.neo.neopayplus.api;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.MyApplication;
+import com.neo.neopayplus.utils.LatencyHistogram;
+import com.neo.neopayplus.utils.LogUtil;
+import com.neo.neopayplus.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * API Transport
+ *
+ * The HTTP client shared by the payment, settlement and EMV config services:
+ * one connection pool (so the backend's TLS session and sockets are reused
+ * across services), one dispatcher, and an HTTP cache for conditional GETs.
+ *
+ * A GET built with {@link #REVALIDATE} is always checked with the server, but
+ * as {@code If-None-Match} against the cached ETag; a 304 comes back as the
+ * cached 200 and {@link #isNotModified(Response)} tells the caller it may
+ * reuse what it parsed last time.
+ *
+ * Each call is timed per endpoint ({@link #endpoint(Request.Builder, String)}
+ * names it, otherwise the URL path is used) into a {@link LatencyHistogram},
+ * with error (I/O failure or HTTP >= 400) and not-modified counts.
+ */
+public final class ApiTransport {
+
+    private static final String TAG = Constant.TAG;
+    private static final Logger LOG = LogUtil.logger("http", TAG);
+
+    public static final String CACHE_DIR = "http_cache";
+    public static final long CACHE_SIZE = 4L * 1024 * 1024;
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    /**
+     * Revalidate with the server every time, but conditionally (max-age=0
+     * makes the cached copy stale; no-cache would skip the cache altogether)
+     */
+    public static final CacheControl REVALIDATE = new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build();
+
+    private static volatile ApiTransport shared;
+
+    private final OkHttpClient client;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Per-endpoint counters
+     */
+    public static final class Endpoint {
+        public final LatencyHistogram latency = new LatencyHistogram(); // µs
+        public final AtomicLong calls = new AtomicLong();
+        public final AtomicLong errors = new AtomicLong();
+        public final AtomicLong notModified = new AtomicLong();
+    }
+
+    /**
+     * Endpoint name carried on the request
+     */
+    private static final class EndpointTag {
+        final String name;
+
+        EndpointTag(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * @param cacheDir HTTP cache directory, or null for no cache (conditional
+     *                 GETs then always transfer the body)
+     */
+    public ApiTransport(File cacheDir) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(this::measure);
+        if (cacheDir != null) {
+            builder.cache(new Cache(cacheDir, CACHE_SIZE));
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * The app-wide transport (HTTP cache under the app cache dir)
+     */
+    public static ApiTransport shared() {
+        if (shared == null) {
+            synchronized (ApiTransport.class) {
+                if (shared == null) {
+                    shared = new ApiTransport(new File(MyApplication.app.getCacheDir(), CACHE_DIR));
+                }
+            }
+        }
+        return shared;
+    }
+
+    public OkHttpClient client() {
+        return client;
+    }
+
+    /**
+     * Name the call for metrics (e.g. "emv.bundle")
+     */
+    public static Request.Builder endpoint(Request.Builder builder, String name) {
+        return builder.tag(EndpointTag.class, new EndpointTag(name));
+    }
+
+    /**
+     * True when the server answered 304 and the body came from the cache
+     */
+    public static boolean isNotModified(Response response) {
+        Response network = response.networkResponse();
+        return network != null && network.code() == 304 && response.cacheResponse() != null;
+    }
+
+    // ==================== METRICS ====================
+
+    private Response measure(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        EndpointTag tag = request.tag(EndpointTag.class);
+        Endpoint endpoint = endpoint(tag != null ? tag.name : request.url().encodedPath());
+        endpoint.calls.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(request);
+            if (response.code() >= 400) {
+                endpoint.errors.incrementAndGet();
+            } else if (isNotModified(response)) {
+                endpoint.notModified.incrementAndGet();
+            }
+            return response;
+        } catch (IOException e) {
+            endpoint.errors.incrementAndGet();
+            throw e;
+        } finally {
+            // Time to response headers; the body is streamed by the caller
+            endpoint.latency.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(name, n -> new Endpoint());
+        }
+        return endpoint;
+    }
+
+    /**
+     * Counters by endpoint name (live, sorted by name)
+     */
+    public Map<String, Endpoint> metrics() {
+        return new TreeMap<>(endpoints);
+    }
+
+    public void resetMetrics() {
+        endpoints.clear();
+    }
+
+    /**
+     * One log line per endpoint: calls, errors, 304s, p50/p95/max (ms)
+     */
+    public void logMetrics() {
+        for (Map.Entry<String, Endpoint> entry : metrics().entrySet()) {
+            Endpoint e = entry.getValue();
+            LOG.i("{}: {} calls, {} errors, {} not modified, p50 {}ms p95 {}ms max {}ms", entry.getKey(),
+                    e.calls.get(), e.errors.get(), e.notModified.get(), e.latency.percentile(50) / 1000,
+                    e.latency.percentile(95) / 1000, e.latency.max() / 1000);
+        }
+    }
+}
@@ -25,6 +25,7 @@ public interface PaymentApiService {
         public byte[] pinBlock; // Encrypted PIN block (if online PIN)
         public String ksn; // Key Serial Number (for DUKPT)
         public Integer cardType; // Card type from AidlConstantsV2.CardType (for detecting contactless)
+        public com.neo.neopayplus.emv.EmvTransactionContext emvContext; // Decoded EMV data behind field55 (optional)
 
         @Override
         public String toString() {
@@ -5,22 +5,27 @@ import android.os.Looper;
 
 import com.neo.neopayplus.Constant;
 import com.neo.neopayplus.config.PaymentConfig;
+import com.neo.neopayplus.emv.EmvTransactionContext;
 import com.neo.neopayplus.keys.KeyRegistry;
 import com.neo.neopayplus.iso.Iso8583Packer;
 import com.neo.neopayplus.iso.IsoLogger;
-import com.neo.neopayplus.iso.Iso8583SocketClient;
+import com.neo.neopayplus.iso.IsoHostConnection;
 import com.neo.neopayplus.iso.Iso8583MessageBuilder;
 import com.neo.neopayplus.iso.Iso8583ResponseParser;
 import com.neo.neopayplus.MyApplication;
+import com.neo.neopayplus.utils.GsonUtil;
+import com.neo.neopayplus.utils.LatencyTracer;
 import com.neo.neopayplus.utils.LogUtil;
+import com.neo.neopayplus.utils.Logger;
 
 import android.util.Base64;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -29,7 +34,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -48,6 +52,7 @@ import okhttp3.Response;
 public class PaymentApiServiceImpl implements PaymentApiService {
 
     private static final String TAG = Constant.TAG;
+    private static final Logger LOG = LogUtil.logger("payment", TAG);
 
     // API routes/endpoints (matching actual server endpoints)
     private static final String ROUTE_AUTHORIZE = "/tx/authorize";
@@ -89,23 +94,25 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * @param apiKey  API key for authentication
      */
     public PaymentApiServiceImpl(String baseUrl, String apiKey) {
+        this(baseUrl, apiKey, null);
+    }
+
+    /**
+     * @param transport Shared HTTP transport (null = {@link ApiTransport#shared()})
+     */
+    public PaymentApiServiceImpl(String baseUrl, String apiKey, ApiTransport transport) {
         this.baseUrl = normalizeBaseUrl(baseUrl);
         this.apiKey = apiKey;
 
         // Initialize HTTP client only if baseUrl is configured
         if (isProductionMode()) {
-            this.httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(30, TimeUnit.SECONDS)
-                    .readTimeout(30, TimeUnit.SECONDS)
-                    .writeTimeout(30, TimeUnit.SECONDS)
-                    .build();
-            LogUtil.e(TAG, "Payment API Service initialized - PRODUCTION mode");
-            LogUtil.e(TAG, "  Base URL: " + baseUrl);
-            LogUtil.e(TAG,
-                    "  API Key: " + (apiKey != null && !apiKey.isEmpty() ? "***CONFIGURED***" : "NOT CONFIGURED"));
+            this.httpClient = (transport != null ? transport : ApiTransport.shared()).client();
+            LOG.d("Payment API Service initialized - PRODUCTION mode");
+            LOG.d("  Base URL: {}", baseUrl);
+            LOG.d("  API Key: {}", apiKey != null && !apiKey.isEmpty() ? "***CONFIGURED***" : "NOT CONFIGURED");
         } else {
             this.httpClient = null;
-            LogUtil.e(TAG, "Payment API Service initialized - MOCK mode (baseUrl not configured)");
+            LOG.d("Payment API Service initialized - MOCK mode (baseUrl not configured)");
         }
     }
 
@@ -173,36 +180,37 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Backend will decrypt PIN block using DUKPT keys (IPEK + KSN) and verify PIN
      */
     private void callProductionApi(AuthorizationRequest request, AuthorizationCallback callback) {
-        LogUtil.e(TAG, "=== PRODUCTION API: Authorization Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + PaymentConfig.getTerminalId());
-        LogUtil.e(TAG, "  PAN: " + (request.pan != null ? maskCardNumber(request.pan) : "null"));
-        LogUtil.e(TAG, "  Amount: " + request.amount);
-        LogUtil.e(TAG, "  Has PIN Block: " + (request.pinBlock != null && request.pinBlock.length > 0));
-        LogUtil.e(TAG, "  KSN: " + (request.ksn != null ? request.ksn : "null"));
-        LogUtil.e(TAG, "  Has EMV Data: " + (request.field55 != null && !request.field55.isEmpty()));
+        LOG.d("=== PRODUCTION API: Authorization Request ===");
+        LOG.d("  Terminal ID: {}", PaymentConfig.getTerminalId());
+        LOG.d("  PAN: {}", request.pan != null ? maskCardNumber(request.pan) : "null");
+        LOG.d("  Amount: {}", request.amount);
+        LOG.d("  Has PIN Block: {}", request.pinBlock != null && request.pinBlock.length > 0);
+        LOG.d("  KSN: {}", request.ksn != null ? request.ksn : "null");
+        LOG.d("  Has EMV Data: {}", request.field55 != null && !request.field55.isEmpty());
 
         // Check if ISO socket mode is enabled
         boolean isIsoMode = PaymentConfig.isIsoSocketMode();
-        LogUtil.e(TAG, "=== ISO Socket Mode Check ===");
-        LogUtil.e(TAG, "  ISO_SOCKET_HOST: "
-                + (PaymentConfig.ISO_SOCKET_HOST != null ? PaymentConfig.ISO_SOCKET_HOST : "null"));
-        LogUtil.e(TAG, "  ISO_SOCKET_PORT: " + PaymentConfig.ISO_SOCKET_PORT);
-        LogUtil.e(TAG, "  isIsoSocketMode(): " + isIsoMode);
+        LOG.d("=== ISO Socket Mode Check ===");
+        LOG.d("  ISO_SOCKET_HOST: {}", PaymentConfig.ISO_SOCKET_HOST != null ? PaymentConfig.ISO_SOCKET_HOST : "null");
+        LOG.d("  ISO_SOCKET_PORT: {}", PaymentConfig.ISO_SOCKET_PORT);
+        LOG.d("  isIsoSocketMode(): {}", isIsoMode);
 
         if (isIsoMode) {
-            LogUtil.e(TAG, "✓ Using ISO 8583 Socket Mode");
+            LOG.d("✓ Using ISO 8583 Socket Mode");
             callProductionApiIsoSocket(request, callback);
             return;
         } else {
-            LogUtil.e(TAG, "⚠️ ISO Socket Mode disabled - using HTTP/JSON mode");
+            LOG.w("⚠️ ISO Socket Mode disabled - using HTTP/JSON mode");
         }
 
         // Fall back to HTTP/JSON mode
         try {
+            long packStart = LatencyTracer.start();
             JsonObject requestJson = buildRequestJson(request);
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             String requestBodyStr = gson.toJson(requestJson);
             RequestBody requestBody = RequestBody.create(JSON, requestBodyStr);
+            LatencyTracer.end(LatencyTracer.Phase.HOST_PACK, packStart);
 
             String url = buildUrl(ROUTE_AUTHORIZE);
             Request httpRequest = new Request.Builder()
@@ -212,49 +220,53 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     .post(requestBody)
                     .build();
 
-            LogUtil.e(TAG, "Calling production API: " + url);
+            LOG.d("Calling production API: {}", url);
             if (com.neo.neopayplus.BuildConfig.DEBUG) {
-                LogUtil.e(TAG, "Request body (masked PIN/KSN): " + maskSensitiveData(requestBodyStr));
+                LOG.d("Request body (masked PIN/KSN): {}", maskSensitiveData(requestBodyStr));
             }
 
+            long roundTripStart = LatencyTracer.start();
             httpClient.newCall(httpRequest).enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
-                    LogUtil.e(TAG, "❌ Production API Error: " + e.getMessage());
+                    LOG.e("❌ Production API Error: {}", e.getMessage());
                     callback.onAuthorizationError(e);
                 }
 
                 @Override
                 public void onResponse(Call call, Response response) throws IOException {
+                    LatencyTracer.end(LatencyTracer.Phase.HOST_ROUND_TRIP, roundTripStart);
                     try {
                         if (!response.isSuccessful()) {
                             String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                            LogUtil.e(TAG, "❌ Production API Error: HTTP " + response.code() + " - " + errorBody);
+                            LOG.e("❌ Production API Error: HTTP {} - {}", response.code(), errorBody);
                             callback.onAuthorizationError(
                                     new IOException("HTTP " + response.code() + ": " + errorBody));
                             return;
                         }
 
-                        String responseBody = response.body() != null ? response.body().string() : "{}";
-                        LogUtil.e(TAG, "=== Production API Response ===");
-                        LogUtil.e(TAG, responseBody);
-
-                        // Parse real response from backend (includes PIN verification result)
-                        AuthorizationResponse authResponse = parseResponse(responseBody);
+                        // Parse real response from backend (includes PIN verification result),
+                        // decoded straight off the body stream
+                        long parseStart = LatencyTracer.start();
+                        Reader responseBody = response.body() != null ? response.body().charStream()
+                                : new StringReader("{}");
+                        AuthorizationResponse authResponse = parseResponse(
+                                ApiJson.read(ApiJson.AUTHORIZATION, responseBody));
+                        LatencyTracer.end(LatencyTracer.Phase.HOST_PARSE, parseStart);
 
                         // Log PIN verification result (if applicable)
                         if (request.pinBlock != null && request.pinBlock.length > 0) {
                             if (authResponse.approved) {
-                                LogUtil.e(TAG, "✓ PIN verified successfully by backend");
+                                LOG.d("✓ PIN verified successfully by backend");
                             } else if ("55".equals(authResponse.responseCode)
                                     || "63".equals(authResponse.responseCode)) {
-                                LogUtil.e(TAG, "⚠️ PIN verification failed - incorrect PIN");
+                                LOG.w("⚠️ PIN verification failed - incorrect PIN");
                             }
                         }
 
                         callback.onAuthorizationComplete(authResponse);
                     } catch (Exception e) {
-                        LogUtil.e(TAG, "❌ Error parsing production API response: " + e.getMessage());
+                        LOG.e("❌ Error parsing production API response: {}", e.getMessage());
                         callback.onAuthorizationError(e);
                     } finally {
                         if (response.body() != null)
@@ -263,7 +275,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 }
             });
         } catch (Exception e) {
-            LogUtil.e(TAG, "❌ Error building production API request: " + e.getMessage());
+            LOG.e("❌ Error building production API request: {}", e.getMessage());
             callback.onAuthorizationError(e);
         }
     }
@@ -272,60 +284,54 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Call production API using ISO 8583 socket communication (MsgSpec v341)
      */
     private void callProductionApiIsoSocket(AuthorizationRequest request, AuthorizationCallback callback) {
-        LogUtil.e(TAG, "=== PRODUCTION API: ISO 8583 Socket Mode ===");
-        LogUtil.e(TAG, "  Host: " + PaymentConfig.ISO_SOCKET_HOST);
-        LogUtil.e(TAG, "  Port: " + PaymentConfig.ISO_SOCKET_PORT);
+        LOG.d("=== PRODUCTION API: ISO 8583 Socket Mode ===");
+        LOG.d("  Host: {}", PaymentConfig.ISO_SOCKET_HOST);
+        LOG.d("  Port: {}", PaymentConfig.ISO_SOCKET_PORT);
 
-        new Thread(() -> {
-            Iso8583SocketClient socketClient = null;
+        IsoHostConnection.exchangeExecutor().execute(() -> {
             try {
-                // Create and connect socket client
-                socketClient = new Iso8583SocketClient(
-                        PaymentConfig.ISO_SOCKET_HOST,
-                        PaymentConfig.ISO_SOCKET_PORT);
-                socketClient.connect();
+                // Shared long-lived connection (connects on first use, reused afterwards)
+                IsoHostConnection connection = IsoHostConnection.getInstance();
 
                 // Build ISO 8583 application data (0100)
                 // PAN must be sent in full (unmasked) exactly as extracted from EMV tag
                 // No masking, no truncation, no modifications - send exactly as extracted
                 String pan = request.pan != null ? request.pan : "";
-                LogUtil.e(TAG, "✓ PAN for ISO 8583 (full, unmasked, as extracted from EMV): " + pan);
-                LogUtil.e(TAG, "✓ PAN length: " + (pan != null ? pan.length() : 0) + " characters");
+                LOG.d("✓ PAN for ISO 8583 (sent in full, as extracted from EMV): {}", maskCardNumber(pan));
+                LOG.d("✓ PAN length: {} characters", pan != null ? pan.length() : 0);
                 // Processing Code: "000000" = Purchase, "200000" = Refund (ISO8583 DE3)
                 String processingCode = "20".equals(request.transactionType) ? "200000" : "000000";
-                LogUtil.e(TAG,
-                        "Transaction type: " + request.transactionType + " -> Processing Code: " + processingCode);
+                LOG.d("Transaction type: {} -> Processing Code: {}", request.transactionType, processingCode);
                 String amount = request.amount;
 
                 // Validate and log amount before sending
-                LogUtil.e(TAG, "=== Amount Validation (DE4) ===");
-                LogUtil.e(TAG, "  Raw amount string from request: '" + amount + "'");
+                LOG.d("=== Amount Validation (DE4) ===");
+                LOG.d("  Raw amount string from request: '{}'", amount);
                 if (amount != null && !amount.isEmpty()) {
                     try {
                         // Remove any non-digit characters and verify length
                         String amountDigits = amount.replaceAll("\\D", "");
                         if (amountDigits.length() > 12) {
-                            LogUtil.e(TAG, "  ⚠️ Amount exceeds 12 digits, truncating rightmost 12 digits");
+                            LOG.w("  ⚠️ Amount exceeds 12 digits, truncating rightmost 12 digits");
                             amountDigits = amountDigits.substring(amountDigits.length() - 12);
                         }
                         long amountMinor = Long.parseLong(amountDigits);
                         double amountMainUnit = amountMinor / 100.0;
-                        LogUtil.e(TAG, "  Amount in minor units: " + amountMinor);
-                        LogUtil.e(TAG, "  Amount in main unit: " + amountMainUnit + " EGP");
-                        LogUtil.e(TAG,
-                                "  Amount will be padded to: '" + String.format(Locale.US, "%012d", amountMinor) + "'");
+                        LOG.d("  Amount in minor units: {}", amountMinor);
+                        LOG.d("  Amount in main unit: {} EGP", amountMainUnit);
+                        LOG.d("  Amount will be padded to: '{}'", String.format(Locale.US, "%012d", amountMinor));
                     } catch (NumberFormatException e) {
-                        LogUtil.e(TAG, "  ⚠️ Failed to parse amount: " + e.getMessage());
+                        LOG.w("  ⚠️ Failed to parse amount: {}", e.getMessage());
                     }
                 } else {
-                    LogUtil.e(TAG, "  ⚠️ Amount is null or empty");
+                    LOG.w("  ⚠️ Amount is null or empty");
                 }
 
                 String stan = generateStan(request.date, request.time);
                 String posEntryMode = determinePosEntryMode(request);
                 String currencyCode = request.currencyCode != null ? request.currencyCode
                         : PaymentConfig.getCurrencyCode();
-                String field55 = request.field55 != null ? request.field55 : "";
+                EmvTransactionContext emv = emvContext(request);
                 String terminalId = PaymentConfig.getTerminalId();
                 String merchantId = PaymentConfig.getMerchantId();
                 String pinBlock = null;
@@ -334,9 +340,10 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 }
 
                 // Use 1200 for direct settlement (bank requirement)
-                byte[] applicationData = Iso8583Packer.pack1200(
+                long packStart = LatencyTracer.start();
+                byte[] applicationData = Iso8583Packer.pack1200(emv,
                         pan, processingCode, amount, stan, posEntryMode,
-                        currencyCode, field55, terminalId, merchantId, pinBlock, "200");
+                        currencyCode, terminalId, merchantId, pinBlock, "200");
 
                 if (applicationData == null || applicationData.length == 0) {
                     throw new IOException("Failed to pack ISO 8583 message");
@@ -351,14 +358,18 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 if (completeMessage == null || completeMessage.length == 0) {
                     throw new IOException("Failed to build complete ISO 8583 message");
                 }
+                LatencyTracer.end(LatencyTracer.Phase.HOST_PACK, packStart);
 
                 // Log ISO message (for debugging)
                 IsoLogger.save(completeMessage, "1200");
 
                 // Send and receive
-                byte[] responseMessage = socketClient.sendAndReceive(completeMessage, 30000);
+                long roundTripStart = LatencyTracer.start();
+                byte[] responseMessage = connection.exchange(completeMessage, stan, 30000);
+                LatencyTracer.end(LatencyTracer.Phase.HOST_ROUND_TRIP, roundTripStart);
 
                 // Parse response (1210 for financial transaction response)
+                long parseStart = LatencyTracer.start();
                 byte[] responseApplicationData = Iso8583MessageBuilder.parseResponse(responseMessage);
                 Iso8583ResponseParser.ParsedResponse parsedResponse = Iso8583ResponseParser
                         .parse1210(responseApplicationData);
@@ -369,27 +380,24 @@ public class PaymentApiServiceImpl implements PaymentApiService {
 
                 // Convert to AuthorizationResponse
                 AuthorizationResponse authResponse = convertIsoResponseToAuthorizationResponse(parsedResponse, request);
+                LatencyTracer.end(LatencyTracer.Phase.HOST_PARSE, parseStart);
 
                 // Log PIN verification result
                 if (request.pinBlock != null && request.pinBlock.length > 0) {
                     if (authResponse.approved) {
-                        LogUtil.e(TAG, "✓ PIN verified successfully by backend");
+                        LOG.d("✓ PIN verified successfully by backend");
                     } else if ("55".equals(authResponse.responseCode) || "63".equals(authResponse.responseCode)) {
-                        LogUtil.e(TAG, "⚠️ PIN verification failed - incorrect PIN");
+                        LOG.w("⚠️ PIN verification failed - incorrect PIN");
                     }
                 }
 
                 mainHandler.post(() -> callback.onAuthorizationComplete(authResponse));
 
             } catch (Exception e) {
-                LogUtil.e(TAG, "❌ ISO 8583 Socket Error: " + e.getMessage());
+                LOG.e("❌ ISO 8583 Socket Error: {}", e.getMessage());
                 mainHandler.post(() -> callback.onAuthorizationError(e));
-            } finally {
-                if (socketClient != null) {
-                    socketClient.close();
-                }
             }
-        }).start();
+        });
     }
 
     /**
@@ -423,7 +431,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             if (parsedResponse.field55 != null && !parsedResponse.field55.isEmpty()) {
                 // Field 55 contains TLV data - parse it
                 // This is a simplified version - full TLV parsing would be needed
-                LogUtil.e(TAG, "Field 55 present in response: " + parsedResponse.field55.length() + " hex chars");
+                LOG.d("Field 55 present in response: {} hex chars", parsedResponse.field55.length());
             }
         } else {
             // Tag 8A: Decline Code
@@ -475,8 +483,8 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * - Send 97 once every 10th transaction to force key re-download
      */
     private void callMockApi(AuthorizationRequest request, AuthorizationCallback callback) {
-        LogUtil.e(TAG, "=== MOCK: Authorization Request ===");
-        LogUtil.e(TAG, request.toString());
+        LOG.d("=== MOCK: Authorization Request ===");
+        LOG.d("{}", request);
 
         transactionCounter++;
         final int currentTxCount = transactionCounter;
@@ -497,7 +505,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
 
             // Check for timeout condition (> 500)
             if (amount > 500.0) {
-                LogUtil.e(TAG, "=== MOCK: TIMEOUT (amount > 500) ===");
+                LOG.d("=== MOCK: TIMEOUT (amount > 500) ===");
                 mainHandler.post(() -> {
                     AuthorizationResponse timeoutResponse = AuthorizationResponse.error(
                             new IOException("HOST_UNAVAILABLE"),
@@ -509,7 +517,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
 
             // Check for key sync requirement (every 10th transaction)
             if (currentTxCount % 10 == 0) {
-                LogUtil.e(TAG, "=== MOCK: Key sync required (97) ===");
+                LOG.d("=== MOCK: Key sync required (97) ===");
                 AuthorizationResponse keySyncResponse = AuthorizationResponse.declined("97",
                         "Key sync required - trigger /terminal/config");
                 mainHandler.post(() -> callback.onAuthorizationComplete(keySyncResponse));
@@ -521,9 +529,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             AuthorizationResponse response = shouldApprove ? createMockSuccessResponse(request)
                     : createMockDeclinedResponse(amount);
 
-            LogUtil.e(TAG, "=== MOCK: Authorization " + (shouldApprove ? "APPROVED" : "DECLINED") + " ===");
-            LogUtil.e(TAG, "  Amount: " + amount + " " + PaymentConfig.CURRENCY_NAME);
-            LogUtil.e(TAG, response.toString());
+            LOG.d("=== MOCK: Authorization {} ===", shouldApprove ? "APPROVED" : "DECLINED");
+            LOG.d("  Amount: {} {}", amount, PaymentConfig.CURRENCY_NAME);
+            LOG.d("{}", response);
 
             final AuthorizationResponse finalResponse = response;
             mainHandler.post(() -> {
@@ -564,12 +572,12 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             KeyRegistry.KeyState keyState = KeyRegistry.current();
             if (keyState != null && keyState.getPinKeyId() != null && !keyState.getPinKeyId().isEmpty()) {
                 json.addProperty("pin_key_id", keyState.getPinKeyId());
-                LogUtil.e(TAG, "✓ PIN key ID included: " + keyState.getPinKeyId());
+                LOG.d("✓ PIN key ID included: {}", keyState.getPinKeyId());
             } else {
-                LogUtil.e(TAG, "⚠️ No pin_key_id available - transaction may fail if backend requires it");
+                LOG.w("⚠️ No pin_key_id available - transaction may fail if backend requires it");
             }
         } catch (Exception e) {
-            LogUtil.e(TAG, "Error loading PIN key ID: " + e.getMessage());
+            LOG.e("Error loading PIN key ID: {}", e.getMessage());
         }
 
         // EMV data structure (from field55 - real data from terminal)
@@ -585,14 +593,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             json.addProperty("icc_data", request.field55);
             json.addProperty("field_55", request.field55);
 
-            // Parse common EMV tags from field55 (for structured data)
-            try {
-                parseEmvTagsFromField55(request.field55, emvData);
-                json.add("emv_data", emvData);
-            } catch (Exception e) {
-                LogUtil.e(TAG, "Could not parse EMV tags from field55: " + e.getMessage());
-                json.add("emv_data", emvData);
-            }
+            // Common EMV tags as structured data (decoded once, see EmvTransactionContext)
+            addEmvTags(emvContext(request), emvData);
+            json.add("emv_data", emvData);
         }
 
         // PIN block encrypted with TPK (Terminal PIN Key) at slot 12
@@ -603,13 +606,12 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         if (request.pinBlock != null && request.pinBlock.length > 0) {
             String pinBlockHex = bytesToHex(request.pinBlock);
             json.addProperty("pin_block", pinBlockHex);
-            LogUtil.e(TAG, "✓ Sending PIN block encrypted with TPK (masked: " +
-                    (pinBlockHex.length() > 8
+            LOG.d("✓ Sending PIN block encrypted with TPK (masked: {})",
+                    pinBlockHex.length() > 8
                             ? pinBlockHex.substring(0, 4) + "****" + pinBlockHex.substring(pinBlockHex.length() - 4)
-                            : "****")
-                    + ")");
+                            : "****");
         } else {
-            LogUtil.e(TAG, "⚠️ No PIN block in request - transaction may be offline PIN or no PIN required");
+            LOG.w("⚠️ No PIN block in request - transaction may be offline PIN or no PIN required");
         }
 
         // KSN is only used for DUKPT - not needed for TPK (MKSK system)
@@ -617,9 +619,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         // happen with current config)
         if (request.ksn != null && !request.ksn.isEmpty()) {
             json.addProperty("ksn", request.ksn);
-            LogUtil.e(TAG, "⚠️ KSN provided but system uses TPK (MKSK) - KSN should be null for TPK");
+            LOG.w("⚠️ KSN provided but system uses TPK (MKSK) - KSN should be null for TPK");
         } else {
-            LogUtil.e(TAG, "✓ No KSN (expected for TPK/MKSK system - backend uses pin_key_id to identify TPK)");
+            LOG.d("✓ No KSN (expected for TPK/MKSK system - backend uses pin_key_id to identify TPK)");
         }
 
         // Datetime in ISO8601 format (real transaction date/time)
@@ -661,13 +663,13 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     // Ignore
                 }
 
-                LogUtil.e(TAG, "=== Field 52 (PIN Block) Details ===");
-                LogUtil.e(TAG, "✓ PIN Block (DE52): " + pinBlockHex.substring(0, 4) + "****"
-                        + pinBlockHex.substring(pinBlockHex.length() - 4));
-                LogUtil.e(TAG, "✓ PIN Block Format: " + pinBlockFormat + (isValidFormat ? " ✓" : " ⚠️"));
-                LogUtil.e(TAG, "✓ PIN Block Length: 8 bytes (16 hex chars)");
+                LOG.d("=== Field 52 (PIN Block) Details ===");
+                LOG.d("✓ PIN Block (DE52): {}****{}",
+                        pinBlockHex.substring(0, 4), pinBlockHex.substring(pinBlockHex.length() - 4));
+                LOG.d("✓ PIN Block Format: {}{}", pinBlockFormat, isValidFormat ? " ✓" : " ⚠️");
+                LOG.d("✓ PIN Block Length: 8 bytes (16 hex chars)");
                 if (pinLength >= 0 && pinLength <= 12) {
-                    LogUtil.e(TAG, "✓ PIN Length (from block): " + pinLength + " digits");
+                    LOG.d("✓ PIN Length (from block): {} digits", pinLength);
                 }
 
                 // Log TPK information (for testing/decryption)
@@ -677,43 +679,42 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                         String pinKeyId = keyState.getPinKeyId();
                         String tpkKcv = keyState.getTpkKcv();
                         String wrappedTpk = keyState.getWrappedTpk();
-                        LogUtil.e(TAG, "=== TPK (Terminal PIN Key) Details ===");
-                        LogUtil.e(TAG, "✓ TPK Slot: 12 (TPK_INDEX)");
-                        LogUtil.e(TAG, "✓ TPK KCV: " + (tpkKcv != null ? tpkKcv : "N/A"));
-                        LogUtil.e(TAG, "✓ PIN Key ID: " + (pinKeyId != null ? pinKeyId : "N/A"));
-                        LogUtil.e(TAG, "✓ Key System: MKSK (Master Key / Session Key)");
+                        LOG.d("=== TPK (Terminal PIN Key) Details ===");
+                        LOG.d("✓ TPK Slot: 12 (TPK_INDEX)");
+                        LOG.d("✓ TPK KCV: {}", tpkKcv != null ? tpkKcv : "N/A");
+                        LOG.d("✓ PIN Key ID: {}", pinKeyId != null ? pinKeyId : "N/A");
+                        LOG.d("✓ Key System: MKSK (Master Key / Session Key)");
                         if (wrappedTpk != null && !wrappedTpk.isEmpty()) {
-                            LogUtil.e(TAG, "✓ Wrapped TPK (encrypted under TMK): " + wrappedTpk);
-                            LogUtil.e(TAG, "  Note: This is the TPK encrypted under TMK.");
-                            LogUtil.e(TAG,
-                                    "  To decrypt PIN blocks: Unwrap TPK using TMK, then decrypt PIN block using TPK.");
+                            LOG.d("✓ Wrapped TPK (encrypted under TMK): {}", wrappedTpk);
+                            LOG.d("  Note: This is the TPK encrypted under TMK.");
+                            LOG.d("  To decrypt PIN blocks: Unwrap TPK using TMK, then decrypt PIN block using TPK.");
                         } else {
-                            LogUtil.e(TAG, "⚠️ Wrapped TPK: Not stored (may need to re-provision TPK)");
+                            LOG.w("⚠️ Wrapped TPK: Not stored (may need to re-provision TPK)");
                         }
                     } else {
-                        LogUtil.e(TAG, "⚠️ TPK Key State: Not available");
+                        LOG.w("⚠️ TPK Key State: Not available");
                     }
                 } catch (Exception e) {
-                    LogUtil.e(TAG, "⚠️ Failed to retrieve TPK information: " + e.getMessage());
+                    LOG.w("⚠️ Failed to retrieve TPK information: {}", e.getMessage());
                 }
             } else {
-                LogUtil.e(TAG, "⚠️ PIN Block length invalid: " + pinBlockHex.length() + " hex chars (expected 16)");
+                LOG.w("⚠️ PIN Block length invalid: {} hex chars (expected 16)", pinBlockHex.length());
             }
         } else {
-            LogUtil.e(TAG, "⚠️ No PIN block in request - Field 52 (DE52) will not be included");
+            LOG.w("⚠️ No PIN block in request - Field 52 (DE52) will not be included");
         }
 
         // Send actual PAN (unmasked) to ISO message - masking is only for
         // logging/display
         // Use 1200 for direct settlement (bank requirement)
         byte[] isoFrame = Iso8583Packer.pack1200(
+                emvContext(request),
                 request.pan != null ? request.pan : "",
                 "000000", // Processing Code
                 request.amount,
                 generateStan(request.date, request.time),
                 determinePosEntryMode(request),
                 request.currencyCode != null ? request.currencyCode : "818",
-                request.field55 != null ? request.field55 : "",
                 PaymentConfig.getTerminalId(),
                 PaymentConfig.getMerchantId(),
                 pinBlockHex, // DE52: PIN Block (optional, only for online PIN)
@@ -724,14 +725,14 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         if (isoFrame != null && isoFrame.length > 0) {
             String isoRawB64 = Base64.encodeToString(isoFrame, Base64.NO_WRAP);
             json.addProperty("iso_raw_b64", isoRawB64);
-            LogUtil.e(TAG, "✓ Raw ISO8583 frame (1200) attached - length: " + isoFrame.length + " bytes");
+            LOG.d("✓ Raw ISO8583 frame (1200) attached - length: {} bytes", isoFrame.length);
 
             // Save ISO frame to disk for debugging (only in DEBUG builds)
             if (com.neo.neopayplus.BuildConfig.DEBUG) {
                 IsoLogger.save(isoFrame, "1200");
             }
         } else {
-            LogUtil.e(TAG, "⚠️ Failed to pack ISO8583 frame");
+            LOG.w("⚠️ Failed to pack ISO8583 frame");
         }
 
         return json;
@@ -757,15 +758,14 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         // DE3: Processing Code ("000000" = Purchase, "200000" = Refund)
         String processingCode = "20".equals(request.transactionType) ? "200000" : "000000";
         isoFields.addProperty("3", processingCode);
-        LogUtil.e(TAG,
-                "DE3 Processing Code: " + processingCode + " (transaction type: " + request.transactionType + ")");
+        LOG.d("DE3 Processing Code: {} (transaction type: {})", processingCode, request.transactionType);
 
         // DE4: Amount, Authorized (in minor currency units)
         if (request.amount != null && !request.amount.isEmpty()) {
             isoFields.addProperty("4", request.amount);
         }
 
-        // DE11: STAN (Systems Trace Audit Number) - generated from timestamp
+        // DE11: STAN (Systems Trace Audit Number) - from the shared sequence
         String stan = generateStan(request.date, request.time);
         isoFields.addProperty("11", stan);
 
@@ -792,10 +792,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         // Contains all EMV tags (ARQC, CVM, AIP, etc.)
         if (request.field55 != null && !request.field55.isEmpty()) {
             isoFields.addProperty("55", request.field55);
-            LogUtil.e(TAG,
-                    "✓ DE55 (ICC Data) included in ISO fields - length: " + request.field55.length() + " hex chars");
+            LOG.d("✓ DE55 (ICC Data) included in ISO fields - length: {} hex chars", request.field55.length());
         } else {
-            LogUtil.e(TAG, "⚠️ No Field 55 available - DE55 will be empty");
+            LOG.w("⚠️ No Field 55 available - DE55 will be empty");
         }
 
         // DE60: Additional Data (optional - can include terminal ID, merchant ID, etc.)
@@ -814,30 +813,15 @@ public class PaymentApiServiceImpl implements PaymentApiService {
     }
 
     /**
-     * Generate STAN (Systems Trace Audit Number) from date/time
-     * Format: 6 digits (000000-999999), typically incremented per transaction
-     * 
-     * @param date Transaction date (YYMMDD)
-     * @param time Transaction time (HHMMSS)
+     * Next STAN (Systems Trace Audit Number) from the shared sequence
+     * Format: 6 digits (000001-999999), unique across calls and restarts
+     *
+     * @param date Transaction date (YYMMDD) - unused, kept for call sites
+     * @param time Transaction time (HHMMSS) - unused, kept for call sites
      * @return STAN as 6-digit string
      */
     private String generateStan(String date, String time) {
-        try {
-            // Use seconds from time + milliseconds to create unique STAN
-            if (time != null && time.length() >= 6) {
-                String seconds = time.substring(4, 6); // Last 2 digits (SS)
-                // Add milliseconds (0-9) to seconds for uniqueness
-                int millis = (int) (System.currentTimeMillis() % 1000) / 100; // 0-9
-                int stanValue = Integer.parseInt(seconds) * 10 + millis;
-                // Ensure 6 digits by padding
-                return String.format(Locale.US, "%06d", stanValue % 1000000);
-            }
-        } catch (Exception e) {
-            LogUtil.e(TAG, "Error generating STAN: " + e.getMessage());
-        }
-        // Fallback: use last 6 digits of timestamp
-        long timestamp = System.currentTimeMillis();
-        return String.format(Locale.US, "%06d", timestamp % 1000000);
+        return com.neo.neopayplus.data.SequenceService.getInstance().nextStan();
     }
 
     /**
@@ -883,38 +867,27 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         }
     }
 
-    private void parseEmvTagsFromField55(String field55, JsonObject emvData) {
-        // Simplified parsing - extract common tags like 9F26, 9F27, 9F10, 5A
-        // This is a simplified version - actual TLV parsing would be more robust
-        if (field55.contains("9F26")) {
-            // Extract 9F26 value (ARQC)
-            emvData.addProperty("9F26", extractTagValue(field55, "9F26"));
-        }
-        if (field55.contains("9F27")) {
-            emvData.addProperty("9F27", extractTagValue(field55, "9F27"));
-        }
-        if (field55.contains("9F10")) {
-            emvData.addProperty("9F10", extractTagValue(field55, "9F10"));
-        }
-        if (field55.contains("5A")) {
-            emvData.addProperty("5A", extractTagValue(field55, "5A"));
+    /**
+     * EMV context of the request: the one built with DE55, or (for callers
+     * that only set field55) decoded from the hex once and kept on the request
+     */
+    private static EmvTransactionContext emvContext(AuthorizationRequest request) {
+        if (request.emvContext == null && request.field55 != null && !request.field55.isEmpty()) {
+            request.emvContext = EmvTransactionContext.fromDe55Hex(request.field55);
         }
+        return request.emvContext;
     }
 
-    private String extractTagValue(String tlv, String tag) {
-        // Simplified - find tag and extract value
-        // In production, use proper TLV parser
-        int tagIndex = tlv.indexOf(tag);
-        if (tagIndex >= 0) {
-            // Skip tag (4 hex chars) and length (2 hex chars)
-            int valueStart = tagIndex + 6;
-            if (valueStart < tlv.length()) {
-                // Assume 16 hex chars for value (simplified)
-                int valueEnd = Math.min(valueStart + 16, tlv.length());
-                return tlv.substring(valueStart, valueEnd);
+    private void addEmvTags(EmvTransactionContext emv, JsonObject emvData) {
+        if (emv == null) {
+            return;
+        }
+        for (String tag : new String[] { "9F26", "9F27", "9F10", "5A" }) {
+            String value = emv.tag(tag);
+            if (value != null) {
+                emvData.addProperty(tag, value);
             }
         }
-        return "";
     }
 
     private double parseAmount(String amountStr) {
@@ -941,7 +914,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 return String.format("%s-%s-%sT%s:%s:%sZ", year, month, day, hour, minute, second);
             }
         } catch (Exception e) {
-            LogUtil.e(TAG, "Error formatting datetime: " + e.getMessage());
+            LOG.e("Error formatting datetime: {}", e.getMessage());
         }
         // Fallback to current time (ISO 8601 format, compatible with API 24+)
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
@@ -977,28 +950,21 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * - 55 = INCORRECT PIN (terminal will retry)
      * - 63 = SECURITY VIOLATION (PIN attempts exceeded)
      * - Other = Transaction declined for other reasons
+     *
+     * @param body Response decoded by {@link ApiJson#AUTHORIZATION}
      */
-    private AuthorizationResponse parseResponse(String responseBody) throws Exception {
-        Gson gson = new Gson();
-        JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-
+    private AuthorizationResponse parseResponse(ApiJson.AuthorizationBody body) {
         // Backend API spec format: response_code, response_message, auth_code,
         // issuer_auth_data, field_55, rrn
-        String responseCode = json.has("response_code") ? json.get("response_code").getAsString() : "XX";
-        String responseMessage = json.has("response_message") ? json.get("response_message").getAsString() : "";
-        String authCode = json.has("auth_code") ? json.get("auth_code").getAsString() : "";
-        String rrn = json.has("rrn") ? json.get("rrn").getAsString() : "";
-        // Handle issuer_auth_data - may be undefined, null, or empty in JSON
-        String issuerAuthData = "";
-        if (json.has("issuer_auth_data") && !json.get("issuer_auth_data").isJsonNull()) {
-            try {
-                issuerAuthData = json.get("issuer_auth_data").getAsString();
-            } catch (Exception e) {
-                LogUtil.e(TAG, "⚠️ Error reading issuer_auth_data: " + e.getMessage());
-                issuerAuthData = "";
-            }
-        }
-        String field55 = json.has("field_55") ? json.get("field_55").getAsString() : "";
+        String responseCode = body.responseCode;
+        String responseMessage = body.responseMessage;
+        String authCode = body.authCode;
+        String rrn = body.rrn;
+        // issuer_auth_data may be undefined, null, or empty in JSON (all read as "")
+        String issuerAuthData = body.issuerAuthData;
+        LOG.d("=== Production API Response ===");
+        LOG.d("  response_code={} auth_code={} rrn={} issuer_scripts={}", responseCode, authCode, rrn,
+                body.issuerScriptCount);
 
         boolean approved = "00".equals(responseCode);
 
@@ -1014,16 +980,10 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             String emvResponseCode = convertIsoResponseToEmv8A(responseCode);
             responseTagList.add("8A");
             responseValueList.add(emvResponseCode);
-            LogUtil.e(TAG, "✓ Generated tag 8A locally (Authorization Response Code): " + emvResponseCode);
+            LOG.d("✓ Generated tag 8A locally (Authorization Response Code): {}", emvResponseCode);
 
             // Check if issuer scripts are present first (affects tag 91 requirement)
-            boolean hasIssuerScripts = false;
-            if (json.has("issuer_scripts") && json.get("issuer_scripts").isJsonArray()) {
-                JsonArray scripts = json.getAsJsonArray("issuer_scripts");
-                if (scripts != null && scripts.size() > 0) {
-                    hasIssuerScripts = true;
-                }
-            }
+            boolean hasIssuerScripts = body.issuerScriptCount > 0;
 
             // Tag 91: Issuer Authentication Data (REQUIRED for second GENERATE AC)
             // If backend provides issuer_auth_data, validate and use it
@@ -1032,40 +992,41 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 // Validate tag 91 format (should be 20 hex chars = 10 bytes)
                 String iad = issuerAuthData.trim();
                 if (iad.length() < 16 || iad.length() > 40) {
-                    LogUtil.e(TAG, "⚠️ WARNING: Tag 91 length may be incorrect: " + iad.length()
-                            + " chars (expected 20 hex chars = 10 bytes)");
+                    LOG.w("⚠️ WARNING: Tag 91 length may be incorrect: {} chars (expected 20 hex chars = 10 bytes)",
+                            iad.length());
                 }
 
                 // Validate hex format
                 if (!iad.matches("[0-9A-Fa-f]+")) {
-                    LogUtil.e(TAG, "❌ ERROR: Tag 91 contains invalid hex characters: " + iad);
+                    LOG.e("❌ ERROR: Tag 91 contains invalid hex characters: {}", iad);
                     return AuthorizationResponse.declined("96",
                             "System error: Invalid issuer authentication data format (tag 91)");
                 }
 
                 responseTagList.add("91");
                 responseValueList.add(iad.toUpperCase()); // Normalize to uppercase
-                LogUtil.e(TAG, "✓ Using tag 91 from backend (Issuer Authentication Data from bank): "
-                        + iad.substring(0, Math.min(8, iad.length())) + "... (length: " + iad.length() + " hex chars)");
+                LOG.d("✓ Using tag 91 from backend (Issuer Authentication Data from bank): {}... (length: {} hex chars)",
+                        iad.substring(0, Math.min(8, iad.length())), iad.length());
             } else {
                 // Backend did not provide tag 91 - add it as empty string
-                LogUtil.e(TAG, "⚠️ Backend did not provide issuer_auth_data (tag 91) - adding as empty string");
+                LOG.w("⚠️ Backend did not provide issuer_auth_data (tag 91) - adding as empty string");
                 responseTagList.add("91");
                 responseValueList.add(""); // Empty string for tag 91
             }
 
             // Optional: Parse issuer scripts from backend if provided (but not required)
             if (hasIssuerScripts) {
-                JsonArray scripts = json.getAsJsonArray("issuer_scripts");
-                appendScriptArray(scripts, responseTagList, responseValueList);
-                LogUtil.e(TAG, "✓ Parsed issuer_scripts from backend");
+                // Entries without both tag and value were dropped while decoding
+                responseTagList.addAll(body.scriptTags);
+                responseValueList.addAll(body.scriptValues);
+                LOG.d("✓ Parsed issuer_scripts from backend");
             }
         } else {
             // For declined transactions, set 8A to decline code
             String emvResponseCode = convertIsoResponseToEmv8A(responseCode);
             responseTagList.add("8A");
             responseValueList.add(emvResponseCode);
-            LogUtil.e(TAG, "✓ Generated tag 8A (Decline Code): " + emvResponseCode);
+            LOG.d("✓ Generated tag 8A (Decline Code): {}", emvResponseCode);
         }
 
         String[] responseTags = responseTagList.toArray(new String[0]);
@@ -1073,45 +1034,25 @@ public class PaymentApiServiceImpl implements PaymentApiService {
 
         // Log PIN verification result
         if ("55".equals(responseCode)) {
-            LogUtil.e(TAG, "⚠️ Backend PIN verification: INCORRECT PIN (response code 55)");
+            LOG.w("⚠️ Backend PIN verification: INCORRECT PIN (response code 55)");
         } else if ("63".equals(responseCode)) {
-            LogUtil.e(TAG, "⚠️ Backend PIN verification: SECURITY VIOLATION (response code 63)");
+            LOG.w("⚠️ Backend PIN verification: SECURITY VIOLATION (response code 63)");
         }
 
         if (approved) {
-            LogUtil.e(TAG, "✓ Backend authorization: APPROVED");
-            LogUtil.e(TAG, "  Auth Code: " + authCode);
-            LogUtil.e(TAG, "  RRN: " + rrn);
+            LOG.d("✓ Backend authorization: APPROVED");
+            LOG.d("  Auth Code: {}", authCode);
+            LOG.d("  RRN: {}", rrn);
             return AuthorizationResponse.success(authCode, rrn, responseTags, responseValues);
         } else {
-            LogUtil.e(TAG, "⚠️ Backend authorization: DECLINED (from bank)");
-            LogUtil.e(TAG, "  Response Code: " + responseCode);
-            LogUtil.e(TAG, "  Message: " + responseMessage);
+            LOG.w("⚠️ Backend authorization: DECLINED (from bank)");
+            LOG.d("  Response Code: {}", responseCode);
+            LOG.d("  Message: {}", responseMessage);
             // Production API decline = bank decline
             return AuthorizationResponse.declined(responseCode, responseMessage, true);
         }
     }
 
-    private void appendScriptArray(JsonArray scripts, List<String> tags, List<String> values) {
-        if (scripts == null) {
-            return;
-        }
-        for (int i = 0; i < scripts.size(); i++) {
-            try {
-                JsonObject script = scripts.get(i).getAsJsonObject();
-                if (script == null)
-                    continue;
-                String tag = script.has("tag") ? script.get("tag").getAsString() : null;
-                String value = script.has("value") ? script.get("value").getAsString() : null;
-                if (tag != null && !tag.isEmpty() && value != null && !value.isEmpty()) {
-                    tags.add(tag);
-                    values.add(value);
-                }
-            } catch (Exception ignored) {
-            }
-        }
-    }
-
     private AuthorizationResponse createMockSuccessResponse(AuthorizationRequest request) {
         // Per spec format: response_code="00", response_message="APPROVED", auth_code,
         // issuer_auth_data, rrn
@@ -1351,9 +1292,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Mock key rotation (returns mock keys for testing)
      */
     private void callMockKeyRotation(KeyRotationRequest request, KeyRotationCallback callback) {
-        LogUtil.e(TAG, "=== MOCK: Key Rotation Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + request.terminalId);
-        LogUtil.e(TAG, "  Key Type: " + request.keyType);
+        LOG.d("=== MOCK: Key Rotation Request ===");
+        LOG.d("  Terminal ID: {}", request.terminalId);
+        LOG.d("  Key Type: {}", request.keyType);
 
         new Thread(() -> {
             if (simulateNetworkDelay) {
@@ -1381,11 +1322,11 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     mockEffectiveDate,
                     mockCiphertext);
 
-            LogUtil.e(TAG, "=== MOCK: Key Rotation Success ===");
-            LogUtil.e(TAG, "  Key Index: " + mockKeyIndex);
-            LogUtil.e(TAG, "  IPEK: " + mockIpek.substring(0, 8) + "****");
-            LogUtil.e(TAG, "  KSN: " + mockKsn);
-            LogUtil.e(TAG, "  ⚠️ WARNING: These are MOCK keys - never use in production!");
+            LOG.d("=== MOCK: Key Rotation Success ===");
+            LOG.d("  Key Index: {}", mockKeyIndex);
+            LOG.d("  IPEK: {}****", mockIpek.substring(0, 8));
+            LOG.d("  KSN: {}", mockKsn);
+            LOG.w("  ⚠️ WARNING: These are MOCK keys - never use in production!");
 
             final KeyRotationResponse finalResponse = response;
             mainHandler.post(() -> callback.onKeyRotationComplete(finalResponse));
@@ -1396,10 +1337,10 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Production key rotation (calls actual backend API)
      */
     private void callProductionKeyRotation(KeyRotationRequest request, KeyRotationCallback callback) {
-        LogUtil.e(TAG, "=== PRODUCTION: Key Rotation Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + request.terminalId);
-        LogUtil.e(TAG, "  Key Type: " + request.keyType);
-        LogUtil.e(TAG, "  Endpoint: " + buildUrl(ROUTE_KEY_ROTATION));
+        LOG.d("=== PRODUCTION: Key Rotation Request ===");
+        LOG.d("  Terminal ID: {}", request.terminalId);
+        LOG.d("  Key Type: {}", request.keyType);
+        LOG.d("  Endpoint: {}", buildUrl(ROUTE_KEY_ROTATION));
 
         try {
             // Build JSON request
@@ -1407,8 +1348,8 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             requestJson.addProperty("terminal_id", request.terminalId);
             requestJson.addProperty("key_type", request.keyType);
 
-            String jsonBody = new Gson().toJson(requestJson);
-            LogUtil.e(TAG, "  Request body: " + jsonBody);
+            String jsonBody = GsonUtil.gson().toJson(requestJson);
+            LOG.d("  Request body: {}", jsonBody);
 
             // Build HTTP request
             Request httpRequest = new Request.Builder()
@@ -1422,7 +1363,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             httpClient.newCall(httpRequest).enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
-                    LogUtil.e(TAG, "❌ Key rotation request failed: " + e.getMessage());
+                    LOG.e("❌ Key rotation request failed: {}", e.getMessage());
                     mainHandler.post(() -> callback.onKeyRotationError(e));
                 }
 
@@ -1430,26 +1371,26 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 public void onResponse(Call call, Response response) throws IOException {
                     if (!response.isSuccessful()) {
                         String errorBody = response.body() != null ? response.body().string() : "";
-                        LogUtil.e(TAG, "❌ Key rotation failed: HTTP " + response.code() + " - " + errorBody);
+                        LOG.e("❌ Key rotation failed: HTTP {} - {}", response.code(), errorBody);
                         mainHandler.post(() -> callback.onKeyRotationError(
                                 new IOException("Key rotation failed: HTTP " + response.code())));
                         return;
                     }
 
                     String responseBody = response.body().string();
-                    LogUtil.e(TAG, "✓ Key rotation response received");
+                    LOG.d("✓ Key rotation response received");
 
                     try {
                         KeyRotationResponse rotationResponse = parseKeyRotationResponse(responseBody);
                         mainHandler.post(() -> callback.onKeyRotationComplete(rotationResponse));
                     } catch (Exception e) {
-                        LogUtil.e(TAG, "❌ Error parsing key rotation response: " + e.getMessage());
+                        LOG.e("❌ Error parsing key rotation response: {}", e.getMessage());
                         mainHandler.post(() -> callback.onKeyRotationError(e));
                     }
                 }
             });
         } catch (Exception e) {
-            LogUtil.e(TAG, "❌ Error building key rotation request: " + e.getMessage());
+            LOG.e("❌ Error building key rotation request: {}", e.getMessage());
             mainHandler.post(() -> callback.onKeyRotationError(e));
         }
     }
@@ -1458,7 +1399,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Parse key rotation response from JSON
      */
     private KeyRotationResponse parseKeyRotationResponse(String json) {
-        JsonObject jsonObject = new Gson().fromJson(json, JsonObject.class);
+        JsonObject jsonObject = GsonUtil.gson().fromJson(json, JsonObject.class);
 
         if (!"success".equals(jsonObject.get("status").getAsString())) {
             String message = jsonObject.has("message") ? jsonObject.get("message").getAsString() : "Unknown error";
@@ -1481,8 +1422,8 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         if (httpClient == null) {
             throw new IOException("HTTP client not initialized");
         }
-        String bodyString = new Gson().toJson(payload);
-        LogUtil.e(TAG, "POST " + url + " body=" + maskSensitiveData(bodyString));
+        String bodyString = GsonUtil.gson().toJson(payload);
+        LOG.d("POST {} body={}", url, maskSensitiveData(bodyString));
         RequestBody requestBody = RequestBody.create(JSON, bodyString);
         Request.Builder builder = new Request.Builder()
                 .url(url)
@@ -1503,7 +1444,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
     private TerminalRegisterResponse parseTerminalRegisterResponse(String body) {
         TerminalRegisterResponse response = new TerminalRegisterResponse();
         try {
-            JsonObject obj = new Gson().fromJson(body, JsonObject.class);
+            JsonObject obj = GsonUtil.gson().fromJson(body, JsonObject.class);
             response.success = isSuccessStatus(obj);
             response.terminalId = firstString(obj, "terminalId", "terminal_id");
             response.message = firstString(obj, "message", "detail", "status");
@@ -1520,7 +1461,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
     private TmkProvisionResponse parseTmkProvisionResponse(String body) {
         TmkProvisionResponse response = new TmkProvisionResponse();
         try {
-            JsonObject obj = new Gson().fromJson(body, JsonObject.class);
+            JsonObject obj = GsonUtil.gson().fromJson(body, JsonObject.class);
             response.success = isSuccessStatus(obj);
             response.terminalId = firstString(obj, "terminalId", "terminal_id");
             response.wrappedTmk = firstString(obj, "tmkCipher", "wrapped_tmk", "wrappedTmk", "tmk", "tmk_b64",
@@ -1543,7 +1484,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
     private TpkProvisionResponse parseTpkProvisionResponse(String body) {
         TpkProvisionResponse response = new TpkProvisionResponse();
         try {
-            JsonObject obj = new Gson().fromJson(body, JsonObject.class);
+            JsonObject obj = GsonUtil.gson().fromJson(body, JsonObject.class);
             response.success = isSuccessStatus(obj);
             response.terminalId = firstString(obj, "terminalId", "terminal_id");
             response.wrappedTpk = firstString(obj, "wrapped_tpk", "tpk", "tpk_b64", "wrappedTpk", "tpkCipher");
@@ -1618,7 +1559,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         stub.addProperty("type", "TR-31-stub");
         stub.addProperty("ipek", ipek);
         stub.addProperty("ksn", ksn);
-        String json = new Gson().toJson(stub);
+        String json = GsonUtil.gson().toJson(stub);
         return android.util.Base64.encodeToString(json.getBytes(), android.util.Base64.NO_WRAP);
     }
 
@@ -1637,8 +1578,8 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Mock DUKPT keys fetch (returns mock keys for testing)
      */
     private void callMockDukptKeys(String terminalId, DukptKeysCallback callback) {
-        LogUtil.e(TAG, "=== MOCK: DUKPT Keys Fetch Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + terminalId);
+        LOG.d("=== MOCK: DUKPT Keys Fetch Request ===");
+        LOG.d("  Terminal ID: {}", terminalId);
 
         new Thread(() -> {
             if (simulateNetworkDelay) {
@@ -1666,11 +1607,11 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     mockEffectiveDate,
                     mockCiphertext);
 
-            LogUtil.e(TAG, "=== MOCK: DUKPT Keys Fetch Success ===");
-            LogUtil.e(TAG, "  Key Index: " + mockKeyIndex);
-            LogUtil.e(TAG, "  IPEK: " + mockIpek.substring(0, 8) + "****");
-            LogUtil.e(TAG, "  KSN: " + mockKsn);
-            LogUtil.e(TAG, "  ⚠️ WARNING: These are MOCK keys - never use in production!");
+            LOG.d("=== MOCK: DUKPT Keys Fetch Success ===");
+            LOG.d("  Key Index: {}", mockKeyIndex);
+            LOG.d("  IPEK: {}****", mockIpek.substring(0, 8));
+            LOG.d("  KSN: {}", mockKsn);
+            LOG.w("  ⚠️ WARNING: These are MOCK keys - never use in production!");
 
             final DukptKeysResponse finalResponse = response;
             mainHandler.post(() -> callback.onDukptKeysComplete(finalResponse));
@@ -1681,9 +1622,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Production DUKPT keys fetch (calls actual backend API)
      */
     private void callProductionDukptKeys(String terminalId, DukptKeysCallback callback) {
-        LogUtil.e(TAG, "=== PRODUCTION: DUKPT Keys Fetch Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + terminalId);
-        LogUtil.e(TAG, "  Endpoint: " + buildUrl(ROUTE_DUKPT_KEYS));
+        LOG.d("=== PRODUCTION: DUKPT Keys Fetch Request ===");
+        LOG.d("  Terminal ID: {}", terminalId);
+        LOG.d("  Endpoint: {}", buildUrl(ROUTE_DUKPT_KEYS));
 
         try {
             // Build URL with terminal_id query parameter
@@ -1698,13 +1639,13 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     .addHeader("Authorization", "Bearer " + (apiKey != null ? apiKey : "test-token"))
                     .build();
 
-            LogUtil.e(TAG, "  Request URL: " + url);
+            LOG.d("  Request URL: {}", url);
 
             // Execute request asynchronously
             httpClient.newCall(httpRequest).enqueue(new Callback() {
                 @Override
                 public void onFailure(Call call, IOException e) {
-                    LogUtil.e(TAG, "❌ DUKPT keys fetch request failed: " + e.getMessage());
+                    LOG.e("❌ DUKPT keys fetch request failed: {}", e.getMessage());
                     mainHandler.post(() -> callback.onDukptKeysError(e));
                 }
 
@@ -1712,27 +1653,27 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 public void onResponse(Call call, Response response) throws IOException {
                     if (!response.isSuccessful()) {
                         String errorBody = response.body() != null ? response.body().string() : "";
-                        LogUtil.e(TAG, "❌ DUKPT keys fetch failed: HTTP " + response.code() + " - " + errorBody);
+                        LOG.e("❌ DUKPT keys fetch failed: HTTP {} - {}", response.code(), errorBody);
                         mainHandler.post(() -> callback.onDukptKeysError(
                                 new IOException("DUKPT keys fetch failed: HTTP " + response.code())));
                         return;
                     }
 
                     String responseBody = response.body() != null ? response.body().string() : "{}";
-                    LogUtil.e(TAG, "✓ DUKPT keys response received");
-                    LogUtil.e(TAG, responseBody);
+                    LOG.d("✓ DUKPT keys response received");
+                    LOG.d(responseBody);
 
                     try {
                         DukptKeysResponse dukptResponse = parseDukptKeysResponse(responseBody);
                         mainHandler.post(() -> callback.onDukptKeysComplete(dukptResponse));
                     } catch (Exception e) {
-                        LogUtil.e(TAG, "❌ Error parsing DUKPT keys response: " + e.getMessage());
+                        LOG.e("❌ Error parsing DUKPT keys response: {}", e.getMessage());
                         mainHandler.post(() -> callback.onDukptKeysError(e));
                     }
                 }
             });
         } catch (Exception e) {
-            LogUtil.e(TAG, "❌ Error building DUKPT keys request: " + e.getMessage());
+            LOG.e("❌ Error building DUKPT keys request: {}", e.getMessage());
             mainHandler.post(() -> callback.onDukptKeysError(e));
         }
     }
@@ -1752,7 +1693,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * }
      */
     private DukptKeysResponse parseDukptKeysResponse(String json) {
-        JsonObject jsonObject = new Gson().fromJson(json, JsonObject.class);
+        JsonObject jsonObject = GsonUtil.gson().fromJson(json, JsonObject.class);
 
         // Check if response indicates success
         String status = jsonObject.has("status") ? jsonObject.get("status").getAsString() : "success";
@@ -1794,16 +1735,16 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Call production reversal API endpoint
      */
     private void callProductionReversalApi(ReversalRequest request, ReversalCallback callback) {
-        LogUtil.e(TAG, "=== PRODUCTION API: Reversal Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + request.terminalId);
-        LogUtil.e(TAG, "  Transaction ID: " + request.transactionId);
-        LogUtil.e(TAG, "  RRN: " + request.rrn);
-        LogUtil.e(TAG, "  Amount: " + request.amount);
-        LogUtil.e(TAG, "  Reason: " + request.reversalReason);
+        LOG.d("=== PRODUCTION API: Reversal Request ===");
+        LOG.d("  Terminal ID: {}", request.terminalId);
+        LOG.d("  Transaction ID: {}", request.transactionId);
+        LOG.d("  RRN: {}", request.rrn);
+        LOG.d("  Amount: {}", request.amount);
+        LOG.d("  Reason: {}", request.reversalReason);
 
         try {
             JsonObject requestJson = buildReversalRequestJson(request);
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             String requestBodyStr = gson.toJson(requestJson);
             RequestBody requestBody = RequestBody.create(JSON, requestBodyStr);
 
@@ -1816,9 +1757,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     .addHeader("Authorization", "Bearer " + (apiKey != null ? apiKey : "test-token"))
                     .build();
 
-            LogUtil.e(TAG, "Calling production reversal API: " + url);
+            LOG.d("Calling production reversal API: {}", url);
             if (com.neo.neopayplus.BuildConfig.DEBUG) {
-                LogUtil.e(TAG, "Request body: " + requestBodyStr);
+                LOG.d("Request body: {}", requestBodyStr);
             }
 
             httpClient.newCall(httpRequest).enqueue(new Callback() {
@@ -1833,21 +1774,20 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     try {
                         if (!response.isSuccessful()) {
                             String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                            LogUtil.e(TAG,
-                                    "❌ Production reversal API error: HTTP " + response.code() + " - " + errorBody);
+                            LOG.e("❌ Production reversal API error: HTTP {} - {}", response.code(), errorBody);
                             IOException error = new IOException("HTTP " + response.code() + ": " + errorBody);
                             mainHandler.post(() -> callback.onReversalError(error));
                             return;
                         }
 
                         String responseBody = response.body() != null ? response.body().string() : "{}";
-                        LogUtil.e(TAG, "=== Production Reversal API Response ===");
-                        LogUtil.e(TAG, responseBody);
+                        LOG.d("=== Production Reversal API Response ===");
+                        LOG.d(responseBody);
 
                         ReversalResponse reversalResponse = parseReversalResponse(responseBody);
                         mainHandler.post(() -> callback.onReversalComplete(reversalResponse));
                     } catch (Exception e) {
-                        LogUtil.e(TAG, "❌ Error parsing production reversal API response: " + e.getMessage());
+                        LOG.e("❌ Error parsing production reversal API response: {}", e.getMessage());
                         mainHandler.post(() -> callback.onReversalError(e));
                     } finally {
                         if (response.body() != null)
@@ -1871,19 +1811,19 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         // Use transaction_id instead of rrn
         if (request.transactionId != null && !request.transactionId.isEmpty()) {
             json.addProperty("transaction_id", request.transactionId);
-            LogUtil.e(TAG, "✓ Using transaction_id for reversal: " + request.transactionId);
+            LOG.d("✓ Using transaction_id for reversal: {}", request.transactionId);
 
             // Validate that transaction is settled before allowing refund
             com.neo.neopayplus.data.TransactionJournal.TransactionRecord tx = com.neo.neopayplus.data.TransactionJournal
                     .findTransactionById(request.transactionId);
             if (tx != null && !tx.isSettled) {
-                LogUtil.e(TAG, "❌ Refund rejected: Transaction not settled. Transaction ID: " + request.transactionId);
+                LOG.e("❌ Refund rejected: Transaction not settled. Transaction ID: {}", request.transactionId);
                 // Note: Server should also validate this, but we check here for better UX
             }
         } else if (request.rrn != null && !request.rrn.isEmpty()) {
             // Fallback to RRN for backward compatibility
             json.addProperty("rrn", request.rrn);
-            LogUtil.e(TAG, "⚠️ Using RRN for reversal (transaction_id not provided): " + request.rrn);
+            LOG.w("⚠️ Using RRN for reversal (transaction_id not provided): {}", request.rrn);
         }
         json.addProperty("amount", request.amount);
         json.addProperty("currency", request.currencyCode != null ? request.currencyCode : "818");
@@ -1904,12 +1844,12 @@ public class PaymentApiServiceImpl implements PaymentApiService {
         if (isoFrame != null && isoFrame.length > 0) {
             String isoRawB64 = Base64.encodeToString(isoFrame, Base64.NO_WRAP);
             json.addProperty("iso_raw_b64", isoRawB64);
-            LogUtil.e(TAG, "✓ Raw ISO8583 frame (0400) attached - length: " + isoFrame.length + " bytes");
+            LOG.d("✓ Raw ISO8583 frame (0400) attached - length: {} bytes", isoFrame.length);
 
             // Save ISO frame to disk for debugging
             IsoLogger.save(isoFrame, "0400");
         } else {
-            LogUtil.e(TAG, "⚠️ Failed to pack ISO8583 reversal frame");
+            LOG.w("⚠️ Failed to pack ISO8583 reversal frame");
         }
 
         return json;
@@ -1919,8 +1859,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Generate STAN for reversal
      */
     private String generateStanForReversal() {
-        long timestamp = System.currentTimeMillis();
-        return String.format(Locale.US, "%06d", timestamp % 1000000);
+        return com.neo.neopayplus.data.SequenceService.getInstance().nextStan();
     }
 
     /**
@@ -1928,7 +1867,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      */
     private ReversalResponse parseReversalResponse(String responseBody) {
         try {
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             JsonObject json = gson.fromJson(responseBody, JsonObject.class);
 
             String responseCode = json.has("response_code") ? json.get("response_code").getAsString() : "";
@@ -1936,10 +1875,10 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     : (json.has("message") ? json.get("message").getAsString() : "");
 
             if ("00".equals(responseCode)) {
-                LogUtil.e(TAG, "✓ Reversal approved: " + responseMessage);
+                LOG.d("✓ Reversal approved: {}", responseMessage);
                 return ReversalResponse.success(responseCode, responseMessage);
             } else {
-                LogUtil.e(TAG, "❌ Reversal declined: " + responseCode + " - " + responseMessage);
+                LOG.e("❌ Reversal declined: {} - {}", responseCode, responseMessage);
                 return ReversalResponse.declined(responseCode, responseMessage);
             }
         } catch (Exception e) {
@@ -1952,8 +1891,8 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Call mock reversal API (for testing without backend)
      */
     private void callMockReversalApi(ReversalRequest request, ReversalCallback callback) {
-        LogUtil.e(TAG, "=== MOCK: Reversal Request ===");
-        LogUtil.e(TAG, request.toString());
+        LOG.d("=== MOCK: Reversal Request ===");
+        LOG.d("{}", request);
 
         new Thread(() -> {
             if (simulateNetworkDelay) {
@@ -1971,8 +1910,8 @@ public class PaymentApiServiceImpl implements PaymentApiService {
             ReversalResponse response = shouldApprove ? ReversalResponse.success("00", "REVERSAL_APPROVED")
                     : ReversalResponse.declined("94", "NO_MATCH");
 
-            LogUtil.e(TAG, "=== MOCK: Reversal " + (shouldApprove ? "APPROVED" : "DECLINED") + " ===");
-            LogUtil.e(TAG, response.toString());
+            LOG.d("=== MOCK: Reversal {} ===", shouldApprove ? "APPROVED" : "DECLINED");
+            LOG.d("{}", response);
 
             final ReversalResponse finalResponse = response;
             mainHandler.post(() -> callback.onReversalComplete(finalResponse));
@@ -1992,15 +1931,14 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Call production key announcement API endpoint
      */
     private void callProductionKeyAnnounceApi(KeyAnnounceRequest request, KeyAnnounceCallback callback) {
-        LogUtil.e(TAG, "=== PRODUCTION API: Key Announce Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + request.terminalId);
-        LogUtil.e(TAG, "  KCV: " + request.kcv);
-        LogUtil.e(TAG,
-                "  Key Block Length: " + (request.kbPosB64 != null ? request.kbPosB64.length() : 0) + " (base64)");
+        LOG.d("=== PRODUCTION API: Key Announce Request ===");
+        LOG.d("  Terminal ID: {}", request.terminalId);
+        LOG.d("  KCV: {}", request.kcv);
+        LOG.d("  Key Block Length: {} (base64)", request.kbPosB64 != null ? request.kbPosB64.length() : 0);
 
         try {
             JsonObject requestJson = buildKeyAnnounceRequestJson(request);
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             String requestBodyStr = gson.toJson(requestJson);
             RequestBody requestBody = RequestBody.create(JSON, requestBodyStr);
 
@@ -2013,7 +1951,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     .addHeader("Authorization", "Bearer " + (apiKey != null ? apiKey : "test-token"))
                     .build();
 
-            LogUtil.e(TAG, "Calling production key announcement API: " + url);
+            LOG.d("Calling production key announcement API: {}", url);
             if (com.neo.neopayplus.BuildConfig.DEBUG) {
                 // Don't log full key block in production
                 JsonObject maskedJson = requestJson.deepCopy();
@@ -2023,7 +1961,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                             : "***";
                     maskedJson.addProperty("kb_pos_b64", masked);
                 }
-                LogUtil.e(TAG, "Request body (masked): " + gson.toJson(maskedJson));
+                LOG.d("Request body (masked): {}", gson.toJson(maskedJson));
             }
 
             httpClient.newCall(httpRequest).enqueue(new Callback() {
@@ -2038,21 +1976,20 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                     try {
                         if (!response.isSuccessful()) {
                             String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                            LogUtil.e(TAG, "❌ Production key announcement API error: HTTP " + response.code() + " - "
-                                    + errorBody);
+                            LOG.e("❌ Production key announcement API error: HTTP {} - {}", response.code(), errorBody);
                             IOException error = new IOException("HTTP " + response.code() + ": " + errorBody);
                             mainHandler.post(() -> callback.onKeyAnnounceError(error));
                             return;
                         }
 
                         String responseBody = response.body() != null ? response.body().string() : "{}";
-                        LogUtil.e(TAG, "=== Production Key Announce API Response ===");
-                        LogUtil.e(TAG, responseBody);
+                        LOG.d("=== Production Key Announce API Response ===");
+                        LOG.d(responseBody);
 
                         KeyAnnounceResponse announceResponse = parseKeyAnnounceResponse(responseBody);
                         mainHandler.post(() -> callback.onKeyAnnounceComplete(announceResponse));
                     } catch (Exception e) {
-                        LogUtil.e(TAG, "❌ Error parsing production key announcement API response: " + e.getMessage());
+                        LOG.e("❌ Error parsing production key announcement API response: {}", e.getMessage());
                         mainHandler.post(() -> callback.onKeyAnnounceError(e));
                     } finally {
                         if (response.body() != null)
@@ -2086,7 +2023,7 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      */
     private KeyAnnounceResponse parseKeyAnnounceResponse(String responseBody) {
         try {
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             JsonObject json = gson.fromJson(responseBody, JsonObject.class);
 
             String status = json.has("status") ? json.get("status").getAsString() : "";
@@ -2095,11 +2032,11 @@ public class PaymentApiServiceImpl implements PaymentApiService {
                 int setId = json.has("pin_key_set") ? json.get("pin_key_set").getAsInt() : 1001;
                 int verId = json.has("pin_key_ver") ? json.get("pin_key_ver").getAsInt() : 1;
 
-                LogUtil.e(TAG, "✓ Key announced successfully - pin_key_id: " + pinKeyId);
+                LOG.d("✓ Key announced successfully - pin_key_id: {}", pinKeyId);
                 return KeyAnnounceResponse.success(pinKeyId, setId, verId);
             } else {
                 String message = json.has("message") ? json.get("message").getAsString() : "Unknown error";
-                LogUtil.e(TAG, "❌ Key announcement failed: " + message);
+                LOG.e("❌ Key announcement failed: {}", message);
                 return KeyAnnounceResponse.error(new Exception(message), message);
             }
         } catch (Exception e) {
@@ -2112,9 +2049,9 @@ public class PaymentApiServiceImpl implements PaymentApiService {
      * Call mock key announcement API (for testing without backend)
      */
     private void callMockKeyAnnounceApi(KeyAnnounceRequest request, KeyAnnounceCallback callback) {
-        LogUtil.e(TAG, "=== MOCK: Key Announce Request ===");
-        LogUtil.e(TAG, "  Terminal ID: " + request.terminalId);
-        LogUtil.e(TAG, "  KCV: " + request.kcv);
+        LOG.d("=== MOCK: Key Announce Request ===");
+        LOG.d("  Terminal ID: {}", request.terminalId);
+        LOG.d("  KCV: {}", request.kcv);
 
         new Thread(() -> {
             if (simulateNetworkDelay) {
@@ -2135,10 +2072,10 @@ public class PaymentApiServiceImpl implements PaymentApiService {
 
             KeyAnnounceResponse response = KeyAnnounceResponse.success(mockPinKeyId, mockSetId, mockVerId);
 
-            LogUtil.e(TAG, "=== MOCK: Key Announce SUCCESS ===");
-            LogUtil.e(TAG, "  pin_key_id: " + mockPinKeyId);
-            LogUtil.e(TAG, "  pin_key_set: " + mockSetId);
-            LogUtil.e(TAG, "  pin_key_ver: " + mockVerId);
+            LOG.d("=== MOCK: Key Announce SUCCESS ===");
+            LOG.d("  pin_key_id: {}", mockPinKeyId);
+            LOG.d("  pin_key_set: {}", mockSetId);
+            LOG.d("  pin_key_ver: {}", mockVerId);
 
             final KeyAnnounceResponse finalResponse = response;
             mainHandler.post(() -> callback.onKeyAnnounceComplete(finalResponse));
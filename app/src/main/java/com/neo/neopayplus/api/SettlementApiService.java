@@ -46,7 +46,7 @@ public interface SettlementApiService {
         public String batchNumber;               // Batch number (YYMMDD + sequence, e.g., "250115001")
         public String batchDate;                  // Batch date (YYYYMMDD)
         public String batchTime;                  // Batch time (HHMMSS)
-        public List<SettlementTransaction> transactions;  // List of transactions to upload
+        public List<SettlementTransaction> transactions;  // Transactions to upload; null = stream the batch from the journal
         
         @Override
         public String toString() {
@@ -0,0 +1,375 @@
+package com.neo.neopayplus.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.api.SettlementApiService.BatchUploadRequest;
+import com.neo.neopayplus.api.SettlementApiService.BatchUploadResponse;
+import com.neo.neopayplus.api.SettlementApiService.SettlementTransaction;
+import com.neo.neopayplus.utils.GsonUtil;
+import com.neo.neopayplus.utils.LogUtil;
+import com.neo.neopayplus.utils.Logger;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+/**
+ * Settlement Uploader
+ *
+ * Uploads a settlement batch in chunks of {@link #DEFAULT_CHUNK_SIZE}
+ * transactions. Each chunk is read from a {@link Source} (the journal, page
+ * by page) and written with a {@link JsonWriter} straight into a gzip request
+ * body - no JsonObject tree, no String of the whole batch.
+ *
+ * Every chunk carries {@code upload_id}, {@code chunk_index} and
+ * {@code last}; the host acknowledges it with the RRNs it accepted and
+ * rejected. After each acknowledgement the cursor (last key sent, next chunk
+ * index, RRNs so far) is saved in a {@link StateStore}, so an upload that
+ * dies mid-batch resumes at the next unacknowledged chunk with the same
+ * upload id instead of starting over. A chunk that fails with an I/O error
+ * or 5xx is retried {@link #MAX_ATTEMPTS} times; the final chunk's response
+ * (batch id, totals, settled transactions) plus the RRNs from all chunks
+ * make up the one {@link BatchUploadResponse}.
+ *
+ * Blocking; run it off the main thread.
+ */
+public class SettlementUploader {
+
+    private static final String TAG = Constant.TAG;
+    private static final Logger LOG = LogUtil.logger("settlement", TAG);
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 1000;
+    private static final String STATE_KEY_PREFIX = "settlement_upload.";
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final Gson GSON = GsonUtil.gson();
+
+    /**
+     * Transactions of one batch in a stable, ascending key order
+     */
+    public interface Source {
+        /**
+         * @return Up to {@code limit} transactions with a key above
+         *         {@code afterKey}; an empty page ends the batch
+         */
+        Page read(long afterKey, int limit);
+    }
+
+    public static final class Page {
+        public final List<SettlementTransaction> transactions;
+        public final long lastKey;
+
+        public Page(List<SettlementTransaction> transactions, long lastKey) {
+            this.transactions = transactions;
+            this.lastKey = lastKey;
+        }
+    }
+
+    /**
+     * Durable key/value storage for the resume cursor
+     */
+    public interface StateStore {
+        String read(String key);
+
+        void write(String key, String value);
+
+        void delete(String key);
+    }
+
+    /**
+     * Turns the final chunk's body into the batch response
+     */
+    public interface ResponseParser {
+        BatchUploadResponse parse(String body);
+    }
+
+    /**
+     * Resume cursor of one batch, saved after every acknowledged chunk
+     */
+    static final class UploadState {
+        String uploadId;
+        long afterKey;
+        int nextChunk;
+        List<String> acceptedRrns = new ArrayList<>();
+        List<String> rejectedRrns = new ArrayList<>();
+    }
+
+    /**
+     * Chunk acknowledgement; the last one also carries the batch result
+     */
+    private static final class ChunkResponse {
+        boolean ok;
+        String body;
+        List<String> acceptedRrns = Collections.emptyList();
+        List<String> rejectedRrns = Collections.emptyList();
+    }
+
+    private final OkHttpClient client;
+    private final String url;
+    private final String apiKey;
+    private final StateStore store;
+    private final int chunkSize;
+    private final ResponseParser parser;
+    private volatile long retryBackoffMs = RETRY_BACKOFF_MS;
+
+    public SettlementUploader(OkHttpClient client, String url, String apiKey, StateStore store, int chunkSize,
+            ResponseParser parser) {
+        this.client = client;
+        this.url = url;
+        this.apiKey = apiKey;
+        this.store = store;
+        this.chunkSize = chunkSize;
+        this.parser = parser;
+    }
+
+    void setRetryBackoffMs(long ms) {
+        this.retryBackoffMs = ms;
+    }
+
+    /**
+     * Upload (or resume uploading) {@code request}'s batch from {@code source}
+     */
+    public BatchUploadResponse upload(BatchUploadRequest request, Source source) {
+        String stateKey = STATE_KEY_PREFIX + request.batchNumber;
+        UploadState state = loadState(stateKey);
+        if (state == null) {
+            state = new UploadState();
+            state.uploadId = UUID.randomUUID().toString();
+        } else {
+            LOG.i("Resuming settlement upload {} of batch {} at chunk {}", state.uploadId, request.batchNumber,
+                    state.nextChunk);
+        }
+
+        Page page = source.read(state.afterKey, chunkSize);
+        while (true) {
+            // Read ahead: the chunk is the last one when nothing follows it
+            Page next = page.transactions.isEmpty() ? page : source.read(page.lastKey, chunkSize);
+            boolean last = next.transactions.isEmpty();
+
+            ChunkResponse response;
+            try {
+                response = sendWithRetry(request, state, page.transactions, last);
+            } catch (IOException e) {
+                LOG.e("❌ Settlement chunk {} failed, upload can resume: {}", state.nextChunk, e.getMessage());
+                return BatchUploadResponse.error(e, "Settlement upload interrupted at chunk " + state.nextChunk
+                        + ": " + e.getMessage());
+            }
+            if (!response.ok) {
+                // The host refused the chunk outright: a retry would be refused too
+                store.delete(stateKey);
+                String message = "Settlement chunk " + state.nextChunk + " rejected: " + response.body;
+                LOG.e("❌ {}", message);
+                return BatchUploadResponse.error(new IOException(message), message);
+            }
+
+            state.acceptedRrns.addAll(response.acceptedRrns);
+            state.rejectedRrns.addAll(response.rejectedRrns);
+            if (last) {
+                store.delete(stateKey);
+                return reconcile(response.body, state);
+            }
+            state.afterKey = page.lastKey;
+            state.nextChunk++;
+            store.write(stateKey, GSON.toJson(state));
+            page = next;
+        }
+    }
+
+    /**
+     * The final chunk's batch result, with RRNs and counts from every chunk
+     */
+    private BatchUploadResponse reconcile(String finalBody, UploadState state) {
+        BatchUploadResponse response = parser.parse(finalBody);
+        if (!response.success) {
+            return response;
+        }
+        response.acceptedRrns = state.acceptedRrns;
+        response.rejectedRrns = state.rejectedRrns;
+        response.acceptedCount = state.acceptedRrns.size();
+        response.rejectedCount = state.rejectedRrns.size();
+        response.totalCount = response.acceptedCount + response.rejectedCount;
+        LOG.i("✓ Settlement upload {} done in {} chunk(s): {} accepted, {} rejected", state.uploadId,
+                state.nextChunk + 1, response.acceptedCount, response.rejectedCount);
+        return response;
+    }
+
+    private ChunkResponse sendWithRetry(BatchUploadRequest request, UploadState state,
+            List<SettlementTransaction> transactions, boolean last) throws IOException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                ChunkResponse response = send(request, state, transactions, last);
+                if (response != null) {
+                    return response;
+                }
+                failure = new IOException("Server error on chunk " + state.nextChunk);
+            } catch (IOException e) {
+                failure = e;
+            }
+            LOG.w("⚠️ Settlement chunk {} attempt {}/{} failed: {}", state.nextChunk, attempt, MAX_ATTEMPTS,
+                    failure.getMessage());
+            if (attempt < MAX_ATTEMPTS) {
+                try {
+                    Thread.sleep(retryBackoffMs * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * @return The acknowledgement, or null on a 5xx (retryable)
+     */
+    private ChunkResponse send(BatchUploadRequest request, UploadState state,
+            List<SettlementTransaction> transactions, boolean last) throws IOException {
+        Request httpRequest = new Request.Builder()
+                .url(url)
+                .post(new ChunkBody(request, state.uploadId, state.nextChunk, last, transactions))
+                .addHeader("Content-Encoding", "gzip")
+                .addHeader("Accept", "application/json")
+                .addHeader("Authorization", "Bearer " + (apiKey != null ? apiKey : "test-token"))
+                .build();
+
+        try (Response response = client.newCall(httpRequest).execute()) {
+            String body = response.body() != null ? response.body().string() : "";
+            int code = response.code();
+            LOG.d("Settlement chunk {} ({} tx, last={}) -> HTTP {}", state.nextChunk, transactions.size(), last,
+                    code);
+            if (code >= 500) {
+                return null;
+            }
+            ChunkResponse chunk = new ChunkResponse();
+            chunk.body = body;
+            chunk.ok = code == 200 || code == 201;
+            if (chunk.ok) {
+                ChunkAck ack = parseAck(body);
+                if (ack.acceptedRrns != null) {
+                    chunk.acceptedRrns = ack.acceptedRrns;
+                }
+                if (ack.rejectedRrns != null) {
+                    chunk.rejectedRrns = ack.rejectedRrns;
+                }
+            }
+            return chunk;
+        }
+    }
+
+    private static final class ChunkAck {
+        @SerializedName("accepted_rrns")
+        List<String> acceptedRrns;
+        @SerializedName("rejected_rrns")
+        List<String> rejectedRrns;
+    }
+
+    private static ChunkAck parseAck(String body) {
+        try {
+            ChunkAck ack = GSON.fromJson(body, ChunkAck.class);
+            return ack != null ? ack : new ChunkAck();
+        } catch (JsonSyntaxException e) {
+            LOG.w("⚠️ Unreadable settlement chunk acknowledgement: {}", e.getMessage());
+            return new ChunkAck();
+        }
+    }
+
+    private UploadState loadState(String key) {
+        String json = store.read(key);
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            UploadState state = GSON.fromJson(json, UploadState.class);
+            return state != null && state.uploadId != null ? state : null;
+        } catch (JsonSyntaxException e) {
+            LOG.w("⚠️ Discarding unreadable settlement cursor: {}", e.getMessage());
+            store.delete(key);
+            return null;
+        }
+    }
+
+    /**
+     * One chunk, serialized on demand into the (gzip) request stream; OkHttp
+     * may call writeTo again on a retry, which simply re-serializes
+     */
+    private static final class ChunkBody extends RequestBody {
+        private final BatchUploadRequest request;
+        private final String uploadId;
+        private final int chunkIndex;
+        private final boolean last;
+        private final List<SettlementTransaction> transactions;
+
+        ChunkBody(BatchUploadRequest request, String uploadId, int chunkIndex, boolean last,
+                List<SettlementTransaction> transactions) {
+            this.request = request;
+            this.uploadId = uploadId;
+            this.chunkIndex = chunkIndex;
+            this.last = last;
+            this.transactions = transactions;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            GZIPOutputStream gzip = new GZIPOutputStream(sink.outputStream(), 8192);
+            Writer out = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.name("terminal_id").value(request.terminalId);
+            json.name("batch_number").value(request.batchNumber != null ? request.batchNumber : "");
+            json.name("batch_date").value(request.batchDate);
+            json.name("batch_time").value(request.batchTime != null ? request.batchTime : "");
+            json.name("upload_id").value(uploadId);
+            json.name("chunk_index").value(chunkIndex);
+            json.name("last").value(last);
+            // Only the data the backend needs to match its own records
+            json.name("transactions").beginArray();
+            for (SettlementTransaction tx : transactions) {
+                json.beginObject();
+                json.name("transaction_id").value(tx.transactionId != null ? tx.transactionId : "");
+                json.name("rrn").value(tx.rrn != null ? tx.rrn : "");
+                json.name("status").value(tx.status != null ? tx.status : "");
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+            gzip.finish(); // Not close(): the sink belongs to OkHttp
+        }
+    }
+
+    // ==================== SOURCES ====================
+
+    /**
+     * Source over an in-memory list (keys are list positions + 1)
+     */
+    public static Source listSource(List<SettlementTransaction> transactions) {
+        return (afterKey, limit) -> {
+            int from = (int) Math.min(afterKey, transactions.size());
+            int to = Math.min(from + limit, transactions.size());
+            return new Page(new ArrayList<>(transactions.subList(from, to)), to);
+        };
+    }
+}
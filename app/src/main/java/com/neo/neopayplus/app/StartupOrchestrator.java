@@ -0,0 +1,347 @@
+package com.neo.neopayplus.app;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup Orchestrator
+ *
+ * Application start-up as a graph of named tasks. Each task lists the tasks
+ * it depends on and runs as soon as all of them have finished, on the main
+ * thread or on the background pool, so independent work (printer binding,
+ * TTS, ISO socket warm-up, key provisioning, EMV provisioning) overlaps
+ * instead of running in whatever order onCreate happened to start it.
+ *
+ * Async tasks (service bindings) finish when their callback calls
+ * {@link Completion#success()}, or fail after their timeout; nothing waits
+ * by sleeping. If a task fails, the tasks that depend on it are skipped.
+ *
+ * Every task's start offset, duration and thread are kept for
+ * {@link #report()} (shown in the debug screen).
+ */
+public final class StartupOrchestrator {
+
+    private static final String TAG = Constant.TAG;
+
+    public enum Status { PENDING, RUNNING, OK, FAILED, SKIPPED }
+
+    /**
+     * Synchronous task body; throwing fails the task
+     */
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * Asynchronous task body: start the work and call {@code done} when it
+     * finishes, from any thread
+     */
+    public interface AsyncAction {
+        void start(Completion done) throws Exception;
+    }
+
+    public interface Completion {
+        void success();
+
+        void failure(String reason);
+    }
+
+    private static final class Task {
+        final String name;
+        final boolean onMain;
+        final long timeoutMs; // 0 = synchronous
+        final Action action;
+        final AsyncAction asyncAction;
+        final List<String> dependsOn;
+        final List<Task> dependents = new ArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        int waitingFor;
+        Status status = Status.PENDING;
+        long startNanos;
+        long endNanos;
+        String thread;
+        String error;
+        ScheduledFuture<?> timeout;
+
+        Task(String name, boolean onMain, long timeoutMs, Action action, AsyncAction asyncAction, String[] dependsOn) {
+            this.name = name;
+            this.onMain = onMain;
+            this.timeoutMs = timeoutMs;
+            this.action = action;
+            this.asyncAction = asyncAction;
+            this.dependsOn = Collections.unmodifiableList(Arrays.asList(dependsOn));
+        }
+    }
+
+    private final Executor mainExecutor;
+    private final ScheduledExecutorService background;
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private long originNanos;
+    private boolean started;
+
+    /**
+     * @param mainExecutor Runs main-thread tasks; should run inline when
+     *                     already on the main thread, so tasks ready at
+     *                     {@link #start()} finish before onCreate returns
+     * @param background   Runs background tasks and async timeouts
+     */
+    public StartupOrchestrator(Executor mainExecutor, ScheduledExecutorService background) {
+        this.mainExecutor = mainExecutor;
+        this.background = background;
+    }
+
+    public synchronized StartupOrchestrator task(String name, boolean onMain, Action action, String... dependsOn) {
+        return add(new Task(name, onMain, 0, action, null, dependsOn));
+    }
+
+    /**
+     * @param timeoutMs The task fails if {@code done} is not called within this
+     */
+    public synchronized StartupOrchestrator asyncTask(String name, boolean onMain, long timeoutMs,
+            AsyncAction action, String... dependsOn) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("Async task " + name + " needs a timeout");
+        }
+        return add(new Task(name, onMain, timeoutMs, null, action, dependsOn));
+    }
+
+    private StartupOrchestrator add(Task task) {
+        if (started) {
+            throw new IllegalStateException("Startup already running, cannot add " + task.name);
+        }
+        if (tasks.containsKey(task.name)) {
+            throw new IllegalArgumentException("Duplicate startup task: " + task.name);
+        }
+        tasks.put(task.name, task);
+        return this;
+    }
+
+    /**
+     * Check the graph and start every task without dependencies
+     *
+     * @throws IllegalStateException on an unknown dependency or a cycle
+     */
+    public void start() {
+        List<Task> ready = new ArrayList<>();
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            for (Task task : tasks.values()) {
+                task.waitingFor = task.dependsOn.size();
+                for (String dep : task.dependsOn) {
+                    Task parent = tasks.get(dep);
+                    if (parent == null) {
+                        throw new IllegalStateException("Startup task " + task.name + " depends on unknown task " + dep);
+                    }
+                    parent.dependents.add(task);
+                }
+            }
+            checkAcyclic();
+            started = true;
+            originNanos = System.nanoTime();
+            for (Task task : tasks.values()) {
+                if (task.waitingFor == 0) {
+                    ready.add(task);
+                }
+            }
+        }
+        // Background tasks first, so they are not held up by inline main-thread ones
+        for (Task task : ready) {
+            if (!task.onMain) {
+                dispatch(task);
+            }
+        }
+        for (Task task : ready) {
+            if (task.onMain) {
+                dispatch(task);
+            }
+        }
+    }
+
+    /**
+     * Block until {@code name} has finished (in any state)
+     *
+     * @return false on timeout
+     */
+    public boolean await(String name, long timeout, TimeUnit unit) throws InterruptedException {
+        Task task;
+        synchronized (this) {
+            task = tasks.get(name);
+        }
+        if (task == null) {
+            throw new IllegalArgumentException("Unknown startup task: " + name);
+        }
+        return task.finished.await(timeout, unit);
+    }
+
+    public synchronized Status status(String name) {
+        Task task = tasks.get(name);
+        return task != null ? task.status : null;
+    }
+
+    /**
+     * Milliseconds from {@link #start()} to the end of {@code name}, or -1 if it
+     * has not finished
+     */
+    public synchronized long finishedAtMs(String name) {
+        Task task = tasks.get(name);
+        if (task == null || task.endNanos == 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(task.endNanos - originNanos);
+    }
+
+    /**
+     * One line per task, in start order: start offset, duration, thread, status
+     */
+    public synchronized String report() {
+        List<Task> ordered = new ArrayList<>(tasks.values());
+        Collections.sort(ordered, (a, b) -> {
+            long sa = a.startNanos == 0 ? Long.MAX_VALUE : a.startNanos;
+            long sb = b.startNanos == 0 ? Long.MAX_VALUE : b.startNanos;
+            return Long.compare(sa, sb);
+        });
+        StringBuilder out = new StringBuilder();
+        for (Task task : ordered) {
+            String start = task.startNanos == 0 ? "-" : "+" + ms(task.startNanos - originNanos);
+            String duration = task.startNanos == 0 || task.endNanos == 0
+                    ? "-" : ms(task.endNanos - task.startNanos) + " ms";
+            out.append(String.format(Locale.US, "%-20s %7s %9s  %-8s %s", task.name, start, duration,
+                    task.status, task.thread != null ? task.thread : ""));
+            if (task.error != null) {
+                out.append("  (").append(task.error).append(')');
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    // ==================== EXECUTION ====================
+
+    private void dispatch(Task task) {
+        (task.onMain ? mainExecutor : background).execute(() -> run(task));
+    }
+
+    private void run(Task task) {
+        synchronized (this) {
+            task.status = Status.RUNNING;
+            task.startNanos = System.nanoTime();
+            task.thread = Thread.currentThread().getName();
+        }
+        try {
+            if (task.asyncAction == null) {
+                task.action.run();
+                finish(task, Status.OK, null);
+                return;
+            }
+            synchronized (this) {
+                task.timeout = background.schedule(
+                        () -> finish(task, Status.FAILED, "timed out after " + task.timeoutMs + " ms"),
+                        task.timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            task.asyncAction.start(new Completion() {
+                @Override
+                public void success() {
+                    finish(task, Status.OK, null);
+                }
+
+                @Override
+                public void failure(String reason) {
+                    finish(task, Status.FAILED, reason);
+                }
+            });
+        } catch (Exception e) {
+            finish(task, Status.FAILED, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private void finish(Task task, Status status, String error) {
+        List<Task> ready = new ArrayList<>();
+        synchronized (this) {
+            if (task.status != Status.RUNNING) {
+                return; // Late callback after a timeout, or a second call
+            }
+            complete(task, status, error);
+            if (task.timeout != null) {
+                task.timeout.cancel(false);
+            }
+            if (status == Status.OK) {
+                for (Task child : task.dependents) {
+                    if (--child.waitingFor == 0 && child.status == Status.PENDING) {
+                        ready.add(child);
+                    }
+                }
+            } else {
+                skipDependents(task);
+            }
+        }
+        if (status == Status.OK) {
+            LogUtil.d(TAG, "Startup: " + task.name + " done in " + ms(task.endNanos - task.startNanos) + " ms");
+        } else {
+            LogUtil.e(TAG, "⚠️ Startup: " + task.name + " failed - " + error);
+        }
+        for (Task child : ready) {
+            dispatch(child);
+        }
+    }
+
+    private void skipDependents(Task failed) {
+        for (Task child : failed.dependents) {
+            if (child.status == Status.PENDING) {
+                child.startNanos = 0;
+                complete(child, Status.SKIPPED, failed.name + " " + failed.status.name().toLowerCase(Locale.US));
+                skipDependents(child);
+            }
+        }
+    }
+
+    private void complete(Task task, Status status, String error) {
+        task.status = status;
+        task.error = error;
+        task.endNanos = System.nanoTime();
+        task.finished.countDown();
+    }
+
+    private void checkAcyclic() {
+        Set<String> done = new HashSet<>();
+        Set<String> visiting = new HashSet<>();
+        for (String name : tasks.keySet()) {
+            visit(name, done, visiting);
+        }
+    }
+
+    private void visit(String name, Set<String> done, Set<String> visiting) {
+        if (done.contains(name)) {
+            return;
+        }
+        if (!visiting.add(name)) {
+            throw new IllegalStateException("Startup task cycle through " + name);
+        }
+        for (String dep : tasks.get(name).dependsOn) {
+            visit(dep, done, visiting);
+        }
+        visiting.remove(name);
+        done.add(name);
+    }
+
+    private static long ms(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
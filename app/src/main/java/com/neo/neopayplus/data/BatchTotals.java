@@ -0,0 +1,200 @@
+package com.neo.neopayplus.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.db.TxnDb;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settlement Totals
+ *
+ * Count and minor-unit sum per batch x card brand x transaction type x
+ * status, kept in TxnDb and updated by TransactionJournal in the same
+ * database transaction as every journal insert, status change and prune.
+ * Reading a batch's totals touches only its few totals rows, never the
+ * journal.
+ *
+ * {@link #verify(String)} / {@link #verifyAll()} recompute the totals
+ * from the journal and repair them if they have drifted.
+ */
+public class BatchTotals {
+
+    private static final String TAG = Constant.TAG;
+
+    private static final String TYPE_SALE = "00";
+    private static final String TYPE_REFUND = "20";
+    private static final String STATUS_APPROVED = "APPROVED";
+    private static final String STATUS_VOID = "VOID";
+
+    /**
+     * One totals row
+     */
+    public static class Total {
+        public final String cardBrand; // "" if unknown
+        public final String transactionType; // 00=sale, 20=refund, 40=void
+        public final String status; // APPROVED, DECLINED, VOID, REFUNDED, ...
+        public final int count;
+        public final long amountMinor;
+
+        Total(String cardBrand, String transactionType, String status, int count, long amountMinor) {
+            this.cardBrand = cardBrand;
+            this.transactionType = transactionType;
+            this.status = status;
+            this.count = count;
+            this.amountMinor = amountMinor;
+        }
+
+        String key() {
+            return cardBrand + '|' + transactionType + '|' + status;
+        }
+    }
+
+    /**
+     * Sale / void / refund figures for settlement reports
+     * (sale = approved 00, void = voided 00, refund = approved 20)
+     * Totals do not track the settled flag; for the number of rows
+     * settlement will upload see {@link TransactionJournal#countUnsettled}.
+     */
+    public static class Summary {
+        public int saleCount;
+        public long saleAmountMinor;
+        public int voidCount;
+        public long voidAmountMinor;
+        public int refundCount;
+        public long refundAmountMinor;
+
+        /**
+         * @return Sales - refunds (voids are reported but not netted)
+         */
+        public long getNetAmountMinor() {
+            return saleAmountMinor - refundAmountMinor;
+        }
+    }
+
+    /**
+     * Totals rows for a batch
+     */
+    public static List<Total> get(String batchNumber) {
+        List<Total> totals = new ArrayList<>();
+        if (batchNumber == null || batchNumber.isEmpty()) {
+            return totals;
+        }
+        try (Cursor c = db().query(TxnDb.TABLE_BATCH_TOTALS,
+                new String[] { TxnDb.COL_CARD_BRAND, TxnDb.COL_TRANSACTION_TYPE, TxnDb.COL_STATUS,
+                        TxnDb.COL_COUNT, TxnDb.COL_AMOUNT_MINOR },
+                TxnDb.COL_BATCH_NUMBER + " = ?", new String[] { batchNumber }, null, null, null)) {
+            while (c.moveToNext()) {
+                totals.add(new Total(c.getString(0), c.getString(1), c.getString(2), c.getInt(3), c.getLong(4)));
+            }
+        } catch (Exception e) {
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "BatchTotals", e);
+        }
+        return totals;
+    }
+
+    /**
+     * Summarize a batch's totals rows
+     *
+     * @param cardBrand Brand to include (case-insensitive), or null for all brands
+     */
+    public static Summary summarize(List<Total> totals, String cardBrand) {
+        Summary summary = new Summary();
+        for (Total total : totals) {
+            if (cardBrand != null && !cardBrand.equalsIgnoreCase(total.cardBrand)) {
+                continue;
+            }
+            if (TYPE_SALE.equals(total.transactionType) && STATUS_APPROVED.equals(total.status)) {
+                summary.saleCount += total.count;
+                summary.saleAmountMinor += total.amountMinor;
+            } else if (TYPE_SALE.equals(total.transactionType) && STATUS_VOID.equals(total.status)) {
+                summary.voidCount += total.count;
+                summary.voidAmountMinor += total.amountMinor;
+            } else if (TYPE_REFUND.equals(total.transactionType) && STATUS_APPROVED.equals(total.status)) {
+                summary.refundCount += total.count;
+                summary.refundAmountMinor += total.amountMinor;
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Consistency check for one batch: recompute from the journal and
+     * rebuild the stored totals if they differ
+     *
+     * @return true if the stored totals were already correct
+     */
+    public static boolean verify(String batchNumber) {
+        if (batchNumber == null || batchNumber.isEmpty()) {
+            return true;
+        }
+        return verify(" WHERE " + TxnDb.COL_BATCH_NUMBER + " = ?", new String[] { batchNumber }, batchNumber);
+    }
+
+    /**
+     * Consistency check for every batch
+     *
+     * @return true if the stored totals were already correct
+     */
+    public static boolean verifyAll() {
+        return verify("", new String[0], null);
+    }
+
+    private static boolean verify(String where, String[] args, String batchNumber) {
+        SQLiteDatabase db = db();
+        db.beginTransaction();
+        try {
+            Map<String, Total> stored = new HashMap<>();
+            try (Cursor c = db.rawQuery("SELECT * FROM " + TxnDb.TABLE_BATCH_TOTALS + where, args)) {
+                while (c.moveToNext()) {
+                    Total total = read(c);
+                    stored.put(c.getString(0) + '#' + total.key(), total);
+                }
+            }
+
+            boolean consistent = true;
+            try (Cursor c = db.rawQuery(TxnDb.aggregateTotalsSql(where), args)) {
+                while (c.moveToNext()) {
+                    Total expected = read(c);
+                    Total actual = stored.remove(c.getString(0) + '#' + expected.key());
+                    if (actual == null || actual.count != expected.count || actual.amountMinor != expected.amountMinor) {
+                        LogUtil.e(TAG, "⚠️ Batch totals mismatch: batch=" + c.getString(0) + ", " + expected.key()
+                                + " expected " + expected.count + "/" + expected.amountMinor
+                                + ", stored " + (actual != null ? actual.count + "/" + actual.amountMinor : "none"));
+                        consistent = false;
+                    }
+                }
+            }
+            if (!stored.isEmpty()) {
+                LogUtil.e(TAG, "⚠️ Batch totals has " + stored.size() + " row(s) without transactions");
+                consistent = false;
+            }
+
+            if (!consistent) {
+                TxnDb.rebuildBatchTotals(db, batchNumber);
+                LogUtil.e(TAG, "✓ Batch totals rebuilt" + (batchNumber != null ? " for batch " + batchNumber : ""));
+            }
+            db.setTransactionSuccessful();
+            return consistent;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Row in batch_totals column order
+     */
+    private static Total read(Cursor c) {
+        return new Total(c.getString(1), c.getString(2), c.getString(3), c.getInt(4), c.getLong(5));
+    }
+
+    private static SQLiteDatabase db() {
+        return TransactionJournal.db();
+    }
+}
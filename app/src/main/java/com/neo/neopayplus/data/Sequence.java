@@ -0,0 +1,101 @@
+package com.neo.neopayplus.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Crash-safe number sequence (STAN, receipt number, batch number)
+ *
+ * Numbers are handed out from memory with one atomic increment. Durability
+ * comes from reserving blocks: before any number of a new block is
+ * returned, the block's upper bound (ceiling) is persisted. After a crash
+ * or restart the sequence continues above the last persisted ceiling, so
+ * a number is never handed out twice; at most one block is skipped.
+ *
+ * Internally the counter never goes backwards; values wrap within
+ * [min, max] (e.g. STAN 999999 -> 000001).
+ */
+public final class Sequence {
+
+    /**
+     * Persists the reserved ceiling; must be durable when it returns and
+     * throw if it could not persist
+     */
+    public interface Store {
+        void save(long ceiling);
+    }
+
+    private final int min;
+    private final int range;
+    private final int blockSize;
+    private final Store store;
+
+    private final AtomicLong issued; // last raw number handed out
+    private volatile long reserved; // persisted ceiling
+
+    /**
+     * @param min       Smallest value
+     * @param max       Largest value, then wraps to min
+     * @param blockSize Numbers reserved per persist
+     * @param ceiling   Last persisted ceiling (0 for a new sequence)
+     * @param store     Persists new ceilings
+     */
+    public Sequence(int min, int max, int blockSize, long ceiling, Store store) {
+        this.min = min;
+        this.range = max - min + 1;
+        this.blockSize = Math.max(1, blockSize);
+        this.store = store;
+        this.issued = new AtomicLong(ceiling);
+        this.reserved = ceiling;
+    }
+
+    /**
+     * Next value; lock-free except when a new block has to be persisted
+     */
+    public int next() {
+        long raw = issued.incrementAndGet();
+        if (raw > reserved) {
+            reserveThrough(raw);
+        }
+        return value(raw);
+    }
+
+    /**
+     * Last value handed out (after a restart: the persisted ceiling), or 0
+     * if the sequence has never been used
+     */
+    public int current() {
+        long raw = issued.get();
+        return raw > 0 ? value(raw) : 0;
+    }
+
+    /**
+     * Restart so that {@link #current()} is {@code value} (admin reset)
+     */
+    public synchronized void reset(int value) {
+        long raw = Math.max(0, value - min + 1);
+        store.save(raw);
+        issued.set(raw);
+        reserved = raw;
+    }
+
+    /**
+     * Persisted ceiling, for tests
+     */
+    long reserved() {
+        return reserved;
+    }
+
+    private synchronized void reserveThrough(long raw) {
+        if (raw <= reserved) {
+            return; // Another thread reserved it meanwhile
+        }
+        long blocks = (raw - reserved + blockSize - 1) / blockSize;
+        long ceiling = reserved + blocks * blockSize;
+        store.save(ceiling); // Throws before anything from the block is returned
+        reserved = ceiling;
+    }
+
+    private int value(long raw) {
+        return (int) ((raw - 1) % range) + min;
+    }
+}
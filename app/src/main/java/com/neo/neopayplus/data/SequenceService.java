@@ -0,0 +1,188 @@
+package com.neo.neopayplus.data;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.MyApplication;
+import com.neo.neopayplus.db.TxnDb;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.util.Locale;
+
+/**
+ * Sequence Service
+ *
+ * Single source of STANs, receipt numbers, batch numbers and journal
+ * transaction ID numbers, each a {@link Sequence} whose reserved ceiling
+ * is kept in TxnDb's kv table:
+ * <ul>
+ * <li>STAN: 000001-999999, blocks of 100</li>
+ * <li>Transaction ID number: 000001-999999, blocks of 100</li>
+ * <li>Receipt number: 000001-999999 per batch, blocks of 100; each batch
+ *     has its own key, so a new batch starts at 000001</li>
+ * <li>Batch number: 000001-999999, every increment persisted</li>
+ * </ul>
+ * Numbers are never reused after a crash; a restart may skip up to one
+ * block of STANs / transaction ID numbers / receipt numbers.
+ *
+ * On first use the old counters (kv 'stan', BatchManager's and the
+ * receipt counters in SharedPreferences) seed the sequences.
+ */
+public final class SequenceService {
+
+    private static final String TAG = Constant.TAG;
+    private static final int MAX_VALUE = 999999;
+    private static final int STAN_BLOCK = 100;
+    private static final int RECEIPT_BLOCK = 100;
+    private static final int TRANSACTION_ID_BLOCK = 100;
+
+    private static final String KEY_STAN = "seq_stan";
+    private static final String KEY_BATCH = "seq_batch";
+    private static final String KEY_TRANSACTION_ID = "seq_txn_id";
+    private static final String KEY_RECEIPT_PREFIX = "seq_receipt_";
+    private static final String LEGACY_KEY_STAN = "stan";
+
+    private static volatile SequenceService instance;
+
+    private final TxnDb db;
+    private final Sequence stan;
+    private final Sequence batch;
+    private final Sequence transactionIds;
+    private volatile Sequence receipts;
+
+    public static SequenceService getInstance() {
+        SequenceService current = instance;
+        if (current == null) {
+            synchronized (SequenceService.class) {
+                current = instance;
+                if (current == null) {
+                    current = new SequenceService(TxnDb.getInstance(MyApplication.app));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private SequenceService(TxnDb db) {
+        this.db = db;
+
+        // Old kv 'stan' held the next STAN to hand out; continuing above it never reuses one
+        long stanCeiling = db.readKvLong(KEY_STAN, -1);
+        if (stanCeiling < 0) {
+            stanCeiling = seed(KEY_STAN, db.readKvLong(LEGACY_KEY_STAN, 0));
+        }
+        this.stan = sequence(KEY_STAN, STAN_BLOCK, stanCeiling);
+
+        long batchCeiling = db.readKvLong(KEY_BATCH, -1);
+        if (batchCeiling < 0) {
+            batchCeiling = seed(KEY_BATCH, BatchManager.readLegacyBatchNumber());
+        }
+        this.batch = sequence(KEY_BATCH, 1, batchCeiling);
+        if (batch.current() == 0) {
+            batch.next(); // First batch: 000001
+            LogUtil.e(TAG, "✓ New batch number created: 000001");
+        }
+
+        this.receipts = receiptsFor(batch.current());
+        this.transactionIds = sequence(KEY_TRANSACTION_ID, TRANSACTION_ID_BLOCK,
+                db.readKvLong(KEY_TRANSACTION_ID, 0));
+    }
+
+    /**
+     * Next STAN (1..999999)
+     */
+    public int nextStanValue() {
+        return stan.next();
+    }
+
+    /**
+     * Last STAN handed out (after a restart: the last reserved one), or 0 if none yet
+     */
+    public int currentStanValue() {
+        return stan.current();
+    }
+
+    /**
+     * Next STAN, 6 digits zero-padded
+     */
+    public String nextStan() {
+        return format(stan.next());
+    }
+
+    /**
+     * Next transaction ID number for the journal (1..999999)
+     */
+    public int nextTransactionIdValue() {
+        return transactionIds.next();
+    }
+
+    /**
+     * Current batch number, 6 digits zero-padded
+     */
+    public String currentBatchNumber() {
+        return format(batch.current());
+    }
+
+    /**
+     * Start the next batch (after settlement); receipt numbers restart at 000001
+     *
+     * @return New batch number
+     */
+    public synchronized String nextBatchNumber() {
+        int previous = batch.current();
+        int next = batch.next();
+        switchReceipts(previous, next);
+        return format(next);
+    }
+
+    /**
+     * Set the batch number back to 000001 (testing/admin)
+     */
+    public synchronized void resetBatchNumber() {
+        int previous = batch.current();
+        batch.reset(1);
+        switchReceipts(previous, 1);
+    }
+
+    /**
+     * Next receipt number within the current batch, 6 digits zero-padded
+     */
+    public String nextReceiptNumber() {
+        return format(receipts.next());
+    }
+
+    private void switchReceipts(int previousBatch, int newBatch) {
+        receipts = receiptsFor(newBatch);
+        if (previousBatch != newBatch) {
+            db.deleteKv(receiptKey(previousBatch));
+        }
+    }
+
+    private Sequence receiptsFor(int batchNumber) {
+        String key = receiptKey(batchNumber);
+        long ceiling = db.readKvLong(key, -1);
+        if (ceiling < 0) {
+            ceiling = seed(key, BatchManager.readLegacyReceiptNumber(format(batchNumber)));
+        }
+        return sequence(key, RECEIPT_BLOCK, ceiling);
+    }
+
+    private Sequence sequence(String key, int blockSize, long ceiling) {
+        return new Sequence(1, MAX_VALUE, blockSize, ceiling, value -> db.writeKv(key, Long.toString(value)));
+    }
+
+    private long seed(String key, long ceiling) {
+        db.writeKv(key, Long.toString(ceiling));
+        if (ceiling > 0) {
+            LogUtil.e(TAG, "✓ Sequence " + key + " continues after " + ceiling);
+        }
+        return ceiling;
+    }
+
+    private static String receiptKey(int batchNumber) {
+        return KEY_RECEIPT_PREFIX + batchNumber;
+    }
+
+    private static String format(int value) {
+        return String.format(Locale.US, "%06d", value);
+    }
+}
@@ -1,29 +1,37 @@
 package com.neo.neopayplus.data;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
 
 import com.neo.neopayplus.MyApplication;
 import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.db.TxnDb;
+import com.neo.neopayplus.payment.ReversalQueueStore;
+import com.neo.neopayplus.utils.GsonUtil;
 import com.neo.neopayplus.utils.LogUtil;
 
-import com.google.gson.Gson;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Transaction Journal Manager
  * 
- * Stores transaction history locally for:
+ * Stores transaction history in TxnDb (indexed by transaction ID, RRN,
+ * batch number and timestamp) and keeps BatchTotals in step with it for:
  * - Last transactions screen (auto-fill RRN for reversal)
- * - Offline reversal queue (when host is down)
+ * - Offline reversal queue (when host is down; stored by ReversalQueueStore)
  * - Transaction history lookup
  */
 public class TransactionJournal {
@@ -32,13 +40,44 @@ public class TransactionJournal {
     private static final String PREFERENCE_FILE_NAME = "neopayplus_prefs";
     private static final String KEY_TRANSACTION_JOURNAL = "transaction_journal";
     private static final String KEY_LAST_RRN = "last_rrn";
-    private static final int MAX_JOURNAL_SIZE = 100; // Keep last 100 transactions
+    private static final int MAX_JOURNAL_SIZE = 20000; // Keep last 20000 transactions
     private static final long RETENTION_DAYS = 16; // Keep transactions for 16 days
     private static final long RETENTION_MILLIS = RETENTION_DAYS * 24 * 60 * 60 * 1000L; // 16 days in milliseconds
+    private static final long PRUNE_INTERVAL_MILLIS = 60 * 60 * 1000L; // Prune at most hourly
+    private static final int MAX_ID_ATTEMPTS = 3; // Fresh IDs tried when a generated one is taken
+    private static final String NEWEST_FIRST = TxnDb.COL_TIMESTAMP + " DESC, " + TxnDb.COL_ID + " DESC";
+    private static final String[] COLUMNS = {
+            TxnDb.COL_TRANSACTION_ID, TxnDb.COL_RRN, TxnDb.COL_AUTH_CODE, TxnDb.COL_PAN,
+            TxnDb.COL_CARDHOLDER_NAME, TxnDb.COL_AMOUNT, TxnDb.COL_CURRENCY_CODE, TxnDb.COL_TRANSACTION_TYPE,
+            TxnDb.COL_ENTRY_MODE, TxnDb.COL_AID, TxnDb.COL_CARD_BRAND, TxnDb.COL_CARD_TYPE,
+            TxnDb.COL_DATE, TxnDb.COL_TIME, TxnDb.COL_RESPONSE_CODE, TxnDb.COL_STATUS,
+            TxnDb.COL_TIMESTAMP, TxnDb.COL_IS_REVERSAL, TxnDb.COL_ORIGINAL_RRN, TxnDb.COL_BATCH_NUMBER,
+            TxnDb.COL_RECEIPT_NUMBER, TxnDb.COL_IS_SETTLED };
+    /** {@link #COLUMNS} plus the row id (index 22) for keyset paging */
+    private static final String[] PAGE_COLUMNS = {
+            TxnDb.COL_TRANSACTION_ID, TxnDb.COL_RRN, TxnDb.COL_AUTH_CODE, TxnDb.COL_PAN,
+            TxnDb.COL_CARDHOLDER_NAME, TxnDb.COL_AMOUNT, TxnDb.COL_CURRENCY_CODE, TxnDb.COL_TRANSACTION_TYPE,
+            TxnDb.COL_ENTRY_MODE, TxnDb.COL_AID, TxnDb.COL_CARD_BRAND, TxnDb.COL_CARD_TYPE,
+            TxnDb.COL_DATE, TxnDb.COL_TIME, TxnDb.COL_RESPONSE_CODE, TxnDb.COL_STATUS,
+            TxnDb.COL_TIMESTAMP, TxnDb.COL_IS_REVERSAL, TxnDb.COL_ORIGINAL_RRN, TxnDb.COL_BATCH_NUMBER,
+            TxnDb.COL_RECEIPT_NUMBER, TxnDb.COL_IS_SETTLED, TxnDb.COL_ID };
+    /** Rows of one batch (bound as the first argument) that settlement uploads */
+    private static final String UNSETTLED = TxnDb.COL_BATCH_NUMBER + " = ? AND " + TxnDb.COL_IS_SETTLED
+            + " = 0 AND " + TxnDb.COL_STATUS + " IN ('APPROVED', 'VOID')";
+    /** What {@link TransactionSearchIndex} indexes */
+    private static final String[] SEARCH_COLUMNS = {
+            TxnDb.COL_ID, TxnDb.COL_RRN, TxnDb.COL_PAN, TxnDb.COL_AMOUNT, TxnDb.COL_DATE };
+
+    private static volatile boolean legacyMigrated;
+    private static volatile long lastPruneAt;
+    /** Bumped on every write that adds, removes or restates a row */
+    private static final AtomicLong version = new AtomicLong();
 
     /**
      * Transaction Record
+     * (JSON via {@link TransactionRecordAdapter})
      */
+    @JsonAdapter(TransactionRecordAdapter.class)
     public static class TransactionRecord {
         public String transactionId; // Unique transaction identifier
         public String rrn; // Retrieval Reference Number
@@ -64,7 +103,14 @@ public class TransactionJournal {
         public boolean isSettled; // true if transaction has been settled (required for refunds)
 
         public TransactionRecord() {
-            this.timestamp = System.currentTimeMillis();
+            this(System.currentTimeMillis());
+        }
+
+        /**
+         * Record loaded from storage, keeping its original timestamp
+         */
+        TransactionRecord(long timestamp) {
+            this.timestamp = timestamp;
             this.isReversal = false;
             this.isSettled = false;
         }
@@ -84,50 +130,30 @@ public class TransactionJournal {
 
     /**
      * Generate unique transaction ID
-     * Format: TXN + MMDD (4) + STAN (4) + sequence (2) = TXN + 10 chars total
-     * This creates a shorter but still unique transaction ID
+     * Format: TXN + MMDD (4) + STAN (4) + number (6) = TXN + 14 chars total
+     * The number comes from SequenceService and is never handed out twice,
+     * so IDs only repeat after a million transactions on the same MMDD.
      * 
-     * @param stan Optional STAN to include in transaction ID. If null, will use current STAN from TxnDb
+     * @param stan Optional STAN to include in transaction ID. If null, the current STAN from SequenceService
      */
     public static String generateTransactionId(Integer stan) {
         // Get current date (MMDD format - month and day only)
         SimpleDateFormat dateFormat = new SimpleDateFormat("MMdd", Locale.US);
         String date = dateFormat.format(new Date());
         
-        // Use provided STAN or get current STAN from TxnDb (without incrementing)
+        // Use provided STAN or the last one SequenceService handed out (without incrementing)
         int stanValue = stan != null ? stan : 0;
         if (stanValue == 0) {
-            try {
-                com.neo.neopayplus.db.TxnDb db = new com.neo.neopayplus.db.TxnDb(MyApplication.app);
-                // Get current STAN without incrementing (read-only)
-                android.database.sqlite.SQLiteDatabase sqliteDb = db.getReadableDatabase();
-                android.database.Cursor c = sqliteDb.rawQuery("SELECT v FROM kv WHERE k='stan'", null);
-                if (c.moveToFirst()) {
-                    try {
-                        stanValue = Integer.parseInt(c.getString(0));
-                    } catch (Exception e) {
-                        stanValue = (int) (System.currentTimeMillis() % 10000);
-                    }
-                } else {
-                    stanValue = (int) (System.currentTimeMillis() % 10000);
-                }
-                c.close();
-                sqliteDb.close();
-            } catch (Exception e) {
-                LogUtil.e(TAG, "Failed to get STAN for transaction ID: " + e.getMessage());
-                // Use timestamp-based fallback
-                stanValue = (int) (System.currentTimeMillis() % 10000);
-            }
+            stanValue = SequenceService.getInstance().currentStanValue();
         }
         
         // Use last 4 digits of STAN (mod 10000 to ensure 4 digits max)
         stanValue = stanValue % 10000;
         
-        // Use milliseconds modulo 100 for sequence (0-99)
-        int sequence = (int) (System.currentTimeMillis() % 100);
+        int number = SequenceService.getInstance().nextTransactionIdValue();
         
-        // Format: TXN + MMDD (4) + STAN (4) + sequence (2) = TXN + 10 chars = 13 total
-        return String.format(Locale.US, "TXN%s%04d%02d", date, stanValue, sequence);
+        // Format: TXN + MMDD (4) + STAN (4) + number (6) = TXN + 14 chars = 17 total
+        return String.format(Locale.US, "TXN%s%04d%06d", date, stanValue, number);
     }
     
     /**
@@ -138,87 +164,129 @@ public class TransactionJournal {
     }
 
     /**
-     * Save transaction to journal
-     * @return The transaction ID (generated or existing)
+     * Save a new transaction to the journal
+     * Never overwrites a stored record: a generated ID that is already taken
+     * is replaced by a fresh one, and a caller-supplied ID that is already
+     * taken fails the save (see {@link #resaveTransaction} for restating a
+     * stored transaction)
+     * @return The transaction ID (generated or existing), or null if not saved
      */
     public static String saveTransaction(TransactionRecord record) {
         try {
             // Generate transaction ID if not already set
-            if (record.transactionId == null || record.transactionId.isEmpty()) {
+            boolean generatedId = record.transactionId == null || record.transactionId.isEmpty();
+            if (generatedId) {
                 record.transactionId = generateTransactionId();
             }
-            
-            // Assign batch number if not already set
-            if (record.batchNumber == null || record.batchNumber.isEmpty()) {
-                // For reversals/refunds, try to get batch from original transaction
-                if (record.isReversal && record.originalRrn != null) {
-                    TransactionRecord originalTx = findTransactionByRrn(record.originalRrn);
-                    if (originalTx != null && originalTx.batchNumber != null) {
-                        record.batchNumber = originalTx.batchNumber;
-                        LogUtil.e(TAG, "✓ Using original batch number for reversal: " + record.batchNumber);
-                    } else {
-                        record.batchNumber = BatchManager.getCurrentBatchNumber();
+            assignBatchAndReceipt(record);
+
+            SQLiteDatabase db = db();
+            for (int attempt = 1;; attempt++) {
+                db.beginTransaction();
+                try {
+                    db.insertWithOnConflict(TxnDb.TABLE_TRANSACTIONS, null, toValues(record),
+                            SQLiteDatabase.CONFLICT_ABORT);
+                    addToTotals(db, record, 1);
+                    db.setTransactionSuccessful();
+                    break;
+                } catch (SQLiteConstraintException e) {
+                    if (!generatedId || attempt >= MAX_ID_ATTEMPTS) {
+                        throw e;
                     }
-                } else {
-                    record.batchNumber = BatchManager.getCurrentBatchNumber();
+                    LogUtil.e(TAG, "⚠️ Transaction ID " + record.transactionId + " already in journal, generating a new one");
+                    record.transactionId = generateTransactionId();
+                } finally {
+                    db.endTransaction();
                 }
             }
-            
-            // Assign receipt number if not already set
-            if (record.receiptNumber == null || record.receiptNumber.isEmpty()) {
-                record.receiptNumber = BatchManager.getNextReceiptNumber();
-            }
+            afterSave(record);
 
-            List<TransactionRecord> journal = loadJournal();
-
-            // Remove transactions older than retention period
-            journal = removeOldTransactions(journal);
+            LogUtil.e(TAG, "✓ Transaction saved to journal: ID=" + record.transactionId + ", RRN=" + record.rrn + ", Status=" + record.status);
+            
+            return record.transactionId;
+        } catch (Exception e) {
+            LogUtil.e(TAG, "❌ Error saving transaction to journal: " + e.getMessage());
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
+            return null;
+        }
+    }
 
-            // Add new transaction at the beginning
-            journal.add(0, record);
+    /**
+     * Replace the stored copy of a transaction (same transaction ID), e.g. a
+     * refund re-saved with its original batch number; its batch totals move
+     * with it. Saves it as new if it is not in the journal.
+     * @return The transaction ID, or null if not saved
+     */
+    public static String resaveTransaction(TransactionRecord record) {
+        if (record.transactionId == null || record.transactionId.isEmpty()) {
+            LogUtil.e(TAG, "⚠️ resaveTransaction: transactionId is null or empty");
+            return null;
+        }
+        try {
+            assignBatchAndReceipt(record);
 
-            // Keep only last MAX_JOURNAL_SIZE transactions
-            if (journal.size() > MAX_JOURNAL_SIZE) {
-                journal = journal.subList(0, MAX_JOURNAL_SIZE);
+            SQLiteDatabase db = db();
+            db.beginTransaction();
+            try {
+                List<TransactionRecord> previous = query(TxnDb.COL_TRANSACTION_ID + " = ?",
+                        new String[] { record.transactionId }, "1");
+                if (!previous.isEmpty()) {
+                    addToTotals(db, previous.get(0), -1);
+                }
+                db.insertWithOnConflict(TxnDb.TABLE_TRANSACTIONS, null, toValues(record),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+                addToTotals(db, record, 1);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
+            afterSave(record);
 
-            // Save updated journal
-            saveJournal(journal);
+            LogUtil.e(TAG, "✓ Transaction re-saved to journal: ID=" + record.transactionId + ", RRN=" + record.rrn + ", Status=" + record.status);
 
-            // Save as last RRN if approved
-            if (record.rrn != null && "00".equals(record.responseCode)) {
-                saveLastRrn(record.rrn);
-            }
-
-            android.util.Log.e(TAG, "✓ Transaction saved to journal: ID=" + record.transactionId + ", RRN=" + record.rrn + ", Status=" + record.status);
-            LogUtil.e(TAG, "✓ Transaction saved to journal: ID=" + record.transactionId + ", RRN=" + record.rrn);
-            
-            // Verify transactionId is not null before returning
-            if (record.transactionId == null || record.transactionId.isEmpty()) {
-                LogUtil.e(TAG, "❌ WARNING: Transaction saved without transactionId! RRN=" + record.rrn);
-                // Generate one now as fallback
-                record.transactionId = generateTransactionId();
-                // Re-save with transactionId - reload journal and update
-                List<TransactionRecord> updatedJournal = loadJournal();
-                for (TransactionRecord tx : updatedJournal) {
-                    if (tx.rrn != null && tx.rrn.equals(record.rrn) && 
-                        (tx.transactionId == null || tx.transactionId.isEmpty())) {
-                        tx.transactionId = record.transactionId;
-                        break;
-                    }
-                }
-                saveJournal(updatedJournal);
-                LogUtil.e(TAG, "✓ Fixed: Generated transactionId=" + record.transactionId + " for RRN=" + record.rrn);
-            }
-            
             return record.transactionId;
         } catch (Exception e) {
-            LogUtil.e(TAG, "❌ Error saving transaction to journal: " + e.getMessage());
+            LogUtil.e(TAG, "❌ Error re-saving transaction to journal: " + e.getMessage());
             com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
             return null;
         }
     }
 
+    private static void assignBatchAndReceipt(TransactionRecord record) {
+        // Assign batch number if not already set
+        if (record.batchNumber == null || record.batchNumber.isEmpty()) {
+            // For reversals/refunds, try to get batch from original transaction
+            if (record.isReversal && record.originalRrn != null) {
+                TransactionRecord originalTx = findTransactionByRrn(record.originalRrn);
+                if (originalTx != null && originalTx.batchNumber != null) {
+                    record.batchNumber = originalTx.batchNumber;
+                    LogUtil.e(TAG, "✓ Using original batch number for reversal: " + record.batchNumber);
+                } else {
+                    record.batchNumber = BatchManager.getCurrentBatchNumber();
+                }
+            } else {
+                record.batchNumber = BatchManager.getCurrentBatchNumber();
+            }
+        }
+        
+        // Assign receipt number if not already set
+        if (record.receiptNumber == null || record.receiptNumber.isEmpty()) {
+            record.receiptNumber = BatchManager.getNextReceiptNumber();
+        }
+    }
+
+    private static void afterSave(TransactionRecord record) {
+        version.incrementAndGet();
+
+        // Retention and size cap (cheap: both use the timestamp index)
+        pruneIfDue();
+
+        // Save as last RRN if approved
+        if (record.rrn != null && "00".equals(record.responseCode)) {
+            saveLastRrn(record.rrn);
+        }
+    }
+
     /**
      * Get last RRN (for auto-fill in reversal)
      */
@@ -250,34 +318,28 @@ public class TransactionJournal {
      * Get last N transactions (filtered to last 16 days)
      */
     public static List<TransactionRecord> getLastTransactions(int count) {
-        List<TransactionRecord> journal = getAllTransactions();
-        int size = Math.min(count, journal.size());
-        return journal.subList(0, size);
+        return query(TxnDb.COL_TIMESTAMP + " >= ?",
+                new String[] { String.valueOf(retentionCutoff()) }, String.valueOf(count));
     }
 
     /**
      * Get all transactions in journal (filtered to last 16 days)
      */
     public static List<TransactionRecord> getAllTransactions() {
-        List<TransactionRecord> journal = loadJournal();
-        return removeOldTransactions(journal);
+        return query(TxnDb.COL_TIMESTAMP + " >= ?",
+                new String[] { String.valueOf(retentionCutoff()) }, null);
     }
 
     /**
-     * Find transaction by RRN
+     * Find transaction by RRN (most recent if the RRN was saved more than once)
      */
     public static TransactionRecord findTransactionByRrn(String rrn) {
         if (rrn == null || rrn.isEmpty()) {
             return null;
         }
 
-        List<TransactionRecord> journal = loadJournal();
-        for (TransactionRecord record : journal) {
-            if (rrn.equals(record.rrn)) {
-                return record;
-            }
-        }
-        return null;
+        List<TransactionRecord> matches = query(TxnDb.COL_RRN + " = ?", new String[] { rrn }, "1");
+        return matches.isEmpty() ? null : matches.get(0);
     }
 
     /**
@@ -289,31 +351,157 @@ public class TransactionJournal {
             return new ArrayList<>();
         }
 
-        List<TransactionRecord> journal = loadJournal();
-        List<TransactionRecord> batchTransactions = new ArrayList<>();
-        
-        for (TransactionRecord record : journal) {
-            // Match by exact batch number
-            if (batchNumber.equals(record.batchNumber)) {
-                batchTransactions.add(record);
-            }
-        }
+        List<TransactionRecord> batchTransactions = query(TxnDb.COL_BATCH_NUMBER + " = ?",
+                new String[] { batchNumber }, null);
         
         LogUtil.e(TAG, "📋 getTransactionsByBatch: Looking for batch=" + batchNumber + ", Found=" + batchTransactions.size() + " transactions");
-        if (batchTransactions.size() == 0 && journal.size() > 0) {
-            // Debug: show what batch numbers exist
-            java.util.Set<String> existingBatches = new java.util.HashSet<>();
-            for (TransactionRecord tx : journal) {
-                if (tx.batchNumber != null && !tx.batchNumber.isEmpty()) {
-                    existingBatches.add(tx.batchNumber);
-                }
-            }
-            LogUtil.e(TAG, "⚠️ No transactions found for batch " + batchNumber + ". Existing batch numbers: " + existingBatches);
-        }
         
         return batchTransactions;
     }
     
+    /**
+     * One page of journal rows and the key (row id, and timestamp for
+     * history pages) to continue after
+     */
+    public static class RecordPage {
+        public final List<TransactionRecord> records;
+        public final long lastId;
+        public final long lastTimestamp;
+
+        RecordPage(List<TransactionRecord> records, long lastId) {
+            this(records, lastId, 0);
+        }
+
+        RecordPage(List<TransactionRecord> records, long lastId, long lastTimestamp) {
+            this.records = records;
+            this.lastId = lastId;
+            this.lastTimestamp = lastTimestamp;
+        }
+    }
+
+    /**
+     * Transaction history (last 16 days), newest first, {@code limit} at a
+     * time. Keyed on (timestamp, row id) like the history ordering, so each
+     * page is a seek on the timestamp index rather than an OFFSET scan, and
+     * rows saved while scrolling don't shift the pages already shown.
+     *
+     * @param beforeTimestamp Previous page's lastTimestamp ({@link Long#MAX_VALUE} to start)
+     * @param beforeId        Previous page's lastId ({@link Long#MAX_VALUE} to start)
+     */
+    public static RecordPage getHistoryPage(long beforeTimestamp, long beforeId, int limit) {
+        List<TransactionRecord> records = new ArrayList<>();
+        long lastTimestamp = beforeTimestamp;
+        long lastId = beforeId;
+        String selection = TxnDb.COL_TIMESTAMP + " >= ? AND (" + TxnDb.COL_TIMESTAMP + " < ? OR ("
+                + TxnDb.COL_TIMESTAMP + " = ? AND " + TxnDb.COL_ID + " < ?))";
+        String before = Long.toString(beforeTimestamp);
+        try (Cursor c = db().query(TxnDb.TABLE_TRANSACTIONS, PAGE_COLUMNS, selection,
+                new String[] { String.valueOf(retentionCutoff()), before, before, Long.toString(beforeId) },
+                null, null, NEWEST_FIRST, Integer.toString(limit))) {
+            while (c.moveToNext()) {
+                records.add(fromCursor(c));
+                lastTimestamp = c.getLong(16);
+                lastId = c.getLong(22);
+            }
+        } catch (Exception e) {
+            LogUtil.e(TAG, "Error loading history page: " + e.getMessage());
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
+        }
+        return new RecordPage(records, lastId, lastTimestamp);
+    }
+
+    /**
+     * Journal version: changes whenever a transaction is saved, updated or
+     * removed, so callers can tell a {@link TransactionSearchIndex} is stale
+     */
+    public static long version() {
+        return version.get();
+    }
+
+    /**
+     * Search index over the last 16 days (RRN, card last 4, amount, date),
+     * read from those columns only. Call off the main thread.
+     */
+    public static TransactionSearchIndex buildSearchIndex() {
+        SQLiteDatabase db = db();
+        // Read before the rows: a write racing the build leaves the index stale, not wrong
+        TransactionSearchIndex.Builder builder = new TransactionSearchIndex.Builder(version.get());
+        try (Cursor c = db.query(TxnDb.TABLE_TRANSACTIONS, SEARCH_COLUMNS, TxnDb.COL_TIMESTAMP + " >= ?",
+                new String[] { String.valueOf(retentionCutoff()) }, null, null, NEWEST_FIRST)) {
+            while (c.moveToNext()) {
+                builder.add(c.getLong(0), c.getString(1), c.getString(2), c.getString(3), c.getString(4));
+            }
+        } catch (Exception e) {
+            LogUtil.e(TAG, "Error building transaction search index: " + e.getMessage());
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Transactions by row id (as returned by {@link TransactionSearchIndex#search}), newest first
+     */
+    public static List<TransactionRecord> getTransactionsByIds(long[] ids) {
+        if (ids == null || ids.length == 0) {
+            return new ArrayList<>();
+        }
+        StringBuilder selection = new StringBuilder(TxnDb.COL_ID).append(" IN (");
+        String[] args = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+            args[i] = Long.toString(ids[i]);
+        }
+        selection.append(')');
+        return query(selection.toString(), args, null);
+    }
+
+    /**
+     * Unsettled APPROVED / VOID transactions of a batch (what settlement
+     * uploads), oldest first, {@code limit} at a time. Keyed on the row id,
+     * so a page costs the same at the end of a large batch as at the start
+     * and rows settled between pages don't shift the next one.
+     *
+     * @param afterId Row id of the previous page's last row (0 to start)
+     */
+    public static RecordPage getUnsettledBatchPage(String batchNumber, long afterId, int limit) {
+        List<TransactionRecord> records = new ArrayList<>();
+        long lastId = afterId;
+        if (batchNumber == null || batchNumber.isEmpty()) {
+            return new RecordPage(records, lastId);
+        }
+        String selection = UNSETTLED + " AND " + TxnDb.COL_ID + " > ?";
+        try (Cursor c = db().query(TxnDb.TABLE_TRANSACTIONS, PAGE_COLUMNS, selection,
+                new String[] { batchNumber, Long.toString(afterId) }, null, null, TxnDb.COL_ID + " ASC",
+                Integer.toString(limit))) {
+            while (c.moveToNext()) {
+                records.add(fromCursor(c));
+                lastId = c.getLong(22);
+            }
+        } catch (Exception e) {
+            LogUtil.e(TAG, "Error loading settlement page: " + e.getMessage());
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
+        }
+        return new RecordPage(records, lastId);
+    }
+
+    /**
+     * Number of transactions {@link #getUnsettledBatchPage} returns for a
+     * batch (unsettled, approved or voided): what settlement will upload
+     */
+    public static int countUnsettled(String batchNumber) {
+        if (batchNumber == null || batchNumber.isEmpty()) {
+            return 0;
+        }
+        try (Cursor c = db().rawQuery("SELECT COUNT(*) FROM " + TxnDb.TABLE_TRANSACTIONS
+                + " WHERE " + UNSETTLED, new String[] { batchNumber })) {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        } catch (Exception e) {
+            LogUtil.e(TAG, "Error counting unsettled transactions: " + e.getMessage());
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
+            return 0;
+        }
+    }
+
     /**
      * Get current batch number
      */
@@ -331,41 +519,15 @@ public class TransactionJournal {
             return null;
         }
 
-        // Normalize transaction ID: if it doesn't start with "TXN", prepend it
-        String normalizedId = transactionId.trim().toUpperCase();
-        if (!normalizedId.startsWith("TXN")) {
-            normalizedId = "TXN" + normalizedId;
+        String normalizedId = normalizeTransactionId(transactionId);
+        TransactionRecord record = queryById(normalizedId);
+        if (record == null) {
+            LogUtil.e(TAG, "❌ Transaction not found: " + normalizedId);
+            return null;
         }
-        
-        android.util.Log.e(TAG, "🔍 Searching for transaction ID: " + normalizedId + " (original input: " + transactionId + ")");
-        LogUtil.e(TAG, "🔍 Searching for transaction ID: " + normalizedId + " (original input: " + transactionId + ")");
 
-        List<TransactionRecord> journal = loadJournal();
-        android.util.Log.e(TAG, "📋 Loaded journal with " + journal.size() + " transactions");
-        LogUtil.e(TAG, "📋 Loaded journal with " + journal.size() + " transactions");
-        
-        // Debug: Log first few transaction IDs
-        int sampleCount = Math.min(5, journal.size());
-        for (int i = 0; i < sampleCount; i++) {
-            TransactionRecord tx = journal.get(i);
-            android.util.Log.e(TAG, "  Sample TX[" + i + "]: ID=" + tx.transactionId + ", RRN=" + tx.rrn + ", Status=" + tx.status + ", Settled=" + tx.isSettled);
-            LogUtil.e(TAG, "  Sample TX[" + i + "]: ID=" + tx.transactionId + ", RRN=" + tx.rrn + ", Status=" + tx.status + ", Settled=" + tx.isSettled);
-        }
-        
-        for (TransactionRecord record : journal) {
-            if (record.transactionId != null) {
-                String recordIdUpper = record.transactionId.toUpperCase();
-                if (normalizedId.equals(recordIdUpper)) {
-                    LogUtil.e(TAG, "✓ Found transaction: ID=" + record.transactionId + ", RRN=" + record.rrn + ", Status=" + record.status);
-                    return record;
-                }
-            } else {
-                LogUtil.e(TAG, "⚠️ Transaction without transactionId found: RRN=" + record.rrn);
-            }
-        }
-        
-        LogUtil.e(TAG, "❌ Transaction not found: " + normalizedId);
-        return null;
+        LogUtil.e(TAG, "✓ Found transaction: ID=" + record.transactionId + ", RRN=" + record.rrn + ", Status=" + record.status);
+        return record;
     }
 
     /**
@@ -380,64 +542,28 @@ public class TransactionJournal {
      */
     public static TransactionRecord findVoidableTransactionById(String transactionId) {
         if (transactionId == null || transactionId.isEmpty()) {
-            android.util.Log.e(TAG, "⚠️ findVoidableTransactionById: transactionId is null or empty");
+            LogUtil.e(TAG, "⚠️ findVoidableTransactionById: transactionId is null or empty");
             return null;
         }
 
-        // Normalize transaction ID: if it doesn't start with "TXN", prepend it
-        String normalizedId = transactionId.trim().toUpperCase();
-        if (!normalizedId.startsWith("TXN")) {
-            normalizedId = "TXN" + normalizedId;
+        String normalizedId = normalizeTransactionId(transactionId);
+        TransactionRecord record = queryById(normalizedId);
+        if (record == null) {
+            LogUtil.e(TAG, "❌ Transaction not found: " + normalizedId);
+            return null;
         }
-        
-        android.util.Log.e(TAG, "🔍 Searching for voidable transaction ID: " + normalizedId + " (original input: " + transactionId + ")");
 
-        List<TransactionRecord> journal = loadJournal();
-        android.util.Log.e(TAG, "📋 Loaded journal with " + journal.size() + " transactions for void search");
-        
-        // Debug: Log first few transaction IDs
-        int sampleCount = Math.min(5, journal.size());
-        for (int i = 0; i < sampleCount; i++) {
-            TransactionRecord tx = journal.get(i);
-            android.util.Log.e(TAG, "  Sample TX[" + i + "]: ID=" + tx.transactionId + ", RRN=" + tx.rrn + ", Status=" + tx.status + ", Settled=" + tx.isSettled);
-        }
-        for (TransactionRecord record : journal) {
-            if (record.transactionId != null) {
-                String recordIdUpper = record.transactionId.toUpperCase();
-                if (normalizedId.equals(recordIdUpper)) {
-                    android.util.Log.e(TAG, "✓ Found transaction by ID: " + record.transactionId);
-                    // Check if transaction is voidable
-                    boolean isApproved = "APPROVED".equals(record.status);
-                    boolean isNotSettled = !record.isSettled; // Must NOT be settled for void
-                    boolean isNotRefunded = !"REFUNDED".equals(record.status);
-                    boolean isNotVoided = !"VOID".equals(record.status);
-                    boolean isNotReversal = !record.isReversal;
-                    
-                    android.util.Log.e(TAG, "  Checking voidability: Approved=" + isApproved + ", NotSettled=" + isNotSettled + 
-                            ", NotRefunded=" + isNotRefunded + ", NotVoided=" + isNotVoided + ", NotReversal=" + isNotReversal);
-                    
-                    if (isApproved && isNotSettled && isNotRefunded && isNotVoided && isNotReversal) {
-                        android.util.Log.e(TAG, "✓ Transaction is voidable!");
-                        return record;
-                    } else {
-                        // Transaction found but not voidable
-                        android.util.Log.e(TAG, "❌ Transaction found but not voidable: ID=" + record.transactionId + 
-                                ", Status=" + record.status + 
-                                ", IsSettled=" + record.isSettled +
-                                ", IsReversal=" + record.isReversal);
-                        LogUtil.e(TAG, "Transaction found but not voidable: ID=" + record.transactionId + 
-                                ", Status=" + record.status + 
-                                ", IsSettled=" + record.isSettled +
-                                ", IsReversal=" + record.isReversal);
-                        return null;
-                    }
-                }
-            } else {
-                android.util.Log.e(TAG, "⚠️ Transaction without transactionId found: RRN=" + record.rrn);
-            }
+        // Approved, not settled, not refunded/voided, not a reversal
+        // ("APPROVED" already excludes REFUNDED and VOID)
+        if ("APPROVED".equals(record.status) && !record.isSettled && !record.isReversal) {
+            LogUtil.e(TAG, "✓ Transaction is voidable: ID=" + record.transactionId);
+            return record;
         }
-        
-        android.util.Log.e(TAG, "❌ Transaction not found: " + normalizedId);
+
+        LogUtil.e(TAG, "Transaction found but not voidable: ID=" + record.transactionId + 
+                ", Status=" + record.status + 
+                ", IsSettled=" + record.isSettled +
+                ", IsReversal=" + record.isReversal);
         return null;
     }
     
@@ -452,64 +578,28 @@ public class TransactionJournal {
      */
     public static TransactionRecord findRefundableTransactionById(String transactionId) {
         if (transactionId == null || transactionId.isEmpty()) {
-            android.util.Log.e(TAG, "⚠️ findRefundableTransactionById: transactionId is null or empty");
+            LogUtil.e(TAG, "⚠️ findRefundableTransactionById: transactionId is null or empty");
             return null;
         }
 
-        // Normalize transaction ID: if it doesn't start with "TXN", prepend it
-        String normalizedId = transactionId.trim().toUpperCase();
-        if (!normalizedId.startsWith("TXN")) {
-            normalizedId = "TXN" + normalizedId;
+        String normalizedId = normalizeTransactionId(transactionId);
+        TransactionRecord record = queryById(normalizedId);
+        if (record == null) {
+            LogUtil.e(TAG, "❌ Transaction not found: " + normalizedId);
+            return null;
         }
-        
-        android.util.Log.e(TAG, "🔍 Searching for refundable transaction ID: " + normalizedId + " (original input: " + transactionId + ")");
 
-        List<TransactionRecord> journal = loadJournal();
-        android.util.Log.e(TAG, "📋 Loaded journal with " + journal.size() + " transactions for refund search");
-        
-        // Debug: Log first few transaction IDs
-        int sampleCount = Math.min(5, journal.size());
-        for (int i = 0; i < sampleCount; i++) {
-            TransactionRecord tx = journal.get(i);
-            android.util.Log.e(TAG, "  Sample TX[" + i + "]: ID=" + tx.transactionId + ", RRN=" + tx.rrn + ", Status=" + tx.status + ", Settled=" + tx.isSettled);
+        // Approved, settled, not refunded, not a reversal
+        // ("APPROVED" already excludes REFUNDED)
+        if ("APPROVED".equals(record.status) && record.isSettled && !record.isReversal) {
+            LogUtil.e(TAG, "✓ Transaction is refundable: ID=" + record.transactionId);
+            return record;
         }
-        
-        for (TransactionRecord record : journal) {
-            if (record.transactionId != null) {
-                String recordIdUpper = record.transactionId.toUpperCase();
-                if (normalizedId.equals(recordIdUpper)) {
-                    android.util.Log.e(TAG, "✓ Found transaction by ID: " + record.transactionId);
-                    // Check if transaction is refundable
-                    boolean isApproved = "APPROVED".equals(record.status);
-                    boolean isSettled = record.isSettled;
-                    boolean isNotRefunded = !"REFUNDED".equals(record.status);
-                    boolean isNotReversal = !record.isReversal;
-                    
-                    android.util.Log.e(TAG, "  Checking refundability: Approved=" + isApproved + ", Settled=" + isSettled + 
-                            ", NotRefunded=" + isNotRefunded + ", NotReversal=" + isNotReversal);
-                    
-                    if (isApproved && isSettled && isNotRefunded && isNotReversal) {
-                        android.util.Log.e(TAG, "✓ Transaction is refundable!");
-                        return record;
-                    } else {
-                        // Transaction found but not refundable
-                        android.util.Log.e(TAG, "❌ Transaction found but not refundable: ID=" + record.transactionId + 
-                                ", Status=" + record.status + 
-                                ", IsSettled=" + record.isSettled +
-                                ", IsReversal=" + record.isReversal);
-                        LogUtil.e(TAG, "Transaction found but not refundable: ID=" + record.transactionId + 
-                                ", Status=" + record.status + 
-                                ", IsSettled=" + record.isSettled +
-                                ", IsReversal=" + record.isReversal);
-                        return null;
-                    }
-                }
-            } else {
-                android.util.Log.e(TAG, "⚠️ Transaction without transactionId found: RRN=" + record.rrn);
-            }
-        }
-        
-        android.util.Log.e(TAG, "❌ Transaction not found: " + normalizedId);
+
+        LogUtil.e(TAG, "Transaction found but not refundable: ID=" + record.transactionId + 
+                ", Status=" + record.status + 
+                ", IsSettled=" + record.isSettled +
+                ", IsReversal=" + record.isReversal);
         return null;
     }
     
@@ -527,35 +617,33 @@ public class TransactionJournal {
         }
 
         try {
-            List<TransactionRecord> journal = loadJournal();
+            SQLiteDatabase db = db();
+            ContentValues settled = new ContentValues();
+            settled.put(TxnDb.COL_IS_SETTLED, 1);
+            String where = TxnDb.COL_BATCH_NUMBER + " = ? AND " + TxnDb.COL_STATUS + " = 'APPROVED' AND "
+                    + TxnDb.COL_IS_REVERSAL + " = 0";
             int settledCount = 0;
 
-            for (TransactionRecord record : journal) {
-                if (batchNumber.equals(record.batchNumber) && 
-                    "APPROVED".equals(record.status) && 
-                    !record.isReversal) {
-                    
-                    // If acceptedRrns provided, only mark those as settled
-                    if (acceptedRrns != null && !acceptedRrns.isEmpty()) {
-                        if (record.rrn != null && acceptedRrns.contains(record.rrn)) {
-                            record.isSettled = true;
-                            settledCount++;
-                            LogUtil.e(TAG, "✓ Marked transaction as settled: ID=" + record.transactionId + 
-                                    ", RRN=" + record.rrn);
+            if (acceptedRrns != null && !acceptedRrns.isEmpty()) {
+                // Only mark the RRNs accepted in settlement
+                db.beginTransaction();
+                try {
+                    for (String rrn : new java.util.LinkedHashSet<>(acceptedRrns)) {
+                        if (rrn != null) {
+                            settledCount += db.update(TxnDb.TABLE_TRANSACTIONS, settled,
+                                    where + " AND " + TxnDb.COL_RRN + " = ?", new String[] { batchNumber, rrn });
                         }
-                    } else {
-                        // Mark all approved transactions in batch as settled
-                        record.isSettled = true;
-                        settledCount++;
-                        LogUtil.e(TAG, "✓ Marked transaction as settled: ID=" + record.transactionId + 
-                                ", RRN=" + record.rrn);
                     }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
                 }
+            } else {
+                // Mark all approved transactions in batch as settled
+                settledCount = db.update(TxnDb.TABLE_TRANSACTIONS, settled, where, new String[] { batchNumber });
             }
 
             if (settledCount > 0) {
-                // Save updated journal
-                saveJournal(journal);
                 LogUtil.e(TAG, "✓ Marked " + settledCount + " transaction(s) as settled for batch: " + batchNumber);
             }
 
@@ -577,30 +665,30 @@ public class TransactionJournal {
         }
 
         try {
-            // Normalize transaction ID
-            String normalizedId = transactionId.trim().toUpperCase();
-            if (!normalizedId.startsWith("TXN")) {
-                normalizedId = "TXN" + normalizedId;
-            }
-
-            List<TransactionRecord> journal = loadJournal();
+            String normalizedId = normalizeTransactionId(transactionId);
+            ContentValues values = new ContentValues();
+            values.put(TxnDb.COL_STATUS, newStatus);
             boolean updated = false;
 
-            for (TransactionRecord record : journal) {
-                if (record.transactionId != null && normalizedId.equals(record.transactionId.toUpperCase())) {
-                    String oldStatus = record.status;
+            SQLiteDatabase db = db();
+            db.beginTransaction();
+            try {
+                TransactionRecord record = queryById(normalizedId);
+                if (record != null) {
+                    updated = db.update(TxnDb.TABLE_TRANSACTIONS, values,
+                            TxnDb.COL_TRANSACTION_ID + " = ?", new String[] { normalizedId }) > 0;
+                    addToTotals(db, record, -1);
                     record.status = newStatus;
-                    updated = true;
-                    LogUtil.e(TAG, "✓ Updated transaction status: ID=" + record.transactionId + 
-                            ", Old Status=" + oldStatus + ", New Status=" + newStatus);
-                    break;
+                    addToTotals(db, record, 1);
                 }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
 
             if (updated) {
-                // Save updated journal
-                saveJournal(journal);
-                LogUtil.e(TAG, "✓ Transaction status updated to: " + newStatus);
+                version.incrementAndGet();
+                LogUtil.e(TAG, "✓ Transaction status updated: ID=" + normalizedId + ", New Status=" + newStatus);
             } else {
                 LogUtil.e(TAG, "⚠️ Transaction not found for status update: " + transactionId);
             }
@@ -614,32 +702,19 @@ public class TransactionJournal {
     }
 
     /**
-     * Save pending reversal (for offline queue)
+     * Save pending reversal (for offline queue, see ReversalQueueStore)
      */
     public static void savePendingReversal(String rrn, String amount, String currencyCode, String reason) {
         try {
-            TransactionRecord reversal = new TransactionRecord();
-            reversal.rrn = rrn;
-            reversal.amount = amount;
-            reversal.currencyCode = currencyCode;
-            reversal.transactionType = "20"; // Reversal
-            reversal.status = "PENDING";
-            reversal.isReversal = true;
-            reversal.originalRrn = rrn;
-
-            // Use current date/time
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyMMdd", Locale.US);
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HHmmss", Locale.US);
-            Date now = new Date();
-            reversal.date = dateFormat.format(now);
-            reversal.time = timeFormat.format(now);
-
-            // Store in pending reversals list
-            List<TransactionRecord> pendingReversals = getPendingReversals();
-            pendingReversals.add(reversal);
-            savePendingReversals(pendingReversals);
-
-            LogUtil.e(TAG, "✓ Pending reversal saved: " + rrn);
+            org.json.JSONObject reversal = new org.json.JSONObject();
+            reversal.put("rrn", rrn);
+            reversal.put("amount", amount != null ? amount : "");
+            reversal.put("currency", currencyCode != null ? currencyCode : "");
+            reversal.put("reason", reason != null ? reason : "HOST_UNAVAILABLE");
+
+            if (ReversalQueueStore.add(MyApplication.app, reversal)) {
+                LogUtil.e(TAG, "✓ Pending reversal saved: " + rrn);
+            }
         } catch (Exception e) {
             LogUtil.e(TAG, "❌ Error saving pending reversal: " + e.getMessage());
             com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
@@ -650,189 +725,276 @@ public class TransactionJournal {
      * Get pending reversals (for retry when host comes back online)
      */
     public static List<TransactionRecord> getPendingReversals() {
-        try {
-            SharedPreferences pref = MyApplication.app.getSharedPreferences(
-                    PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
-            String json = pref.getString("pending_reversals", "[]");
-
-            if (json == null || json.isEmpty()) {
-                return new ArrayList<>();
+        List<TransactionRecord> reversals = new ArrayList<>();
+        org.json.JSONArray queue = ReversalQueueStore.load(MyApplication.app);
+        for (int i = 0; i < queue.length(); i++) {
+            org.json.JSONObject queued = queue.optJSONObject(i);
+            if (queued == null) {
+                continue;
             }
-
-            Gson gson = new Gson();
-            Type type = new TypeToken<List<TransactionRecord>>() {
-            }.getType();
-            List<TransactionRecord> reversals = gson.fromJson(json, type);
-            return reversals != null ? reversals : new ArrayList<>();
-        } catch (Exception e) {
-            LogUtil.e(TAG, "Error loading pending reversals: " + e.getMessage());
-            return new ArrayList<>();
+            TransactionRecord reversal = new TransactionRecord();
+            reversal.transactionId = queued.optString("transaction_id", null);
+            reversal.rrn = queued.optString("rrn");
+            reversal.amount = queued.optString("amount");
+            reversal.currencyCode = queued.optString("currency");
+            reversal.transactionType = "20"; // Reversal
+            reversal.status = "PENDING";
+            reversal.isReversal = true;
+            reversal.originalRrn = reversal.rrn;
+            reversals.add(reversal);
         }
+        return reversals;
     }
 
     /**
      * Remove pending reversal (after successful retry)
      */
     public static void removePendingReversal(String rrn) {
-        try {
-            List<TransactionRecord> pendingReversals = getPendingReversals();
-            pendingReversals.removeIf(r -> rrn.equals(r.rrn));
-            savePendingReversals(pendingReversals);
+        if (ReversalQueueStore.removeByRrn(MyApplication.app, rrn)) {
             LogUtil.e(TAG, "✓ Pending reversal removed: " + rrn);
-        } catch (Exception e) {
-            LogUtil.e(TAG, "Error removing pending reversal: " + e.getMessage());
         }
     }
 
     /**
-     * Remove transactions older than retention period (16 days)
-     * 
-     * @param journal List of transactions to filter
-     * @return Filtered list containing only transactions within retention period
+     * Journal database; imports the legacy SharedPreferences journal on first use
      */
-    private static List<TransactionRecord> removeOldTransactions(List<TransactionRecord> journal) {
-        if (journal == null || journal.isEmpty()) {
-            return journal;
-        }
-
-        long cutoffTime = System.currentTimeMillis() - RETENTION_MILLIS;
-        List<TransactionRecord> filtered = new ArrayList<>();
-        int removedCount = 0;
-
-        for (TransactionRecord record : journal) {
-            if (record.timestamp >= cutoffTime) {
-                filtered.add(record);
-            } else {
-                removedCount++;
+    static SQLiteDatabase db() {
+        SQLiteDatabase db = TxnDb.getInstance(MyApplication.app).getWritableDatabase();
+        if (!legacyMigrated) {
+            synchronized (TransactionJournal.class) {
+                if (!legacyMigrated) {
+                    migrateLegacyJournal(db);
+                    legacyMigrated = true;
+                }
             }
         }
-
-        if (removedCount > 0) {
-            LogUtil.e(TAG, "Removed " + removedCount + " transaction(s) older than " + RETENTION_DAYS + " days");
-            // Save the filtered journal back to storage
-            saveJournal(filtered);
-        }
-
-        return filtered;
+        return db;
     }
 
     /**
-     * Load journal from SharedPreferences
+     * One-time move of the Gson/SharedPreferences journal into TxnDb
+     * Records without a transaction ID get one (reusing the ID of another
+     * record with the same RRN); when a transaction was saved more than
+     * once, the newest copy (first in the old list) wins.
      */
-    private static List<TransactionRecord> loadJournal() {
-        try {
-            SharedPreferences pref = MyApplication.app.getSharedPreferences(
-                    PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
-            String json = pref.getString(KEY_TRANSACTION_JOURNAL, "[]");
-
-            if (json == null || json.isEmpty()) {
-                return new ArrayList<>();
-            }
+    static void migrateLegacyJournal(SQLiteDatabase db) {
+        SharedPreferences pref = MyApplication.app.getSharedPreferences(
+                PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
+        String json = pref.getString(KEY_TRANSACTION_JOURNAL, null);
+        if (json == null) {
+            return;
+        }
 
-            Gson gson = new Gson();
+        try {
             Type type = new TypeToken<List<TransactionRecord>>() {
             }.getType();
-            List<TransactionRecord> journal = gson.fromJson(json, type);
-            
-            if (journal == null) {
-                LogUtil.e(TAG, "⚠️ loadJournal: JSON deserialized to null");
-                return new ArrayList<>();
-            }
-            
-            LogUtil.e(TAG, "📋 loadJournal: Loaded " + journal.size() + " transactions from JSON");
-            
-            // Migration: Ensure all transactions have transactionId
-            // This handles old transactions that were saved before transactionId was added
-            boolean needsSave = false;
-            // Track RRN to transactionId mapping to avoid duplicates
-            java.util.Map<String, String> rrnToIdMap = new java.util.HashMap<>();
-            
-            // First pass: collect existing transactionIds by RRN and check for missing ones
-            int missingIdCount = 0;
-            for (TransactionRecord record : journal) {
-                if (record.transactionId != null && !record.transactionId.isEmpty() && 
-                    record.rrn != null && !record.rrn.isEmpty()) {
-                    rrnToIdMap.put(record.rrn, record.transactionId);
-                } else if (record.transactionId == null || record.transactionId.isEmpty()) {
-                    missingIdCount++;
-                }
-            }
-            
-            if (missingIdCount > 0) {
-                LogUtil.e(TAG, "⚠️ Found " + missingIdCount + " transaction(s) without transactionId");
-            }
-            
-            // Second pass: assign transactionIds to records that don't have one
-            for (TransactionRecord record : journal) {
-                if (record.transactionId == null || record.transactionId.isEmpty()) {
-                    // Try to reuse existing transactionId for same RRN, otherwise generate new one
-                    if (record.rrn != null && !record.rrn.isEmpty() && rrnToIdMap.containsKey(record.rrn)) {
-                        record.transactionId = rrnToIdMap.get(record.rrn);
-                        LogUtil.e(TAG, "✓ Reused transaction ID for RRN: " + record.rrn + ", ID=" + record.transactionId);
-                    } else {
-                        record.transactionId = generateTransactionId();
+            List<TransactionRecord> journal = GsonUtil.gson().fromJson(json, type);
+            int imported = 0;
+
+            if (journal != null) {
+                java.util.Map<String, String> rrnToIdMap = new java.util.HashMap<>();
+                java.util.Set<String> usedIds = new java.util.HashSet<>();
+                for (TransactionRecord record : journal) {
+                    if (record.transactionId != null && !record.transactionId.isEmpty()) {
+                        usedIds.add(record.transactionId.toUpperCase(Locale.US));
                         if (record.rrn != null && !record.rrn.isEmpty()) {
                             rrnToIdMap.put(record.rrn, record.transactionId);
                         }
-                        LogUtil.e(TAG, "✓ Generated transaction ID for old transaction: RRN=" + record.rrn + 
-                                ", New ID=" + record.transactionId);
                     }
-                    needsSave = true;
+                }
+
+                db.beginTransaction();
+                try {
+                    for (TransactionRecord record : journal) {
+                        if (record.transactionId == null || record.transactionId.isEmpty()) {
+                            record.transactionId = rrnToIdMap.get(record.rrn);
+                            if (record.transactionId == null) {
+                                do {
+                                    record.transactionId = generateTransactionId();
+                                } while (!usedIds.add(record.transactionId.toUpperCase(Locale.US)));
+                                if (record.rrn != null && !record.rrn.isEmpty()) {
+                                    rrnToIdMap.put(record.rrn, record.transactionId);
+                                }
+                            }
+                        }
+                        if (db.insertWithOnConflict(TxnDb.TABLE_TRANSACTIONS, null, toValues(record),
+                                SQLiteDatabase.CONFLICT_IGNORE) != -1) {
+                            imported++;
+                        }
+                    }
+                    TxnDb.rebuildBatchTotals(db, null);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
                 }
             }
-            
-            // Save updated journal if any transactions were migrated
-            if (needsSave) {
-                LogUtil.e(TAG, "💾 Migrating transaction IDs - saving updated journal");
-                saveJournal(journal);
-                LogUtil.e(TAG, "✓ Migrated transaction IDs for old transactions");
-            }
-            
-            // Debug: Log sample of loaded transactions
-            int sampleCount = Math.min(3, journal.size());
-            for (int i = 0; i < sampleCount; i++) {
-                TransactionRecord tx = journal.get(i);
-                LogUtil.e(TAG, "  Loaded TX[" + i + "]: ID=" + tx.transactionId + ", RRN=" + tx.rrn);
-            }
-            
-            return journal;
+
+            pref.edit().remove(KEY_TRANSACTION_JOURNAL).apply();
+            LogUtil.e(TAG, "✓ Migrated " + imported + " transaction(s) from SharedPreferences to TxnDb");
         } catch (Exception e) {
-            LogUtil.e(TAG, "Error loading transaction journal: " + e.getMessage());
+            // Keep the legacy data; the import is retried on next start
+            LogUtil.e(TAG, "❌ Error migrating transaction journal: " + e.getMessage());
             com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
-            return new ArrayList<>();
         }
     }
 
     /**
-     * Save journal to SharedPreferences
+     * Drop transactions older than the retention period (16 days) and
+     * beyond MAX_JOURNAL_SIZE, at most once per PRUNE_INTERVAL_MILLIS
+     */
+    private static void pruneIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneAt < PRUNE_INTERVAL_MILLIS) {
+            return;
+        }
+        lastPruneAt = now;
+        prune(retentionCutoff(), MAX_JOURNAL_SIZE);
+    }
+
+    /**
+     * Drop transactions older than {@code cutoff} and beyond the newest
+     * {@code maxSize}; totals of the batches that lost rows are rebuilt
+     *
+     * @return Number of transactions removed
      */
-    private static void saveJournal(List<TransactionRecord> journal) {
+    static int prune(long cutoff, int maxSize) {
+        String expiredWhere = TxnDb.COL_TIMESTAMP + " < " + cutoff;
+        String overflowWhere = TxnDb.COL_ID + " IN (SELECT " + TxnDb.COL_ID
+                + " FROM " + TxnDb.TABLE_TRANSACTIONS + " ORDER BY " + NEWEST_FIRST
+                + " LIMIT -1 OFFSET " + maxSize + ")";
+        int expired;
+        int overflow;
+
+        SQLiteDatabase db = db();
+        db.beginTransaction();
         try {
-            Gson gson = new Gson();
-            String json = gson.toJson(journal);
+            // Batches losing rows get their totals recomputed from what is left
+            java.util.Set<String> batches = new java.util.HashSet<>();
+            try (Cursor c = db.rawQuery("SELECT DISTINCT " + TxnDb.COL_BATCH_NUMBER + " FROM "
+                    + TxnDb.TABLE_TRANSACTIONS + " WHERE " + expiredWhere + " OR " + overflowWhere, null)) {
+                while (c.moveToNext()) {
+                    if (!c.isNull(0)) {
+                        batches.add(c.getString(0));
+                    }
+                }
+            }
+            expired = db.delete(TxnDb.TABLE_TRANSACTIONS, expiredWhere, null);
+            overflow = db.delete(TxnDb.TABLE_TRANSACTIONS, overflowWhere, null);
+            for (String batch : batches) {
+                TxnDb.rebuildBatchTotals(db, batch);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (expired + overflow > 0) {
+            version.incrementAndGet();
+            LogUtil.e(TAG, "Removed " + expired + " expired transaction(s) and " + overflow
+                    + " over the " + maxSize + " cap");
+        }
+        return expired + overflow;
+    }
 
-            SharedPreferences pref = MyApplication.app.getSharedPreferences(
-                    PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
-            pref.edit().putString(KEY_TRANSACTION_JOURNAL, json).apply();
-        } catch (Exception e) {
-            LogUtil.e(TAG, "Error saving transaction journal: " + e.getMessage());
+    private static void addToTotals(SQLiteDatabase db, TransactionRecord record, int sign) {
+        TxnDb.addToBatchTotals(db, record.batchNumber, record.cardBrand, record.transactionType,
+                record.status, record.amount, sign);
+    }
+
+    private static long retentionCutoff() {
+        return System.currentTimeMillis() - RETENTION_MILLIS;
+    }
+
+    /**
+     * Normalize transaction ID: if it doesn't start with "TXN", prepend it
+     */
+    private static String normalizeTransactionId(String transactionId) {
+        String normalizedId = transactionId.trim().toUpperCase(Locale.US);
+        if (!normalizedId.startsWith("TXN")) {
+            normalizedId = "TXN" + normalizedId;
         }
+        return normalizedId;
     }
 
     /**
-     * Save pending reversals to SharedPreferences
+     * Lookup by transaction ID (case-insensitive via the column collation)
      */
-    private static void savePendingReversals(List<TransactionRecord> reversals) {
-        try {
-            Gson gson = new Gson();
-            String json = gson.toJson(reversals);
+    private static TransactionRecord queryById(String normalizedId) {
+        List<TransactionRecord> matches = query(TxnDb.COL_TRANSACTION_ID + " = ?",
+                new String[] { normalizedId }, "1");
+        return matches.isEmpty() ? null : matches.get(0);
+    }
 
-            SharedPreferences pref = MyApplication.app.getSharedPreferences(
-                    PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
-            pref.edit().putString("pending_reversals", json).apply();
+    /**
+     * Query transactions, newest first
+     */
+    private static List<TransactionRecord> query(String selection, String[] args, String limit) {
+        List<TransactionRecord> records = new ArrayList<>();
+        try (Cursor c = db().query(TxnDb.TABLE_TRANSACTIONS, COLUMNS, selection, args,
+                null, null, NEWEST_FIRST, limit)) {
+            while (c.moveToNext()) {
+                records.add(fromCursor(c));
+            }
         } catch (Exception e) {
-            LogUtil.e(TAG, "Error saving pending reversals: " + e.getMessage());
+            LogUtil.e(TAG, "Error loading transaction journal: " + e.getMessage());
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "TransactionJournal", e);
         }
+        return records;
+    }
+
+    private static ContentValues toValues(TransactionRecord record) {
+        ContentValues values = new ContentValues();
+        values.put(TxnDb.COL_TRANSACTION_ID, record.transactionId);
+        values.put(TxnDb.COL_RRN, record.rrn);
+        values.put(TxnDb.COL_AUTH_CODE, record.authCode);
+        values.put(TxnDb.COL_PAN, record.pan);
+        values.put(TxnDb.COL_CARDHOLDER_NAME, record.cardholderName);
+        values.put(TxnDb.COL_AMOUNT, record.amount);
+        values.put(TxnDb.COL_CURRENCY_CODE, record.currencyCode);
+        values.put(TxnDb.COL_TRANSACTION_TYPE, record.transactionType);
+        values.put(TxnDb.COL_ENTRY_MODE, record.entryMode);
+        values.put(TxnDb.COL_AID, record.aid);
+        values.put(TxnDb.COL_CARD_BRAND, record.cardBrand);
+        values.put(TxnDb.COL_CARD_TYPE, record.cardType);
+        values.put(TxnDb.COL_DATE, record.date);
+        values.put(TxnDb.COL_TIME, record.time);
+        values.put(TxnDb.COL_RESPONSE_CODE, record.responseCode);
+        values.put(TxnDb.COL_STATUS, record.status);
+        values.put(TxnDb.COL_TIMESTAMP, record.timestamp);
+        values.put(TxnDb.COL_IS_REVERSAL, record.isReversal ? 1 : 0);
+        values.put(TxnDb.COL_ORIGINAL_RRN, record.originalRrn);
+        values.put(TxnDb.COL_BATCH_NUMBER, record.batchNumber);
+        values.put(TxnDb.COL_RECEIPT_NUMBER, record.receiptNumber);
+        values.put(TxnDb.COL_IS_SETTLED, record.isSettled ? 1 : 0);
+        return values;
+    }
+
+    /**
+     * Map a row selected with {@link #COLUMNS}
+     */
+    private static TransactionRecord fromCursor(Cursor c) {
+        TransactionRecord record = new TransactionRecord(c.getLong(16));
+        record.transactionId = c.getString(0);
+        record.rrn = c.getString(1);
+        record.authCode = c.getString(2);
+        record.pan = c.getString(3);
+        record.cardholderName = c.getString(4);
+        record.amount = c.getString(5);
+        record.currencyCode = c.getString(6);
+        record.transactionType = c.getString(7);
+        record.entryMode = c.getString(8);
+        record.aid = c.getString(9);
+        record.cardBrand = c.getString(10);
+        record.cardType = c.getString(11);
+        record.date = c.getString(12);
+        record.time = c.getString(13);
+        record.responseCode = c.getString(14);
+        record.status = c.getString(15);
+        record.isReversal = c.getInt(17) != 0;
+        record.originalRrn = c.getString(18);
+        record.batchNumber = c.getString(19);
+        record.receiptNumber = c.getString(20);
+        record.isSettled = c.getInt(21) != 0;
+        return record;
     }
 
     /**
@@ -840,11 +1002,19 @@ public class TransactionJournal {
      */
     public static void clearJournal() {
         try {
+            SQLiteDatabase db = db();
+            db.beginTransaction();
+            try {
+                db.delete(TxnDb.TABLE_TRANSACTIONS, null, null);
+                db.delete(TxnDb.TABLE_BATCH_TOTALS, null, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            version.incrementAndGet();
             SharedPreferences pref = MyApplication.app.getSharedPreferences(
                     PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
-            pref.edit().remove(KEY_TRANSACTION_JOURNAL).apply();
             pref.edit().remove(KEY_LAST_RRN).apply();
-            pref.edit().remove("pending_reversals").apply();
             LogUtil.e(TAG, "✓ Transaction journal cleared");
         } catch (Exception e) {
             LogUtil.e(TAG, "Error clearing journal: " + e.getMessage());
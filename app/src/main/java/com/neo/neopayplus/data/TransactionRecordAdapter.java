@@ -0,0 +1,135 @@
+package com.neo.neopayplus.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.neo.neopayplus.data.TransactionJournal.TransactionRecord;
+
+import java.io.IOException;
+
+/**
+ * Transaction Record Adapter
+ *
+ * Streaming Gson adapter for {@link TransactionRecord}, in the same JSON
+ * shape Gson's reflective adapter used for the old SharedPreferences journal
+ * (Java field names, nulls omitted). Reads each field straight into the
+ * record, so the legacy migration no longer reflects over 22 fields per
+ * record, and {@code timestamp} goes through the constructor instead of
+ * being written into a final field.
+ */
+final class TransactionRecordAdapter extends TypeAdapter<TransactionRecord> {
+
+    @Override
+    public void write(JsonWriter out, TransactionRecord record) throws IOException {
+        if (record == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("transactionId").value(record.transactionId);
+        out.name("rrn").value(record.rrn);
+        out.name("authCode").value(record.authCode);
+        out.name("pan").value(record.pan);
+        out.name("cardholderName").value(record.cardholderName);
+        out.name("amount").value(record.amount);
+        out.name("currencyCode").value(record.currencyCode);
+        out.name("transactionType").value(record.transactionType);
+        out.name("entryMode").value(record.entryMode);
+        out.name("aid").value(record.aid);
+        out.name("cardBrand").value(record.cardBrand);
+        out.name("cardType").value(record.cardType);
+        out.name("date").value(record.date);
+        out.name("time").value(record.time);
+        out.name("responseCode").value(record.responseCode);
+        out.name("status").value(record.status);
+        out.name("timestamp").value(record.timestamp);
+        out.name("isReversal").value(record.isReversal);
+        out.name("originalRrn").value(record.originalRrn);
+        out.name("batchNumber").value(record.batchNumber);
+        out.name("receiptNumber").value(record.receiptNumber);
+        out.name("isSettled").value(record.isSettled);
+        out.endObject();
+    }
+
+    @Override
+    public TransactionRecord read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        // timestamp is final: collect the fields, then build the record
+        String[] values = new String[Field.values().length];
+        long timestamp = System.currentTimeMillis();
+        boolean isReversal = false;
+        boolean isSettled = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "timestamp":
+                    timestamp = in.nextLong();
+                    break;
+                case "isReversal":
+                    isReversal = in.nextBoolean();
+                    break;
+                case "isSettled":
+                    isSettled = in.nextBoolean();
+                    break;
+                default:
+                    Field field = Field.of(name);
+                    if (field != null) {
+                        values[field.ordinal()] = in.nextString();
+                    } else {
+                        in.skipValue();
+                    }
+            }
+        }
+        in.endObject();
+
+        TransactionRecord record = new TransactionRecord(timestamp);
+        record.transactionId = values[Field.transactionId.ordinal()];
+        record.rrn = values[Field.rrn.ordinal()];
+        record.authCode = values[Field.authCode.ordinal()];
+        record.pan = values[Field.pan.ordinal()];
+        record.cardholderName = values[Field.cardholderName.ordinal()];
+        record.amount = values[Field.amount.ordinal()];
+        record.currencyCode = values[Field.currencyCode.ordinal()];
+        record.transactionType = values[Field.transactionType.ordinal()];
+        record.entryMode = values[Field.entryMode.ordinal()];
+        record.aid = values[Field.aid.ordinal()];
+        record.cardBrand = values[Field.cardBrand.ordinal()];
+        record.cardType = values[Field.cardType.ordinal()];
+        record.date = values[Field.date.ordinal()];
+        record.time = values[Field.time.ordinal()];
+        record.responseCode = values[Field.responseCode.ordinal()];
+        record.status = values[Field.status.ordinal()];
+        record.originalRrn = values[Field.originalRrn.ordinal()];
+        record.batchNumber = values[Field.batchNumber.ordinal()];
+        record.receiptNumber = values[Field.receiptNumber.ordinal()];
+        record.isReversal = isReversal;
+        record.isSettled = isSettled;
+        return record;
+    }
+
+    /**
+     * String fields, named as in the JSON
+     */
+    private enum Field {
+        transactionId, rrn, authCode, pan, cardholderName, amount, currencyCode, transactionType, entryMode,
+        aid, cardBrand, cardType, date, time, responseCode, status, originalRrn, batchNumber, receiptNumber;
+
+        static Field of(String name) {
+            try {
+                return valueOf(name);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.neo.neopayplus.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Transaction Search Index
+ *
+ * In-memory lookup from what an operator types when looking for a
+ * transaction to reprint, void or refund (RRN or its last digits, card last
+ * 4, amount, date) to journal row ids, newest first. Built once from a
+ * narrow projection of the journal (see
+ * {@link TransactionJournal#buildSearchIndex()}) and replaced when the
+ * journal changes, so a search is a couple of hash lookups instead of a
+ * scan of every record.
+ */
+public final class TransactionSearchIndex {
+
+    private static final Pattern ISO_DATE = Pattern.compile("(\\d{4})-(\\d{1,2})-(\\d{1,2})");
+    private static final Pattern DAY_MONTH_YEAR = Pattern.compile("(\\d{1,2})[/.-](\\d{1,2})[/.-](\\d{2}|\\d{4})");
+    private static final Pattern DAY_MONTH = Pattern.compile("(\\d{1,2})[/-](\\d{1,2})");
+    private static final Pattern DECIMAL_AMOUNT = Pattern.compile("(\\d{1,10})\\.(\\d{1,2})");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    // Key namespaces, so the same digits typed as a PAN and as an amount don't collide
+    private static final char RRN = 'R';
+    private static final char RRN_SUFFIX = 'S';
+    private static final char PAN_LAST4 = 'P';
+    private static final char AMOUNT = 'A';
+    private static final char DATE = 'D';
+    private static final char MONTH_DAY = 'M';
+
+    private final long version;
+    private final long[] ids;
+    private final Map<String, Postings> postings;
+
+    private TransactionSearchIndex(long version, long[] ids, Map<String, Postings> postings) {
+        this.version = version;
+        this.ids = ids;
+        this.postings = postings;
+    }
+
+    /**
+     * Journal version the index was built from (see {@link TransactionJournal#version()})
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Number of indexed transactions
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Row ids of the transactions matching {@code query}, newest first.
+     * Accepts a full RRN or its last 4/6 digits, a card's last 4 digits
+     * (with or without leading '*'), an amount ("50", "12.50", "1,250.00")
+     * and a date ("251018" YYMMDD, "2025-10-18", "18/10/2025", "18/10").
+     * A query that reads several ways (e.g. "1250": last 4 of a card or of
+     * an RRN, or 1250.00) matches any of them.
+     *
+     * @param limit Maximum number of ids returned
+     */
+    public long[] search(String query, int limit) {
+        if (query == null || limit <= 0) {
+            return new long[0];
+        }
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            return new long[0];
+        }
+
+        Postings matches = new Postings();
+        for (String key : keysFor(q)) {
+            Postings p = postings.get(key);
+            if (p != null) {
+                matches.addAll(p);
+            }
+        }
+        // Positions are in insertion order, i.e. newest first
+        int[] positions = matches.sortedDistinct();
+        int count = Math.min(positions.length, limit);
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = ids[positions[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Drop what an operator may type around the value: spaces, the '*'
+     * of a masked PAN, thousands separators, a currency code
+     */
+    private static String normalize(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == '/' || c == '-') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String[] keysFor(String q) {
+        Matcher m = ISO_DATE.matcher(q);
+        if (m.matches()) {
+            return new String[] { DATE + yymmdd(m.group(1), m.group(2), m.group(3)) };
+        }
+        m = DAY_MONTH_YEAR.matcher(q);
+        if (m.matches()) {
+            return new String[] { DATE + yymmdd(m.group(3), m.group(2), m.group(1)) };
+        }
+        m = DAY_MONTH.matcher(q);
+        if (m.matches()) {
+            return new String[] { MONTH_DAY + pad2(m.group(2)) + pad2(m.group(1)) };
+        }
+        m = DECIMAL_AMOUNT.matcher(q);
+        if (m.matches()) {
+            String fraction = m.group(2).length() == 1 ? m.group(2) + "0" : m.group(2);
+            return new String[] { AMOUNT + stripZeros(m.group(1) + fraction) };
+        }
+        if (!DIGITS.matcher(q).matches()) {
+            return new String[0];
+        }
+
+        String[] keys = new String[4];
+        int n = 0;
+        if (q.length() <= 10) {
+            keys[n++] = AMOUNT + stripZeros(q + "00");
+        }
+        if (q.length() == 4) {
+            keys[n++] = PAN_LAST4 + q;
+            keys[n++] = RRN_SUFFIX + q;
+        } else if (q.length() == 6) {
+            keys[n++] = RRN_SUFFIX + q;
+            keys[n++] = DATE + q;
+        } else if (q.length() == 12) {
+            keys[n++] = RRN + q;
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    private static String yymmdd(String year, String month, String day) {
+        String yy = year.length() == 4 ? year.substring(2) : year;
+        return yy + pad2(month) + pad2(day);
+    }
+
+    private static String pad2(String s) {
+        return s.length() == 1 ? "0" + s : s;
+    }
+
+    private static String stripZeros(String digits) {
+        int i = 0;
+        while (i < digits.length() - 1 && digits.charAt(i) == '0') {
+            i++;
+        }
+        return digits.substring(i);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return !s.isEmpty();
+    }
+
+    /**
+     * Collects rows newest first (the order they come out of the journal)
+     */
+    public static final class Builder {
+        private final long version;
+        private long[] ids = new long[256];
+        private int size;
+        private final Map<String, Postings> postings = new HashMap<>();
+
+        /**
+         * @param version Journal version the rows are read at
+         */
+        public Builder(long version) {
+            this.version = version;
+        }
+
+        /**
+         * @param id     Journal row id
+         * @param rrn    Retrieval reference number (12 digits)
+         * @param pan    Masked PAN, e.g. 400000******1234
+         * @param amount Amount in minor units
+         * @param date   Local date, YYMMDD
+         */
+        public Builder add(long id, String rrn, String pan, String amount, String date) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int position = size++;
+            ids[position] = id;
+
+            if (rrn != null && isDigits(rrn)) {
+                put(RRN + rrn, position);
+                if (rrn.length() > 4) {
+                    put(RRN_SUFFIX + rrn.substring(rrn.length() - 4), position);
+                }
+                if (rrn.length() > 6) {
+                    put(RRN_SUFFIX + rrn.substring(rrn.length() - 6), position);
+                }
+            }
+            if (pan != null && pan.length() >= 4) {
+                String last4 = pan.substring(pan.length() - 4);
+                if (isDigits(last4)) {
+                    put(PAN_LAST4 + last4, position);
+                }
+            }
+            if (amount != null && isDigits(amount)) {
+                put(AMOUNT + stripZeros(amount), position);
+            }
+            if (date != null && date.length() == 6 && isDigits(date)) {
+                put(DATE + date, position);
+                put(MONTH_DAY + date.substring(2), position);
+            }
+            return this;
+        }
+
+        public TransactionSearchIndex build() {
+            return new TransactionSearchIndex(version, Arrays.copyOf(ids, size), postings);
+        }
+
+        private void put(String key, int position) {
+            Postings p = postings.get(key);
+            if (p == null) {
+                p = new Postings();
+                postings.put(key, p);
+            }
+            p.add(position);
+        }
+    }
+
+    /**
+     * Growable list of row positions (unboxed)
+     */
+    private static final class Postings {
+        private int[] positions = new int[2];
+        private int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        void addAll(Postings other) {
+            if (size + other.size > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.positions, 0, positions, size, other.size);
+            size += other.size;
+        }
+
+        int[] sortedDistinct() {
+            int[] sorted = Arrays.copyOf(positions, size);
+            Arrays.sort(sorted);
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (n == 0 || sorted[n - 1] != sorted[i]) {
+                    sorted[n++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, n);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.neo.neopayplus.data.payment.datasource
 
 import android.content.Context
+import com.neo.neopayplus.data.SequenceService
 import com.neo.neopayplus.db.TxnDb
 import com.neo.neopayplus.domain.payment.model.EntryMode
 import com.neo.neopayplus.domain.payment.model.Transaction
@@ -27,7 +28,7 @@ class TransactionLocalDataSourceImpl @Inject constructor(
         get() = TxnDb(context)
     
     override suspend fun getNextStan(): Int = withContext(Dispatchers.IO) {
-        db.nextStan()
+        SequenceService.getInstance().nextStanValue()
     }
     
     override suspend fun getTransactionByRrn(rrn: String): Transaction? = withContext(Dispatchers.IO) {
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.neo.neopayplus.Constant;
 import com.neo.neopayplus.utils.LogUtil;
@@ -20,19 +21,77 @@ import java.util.Map;
  * SQLite Database for Transaction Journal
  * 
  * Stores:
+ * - Transaction records (TransactionJournal), indexed by transaction ID,
+ *   RRN, batch number and timestamp
+ * - Running totals per batch x brand x transaction type x status
  * - Transaction journal (STAN, RRN, EMV data, amounts, etc.)
- * - Pending reversals (FIFO queue)
- * - STAN counter (rolls 1..999999)
+ * (Pending reversals live in ReversalLog; the old reversals table is
+ *  only read once to migrate its rows.)
+ * - Sequence ceilings for STAN / receipt / batch numbers (kv, see SequenceService)
  */
 public class TxnDb extends SQLiteOpenHelper {
     
     private static final String TAG = Constant.TAG;
     private static final String DB_NAME = "pos_journal.db";
-    private static final int DB_VER = 1;
+    private static final int DB_VER = 3;
+
+    /** TransactionJournal records (v2) */
+    public static final String TABLE_TRANSACTIONS = "transactions";
+    public static final String COL_ID = "id";
+    public static final String COL_TRANSACTION_ID = "transaction_id";
+    public static final String COL_RRN = "rrn";
+    public static final String COL_AUTH_CODE = "auth_code";
+    public static final String COL_PAN = "pan";
+    public static final String COL_CARDHOLDER_NAME = "cardholder_name";
+    public static final String COL_AMOUNT = "amount";
+    public static final String COL_CURRENCY_CODE = "currency_code";
+    public static final String COL_TRANSACTION_TYPE = "transaction_type";
+    public static final String COL_ENTRY_MODE = "entry_mode";
+    public static final String COL_AID = "aid";
+    public static final String COL_CARD_BRAND = "card_brand";
+    public static final String COL_CARD_TYPE = "card_type";
+    public static final String COL_DATE = "date";
+    public static final String COL_TIME = "time";
+    public static final String COL_RESPONSE_CODE = "response_code";
+    public static final String COL_STATUS = "status";
+    public static final String COL_TIMESTAMP = "timestamp";
+    public static final String COL_IS_REVERSAL = "is_reversal";
+    public static final String COL_ORIGINAL_RRN = "original_rrn";
+    public static final String COL_BATCH_NUMBER = "batch_number";
+    public static final String COL_RECEIPT_NUMBER = "receipt_number";
+    public static final String COL_IS_SETTLED = "is_settled";
+
+    /** Running totals kept in step with the transactions table (v3) */
+    public static final String TABLE_BATCH_TOTALS = "batch_totals";
+    public static final String COL_COUNT = "count";
+    public static final String COL_AMOUNT_MINOR = "amount_minor";
+
+    private static final String TOTALS_KEY = COL_BATCH_NUMBER + " = ? AND " + COL_CARD_BRAND + " = ? AND "
+            + COL_TRANSACTION_TYPE + " = ? AND " + COL_STATUS + " = ?";
+
+    private static volatile TxnDb instance;
     
     public TxnDb(Context c) {
         super(c, DB_NAME, null, DB_VER);
     }
+
+    /**
+     * Shared helper for callers that keep the database open
+     * (SQLiteOpenHelper caches the connection; do not close it)
+     */
+    public static TxnDb getInstance(Context c) {
+        TxnDb db = instance;
+        if (db == null) {
+            synchronized (TxnDb.class) {
+                db = instance;
+                if (db == null) {
+                    db = new TxnDb(c.getApplicationContext());
+                    instance = db;
+                }
+            }
+        }
+        return db;
+    }
     
     @Override
     public void onCreate(SQLiteDatabase db) {
@@ -54,56 +113,189 @@ public class TxnDb extends SQLiteOpenHelper {
                 "datetime TEXT," +
                 "payload_json TEXT)");
         
-        // Pending reversals queue
-        db.execSQL("CREATE TABLE IF NOT EXISTS reversals (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "stan INTEGER," +
-                "rrn TEXT," +
-                "amount_minor INTEGER," +
-                "currency TEXT," +
-                "reason TEXT," +
-                "created_at TEXT," +
-                "payload_json TEXT)");
-        
-        // Key-value store (for STAN counter)
+        // Key-value store (sequence ceilings)
         db.execSQL("CREATE TABLE IF NOT EXISTS kv (k TEXT PRIMARY KEY, v TEXT)");
         db.execSQL("INSERT OR IGNORE INTO kv(k,v) VALUES('stan','1')");
+
+        createTransactionsTable(db);
+        createBatchTotalsTable(db);
         
         LogUtil.e(TAG, "TxnDb: Database created");
     }
     
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldV, int newV) {
-        // Future migrations here
+        if (oldV < 2) {
+            createTransactionsTable(db);
+            LogUtil.e(TAG, "TxnDb: Upgraded to v2 (transactions table)");
+        }
+        if (oldV < 3) {
+            createBatchTotalsTable(db);
+            rebuildBatchTotals(db, null);
+            LogUtil.e(TAG, "TxnDb: Upgraded to v3 (batch totals)");
+        }
+    }
+
+    /**
+     * Transaction records table (v2)
+     * Transaction IDs compare case-insensitively, matching lookups by
+     * user-typed IDs.
+     */
+    private static void createTransactionsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_TRANSACTIONS + " (" +
+                COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COL_TRANSACTION_ID + " TEXT NOT NULL COLLATE NOCASE," +
+                COL_RRN + " TEXT," +
+                COL_AUTH_CODE + " TEXT," +
+                COL_PAN + " TEXT," +
+                COL_CARDHOLDER_NAME + " TEXT," +
+                COL_AMOUNT + " TEXT," +
+                COL_CURRENCY_CODE + " TEXT," +
+                COL_TRANSACTION_TYPE + " TEXT," +
+                COL_ENTRY_MODE + " TEXT," +
+                COL_AID + " TEXT," +
+                COL_CARD_BRAND + " TEXT," +
+                COL_CARD_TYPE + " TEXT," +
+                COL_DATE + " TEXT," +
+                COL_TIME + " TEXT," +
+                COL_RESPONSE_CODE + " TEXT," +
+                COL_STATUS + " TEXT," +
+                COL_TIMESTAMP + " INTEGER NOT NULL," +
+                COL_IS_REVERSAL + " INTEGER NOT NULL DEFAULT 0," +
+                COL_ORIGINAL_RRN + " TEXT," +
+                COL_BATCH_NUMBER + " TEXT," +
+                COL_RECEIPT_NUMBER + " TEXT," +
+                COL_IS_SETTLED + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_transactions_id ON "
+                + TABLE_TRANSACTIONS + "(" + COL_TRANSACTION_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_rrn ON "
+                + TABLE_TRANSACTIONS + "(" + COL_RRN + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_batch ON "
+                + TABLE_TRANSACTIONS + "(" + COL_BATCH_NUMBER + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_transactions_timestamp ON "
+                + TABLE_TRANSACTIONS + "(" + COL_TIMESTAMP + ")");
     }
     
     /**
-     * Get next STAN (System Trace Audit Number)
-     * Rolls 1..999999
-     * Thread-safe
+     * Batch totals table (v3)
+     * Key columns are never NULL ('' stands for a missing value) so the
+     * primary key identifies a row.
      */
-    public synchronized int nextStan() {
-        SQLiteDatabase db = getWritableDatabase();
-        Cursor c = db.rawQuery("SELECT v FROM kv WHERE k='stan'", null);
-        int stan = 1;
-        if (c.moveToFirst()) {
-            try {
-                stan = Integer.parseInt(c.getString(0));
-            } catch (Exception e) {
-                stan = 1;
+    private static void createBatchTotalsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_BATCH_TOTALS + " (" +
+                COL_BATCH_NUMBER + " TEXT NOT NULL," +
+                COL_CARD_BRAND + " TEXT NOT NULL," +
+                COL_TRANSACTION_TYPE + " TEXT NOT NULL," +
+                COL_STATUS + " TEXT NOT NULL," +
+                COL_COUNT + " INTEGER NOT NULL," +
+                COL_AMOUNT_MINOR + " INTEGER NOT NULL," +
+                "PRIMARY KEY (" + COL_BATCH_NUMBER + ", " + COL_CARD_BRAND + ", "
+                + COL_TRANSACTION_TYPE + ", " + COL_STATUS + "))");
+    }
+
+    /**
+     * Add (sign = 1) or remove (sign = -1) one transaction from its totals row
+     * Amounts go through the same CAST as {@link #rebuildBatchTotals} so the
+     * running totals and a rebuild always agree. Call inside the transaction
+     * that writes the journal row.
+     */
+    public static void addToBatchTotals(SQLiteDatabase db, String batchNumber, String cardBrand,
+                                        String transactionType, String status, String amount, int sign) {
+        if (batchNumber == null || batchNumber.isEmpty()) {
+            return;
+        }
+        String[] key = { batchNumber, nonNull(cardBrand), nonNull(transactionType), nonNull(status) };
+
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_BATCH_TOTALS + " SET "
+                + COL_COUNT + " = " + COL_COUNT + " + ?, "
+                + COL_AMOUNT_MINOR + " = " + COL_AMOUNT_MINOR + " + CAST(? AS INTEGER) * ? WHERE " + TOTALS_KEY);
+        try {
+            update.bindLong(1, sign);
+            update.bindString(2, nonNull(amount));
+            update.bindLong(3, sign);
+            for (int i = 0; i < key.length; i++) {
+                update.bindString(4 + i, key[i]);
             }
+            if (update.executeUpdateDelete() > 0) {
+                if (sign < 0) {
+                    db.delete(TABLE_BATCH_TOTALS, TOTALS_KEY + " AND " + COL_COUNT + " <= 0", key);
+                }
+                return;
+            }
+        } finally {
+            update.close();
+        }
+
+        if (sign > 0) {
+            db.execSQL("INSERT INTO " + TABLE_BATCH_TOTALS + " VALUES (?, ?, ?, ?, 1, CAST(? AS INTEGER))",
+                    new Object[] { key[0], key[1], key[2], key[3], nonNull(amount) });
+        }
+    }
+
+    /**
+     * Recompute totals from the transactions table
+     *
+     * @param batchNumber Batch to rebuild, or null for all batches
+     */
+    public static void rebuildBatchTotals(SQLiteDatabase db, String batchNumber) {
+        String[] args = batchNumber != null ? new String[] { batchNumber } : new String[0];
+        String where = batchNumber != null ? " WHERE " + COL_BATCH_NUMBER + " = ?" : "";
+        db.delete(TABLE_BATCH_TOTALS, batchNumber != null ? COL_BATCH_NUMBER + " = ?" : null, args);
+        db.execSQL("INSERT INTO " + TABLE_BATCH_TOTALS + " " + aggregateTotalsSql(where), args);
+    }
+
+    /**
+     * Totals as computed from the transactions table (same columns as the
+     * batch_totals table)
+     */
+    public static String aggregateTotalsSql(String where) {
+        String filter = where.isEmpty()
+                ? " WHERE " + COL_BATCH_NUMBER + " IS NOT NULL AND " + COL_BATCH_NUMBER + " != ''"
+                : where;
+        return "SELECT " + COL_BATCH_NUMBER + ", IFNULL(" + COL_CARD_BRAND + ", ''), IFNULL("
+                + COL_TRANSACTION_TYPE + ", ''), IFNULL(" + COL_STATUS + ", ''), COUNT(*), "
+                + "SUM(CAST(IFNULL(" + COL_AMOUNT + ", '') AS INTEGER)) FROM " + TABLE_TRANSACTIONS + filter
+                + " GROUP BY 1, 2, 3, 4";
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+    
+    /**
+     * Read a kv value as a number (sequence ceilings, legacy STAN)
+     *
+     * @return The value, or {@code fallback} if missing or not a number
+     */
+    public long readKvLong(String key, long fallback) {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT v FROM kv WHERE k=?", new String[] { key })) {
+            if (c.moveToFirst()) {
+                return Long.parseLong(c.getString(0));
+            }
+        } catch (NumberFormatException e) {
+            LogUtil.e(TAG, "TxnDb: kv " + key + " is not a number");
+        }
+        return fallback;
+    }
+
+    /**
+     * @return The kv value, or null if missing
+     */
+    public String readKv(String key) {
+        try (Cursor c = getReadableDatabase().rawQuery("SELECT v FROM kv WHERE k=?", new String[] { key })) {
+            return c.moveToFirst() ? c.getString(0) : null;
         }
-        c.close();
-        
-        int newStan = (stan % 999999) + 1;
-        
-        ContentValues cv = new ContentValues();
-        cv.put("v", String.valueOf(newStan));
-        db.update("kv", cv, "k='stan'", null);
-        db.close();
-        
-        LogUtil.e(TAG, "TxnDb: Next STAN = " + stan);
-        return stan;
+    }
+
+    /**
+     * Write a kv value; durable when this returns (SQLite commit)
+     */
+    public void writeKv(String key, String value) {
+        getWritableDatabase().execSQL("INSERT OR REPLACE INTO kv(k,v) VALUES(?,?)", new Object[] { key, value });
+    }
+
+    public void deleteKv(String key) {
+        getWritableDatabase().delete("kv", "k=?", new String[] { key });
     }
     
     /**
@@ -142,70 +334,35 @@ public class TxnDb extends SQLiteOpenHelper {
     }
     
     /**
-     * Enqueue a reversal for later retry
+     * Take the rows of the old reversals table (pre-ReversalLog) and drop it
+     * Called once by ReversalQueueStore; empty if the table does not exist.
      */
-    public long enqueueReversal(Map<String, Object> m) {
+    public synchronized List<Map<String, Object>> takeLegacyReversals() {
+        List<Map<String, Object>> list = new ArrayList<>();
         SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        
-        put(cv, "stan", m.get("stan"));
-        put(cv, "rrn", m.get("rrn"));
-        put(cv, "amount_minor", m.get("amount_minor"));
-        put(cv, "currency", m.get("currency"));
-        put(cv, "reason", m.get("reason"));
-        put(cv, "created_at", m.get("created_at"));
-        
-        // Store full payload as JSON
-        try {
-            cv.put("payload_json", new JSONObject(m).toString());
-        } catch (Exception ignore) {
-            // Ignore JSON errors
+        try (Cursor t = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type='table' AND name='reversals'", null)) {
+            if (!t.moveToFirst()) {
+                return list;
+            }
         }
-        
-        long id = db.insert("reversals", null, cv);
-        db.close();
-        
-        LogUtil.e(TAG, "TxnDb: Reversal enqueued, id=" + id);
-        return id;
-    }
-    
-    /**
-     * Get pending reversals (FIFO order)
-     */
-    public List<Map<String, Object>> pendingReversals(int limit) {
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery("SELECT id, stan, rrn, amount_minor, currency, reason, created_at, payload_json FROM reversals ORDER BY id ASC LIMIT " + limit, null);
-        
-        List<Map<String, Object>> list = new ArrayList<>();
-        while (c.moveToNext()) {
-            Map<String, Object> m = new HashMap<>();
-            m.put("id", c.getLong(0));
-            m.put("stan", c.getInt(1));
-            m.put("rrn", c.getString(2));
-            m.put("amount_minor", c.getInt(3));
-            m.put("currency", c.getString(4));
-            m.put("reason", c.getString(5));
-            m.put("created_at", c.getString(6));
-            m.put("payload_json", c.getString(7));
-            list.add(m);
+        try (Cursor c = db.rawQuery("SELECT stan, rrn, amount_minor, currency, reason, created_at FROM reversals ORDER BY id ASC", null)) {
+            while (c.moveToNext()) {
+                Map<String, Object> m = new HashMap<>();
+                m.put("stan", c.getInt(0));
+                m.put("rrn", c.getString(1));
+                m.put("amount_minor", c.getLong(2));
+                m.put("currency", c.getString(3));
+                m.put("reason", c.getString(4));
+                m.put("created_at", c.getString(5));
+                list.add(m);
+            }
         }
-        c.close();
-        db.close();
+        db.execSQL("DROP TABLE reversals");
         
+        LogUtil.e(TAG, "TxnDb: Legacy reversals table dropped, rows=" + list.size());
         return list;
     }
     
-    /**
-     * Delete a reversal (after successful retry)
-     */
-    public void deleteReversal(long id) {
-        SQLiteDatabase db = getWritableDatabase();
-        db.delete("reversals", "id=?", new String[]{String.valueOf(id)});
-        db.close();
-        
-        LogUtil.e(TAG, "TxnDb: Reversal deleted, id=" + id);
-    }
-    
     /**
      * Get last N journal entries (for transaction history)
      */
@@ -8,17 +8,26 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.neo.neopayplus.BaseAppCompatActivity;
 import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.MyApplication;
 import com.neo.neopayplus.R;
+import com.neo.neopayplus.app.StartupOrchestrator;
 import com.neo.neopayplus.iso.IsoLogger;
+import com.neo.neopayplus.payment.ReversalDispatcher;
+import com.neo.neopayplus.payment.ReversalWorker;
+import com.neo.neopayplus.utils.LatencyTracer;
 import com.neo.neopayplus.utils.LogUtil;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Debug Activity
  * 
  * Displays latest ISO8583 logs for debugging
- * Shows last 10 ISO frames saved to disk
+ * Shows startup task timings, the reversal queue and the last 10 ISO frames
+ * saved to disk
  */
 public class DebugActivity extends BaseAppCompatActivity {
 
@@ -51,16 +60,22 @@ public class DebugActivity extends BaseAppCompatActivity {
             // Get last N ISO log entries
             List<String> logFiles = IsoLogger.tail(MAX_LOGS);
 
+            StringBuilder logs = new StringBuilder();
+            appendStartup(logs);
+            appendLatency(logs);
+            appendLogLevels(logs);
+            appendReversalQueue(logs);
+
             if (logFiles == null || logFiles.isEmpty()) {
-                mTvLogs.setText(getString(R.string.no_iso8583_logs_found));
+                logs.append(getString(R.string.no_iso8583_logs_found));
+                mTvLogs.setText(logs.toString());
                 return;
             }
 
-            StringBuilder logs = new StringBuilder();
             logs.append("=== ISO8583 Debug Logs ===\n");
-            logs.append("Showing last " + logFiles.size() + " log files\n\n");
+            logs.append("Showing last " + logFiles.size() + " frames\n\n");
 
-            // Read each log file
+            // Render each captured frame
             for (int i = 0; i < logFiles.size(); i++) {
                 String filePath = logFiles.get(i);
                 String filename = filePath.substring(filePath.lastIndexOf("/") + 1);
@@ -71,7 +86,7 @@ public class DebugActivity extends BaseAppCompatActivity {
                 if (content != null) {
                     logs.append(content);
                 } else {
-                    logs.append("(Unable to read log file)\n");
+                    logs.append("(Frame no longer available)\n");
                 }
 
                 logs.append("\n\n");
@@ -90,6 +105,67 @@ public class DebugActivity extends BaseAppCompatActivity {
         }
     }
 
+    private void appendStartup(StringBuilder out) {
+        StartupOrchestrator startup = MyApplication.app.startup();
+        out.append("=== Startup ===\n");
+        if (startup == null) {
+            out.append("Not started\n\n");
+            return;
+        }
+        long readyMs = startup.finishedAtMs(MyApplication.STARTUP_READY);
+        out.append("Ready for first tap: ")
+                .append(readyMs >= 0 ? readyMs + " ms (" + startup.status(MyApplication.STARTUP_READY) + ")" : "not yet")
+                .append('\n');
+        out.append(startup.report()).append('\n');
+    }
+
+    private void appendLatency(StringBuilder out) {
+        LatencyTracer tracer = LatencyTracer.get();
+        LatencyTracer.Summary window = tracer.summary();
+        out.append("=== Latency (ms, last ").append(window.transactions).append(" txns) ===\n");
+        out.append(tracer.report());
+        File dump = new File(getFilesDir(), "latency_dump.json");
+        try {
+            tracer.dump(dump);
+            out.append("JSON: ").append(dump.getPath());
+        } catch (IOException e) {
+            out.append("JSON dump failed: ").append(e.getMessage());
+        }
+        out.append("\n\n");
+    }
+
+    private void appendLogLevels(StringBuilder out) {
+        out.append("=== Log Levels ===\n");
+        for (Map.Entry<String, Integer> entry : LogUtil.levels().entrySet()) {
+            out.append(entry.getKey()).append(": ").append(levelName(entry.getValue())).append('\n');
+        }
+        out.append('\n');
+    }
+
+    private static String levelName(int level) {
+        switch (level) {
+            case LogUtil.VERBOSE:
+                return "VERBOSE";
+            case LogUtil.DEBUG:
+                return "DEBUG";
+            case LogUtil.INFO:
+                return "INFO";
+            case LogUtil.WARN:
+                return "WARN";
+            case LogUtil.ERROR:
+                return "ERROR";
+            default:
+                return "OFF";
+        }
+    }
+
+    private void appendReversalQueue(StringBuilder out) {
+        ReversalDispatcher dispatcher = ReversalWorker.dispatcher();
+        out.append("=== Reversal Queue ===\n");
+        out.append(dispatcher != null ? dispatcher.metrics().toString() : "Dispatcher not started");
+        out.append("\n\n");
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.RemoteException;
-import android.util.Log;
 
 import com.neo.neopayplus.Constant;
 import com.neo.neopayplus.MyApplication;
@@ -12,6 +11,11 @@ import com.neo.neopayplus.config.PaymentConfig;
 import com.neo.neopayplus.emv.config.EmvConfigurationApplier;
 import com.neo.neopayplus.emv.utils.CvmRequirementLogger;
 import com.neo.neopayplus.emv.utils.PanExtractor;
+import com.neo.neopayplus.iso.IsoHostConnection;
+import com.neo.neopayplus.utils.LatencyTracer;
+import com.neo.neopayplus.utils.LatencyTracer.Phase;
+import com.neo.neopayplus.utils.LogUtil;
+import com.neo.neopayplus.utils.Logger;
 import com.sunmi.pay.hardware.aidl.AidlConstants;
 import com.sunmi.pay.hardware.aidlv2.bean.EMVCandidateV2;
 import com.sunmi.pay.hardware.aidlv2.bean.PinPadConfigV2;
@@ -23,6 +27,7 @@ import com.sunmi.pay.hardware.aidlv2.readcard.ReadCardOptV2;
 
 import javax.inject.Inject;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * EMV Handler - Simplified EMV Transaction Management
@@ -43,9 +48,31 @@ import java.util.List;
  */
 public class EMVHandler {
     private static final String TAG = "EMVHandler";
+    private static final Logger LOG = LogUtil.logger("emv", TAG);
 
     private final Context context;
     private final EMVCallback callback;
+
+    // Tags read after kernel milestones besides PanExtractor's and
+    // CvmRequirementLogger's: receipt (readTlv), DE23 and failure diagnostics
+    private static final String[] RECEIPT_TAGS = {
+            "84", "50", "59", "5F24", "5F20", "5F34", "95", "9B", "9F26", "9F27", "8A", "8F"
+    };
+
+    static {
+        // Read ahead in every space readTlv() and PanExtractor look in
+        int[] opCodes = {
+                AidlConstants.EMV.TLVOpCode.OP_NORMAL,
+                com.sunmi.payservice.AidlConstantsV2.EMV.TLVOpCode.OP_PAYPASS,
+                com.sunmi.payservice.AidlConstantsV2.EMV.TLVOpCode.OP_PAYWAVE
+        };
+        for (int opCode : opCodes) {
+            SdkWrapper.registerReadAhead(opCode, PanExtractor.PAN_TAGS);
+            SdkWrapper.registerReadAhead(opCode, PanExtractor.AID_TAGS);
+            SdkWrapper.registerReadAhead(opCode, CvmRequirementLogger.CVM_TAGS);
+            SdkWrapper.registerReadAhead(opCode, RECEIPT_TAGS);
+        }
+    }
     private final ReadCardOptV2 readCardOptV2;
     private final EMVOptV2 emvOptV2;
     private final PinPadOptV2 pinPadOptV2;
@@ -61,6 +88,10 @@ public class EMVHandler {
     // times)
     private volatile boolean emvProcessStarted = false;
 
+    // Host connection pre-warm for the card in the field (ISO socket mode)
+    private static final long HOST_PREWARM_TIMEOUT_MS = 30000;
+    private volatile CompletableFuture<Void> hostPrewarm;
+
     /**
      * Constructor with dependency injection.
      * 
@@ -86,14 +117,14 @@ public class EMVHandler {
         this.pinPadOptV2 = pinPadOptV2;
 
         // Log service status
-        Log.e(TAG, "=== EMVHandler initialized (with DI) ===");
-        Log.e(TAG, "  readCardOptV2: " + (readCardOptV2 != null ? "OK" : "NULL"));
-        Log.e(TAG, "  emvOptV2: " + (emvOptV2 != null ? "OK" : "NULL"));
-        Log.e(TAG, "  pinPadOptV2: " + (pinPadOptV2 != null ? "OK" : "NULL"));
+        LOG.d("=== EMVHandler initialized (with DI) ===");
+        LOG.d("  readCardOptV2: {}", readCardOptV2 != null ? "OK" : "NULL");
+        LOG.d("  emvOptV2: {}", emvOptV2 != null ? "OK" : "NULL");
+        LOG.d("  pinPadOptV2: {}", pinPadOptV2 != null ? "OK" : "NULL");
 
         if (readCardOptV2 == null || emvOptV2 == null) {
-            Log.e(TAG, "  ❌ CRITICAL: SDK services not available!");
-            Log.e(TAG, "     Check if PaySDK is connected. Call TransactionManager.waitForReady() first.");
+            LOG.e("  ❌ CRITICAL: SDK services not available!");
+            LOG.d("     Check if PaySDK is connected. Call TransactionManager.waitForReady() first.");
         }
     }
 
@@ -111,15 +142,15 @@ public class EMVHandler {
         this.emvProcessStarted = false; // Reset guard for new transaction
         // Map transaction type: "purchase" -> "00", "refund" -> "20" (ISO8583)
         this.currentTransactionType = "refund".equals(transactionType) ? "20" : "00";
-        Log.e(TAG, "=== Starting Card Detection ===");
-        Log.e(TAG, "Amount: " + amount);
-        Log.e(TAG, "Transaction Type: " + transactionType + " -> ISO8583: " + this.currentTransactionType);
-        Log.e(TAG, "Timeout: " + timeoutSeconds + " seconds");
+        LOG.d("=== Starting Card Detection ===");
+        LOG.d("Amount: {}", amount);
+        LOG.d("Transaction Type: {} -> ISO8583: {}", transactionType, this.currentTransactionType);
+        LOG.d("Timeout: {} seconds", timeoutSeconds);
 
         // Check if SDK services are available
         if (readCardOptV2 == null) {
-            Log.e(TAG, "❌ CRITICAL: readCardOptV2 is NULL!");
-            Log.e(TAG, "   PaySDK not connected. Cannot detect cards.");
+            LOG.e("❌ CRITICAL: readCardOptV2 is NULL!");
+            LOG.d("   PaySDK not connected. Cannot detect cards.");
             onResultCallBack(EMVSteps.CARD_ERROR, "Card reader service not available. Please restart the app.");
             return;
         }
@@ -132,16 +163,17 @@ public class EMVHandler {
             int icValue = AidlConstants.CardType.IC.getValue();
             int cardType = nfcValue | icValue;
 
-            Log.e(TAG, "Card types enabled:");
-            Log.e(TAG, "  NFC value: " + nfcValue);
-            Log.e(TAG, "  IC value: " + icValue);
-            Log.e(TAG, "  Combined: " + cardType);
+            LOG.d("Card types enabled:");
+            LOG.d("  NFC value: {}", nfcValue);
+            LOG.d("  IC value: {}", icValue);
+            LOG.d("  Combined: {}", cardType);
 
-            Log.e(TAG, "Calling readCardOptV2.checkCard()...");
+            LOG.d("Calling readCardOptV2.checkCard()...");
+            LatencyTracer.beginTransaction();
             readCardOptV2.checkCard(cardType, checkCardCallback, timeoutSeconds);
-            Log.e(TAG, "checkCard() called successfully - waiting for callback...");
+            LOG.d("checkCard() called successfully - waiting for callback...");
         } catch (Exception e) {
-            Log.e(TAG, "Card detection failed: " + e.getMessage());
+            LOG.e("Card detection failed: {}", e.getMessage());
             e.printStackTrace();
             onResultCallBack(EMVSteps.CARD_ERROR, e.getMessage());
         }
@@ -162,11 +194,12 @@ public class EMVHandler {
      * Cancel ongoing card detection
      */
     public void cancelCardDetection() {
+        cancelHostPrewarm();
         try {
             readCardOptV2.cancelCheckCard();
-            Log.e(TAG, "Card detection cancelled");
+            LOG.d("Card detection cancelled");
         } catch (Exception e) {
-            Log.e(TAG, "Cancel card detection failed: " + e.getMessage());
+            LOG.e("Cancel card detection failed: {}", e.getMessage());
         }
     }
 
@@ -176,15 +209,17 @@ public class EMVHandler {
     private void startEmvProcess() {
         // Guard against double starts (findRFCard/findRFCardEx can both trigger)
         if (emvProcessStarted) {
-            Log.e(TAG, "=== EMV Process already started - ignoring duplicate call ===");
+            LOG.d("=== EMV Process already started - ignoring duplicate call ===");
             return;
         }
         emvProcessStarted = true;
+        LatencyTracer.milestone(Phase.EMV_CARD_DETECT);
 
         try {
-            Log.e(TAG, "=== Starting EMV Process ===");
+            LOG.d("=== Starting EMV Process ===");
 
             // Initialize EMV process (clears all TLV)
+            SdkWrapper.beginTlvTransaction();
             emvOptV2.initEmvProcess();
 
             // Apply TLV configuration
@@ -196,8 +231,8 @@ public class EMVHandler {
             // Transaction type: "00" = Purchase, "20" = Refund (ISO8583)
             // SAM (Secure Application Module) uses this for cryptographic operations
             bundle.putString("transType", currentTransactionType);
-            Log.e(TAG, "EMV Bundle - Transaction Type: " + currentTransactionType +
-                    (currentTransactionType.equals("20") ? " (Refund)" : " (Purchase)"));
+            LOG.d("EMV Bundle - Transaction Type: {}{}",
+                    currentTransactionType, currentTransactionType.equals("20") ? " (Refund)" : " (Purchase)");
 
             // Determine flow type based on card type
             // IMPORTANT: Always use NFC Speedup for contactless cards
@@ -212,20 +247,20 @@ public class EMVHandler {
             // - This is card-level behavior that cannot be overridden by terminal config
             if (currentCardType == AidlConstants.CardType.NFC.getValue()) {
                 bundle.putInt("flowType", AidlConstants.EMV.FlowType.TYPE_NFC_SPEEDUP);
-                Log.e(TAG, "Using NFC Speedup flow type for contactless card");
-                Log.e(TAG, "  Note: PIN decision made by kernel based on terminal CVM limit and card's CVM List");
+                LOG.d("Using NFC Speedup flow type for contactless card");
+                LOG.d("  Note: PIN decision made by kernel based on terminal CVM limit and card's CVM List");
             } else {
                 bundle.putInt("flowType", AidlConstants.EMV.FlowType.TYPE_EMV_STANDARD);
-                Log.e(TAG, "Using EMV Standard flow type for IC card");
+                LOG.d("Using EMV Standard flow type for IC card");
             }
             bundle.putInt("cardType", currentCardType);
 
             // Start EMV transaction
-            Log.e(TAG, "Calling transactProcessEx...");
+            LOG.d("Calling transactProcessEx...");
             emvOptV2.transactProcessEx(bundle, emvListener);
 
         } catch (Exception e) {
-            Log.e(TAG, "EMV process failed: " + e.getMessage());
+            LOG.e("EMV process failed: {}", e.getMessage());
             e.printStackTrace();
             onResultCallBack(EMVSteps.EMV_TRANS_FAIL, e.getMessage(), -1);
         }
@@ -260,17 +295,16 @@ public class EMVHandler {
             try {
                 amountValue = Long.parseLong(currentAmount);
             } catch (Exception e) {
-                Log.e(TAG, "Error parsing amount: " + e.getMessage());
+                LOG.e("Error parsing amount: {}", e.getMessage());
             }
 
             // Our manual PIN threshold: 600 EGP (60000 minor units)
             needManualPin = (amountValue >= MANUAL_CVM_THRESHOLD);
 
-            Log.e(TAG, "=== EMV Configuration ===");
-            Log.e(TAG, "Amount: " + amountValue + " minor units (" + (amountValue / 100.0) + " EGP)");
-            Log.e(TAG,
-                    "Manual PIN threshold: " + MANUAL_CVM_THRESHOLD + " (" + (MANUAL_CVM_THRESHOLD / 100.0) + " EGP)");
-            Log.e(TAG, "Manual PIN required: " + needManualPin);
+            LOG.d("=== EMV Configuration ===");
+            LOG.d("Amount: {} minor units ({} EGP)", amountValue, amountValue / 100.0);
+            LOG.d("Manual PIN threshold: {} ({} EGP)", MANUAL_CVM_THRESHOLD, MANUAL_CVM_THRESHOLD / 100.0);
+            LOG.d("Manual PIN required: {}", needManualPin);
 
             // Apply configuration using strategy pattern (extensible for new schemes)
             boolean success = configurationApplier.applyConfiguration(
@@ -278,11 +312,11 @@ public class EMVHandler {
                     configurationApplier.getDefaultStrategies());
 
             if (!success) {
-                Log.e(TAG, "⚠️ EMV configuration application failed");
+                LOG.w("⚠️ EMV configuration application failed");
             }
 
         } catch (Exception e) {
-            Log.e(TAG, "Apply EMV configuration failed: " + e.getMessage());
+            LOG.e("Apply EMV configuration failed: {}", e.getMessage());
         }
     }
 
@@ -302,7 +336,49 @@ public class EMVHandler {
      */
     public void clearManualPinFlag() {
         needManualPin = false;
-        Log.e(TAG, "Manual PIN flag cleared");
+        LOG.d("Manual PIN flag cleared");
+    }
+
+    // ==================== Host Pre-warm ====================
+
+    /**
+     * Card detected: an online authorization is likely, so have the host
+     * connection opened and checked while the kernel reads the card
+     * (HTTP mode already reuses pooled connections)
+     */
+    private void prewarmHost() {
+        if (!PaymentConfig.isIsoSocketMode()) {
+            return;
+        }
+        CompletableFuture<Void> current = hostPrewarm;
+        if (current != null && !current.isDone()) {
+            return; // findRFCard and findRFCardEx both fire
+        }
+        try {
+            CompletableFuture<Void> prewarm = IsoHostConnection.getInstance().prewarm(HOST_PREWARM_TIMEOUT_MS);
+            hostPrewarm = prewarm;
+            prewarm.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    LOG.d("✓ Host connection ready");
+                } else if (!prewarm.isCancelled()) {
+                    LOG.w("⚠️ Host pre-warm failed: {}", error.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            LOG.w("⚠️ Host pre-warm not started: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Card removed, detection timed out or cancelled, or transaction over:
+     * stop a pre-warm still in progress (closes a socket still connecting)
+     */
+    private void cancelHostPrewarm() {
+        CompletableFuture<Void> prewarm = hostPrewarm;
+        hostPrewarm = null;
+        if (prewarm != null && prewarm.cancel(false)) {
+            LOG.d("Host pre-warm cancelled");
+        }
     }
 
     // ==================== Callback Handler ====================
@@ -311,7 +387,7 @@ public class EMVHandler {
      * Unified callback handler - forwards to EMVCallback interface
      */
     private void onResultCallBack(EMVSteps step, Object data) {
-        Log.e(TAG, "onResultCallBack: " + step.name());
+        LOG.d("onResultCallBack: {}", step.name());
         if (callback != null) {
             callback.onResult(step, data);
         }
@@ -321,7 +397,7 @@ public class EMVHandler {
      * Unified callback handler with code - for transaction results
      */
     private void onResultCallBack(EMVSteps step, String desc, int code) {
-        Log.e(TAG, "onResultCallBack: " + step.name() + ", code: " + code);
+        LOG.d("onResultCallBack: {}, code: {}", step.name(), code);
         if (callback != null) {
             callback.onResult(step, desc, code);
         }
@@ -332,16 +408,16 @@ public class EMVHandler {
     private final CheckCardCallbackV2.Stub checkCardCallback = new CheckCardCallbackV2.Stub() {
         @Override
         public void findMagCard(Bundle bundle) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: findMagCard ===");
-            Log.e(TAG, "Magnetic stripe not supported for EMV");
+            LOG.d("=== CALLBACK: findMagCard ===");
+            LOG.d("Magnetic stripe not supported for EMV");
             onResultCallBack(EMVSteps.CARD_ERROR,
                     "Magnetic stripe cards not supported. Please use chip or contactless.");
         }
 
         @Override
         public void findICCard(String atr) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: findICCard ===");
-            Log.e(TAG, "ATR: " + atr);
+            LOG.d("=== CALLBACK: findICCard ===");
+            LOG.d("ATR: {}", atr);
             currentCardType = AidlConstants.CardType.IC.getValue();
 
             // Beep buzzer when IC card detected (per SDK demo)
@@ -350,40 +426,42 @@ public class EMVHandler {
                     MyApplication.app.basicOptV2.buzzerOnDevice(1, 2750, 200, 0);
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Buzzer failed: " + e.getMessage());
+                LOG.e("Buzzer failed: {}", e.getMessage());
             }
 
             Bundle cardInfo = new Bundle();
             cardInfo.putString("atr", atr);
             cardInfo.putInt("type", currentCardType);
             onResultCallBack(EMVSteps.CARD_FOUND, cardInfo);
+            prewarmHost();
             startEmvProcess();
         }
 
         @Override
         public void findICCardEx(Bundle bundle) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: findICCardEx ===");
+            LOG.d("=== CALLBACK: findICCardEx ===");
             String atr = bundle != null ? bundle.getString("atr") : null;
-            Log.e(TAG, "Bundle: " + bundle);
+            LOG.d("Bundle: {}", bundle);
             findICCard(atr);
         }
 
         @Override
         public void findRFCard(String uuid) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: findRFCard (NFC) ===");
-            Log.e(TAG, "UUID: " + uuid);
+            LOG.d("=== CALLBACK: findRFCard (NFC) ===");
+            LOG.d("UUID: {}", uuid);
             currentCardType = AidlConstants.CardType.NFC.getValue();
             Bundle cardInfo = new Bundle();
             cardInfo.putString("uuid", uuid);
             cardInfo.putInt("type", currentCardType);
             onResultCallBack(EMVSteps.CARD_FOUND, cardInfo);
+            prewarmHost();
             startEmvProcess();
         }
 
         @Override
         public void findRFCardEx(Bundle bundle) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: findRFCardEx (NFC) ===");
-            Log.e(TAG, "Bundle: " + bundle);
+            LOG.d("=== CALLBACK: findRFCardEx (NFC) ===");
+            LOG.d("Bundle: {}", bundle);
             String uuid = bundle != null ? bundle.getString("uuid") : null;
             if (uuid == null && bundle != null) {
                 uuid = bundle.getString("cardId");
@@ -393,8 +471,8 @@ public class EMVHandler {
 
         @Override
         public void onErrorEx(Bundle bundle) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: onErrorEx ===");
-            Log.e(TAG, "Bundle: " + bundle);
+            LOG.e("=== CALLBACK: onErrorEx ===");
+            LOG.d("Bundle: {}", bundle);
             int code = bundle != null ? bundle.getInt("code", -1) : -1;
             String message = bundle != null ? bundle.getString("message") : "Unknown error";
             onError(code, message);
@@ -402,8 +480,9 @@ public class EMVHandler {
 
         @Override
         public void onError(int code, String message) throws RemoteException {
-            Log.e(TAG, "=== CALLBACK: onError ===");
-            Log.e(TAG, "Code: " + code + ", Message: " + message);
+            LOG.e("=== CALLBACK: onError ===");
+            LOG.d("Code: {}, Message: {}", code, message);
+            cancelHostPrewarm();
 
             // Decode common error codes
             String errorDesc;
@@ -436,27 +515,30 @@ public class EMVHandler {
 
         @Override
         public void onWaitAppSelect(List<EMVCandidateV2> list, boolean b) throws RemoteException {
-            Log.e(TAG, "onWaitAppSelect: " + (list != null ? list.size() : 0) + " candidates");
+            LatencyTracer.milestone(Phase.EMV_APP_SELECT);
+            LOG.d("onWaitAppSelect: {} candidates", list != null ? list.size() : 0);
             onResultCallBack(EMVSteps.EMV_APP_SELECT, list);
         }
 
         @Override
         public void onAppFinalSelect(String tag9F06Value) throws RemoteException {
-            Log.e(TAG, "onAppFinalSelect: AID=" + tag9F06Value);
+            LOG.d("onAppFinalSelect: AID={}", tag9F06Value);
             onResultCallBack(EMVSteps.EMV_FINAL_APP_SELECT, tag9F06Value);
         }
 
         @Override
         public void onConfirmCardNo(String cardNo) throws RemoteException {
-            Log.e(TAG, "onConfirmCardNo: " + maskCardNo(cardNo));
+            LOG.d("onConfirmCardNo: {}", maskCardNo(cardNo));
             currentPan = cardNo;
             onResultCallBack(EMVSteps.EMV_CONFIRM_CARD_NO, cardNo);
         }
 
         @Override
         public void onCardDataExchangeComplete() throws RemoteException {
-            Log.e(TAG, "=== onCardDataExchangeComplete ===");
-            Log.e(TAG, "EMV kernel and card data exchange finished - card can be removed");
+            LatencyTracer.milestone(Phase.EMV_CARD_READ);
+            LOG.d("=== onCardDataExchangeComplete ===");
+            LOG.d("EMV kernel and card data exchange finished - card can be removed");
+            prefetchKernelTlvs("onCardDataExchangeComplete");
 
             // For NFC Speedup mode, onConfirmCardNo() is NOT called
             // We need to extract PAN from TLV tags for PIN entry
@@ -473,10 +555,10 @@ public class EMVHandler {
                     if (MyApplication.app.basicOptV2 != null) {
                         // Beep: 1 time, 2750Hz, 200ms
                         MyApplication.app.basicOptV2.buzzerOnDevice(1, 2750, 200, 0);
-                        Log.e(TAG, "Buzzer played for NFC card removal notification");
+                        LOG.d("Buzzer played for NFC card removal notification");
                     }
                 } catch (Exception e) {
-                    Log.e(TAG, "Failed to play buzzer: " + e.getMessage());
+                    LOG.e("Failed to play buzzer: {}", e.getMessage());
                 }
             }
 
@@ -491,11 +573,11 @@ public class EMVHandler {
         private void logCardCvmRequirements() {
             try {
                 if (cvmLogger == null) {
-                    cvmLogger = new CvmRequirementLogger(emvOptV2);
+                    cvmLogger = new CvmRequirementLogger();
                 }
                 cvmLogger.logCardCvmRequirements();
             } catch (Exception e) {
-                Log.e(TAG, "Error logging card CVM requirements: " + e.getMessage());
+                LOG.e("Error logging card CVM requirements: {}", e.getMessage());
             }
         }
 
@@ -563,27 +645,28 @@ public class EMVHandler {
          */
         private void extractPanFromTlv() {
             try {
-                Log.e(TAG, "Extracting PAN from TLV tags (NFC Speedup mode)...");
+                LOG.d("Extracting PAN from TLV tags (NFC Speedup mode)...");
 
                 if (panExtractor == null) {
-                    panExtractor = new PanExtractor(emvOptV2);
+                    panExtractor = new PanExtractor();
                 }
 
                 String extractedPan = panExtractor.extractPan();
                 if (extractedPan != null) {
                     currentPan = extractedPan;
-                    Log.e(TAG, "✓ PAN extracted: " + maskCardNo(currentPan));
+                    LOG.d("✓ PAN extracted: {}", maskCardNo(currentPan));
                 } else {
-                    Log.e(TAG, "⚠️ Could not extract PAN from TLV tags");
+                    LOG.w("⚠️ Could not extract PAN from TLV tags");
                 }
             } catch (Exception e) {
-                Log.e(TAG, "extractPanFromTlv failed: " + e.getMessage());
+                LOG.e("extractPanFromTlv failed: {}", e.getMessage());
             }
         }
 
         @Override
         public void onRequestShowPinPad(int pinType, int remainTime) throws RemoteException {
-            Log.e(TAG, "onRequestShowPinPad: pinType=" + pinType + ", remainTime=" + remainTime);
+            LatencyTracer.milestone(Phase.EMV_PIN_REQUEST);
+            LOG.d("onRequestShowPinPad: pinType={}, remainTime={}", pinType, remainTime);
             currentPinType = pinType;
 
             // CRITICAL FIX: If kernel explicitly requests PIN (especially for Visa which
@@ -593,37 +676,37 @@ public class EMVHandler {
             // transaction.
             // pinType: 0 = Online PIN, 1 = Offline PIN
             if (pinType == 0 && needManualPin) {
-                Log.w(TAG, "═══════════════════════════════════════════════════════");
-                Log.w(TAG, "⚠️ KERNEL REQUESTING PIN DESPITE DF8119=02 AND HIGH CVM LIMITS");
-                Log.w(TAG, "  This typically happens with Visa cards that override terminal settings");
-                Log.w(TAG, "  Disabling manual PIN logic to avoid double PIN prompt");
-                Log.w(TAG, "═══════════════════════════════════════════════════════");
+                LOG.d("═══════════════════════════════════════════════════════");
+                LOG.w("⚠️ KERNEL REQUESTING PIN DESPITE DF8119=02 AND HIGH CVM LIMITS");
+                LOG.d("  This typically happens with Visa cards that override terminal settings");
+                LOG.d("  Disabling manual PIN logic to avoid double PIN prompt");
+                LOG.d("═══════════════════════════════════════════════════════");
                 needManualPin = false;
             }
 
             // DEBUG: Log amount vs CVM limit to understand why PIN was requested
-            Log.e(TAG, "=== CVM DECISION DEBUG ===");
-            Log.e(TAG, "  Transaction amount: " + currentAmount);
-            Log.e(TAG, "  Configured CVM limit (DF8124): " + PaymentConfig.PayPassConfig.DF8124);
-            Log.e(TAG, "  Card type: " + (currentCardType == AidlConstants.CardType.NFC.getValue() ? "NFC (Contactless)"
-                    : "IC (Contact)"));
-            Log.e(TAG, "  Manual PIN flag (after check): " + needManualPin);
+            LOG.d("=== CVM DECISION DEBUG ===");
+            LOG.d("  Transaction amount: {}", currentAmount);
+            LOG.d("  Configured CVM limit (DF8124): {}", PaymentConfig.PayPassConfig.DF8124);
+            LOG.d("  Card type: {}",
+                    currentCardType == AidlConstants.CardType.NFC.getValue() ? "NFC (Contactless)" : "IC (Contact)");
+            LOG.d("  Manual PIN flag (after check): {}", needManualPin);
 
             // Parse amounts for comparison (format: 12-digit BCD, implied 2 decimal places)
             try {
                 long amountValue = Long.parseLong(currentAmount);
                 long cvmLimitValue = Long.parseLong(PaymentConfig.PayPassConfig.DF8124);
-                Log.e(TAG, "  Amount numeric: " + amountValue + " (" + (amountValue / 100.0) + " EGP)");
-                Log.e(TAG, "  CVM limit numeric: " + cvmLimitValue + " (" + (cvmLimitValue / 100.0) + " EGP)");
-                Log.e(TAG, "  Amount < CVM limit? " + (amountValue < cvmLimitValue));
+                LOG.d("  Amount numeric: {} ({} EGP)", amountValue, amountValue / 100.0);
+                LOG.d("  CVM limit numeric: {} ({} EGP)", cvmLimitValue, cvmLimitValue / 100.0);
+                LOG.d("  Amount < CVM limit? {}", amountValue < cvmLimitValue);
                 if (amountValue < cvmLimitValue) {
-                    Log.e(TAG, "  ⚠️ PIN SHOULD NOT BE REQUIRED (amount below CVM limit)");
-                    Log.e(TAG, "  ⚠️ Possible causes: Card forces PIN, issuer override, or kernel bug");
+                    LOG.w("  ⚠️ PIN SHOULD NOT BE REQUIRED (amount below CVM limit)");
+                    LOG.w("  ⚠️ Possible causes: Card forces PIN, issuer override, or kernel bug");
                 } else {
-                    Log.e(TAG, "  ✓ PIN correctly required (amount >= CVM limit)");
+                    LOG.d("  ✓ PIN correctly required (amount >= CVM limit)");
                 }
             } catch (Exception e) {
-                Log.e(TAG, "  Failed to parse amounts: " + e.getMessage());
+                LOG.e("  Failed to parse amounts: {}", e.getMessage());
             }
 
             // Try to read PayPass CVM limit to verify it's set
@@ -634,12 +717,12 @@ public class EMVHandler {
                     byte[] actualData = new byte[len];
                     System.arraycopy(tlvData, 0, actualData, 0, len);
                     String actualCvmLimit = bytesToHex(actualData);
-                    Log.e(TAG, "  Actual DF8124 in kernel: " + actualCvmLimit);
+                    LOG.d("  Actual DF8124 in kernel: {}", actualCvmLimit);
                 } else {
-                    Log.e(TAG, "  ⚠️ DF8124 NOT FOUND in PayPass kernel!");
+                    LOG.w("  ⚠️ DF8124 NOT FOUND in PayPass kernel!");
                 }
             } catch (Exception e) {
-                Log.e(TAG, "  Failed to read DF8124: " + e.getMessage());
+                LOG.e("  Failed to read DF8124: {}", e.getMessage());
             }
 
             Bundle pinInfo = new Bundle();
@@ -652,13 +735,13 @@ public class EMVHandler {
 
         @Override
         public void onRequestSignature() throws RemoteException {
-            Log.e(TAG, "onRequestSignature");
+            LOG.d("onRequestSignature");
             onResultCallBack(EMVSteps.EMV_SIGNATURE, null);
         }
 
         @Override
         public void onCertVerify(int certType, String certInfo) throws RemoteException {
-            Log.e(TAG, "onCertVerify: certType=" + certType);
+            LOG.d("onCertVerify: certType={}", certType);
             Bundle certData = new Bundle();
             certData.putInt("certType", certType);
             certData.putString("certInfo", certInfo);
@@ -667,7 +750,9 @@ public class EMVHandler {
 
         @Override
         public void onOnlineProc() throws RemoteException {
-            Log.e(TAG, "onOnlineProc - Online authorization required");
+            LatencyTracer.milestone(Phase.EMV_ONLINE_PROC);
+            LOG.d("onOnlineProc - Online authorization required");
+            prefetchKernelTlvs("onOnlineProc");
 
             // Check if manual PIN is needed (amount >= CVM limit with DF8119=02)
             if (needManualPin) {
@@ -676,7 +761,7 @@ public class EMVHandler {
                 boolean skipPinDueToMobileWallet = false;
                 try {
                     byte[] cvmResultData = new byte[32];
-                    int len = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
+                    int len = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                             new String[] { "9F34" }, cvmResultData);
                     if (len > 0) {
                         java.util.Map<String, TLV> tlvMap = TLVUtil.buildTLVMap(
@@ -684,7 +769,7 @@ public class EMVHandler {
                         TLV cvmResultTlv = tlvMap.get("9F34");
                         if (cvmResultTlv != null) {
                             String cvmResult = cvmResultTlv.getValue();
-                            Log.e(TAG, "CVM Result (9F34): " + cvmResult);
+                            LOG.d("CVM Result (9F34): {}", cvmResult);
 
                             // Check CVM Result to detect mobile wallets (Apple Pay, Google Pay)
                             // CVM Result format: Byte1 (CVM Code) + Byte2 (Condition) + Byte3 (Result)
@@ -701,33 +786,31 @@ public class EMVHandler {
                                 // 1. CVM code is 3F or 1F (No CVM Required)
                                 // 2. AND Result byte is 02 (Successful - device actually verified user)
                                 if (("3F".equals(cvmCode) || "1F".equals(cvmCode)) && "02".equals(cvmResultByte)) {
-                                    Log.e(TAG, "═══════════════════════════════════════════════════════");
-                                    Log.e(TAG, "✓ MOBILE WALLET DETECTED (CVM=" + cvmCode + ", Result=" + cvmResultByte
-                                            + ")");
-                                    Log.e(TAG, "  Device-based CVM (Face ID/Touch ID/passcode) successfully performed");
-                                    Log.e(TAG, "  Skipping manual PIN - not required for mobile wallets");
-                                    Log.e(TAG, "═══════════════════════════════════════════════════════");
+                                    LOG.d("═══════════════════════════════════════════════════════");
+                                    LOG.d("✓ MOBILE WALLET DETECTED (CVM={}, Result={})", cvmCode, cvmResultByte);
+                                    LOG.d("  Device-based CVM (Face ID/Touch ID/passcode) successfully performed");
+                                    LOG.d("  Skipping manual PIN - not required for mobile wallets");
+                                    LOG.d("═══════════════════════════════════════════════════════");
                                     skipPinDueToMobileWallet = true;
                                     needManualPin = false;
                                 } else if ("3F".equals(cvmCode) || "1F".equals(cvmCode)) {
-                                    Log.e(TAG, "CVM Result indicates No CVM, but Result=" + cvmResultByte
-                                            + " (not Successful)");
-                                    Log.e(TAG, "This is a regular card, NOT a mobile wallet - PIN still required");
+                                    LOG.d("CVM Result indicates No CVM, but Result={} (not Successful)", cvmResultByte);
+                                    LOG.d("This is a regular card, NOT a mobile wallet - PIN still required");
                                 }
                             } else if (cvmResult != null && cvmResult.length() >= 2) {
                                 // Short CVM result - can't determine if mobile wallet
-                                Log.e(TAG, "CVM Result too short to determine mobile wallet: " + cvmResult);
+                                LOG.d("CVM Result too short to determine mobile wallet: {}", cvmResult);
                             }
                         }
                     }
                 } catch (Exception e) {
-                    Log.e(TAG, "Error checking CVM result: " + e.getMessage());
+                    LOG.e("Error checking CVM result: {}", e.getMessage());
                 }
 
                 if (!skipPinDueToMobileWallet && needManualPin) {
-                    Log.e(TAG, "=== MANUAL PIN REQUIRED ===");
-                    Log.e(TAG, "Amount >= CVM limit, but DF8119=02 was used for reliable card read");
-                    Log.e(TAG, "Triggering manual PIN collection before online auth...");
+                    LOG.d("=== MANUAL PIN REQUIRED ===");
+                    LOG.d("Amount >= CVM limit, but DF8119=02 was used for reliable card read");
+                    LOG.d("Triggering manual PIN collection before online auth...");
                     // Send PIN request callback - Activity will handle PIN then continue to online
                     // auth
                     // pinType=-99 as special marker for manual PIN (not kernel-requested)
@@ -746,9 +829,12 @@ public class EMVHandler {
 
         @Override
         public void onTransResult(int code, String desc) throws RemoteException {
-            Log.e(TAG, "onTransResult: code=" + code + ", desc=" + desc);
+            LatencyTracer.endTransaction();
+            LOG.d("onTransResult: code={}, desc={}", code, desc);
             // Reset the guard for next transaction
             emvProcessStarted = false;
+            cancelHostPrewarm(); // Offline result, or the authorization already used it
+            prefetchKernelTlvs("onTransResult");
 
             // Per SDK AidlConstants.EMV.TransResult:
             // 0 = SUCCESS
@@ -768,24 +854,24 @@ public class EMVHandler {
                 case 0: // SUCCESS
                 case 1: // OFFLINE_APPROVAL
                 case 5: // ONLINE_APPROVAL - THIS IS SUCCESS!
-                    Log.e(TAG, "✓ Transaction APPROVED (code=" + code + ")");
+                    LOG.d("✓ Transaction APPROVED (code={})", code);
                     onResultCallBack(EMVSteps.EMV_TRANS_SUCCESS, desc, code);
                     break;
 
                 case 4: // TRY_AGAIN - Present card again
-                    Log.e(TAG, "⚠️ Try again requested (code=4)");
+                    LOG.w("⚠️ Try again requested (code=4)");
                     onResultCallBack(EMVSteps.TRANS_PRESENT_CARD, desc, code);
                     break;
 
                 case 2: // OFFLINE_DECLINE
                 case 6: // ONLINE_DECLINE
-                    Log.e(TAG, "✗ Transaction DECLINED (code=" + code + ")");
+                    LOG.e("✗ Transaction DECLINED (code={})", code);
                     onResultCallBack(EMVSteps.EMV_TRANS_FAIL, desc, code);
                     break;
 
                 default:
                     // Other codes are errors (including -4002 = missing CAPK)
-                    Log.e(TAG, "✗ Transaction ERROR (code=" + code + ")");
+                    LOG.e("✗ Transaction ERROR (code={})", code);
                     onResultCallBack(EMVSteps.EMV_TRANS_FAIL, desc, code);
                     break;
             }
@@ -797,23 +883,23 @@ public class EMVHandler {
          */
         private void logCapkDebugInfo(int code, String desc) {
             try {
-                Log.e(TAG, "═══════════════════════════════════════════════════════");
-                Log.e(TAG, "=== TRANSACTION FAILURE DEBUG INFO ===");
-                Log.e(TAG, "═══════════════════════════════════════════════════════");
-                Log.e(TAG, "Error Code: " + code);
-                Log.e(TAG, "Description: " + desc);
+                LOG.d("═══════════════════════════════════════════════════════");
+                LOG.e("=== TRANSACTION FAILURE DEBUG INFO ===");
+                LOG.d("═══════════════════════════════════════════════════════");
+                LOG.e("Error Code: {}", code);
+                LOG.d("Description: {}", desc);
 
                 // Check for -4002 (Missing CAPK)
                 if (code == -4002 || (desc != null && desc.toLowerCase().contains("capk"))) {
-                    Log.e(TAG, "");
-                    Log.e(TAG, "🔥 ERROR -4002: MISSING CAPK DETECTED!");
-                    Log.e(TAG, "   This means the card requires a CAPK that is not installed.");
+                    LOG.d("");
+                    LOG.e("🔥 ERROR -4002: MISSING CAPK DETECTED!");
+                    LOG.d("   This means the card requires a CAPK that is not installed.");
                 }
 
                 byte[] outData = new byte[256];
 
                 // Read AID (Tag 4F or 9F06)
-                int len = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
+                int len = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                         new String[] { "4F", "9F06" }, outData);
                 if (len > 0) {
                     java.util.Map<String, TLV> tlvMap = TLVUtil.buildTLVMap(
@@ -824,14 +910,14 @@ public class EMVHandler {
                     if (aidTlv != null) {
                         String aid = aidTlv.getValue();
                         String rid = aid.length() >= 10 ? aid.substring(0, 10) : aid;
-                        Log.e(TAG, "");
-                        Log.e(TAG, "Card AID (4F/9F06): " + aid);
-                        Log.e(TAG, "Card RID: " + rid);
+                        LOG.d("");
+                        LOG.d("Card AID (4F/9F06): {}", aid);
+                        LOG.d("Card RID: {}", rid);
                     }
                 }
 
                 // Read CAPK Index (Tag 8F) - This is the key index the card is using
-                len = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
+                len = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                         new String[] { "8F" }, outData);
                 if (len > 0) {
                     java.util.Map<String, TLV> tlvMap = TLVUtil.buildTLVMap(
@@ -839,17 +925,17 @@ public class EMVHandler {
                     TLV capkIndexTlv = tlvMap.get("8F");
                     if (capkIndexTlv != null) {
                         String capkIndex = capkIndexTlv.getValue();
-                        Log.e(TAG, "");
-                        Log.e(TAG, "🔑 CAPK INDEX (8F): " + capkIndex);
-                        Log.e(TAG, "   ⚠️ This CAPK index may be MISSING from terminal!");
-                        Log.e(TAG, "   → Add CAPK with this RID + Index to your backend /emv/bundle");
+                        LOG.d("");
+                        LOG.d("🔑 CAPK INDEX (8F): {}", capkIndex);
+                        LOG.w("   ⚠️ This CAPK index may be MISSING from terminal!");
+                        LOG.d("   → Add CAPK with this RID + Index to your backend /emv/bundle");
                     }
                 } else {
-                    Log.e(TAG, "CAPK Index (8F): Not available");
+                    LOG.d("CAPK Index (8F): Not available");
                 }
 
                 // Read TVR (Tag 95) - Terminal Verification Results
-                len = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
+                len = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                         new String[] { "95" }, outData);
                 if (len > 0) {
                     java.util.Map<String, TLV> tlvMap = TLVUtil.buildTLVMap(
@@ -857,37 +943,37 @@ public class EMVHandler {
                     TLV tvrTlv = tlvMap.get("95");
                     if (tvrTlv != null) {
                         String tvr = tvrTlv.getValue();
-                        Log.e(TAG, "");
-                        Log.e(TAG, "TVR (95): " + tvr);
+                        LOG.d("");
+                        LOG.d("TVR (95): {}", tvr);
                         // Parse TVR byte 1 for ODA failures
                         if (tvr != null && tvr.length() >= 2) {
                             int byte1 = Integer.parseInt(tvr.substring(0, 2), 16);
                             if ((byte1 & 0x80) != 0)
-                                Log.e(TAG, "  → Offline data authentication was not performed");
+                                LOG.d("  → Offline data authentication was not performed");
                             if ((byte1 & 0x40) != 0)
-                                Log.e(TAG, "  → SDA failed");
+                                LOG.e("  → SDA failed");
                             if ((byte1 & 0x20) != 0)
-                                Log.e(TAG, "  → ICC data missing");
+                                LOG.d("  → ICC data missing");
                             if ((byte1 & 0x10) != 0)
-                                Log.e(TAG, "  → Card on terminal exception file");
+                                LOG.e("  → Card on terminal exception file");
                             if ((byte1 & 0x08) != 0)
-                                Log.e(TAG, "  → DDA failed");
+                                LOG.e("  → DDA failed");
                             if ((byte1 & 0x04) != 0)
-                                Log.e(TAG, "  → CDA failed");
+                                LOG.e("  → CDA failed");
                         }
                     }
                 }
 
-                Log.e(TAG, "═══════════════════════════════════════════════════════");
+                LOG.d("═══════════════════════════════════════════════════════");
 
             } catch (Exception e) {
-                Log.e(TAG, "Error logging CAPK debug info: " + e.getMessage());
+                LOG.e("Error logging CAPK debug info: {}", e.getMessage());
             }
         }
 
         @Override
         public void onConfirmationCodeVerified() throws RemoteException {
-            Log.e(TAG, "=== onConfirmationCodeVerified (See Phone Flow) ===");
+            LOG.d("=== onConfirmationCodeVerified (See Phone Flow) ===");
             // This callback indicates "See Phone" flow - customer needs to authorize on
             // their phone
             // Per SDK demo:
@@ -902,15 +988,15 @@ public class EMVHandler {
                 if (len > 0) {
                     byte[] data = new byte[len];
                     System.arraycopy(outData, 0, data, 0, len);
-                    Log.e(TAG, "DF8129 (Outcome Parameter Set): " + bytesToHex(data));
+                    LOG.d("DF8129 (Outcome Parameter Set): {}", bytesToHex(data));
                 }
 
                 // Turn off the card
                 readCardOptV2.cardOff(currentCardType);
-                Log.e(TAG, "Card turned off for See Phone flow");
+                LOG.d("Card turned off for See Phone flow");
 
             } catch (Exception e) {
-                Log.e(TAG, "Error in onConfirmationCodeVerified: " + e.getMessage());
+                LOG.e("Error in onConfirmationCodeVerified: {}", e.getMessage());
             }
 
             // Notify callback - Activity should show dialog and restart transaction
@@ -929,40 +1015,42 @@ public class EMVHandler {
 
         @Override
         public void onRequestDataExchange(String cardNo) throws RemoteException {
-            Log.e(TAG, "onRequestDataExchange: " + maskCardNo(cardNo));
+            LOG.d("onRequestDataExchange: {}", maskCardNo(cardNo));
             // MIR cards - auto respond
             try {
+                SdkWrapper.invalidateTlvCache();
                 emvOptV2.importDataExchangeStatus(0);
             } catch (Exception e) {
-                Log.e(TAG, "importDataExchangeStatus failed: " + e.getMessage());
+                LOG.e("importDataExchangeStatus failed: {}", e.getMessage());
             }
         }
 
         @Override
         public void onTermRiskManagement() throws RemoteException {
-            Log.e(TAG, "onTermRiskManagement");
+            LOG.d("onTermRiskManagement");
             onResultCallBack(EMVSteps.EMV_TERM_RISK_MANAGEMENT, null);
         }
 
         @Override
         public void onPreFirstGenAC() throws RemoteException {
-            Log.e(TAG, "onPreFirstGenAC");
+            LOG.d("onPreFirstGenAC");
             onResultCallBack(EMVSteps.EMV_PRE_FIRST_GEN_AC, null);
         }
 
         @Override
         public void onDataStorageProc(String[] containerID, String[] containerContent) throws RemoteException {
-            Log.e(TAG, "onDataStorageProc - DPAS 2.0 callback");
+            LOG.d("onDataStorageProc - DPAS 2.0 callback");
             // This callback is used for DPAS 2.0 (Discover)
             // Configure tags and values according to requirements
             // For now, respond with empty arrays
             try {
                 String[] tags = new String[0];
                 String[] values = new String[0];
+                SdkWrapper.invalidateTlvCache();
                 emvOptV2.importDataStorage(tags, values);
-                Log.e(TAG, "importDataStorage called successfully");
+                LOG.d("importDataStorage called successfully");
             } catch (Exception e) {
-                Log.e(TAG, "importDataStorage failed: " + e.getMessage());
+                LOG.e("importDataStorage failed: {}", e.getMessage());
             }
 
             Bundle data = new Bundle();
@@ -980,10 +1068,11 @@ public class EMVHandler {
      */
     public void importAppSelect(int index) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importAppSelect(index);
-            Log.e(TAG, "importAppSelect: index=" + index);
+            LOG.d("importAppSelect: index={}", index);
         } catch (Exception e) {
-            Log.e(TAG, "importAppSelect failed: " + e.getMessage());
+            LOG.e("importAppSelect failed: {}", e.getMessage());
         }
     }
 
@@ -993,10 +1082,11 @@ public class EMVHandler {
      */
     public void importAppFinalSelectStatus(int status) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importAppFinalSelectStatus(status);
-            Log.e(TAG, "importAppFinalSelectStatus: status=" + status);
+            LOG.d("importAppFinalSelectStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importAppFinalSelectStatus failed: " + e.getMessage());
+            LOG.e("importAppFinalSelectStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1006,10 +1096,11 @@ public class EMVHandler {
      */
     public void importCardNoStatus(int status) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importCardNoStatus(status);
-            Log.e(TAG, "importCardNoStatus: status=" + status);
+            LOG.d("importCardNoStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importCardNoStatus failed: " + e.getMessage());
+            LOG.e("importCardNoStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1022,10 +1113,11 @@ public class EMVHandler {
      */
     public void importPinInputStatus(int pinType, int result) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importPinInputStatus(pinType, result);
-            Log.e(TAG, "importPinInputStatus: pinType=" + pinType + ", result=" + result);
+            LOG.d("importPinInputStatus: pinType={}, result={}", pinType, result);
         } catch (Exception e) {
-            Log.e(TAG, "importPinInputStatus failed: " + e.getMessage());
+            LOG.e("importPinInputStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1035,10 +1127,11 @@ public class EMVHandler {
      */
     public void importCertStatus(int status) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importCertStatus(status);
-            Log.e(TAG, "importCertStatus: status=" + status);
+            LOG.d("importCertStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importCertStatus failed: " + e.getMessage());
+            LOG.e("importCertStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1048,10 +1141,11 @@ public class EMVHandler {
      */
     public void importSignatureStatus(int status) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importSignatureStatus(status);
-            Log.e(TAG, "importSignatureStatus: status=" + status);
+            LOG.d("importSignatureStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importSignatureStatus failed: " + e.getMessage());
+            LOG.e("importSignatureStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1066,10 +1160,11 @@ public class EMVHandler {
     public void importOnlineProcStatus(int status, String[] tags, String[] values) {
         try {
             byte[] outData = new byte[1024];
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importOnlineProcStatus(status, tags, values, outData);
-            Log.e(TAG, "importOnlineProcStatus: status=" + status);
+            LOG.d("importOnlineProcStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importOnlineProcStatus failed: " + e.getMessage());
+            LOG.e("importOnlineProcStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1079,10 +1174,11 @@ public class EMVHandler {
      */
     public void importTermRiskManagementStatus(int status) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importTermRiskManagementStatus(status);
-            Log.e(TAG, "importTermRiskManagementStatus: status=" + status);
+            LOG.d("importTermRiskManagementStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importTermRiskManagementStatus failed: " + e.getMessage());
+            LOG.e("importTermRiskManagementStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1092,10 +1188,11 @@ public class EMVHandler {
      */
     public void importPreFirstGenACStatus(int status) {
         try {
+            SdkWrapper.invalidateTlvCache();
             emvOptV2.importPreFirstGenACStatus(status);
-            Log.e(TAG, "importPreFirstGenACStatus: status=" + status);
+            LOG.d("importPreFirstGenACStatus: status={}", status);
         } catch (Exception e) {
-            Log.e(TAG, "importPreFirstGenACStatus failed: " + e.getMessage());
+            LOG.e("importPreFirstGenACStatus failed: {}", e.getMessage());
         }
     }
 
@@ -1106,13 +1203,14 @@ public class EMVHandler {
      * Should be called when card is no longer needed
      */
     public void cardOff() {
+        cancelHostPrewarm();
         try {
             if (currentCardType != 0) {
                 readCardOptV2.cardOff(currentCardType);
-                Log.e(TAG, "Card turned off: type=" + currentCardType);
+                LOG.d("Card turned off: type={}", currentCardType);
             }
         } catch (Exception e) {
-            Log.e(TAG, "cardOff failed: " + e.getMessage());
+            LOG.e("cardOff failed: {}", e.getMessage());
         }
     }
 
@@ -1125,7 +1223,7 @@ public class EMVHandler {
         try {
             return readCardOptV2.getCardExistStatus(currentCardType);
         } catch (Exception e) {
-            Log.e(TAG, "getCardExistStatus failed: " + e.getMessage());
+            LOG.e("getCardExistStatus failed: {}", e.getMessage());
             return -1;
         }
     }
@@ -1135,21 +1233,44 @@ public class EMVHandler {
      * Should be called when onTransResult returns code=4
      */
     public void restartTransaction() {
-        Log.e(TAG, "=== Restarting Transaction ===");
+        LOG.d("=== Restarting Transaction ===");
         try {
             // Re-initialize EMV process
+            SdkWrapper.beginTlvTransaction();
             emvOptV2.initEmvProcess();
             // Start card detection again (preserve transaction type)
             startCardDetection(currentAmount, 60,
                     "20".equals(currentTransactionType) ? "refund" : "purchase");
         } catch (Exception e) {
-            Log.e(TAG, "restartTransaction failed: " + e.getMessage());
+            LOG.e("restartTransaction failed: {}", e.getMessage());
             onResultCallBack(EMVSteps.CARD_ERROR, "Failed to restart transaction: " + e.getMessage());
         }
     }
 
     // ==================== TLV Helper Methods ====================
 
+    /**
+     * Kernel milestone: read the registered tags with one getTlvList() for
+     * OP_NORMAL and, for contactless, one for the brand's space; the reads
+     * that follow (PAN, CVM logging, receipt) are served from that snapshot
+     * until the next import*() call
+     */
+    private void prefetchKernelTlvs(String milestone) {
+        int normal = AidlConstants.EMV.TLVOpCode.OP_NORMAL;
+        SdkWrapper.prefetchTlvs(milestone, normal);
+        if (isContactless()) {
+            String aid = SdkWrapper.getTlv(normal, "4F");
+            if (aid == null) {
+                aid = SdkWrapper.getTlv(normal, "9F06");
+            }
+            if (aid != null && (aid.startsWith("A000000004") || aid.startsWith("A000000005"))) {
+                SdkWrapper.prefetchTlvs(milestone, com.sunmi.payservice.AidlConstantsV2.EMV.TLVOpCode.OP_PAYPASS);
+            } else if (aid != null && aid.startsWith("A000000003")) {
+                SdkWrapper.prefetchTlvs(milestone, com.sunmi.payservice.AidlConstantsV2.EMV.TLVOpCode.OP_PAYWAVE);
+            }
+        }
+    }
+
     /**
      * Read TLV value from EMV kernel
      * For contactless transactions, tries brand-specific TLVOpCode first, then
@@ -1166,7 +1287,7 @@ public class EMVHandler {
                 String aid = null;
                 try {
                     byte[] aidOut = new byte[256];
-                    int aidLen = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
+                    int aidLen = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                             new String[] { "4F", "9F06" }, aidOut);
                     if (aidLen > 0) {
                         java.util.Map<String, TLV> aidTlvMap = TLVUtil
@@ -1198,7 +1319,7 @@ public class EMVHandler {
 
                     // Try brand-specific space first
                     byte[] out = new byte[256];
-                    int len = emvOptV2.getTlvList(tlvOpCode, new String[] { tag }, out);
+                    int len = SdkWrapper.getTlvList(tlvOpCode, new String[] { tag }, out);
                     if (len > 0) {
                         TLV tlv = TLVUtil.buildTLVMap(java.util.Arrays.copyOf(out, len)).get(tag);
                         if (tlv != null && tlv.getValue() != null && !tlv.getValue().isEmpty()) {
@@ -1210,13 +1331,13 @@ public class EMVHandler {
 
             // Fall back to OP_NORMAL (works for both contact and contactless)
             byte[] out = new byte[256];
-            int len = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL, new String[] { tag }, out);
+            int len = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL, new String[] { tag }, out);
             if (len > 0) {
                 TLV tlv = TLVUtil.buildTLVMap(java.util.Arrays.copyOf(out, len)).get(tag);
                 return tlv != null ? tlv.getValue() : null;
             }
         } catch (Exception e) {
-            Log.e(TAG, "readTlv failed for tag " + tag + ": " + e.getMessage());
+            LOG.e("readTlv failed for tag {}: {}", tag, e.getMessage());
         }
         return null;
     }
@@ -1228,7 +1349,7 @@ public class EMVHandler {
         java.util.Map<String, String> result = new java.util.HashMap<>();
         try {
             byte[] out = new byte[1024];
-            int len = emvOptV2.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL, tags, out);
+            int len = SdkWrapper.getTlvList(AidlConstants.EMV.TLVOpCode.OP_NORMAL, tags, out);
             if (len > 0) {
                 java.util.Map<String, TLV> tlvMap = TLVUtil.buildTLVMap(java.util.Arrays.copyOf(out, len));
                 for (String tag : tags) {
@@ -1239,7 +1360,7 @@ public class EMVHandler {
                 }
             }
         } catch (Exception e) {
-            Log.e(TAG, "readTlvList failed: " + e.getMessage());
+            LOG.e("readTlvList failed: {}", e.getMessage());
         }
         return result;
     }
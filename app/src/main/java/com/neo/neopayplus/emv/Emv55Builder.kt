@@ -29,6 +29,10 @@ object Emv55Builder {
     private val MC_TAGS   = arrayOf("9F26","9F27","9F10","9F37","9F36","95","9A","9C","9F02","5F2A","82","9F1A","9F03","9F33","9F34","9F35","9F1E","84","9F09","9F6E","9B","5A","57","9F6B","59","5F24")
     private val MEEZA_TAGS= arrayOf("9F26","9F27","9F10","9F37","9F36","95","9A","9C","9F02","5F2A","82","9F1A","9F03","9F33","9F34","9F35","9F1E","84","9F09","9F41","9F6E","9B","5A","57","9F6B","59","5F24")
 
+    // Read with the DE55 tags for EmvTransactionContext only, not sent in DE55:
+    // 5F34 (PAN Sequence Number, for DE23) and 4F (AID)
+    private val CONTEXT_TAGS = arrayOf("5F34", "4F")
+
     /**
      * Build Field 55 for a specific brand using brand-specific tag lists and TLVOpCode.
      * This is a simpler version that directly reads from the kernel using the appropriate TLVOpCode.
@@ -42,12 +46,28 @@ object Emv55Builder {
     @JvmStatic
     @JvmOverloads
     fun buildForBrand(emv: EMVOptV2, brand: EmvBrandConfig.BrandProfile, isContactless: Boolean = false, hasPin: Boolean = false): ByteArray {
+        return buildContext(emv, brand, isContactless, hasPin).de55()
+    }
+
+    /**
+     * Build Field 55 and the transaction's [EmvTransactionContext] from one kernel read.
+     *
+     * The read asks for the brand's DE55 tags plus [CONTEXT_TAGS]; DE55 keeps only the
+     * brand's tags (kernel order, bytes as returned), the context decodes PAN, expiry,
+     * PSN, amount, currency and AID from the same parse.
+     *
+     * @return Context holding the DE55 bytes (empty DE55 if the kernel returned nothing)
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun buildContext(emv: EMVOptV2, brand: EmvBrandConfig.BrandProfile, isContactless: Boolean = false, hasPin: Boolean = false): EmvTransactionContext {
         val tags = when (brand.name) {
             "VISA" -> VISA_TAGS
             "MASTERCARD" -> MC_TAGS
             "MEEZA" -> MEEZA_TAGS
             else -> VISA_TAGS
         }
+        val readTags = tags + CONTEXT_TAGS.filterNot { it in tags }
         
         // Use the correct TLVOpCode based on card type and brand (like SDK demo)
         val tlvOpCode = if (isContactless) {
@@ -61,123 +81,39 @@ object Emv55Builder {
         }
         
         val out = ByteArray(4096)
-        val len = emv.getTlvList(tlvOpCode, tags, out)
+        val len = emv.getTlvList(tlvOpCode, readTags, out)
         
         if (len <= 0) {
             LogUtil.e(Constant.TAG, "⚠️ No tags returned from EMV kernel")
-            return ByteArray(0)
+            return EmvTransactionContext.fromDe55(ByteArray(0), brand.name)
         }
         
-        // Parse the TLV data to check if 9F6E is present
+        // Single parse of the kernel output; everything below reads from it
         val tlvData = out.copyOf(len)
-        val tlvMap = TLVUtil.buildTLVMap(tlvData)
-        val has9F6E = tlvMap.containsKey("9F6E")
+        val tlvs = TlvBuffer.parse(tlvData)
+        val has9F6E = tlvs.has("9F6E")
         
         LogUtil.e(Constant.TAG, "=== Building Field 55 (DE55) ===")
-        LogUtil.e(Constant.TAG, "Extracted ${tlvMap.size} tags from EMV kernel")
+        LogUtil.e(Constant.TAG, "Extracted ${tlvs.size()} tags from EMV kernel")
         LogUtil.e(Constant.TAG, "Tag 9F6E present: $has9F6E (contactless=$isContactless, hasPin=$hasPin)")
         
-        // Verify PAN tags are present and unmasked (for bank communication)
-        val pan5A = tlvMap["5A"]?.value
-        val pan57 = tlvMap["57"]?.value
-        val pan9F6B = tlvMap["9F6B"]?.value
-        if (pan5A != null && pan5A.isNotEmpty()) {
-            // PAN in tag 5A is BCD encoded, remove trailing 'F' padding for display
-            val panDisplay = pan5A.replace(Regex("F+$"), "")
-            val maskedPan = if (panDisplay.length >= 10) {
-                "${panDisplay.take(6)}****${panDisplay.takeLast(4)}"
-            } else {
-                "****"
-            }
-            LogUtil.e(Constant.TAG, "✓ PAN tag 5A present in Field 55 (unmasked for backend): $maskedPan")
-        } else if (pan57 != null && pan57.isNotEmpty()) {
-            LogUtil.e(Constant.TAG, "✓ PAN tag 57 (Track 2) present in Field 55 (unmasked for backend)")
-        } else if (pan9F6B != null && pan9F6B.isNotEmpty()) {
-            LogUtil.e(Constant.TAG, "✓ PAN tag 9F6B (Contactless Track 2) present in Field 55 (unmasked for backend)")
-        } else {
-            LogUtil.e(Constant.TAG, "⚠️ No PAN tags (5A, 57, 9F6B) found in Field 55")
-        }
-        
-        // Verify expiry date is present (for bank communication)
-        // Priority: tag 59 -> tag 5F24 -> Track 2 (57/9F6B)
-        var expiryFound = false
-        val expiry59 = tlvMap["59"]?.value
-        if (expiry59 != null && expiry59.isNotEmpty()) {
-            val expiryDisplay = expiry59.replace(Regex("F+$"), "")
-            if (expiryDisplay.length >= 4) {
-                val yy = expiryDisplay.substring(0, 2)
-                val mm = expiryDisplay.substring(2, 4)
-                LogUtil.e(Constant.TAG, "✓ Expiry date tag 59 present in Field 55 (unmasked for backend): $mm/$yy (hex: $expiry59)")
-                expiryFound = true
-            }
-        }
-        
-        // Fallback to tag 5F24
-        if (!expiryFound) {
-            val expiry5F24 = tlvMap["5F24"]?.value
-            if (expiry5F24 != null && expiry5F24.isNotEmpty()) {
-                val expiryDisplay = expiry5F24.replace(Regex("F+$"), "")
-                if (expiryDisplay.length >= 4) {
-                    val yy = expiryDisplay.substring(0, 2)
-                    val mm = expiryDisplay.substring(2, 4)
-                    LogUtil.e(Constant.TAG, "✓ Expiry date tag 5F24 present in Field 55 (unmasked for backend): $mm/$yy (hex: $expiry5F24)")
-                    expiryFound = true
-                }
+        // DE55: the brand's tags as the kernel returned them
+        val de55Tags = HashSet<Int>(tags.size * 2)
+        tags.forEach { de55Tags.add(TlvBuffer.tag(it)) }
+        val de55 = java.io.ByteArrayOutputStream(len + 8)
+        for (i in 0 until tlvs.entryCount()) {
+            if (tlvs.tagAt(i) in de55Tags) {
+                val start = tlvs.entryOffsetAt(i)
+                de55.write(tlvData, start, tlvs.valueOffsetAt(i) + tlvs.valueLengthAt(i) - start)
             }
         }
         
-        // Fallback to Track 2 data (tag 57 or 9F6B)
-        if (!expiryFound) {
-            val track257 = tlvMap["57"]?.value
-            if (track257 != null && track257.isNotEmpty()) {
-                val track2Hex = track257.uppercase()
-                val delimiterIndex = track2Hex.indexOf('D')
-                if (delimiterIndex > 0 && track2Hex.length > delimiterIndex + 4) {
-                    val expiryHex = track2Hex.substring(delimiterIndex + 1, delimiterIndex + 5)
-                    val expiry = expiryHex.replace(Regex("F+$"), "")
-                    if (expiry.length >= 4) {
-                        val yy = expiry.substring(0, 2)
-                        val mm = expiry.substring(2, 4)
-                        LogUtil.e(Constant.TAG, "✓ Expiry date extracted from Track 2 (57) in Field 55 (unmasked for backend): $mm/$yy")
-                        expiryFound = true
-                    }
-                }
-            }
-            
-            if (!expiryFound) {
-                val track29F6B = tlvMap["9F6B"]?.value
-                if (track29F6B != null && track29F6B.isNotEmpty()) {
-                    val track2Hex = track29F6B.uppercase()
-                    val delimiterIndex = track2Hex.indexOf('D')
-                    if (delimiterIndex > 0 && track2Hex.length > delimiterIndex + 4) {
-                        val expiryHex = track2Hex.substring(delimiterIndex + 1, delimiterIndex + 5)
-                        val expiry = expiryHex.replace(Regex("F+$"), "")
-                        if (expiry.length >= 4) {
-                            val yy = expiry.substring(0, 2)
-                            val mm = expiry.substring(2, 4)
-                            LogUtil.e(Constant.TAG, "✓ Expiry date extracted from Track 2 (9F6B) in Field 55 (unmasked for backend): $mm/$yy")
-                            expiryFound = true
-                        }
-                    }
-                }
-            }
-        }
-        
-        if (!expiryFound) {
-            LogUtil.e(Constant.TAG, "⚠️ Expiry date not found in Field 55 (tried tags 59, 5F24, 57, 9F6B)")
-        }
-        
         // If 9F6E is missing, generate it and append to Field 55
         if (!has9F6E) {
             LogUtil.e(Constant.TAG, "⚠️ Tag 9F6E (POS Entry Mode) not provided by kernel - generating based on transaction type")
             val posEntryModeHex = generate9F6E(isContactless, hasPin)
             val tag9F6E = encodeTlv("9F6E", posEntryModeHex)
-            
-            // Append 9F6E to the existing TLV data
-            val newLen = len + tag9F6E.size
-            val newData = ByteArray(newLen)
-            System.arraycopy(tlvData, 0, newData, 0, len)
-            System.arraycopy(tag9F6E, 0, newData, len, tag9F6E.size)
+            de55.write(tag9F6E, 0, tag9F6E.size)
             
             val posEntryModeStr = when {
                 isContactless && hasPin -> "071"
@@ -186,14 +122,29 @@ object Emv55Builder {
                 else -> "021"
             }
             LogUtil.e(Constant.TAG, "✓ Added tag 9F6E (POS Entry Mode): $posEntryModeStr (hex: $posEntryModeHex, ${tag9F6E.size} bytes)")
-            LogUtil.e(Constant.TAG, "✓ Field 55 (DE55) built - total length: ${newData.size} bytes")
-            return newData
         } else {
-            val tag9F6EValue = tlvMap["9F6E"]?.getValue() ?: ""
-            LogUtil.e(Constant.TAG, "✓ Tag 9F6E (POS Entry Mode) provided by kernel: $tag9F6EValue")
-            LogUtil.e(Constant.TAG, "✓ Field 55 (DE55) built - total length: ${tlvData.size} bytes")
-            return tlvData
+            LogUtil.e(Constant.TAG, "✓ Tag 9F6E (POS Entry Mode) provided by kernel: ${tlvs.valueHex("9F6E")}")
         }
+        
+        val context = EmvTransactionContext.fromKernelRead(tlvs, de55.toByteArray(), brand.name)
+        
+        // PAN tags are sent unmasked to the bank; only log them masked
+        val pan = context.pan
+        if (pan != null) {
+            val maskedPan = if (pan.length >= 10) "${pan.take(6)}****${pan.takeLast(4)}" else "****"
+            LogUtil.e(Constant.TAG, "✓ PAN present in Field 55 (unmasked for backend): $maskedPan")
+        } else {
+            LogUtil.e(Constant.TAG, "⚠️ No PAN tags (5A, 57, 9F6B) found in Field 55")
+        }
+        val expiry = context.expiry
+        if (expiry != null) {
+            LogUtil.e(Constant.TAG, "✓ Expiry date present (unmasked for backend): ${expiry.substring(2, 4)}/${expiry.substring(0, 2)}")
+        } else {
+            LogUtil.e(Constant.TAG, "⚠️ Expiry date not found in Field 55 (tried tags 59, 5F24, 57, 9F6B)")
+        }
+        
+        LogUtil.e(Constant.TAG, "✓ Field 55 (DE55) built - total length: ${context.de55Length()} bytes")
+        return context
     }
     
     /**
@@ -260,21 +211,16 @@ object Emv55Builder {
         val allTags = (REQUIRED_ORDER + OPTIONAL_ORDER).distinct().toTypedArray()
         val out = ByteArray(4096)
         val len = emv.getTlvList(AidlConstantsV2.EMV.TLVOpCode.OP_NORMAL, allTags, out)
-        val tlvMapJava: Map<String, com.neo.neopayplus.emv.TLV> = if (len > 0) {
-            TLVUtil.buildTLVMap(out.copyOf(len))
-        } else {
-            emptyMap()
-        }
+        val tlvs = TlvBuffer.parse(out, 0, maxOf(len, 0))
 
         LogUtil.e(Constant.TAG, "=== Building Field 55 (DE55) ===")
-        LogUtil.e(Constant.TAG, "Extracted ${tlvMapJava.size} tags from EMV kernel")
+        LogUtil.e(Constant.TAG, "Extracted ${tlvs.size()} tags from EMV kernel")
 
         val pieces = ArrayList<ByteArray>(REQUIRED_ORDER.size + OPTIONAL_ORDER.size)
 
         // Build in required order (skipping tags truly not available, except 9F02/5F2A—fallback provided)
         REQUIRED_ORDER.forEach { tag ->
-            val tlv = tlvMapJava[tag]
-            val valueHex = tlv?.value
+            val valueHex = tlvs.valueHex(tag)
                 ?: when (tag) {
                     "9F02" -> fallbackFor9F02(fallbackAmountMinor)
                     "5F2A" -> fallbackFor5F2A(fallbackCurrencyCode)
@@ -293,8 +239,7 @@ object Emv55Builder {
 
         if (includeOptionals) {
             OPTIONAL_ORDER.forEach { tag ->
-                val tlv = tlvMapJava[tag]
-                val valueHex = tlv?.value
+                val valueHex = tlvs.valueHex(tag)
                 if (!valueHex.isNullOrEmpty()) {
                     val tlvBytes = encodeTlv(tag, valueHex)
                     pieces.add(tlvBytes)
@@ -0,0 +1,269 @@
+package com.neo.neopayplus.emv
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.neo.neopayplus.api.ApiJson
+import com.neo.neopayplus.emv.EmvProvisioner.AidJson
+import com.neo.neopayplus.emv.EmvProvisioner.CapkJson
+import com.neo.neopayplus.emv.EmvProvisioner.ContactlessParams
+import com.neo.neopayplus.emv.EmvProvisioner.EmvBundle
+import com.neo.neopayplus.emv.EmvProvisioner.MerchantRiskParams
+import com.neo.neopayplus.emv.EmvProvisioner.TerminalJson
+import com.neo.neopayplus.emv.EmvProvisioner.TerminalRiskJson
+
+/**
+ * Streaming decoder for the /emv/bundle body into [EmvBundle].
+ *
+ * Reads the response stream token by token into the DTOs (same JSON names
+ * as their @SerializedName/field names, same defaults) instead of reflecting
+ * over them; unknown fields are skipped and JSON null reads as absent.
+ * The DTOs are still serialized reflectively for the snapshot fingerprints,
+ * so this is a plain [ApiJson.Decoder], not a Gson type adapter.
+ */
+object EmvBundleAdapter : ApiJson.Decoder<EmvBundle> {
+
+    override fun read(reader: JsonReader): EmvBundle? {
+        if (!beginObject(reader)) return null
+        var ok = false
+        var version: String? = null
+        var terminal: TerminalJson? = null
+        var aids: List<AidJson>? = null
+        var aidsFlat: List<AidJson>? = null
+        var capks: List<CapkJson>? = null
+        var terminalRisk: TerminalRiskJson? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "ok" -> ok = ApiJson.nextBoolean(reader, false)
+                "version" -> version = ApiJson.nextString(reader)
+                "terminal" -> terminal = readTerminal(reader)
+                "aids" -> aids = readList(reader, ::readAid)
+                "aids_flat" -> aidsFlat = readList(reader, ::readAid)
+                "capks" -> capks = readList(reader, ::readCapk)
+                "terminalRisk" -> terminalRisk = readTerminalRisk(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return EmvBundle(ok, version, terminal, aids, aidsFlat, capks, terminalRisk)
+    }
+
+    private fun readAid(reader: JsonReader): AidJson? {
+        if (!beginObject(reader)) return null
+        var aid: String? = null
+        var rid: String? = null
+        var label: String? = null
+        var kernel: String? = null
+        var selFlag: Int? = null
+        var priority = 1
+        var floorLimit: String? = null
+        var cvLimit: String? = null
+        var noCvmLimit: String? = null
+        var tacDefault: String? = null
+        var tacDenial: String? = null
+        var tacOnline: String? = null
+        var ddol: String? = null
+        var tdol: String? = null
+        var udol: String? = null
+        var version: String? = null
+        var capkRefs: List<Map<String, String>>? = null
+        var contactless: ContactlessParams? = null
+        var riskManData: String? = null
+        var merchantCategoryCode: String? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "aid" -> aid = ApiJson.nextString(reader)
+                "RID" -> rid = ApiJson.nextString(reader)
+                "label" -> label = ApiJson.nextString(reader)
+                "kernel" -> kernel = ApiJson.nextString(reader)
+                "selFlag" -> selFlag = nextIntOrNull(reader)
+                "priority" -> priority = ApiJson.nextInt(reader, 1)
+                "floorLimit" -> floorLimit = ApiJson.nextString(reader)
+                "cvLimit" -> cvLimit = ApiJson.nextString(reader)
+                "noCvmLimit" -> noCvmLimit = ApiJson.nextString(reader)
+                "tacDefault" -> tacDefault = ApiJson.nextString(reader)
+                "tacDenial" -> tacDenial = ApiJson.nextString(reader)
+                "tacOnline" -> tacOnline = ApiJson.nextString(reader)
+                "dDOL" -> ddol = ApiJson.nextString(reader)
+                "tdol" -> tdol = ApiJson.nextString(reader)
+                "udol" -> udol = ApiJson.nextString(reader)
+                "version" -> version = ApiJson.nextString(reader)
+                "capkRefs" -> capkRefs = readList(reader, ::readStringMap)
+                "contactless" -> contactless = readContactless(reader)
+                "termRiskManagement" -> riskManData = ApiJson.nextString(reader)
+                "merchantCategoryCode" -> merchantCategoryCode = ApiJson.nextString(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return AidJson(
+            aid, rid, label, kernel, selFlag, priority, floorLimit, cvLimit, noCvmLimit,
+            tacDefault, tacDenial, tacOnline, ddol, tdol, udol, version, capkRefs, contactless,
+            riskManData, merchantCategoryCode
+        )
+    }
+
+    private fun readContactless(reader: JsonReader): ContactlessParams? {
+        if (!beginObject(reader)) return null
+        var ctq: String? = null
+        var ttq: String? = null
+        var merchantRisk: MerchantRiskParams? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "ctq" -> ctq = ApiJson.nextString(reader)
+                "ttq" -> ttq = ApiJson.nextString(reader)
+                "merchantRiskParameters" -> merchantRisk = readMerchantRisk(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return ContactlessParams(ctq, ttq, merchantRisk)
+    }
+
+    private fun readMerchantRisk(reader: JsonReader): MerchantRiskParams? {
+        if (!beginObject(reader)) return null
+        var floorLimit: String? = null
+        var noCvmLimit: String? = null
+        var cvmLimit: String? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "reader_contactless_floor_limit" -> floorLimit = ApiJson.nextString(reader)
+                "contactless_no_cvm_limit" -> noCvmLimit = ApiJson.nextString(reader)
+                "contactless_cvm_limit" -> cvmLimit = ApiJson.nextString(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return MerchantRiskParams(floorLimit, noCvmLimit, cvmLimit)
+    }
+
+    private fun readCapk(reader: JsonReader): CapkJson? {
+        if (!beginObject(reader)) return null
+        var rid = ""
+        var index = ""
+        var modulusBase64: String? = null
+        var modulusHex: String? = null
+        var exponentBase64: String? = null
+        var exponentHex: String? = null
+        var expiry: String? = null
+        var expiryDate: String? = null
+        var sha1: String? = null
+        var checkSum: String? = null
+        var hash: String? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "rid" -> rid = ApiJson.nextString(reader, "")
+                "index" -> index = ApiJson.nextString(reader, "")
+                "modulusBase64" -> modulusBase64 = ApiJson.nextString(reader)
+                "modulus" -> modulusHex = ApiJson.nextString(reader)
+                "exponentBase64" -> exponentBase64 = ApiJson.nextString(reader)
+                "exponent" -> exponentHex = ApiJson.nextString(reader)
+                "expiry" -> expiry = ApiJson.nextString(reader)
+                "expiryDate" -> expiryDate = ApiJson.nextString(reader)
+                "sha1" -> sha1 = ApiJson.nextString(reader)
+                "checkSum" -> checkSum = ApiJson.nextString(reader)
+                "hash" -> hash = ApiJson.nextString(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return CapkJson(
+            rid, index, modulusBase64, modulusHex, exponentBase64, exponentHex,
+            expiry, expiryDate, sha1, checkSum, hash
+        )
+    }
+
+    private fun readTerminal(reader: JsonReader): TerminalJson? {
+        if (!beginObject(reader)) return null
+        var countryCode: String? = null
+        var currencyCode: String? = null
+        var terminalType: String? = null
+        var merchantCategoryCode: String? = null
+        var merchantName: String? = null
+        var merchantId: String? = null
+        var terminalId: String? = null
+        var ttq: String? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "countryCode" -> countryCode = ApiJson.nextString(reader)
+                "currencyCode" -> currencyCode = ApiJson.nextString(reader)
+                "terminalType" -> terminalType = ApiJson.nextString(reader)
+                "merchantCategoryCode" -> merchantCategoryCode = ApiJson.nextString(reader)
+                "merchantName" -> merchantName = ApiJson.nextString(reader)
+                "merchantId" -> merchantId = ApiJson.nextString(reader)
+                "terminalId" -> terminalId = ApiJson.nextString(reader)
+                "ttq" -> ttq = ApiJson.nextString(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return TerminalJson(
+            countryCode, currencyCode, terminalType, merchantCategoryCode,
+            merchantName, merchantId, terminalId, ttq
+        )
+    }
+
+    private fun readTerminalRisk(reader: JsonReader): TerminalRiskJson? {
+        if (!beginObject(reader)) return null
+        var tacDefault: String? = null
+        var tacDenial: String? = null
+        var tacOnline: String? = null
+        var floorLimit: String? = null
+        var velocityCounter: Int? = null
+        var randomSelection: Int? = null
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "tacDefault" -> tacDefault = ApiJson.nextString(reader)
+                "tacDenial" -> tacDenial = ApiJson.nextString(reader)
+                "tacOnline" -> tacOnline = ApiJson.nextString(reader)
+                "floorLimit" -> floorLimit = ApiJson.nextString(reader)
+                "velocityCounter" -> velocityCounter = nextIntOrNull(reader)
+                "randomSelection" -> randomSelection = nextIntOrNull(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return TerminalRiskJson(tacDefault, tacDenial, tacOnline, floorLimit, velocityCounter, randomSelection)
+    }
+
+    private fun readStringMap(reader: JsonReader): Map<String, String>? {
+        if (!beginObject(reader)) return null
+        // Insertion order, as Gson's own map: the AID fingerprint serializes it
+        val map = LinkedHashMap<String, String>()
+        while (reader.hasNext()) {
+            val name = reader.nextName()
+            ApiJson.nextString(reader)?.let { map[name] = it }
+        }
+        reader.endObject()
+        return map
+    }
+
+    private fun <T> readList(reader: JsonReader, element: (JsonReader) -> T?): List<T>? {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue()
+            return null
+        }
+        val list = ArrayList<T>()
+        reader.beginArray()
+        while (reader.hasNext()) {
+            element(reader)?.let { list.add(it) }
+        }
+        reader.endArray()
+        return list
+    }
+
+    private fun beginObject(reader: JsonReader): Boolean {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue()
+            return false
+        }
+        reader.beginObject()
+        return true
+    }
+
+    private fun nextIntOrNull(reader: JsonReader): Int? {
+        val token = reader.peek()
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) return reader.nextInt()
+        reader.skipValue()
+        return null
+    }
+}
@@ -0,0 +1,187 @@
+package com.neo.neopayplus.emv;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.neo.neopayplus.utils.GsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * EMV Config Snapshot
+ *
+ * What was last installed into the kernel: the bundle version, one
+ * fingerprint (SHA-256) per AID and per CAPK, and a content hash over all of
+ * them. Stored as JSON in PreferencesUtil after each provisioning run.
+ *
+ * EmvProvisioner builds the snapshot it wants from the downloaded bundle and
+ * diffs it against the stored one and the AIDs/CAPKs the kernel reports, so
+ * only added, changed or removed entries cost addAid/addCapk/delete IPC.
+ */
+public final class EmvConfigSnapshot {
+
+    private static final Gson GSON = GsonUtil.gson();
+
+    /** Bundle version as sent by the backend (informational) */
+    public final String version;
+    /** SHA-256 over every AID and CAPK fingerprint */
+    public final String hash;
+    /** AID hex -> fingerprint */
+    public final Map<String, String> aids;
+    /** "RID:index" -> fingerprint */
+    public final Map<String, String> capks;
+    /** When this snapshot was installed (ms) */
+    public final long installedAt;
+
+    public EmvConfigSnapshot(String version, Map<String, String> aids, Map<String, String> capks, long installedAt) {
+        this.version = version;
+        this.aids = Collections.unmodifiableMap(new TreeMap<>(aids));
+        this.capks = Collections.unmodifiableMap(new TreeMap<>(capks));
+        this.hash = contentHash(this.aids, this.capks);
+        this.installedAt = installedAt;
+    }
+
+    /**
+     * Key for a CAPK: "A000000004:05"
+     */
+    public static String capkKey(String rid, String index) {
+        return (rid != null ? rid.toUpperCase() : "") + ":" + (index != null ? index.toUpperCase() : "");
+    }
+
+    /**
+     * SHA-256 hex of {@code content}, e.g. an entry's JSON as it will be installed
+     */
+    public static String fingerprint(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The same snapshot with only the entries that actually installed, so a
+     * failed entry is retried next time
+     */
+    public EmvConfigSnapshot retain(Collection<String> installedAids, Collection<String> installedCapks, long now) {
+        Map<String, String> keptAids = new TreeMap<>(aids);
+        keptAids.keySet().retainAll(installedAids);
+        Map<String, String> keptCapks = new TreeMap<>(capks);
+        keptCapks.keySet().retainAll(installedCapks);
+        return new EmvConfigSnapshot(version, keptAids, keptCapks, now);
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    /**
+     * @return Snapshot, or null if {@code json} is empty or unreadable
+     */
+    public static EmvConfigSnapshot fromJson(String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            EmvConfigSnapshot stored = GSON.fromJson(json, EmvConfigSnapshot.class);
+            if (stored == null || stored.aids == null || stored.capks == null) {
+                return null;
+            }
+            // Rebuild so the hash is recomputed rather than trusted
+            return new EmvConfigSnapshot(stored.version, stored.aids, stored.capks, stored.installedAt);
+        } catch (JsonSyntaxException e) {
+            return null;
+        }
+    }
+
+    // ==================== DIFF ====================
+
+    /**
+     * Entries to install, reinstall and delete to get from what the kernel
+     * has to what is wanted
+     */
+    public static final class Diff {
+        /** Wanted, not in the kernel */
+        public final List<String> added = new ArrayList<>();
+        /**
+         * In the kernel, but installed from another config (or unknown):
+         * installed again like {@link #added} (EmvProvisioner deletes each
+         * AID before adding it; CAPKs are added over the existing entry)
+         */
+        public final List<String> changed = new ArrayList<>();
+        /** In the kernel, no longer wanted */
+        public final List<String> removed = new ArrayList<>();
+        /** In the kernel exactly as wanted */
+        public final List<String> unchanged = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+
+        /** added + changed */
+        public List<String> toInstall() {
+            List<String> out = new ArrayList<>(added);
+            out.addAll(changed);
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            return "+" + added.size() + " ~" + changed.size() + " -" + removed.size() + " =" + unchanged.size();
+        }
+    }
+
+    /**
+     * @param wanted    Key -> fingerprint from the new bundle
+     * @param installed Key -> fingerprint from the last snapshot (may be null)
+     * @param inKernel  Keys the kernel reports now
+     */
+    public static Diff diff(Map<String, String> wanted, Map<String, String> installed, Collection<String> inKernel) {
+        Set<String> kernel = new HashSet<>();
+        for (String key : inKernel) {
+            kernel.add(key.toUpperCase());
+        }
+        Diff diff = new Diff();
+        for (Map.Entry<String, String> entry : new TreeMap<>(wanted).entrySet()) {
+            String key = entry.getKey();
+            if (!kernel.contains(key)) {
+                diff.added.add(key);
+            } else if (installed != null && entry.getValue().equals(installed.get(key))) {
+                diff.unchanged.add(key);
+            } else {
+                diff.changed.add(key);
+            }
+        }
+        List<String> extra = new ArrayList<>(kernel);
+        extra.removeAll(wanted.keySet());
+        Collections.sort(extra);
+        diff.removed.addAll(extra);
+        return diff;
+    }
+
+    private static String contentHash(Map<String, String> aids, Map<String, String> capks) {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> e : aids.entrySet()) {
+            content.append("AID ").append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        for (Map.Entry<String, String> e : capks.entrySet()) {
+            content.append("CAPK ").append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        return fingerprint(content.toString());
+    }
+}
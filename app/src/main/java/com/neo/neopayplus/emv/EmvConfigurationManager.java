@@ -10,6 +10,7 @@ import com.neo.neopayplus.MyApplication;
 import com.neo.neopayplus.api.EmvConfigApiService;
 import com.neo.neopayplus.config.PaymentConfig;
 import com.neo.neopayplus.utils.ByteUtil;
+import com.neo.neopayplus.utils.GsonUtil;
 import com.neo.neopayplus.utils.LogUtil;
 import com.neo.neopayplus.utils.PreferencesUtil;
 import com.sunmi.payservice.AidlConstantsV2;
@@ -254,7 +255,7 @@ public class EmvConfigurationManager {
         if (useCache && cachedJson != null && cacheAge < CONFIG_CACHE_VALIDITY_MS) {
             LogUtil.e(TAG, "✓ Loading AIDs from local storage (cache age: " + (cacheAge / 1000) + " seconds)");
             try {
-                Gson gson = new Gson();
+                Gson gson = GsonUtil.gson();
                 EmvConfigApiService.EmvConfigResponse cachedResponse = gson.fromJson(cachedJson,
                         EmvConfigApiService.EmvConfigResponse.class);
                 if (cachedResponse != null && cachedResponse.aids != null && !cachedResponse.aids.isEmpty()) {
@@ -342,7 +343,7 @@ public class EmvConfigurationManager {
                         }
 
                         // Store to local storage
-                        Gson gson = new Gson();
+                        Gson gson = GsonUtil.gson();
                         String json = gson.toJson(response);
                         PreferencesUtil.saveEmvConfigJson(json);
                         LogUtil.e(TAG, "✓ Stored EMV configuration to local storage");
@@ -592,7 +593,7 @@ public class EmvConfigurationManager {
             // Read JSON from assets
             InputStream is = MyApplication.app.getAssets().open("default_aids.json");
             InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-            Gson gson = new Gson();
+            Gson gson = GsonUtil.gson();
             DefaultAidConfig.DefaultAidsRoot root = gson.fromJson(reader, DefaultAidConfig.DefaultAidsRoot.class);
             reader.close();
             is.close();
@@ -784,7 +785,7 @@ public class EmvConfigurationManager {
         // Read JSON from assets
         InputStream is = MyApplication.app.getAssets().open("default_aids.json");
         InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-        Gson gson = new Gson();
+        Gson gson = GsonUtil.gson();
         DefaultAidConfig.DefaultAidsRoot root = gson.fromJson(reader, DefaultAidConfig.DefaultAidsRoot.class);
         reader.close();
         is.close();
@@ -890,7 +891,7 @@ public class EmvConfigurationManager {
         String cachedJson = PreferencesUtil.getEmvConfigJson();
         if (cachedJson != null) {
             try {
-                Gson gson = new Gson();
+                Gson gson = GsonUtil.gson();
                 EmvConfigApiService.EmvConfigResponse cachedResponse = gson.fromJson(cachedJson,
                         EmvConfigApiService.EmvConfigResponse.class);
                 if (cachedResponse != null && cachedResponse.capks != null && !cachedResponse.capks.isEmpty()) {
@@ -1,13 +1,17 @@
 package com.neo.neopayplus.emv
 
 import android.os.Bundle
+import android.os.SystemClock
 import android.util.Base64
 import android.util.Log
 import com.google.gson.Gson
 import com.google.gson.annotations.SerializedName
+import com.google.gson.stream.JsonReader
 import com.neo.neopayplus.BuildConfig
 import com.neo.neopayplus.utils.ByteUtil
 import com.neo.neopayplus.emv.EmvUtil
+import com.neo.neopayplus.emv.utils.CapkVerifier
+import com.neo.neopayplus.utils.PreferencesUtil
 import com.sunmi.pay.hardware.aidlv2.bean.AidV2
 import com.sunmi.pay.hardware.aidlv2.bean.CapkV2
 import com.sunmi.pay.hardware.aidlv2.bean.EmvTermParamV2
@@ -28,6 +32,11 @@ import java.util.concurrent.TimeUnit
  * 
  * CRITICAL: This class MUST receive the singleton EMVOptV2 instance from TransactionManager.
  * All AID installations will use this SAME instance to ensure consistency.
+ *
+ * Installation is incremental: what was installed last time is kept as an
+ * [EmvConfigSnapshot], and only AIDs/CAPKs that are new, changed or gone from
+ * the bundle (or missing from the kernel) are touched. An unchanged bundle
+ * costs two list queries instead of a full reinstall.
  */
 class EmvProvisioner(private val emv: EMVOptV2) {
     init {
@@ -43,6 +52,12 @@ class EmvProvisioner(private val emv: EMVOptV2) {
     companion object {
         private const val TAG = "EMV_PROV"
 
+        /**
+         * Part of every AID fingerprint: bump when installAids() starts building
+         * AidV2 differently, so terminals reinstall instead of trusting the snapshot
+         */
+        private const val AID_INSTALLER_VERSION = 1
+
         @JvmStatic
         fun provisionSync(emv: EMVOptV2, url: String): Boolean {
             return kotlinx.coroutines.runBlocking {
@@ -165,13 +180,16 @@ class EmvProvisioner(private val emv: EMVOptV2) {
                 return@withContext false
             }
 
-            val json = resp.body?.string() ?: run {
+            // Decoded off the body stream, without buffering the bundle as a String
+            val body = resp.body ?: run {
                 Log.e(TAG, "❌ Empty response body")
                 return@withContext false
             }
-            Log.e(TAG, "Bundle JSON received (${json.length} chars)")
+            val bundle = body.use { EmvBundleAdapter.read(JsonReader(it.charStream())) } ?: run {
+                Log.e(TAG, "❌ Bundle is not a JSON object")
+                return@withContext false
+            }
 
-            val bundle = gson.fromJson(json, EmvBundle::class.java)
             if (!bundle.ok) {
                 Log.e(TAG, "❌ Bundle ok=false")
                 return@withContext false
@@ -198,26 +216,64 @@ class EmvProvisioner(private val emv: EMVOptV2) {
             Log.e(TAG, "  CAPKs: ${bundle.capks?.size ?: 0}")
             Log.e(TAG, "  dDOL map: ${ridToDdolMap.size} RIDs with dDOL")
 
+            val startedAt = SystemClock.elapsedRealtime()
+
+            // Terminal params are cheap (two calls) and MyApplication re-applies
+            // setTermParamEx on every start anyway, so they are always set
             bundle.terminal?.let { installTerminalParams(it) }
 
-            bundle.capks?.let { if (it.isNotEmpty()) installCapks(it) }
-
-            aidsToInstall?.let { if (it.isNotEmpty()) {
-                // Enrich aids_flat with dDOL from parent RID map (optional, retains API ddol if present)
-                val enriched = it.map { a ->
-                    if (a.ddol.isNullOrBlank() && !a.aid.isNullOrBlank()) {
-                        val rid = a.aid.take(10).uppercase()
-                        val dd = ridToDdolMap[rid]
-                        if (!dd.isNullOrBlank()) {
-                            Log.d(TAG, "  Enriching AID ${a.aid} with dDOL from RID $rid: $dd")
-                            a.copy(ddol = dd)
-                        } else a
+            val capks = bundle.capks.orEmpty()
+            // Enrich aids_flat with dDOL from parent RID map (optional, retains API ddol if present)
+            val aids = aidsToInstall.orEmpty().map { a ->
+                if (a.ddol.isNullOrBlank() && !a.aid.isNullOrBlank()) {
+                    val rid = a.aid.take(10).uppercase()
+                    val dd = ridToDdolMap[rid]
+                    if (!dd.isNullOrBlank()) {
+                        Log.d(TAG, "  Enriching AID ${a.aid} with dDOL from RID $rid: $dd")
+                        a.copy(ddol = dd)
                     } else a
+                } else a
+            }
+
+            val wanted = buildSnapshot(bundle.version, aids, capks)
+            val stored = EmvConfigSnapshot.fromJson(PreferencesUtil.getEmvConfigSnapshot())
+            val kernelAids = SdkWrapper.getAidList(0).mapNotNull { extractAidFromTlv(it) }
+            val kernelCapks = CapkVerifier(emv).queryInstalledCapks()
+                .map { EmvConfigSnapshot.capkKey(it.rid, it.index) }
+            val aidDiff = EmvConfigSnapshot.diff(wanted.aids, stored?.aids, kernelAids)
+            val capkDiff = EmvConfigSnapshot.diff(wanted.capks, stored?.capks, kernelCapks)
+            Log.e(TAG, "EMV config ${wanted.hash.take(12)} (installed: ${stored?.hash?.take(12) ?: "none"})")
+            Log.e(TAG, "  AIDs $aidDiff, CAPKs $capkDiff")
+
+            // Only delete CAPKs we installed ourselves; others (SDK defaults) were never touched
+            val staleCapks = capkDiff.removed.filter { stored?.capks?.containsKey(it) == true }
+
+            if (stored != null && aidDiff.isEmpty() && capkDiff.toInstall().isEmpty() && staleCapks.isEmpty()) {
+                Log.e(TAG, "✓ EMV config unchanged - AID/CAPK installation skipped")
+            } else {
+                removeCapks(staleCapks)
+                val capkKeys = capkDiff.toInstall().toSet()
+                val installedCapks = installCapks(capks.filter { capkKey(it) in capkKeys })
+
+                val aidKeys = aidDiff.toInstall().toSet()
+                val toInstall = aids.filter { !it.aid.isNullOrBlank() && it.aid.uppercase() in aidKeys }
+                val installedAids = if (stored == null) {
+                    // Nothing to trust yet: start from an empty AID table, as before
+                    installAids(toInstall, clearFirst = true)
+                } else {
+                    removeAids(aidDiff.removed)
+                    installAids(toInstall, clearFirst = false)
                 }
-                installAids(enriched)
-            } }
 
-            Log.e(TAG, "=== EMV Provisioning Completed OK ===")
+                val installed = wanted.retain(
+                    aidDiff.unchanged + installedAids,
+                    capkDiff.unchanged + installedCapks,
+                    System.currentTimeMillis()
+                )
+                PreferencesUtil.saveEmvConfigSnapshot(installed.toJson())
+            }
+
+            Log.e(TAG, "=== EMV Provisioning Completed OK in ${SystemClock.elapsedRealtime() - startedAt} ms ===")
             true
         } catch (t: Throwable) {
             Log.e(TAG, "❌ Provisioning failed: ${t.message}", t)
@@ -231,6 +287,67 @@ class EmvProvisioner(private val emv: EMVOptV2) {
         return provision(url)
     }
 
+    // --- config snapshot ---
+    private fun capkKey(c: CapkJson): String = EmvConfigSnapshot.capkKey(c.rid, c.index)
+
+    /**
+     * What this bundle installs: one fingerprint per AID / CAPK. The AID
+     * fingerprint also covers the PaymentConfig values installAids() copies
+     * into AidV2, so a merchant/terminal or limit change reinstalls the AIDs.
+     */
+    private fun buildSnapshot(version: String?, aids: List<AidJson>, capks: List<CapkJson>): EmvConfigSnapshot {
+        val config = listOf(
+            AID_INSTALLER_VERSION,
+            com.neo.neopayplus.config.PaymentConfig.MERCHANT_NAME,
+            com.neo.neopayplus.config.PaymentConfig.getMerchantId(),
+            com.neo.neopayplus.config.PaymentConfig.getTerminalId(),
+            com.neo.neopayplus.config.PaymentConfig.TTQ_9F66,
+            com.neo.neopayplus.config.PaymentConfig.TACConfig.TAC_DEFAULT_ONLINE_PREFERRED,
+            com.neo.neopayplus.config.PaymentConfig.TACConfig.TAC_DENIAL,
+            com.neo.neopayplus.config.PaymentConfig.TACConfig.TAC_ONLINE_PIN_REQUIRED,
+            com.neo.neopayplus.config.PaymentConfig.PayPassConfig.DF8123,
+            com.neo.neopayplus.config.PaymentConfig.PayPassConfig.DF8124,
+            com.neo.neopayplus.config.PaymentConfig.PayPassConfig.DF8125,
+            com.neo.neopayplus.config.PaymentConfig.PayWaveConfig.DF8123,
+            com.neo.neopayplus.config.PaymentConfig.PayWaveConfig.DF8124,
+            com.neo.neopayplus.config.PaymentConfig.PayWaveConfig.DF8125
+        ).joinToString("|")
+        val aidPrints = sortedMapOf<String, String>()
+        aids.forEach { a ->
+            if (!a.aid.isNullOrBlank()) {
+                val rid = if (!a.rid.isNullOrBlank()) a.rid.uppercase() else a.aid.take(10).uppercase()
+                aidPrints[a.aid.uppercase()] =
+                    EmvConfigSnapshot.fingerprint(gson.toJson(a) + "|" + ridToDdolMap[rid] + "|" + config)
+            }
+        }
+        val capkPrints = sortedMapOf<String, String>()
+        capks.forEach { c -> capkPrints[capkKey(c)] = EmvConfigSnapshot.fingerprint(gson.toJson(c)) }
+        return EmvConfigSnapshot(version, aidPrints, capkPrints, 0L)
+    }
+
+    private fun removeAids(keys: List<String>) {
+        keys.forEach { aidHex ->
+            try {
+                val rc = SdkWrapper.deleteAid(aidHex)
+                Log.e(TAG, "🗑️ deleteAid $aidHex (no longer in bundle) rc=$rc")
+            } catch (e: Exception) {
+                Log.e(TAG, "⚠️ Error deleting AID $aidHex: ${e.message}")
+            }
+        }
+    }
+
+    private fun removeCapks(keys: List<String>) {
+        keys.forEach { key ->
+            val (rid, index) = key.split(":").let { it[0] to it.getOrElse(1) { "" } }
+            try {
+                val rc = emv.deleteCapk(rid, index)
+                Log.e(TAG, "🗑️ deleteCapk RID=$rid, index=$index (no longer in bundle) rc=$rc")
+            } catch (e: Exception) {
+                Log.e(TAG, "⚠️ Error deleting CAPK $key: ${e.message}")
+            }
+        }
+    }
+
     // --- terminal params ---
     // Matching working code pattern: initTerminalConfiguration() with setTerminalParam() + setTermParamEx()
     private fun installTerminalParams(t: TerminalJson) {
@@ -297,7 +414,11 @@ class EmvProvisioner(private val emv: EMVOptV2) {
     }
 
     // --- CAPK installation ---
-    private fun installCapks(list: List<CapkJson>) {
+    /**
+     * @return Keys ("RID:index") of the CAPKs that were added
+     */
+    private fun installCapks(list: List<CapkJson>): Set<String> {
+        val installed = mutableSetOf<String>()
         var success = 0
         var fail = 0
 
@@ -350,6 +471,7 @@ class EmvProvisioner(private val emv: EMVOptV2) {
                 if (rc == 0) {
                     val checksumStatus = if (checksumBytes != null) "✓ SHA1" else "⚠️ NO SHA1"
                     Log.e(TAG, "✓ addCapk RID=${c.rid}, index=${c.index} [$checksumStatus]")
+                    installed.add(capkKey(c))
                     success++
                 } else {
                     Log.e(TAG, "⚠️ addCapk RID=${c.rid}, index=${c.index} rc=$rc")
@@ -362,10 +484,16 @@ class EmvProvisioner(private val emv: EMVOptV2) {
         }
 
         Log.e(TAG, "CAPKs: $success added, $fail failed")
+        return installed
     }
 
     // --- AID installation ---
-    private fun installAids(list: List<AidJson>) {
+    /**
+     * @param clearFirst Delete every AID in the kernel before installing
+     * @return AIDs (upper-case hex) that were added
+     */
+    private fun installAids(list: List<AidJson>, clearFirst: Boolean): Set<String> {
+        val installed = mutableSetOf<String>()
         var success = 0
         var fail = 0
 
@@ -380,7 +508,7 @@ class EmvProvisioner(private val emv: EMVOptV2) {
             Log.e(TAG, "AID ${idx + 1}/${list.size}: ${a.aid} (${a.label ?: "no label"})")
         }
 
-        try {
+        if (clearFirst) try {
             Log.e(TAG, "Deleting ALL existing AIDs...")
             // Use SdkWrapper to delete (will invalidate cache)
             com.neo.neopayplus.emv.SdkWrapper.deleteAid(null)
@@ -768,6 +896,7 @@ class EmvProvisioner(private val emv: EMVOptV2) {
                         }
                     }
                     
+                    installed.add(aidHex)
                     success++
                 } else {
                     Log.e(TAG, "⚠️ addAid ${a.aid} FAILED with rc=$rc")
@@ -790,6 +919,7 @@ class EmvProvisioner(private val emv: EMVOptV2) {
         if (fail > 0) {
             Log.e(TAG, "⚠️ WARNING: Some AIDs failed to install - this may cause -4125 errors!")
         }
+        return installed
     }
 
     /**
@@ -0,0 +1,244 @@
+package com.neo.neopayplus.emv;
+
+import com.neo.neopayplus.utils.ByteUtil;
+
+/**
+ * EMV Transaction Context
+ *
+ * Card and transaction data for one EMV transaction, decoded once from the
+ * kernel TLV read that produced Field 55 (see Emv55Builder.buildContext).
+ * Packers, the authorization request and receipts read the typed fields
+ * here instead of parsing DE55 again.
+ *
+ * Immutable; {@link #de55()} returns a copy of the raw DE55 bytes.
+ */
+public final class EmvTransactionContext {
+
+    /** PAN without 'F' padding (5A, else Track 2 57 / 9F6B), or null */
+    public final String pan;
+    /** Expiry YYMM (59, else 5F24, else Track 2), or null */
+    public final String expiry;
+    /** PAN sequence number (5F34) as a decimal string, or null */
+    public final String panSequenceNumber;
+    /** Amount, authorised (9F02) in minor units, or -1 */
+    public final long amountMinor;
+    /** Transaction currency (5F2A) as 3 digits, e.g. "818", or null */
+    public final String currencyCode;
+    /** Application identifier (84, else 4F / 9F06), or null */
+    public final String aid;
+    /** "VISA", "MASTERCARD", "MEEZA" or another brand profile name, or null */
+    public final String brand;
+    /** TVR (95) at the time DE55 was built, or null */
+    public final String tvr;
+    /** TSI (9B) at the time DE55 was built, or null */
+    public final String tsi;
+
+    private final byte[] de55;
+    private final TlvBuffer tlvs;
+    private volatile String de55Hex;
+
+    private EmvTransactionContext(byte[] de55, TlvBuffer tlvs, String brand) {
+        this.de55 = de55;
+        this.tlvs = tlvs;
+
+        this.pan = pan(tlvs);
+        this.expiry = expiry(tlvs);
+        this.panSequenceNumber = bcdDigits(tlvs.valueHex(0x5F34));
+        this.amountMinor = amount(tlvs.valueHex(0x9F02));
+        this.currencyCode = currency(tlvs.valueHex(0x5F2A));
+        this.aid = firstOf(tlvs, 0x84, 0x4F, 0x9F06);
+        this.brand = brand != null && !brand.isEmpty() ? brand : brandFor(aid, pan);
+        this.tvr = tlvs.valueHex(0x95);
+        this.tsi = tlvs.valueHex(0x9B);
+    }
+
+    /**
+     * Context over a finished DE55
+     *
+     * @param de55  Field 55 TLV bytes; the context keeps its own copy
+     * @param brand Brand profile name, or null to derive it from the AID/PAN
+     */
+    public static EmvTransactionContext fromDe55(byte[] de55, String brand) {
+        byte[] copy = de55 != null ? de55.clone() : new byte[0];
+        return new EmvTransactionContext(copy, TlvBuffer.parse(copy), brand);
+    }
+
+    /**
+     * Context over a DE55 hex string (callers that only have the hex form)
+     *
+     * @return Context, or null if the hex is empty or malformed
+     */
+    public static EmvTransactionContext fromDe55Hex(String de55Hex) {
+        byte[] bytes = TLVUtil.hexToBytes(de55Hex);
+        return bytes != null ? new EmvTransactionContext(bytes, TlvBuffer.parse(bytes), null) : null;
+    }
+
+    /**
+     * Context built from the kernel read itself: {@code tlvs} is the parsed
+     * kernel output (may hold extra tags such as 5F34/4F that are not sent
+     * in DE55), {@code de55} the assembled Field 55, owned by the context
+     */
+    static EmvTransactionContext fromKernelRead(TlvBuffer tlvs, byte[] de55, String brand) {
+        return new EmvTransactionContext(de55, tlvs, brand);
+    }
+
+    /**
+     * Raw DE55 bytes (copy)
+     */
+    public byte[] de55() {
+        return de55.clone();
+    }
+
+    public int de55Length() {
+        return de55.length;
+    }
+
+    public boolean hasDe55() {
+        return de55.length > 0;
+    }
+
+    /**
+     * DE55 as upper-case hex, encoded on first use
+     */
+    public String de55Hex() {
+        String hex = de55Hex;
+        if (hex == null) {
+            hex = ByteUtil.bytes2HexStr(de55);
+            de55Hex = hex;
+        }
+        return hex;
+    }
+
+    /**
+     * Any other tag read with DE55, as upper-case hex, or null
+     */
+    public String tag(String tag) {
+        return tlvs.valueHex(tag);
+    }
+
+    /**
+     * Same, by int tag (e.g. 0x9F26)
+     */
+    public String tag(int tag) {
+        return tlvs.valueHex(tag);
+    }
+
+    // ==================== DECODING ====================
+
+    private static String pan(TlvBuffer tlvs) {
+        String pan5A = tlvs.valueHex(0x5A);
+        if (pan5A != null && !pan5A.isEmpty()) {
+            return stripPadding(pan5A);
+        }
+        for (int tag : new int[]{0x57, 0x9F6B}) {
+            String track2 = tlvs.valueHex(tag);
+            int separator = track2 != null ? track2.indexOf('D') : -1;
+            if (separator > 0) {
+                return stripPadding(track2.substring(0, separator));
+            }
+        }
+        return null;
+    }
+
+    private static String expiry(TlvBuffer tlvs) {
+        for (int tag : new int[]{0x59, 0x5F24}) {
+            String value = tlvs.valueHex(tag);
+            if (value != null) {
+                String digits = stripPadding(value);
+                if (digits.length() >= 4) {
+                    return digits.substring(0, 4);
+                }
+            }
+        }
+        for (int tag : new int[]{0x57, 0x9F6B}) {
+            String track2 = tlvs.valueHex(tag);
+            int separator = track2 != null ? track2.indexOf('D') : -1;
+            if (separator > 0 && track2.length() > separator + 4) {
+                String digits = stripPadding(track2.substring(separator + 1, separator + 5));
+                if (digits.length() == 4) {
+                    return digits;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** BCD n12 amount, -1 if absent or not decimal */
+    private static long amount(String hex) {
+        String digits = bcdDigits(hex);
+        return digits != null ? Long.parseLong(digits) : -1;
+    }
+
+    /** 5F2A "0818" -> "818" */
+    private static String currency(String hex) {
+        if (hex == null || hex.length() < 3 || !isDecimal(hex)) {
+            return null;
+        }
+        return hex.substring(hex.length() - 3);
+    }
+
+    /** BCD value as a decimal string without leading zeros ("01" -> "1") */
+    private static String bcdDigits(String hex) {
+        if (hex == null || hex.isEmpty() || !isDecimal(hex)) {
+            return null;
+        }
+        int start = 0;
+        while (start < hex.length() - 1 && hex.charAt(start) == '0') {
+            start++;
+        }
+        return hex.substring(start);
+    }
+
+    private static String firstOf(TlvBuffer tlvs, int... tags) {
+        for (int tag : tags) {
+            String value = tlvs.valueHex(tag);
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Brand from the AID (A000000003 Visa, A000000004/5 Mastercard,
+     * A000000732 Meeza), else from the PAN's first digit
+     */
+    public static String brandFor(String aid, String pan) {
+        if (aid != null) {
+            if (aid.startsWith("A000000003")) {
+                return "VISA";
+            } else if (aid.startsWith("A000000004") || aid.startsWith("A000000005")) {
+                return "MASTERCARD";
+            } else if (aid.startsWith("A000000732")) {
+                return "MEEZA";
+            }
+        }
+        if (pan != null && pan.length() >= 6) {
+            char first = pan.charAt(0);
+            if (first == '4') {
+                return "VISA";
+            } else if (first == '5' || first == '2') {
+                return "MASTERCARD";
+            }
+        }
+        return null;
+    }
+
+    private static String stripPadding(String hex) {
+        int end = hex.length();
+        while (end > 0 && hex.charAt(end - 1) == 'F') {
+            end--;
+        }
+        return hex.substring(0, end);
+    }
+
+    private static boolean isDecimal(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
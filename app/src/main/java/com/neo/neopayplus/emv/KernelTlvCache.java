@@ -0,0 +1,285 @@
+package com.neo.neopayplus.emv;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Kernel TLV Cache
+ *
+ * Per-transaction read-ahead of kernel TLVs. Readers register the tags they
+ * need per TLV opCode once; at each kernel milestone (card data exchange
+ * complete, online processing, transaction result) {@link #prefetch} reads
+ * the union of those tags with one getTlvList() per opCode. Reads that
+ * follow are answered from that snapshot; tags nobody registered are read
+ * once on first use and kept with the snapshot.
+ *
+ * Snapshots only live between a milestone and the next call that lets the
+ * kernel move on (any import*() / initEmvProcess()), which must call
+ * {@link #invalidate()}. Without a live snapshot reads go straight to the
+ * kernel, as before.
+ *
+ * Thread-safe: kernel callbacks and UI reads may come from different threads.
+ */
+public final class KernelTlvCache {
+
+    private static final String TAG = Constant.TAG;
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * The kernel read, i.e. EMVOptV2.getTlvList()
+     */
+    public interface Reader {
+        int getTlvList(int opCode, String[] tags, byte[] out) throws Exception;
+    }
+
+    /**
+     * IPC counts for the current transaction
+     */
+    public static final class Stats {
+        /** getTlvList()/getTlv() calls made by callers (one IPC each without the cache) */
+        public final int reads;
+        /** getTlvList() calls that reached the kernel */
+        public final int ipcCalls;
+        /** ... of which milestone prefetches */
+        public final int prefetches;
+        /** Reads answered entirely from a snapshot */
+        public final int hits;
+
+        Stats(int reads, int ipcCalls, int prefetches, int hits) {
+            this.reads = reads;
+            this.ipcCalls = ipcCalls;
+            this.prefetches = prefetches;
+            this.hits = hits;
+        }
+
+        @Override
+        public String toString() {
+            return reads + " reads -> " + ipcCalls + " IPC (" + prefetches + " prefetch, " + hits + " from cache)";
+        }
+    }
+
+    /** Entries per tag for one opCode; a tag mapped to null was read and is absent */
+    private static final class Snapshot {
+        final Map<Integer, byte[]> entries = new HashMap<>();
+    }
+
+    private final Reader reader;
+    private final Map<Integer, Set<String>> registered = new LinkedHashMap<>();
+    private final Map<Integer, Snapshot> snapshots = new HashMap<>();
+    private final byte[] scratch = new byte[BUFFER_SIZE];
+
+    private int reads;
+    private int ipcCalls;
+    private int prefetches;
+    private int hits;
+
+    public KernelTlvCache(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Add tags to the read-ahead set of {@code opCode} (kept across transactions)
+     */
+    public synchronized void register(int opCode, String... tags) {
+        Set<String> set = registered.get(opCode);
+        if (set == null) {
+            set = new LinkedHashSet<>();
+            registered.put(opCode, set);
+        }
+        for (String tag : tags) {
+            if (TlvBuffer.tag(tag) >= 0) {
+                set.add(tag.toUpperCase());
+            }
+        }
+    }
+
+    /**
+     * New transaction: logs and resets the previous one's counts, drops snapshots
+     */
+    public synchronized void beginTransaction() {
+        if (reads > 0) {
+            LogUtil.e(TAG, "Kernel TLV reads (previous transaction): " + stats());
+        }
+        snapshots.clear();
+        reads = 0;
+        ipcCalls = 0;
+        prefetches = 0;
+        hits = 0;
+    }
+
+    /**
+     * Read all registered tags of each opCode (one IPC per opCode) and serve
+     * later reads from the result until {@link #invalidate()}
+     *
+     * @param milestone Kernel callback name, for the log
+     */
+    public synchronized void prefetch(String milestone, int... opCodes) {
+        for (int opCode : opCodes) {
+            snapshots.remove(opCode);
+            Set<String> tags = registered.get(opCode);
+            if (tags == null || tags.isEmpty()) {
+                continue;
+            }
+            String[] tagArray = tags.toArray(new String[0]);
+            Snapshot snapshot = new Snapshot();
+            prefetches++;
+            if (fetch(opCode, tagArray, snapshot)) {
+                snapshots.put(opCode, snapshot);
+            }
+        }
+        LogUtil.d(TAG, "Kernel TLV prefetch at " + milestone + ": " + snapshots.size() + " opCode(s), " + stats());
+    }
+
+    /**
+     * Drop snapshots; the kernel is about to change its data
+     */
+    public synchronized void invalidate() {
+        snapshots.clear();
+    }
+
+    /**
+     * Same contract as EMVOptV2.getTlvList(): requested tags that are present
+     * are written to {@code out} as TLV entries, in request order
+     *
+     * @return Bytes written, or the kernel's result when there is no snapshot
+     */
+    public synchronized int getTlvList(int opCode, String[] tags, byte[] out) throws Exception {
+        reads++;
+        Snapshot snapshot = snapshots.get(opCode);
+        if (snapshot == null) {
+            ipcCalls++;
+            return reader.getTlvList(opCode, tags, out);
+        }
+        load(opCode, tags, snapshot);
+
+        int length = 0;
+        for (String tag : tags) {
+            byte[] entry = snapshot.entries.get(TlvBuffer.tag(tag));
+            if (entry != null && length + entry.length <= out.length) {
+                System.arraycopy(entry, 0, out, length, entry.length);
+                length += entry.length;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * One tag's value as upper-case hex, or null if absent
+     */
+    public synchronized String getTlv(int opCode, String tag) throws Exception {
+        reads++;
+        Snapshot snapshot = snapshots.get(opCode);
+        if (snapshot == null) {
+            ipcCalls++;
+            int len = reader.getTlvList(opCode, new String[]{tag}, scratch);
+            return len > 0 ? TlvBuffer.parse(scratch, 0, len).valueHex(tag) : null;
+        }
+        load(opCode, new String[]{tag}, snapshot);
+        byte[] entry = snapshot.entries.get(TlvBuffer.tag(tag));
+        return entry != null ? TlvBuffer.parse(entry).valueHex(tag) : null;
+    }
+
+    /**
+     * Record a value the terminal wrote with setTlvList(), so a live snapshot
+     * does not serve the old one
+     */
+    public synchronized void put(int opCode, String tag, String valueHex) {
+        Snapshot snapshot = snapshots.get(opCode);
+        int tagValue = TlvBuffer.tag(tag);
+        byte[] value = TLVUtil.hexToBytes(valueHex);
+        if (snapshot == null || tagValue < 0) {
+            return;
+        }
+        if (value == null) {
+            snapshot.entries.remove(tagValue); // Unknown encoding: read it again when asked
+        } else {
+            snapshot.entries.put(tagValue, encode(tagValue, value));
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(reads, ipcCalls, prefetches, hits);
+    }
+
+    /**
+     * Make sure every tag is in the snapshot, reading the ones that are not
+     * with one IPC
+     */
+    private void load(int opCode, String[] tags, Snapshot snapshot) {
+        int missing = 0;
+        for (String tag : tags) {
+            if (!snapshot.entries.containsKey(TlvBuffer.tag(tag))) {
+                missing++;
+            }
+        }
+        if (missing == 0) {
+            hits++;
+            return;
+        }
+        String[] toRead = new String[missing];
+        int i = 0;
+        for (String tag : tags) {
+            if (!snapshot.entries.containsKey(TlvBuffer.tag(tag))) {
+                toRead[i++] = tag;
+            }
+        }
+        fetch(opCode, toRead, snapshot);
+    }
+
+    /**
+     * Read {@code tags} from the kernel into {@code snapshot}; tags the kernel
+     * did not return are recorded as absent
+     *
+     * @return false if the read failed
+     */
+    private boolean fetch(int opCode, String[] tags, Snapshot snapshot) {
+        ipcCalls++;
+        int len;
+        try {
+            len = reader.getTlvList(opCode, tags, scratch);
+        } catch (Exception e) {
+            LogUtil.e(TAG, "⚠️ Kernel TLV read failed (opCode=" + opCode + "): " + e.getMessage());
+            return false;
+        }
+        TlvBuffer tlvs = TlvBuffer.parse(scratch, 0, Math.max(0, len));
+        for (int i = 0; i < tlvs.entryCount(); i++) {
+            int end = tlvs.valueOffsetAt(i) + tlvs.valueLengthAt(i);
+            snapshot.entries.put(tlvs.tagAt(i), Arrays.copyOfRange(scratch, tlvs.entryOffsetAt(i), end));
+        }
+        for (String tag : tags) {
+            int tagValue = TlvBuffer.tag(tag);
+            if (!snapshot.entries.containsKey(tagValue)) {
+                snapshot.entries.put(tagValue, null);
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encode(int tag, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 6);
+        if (tag > 0xFFFF) {
+            out.write(tag >>> 16);
+        }
+        if (tag > 0xFF) {
+            out.write(tag >>> 8);
+        }
+        out.write(tag);
+        if (value.length > 0xFF) {
+            out.write(0x82);
+            out.write(value.length >>> 8);
+        } else if (value.length > 0x7F) {
+            out.write(0x81);
+        }
+        out.write(value.length);
+        out.write(value, 0, value.length);
+        return out.toByteArray();
+    }
+}
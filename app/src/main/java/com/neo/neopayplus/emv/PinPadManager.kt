@@ -2,6 +2,7 @@ package com.neo.neopayplus.emv
 
 import com.neo.neopayplus.Constant
 import com.neo.neopayplus.utils.ByteUtil
+import com.neo.neopayplus.utils.LogSanitizer
 import com.neo.neopayplus.utils.LogUtil
 import com.neo.neopayplus.wrapper.PinPadListenerV2Wrapper
 import com.sunmi.pay.hardware.aidlv2.bean.PinPadConfigV2
@@ -142,8 +143,7 @@ class PinPadManager(
                     // pinBlock: For online PIN, this is the encrypted PIN block
                     //           For offline PIN, this may be null (ICC verified internally)
                     val typeName = if (type == 1) "OFFLINE" else "ONLINE"
-                    val blockHex = pinBlock?.let { ByteUtil.bytes2HexStr(it, 0, it.size) } ?: "null"
-                    LogUtil.e(Constant.TAG, "PinPadManager: onConfirm type=$type ($typeName), pinBlock=$blockHex")
+                    LogUtil.e(Constant.TAG, "PinPadManager: onConfirm type=$type ($typeName), pinBlock=${LogSanitizer.maskPinBlock(pinBlock)}")
                     
                     if (pinBlock == null && pinType == 0) {
                         // User pressed confirm without entering PIN (bypass)
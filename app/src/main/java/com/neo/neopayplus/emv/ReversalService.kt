@@ -9,7 +9,7 @@ import com.neo.neopayplus.processing.repository.TransactionRepository
 import com.neo.neopayplus.data.TransactionJournal
 import com.neo.neopayplus.config.PaymentConfig
 import com.neo.neopayplus.api.PaymentApiService
-import com.neo.neopayplus.db.TxnDb
+import com.neo.neopayplus.payment.ReversalQueueStore
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
@@ -142,17 +142,18 @@ class ReversalService {
      */
     private fun queueReversalOffline(request: PaymentApiService.ReversalRequest) {
         try {
-            val db = TxnDb(com.neo.neopayplus.MyApplication.app)
-            val reversalRecord = mutableMapOf<String, Any>().apply {
-                put("rrn", request.rrn)
-                put("amount_minor", request.amount.toLongOrNull() ?: 0L)
-                put("currency", request.currencyCode)
+            val reversalRecord = org.json.JSONObject().apply {
+                put("rrn", request.rrn ?: "")
+                request.transactionId?.let { put("transaction_id", it) }
+                put("amount", request.amount ?: "")
+                put("currency", request.currencyCode ?: "")
                 put("reason", request.reversalReason ?: "HOST_UNAVAILABLE")
                 put("created_at", com.neo.neopayplus.utils.TimeSync.nowIso())
             }
             
-            db.enqueueReversal(reversalRecord)
-            LogUtil.e(Constant.TAG, "✓ Reversal queued offline ⏳")
+            if (ReversalQueueStore.add(com.neo.neopayplus.MyApplication.app, reversalRecord)) {
+                LogUtil.e(Constant.TAG, "✓ Reversal queued offline ⏳")
+            }
             
         } catch (e: Exception) {
             ErrorHandler.logError(Constant.TAG, "queueReversalOffline", e)
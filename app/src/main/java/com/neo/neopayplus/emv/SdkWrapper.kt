@@ -18,7 +18,8 @@ import java.util.concurrent.atomic.AtomicBoolean
  * CRITICAL: Each SDK call (addAid, queryAidCapkList, setTlvList, etc.) triggers
  * the SDK service to create a new internal EmvManager instance. This wrapper:
  * 
- * 1. Caches all query results (AIDs, CAPKs, TLVs)
+ * 1. Caches all query results (AIDs, CAPKs); kernel TLV reads go through a
+ *    per-transaction read-ahead snapshot (KernelTlvCache)
  * 2. Batches TLV writes where possible
  * 3. Only calls SDK when cache is invalid or operation is required
  * 4. Uses the singleton EMVOptV2 instance from TransactionManager
@@ -35,8 +36,11 @@ object SdkWrapper {
     private val aidCache = ConcurrentHashMap<Int, List<String>>()
     private val aidCacheValid = AtomicBoolean(false)
     
-    // Cache for TLV reads (opCode -> tag -> value)
-    private val tlvCache = ConcurrentHashMap<Int, ConcurrentHashMap<String, String>>()
+    // Kernel TLV read-ahead (snapshot per transaction milestone)
+    private val tlvCache = KernelTlvCache { opCode, tags, out ->
+        val emvInstance = emv ?: throw IllegalStateException("EMV not initialized")
+        emvInstance.getTlvList(opCode, tags, out)
+    }
     
     // Pending TLV writes (batched)
     private val pendingTlvWrites = ConcurrentHashMap<Int, MutableMap<String, String>>()
@@ -156,46 +160,63 @@ object SdkWrapper {
     }
     
     /**
-     * Get TLV value (cached)
+     * Get TLV value (from the current read-ahead snapshot when there is one)
      */
     @JvmStatic
     fun getTlv(opCode: Int, tag: String): String? {
-        val emvInstance = emv ?: run {
+        if (emv == null) {
             LogUtil.e(Constant.TAG, "⚠️ SdkWrapper.getTlv() called but EMV not initialized")
             return null
         }
-        
-        // Check cache first
-        val cacheKey = opCode
-        val tagCache = tlvCache[cacheKey]
-        if (tagCache != null && tagCache.containsKey(tag)) {
-            LogUtil.d(Constant.TAG, "SdkWrapper.getTlv(opCode=$opCode, tag=$tag): Using cache")
-            return tagCache[tag]
-        }
-        
-        // Query SDK (this will trigger SDK to create internal EmvManager)
-        LogUtil.d(Constant.TAG, "SdkWrapper.getTlv(opCode=$opCode, tag=$tag): Cache miss - querying SDK")
-        try {
-            val out = ByteArray(1024)
-            val len = emvInstance.getTlvList(opCode, arrayOf(tag), out)
-            if (len > 0) {
-                val map = com.neo.neopayplus.emv.TLVUtil.buildTLVMap(out.copyOf(len))
-                val value = map[tag]?.value
-                
-                // Cache result
-                val cache = tlvCache.getOrPut(cacheKey) { ConcurrentHashMap() }
-                if (value != null) {
-                    cache[tag] = value
-                }
-                
-                return value
-            }
+        return try {
+            tlvCache.getTlv(opCode, tag)
         } catch (e: Exception) {
             LogUtil.e(Constant.TAG, "SdkWrapper.getTlv() failed: ${e.message}")
+            null
         }
-        
-        return null
     }
+
+    /**
+     * Drop-in for EMVOptV2.getTlvList(); served from the read-ahead snapshot
+     * when one is live, otherwise one IPC as before
+     */
+    @JvmStatic
+    @Throws(Exception::class)
+    fun getTlvList(opCode: Int, tags: Array<String>, out: ByteArray): Int {
+        return tlvCache.getTlvList(opCode, tags, out)
+    }
+
+    /**
+     * Add tags to the read-ahead set for [opCode]; fetched together at each
+     * [prefetchTlvs] milestone
+     */
+    @JvmStatic
+    fun registerReadAhead(opCode: Int, vararg tags: String) {
+        tlvCache.register(opCode, *tags)
+    }
+
+    /**
+     * Start of a transaction: drop snapshots and reset the IPC counts
+     */
+    @JvmStatic
+    fun beginTlvTransaction() {
+        tlvCache.beginTransaction()
+    }
+
+    /**
+     * Kernel milestone: read the registered tags of each opCode in one call
+     */
+    @JvmStatic
+    fun prefetchTlvs(milestone: String, vararg opCodes: Int) {
+        if (emv == null) return
+        tlvCache.prefetch(milestone, *opCodes)
+    }
+
+    /**
+     * TLV read counts for the current transaction (reads vs. actual IPC calls)
+     */
+    @JvmStatic
+    fun tlvReadStats(): KernelTlvCache.Stats = tlvCache.stats()
     
     /**
      * Batch TLV write (adds to pending writes, doesn't call SDK immediately)
@@ -207,8 +228,7 @@ object SdkWrapper {
             pending[tag] = value
             
             // Update cache immediately (optimistic)
-            val cache = tlvCache.getOrPut(opCode) { ConcurrentHashMap() }
-            cache[tag] = value
+            tlvCache.put(opCode, tag, value)
         }
         LogUtil.d(Constant.TAG, "SdkWrapper.batchSetTlv(opCode=$opCode, tag=$tag): Added to batch")
     }
@@ -270,19 +290,19 @@ object SdkWrapper {
             emvInstance.setTlvList(opCode, arrayOf(tag), arrayOf(value))
             
             // Update cache
-            val cache = tlvCache.getOrPut(opCode) { ConcurrentHashMap() }
-            cache[tag] = value
+            tlvCache.put(opCode, tag, value)
         } catch (e: Exception) {
             LogUtil.e(Constant.TAG, "SdkWrapper.setTlvImmediate() failed: ${e.message}")
         }
     }
     
     /**
-     * Invalidate TLV cache (call when TLVs may have changed externally)
+     * Invalidate TLV cache (call before anything that lets the kernel change
+     * its TLVs: initEmvProcess(), import*())
      */
     @JvmStatic
     fun invalidateTlvCache() {
-        tlvCache.clear()
+        tlvCache.invalidate()
         LogUtil.d(Constant.TAG, "SdkWrapper: TLV cache invalidated")
     }
     
@@ -3,8 +3,6 @@ package com.neo.neopayplus.emv;
 import android.text.TextUtils;
 
 import com.neo.neopayplus.Constant;
-import com.neo.neopayplus.tuple.Tuple;
-import com.neo.neopayplus.tuple.TupleUtil;
 import com.neo.neopayplus.utils.ByteUtil;
 import com.neo.neopayplus.utils.LogUtil;
 
@@ -32,21 +30,8 @@ public final class TLVUtil {
      * @return TLV数据List
      */
     public static List<TLV> buildTLVList(String hexStr) {
-        List<TLV> list = new ArrayList<>();
-        int position = 0;
-
-        while (position != hexStr.length()) {
-            Tuple<String, Integer> tupleTag = getTag(hexStr, position);
-            if (TextUtils.isEmpty(tupleTag.a) || "00".equals(tupleTag.a)) {
-                break;
-            }
-            Tuple<Integer, Integer> tupleLen = getLength(hexStr, tupleTag.b);
-            Tuple<String, Integer> tupleValue = getValue(hexStr, tupleLen.b, tupleLen.a);
-//            Log.e("TLV-buildTLVList", tupleTag.a + ":" + tupleValue.a);
-            list.add(new TLV(tupleTag.a, tupleLen.a, tupleValue.a));
-            position = tupleValue.b;
-        }
-        return list;
+        byte[] bytes = hexToBytes(hexStr);
+        return bytes == null ? new ArrayList<>() : TlvBuffer.parse(bytes).toList();
     }
 
     /**
@@ -57,21 +42,8 @@ public final class TLVUtil {
      * @return TLV数据Map
      */
     public static Map<String, TLV> buildTLVMap(String hexStr) {
-        Map<String, TLV> map = new LinkedHashMap<>();
-        if (TextUtils.isEmpty(hexStr) || hexStr.length() % 2 != 0) return map;
-        int position = 0;
-        while (position < hexStr.length()) {
-            Tuple<String, Integer> tupleTag = getTag(hexStr, position);
-            if (TextUtils.isEmpty(tupleTag.a) || "00".equals(tupleTag.a)) {
-                break;
-            }
-            Tuple<Integer, Integer> tupleLen = getLength(hexStr, tupleTag.b);
-            Tuple<String, Integer> tupleValue = getValue(hexStr, tupleLen.b, tupleLen.a);
-//            Log.e("TLV-buildTLVMap", tupleTag.a + ":" + tupleValue.a);
-            map.put(tupleTag.a, new TLV(tupleTag.a, tupleLen.a, tupleValue.a));
-            position = tupleValue.b;
-        }
-        return map;
+        byte[] bytes = hexToBytes(hexStr);
+        return bytes == null ? new LinkedHashMap<>() : TlvBuffer.parse(bytes).toMap();
     }
 
     /**
@@ -81,78 +53,39 @@ public final class TLVUtil {
      * @return TLV数据List
      */
     public static List<TLV> buildTLVList(byte[] hexByte) {
-        String hexString = ByteUtil.bytes2HexStr(hexByte);
-        return buildTLVList(hexString);
+        return TlvBuffer.parse(hexByte).toList();
     }
 
     /**
      * 将字节数组转换为TLV对象MAP
+     * <p>
+     * Compatibility adapter; new code should use {@link TlvBuffer} directly
+     * and avoid building a TLV object per tag.
      *
      * @param hexByte byte数据格式的TLV数据
      * @return TLV数据Map
      */
     public static Map<String, TLV> buildTLVMap(byte[] hexByte) {
-        String hexString = ByteUtil.bytes2HexStr(hexByte);
-        return buildTLVMap(hexString);
-    }
-
-    /**
-     * 获取Tag及更新后的游标位置
-     */
-    private static Tuple<String, Integer> getTag(String hexString, int position) {
-        String tag = "";
-        try {
-            String byte1 = hexString.substring(position, position + 2);
-            String byte2 = hexString.substring(position + 2, position + 4);
-            int b1 = Integer.parseInt(byte1, 16);
-            int b2 = Integer.parseInt(byte2, 16);
-            // b5~b1如果全为1，则说明这个tag下面还有一个子字节，PBOC/EMV里的tag最多占两个字节
-            if ((b1 & 0x1F) == 0x1F) {
-                // 除tag标签首字节外，tag中其他字节最高位为：1-表示后续还有字节；0-表示为最后一个字节。
-                if ((b2 & 0x80) == 0x80) {
-                    tag = hexString.substring(position, position + 6);// 3Bytes的tag
-                } else {
-                    tag = hexString.substring(position, position + 4);// 2Bytes的tag
-                }
-            } else {
-                tag = hexString.substring(position, position + 2);// 1Bytes的tag
-            }
-        } catch (Exception e) {
-            com.neo.neopayplus.utils.ErrorHandler.logError(Constant.TAG, "TLVUtil", e);
-        }
-        return TupleUtil.tuple(tag.toUpperCase(), position + tag.length());
+        return TlvBuffer.parse(hexByte).toMap();
     }
 
     /**
-     * 获取Length及游标更新后的游标位置
+     * Hex to bytes, or null for empty, odd-length or non-hex input
      */
-    private static Tuple<Integer, Integer> getLength(final String hexStr, final int position) {
-        int index = position;
-        String hexLen = hexStr.substring(index, index + 2);
-        index += 2;
-        int byte1 = Integer.parseInt(hexLen, 16);
-        // Length域的编码比较简单,最多有四个字节, 
-        // 如果第一个字节的最高位b8为0, b7~b1的值就是value域的长度. 
-        // 如果b8为1, b7~b1的值指示了下面有几个子字节. 下面子字节的值就是value域的长度.
-        if ((byte1 & 0x80) != 0) {// 最左侧的bit位为1
-            int subLen = byte1 & 0x7F;
-            hexLen = hexStr.substring(index, index + subLen * 2);
-            index += subLen * 2;
+    static byte[] hexToBytes(String hexStr) {
+        if (TextUtils.isEmpty(hexStr) || hexStr.length() % 2 != 0) {
+            return null;
         }
-        return TupleUtil.tuple(Integer.parseInt(hexLen, 16), index);
-    }
-
-    /**
-     * 获取Value及游标更新后的游标位置
-     */
-    private static Tuple<String, Integer> getValue(final String hexStr, final int position, final int len) {
-        String value = "";
-        try {
-            value = hexStr.substring(position, position + len * 2);
-        } catch (Exception e) {
-            com.neo.neopayplus.utils.ErrorHandler.logError(Constant.TAG, "TLVUtil", e);
+        byte[] bytes = new byte[hexStr.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hexStr.charAt(i * 2), 16);
+            int low = Character.digit(hexStr.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
         }
-        return TupleUtil.tuple(value.toUpperCase(), position + len * 2);
+        return bytes;
     }
 
     /***
@@ -0,0 +1,382 @@
+package com.neo.neopayplus.emv;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TLV Buffer
+ *
+ * Byte-level EMV TLV parser. One pass over the kernel output records, per
+ * entry, the tag (as an int, e.g. 0x9F02) and the value's offset/length in
+ * the caller's array; nothing is copied or hex-encoded until a value is
+ * asked for. Lookups go through a primitive open-addressing index
+ * (tag -> entry), so there is no boxing and no String hashing.
+ *
+ * Same rules as the old String parser: tags of 1-3 bytes, lengths in short
+ * or 0x81/0x82/0x83 form, parsing stops at a 00 tag or at an entry that
+ * runs past the end of the data. When a tag repeats, the last one wins.
+ *
+ * The data array is referenced, not copied: it must not be modified while
+ * this buffer is in use.
+ */
+public final class TlvBuffer {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final TlvBuffer EMPTY = new TlvBuffer(new byte[0], 0, 0);
+
+    private final byte[] data;
+    private final int start;
+
+    private int count;
+    private int[] tags;
+    private int[] offsets;
+    private int[] lengths;
+
+    private int distinct;
+    private int[] index; // entry + 1, 0 = empty slot
+    private int mask;
+
+    private TlvBuffer(byte[] data, int offset, int length) {
+        this.data = data;
+        this.start = offset;
+        int capacity = Math.max(4, Math.min(64, length / 4));
+        this.tags = new int[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        parse(offset, offset + length);
+        buildIndex();
+    }
+
+    /**
+     * Parse the whole array
+     */
+    public static TlvBuffer parse(byte[] data) {
+        return data == null ? EMPTY : parse(data, 0, data.length);
+    }
+
+    /**
+     * Parse {@code length} bytes from {@code offset}, e.g. the kernel's
+     * output buffer and the length getTlvList() returned
+     */
+    public static TlvBuffer parse(byte[] data, int offset, int length) {
+        if (data == null || length <= 0) {
+            return EMPTY;
+        }
+        if (offset < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " length=" + length + " size=" + data.length);
+        }
+        return new TlvBuffer(data, offset, length);
+    }
+
+    /**
+     * Parse the remaining bytes; the buffer's position is not changed.
+     * Heap buffers are read in place, direct buffers are copied once.
+     */
+    public static TlvBuffer parse(ByteBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return EMPTY;
+        }
+        if (buffer.hasArray()) {
+            return new TlvBuffer(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return new TlvBuffer(copy, 0, copy.length);
+    }
+
+    // ==================== TAGS ====================
+
+    /**
+     * Tag hex ("9F02") to its int form (0x9F02); -1 if not a valid tag
+     */
+    public static int tag(String hex) {
+        if (hex == null || hex.isEmpty() || hex.length() > 6 || hex.length() % 2 != 0) {
+            return -1;
+        }
+        int tag = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            tag = (tag << 4) | digit;
+        }
+        return tag;
+    }
+
+    /**
+     * Int tag to upper-case hex, 2/4/6 digits
+     */
+    public static String tagHex(int tag) {
+        int bytes = tag > 0xFFFF ? 3 : tag > 0xFF ? 2 : 1;
+        char[] out = new char[bytes * 2];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = HEX[tag & 0x0F];
+            tag >>>= 4;
+        }
+        return new String(out);
+    }
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * Number of distinct tags (what the old Map's size() reported)
+     */
+    public int size() {
+        return distinct;
+    }
+
+    /**
+     * Number of parsed entries, including repeated tags
+     */
+    public int entryCount() {
+        return count;
+    }
+
+    public boolean has(int tag) {
+        return find(tag) >= 0;
+    }
+
+    public boolean has(String tag) {
+        return find(tag(tag)) >= 0;
+    }
+
+    /**
+     * Entry index of {@code tag}, or -1
+     */
+    public int find(int tag) {
+        if (distinct == 0 || tag < 0) {
+            return -1;
+        }
+        for (int slot = hash(tag) & mask; ; slot = (slot + 1) & mask) {
+            int entry = index[slot] - 1;
+            if (entry < 0) {
+                return -1;
+            }
+            if (tags[entry] == tag) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Value length in bytes, or -1 if the tag is absent
+     */
+    public int valueLength(int tag) {
+        int entry = find(tag);
+        return entry < 0 ? -1 : lengths[entry];
+    }
+
+    /**
+     * Value as upper-case hex (as TLV.getValue() returned), or null if absent
+     */
+    public String valueHex(int tag) {
+        int entry = find(tag);
+        return entry < 0 ? null : hex(offsets[entry], lengths[entry]);
+    }
+
+    public String valueHex(String tag) {
+        return valueHex(tag(tag));
+    }
+
+    /**
+     * Copy of the value bytes, or null if absent
+     */
+    public byte[] value(int tag) {
+        int entry = find(tag);
+        if (entry < 0) {
+            return null;
+        }
+        byte[] out = new byte[lengths[entry]];
+        System.arraycopy(data, offsets[entry], out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * Copy the value into {@code dst} at {@code dstOffset}
+     *
+     * @return Bytes copied, or -1 if the tag is absent
+     */
+    public int copyValue(int tag, byte[] dst, int dstOffset) {
+        int entry = find(tag);
+        if (entry < 0) {
+            return -1;
+        }
+        System.arraycopy(data, offsets[entry], dst, dstOffset, lengths[entry]);
+        return lengths[entry];
+    }
+
+    // ==================== ENTRIES ====================
+
+    /** Tag of entry {@code i} (0 <= i < entryCount()) */
+    public int tagAt(int i) {
+        checkEntry(i);
+        return tags[i];
+    }
+
+    /**
+     * Offset of entry {@code i}'s tag in {@link #array()}; the entry ends at
+     * valueOffsetAt(i) + valueLengthAt(i)
+     */
+    public int entryOffsetAt(int i) {
+        checkEntry(i);
+        return i == 0 ? start : offsets[i - 1] + lengths[i - 1];
+    }
+
+    /** Offset of entry {@code i}'s value in {@link #array()} */
+    public int valueOffsetAt(int i) {
+        checkEntry(i);
+        return offsets[i];
+    }
+
+    /** Length of entry {@code i}'s value */
+    public int valueLengthAt(int i) {
+        checkEntry(i);
+        return lengths[i];
+    }
+
+    /** Entry {@code i}'s value as upper-case hex */
+    public String valueHexAt(int i) {
+        checkEntry(i);
+        return hex(offsets[i], lengths[i]);
+    }
+
+    /**
+     * The array the offsets refer to (not a copy)
+     */
+    public byte[] array() {
+        return data;
+    }
+
+    // ==================== COMPATIBILITY ====================
+
+    /**
+     * Entries as TLV objects, in order, repeated tags included
+     */
+    public List<TLV> toList() {
+        List<TLV> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(new TLV(tagHex(tags[i]), lengths[i], hex(offsets[i], lengths[i])));
+        }
+        return list;
+    }
+
+    /**
+     * Entries as a tag -> TLV map, in first-seen order, last value wins
+     */
+    public Map<String, TLV> toMap() {
+        Map<String, TLV> map = new LinkedHashMap<>(Math.max(16, distinct * 2));
+        for (int i = 0; i < count; i++) {
+            String tag = tagHex(tags[i]);
+            map.put(tag, new TLV(tag, lengths[i], hex(offsets[i], lengths[i])));
+        }
+        return map;
+    }
+
+    // ==================== PARSING ====================
+
+    private void parse(int pos, int end) {
+        while (pos < end) {
+            int tag = data[pos++] & 0xFF;
+            if (tag == 0x00) {
+                return; // Padding / end marker
+            }
+            if ((tag & 0x1F) == 0x1F) {
+                if (pos >= end) {
+                    return;
+                }
+                int b2 = data[pos++] & 0xFF;
+                tag = (tag << 8) | b2;
+                if ((b2 & 0x80) != 0) {
+                    if (pos >= end) {
+                        return;
+                    }
+                    tag = (tag << 8) | (data[pos++] & 0xFF);
+                }
+            }
+
+            if (pos >= end) {
+                return;
+            }
+            int length = data[pos++] & 0xFF;
+            if ((length & 0x80) != 0) {
+                int lengthBytes = length & 0x7F;
+                if (lengthBytes == 0 || lengthBytes > 3 || pos + lengthBytes > end) {
+                    return;
+                }
+                length = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (data[pos++] & 0xFF);
+                }
+            }
+            if (length > end - pos) {
+                return; // Truncated value
+            }
+
+            add(tag, pos, length);
+            pos += length;
+        }
+    }
+
+    private void add(int tag, int offset, int length) {
+        if (count == tags.length) {
+            int capacity = count * 2;
+            tags = Arrays.copyOf(tags, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        tags[count] = tag;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    private void buildIndex() {
+        if (count == 0) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(count * 2 - 1) << 1; // >= 2x entries, power of two
+        index = new int[capacity];
+        mask = capacity - 1;
+        for (int entry = 0; entry < count; entry++) {
+            int tag = tags[entry];
+            for (int slot = hash(tag) & mask; ; slot = (slot + 1) & mask) {
+                int existing = index[slot] - 1;
+                if (existing < 0) {
+                    index[slot] = entry + 1;
+                    distinct++;
+                    break;
+                }
+                if (tags[existing] == tag) {
+                    index[slot] = entry + 1; // Last one wins
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int hash(int tag) {
+        int h = tag * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private String hex(int offset, int length) {
+        char[] out = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xFF;
+            out[i * 2] = HEX[b >>> 4];
+            out[i * 2 + 1] = HEX[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    private void checkEntry(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("entry " + i + " of " + count);
+        }
+    }
+}
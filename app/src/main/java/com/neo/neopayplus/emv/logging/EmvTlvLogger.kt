@@ -1,18 +1,19 @@
 package com.neo.neopayplus.emv.logging
 
 import com.neo.neopayplus.Constant
-import com.neo.neopayplus.emv.TLVUtil
+import com.neo.neopayplus.emv.SdkWrapper
+import com.neo.neopayplus.emv.TlvBuffer
 import com.neo.neopayplus.utils.LogUtil
-import com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2
 import com.sunmi.pay.hardware.aidl.AidlConstants
 import com.sunmi.payservice.AidlConstantsV2
 import java.util.Locale
 
 /**
  * Logs EMV TLV data for debugging purposes.
+ * Reads go through SdkWrapper, so a dump right after a kernel milestone
+ * costs no extra IPC for tags already in the read-ahead snapshot.
  */
 class EmvTlvLogger(
-    private val emv: EMVOptV2,
     private val readTag: (String) -> String?,
     private val getDetectedScheme: () -> Int,
     private val getCardType: () -> Int,
@@ -60,26 +61,26 @@ class EmvTlvLogger(
         )
         
         val out = ByteArray(4096)
-        val len = emv.getTlvList(tlvOpCode, tags, out)
+        val len = SdkWrapper.getTlvList(tlvOpCode, tags, out)
         
         if (len > 0) {
             val tlvHex = out.copyOf(len).joinToString("") { "%02X".format(it) }
             LogUtil.e(Constant.TAG, "TLV RAW HEX ($len bytes): $tlvHex")
             
             // Parse and log individual tags
-            val map = TLVUtil.buildTLVMap(out.copyOf(len))
+            val tlvs = TlvBuffer.parse(out, 0, len)
             for (tag in tags) {
-                val tlv = map[tag]
-                if (tlv != null) {
-                    LogUtil.e(Constant.TAG, "  $tag = ${tlv.value} (${getTagName(tag)})")
+                val value = tlvs.valueHex(tag)
+                if (value != null) {
+                    LogUtil.e(Constant.TAG, "  $tag = $value (${getTagName(tag)})")
                 }
             }
             
             // Special logging for AIP and AFL
-            map["82"]?.let { LogUtil.e(Constant.TAG, ">>> AIP: ${it.value}") }
-            map["94"]?.let { LogUtil.e(Constant.TAG, ">>> AFL: ${it.value}") }
-            map["9F27"]?.let { LogUtil.e(Constant.TAG, ">>> CID: ${it.value}") }
-            map["95"]?.let { LogUtil.e(Constant.TAG, ">>> TVR: ${it.value}") }
+            tlvs.valueHex("82")?.let { LogUtil.e(Constant.TAG, ">>> AIP: $it") }
+            tlvs.valueHex("94")?.let { LogUtil.e(Constant.TAG, ">>> AFL: $it") }
+            tlvs.valueHex("9F27")?.let { LogUtil.e(Constant.TAG, ">>> CID: $it") }
+            tlvs.valueHex("95")?.let { LogUtil.e(Constant.TAG, ">>> TVR: $it") }
         } else {
             LogUtil.e(Constant.TAG, "TLV read failed or empty (len=$len)")
         }
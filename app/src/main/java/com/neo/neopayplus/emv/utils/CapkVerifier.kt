@@ -236,9 +236,10 @@ class CapkVerifier(private val emv: EMVOptV2) {
     }
     
     /**
-     * Query installed CAPKs from EMV kernel
+     * Query installed CAPKs from EMV kernel (also used by EmvProvisioner to
+     * diff against the bundle)
      */
-    private fun queryInstalledCapks(): List<InstalledCapk> {
+    fun queryInstalledCapks(): List<InstalledCapk> {
         val capkList = ArrayList<String>()
         val rc = emv.queryAidCapkList(1, capkList) // 1 = query CAPKs
         
@@ -2,21 +2,25 @@ package com.neo.neopayplus.emv.utils
 
 import android.util.Log
 import com.neo.neopayplus.Constant
+import com.neo.neopayplus.emv.SdkWrapper
 import com.neo.neopayplus.emv.TLV
 import com.neo.neopayplus.emv.TLVUtil
-import com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2
 
 /**
  * Logs card's CVM (Cardholder Verification Method) requirements for debugging.
  * 
  * Follows Single Responsibility Principle - only handles CVM logging.
  * 
- * @param emvOptV2 EMV service instance
+ * Reads go through SdkWrapper (read-ahead snapshot after a kernel milestone).
  */
-class CvmRequirementLogger(private val emvOptV2: EMVOptV2) {
+class CvmRequirementLogger {
     
     companion object {
         private const val TAG = Constant.TAG
+
+        // Tags this logger reads (CTQ, CVM List, CVM Results)
+        @JvmField
+        val CVM_TAGS = arrayOf("9F6C", "8E", "9F34")
     }
     
     /**
@@ -42,7 +46,7 @@ class CvmRequirementLogger(private val emvOptV2: EMVOptV2) {
     private fun logCtq() {
         try {
             val outData = ByteArray(512)
-            val len = emvOptV2.getTlvList(
+            val len = SdkWrapper.getTlvList(
                 com.sunmi.pay.hardware.aidl.AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                 arrayOf("9F6C"),
                 outData
@@ -96,7 +100,7 @@ class CvmRequirementLogger(private val emvOptV2: EMVOptV2) {
     private fun logCvmList() {
         try {
             val outData = ByteArray(512)
-            val len = emvOptV2.getTlvList(
+            val len = SdkWrapper.getTlvList(
                 com.sunmi.pay.hardware.aidl.AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                 arrayOf("8E"),
                 outData
@@ -151,7 +155,7 @@ class CvmRequirementLogger(private val emvOptV2: EMVOptV2) {
     private fun logCvmResults() {
         try {
             val outData = ByteArray(512)
-            val len = emvOptV2.getTlvList(
+            val len = SdkWrapper.getTlvList(
                 com.sunmi.pay.hardware.aidl.AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                 arrayOf("9F34"),
                 outData
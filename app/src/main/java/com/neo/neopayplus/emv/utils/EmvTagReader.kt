@@ -3,7 +3,7 @@ package com.neo.neopayplus.emv.utils
 import com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2
 import com.sunmi.payservice.AidlConstantsV2
 import com.sunmi.pay.hardware.aidl.AidlConstants
-import com.neo.neopayplus.emv.TLVUtil
+import com.neo.neopayplus.emv.TlvBuffer
 
 /**
  * Utility for reading EMV tags from the kernel.
@@ -36,8 +36,7 @@ class EmvTagReader(
         val buf = ByteArray(1024)
         val len = emv.getTlvList(tlvOpCode, arrayOf(tag), buf)
         if (len <= 0) return null
-        val map = TLVUtil.buildTLVMap(buf.copyOf(len))
-        return map[tag]?.value
+        return TlvBuffer.parse(buf, 0, len).valueHex(tag)
     }
     
     /**
@@ -76,8 +75,7 @@ class EmvTagReader(
         for (tlvOpCode in spacesToTry) {
             val len = emv.getTlvList(tlvOpCode, arrayOf(tag), buf)
             if (len > 0) {
-                val map = TLVUtil.buildTLVMap(buf.copyOf(len))
-                val value = map[tag]?.value
+                val value = TlvBuffer.parse(buf, 0, len).valueHex(tag)
                 if (value != null) {
                     return value
                 }
@@ -2,9 +2,8 @@ package com.neo.neopayplus.emv.utils
 
 import android.util.Log
 import com.neo.neopayplus.Constant
-import com.neo.neopayplus.emv.TLV
-import com.neo.neopayplus.emv.TLVUtil
-import com.sunmi.pay.hardware.aidlv2.emv.EMVOptV2
+import com.neo.neopayplus.emv.SdkWrapper
+import com.neo.neopayplus.emv.TlvBuffer
 import com.sunmi.pay.hardware.aidl.AidlConstants
 import com.sunmi.payservice.AidlConstantsV2
 
@@ -18,18 +17,21 @@ import com.sunmi.payservice.AidlConstantsV2
  * - OP_PAYPASS for Mastercard (A000000004/5)
  * - OP_NORMAL as fallback
  * 
- * @param emvOptV2 EMV service instance
+ * Reads go through SdkWrapper, so after a kernel milestone they are served
+ * from the read-ahead snapshot instead of one IPC per opCode.
  */
-class PanExtractor(private val emvOptV2: EMVOptV2) {
+class PanExtractor {
     
     companion object {
         private const val TAG = Constant.TAG
         
         // TLV tags that may contain PAN
-        private val PAN_TAGS = arrayOf("5A", "57", "9F6B")
+        @JvmField
+        val PAN_TAGS = arrayOf("5A", "57", "9F6B")
         
         // AID tags to determine brand
-        private val AID_TAGS = arrayOf("4F", "9F06")
+        @JvmField
+        val AID_TAGS = arrayOf("4F", "9F06")
     }
     
     /**
@@ -84,16 +86,15 @@ class PanExtractor(private val emvOptV2: EMVOptV2) {
     private fun readAid(): String? {
         return try {
             val aidOut = ByteArray(256)
-            val aidLen = emvOptV2.getTlvList(
+            val aidLen = SdkWrapper.getTlvList(
                 AidlConstants.EMV.TLVOpCode.OP_NORMAL,
                 AID_TAGS,
                 aidOut
             )
             
             if (aidLen > 0) {
-                val aidTlvMap = TLVUtil.buildTLVMap(aidOut.copyOf(aidLen))
-                val aidTlv = aidTlvMap["4F"] ?: aidTlvMap["9F06"]
-                aidTlv?.value
+                val aidTlvs = TlvBuffer.parse(aidOut, 0, aidLen)
+                aidTlvs.valueHex("4F") ?: aidTlvs.valueHex("9F06")
             } else {
                 null
             }
@@ -134,18 +135,18 @@ class PanExtractor(private val emvOptV2: EMVOptV2) {
     private fun tryExtractPanWithOpCode(opCode: Int): String? {
         return try {
             val outData = ByteArray(512)
-            val len = emvOptV2.getTlvList(opCode, PAN_TAGS, outData)
+            val len = SdkWrapper.getTlvList(opCode, PAN_TAGS, outData)
             
             if (len <= 0) {
                 return null
             }
             
-            val tlvMap = TLVUtil.buildTLVMap(outData.copyOf(len))
+            val tlvs = TlvBuffer.parse(outData, 0, len)
             
             // Try tag 5A first (PAN)
-            extractFromTag5A(tlvMap) 
-                ?: extractFromTag57(tlvMap) 
-                ?: extractFromTag9F6B(tlvMap)
+            extractFromTag5A(tlvs) 
+                ?: extractFromTag57(tlvs) 
+                ?: extractFromTag9F6B(tlvs)
                 
         } catch (e: Exception) {
             // Silently fail and try next opcode
@@ -158,10 +159,10 @@ class PanExtractor(private val emvOptV2: EMVOptV2) {
      * PAN is BCD encoded, remove ONLY trailing 'F' padding (not all 'F' characters)
      * Return PAN exactly as extracted from EMV tag - no masking, no truncation
      */
-    private fun extractFromTag5A(tlvMap: Map<String, TLV>): String? {
-        val tlv = tlvMap["5A"]
-        if (tlv != null && tlv.value != null) {
-            val panHex = tlv.value
+    private fun extractFromTag5A(tlvs: TlvBuffer): String? {
+        val valueHex = tlvs.valueHex("5A")
+        if (valueHex != null) {
+            val panHex = valueHex
             // PAN is BCD encoded, remove ONLY trailing 'F' padding (regex: F+$ means one or more F at end)
             val pan = panHex.uppercase().replace(Regex("F+$"), "")
             Log.e(TAG, "✓ PAN extracted from tag 5A (full, unmasked): $pan (length: ${pan.length})")
@@ -175,10 +176,10 @@ class PanExtractor(private val emvOptV2: EMVOptV2) {
      * Format: PAN + 'D' + ExpiryDate + ServiceCode + ...
      * Return PAN exactly as extracted from EMV tag - no masking, no truncation
      */
-    private fun extractFromTag57(tlvMap: Map<String, TLV>): String? {
-        val tlv = tlvMap["57"]
-        if (tlv != null && tlv.value != null) {
-            val track2Hex = tlv.value.uppercase()
+    private fun extractFromTag57(tlvs: TlvBuffer): String? {
+        val valueHex = tlvs.valueHex("57")
+        if (valueHex != null) {
+            val track2Hex = valueHex.uppercase()
             val delimiterIndex = track2Hex.indexOf('D')
             if (delimiterIndex > 0) {
                 // Extract PAN part (before 'D' delimiter) and remove ONLY trailing 'F' padding
@@ -195,10 +196,10 @@ class PanExtractor(private val emvOptV2: EMVOptV2) {
      * Format: Same as tag 57
      * Return PAN exactly as extracted from EMV tag - no masking, no truncation
      */
-    private fun extractFromTag9F6B(tlvMap: Map<String, TLV>): String? {
-        val tlv = tlvMap["9F6B"]
-        if (tlv != null && tlv.value != null) {
-            val track2Hex = tlv.value.uppercase()
+    private fun extractFromTag9F6B(tlvs: TlvBuffer): String? {
+        val valueHex = tlvs.valueHex("9F6B")
+        if (valueHex != null) {
+            val track2Hex = valueHex.uppercase()
             val delimiterIndex = track2Hex.indexOf('D')
             if (delimiterIndex > 0) {
                 // Extract PAN part (before 'D' delimiter) and remove ONLY trailing 'F' padding
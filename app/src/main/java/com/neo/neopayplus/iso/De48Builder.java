@@ -44,6 +44,28 @@ public class De48Builder {
      * @return DE48 field as hex string (ready to append to ISO message)
      */
     public static String buildDe48(List<SubElement> subElements) {
+        String subElementsData = buildDe48Data(subElements);
+        if (subElementsData.isEmpty()) {
+            return "";
+        }
+
+        // Build DE48: LLL (3-byte ASCII length) + sub-elements data
+        // LLL: 3-byte ASCII length (e.g., "180" for 180 bytes)
+        String de48 = String.format("%03d", subElementsData.length()) + subElementsData;
+
+        // Convert to hex for ISO message
+        return bytesToHex(de48.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Build DE48 sub-element data (without the LLL length prefix)
+     * 
+     * Used by the spec-driven packer, which writes the LLL prefix itself.
+     * 
+     * @param subElements List of sub-elements
+     * @return Sub-elements as ASCII string (Type + Length + Value)*, or "" if none
+     */
+    public static String buildDe48Data(List<SubElement> subElements) {
         if (subElements == null || subElements.isEmpty()) {
             LogUtil.e(TAG, "DE48: No sub-elements provided - returning empty field");
             return "";
@@ -63,8 +85,13 @@ public class De48Builder {
 
                 // Length: 3 ASCII digits (padded with zeros)
                 int actualLength = sub.value != null ? sub.value.length() : 0;
-                String lengthStr = String.format("%03d", actualLength);
-                subElementsData.append(lengthStr);
+                if (actualLength < 100) {
+                    subElementsData.append('0');
+                }
+                if (actualLength < 10) {
+                    subElementsData.append('0');
+                }
+                subElementsData.append(actualLength);
 
                 // Value: variable length ASCII
                 if (sub.value != null && actualLength > 0) {
@@ -72,29 +99,13 @@ public class De48Builder {
                 }
             }
 
-            // Convert to bytes for length calculation
-            byte[] subElementsBytes = subElementsData.toString().getBytes(StandardCharsets.US_ASCII);
-            int totalLength = subElementsBytes.length;
-
-            // Build DE48: LLL (3-byte ASCII length) + sub-elements data
-            StringBuilder de48 = new StringBuilder();
-            
-            // LLL: 3-byte ASCII length (e.g., "180" for 180 bytes)
-            String lengthPrefix = String.format("%03d", totalLength);
-            de48.append(lengthPrefix);
-            de48.append(subElementsData.toString());
-
-            // Convert to hex for ISO message
-            byte[] de48Bytes = de48.toString().getBytes(StandardCharsets.US_ASCII);
-            String de48Hex = bytesToHex(de48Bytes);
-
-            LogUtil.e(TAG, "✓ DE48 built - total length: " + totalLength + " bytes, " + subElements.size() + " sub-elements");
+            LogUtil.e(TAG, "✓ DE48 built - total length: " + subElementsData.length() + " bytes, " + subElements.size() + " sub-elements");
             for (SubElement sub : subElements) {
                 LogUtil.e(TAG, "  Sub-element: " + sub.type + " (length: " + sub.length + ", value: " + 
                     (sub.value != null && sub.value.length() > 20 ? sub.value.substring(0, 20) + "..." : sub.value) + ")");
             }
 
-            return de48Hex;
+            return subElementsData.toString();
 
         } catch (Exception e) {
             LogUtil.e(TAG, "✗ Error building DE48: " + e.getMessage());
@@ -114,6 +125,20 @@ public class De48Builder {
         return buildDe48ForAuthorization(cardBrand, arqcResult, messageReasonCode, null, null, null, null, null);
     }
 
+    /**
+     * Build DE48 sub-element data for authorization request (without the LLL
+     * length prefix)
+     * 
+     * @param cardBrand Card brand (e.g., "VISA", "MASTERCARD")
+     * @param arqcResult ARQC result (null, "1" = incorrect, "2" = correct)
+     * @param messageReasonCode Message reason code (4 digits, optional)
+     * @return Sub-elements as ASCII string
+     */
+    public static String buildDe48DataForAuthorization(String cardBrand, String arqcResult, String messageReasonCode) {
+        return buildDe48Data(authorizationSubElements(cardBrand, arqcResult, messageReasonCode,
+                null, null, null, null, null));
+    }
+
     /**
      * Build DE48 with extended sub-elements for authorization request
      * 
@@ -136,6 +161,19 @@ public class De48Builder {
             String paymentFacilitatorId,
             String subMerchantId,
             String dccIndicator) {
+        return buildDe48(authorizationSubElements(cardBrand, arqcResult, messageReasonCode,
+                networkId, transactionId, paymentFacilitatorId, subMerchantId, dccIndicator));
+    }
+
+    private static List<SubElement> authorizationSubElements(
+            String cardBrand, 
+            String arqcResult, 
+            String messageReasonCode,
+            String networkId,
+            String transactionId,
+            String paymentFacilitatorId,
+            String subMerchantId,
+            String dccIndicator) {
         List<SubElement> subElements = new ArrayList<>();
 
         // P25: Result of Card Authentication (001)
@@ -219,7 +257,7 @@ public class De48Builder {
             subElements.add(new SubElement("M55", 1, dccIndicator));
         }
 
-        return buildDe48(subElements);
+        return subElements;
     }
 
     /**
@@ -0,0 +1,335 @@
+package com.neo.neopayplus.iso;
+
+/**
+ * ISO8583 Field Definition
+ *
+ * Declares how a single data element is laid out on the wire:
+ * - Length type: FIXED, LLVAR or LLLVAR
+ * - Length prefix encoding: ASCII digits, packed BCD or a binary count
+ *   (1 byte for LLVAR, 2 bytes big-endian for LLLVAR)
+ * - Data encoding: ASCII, packed BCD (one digit per nibble) or binary
+ *
+ * Lengths are counted in units of the data encoding:
+ * characters for ASCII, digits for BCD, bytes for BINARY.
+ *
+ * Field tables are grouped in {@link Table}. {@link #POWERCARD} describes
+ * MsgSpec v341 as sent by 0100/1200/1420 and declares every data element
+ * so that a received message can be walked field by field; message types
+ * with a different layout derive their own table through {@link Table#with}.
+ */
+public final class Iso8583FieldSpec {
+
+    public enum Encoding {
+        ASCII, BCD, BINARY
+    }
+
+    public enum LengthType {
+        FIXED, LLVAR, LLLVAR
+    }
+
+    public final int field;
+    public final LengthType lengthType;
+    public final int length;
+    public final Encoding encoding;
+    public final Encoding prefixEncoding;
+
+    private Iso8583FieldSpec(int field, LengthType lengthType, int length,
+            Encoding encoding, Encoding prefixEncoding) {
+        if (field < 2 || field > 128) {
+            throw new IllegalArgumentException("Invalid field number: " + field);
+        }
+        this.field = field;
+        this.lengthType = lengthType;
+        this.length = length;
+        this.encoding = encoding;
+        this.prefixEncoding = prefixEncoding;
+    }
+
+    /**
+     * Fixed-length field
+     *
+     * @param field    Data element number (2-128)
+     * @param encoding Data encoding
+     * @param length   Exact length (chars, digits or bytes)
+     */
+    public static Iso8583FieldSpec fixed(int field, Encoding encoding, int length) {
+        return new Iso8583FieldSpec(field, LengthType.FIXED, length, encoding, null);
+    }
+
+    /**
+     * Variable-length field with a 2-digit length indicator
+     *
+     * @param field          Data element number (2-128)
+     * @param encoding       Data encoding
+     * @param maxLength      Maximum length (chars, digits or bytes)
+     * @param prefixEncoding Length indicator encoding
+     */
+    public static Iso8583FieldSpec llvar(int field, Encoding encoding, int maxLength, Encoding prefixEncoding) {
+        return new Iso8583FieldSpec(field, LengthType.LLVAR, maxLength, encoding, prefixEncoding);
+    }
+
+    /**
+     * Variable-length field with a 3-digit length indicator
+     * (2 bytes "0LLL" when BCD encoded)
+     *
+     * @param field          Data element number (2-128)
+     * @param encoding       Data encoding
+     * @param maxLength      Maximum length (chars, digits or bytes)
+     * @param prefixEncoding Length indicator encoding
+     */
+    public static Iso8583FieldSpec lllvar(int field, Encoding encoding, int maxLength, Encoding prefixEncoding) {
+        return new Iso8583FieldSpec(field, LengthType.LLLVAR, maxLength, encoding, prefixEncoding);
+    }
+
+    /**
+     * Number of length-indicator digits written before the data
+     * (0 for fixed fields and for a binary length count)
+     */
+    int prefixDigits() {
+        if (lengthType == LengthType.FIXED || prefixEncoding == Encoding.BINARY) {
+            return 0;
+        }
+        if (lengthType == LengthType.LLVAR) {
+            return 2;
+        }
+        // LLLVAR: 3 ASCII digits, or 2 bytes BCD ("0LLL")
+        return prefixEncoding == Encoding.BCD ? 4 : 3;
+    }
+
+    /**
+     * Number of bytes taken by the length indicator on the wire
+     * (assumes the prefix starts on a byte boundary)
+     */
+    int prefixBytes() {
+        if (lengthType == LengthType.FIXED) {
+            return 0;
+        }
+        if (prefixEncoding == Encoding.BINARY) {
+            return lengthType == LengthType.LLVAR ? 1 : 2;
+        }
+        int digits = prefixDigits();
+        return prefixEncoding == Encoding.BCD ? (digits + 1) / 2 : digits;
+    }
+
+    /**
+     * Number of bytes taken by a value of the given length
+     * (assumes the value starts on a byte boundary)
+     */
+    int dataBytes(int length) {
+        return encoding == Encoding.BCD ? (length + 1) / 2 : length;
+    }
+
+    /**
+     * Immutable table of field definitions indexed by data element number
+     */
+    public static final class Table {
+
+        private final Iso8583FieldSpec[] specs;
+
+        private Table(Iso8583FieldSpec[] specs) {
+            this.specs = specs;
+        }
+
+        public static Table of(Iso8583FieldSpec... fields) {
+            Iso8583FieldSpec[] specs = new Iso8583FieldSpec[129];
+            for (Iso8583FieldSpec spec : fields) {
+                specs[spec.field] = spec;
+            }
+            return new Table(specs);
+        }
+
+        /**
+         * @param field Data element number
+         * @return Field definition, or null if the field is not declared
+         */
+        public Iso8583FieldSpec get(int field) {
+            return field > 0 && field < specs.length ? specs[field] : null;
+        }
+
+        /**
+         * Derive a table with some fields redefined
+         *
+         * @param overrides Field definitions replacing the ones in this table
+         * @return New table (this table is not modified)
+         */
+        public Table with(Iso8583FieldSpec... overrides) {
+            Iso8583FieldSpec[] copy = specs.clone();
+            for (Iso8583FieldSpec spec : overrides) {
+                copy[spec.field] = spec;
+            }
+            return new Table(copy);
+        }
+    }
+
+    private static final Encoding A = Encoding.ASCII;
+    private static final Encoding N = Encoding.BCD;
+    private static final Encoding B = Encoding.BINARY;
+
+    /**
+     * PowerCARD MsgSpec v341
+     *
+     * Numeric and text fields are ASCII encoded. DE2 carries a 1-byte BCD
+     * length, DE55 a 2-byte BCD length; all other variable fields carry
+     * ASCII length digits. Elements the terminal never sends follow the
+     * ISO 8583:1993 sizes so that host messages carrying them still decode.
+     */
+    public static final Table POWERCARD = Table.of(
+            llvar(2, A, 19, N), // PAN
+            fixed(3, A, 6), // Processing Code
+            fixed(4, A, 12), // Amount, Transaction
+            fixed(5, A, 12), // Amount, Settlement
+            fixed(6, A, 12), // Amount, Cardholder Billing
+            fixed(7, A, 10), // Transmission Date and Time (UTC)
+            fixed(8, A, 8), // Amount, Cardholder Billing Fee
+            fixed(9, A, 8), // Conversion Rate, Settlement
+            fixed(10, A, 8), // Conversion Rate, Cardholder Billing
+            fixed(11, A, 6), // STAN
+            fixed(12, A, 12), // Local Date and Time
+            fixed(13, A, 4), // Effective Date
+            fixed(14, A, 4), // Expiry Date
+            fixed(15, A, 6), // Settlement Date
+            fixed(16, A, 4), // Conversion Date
+            fixed(17, A, 4), // Capture Date
+            fixed(18, A, 4), // Merchant Type
+            fixed(19, A, 3), // Acquiring Institution Country Code
+            fixed(20, A, 3), // PAN Country Code
+            fixed(21, A, 3), // Forwarding Institution Country Code
+            fixed(22, A, 3), // POS Entry Mode
+            fixed(23, A, 3), // Card Sequence Number
+            fixed(24, A, 3), // Function Code
+            fixed(25, A, 4), // Message Reason Code
+            fixed(26, A, 4), // Card Acceptor Business Code
+            fixed(27, A, 1), // Authorization Code Length
+            fixed(28, A, 6), // Reconciliation Date
+            fixed(29, A, 3), // Reconciliation Indicator
+            fixed(30, A, 24), // Original Amounts
+            llvar(31, A, 99, A), // Acquirer Reference Data
+            llvar(32, A, 11, A), // Acquiring Institution ID
+            llvar(33, A, 11, A), // Forwarding Institution ID
+            llvar(34, A, 28, A), // Extended PAN
+            llvar(35, A, 37, A), // Track 2 Data
+            lllvar(36, A, 104, A), // Track 3 Data
+            fixed(37, A, 12), // RRN
+            fixed(38, A, 6), // Authorization Code
+            fixed(39, A, 3), // Action Code
+            fixed(40, A, 3), // Service Code
+            fixed(41, A, 8), // Terminal ID
+            fixed(42, A, 15), // Merchant ID
+            llvar(43, A, 99, A), // Card Acceptor Name/Location
+            llvar(44, A, 99, A), // Additional Response Data
+            llvar(45, A, 76, A), // Track 1 Data
+            lllvar(46, A, 204, A), // Amounts, Fees
+            lllvar(47, A, 999, A), // Additional Data, National
+            lllvar(48, A, 999, A), // Additional Private Data
+            fixed(49, A, 3), // Currency Code, Transaction
+            fixed(50, A, 3), // Currency Code, Reconciliation
+            fixed(51, A, 3), // Currency Code, Cardholder Billing
+            fixed(52, B, 8), // PIN Block
+            fixed(53, A, 16), // Security Related Control Information
+            lllvar(54, A, 120, A), // Amounts, Additional
+            lllvar(55, B, 255, N), // ICC Data
+            llvar(56, A, 35, A), // Original Data Elements
+            fixed(57, A, 3), // Authorization Life Cycle Code
+            llvar(58, A, 11, A), // Authorizing Agent Institution ID
+            lllvar(59, A, 999, A), // Transport Data
+            lllvar(60, A, 999, A), // Reserved National
+            lllvar(61, A, 999, A), // Reserved National
+            lllvar(62, A, 999, A), // Reserved Private (CPS)
+            lllvar(63, A, 999, A), // Reserved Private
+            fixed(64, B, 8), // MAC (primary)
+            fixed(65, B, 8), // Tertiary Bitmap
+            lllvar(66, A, 204, A), // Amounts, Original Fees
+            fixed(67, A, 2), // Extended Payment Data
+            fixed(68, A, 3), // Receiving Institution Country Code
+            fixed(69, A, 3), // Settlement Institution Country Code
+            fixed(70, A, 3), // Network Management Information Code
+            fixed(71, A, 8), // Message Number
+            lllvar(72, A, 999, A), // Data Record
+            fixed(73, A, 6), // Action Date
+            fixed(74, A, 10), // Credits, Number
+            fixed(75, A, 10), // Credits, Reversal Number
+            fixed(76, A, 10), // Debits, Number
+            fixed(77, A, 10), // Debits, Reversal Number
+            fixed(78, A, 10), // Transfer, Number
+            fixed(79, A, 10), // Transfer, Reversal Number
+            fixed(80, A, 10), // Inquiries, Number
+            fixed(81, A, 10), // Authorizations, Number
+            fixed(82, A, 12), // Credits, Processing Fee Amount
+            fixed(83, A, 12), // Credits, Transaction Fee Amount
+            fixed(84, A, 12), // Debits, Processing Fee Amount
+            fixed(85, A, 12), // Debits, Transaction Fee Amount
+            fixed(86, A, 16), // Credits, Amount
+            fixed(87, A, 16), // Credits, Reversal Amount
+            fixed(88, A, 16), // Debits, Amount
+            fixed(89, A, 16), // Debits, Reversal Amount
+            fixed(90, A, 42), // Original Data Elements
+            fixed(91, A, 3), // File Update Code
+            fixed(92, A, 3), // File Security Code
+            llvar(93, A, 11, A), // Transaction Destination Institution ID
+            llvar(94, A, 11, A), // Transaction Originator Institution ID (ISO)
+            llvar(95, A, 99, A), // Card Issuer Reference Data
+            lllvar(96, B, 999, A), // Key Management Data
+            fixed(97, A, 17), // Amount, Net Reconciliation
+            fixed(98, A, 25), // Payee
+            llvar(99, A, 11, A), // Settlement Institution ID
+            llvar(100, A, 11, A), // Receiving Institution ID
+            llvar(101, A, 99, A), // File Name
+            llvar(102, A, 28, A), // Account Identification 1
+            llvar(103, A, 28, A), // Account Identification 2
+            lllvar(104, A, 999, A), // Transaction Description
+            lllvar(105, A, 999, A), // Reserved ISO
+            lllvar(106, A, 999, A), // Reserved ISO
+            lllvar(107, A, 999, A), // Reserved ISO
+            lllvar(108, A, 999, A), // Reserved ISO
+            lllvar(109, A, 999, A), // Reserved ISO
+            lllvar(110, A, 999, A), // Reserved ISO
+            lllvar(111, A, 999, A), // Reserved ISO
+            lllvar(112, A, 999, A), // Reserved National
+            lllvar(113, A, 999, A), // Reserved National
+            lllvar(114, A, 999, A), // Reserved National
+            lllvar(115, A, 999, A), // Reserved National
+            lllvar(116, A, 999, A), // Reserved National
+            lllvar(117, A, 999, A), // Reserved National
+            lllvar(118, A, 999, A), // Reserved National
+            lllvar(119, A, 999, A), // Reserved National
+            lllvar(120, A, 999, A), // Reserved Private
+            lllvar(121, A, 999, A), // Reserved Private
+            lllvar(122, A, 999, A), // Reserved Private
+            lllvar(123, A, 999, A), // Reserved Private
+            llvar(124, A, 11, A), // Transaction Originator Institution ID
+            lllvar(125, A, 999, A), // Reserved Private
+            lllvar(126, A, 999, A), // Reserved Private
+            lllvar(127, A, 999, A), // Reserved Private
+            fixed(128, B, 16)); // MAC
+
+    /**
+     * Layout of 0110/1210 authorization responses from the host
+     *
+     * DE39 comes back as a 2-digit response code ("00" = approved) and DE55
+     * carries a 2-byte binary length.
+     */
+    public static final Table POWERCARD_RESPONSE = POWERCARD.with(
+            fixed(39, A, 2),
+            lllvar(55, B, 999, B));
+
+    /**
+     * Packed-BCD layout used by the 0400 and 1804 packers
+     *
+     * Numeric fields are written one digit per nibble and run on across
+     * byte boundaries; DE33 carries a single binary length byte.
+     */
+    public static final Table POWERCARD_BCD = POWERCARD.with(
+            fixed(2, N, 16), // PAN placeholder
+            fixed(3, N, 6),
+            fixed(4, N, 12),
+            fixed(7, N, 10),
+            fixed(11, N, 6),
+            fixed(12, N, 12),
+            fixed(22, N, 3),
+            fixed(24, N, 3),
+            fixed(25, N, 4),
+            llvar(33, N, 11, B),
+            fixed(37, N, 12),
+            fixed(39, N, 3),
+            fixed(49, N, 3));
+}
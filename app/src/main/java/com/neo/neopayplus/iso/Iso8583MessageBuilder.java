@@ -4,6 +4,9 @@ import com.neo.neopayplus.Constant;
 import com.neo.neopayplus.config.PaymentConfig;
 import com.neo.neopayplus.utils.LogUtil;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * ISO 8583 Message Builder (MsgSpec v341 + PowerCARD Protocol)
  * 
@@ -19,14 +22,22 @@ public class Iso8583MessageBuilder {
 
     private static final String TAG = Constant.TAG;
 
+    private static final int LENGTH_PREFIX_LENGTH = 4;
+    private static final int TPDU_LENGTH = 5;
+    private static final byte[] PROTOCOL_ID = PowerCardProtocol.buildProtocolIdentification();
+
+    // Length prefix (4) + protocol ID (3) + PowerCARD header (8) + TPDU (5)
+    public static final int APPLICATION_DATA_OFFSET = 20;
+    private static final int CRC_LENGTH = 2;
+
+    // HDLC CRC register start value and per-byte lookup table
+    static final int CRC_INIT = 0xFFFF;
+    private static final int[] CRC_TABLE = buildCrcTable();
+
     // TPDU constants per MsgSpec v341
     private static final byte TPDU_ID_TRANSACTION = 0x60; // Transactions
     private static final byte TPDU_ID_NMS = 0x68; // NMS/TNMS
 
-    // HDLC constants
-    private static final byte ADR_DEFAULT = 0x30; // HDLC poll address (normally 30h)
-    private static final byte CB_DEFAULT = 0x00; // HDLC control byte
-
     /**
      * Build complete ISO 8583 message with PowerCARD protocol structure
      * 
@@ -60,68 +71,41 @@ public class Iso8583MessageBuilder {
             char productType,
             String errorElementNumber) {
         try {
-            LogUtil.e(TAG, "=== Building ISO 8583 Message (PowerCARD Protocol) ===");
-
             // Build PowerCARD header (8 bytes)
             byte[] powerCardHeader = PowerCardHeader.buildHeader(productType, errorElementNumber);
 
-            // Build protocol identification (3 bytes)
-            byte[] protocolId = PowerCardProtocol.buildProtocolIdentification();
-
-            // Build TPDU (5 bytes)
-            byte[] tpdu = buildTpdu(TPDU_ID_TRANSACTION, destinationAddress, originatorAddress);
-
-            // Build HDLC header (ADR + CB) - 2 bytes
-            byte[] hdlcHeader = new byte[2];
-            hdlcHeader[0] = ADR_DEFAULT;
-            hdlcHeader[1] = CB_DEFAULT;
+            // Structure: Protocol ID (3) + PowerCARD Header (8) + TPDU (5) + Application Data + CRC (2)
+            int messageLength = PowerCardProtocol.calculateMessageLength(applicationData.length);
+            if (messageLength > 9999) {
+                throw new IllegalArgumentException("Message length out of range: " + messageLength + " (max 9999)");
+            }
 
-            // Calculate CRC (HDLC checksum) for: protocol ID + PowerCARD header + TPDU + application data
-            // Note: CRC is calculated over protocol ID + PowerCARD header + TPDU + application data
-            byte[] dataForCrc = new byte[protocolId.length + powerCardHeader.length + tpdu.length + applicationData.length];
+            // Assemble straight into the final frame
+            byte[] frame = new byte[LENGTH_PREFIX_LENGTH + messageLength];
             int offset = 0;
-            System.arraycopy(protocolId, 0, dataForCrc, offset, protocolId.length);
-            offset += protocolId.length;
-            System.arraycopy(powerCardHeader, 0, dataForCrc, offset, powerCardHeader.length);
-            offset += powerCardHeader.length;
-            System.arraycopy(tpdu, 0, dataForCrc, offset, tpdu.length);
-            offset += tpdu.length;
-            System.arraycopy(applicationData, 0, dataForCrc, offset, applicationData.length);
 
-            byte[] crc = calculateHdlcCrc(dataForCrc);
-
-            // Calculate message length (excluding length prefix itself)
-            // Structure: Protocol ID (3) + PowerCARD Header (8) + TPDU (5) + Application Data + CRC (2)
-            int messageLength = PowerCardProtocol.calculateMessageLength(applicationData.length);
+            // Message length prefix (4 bytes ASCII, excluding the prefix itself)
+            for (int i = LENGTH_PREFIX_LENGTH - 1, value = messageLength; i >= 0; i--, value /= 10) {
+                frame[i] = (byte) ('0' + value % 10);
+            }
+            offset += LENGTH_PREFIX_LENGTH;
 
-            // Build message length prefix (4 bytes ASCII)
-            byte[] lengthPrefix = PowerCardProtocol.buildMessageLengthPrefix(messageLength);
-
-            // Build complete message: Length Prefix + Protocol ID + PowerCARD Header + TPDU + Application Data + CRC
-            byte[] completeMessage = new byte[lengthPrefix.length + messageLength];
-            offset = 0;
-            System.arraycopy(lengthPrefix, 0, completeMessage, offset, lengthPrefix.length);
-            offset += lengthPrefix.length;
-            System.arraycopy(protocolId, 0, completeMessage, offset, protocolId.length);
-            offset += protocolId.length;
-            System.arraycopy(powerCardHeader, 0, completeMessage, offset, powerCardHeader.length);
+            System.arraycopy(PROTOCOL_ID, 0, frame, offset, PROTOCOL_ID.length);
+            offset += PROTOCOL_ID.length;
+            System.arraycopy(powerCardHeader, 0, frame, offset, powerCardHeader.length);
             offset += powerCardHeader.length;
-            System.arraycopy(tpdu, 0, completeMessage, offset, tpdu.length);
-            offset += tpdu.length;
-            System.arraycopy(applicationData, 0, completeMessage, offset, applicationData.length);
+            offset = writeTpdu(frame, offset, TPDU_ID_TRANSACTION, destinationAddress, originatorAddress);
+            System.arraycopy(applicationData, 0, frame, offset, applicationData.length);
             offset += applicationData.length;
-            System.arraycopy(crc, 0, completeMessage, offset, crc.length);
 
-            LogUtil.e(TAG, "✓ Complete PowerCARD message built:");
-            LogUtil.e(TAG, "  Length Prefix: " + lengthPrefix.length + " bytes");
-            LogUtil.e(TAG, "  Protocol ID: " + protocolId.length + " bytes");
-            LogUtil.e(TAG, "  PowerCARD Header: " + powerCardHeader.length + " bytes");
-            LogUtil.e(TAG, "  TPDU: " + tpdu.length + " bytes");
-            LogUtil.e(TAG, "  Application Data: " + applicationData.length + " bytes");
-            LogUtil.e(TAG, "  CRC: " + crc.length + " bytes");
-            LogUtil.e(TAG, "  Total: " + completeMessage.length + " bytes");
+            // CRC (HDLC checksum) over protocol ID + PowerCARD header + TPDU + application data
+            int crc = crcFinish(crcUpdate(CRC_INIT, frame, LENGTH_PREFIX_LENGTH, offset - LENGTH_PREFIX_LENGTH));
+            frame[offset] = (byte) (crc & 0xFF);
+            frame[offset + 1] = (byte) ((crc >> 8) & 0xFF);
 
-            return completeMessage;
+            LogUtil.e(TAG, "✓ Complete PowerCARD message built: " + frame.length + " bytes (application data "
+                    + applicationData.length + ")");
+            return frame;
 
         } catch (Exception e) {
             LogUtil.e(TAG, "✗ Error building ISO 8583 message: " + e.getMessage());
@@ -131,76 +115,71 @@ public class Iso8583MessageBuilder {
     }
 
     /**
-     * Build TPDU (Transport Protocol Data Unit) - 5 bytes
+     * Write TPDU (Transport Protocol Data Unit) - 5 bytes
      * Per MsgSpec v341 section 4.1.1.1:
      * - Byte 1: TPDU Id (60h for transactions)
      * - Bytes 2-3: Destination Address (Network International Identifier)
      * - Bytes 4-5: Originator Address (Terminal identifier)
+     *
+     * @return Offset after the TPDU
      */
-    private static byte[] buildTpdu(byte tpduId, byte[] destinationAddress, byte[] originatorAddress) {
-        byte[] tpdu = new byte[5];
-        tpdu[0] = tpduId;
+    private static int writeTpdu(byte[] frame, int offset, byte tpduId,
+            byte[] destinationAddress, byte[] originatorAddress) {
+        frame[offset] = tpduId;
 
-        // Destination Address (2 bytes)
+        // Destination Address (2 bytes) - default: network identifier 0x0000
         if (destinationAddress != null && destinationAddress.length >= 2) {
-            tpdu[1] = destinationAddress[0];
-            tpdu[2] = destinationAddress[1];
-        } else {
-            // Default: use network identifier (e.g., 0x0000)
-            tpdu[1] = 0x00;
-            tpdu[2] = 0x00;
+            frame[offset + 1] = destinationAddress[0];
+            frame[offset + 2] = destinationAddress[1];
         }
 
         // Originator Address (2 bytes) - Terminal ID
-        if (originatorAddress != null && originatorAddress.length >= 2) {
-            tpdu[3] = originatorAddress[0];
-            tpdu[4] = originatorAddress[1];
-        } else {
+        if (originatorAddress == null || originatorAddress.length < 2) {
             // Default: use terminal ID from config (convert to 2 bytes)
-            String terminalId = PaymentConfig.getTerminalId();
-            byte[] terminalBytes = terminalIdToBytes(terminalId);
-            tpdu[3] = terminalBytes[0];
-            tpdu[4] = terminalBytes[1];
+            originatorAddress = terminalIdToBytes(PaymentConfig.getTerminalId());
         }
+        frame[offset + 3] = originatorAddress[0];
+        frame[offset + 4] = originatorAddress[1];
 
-        return tpdu;
+        return offset + TPDU_LENGTH;
     }
 
     /**
-     * Build header: ADR (1 byte) + CB (1 byte) + TPDU (5 bytes)
+     * Advance the HDLC CRC (CCITT CRC-16, reflected polynomial 8408h) per
+     * MsgSpec v341 section 4.3 over a segment of data, one table lookup per
+     * byte. Segments may be fed in any number of calls: start from
+     * {@link #CRC_INIT} and pass the result through {@link #crcFinish}.
+     *
+     * @param crc    Running CRC register
+     * @param data   Data buffer
+     * @param offset Segment start
+     * @param length Segment length
+     * @return Updated CRC register
      */
-    private static byte[] buildHeader(byte[] tpdu) {
-        byte[] header = new byte[7]; // ADR (1) + CB (1) + TPDU (5)
-        header[0] = ADR_DEFAULT; // HDLC poll address
-        header[1] = CB_DEFAULT; // HDLC control byte
-        System.arraycopy(tpdu, 0, header, 2, 5); // TPDU
-        return header;
+    static int crcUpdate(int crc, byte[] data, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = (crc >>> 8) ^ CRC_TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return crc;
     }
 
     /**
-     * Calculate HDLC CRC (CCITT CRC-16) per MsgSpec v341 section 4.3
-     * 
-     * @param data Data to calculate CRC for
-     * @return CRC as 2 bytes (little-endian)
+     * @return Final CRC value (inverted register, 16 bits), sent little-endian
      */
-    private static byte[] calculateHdlcCrc(byte[] data) {
-        int crc = 0xFFFF; // Initial value
+    static int crcFinish(int crc) {
+        return ~crc & 0xFFFF;
+    }
 
-        for (byte b : data) {
-            crc ^= (b & 0xFF);
+    private static int[] buildCrcTable() {
+        int[] table = new int[256];
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
             for (int i = 0; i < 8; i++) {
-                if ((crc & 0x0001) != 0) {
-                    crc = (crc >> 1) ^ 0x8408; // CCITT polynomial
-                } else {
-                    crc = crc >> 1;
-                }
+                crc = (crc & 0x0001) != 0 ? (crc >>> 1) ^ 0x8408 : crc >>> 1;
             }
+            table[n] = crc;
         }
-
-        crc = ~crc; // Invert
-
-        // Return as 2 bytes (little-endian)
-        return new byte[] { (byte) (crc & 0xFF), (byte) ((crc >> 8) & 0xFF) };
+        return table;
     }
 
     /**
@@ -247,36 +226,27 @@ public class Iso8583MessageBuilder {
         }
 
         try {
-            int offset = 0;
+            // Validate the message length prefix (4 bytes)
+            PowerCardProtocol.parseMessageLengthPrefix(completeMessage);
 
-            // Parse message length prefix (4 bytes)
-            int messageLength = PowerCardProtocol.parseMessageLengthPrefix(completeMessage);
-            offset += 4;
+            // Protocol identification (3 bytes)
+            String protocolId = new String(completeMessage, LENGTH_PREFIX_LENGTH, PROTOCOL_ID.length,
+                    StandardCharsets.US_ASCII).trim();
 
-            // Parse protocol identification (3 bytes)
-            String protocolId = PowerCardProtocol.parseProtocolIdentification(
-                    java.util.Arrays.copyOfRange(completeMessage, offset, offset + 3));
-            offset += 3;
-
-            // Parse PowerCARD header (8 bytes)
+            // PowerCARD header (8 bytes)
             PowerCardHeader.PowerCardHeaderInfo headerInfo = PowerCardHeader.parseHeader(
-                    java.util.Arrays.copyOfRange(completeMessage, offset, offset + 8));
-            offset += 8;
-
-            // Skip TPDU (5 bytes)
-            offset += 5;
-
-            // Extract application data (remaining bytes minus CRC)
-            int crcLength = 2;
-            int applicationDataLength = completeMessage.length - offset - crcLength;
+                    Arrays.copyOfRange(completeMessage, LENGTH_PREFIX_LENGTH + PROTOCOL_ID.length,
+                            APPLICATION_DATA_OFFSET - TPDU_LENGTH));
 
+            // Application data: everything after the TPDU, minus the CRC
+            int applicationDataLength = applicationDataLength(completeMessage);
             if (applicationDataLength <= 0) {
                 LogUtil.e(TAG, "✗ Invalid application data length: " + applicationDataLength);
                 return new byte[0];
             }
 
             byte[] applicationData = new byte[applicationDataLength];
-            System.arraycopy(completeMessage, offset, applicationData, 0, applicationDataLength);
+            System.arraycopy(completeMessage, APPLICATION_DATA_OFFSET, applicationData, 0, applicationDataLength);
 
             LogUtil.e(TAG, "✓ Parsed PowerCARD response message:");
             LogUtil.e(TAG, "  Protocol ID: " + protocolId);
@@ -291,4 +261,17 @@ public class Iso8583MessageBuilder {
             return new byte[0];
         }
     }
+
+    /**
+     * Length of the application data inside a complete frame, which starts
+     * at {@link #APPLICATION_DATA_OFFSET}; lets callers decode in place with
+     * {@link Iso8583MessageReader#parse(Iso8583FieldSpec.Table, byte[], int, int)}
+     * instead of copying it out through {@link #parseResponse(byte[])}
+     *
+     * @param completeMessage Complete frame (length prefix through CRC)
+     * @return Application data length (0 or less if the frame is too short)
+     */
+    public static int applicationDataLength(byte[] completeMessage) {
+        return completeMessage.length - APPLICATION_DATA_OFFSET - CRC_LENGTH;
+    }
 }
@@ -0,0 +1,231 @@
+package com.neo.neopayplus.iso;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ISO8583 Message Reader
+ *
+ * Decodes MTI + bitmap(s) + data elements from a received message,
+ * driven by an {@link Iso8583FieldSpec.Table}.
+ *
+ * {@link #parse(Iso8583FieldSpec.Table, byte[])} walks the bitmap(s) once
+ * and records where each present field sits in the raw bytes; values are
+ * only decoded when a getter asks for them, so fields that are never read
+ * cost nothing beyond their offset.
+ *
+ * Every field flagged in the bitmap must be declared in the table,
+ * otherwise the position of the following fields is unknown and parsing
+ * fails. Fields are expected to start on a byte boundary (odd BCD digit
+ * counts are padded on the right within the field).
+ */
+public final class Iso8583MessageReader {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final byte[] data;
+    private final int end;
+    private final Iso8583FieldSpec.Table table;
+    private final String mti;
+    private final long primaryBitmap;
+    private final long secondaryBitmap;
+    private final int[] offsets = new int[129];
+    private final int[] lengths = new int[129];
+
+    private Iso8583MessageReader(Iso8583FieldSpec.Table table, byte[] data, int start, int length) {
+        this.table = table;
+        this.data = data;
+        this.end = start + length;
+
+        require(start, 12, "MTI and primary bitmap");
+        this.mti = new String(data, start, 4, StandardCharsets.US_ASCII);
+        this.primaryBitmap = readLong(start + 4);
+        int offset = start + 12;
+        if (primaryBitmap < 0L) { // DE1: secondary bitmap present
+            require(offset, 8, "secondary bitmap");
+            this.secondaryBitmap = readLong(offset);
+            offset += 8;
+        } else {
+            this.secondaryBitmap = 0L;
+        }
+
+        Arrays.fill(offsets, -1);
+        for (int field = 2; field <= 128; field++) {
+            if (has(field)) {
+                offset = index(field, offset);
+            }
+        }
+    }
+
+    /**
+     * Index a received message
+     *
+     * @param table Field definitions the message was packed with
+     * @param data  ISO8583 application data (MTI + bitmap(s) + data elements)
+     * @return Reader over {@code data} (the array is not copied)
+     * @throws IllegalArgumentException if the message is truncated or carries
+     *                                  a field the table does not declare
+     */
+    public static Iso8583MessageReader parse(Iso8583FieldSpec.Table table, byte[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("No message data");
+        }
+        return new Iso8583MessageReader(table, data, 0, data.length);
+    }
+
+    /**
+     * Index a message embedded in a larger buffer (e.g. a complete frame)
+     *
+     * @param table  Field definitions the message was packed with
+     * @param data   Buffer holding the message (not copied)
+     * @param offset Offset of the MTI in {@code data}
+     * @param length Length of the application data
+     * @return Reader over {@code data}
+     * @throws IllegalArgumentException as {@link #parse(Iso8583FieldSpec.Table, byte[])}
+     */
+    public static Iso8583MessageReader parse(Iso8583FieldSpec.Table table, byte[] data, int offset, int length) {
+        if (data == null || offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException("Message range outside buffer");
+        }
+        return new Iso8583MessageReader(table, data, offset, length);
+    }
+
+    private int index(int field, int offset) {
+        Iso8583FieldSpec spec = table.get(field);
+        if (spec == null) {
+            throw new IllegalArgumentException("DE" + field + " is present but not defined in the field table");
+        }
+
+        int length;
+        if (spec.lengthType == Iso8583FieldSpec.LengthType.FIXED) {
+            length = spec.length;
+        } else {
+            int prefixBytes = spec.prefixBytes();
+            require(offset, prefixBytes, "DE" + field + " length");
+            length = readLength(spec, offset);
+            if (length > spec.length) {
+                throw new IllegalArgumentException("DE" + field + " length " + length
+                        + " exceeds max " + spec.length);
+            }
+            offset += prefixBytes;
+        }
+
+        int dataBytes = spec.dataBytes(length);
+        require(offset, dataBytes, "DE" + field);
+        offsets[field] = offset;
+        lengths[field] = length;
+        return offset + dataBytes;
+    }
+
+    private int readLength(Iso8583FieldSpec spec, int offset) {
+        if (spec.prefixEncoding == Iso8583FieldSpec.Encoding.BINARY) {
+            int length = data[offset] & 0xFF;
+            if (spec.lengthType == Iso8583FieldSpec.LengthType.LLLVAR) {
+                length = (length << 8) | (data[offset + 1] & 0xFF);
+            }
+            return length;
+        }
+
+        boolean bcd = spec.prefixEncoding == Iso8583FieldSpec.Encoding.BCD;
+        int digits = spec.prefixDigits();
+        int length = 0;
+        for (int i = 0; i < digits; i++) {
+            int digit = bcd
+                    ? (data[offset + i / 2] >> ((i & 1) == 0 ? 4 : 0)) & 0x0F
+                    : data[offset + i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("DE" + spec.field + " has an invalid length indicator");
+            }
+            length = length * 10 + digit;
+        }
+        return length;
+    }
+
+    private void require(int offset, int count, String what) {
+        if (end < offset + count) {
+            throw new IllegalArgumentException("Insufficient data for " + what + ": need " + count
+                    + " bytes at offset " + offset + ", have " + (end - offset));
+        }
+    }
+
+    private long readLong(int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * @return Message Type Indicator (e.g. "1210")
+     */
+    public String getMti() {
+        return mti;
+    }
+
+    /**
+     * @return true if the field is flagged in the bitmap(s)
+     */
+    public boolean has(int field) {
+        if (field < 2 || field > 128) {
+            return false;
+        }
+        return field <= 64
+                ? (primaryBitmap & (1L << (64 - field))) != 0L
+                : (secondaryBitmap & (1L << (128 - field))) != 0L;
+    }
+
+    /**
+     * @return Field length in units of its encoding (chars, digits or bytes),
+     *         or -1 if the field is absent
+     */
+    public int getLength(int field) {
+        return has(field) ? lengths[field] : -1;
+    }
+
+    /**
+     * Decode a field to text: ASCII fields as characters, BCD fields as
+     * digits and binary fields as uppercase hex
+     *
+     * @return Field value, or null if the field is absent
+     */
+    public String getString(int field) {
+        if (!has(field)) {
+            return null;
+        }
+        Iso8583FieldSpec spec = table.get(field);
+        int offset = offsets[field];
+        int length = lengths[field];
+        switch (spec.encoding) {
+            case ASCII:
+                return new String(data, offset, length, StandardCharsets.US_ASCII);
+            case BCD:
+                return nibbles(offset, length);
+            default:
+                return nibbles(offset, length * 2);
+        }
+    }
+
+    /**
+     * Copy a field's raw bytes as they appear on the wire (without the
+     * length indicator)
+     *
+     * @return Field bytes, or null if the field is absent
+     */
+    public byte[] getBytes(int field) {
+        if (!has(field)) {
+            return null;
+        }
+        int offset = offsets[field];
+        return Arrays.copyOfRange(data, offset, offset + table.get(field).dataBytes(lengths[field]));
+    }
+
+    private String nibbles(int offset, int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            int b = data[offset + i / 2];
+            chars[i] = HEX[(i & 1) == 0 ? (b >> 4) & 0x0F : b & 0x0F];
+        }
+        return new String(chars);
+    }
+}
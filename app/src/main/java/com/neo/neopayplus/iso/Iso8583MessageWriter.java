@@ -0,0 +1,346 @@
+package com.neo.neopayplus.iso;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ISO8583 Message Writer
+ *
+ * Packs MTI + bitmap(s) + data elements straight into a reusable
+ * {@link ByteBuffer}, driven by an {@link Iso8583FieldSpec.Table}.
+ *
+ * Usage:
+ * - {@link #obtain(Iso8583FieldSpec.Table, String)} (one writer per thread)
+ * - set fields in any order
+ * - {@link #pack()} writes the fields in ascending order and derives the
+ *   primary/secondary bitmaps from the fields that were set
+ *
+ * Field values are kept by reference until {@link #pack()}; nothing is
+ * formatted or copied before the final write.
+ */
+public final class Iso8583MessageWriter {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final byte MODE_RAW = 0;
+    private static final byte MODE_NUMERIC = 1;
+    private static final byte MODE_TEXT = 2;
+
+    private static final ThreadLocal<Iso8583MessageWriter> WRITERS = new ThreadLocal<Iso8583MessageWriter>() {
+        @Override
+        protected Iso8583MessageWriter initialValue() {
+            return new Iso8583MessageWriter();
+        }
+    };
+
+    private final Object[] values = new Object[129];
+    private final byte[] modes = new byte[129];
+    private Iso8583FieldSpec.Table table;
+    private String mti;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private int pendingNibble = -1;
+
+    Iso8583MessageWriter() {
+    }
+
+    /**
+     * Get the calling thread's writer, reset for a new message
+     *
+     * @param table Field definitions to pack with
+     * @param mti   Message Type Indicator (4 ASCII digits, e.g. "1200")
+     * @return Writer owned by the current thread
+     */
+    public static Iso8583MessageWriter obtain(Iso8583FieldSpec.Table table, String mti) {
+        Iso8583MessageWriter writer = WRITERS.get();
+        writer.reset(table, mti);
+        return writer;
+    }
+
+    void reset(Iso8583FieldSpec.Table table, String mti) {
+        if (mti == null || mti.length() != 4) {
+            throw new IllegalArgumentException("MTI must be 4 digits: " + mti);
+        }
+        this.table = table;
+        this.mti = mti;
+        Arrays.fill(values, null);
+        Arrays.fill(modes, MODE_RAW);
+    }
+
+    /**
+     * Set a field value exactly as it goes on the wire
+     * (ASCII characters, BCD digits, or hex digits for binary fields)
+     */
+    public Iso8583MessageWriter set(int field, CharSequence value) {
+        return put(field, value, MODE_RAW);
+    }
+
+    /**
+     * Set a binary field value
+     */
+    public Iso8583MessageWriter set(int field, byte[] value) {
+        return put(field, value, MODE_RAW);
+    }
+
+    /**
+     * Set a fixed-length numeric field.
+     * Non-digit characters are dropped, the rightmost digits are kept and the
+     * value is zero-padded on the left to the field length; null or empty
+     * values become all zeros.
+     */
+    public Iso8583MessageWriter setNumeric(int field, CharSequence value) {
+        return put(field, value != null ? value : "", MODE_NUMERIC);
+    }
+
+    /**
+     * Set a fixed-length text field, space-padded on the right or truncated
+     * to the field length.
+     */
+    public Iso8583MessageWriter setText(int field, CharSequence value) {
+        return put(field, value != null ? value : "", MODE_TEXT);
+    }
+
+    private Iso8583MessageWriter put(int field, Object value, byte mode) {
+        Iso8583FieldSpec spec = table.get(field);
+        if (spec == null) {
+            throw new IllegalArgumentException("DE" + field + " is not defined in the field table");
+        }
+        if (mode != MODE_RAW && spec.lengthType != Iso8583FieldSpec.LengthType.FIXED) {
+            throw new IllegalArgumentException("DE" + field + " is variable length - padding not applicable");
+        }
+        values[field] = value;
+        modes[field] = mode;
+        return this;
+    }
+
+    /**
+     * @return true if the field has been set
+     */
+    public boolean has(int field) {
+        return values[field] != null;
+    }
+
+    /**
+     * Pack the message
+     *
+     * @return ISO8583 application data (MTI + bitmap(s) + data elements)
+     * @throws IllegalArgumentException if a value does not fit its field definition
+     */
+    public byte[] pack() {
+        buffer.clear();
+        pendingNibble = -1;
+
+        ensure(4 + 16);
+        for (int i = 0; i < 4; i++) {
+            putByte(mti.charAt(i));
+        }
+
+        long primary = 0L;
+        long secondary = 0L;
+        for (int field = 2; field <= 128; field++) {
+            if (values[field] == null) {
+                continue;
+            }
+            if (field <= 64) {
+                primary |= 1L << (64 - field);
+            } else {
+                secondary |= 1L << (128 - field);
+            }
+        }
+        if (secondary != 0L) {
+            primary |= 1L << 63; // DE1: secondary bitmap present
+        }
+        putLong(primary);
+        if (secondary != 0L) {
+            putLong(secondary);
+        }
+
+        for (int field = 2; field <= 128; field++) {
+            Object value = values[field];
+            if (value != null) {
+                writeField(table.get(field), value, modes[field]);
+            }
+        }
+
+        if (pendingNibble >= 0) {
+            // Odd number of BCD digits overall - pad the last byte on the right
+            putNibble(0);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private void writeField(Iso8583FieldSpec spec, Object value, byte mode) {
+        int length = valueLength(spec, value, mode);
+        if (spec.lengthType == Iso8583FieldSpec.LengthType.FIXED) {
+            if (length != spec.length) {
+                throw new IllegalArgumentException("DE" + spec.field + " must be " + spec.length
+                        + " long, got " + length);
+            }
+        } else if (length > spec.length) {
+            throw new IllegalArgumentException("DE" + spec.field + " exceeds max length " + spec.length
+                    + ": " + length);
+        }
+
+        ensure(5 + length);
+        writeLengthPrefix(spec, length);
+
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            if (spec.encoding == Iso8583FieldSpec.Encoding.BINARY) {
+                for (byte b : bytes) {
+                    putByte(b);
+                }
+            } else {
+                for (byte b : bytes) {
+                    writeChar(spec, (char) (b & 0xFF));
+                }
+            }
+            return;
+        }
+
+        CharSequence chars = (CharSequence) value;
+        switch (mode) {
+            case MODE_NUMERIC:
+                writeNumeric(spec, chars);
+                break;
+            case MODE_TEXT:
+                for (int i = 0; i < spec.length; i++) {
+                    writeChar(spec, i < chars.length() ? chars.charAt(i) : ' ');
+                }
+                break;
+            default:
+                if (spec.encoding == Iso8583FieldSpec.Encoding.BINARY) {
+                    for (int i = 0; i + 1 < chars.length(); i += 2) {
+                        putByte((hexDigit(spec, chars.charAt(i)) << 4) | hexDigit(spec, chars.charAt(i + 1)));
+                    }
+                } else {
+                    for (int i = 0; i < chars.length(); i++) {
+                        writeChar(spec, chars.charAt(i));
+                    }
+                }
+                break;
+        }
+    }
+
+    private int valueLength(Iso8583FieldSpec spec, Object value, byte mode) {
+        if (mode != MODE_RAW) {
+            return spec.length;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        int chars = ((CharSequence) value).length();
+        if (spec.encoding == Iso8583FieldSpec.Encoding.BINARY) {
+            if ((chars & 1) != 0) {
+                throw new IllegalArgumentException("DE" + spec.field + " hex value has odd length");
+            }
+            return chars / 2;
+        }
+        return chars;
+    }
+
+    private void writeLengthPrefix(Iso8583FieldSpec spec, int length) {
+        if (spec.lengthType == Iso8583FieldSpec.LengthType.FIXED) {
+            return;
+        }
+        if (spec.prefixEncoding == Iso8583FieldSpec.Encoding.BINARY) {
+            if (spec.lengthType == Iso8583FieldSpec.LengthType.LLLVAR) {
+                putByte(length >> 8);
+            }
+            putByte(length);
+            return;
+        }
+        int digits = spec.prefixDigits();
+        for (int d = digits - 1; d >= 0; d--) {
+            int digit = (length / POW10[d]) % 10;
+            if (spec.prefixEncoding == Iso8583FieldSpec.Encoding.BCD) {
+                putNibble(digit);
+            } else {
+                putByte('0' + digit);
+            }
+        }
+    }
+
+    /**
+     * Zero-pad on the left to the field length, keeping the rightmost digits
+     */
+    private void writeNumeric(Iso8583FieldSpec spec, CharSequence chars) {
+        int digitCount = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitCount++;
+            }
+        }
+        int skip = Math.max(0, digitCount - spec.length);
+        for (int pad = digitCount; pad < spec.length; pad++) {
+            writeChar(spec, '0');
+        }
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            writeChar(spec, c);
+        }
+    }
+
+    private void writeChar(Iso8583FieldSpec spec, char c) {
+        if (spec.encoding == Iso8583FieldSpec.Encoding.BCD) {
+            putNibble(hexDigit(spec, c));
+        } else {
+            putByte(c);
+        }
+    }
+
+    private static int hexDigit(Iso8583FieldSpec spec, char c) {
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            throw new IllegalArgumentException("DE" + spec.field + " contains non-hex character '" + c + "'");
+        }
+        return digit;
+    }
+
+    private void putLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            putByte((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * Write one byte, continuing from a pending half byte left by BCD data
+     */
+    private void putByte(int b) {
+        if (pendingNibble < 0) {
+            buffer.put((byte) b);
+        } else {
+            buffer.put((byte) ((pendingNibble << 4) | ((b >> 4) & 0x0F)));
+            pendingNibble = b & 0x0F;
+        }
+    }
+
+    private void putNibble(int nibble) {
+        if (pendingNibble < 0) {
+            pendingNibble = nibble & 0x0F;
+        } else {
+            buffer.put((byte) ((pendingNibble << 4) | (nibble & 0x0F)));
+            pendingNibble = -1;
+        }
+    }
+
+    private void ensure(int additional) {
+        if (buffer.remaining() >= additional) {
+            return;
+        }
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + additional);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    private static final int[] POW10 = { 1, 10, 100, 1000 };
+}
@@ -0,0 +1,541 @@
+package com.neo.neopayplus.iso;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ISO8583 Traffic Capture
+ *
+ * Records raw frames without touching the disk on the caller's thread:
+ * {@link #capture(byte[], String)} copies the frame into a bounded
+ * lock-free ring and returns. A single background writer drains the ring
+ * into binary segment files and, per segment, a fixed-size index of
+ * timestamp / MTI / STAN / offset / length. If the ring is full the frame
+ * is dropped and counted rather than blocking the send path.
+ *
+ * Segments roll at {@code segmentBytes}; only the newest
+ * {@code maxSegments} are kept.
+ *
+ * Files: iso_NNNNNN.seg (frames back to back) and iso_NNNNNN.idx
+ * ({@link #ENTRY_BYTES}-byte entries, big-endian).
+ */
+public final class IsoCapture {
+
+    private static final String TAG = Constant.TAG;
+
+    /** timestamp(8) + offset(4) + length(4) + MTI(4) + STAN(6) */
+    static final int ENTRY_BYTES = 26;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int BATCH_SIZE = 64;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    private static final String NO_STAN = "------";
+
+    /** Writer instruction to delete all segments (identity-compared) */
+    private static final Record CLEAR = new Record(new byte[0], "", 0L);
+
+    private final File dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    // Ring: producers claim a position with CAS on tail, write the slot and
+    // publish it through its sequence number; the writer is the only consumer.
+    private final int mask;
+    private final Record[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // writer thread only
+    private volatile long written;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+
+    // Writer thread state
+    private int segment;
+    private long segmentSize;
+    private OutputStream segmentOut;
+    private FileOutputStream indexOut;
+    private final ByteBuffer pendingIndex = ByteBuffer.allocate(BATCH_SIZE * ENTRY_BYTES);
+
+    /**
+     * @param dir          Directory holding the segments (created if missing)
+     * @param capacity     Ring size in frames (rounded up to a power of two)
+     * @param segmentBytes Roll over to a new segment beyond this size
+     * @param maxSegments  Number of segments kept on disk
+     */
+    public IsoCapture(File dir, int capacity, int segmentBytes, int maxSegments) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new Record[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        int[] existing = segments();
+        this.segment = existing.length > 0 ? existing[existing.length - 1] : 1;
+
+        this.writer = new Thread(this::drain, "iso-capture");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /**
+     * Queue a frame for capture; never blocks
+     *
+     * @param frame Complete frame or bare application data (copied)
+     * @param mti   Message Type Indicator
+     * @return true if queued, false if the ring was full
+     */
+    public boolean capture(byte[] frame, String mti) {
+        if (offer(new Record(frame.clone(), mti, System.currentTimeMillis()))) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private boolean offer(Record record) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long delta = sequences.get(slot) - position;
+            if (delta == 0L) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[slot] = record;
+                    sequences.set(slot, position + 1);
+                    if (waiting) {
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (delta < 0L) {
+                return false; // Full
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private Record poll() {
+        int slot = (int) (head & mask);
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        Record record = slots[slot];
+        slots[slot] = null;
+        sequences.set(slot, head + slots.length);
+        head++;
+        return record;
+    }
+
+    /**
+     * @return Frames dropped because the ring was full
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Wait until every frame queued so far is on disk
+     *
+     * @return true if the writer caught up within the timeout
+     */
+    public boolean flush(long timeoutMs) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (written < target) {
+            if (System.nanoTime() >= deadline || !writer.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(1_000_000L);
+        }
+        return true;
+    }
+
+    /**
+     * Delete all captured frames
+     *
+     * @return Number of frames deleted
+     */
+    public int clear() {
+        int count = 0;
+        for (int s : segments()) {
+            count += (int) (indexFile(s).length() / ENTRY_BYTES);
+        }
+        while (!offer(CLEAR)) {
+            flush(100);
+        }
+        flush(2000);
+        return count;
+    }
+
+    /**
+     * Stop the writer after draining the ring
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== Writer ====================
+
+    private void drain() {
+        while (true) {
+            int batch = 0;
+            Record record;
+            while (batch < BATCH_SIZE && (record = poll()) != null) {
+                if (record == CLEAR) {
+                    commit();
+                    deleteAll();
+                } else {
+                    write(record);
+                }
+                batch++;
+            }
+            commit();
+            written = head;
+            if (batch > 0) {
+                continue;
+            }
+            if (!running) {
+                closeStreams();
+                return;
+            }
+            waiting = true;
+            if (sequences.get((int) (head & mask)) != head + 1) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            waiting = false;
+        }
+    }
+
+    private void write(Record record) {
+        try {
+            if (segmentOut == null) {
+                open();
+            }
+            if (segmentSize > 0 && segmentSize + record.frame.length > segmentBytes) {
+                commit();
+                closeStreams();
+                segment++;
+                prune();
+                open();
+            }
+            segmentOut.write(record.frame);
+
+            pendingIndex.putLong(record.timestamp);
+            pendingIndex.putInt((int) segmentSize);
+            pendingIndex.putInt(record.frame.length);
+            putAscii(record.mti, 4);
+            putAscii(stanOf(record.frame), 6);
+            segmentSize += record.frame.length;
+        } catch (IOException e) {
+            LogUtil.e(TAG, "ISO capture write failed: " + e.getMessage());
+            closeStreams();
+        }
+    }
+
+    /**
+     * Push buffered frames to disk, then their index entries, so a reader
+     * never sees an entry whose bytes are not yet written
+     */
+    private void commit() {
+        if (segmentOut == null || pendingIndex.position() == 0) {
+            return;
+        }
+        try {
+            segmentOut.flush();
+            indexOut.write(pendingIndex.array(), 0, pendingIndex.position());
+        } catch (IOException e) {
+            LogUtil.e(TAG, "ISO capture flush failed: " + e.getMessage());
+            closeStreams();
+        }
+        pendingIndex.clear();
+    }
+
+    private void open() throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir.getAbsolutePath());
+        }
+        File segmentFile = segmentFile(segment);
+        segmentSize = segmentFile.length();
+        // Drop a partial trailing index entry and any entries whose frame runs
+        // past the end of a truncated segment (e.g. killed mid-write)
+        File indexFile = indexFile(segment);
+        if (indexFile.exists()) {
+            try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+                long validEntries = raf.length() / ENTRY_BYTES;
+                while (validEntries > 0) {
+                    raf.seek((validEntries - 1) * ENTRY_BYTES + 8); // offset, length
+                    long end = (raf.readInt() & 0xFFFFFFFFL) + (raf.readInt() & 0xFFFFFFFFL);
+                    if (end <= segmentSize) {
+                        break;
+                    }
+                    validEntries--;
+                }
+                if (validEntries * ENTRY_BYTES != raf.length()) {
+                    raf.setLength(validEntries * ENTRY_BYTES);
+                }
+            }
+        }
+        segmentOut = new BufferedOutputStream(new FileOutputStream(segmentFile, true), 16 * 1024);
+        indexOut = new FileOutputStream(indexFile, true);
+    }
+
+    private void closeStreams() {
+        pendingIndex.clear();
+        try {
+            if (segmentOut != null) {
+                segmentOut.close();
+            }
+            if (indexOut != null) {
+                indexOut.close();
+            }
+        } catch (IOException e) {
+            LogUtil.e(TAG, "ISO capture close failed: " + e.getMessage());
+        }
+        segmentOut = null;
+        indexOut = null;
+    }
+
+    private void prune() {
+        for (int s : segments()) {
+            if (s <= segment - maxSegments) {
+                segmentFile(s).delete();
+                indexFile(s).delete();
+            }
+        }
+    }
+
+    private void deleteAll() {
+        closeStreams();
+        for (int s : segments()) {
+            segmentFile(s).delete();
+            indexFile(s).delete();
+        }
+        segment = 1;
+        segmentSize = 0;
+    }
+
+    private void putAscii(String value, int length) {
+        for (int i = 0; i < length; i++) {
+            pendingIndex.put(value != null && i < value.length() ? (byte) value.charAt(i) : (byte) ' ');
+        }
+    }
+
+    /**
+     * DE11 of the captured message, decoded off the send path; frames that
+     * do not decode with the PowerCARD table (e.g. BCD-packed 0400) get
+     * {@link #NO_STAN}
+     */
+    static String stanOf(byte[] frame) {
+        try {
+            int offset = isCompleteFrame(frame) ? Iso8583MessageBuilder.APPLICATION_DATA_OFFSET : 0;
+            int length = offset == 0 ? frame.length : Iso8583MessageBuilder.applicationDataLength(frame);
+            String stan = Iso8583MessageReader.parse(Iso8583FieldSpec.POWERCARD, frame, offset, length)
+                    .getString(11);
+            if (stan != null && stan.length() == 6) {
+                return stan;
+            }
+        } catch (RuntimeException e) {
+            // Not decodable with this table
+        }
+        return NO_STAN;
+    }
+
+    private static boolean isCompleteFrame(byte[] frame) {
+        return frame.length > Iso8583MessageBuilder.APPLICATION_DATA_OFFSET
+                && frame[4] == 'I' && frame[5] == 'S' && frame[6] == 'O';
+    }
+
+    // ==================== Reader ====================
+
+    /**
+     * Most recent captured frames (call {@link #flush(long)} first to
+     * include frames still in the ring)
+     *
+     * @param count Maximum number of entries
+     * @return Entries, newest first
+     */
+    public List<Entry> tail(int count) {
+        List<Entry> entries = new ArrayList<>();
+        int[] existing = segments();
+        for (int i = existing.length - 1; i >= 0 && entries.size() < count; i--) {
+            File indexFile = indexFile(existing[i]);
+            try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+                int total = (int) (raf.length() / ENTRY_BYTES);
+                int take = Math.min(total, count - entries.size());
+                byte[] buffer = new byte[take * ENTRY_BYTES];
+                raf.seek((long) (total - take) * ENTRY_BYTES);
+                raf.readFully(buffer);
+                ByteBuffer index = ByteBuffer.wrap(buffer);
+                for (int e = take - 1; e >= 0; e--) {
+                    index.position(e * ENTRY_BYTES);
+                    entries.add(Entry.decode(existing[i], total - take + e, index));
+                }
+            } catch (IOException e) {
+                LogUtil.e(TAG, "ISO capture index unreadable: " + indexFile.getName());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Look up a single index entry
+     *
+     * @return Entry, or null if it no longer exists
+     */
+    public Entry entry(int segment, int index) {
+        File indexFile = indexFile(segment);
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            if (index < 0 || (long) (index + 1) * ENTRY_BYTES > raf.length()) {
+                return null;
+            }
+            byte[] buffer = new byte[ENTRY_BYTES];
+            raf.seek((long) index * ENTRY_BYTES);
+            raf.readFully(buffer);
+            return Entry.decode(segment, index, ByteBuffer.wrap(buffer));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read a captured frame back
+     *
+     * @return Frame bytes, or null if the segment has been rolled away
+     */
+    public byte[] read(Entry entry) {
+        try (RandomAccessFile raf = new RandomAccessFile(segmentFile(entry.segment), "r")) {
+            if (entry.offset + (long) entry.length > raf.length()) {
+                return null;
+            }
+            byte[] frame = new byte[entry.length];
+            raf.seek(entry.offset);
+            raf.readFully(frame);
+            return frame;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private int[] segments() {
+        String[] names = dir.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] numbers = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith("iso_") && name.endsWith(INDEX_SUFFIX)) {
+                try {
+                    numbers[count++] = Integer.parseInt(name.substring(4, name.length() - INDEX_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    // Not ours
+                }
+            }
+        }
+        int[] result = Arrays.copyOf(numbers, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private File segmentFile(int number) {
+        return new File(dir, String.format(Locale.US, "iso_%06d", number) + SEGMENT_SUFFIX);
+    }
+
+    private File indexFile(int number) {
+        return new File(dir, String.format(Locale.US, "iso_%06d", number) + INDEX_SUFFIX);
+    }
+
+    private static final class Record {
+        final byte[] frame;
+        final String mti;
+        final long timestamp;
+
+        Record(byte[] frame, String mti, long timestamp) {
+            this.frame = frame;
+            this.mti = mti;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Index entry of a captured frame
+     */
+    public static final class Entry {
+        public final int segment;
+        public final int index;
+        public final long timestamp;
+        public final String mti;
+        /** DE11, or "------" if it could not be decoded */
+        public final String stan;
+        public final int offset;
+        public final int length;
+
+        private Entry(int segment, int index, long timestamp, String mti, String stan, int offset, int length) {
+            this.segment = segment;
+            this.index = index;
+            this.timestamp = timestamp;
+            this.mti = mti;
+            this.stan = stan;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        static Entry decode(int segment, int index, ByteBuffer buffer) {
+            long timestamp = buffer.getLong();
+            int offset = buffer.getInt();
+            int length = buffer.getInt();
+            byte[] text = new byte[10];
+            buffer.get(text);
+            return new Entry(segment, index, timestamp,
+                    new String(text, 0, 4, StandardCharsets.US_ASCII).trim(),
+                    new String(text, 4, 6, StandardCharsets.US_ASCII).trim(),
+                    offset, length);
+        }
+
+        /**
+         * @return Display name in the old dump-file style:
+         *         iso_yyyyMMdd_HHmmss_MTI_STAN
+         */
+        public String name() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
+            return "iso_" + format.format(new Date(timestamp)) + "_" + mti + "_" + stan;
+        }
+    }
+}
@@ -0,0 +1,627 @@
+package com.neo.neopayplus.iso;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.config.PaymentConfig;
+import com.neo.neopayplus.utils.LatencyTracer;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent ISO 8583 Host Connection
+ *
+ * Keeps one TCP connection to the acquirer host open across transactions
+ * instead of connecting per authorization:
+ * - Pipelining: requests share the link through {@link IsoPipelinedTransport}
+ *   and responses are matched back by MTI + STAN, so an echo test, a queued
+ *   reversal and a live authorization can be outstanding together
+ * - Health check: the selector sees the host closing the connection as soon
+ *   as it happens, and the next request reconnects
+ * - Keep-alive: a 1804 echo test (function code 803) is sent when the line
+ *   has been idle for {@link #DEFAULT_KEEPALIVE_INTERVAL_MS}; an unanswered
+ *   echo drops the connection
+ * - Reconnect: a dropped connection is re-established in the background
+ *   with exponential backoff
+ * - Pre-warm: at card detection {@link #prewarm} connects (skipping any
+ *   reconnect backoff) and checks the link with an echo test while the
+ *   kernel works, so the authorization finds it ready
+ *
+ * All traffic on the ISO socket (authorizations, 1804 network management
+ * and any reversal sent to the host) goes through {@link #send} or
+ * {@link #exchange}. Callers park their blocking exchanges on
+ * {@link #exchangeExecutor()}; connects, pre-warm and reconnects run on a
+ * small pool of their own, so slow exchanges never hold them up. Response
+ * timeouts, the keep-alive check and the pre-warm timeout run on
+ * a separate timer thread, so they fire even while every I/O thread is
+ * busy connecting. A connect runs without the lock held: callers arriving
+ * meanwhile wait for the same connect, and {@link #isConnected()} answers
+ * at once.
+ */
+public final class IsoHostConnection {
+
+    private static final String TAG = Constant.TAG;
+
+    static final long DEFAULT_KEEPALIVE_INTERVAL_MS = 60000; // 1 minute idle
+    private static final int CONNECT_TIMEOUT_MS = 30000;
+    private static final long RECONNECT_BASE_DELAY_MS = 1000;
+    private static final long RECONNECT_MAX_DELAY_MS = 60000;
+    private static final int CONNECT_ATTEMPTS = 3;
+    private static final long CONNECT_RETRY_DELAY_MS = 250;
+    private static final long ECHO_TIMEOUT_MS = 10000;
+    private static final long PREWARM_VALIDATE_IDLE_MS = 20000; // Idle links are echo-tested before use
+    private static final String FUNCTION_CODE_ECHO = "803";
+    private static final AtomicInteger ECHO_STAN = new AtomicInteger(
+            (int) ((System.currentTimeMillis() / 1000) % 1000000));
+
+    // Connects, pre-warm and reconnects
+    private static final ScheduledExecutorService IO_EXECUTOR = Executors.newScheduledThreadPool(2,
+            daemonThreads("iso-io-"));
+
+    // Callers waiting in exchange() (up to the response timeout each)
+    private static final ExecutorService EXCHANGE_EXECUTOR = Executors.newCachedThreadPool(
+            daemonThreads("iso-exchange-"));
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "iso-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static IsoHostConnection instance;
+
+    private final String host;
+    private final int port;
+    private final long keepAliveIntervalMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastActivityMs;
+
+    // Guarded by lock
+    private IsoPipelinedTransport transport;
+    private CompletableFuture<IsoPipelinedTransport> connecting; // Connect in progress, shared by callers
+    private int reconnectFailures;
+    private ScheduledFuture<?> keepAliveTask;
+    private ScheduledFuture<?> reconnectTask;
+    private boolean closed;
+
+    IsoHostConnection(String host, int port, long keepAliveIntervalMs) {
+        this.host = host;
+        this.port = port;
+        this.keepAliveIntervalMs = keepAliveIntervalMs;
+    }
+
+    /**
+     * Get the connection for the configured host
+     * ({@link PaymentConfig#ISO_SOCKET_HOST}/{@link PaymentConfig#ISO_SOCKET_PORT}).
+     * If the configuration has changed, the previous connection is closed.
+     *
+     * @return Shared connection (not yet connected until first use or
+     *         {@link #warmUp()})
+     */
+    public static synchronized IsoHostConnection getInstance() {
+        String host = PaymentConfig.ISO_SOCKET_HOST;
+        int port = PaymentConfig.ISO_SOCKET_PORT;
+        if (instance != null && (!instance.host.equals(host) || instance.port != port)) {
+            LogUtil.e(TAG, "ISO 8583 host changed - closing connection to " + instance.host + ":" + instance.port);
+            instance.close();
+            instance = null;
+        }
+        if (instance == null) {
+            if (host == null || host.isEmpty() || port <= 0) {
+                throw new IllegalStateException("ISO 8583 socket host not configured");
+            }
+            instance = new IsoHostConnection(host, port, DEFAULT_KEEPALIVE_INTERVAL_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Executor for callers that block in {@link #exchange}; it grows with the
+     * number of waiting exchanges, so none of them queues behind another
+     */
+    public static ExecutorService exchangeExecutor() {
+        return EXCHANGE_EXECUTOR;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Open the connection in the background so the first transaction does
+     * not pay for the TCP connect
+     */
+    public void warmUp() {
+        IO_EXECUTOR.execute(() -> {
+            try {
+                ensureConnected(null);
+            } catch (IOException e) {
+                LogUtil.e(TAG, "⚠️ ISO 8583 warm-up connect failed: " + e.getMessage());
+                scheduleReconnect();
+            }
+        });
+    }
+
+    /**
+     * Speculatively open and check the connection ahead of an authorization
+     * (at card detection), in parallel with EMV processing.
+     *
+     * Connects now if there is no open connection, cutting short any
+     * pending reconnect backoff. A new connection, or one idle for
+     * {@link #PREWARM_VALIDATE_IDLE_MS}, is checked with a 1804 echo test;
+     * if that fails it is dropped and opened again once. An authorization
+     * sent meanwhile waits for the connect in progress rather than opening
+     * a second socket.
+     *
+     * Cancel the returned future when the card is removed or the
+     * transaction ends offline: a connect this pre-warm still has in
+     * progress is aborted and its socket closed. A connection already up
+     * stays, as the persistent connection. The timeout has the same effect
+     * as cancelling.
+     *
+     * @param timeoutMs Time allowed for connect and echo test
+     * @return Future completed once the connection is ready, or
+     *         exceptionally with {@link IOException} /
+     *         {@link SocketTimeoutException}
+     */
+    public CompletableFuture<Void> prewarm(long timeoutMs) {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        IsoPipelinedTransport.ConnectAbort abort = new IsoPipelinedTransport.ConnectAbort();
+        ScheduledFuture<?> timeout = TIMER.schedule(() -> {
+            ready.completeExceptionally(new SocketTimeoutException(
+                    "ISO 8583 pre-warm not ready within " + timeoutMs + " ms"));
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        ready.whenComplete((ignored, error) -> {
+            timeout.cancel(false);
+            if (error != null) {
+                abort.abort();
+            }
+        });
+
+        long start = LatencyTracer.start();
+        IO_EXECUTOR.execute(() -> prewarm(ready, abort, true));
+        ready.thenRun(() -> LatencyTracer.end(LatencyTracer.Phase.HOST_PREWARM, start));
+        return ready;
+    }
+
+    private void prewarm(CompletableFuture<Void> ready, IsoPipelinedTransport.ConnectAbort abort,
+            boolean validate) {
+        if (ready.isDone()) {
+            return; // Cancelled before it started
+        }
+        boolean fresh;
+        lock.lock();
+        try {
+            // A card is in the field: connect now rather than when the backoff expires
+            cancel(reconnectTask);
+            reconnectTask = null;
+            fresh = transport == null || !transport.isOpen();
+        } finally {
+            lock.unlock();
+        }
+        IsoPipelinedTransport connected;
+        try {
+            connected = ensureConnected(abort);
+        } catch (IOException e) {
+            if (!abort.isAborted()) {
+                LogUtil.e(TAG, "⚠️ ISO 8583 pre-warm connect failed: " + e.getMessage());
+                scheduleReconnect();
+            }
+            ready.completeExceptionally(e);
+            return;
+        }
+        if (ready.isDone()) {
+            return; // Cancelled as the connect completed: the connection stays for the next transaction
+        }
+
+        if (!validate || (!fresh && System.currentTimeMillis() - lastActivityMs < PREWARM_VALIDATE_IDLE_MS)) {
+            ready.complete(null);
+            return;
+        }
+
+        String stan = nextEchoStan();
+        byte[] echo = buildEcho(stan);
+        if (echo == null || echo.length == 0) {
+            ready.complete(null); // Connected; nothing to check it with
+            return;
+        }
+        lastActivityMs = System.currentTimeMillis();
+        CompletableFuture<byte[]> check = connected.send(echo, stan, ECHO_TIMEOUT_MS);
+        ready.whenComplete((ignored, error) -> check.cancel(false));
+        check.whenComplete((response, error) -> {
+            if (ready.isDone()) {
+                return;
+            }
+            if (error == null) {
+                lastActivityMs = System.currentTimeMillis();
+                ready.complete(null);
+                return;
+            }
+            LogUtil.e(TAG, "⚠️ ISO 8583 pre-warm echo test failed - reconnecting: " + error.getMessage());
+            lock.lock();
+            try {
+                if (transport == connected) {
+                    dropConnection();
+                }
+            } finally {
+                lock.unlock();
+            }
+            IO_EXECUTOR.execute(() -> prewarm(ready, abort, false));
+        });
+    }
+
+    /**
+     * Send a complete frame without waiting for the response
+     *
+     * Connects first if needed (the only part that blocks the caller).
+     *
+     * @param frame     Complete frame from {@link Iso8583MessageBuilder}
+     * @param stan      STAN (DE11) carried by the frame
+     * @param timeoutMs Response timeout in milliseconds
+     * @return Future completed with the complete response frame, or
+     *         exceptionally with {@link SocketTimeoutException} /
+     *         {@link IOException}
+     */
+    public CompletableFuture<byte[]> send(byte[] frame, String stan, long timeoutMs) {
+        IsoPipelinedTransport connected;
+        try {
+            connected = ensureConnected(null);
+        } catch (IOException e) {
+            scheduleReconnect();
+            CompletableFuture<byte[]> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        lastActivityMs = System.currentTimeMillis();
+        return connected.send(frame, stan, timeoutMs).whenComplete((response, error) -> {
+            if (response != null) {
+                lastActivityMs = System.currentTimeMillis();
+            }
+        });
+    }
+
+    /**
+     * Send a complete frame and wait for the host's response frame
+     *
+     * @param frame     Complete frame from {@link Iso8583MessageBuilder}
+     * @param stan      STAN (DE11) carried by the frame
+     * @param timeoutMs Response timeout in milliseconds
+     * @return Complete response frame
+     * @throws IOException if the host cannot be reached, the connection fails
+     *                     or no response arrives in time
+     */
+    public byte[] exchange(byte[] frame, String stan, long timeoutMs) throws IOException {
+        try {
+            return send(frame, stan, timeoutMs).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause != null ? cause.getMessage() : "ISO 8583 exchange failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for ISO 8583 response", e);
+        }
+    }
+
+    /**
+     * @return true if a connection is currently open
+     */
+    public boolean isConnected() {
+        lock.lock();
+        try {
+            return transport != null && transport.isOpen();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the connection and stop keep-alive/reconnect timers
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            cancel(reconnectTask);
+            reconnectTask = null;
+            dropConnection();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return an open transport, connecting if needed. Called without the
+     * lock held; the connect itself runs unlocked and only its result is
+     * published under the lock. A caller arriving while a connect is in
+     * progress waits for that one instead of opening a second socket.
+     *
+     * @param abort Lets a pre-warm abort its own connect (null otherwise)
+     */
+    private IsoPipelinedTransport ensureConnected(IsoPipelinedTransport.ConnectAbort abort) throws IOException {
+        while (true) {
+            CompletableFuture<IsoPipelinedTransport> pending;
+            boolean owner = false;
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IOException("ISO 8583 connection closed");
+                }
+                if (transport != null) {
+                    if (transport.isOpen()) {
+                        return transport;
+                    }
+                    dropConnection();
+                }
+                pending = connecting;
+                if (pending == null) {
+                    pending = new CompletableFuture<>();
+                    connecting = pending;
+                    owner = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (owner) {
+                return connect(pending, abort);
+            }
+            try {
+                return await(pending);
+            } catch (ClosedChannelException e) {
+                if (abort != null && abort.isAborted()) {
+                    throw e;
+                }
+                // The pre-warm that owned the connect was cancelled: connect ourselves
+            }
+        }
+    }
+
+    /**
+     * Connect (outside the lock), then publish the transport and complete
+     * {@code pending} for the callers waiting on it
+     */
+    private IsoPipelinedTransport connect(CompletableFuture<IsoPipelinedTransport> pending,
+            IsoPipelinedTransport.ConnectAbort abort) throws IOException {
+        IsoPipelinedTransport opened = null;
+        IOException error = null;
+        try {
+            opened = connectWithRetry(abort);
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("ISO 8583 connect failed", e);
+        }
+
+        lock.lock();
+        try {
+            connecting = null;
+            if (opened != null && closed) {
+                opened.close(); // Closed while connecting
+                opened = null;
+                error = new IOException("ISO 8583 connection closed");
+            }
+            if (opened != null) {
+                transport = opened;
+                lastActivityMs = System.currentTimeMillis();
+                reconnectFailures = 0;
+                cancel(reconnectTask);
+                reconnectTask = null;
+                scheduleKeepAlive();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (error != null) {
+            pending.completeExceptionally(error);
+            throw error;
+        }
+        pending.complete(opened);
+        return opened;
+    }
+
+    private IsoPipelinedTransport connectWithRetry(IsoPipelinedTransport.ConnectAbort abort) throws IOException {
+        IOException lastError = null;
+        for (int attempt = 0; attempt < CONNECT_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                sleep(CONNECT_RETRY_DELAY_MS << (attempt - 1));
+            }
+            try {
+                long connectStart = LatencyTracer.start();
+                IsoPipelinedTransport opened = IsoPipelinedTransport.connect(host, port, CONNECT_TIMEOUT_MS,
+                        TIMER, this::onConnectionLost, abort);
+                LatencyTracer.end(LatencyTracer.Phase.HOST_CONNECT, connectStart);
+                return opened;
+            } catch (SocketTimeoutException e) {
+                throw e; // Host unreachable - retrying would only multiply the connect timeout
+            } catch (ClosedChannelException e) {
+                throw e; // Aborted
+            } catch (IOException e) {
+                LogUtil.e(TAG, "✗ Failed to connect to ISO 8583 server: " + e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private static IsoPipelinedTransport await(CompletableFuture<IsoPipelinedTransport> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("ISO 8583 connect failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting", e);
+        }
+    }
+
+    private void onConnectionLost(IOException cause) {
+        lock.lock();
+        try {
+            if (transport != null && !transport.isOpen()) {
+                dropConnection();
+                scheduleReconnect();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropConnection() {
+        cancel(keepAliveTask);
+        keepAliveTask = null;
+        if (transport != null) {
+            transport.close();
+            transport = null;
+        }
+    }
+
+    private void scheduleKeepAlive() {
+        cancel(keepAliveTask);
+        long checkEveryMs = Math.max(1, keepAliveIntervalMs / 4);
+        keepAliveTask = TIMER.scheduleWithFixedDelay(this::keepAlive,
+                checkEveryMs, checkEveryMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send an echo test if the line has been idle for the keep-alive interval
+     */
+    private void keepAlive() {
+        IsoPipelinedTransport current;
+        lock.lock();
+        try {
+            current = transport;
+        } finally {
+            lock.unlock();
+        }
+        if (current == null || !current.isOpen()
+                || System.currentTimeMillis() - lastActivityMs < keepAliveIntervalMs) {
+            return;
+        }
+
+        String stan = nextEchoStan();
+        byte[] echo = buildEcho(stan);
+        if (echo == null || echo.length == 0) {
+            LogUtil.e(TAG, "⚠️ Could not build 1804 echo test");
+            return;
+        }
+
+        lastActivityMs = System.currentTimeMillis();
+        current.send(echo, stan, ECHO_TIMEOUT_MS).whenComplete((response, error) -> {
+            if (error != null) {
+                LogUtil.e(TAG, "⚠️ Echo test failed - dropping connection: " + error.getMessage());
+                lock.lock();
+                try {
+                    if (transport == current) {
+                        dropConnection();
+                        scheduleReconnect();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            Iso8583ResponseParser.NetworkManagementResponse parsed = Iso8583ResponseParser
+                    .parse1814(Iso8583MessageBuilder.parseResponse(response));
+            if (parsed == null || !parsed.success) {
+                LogUtil.e(TAG, "⚠️ Echo test not acknowledged: "
+                        + (parsed != null ? parsed.actionCode : "unparseable response"));
+            }
+        });
+    }
+
+    /**
+     * Complete 1804 echo test frame
+     */
+    private static byte[] buildEcho(String stan) {
+        return Iso8583MessageBuilder.buildCompleteMessage(
+                Iso8583Packer.pack1804(FUNCTION_CODE_ECHO, stan, null),
+                PaymentConfig.ISO_DESTINATION_ADDRESS, null);
+    }
+
+    /**
+     * STAN for an echo test; keep-alive and pre-warm echoes can be
+     * outstanding together, so they must not share one
+     */
+    private static String nextEchoStan() {
+        return String.format(Locale.US, "%06d", ECHO_STAN.incrementAndGet() % 1000000);
+    }
+
+    /**
+     * Reconnect in the background after 1 s, 2 s, 4 s ... up to 60 s
+     */
+    private void scheduleReconnect() {
+        lock.lock();
+        try {
+            if (closed || (reconnectTask != null && !reconnectTask.isDone())) {
+                return;
+            }
+            long delay = Math.min(RECONNECT_MAX_DELAY_MS,
+                    RECONNECT_BASE_DELAY_MS << Math.min(reconnectFailures, 16));
+            reconnectFailures++;
+            LogUtil.e(TAG, "ISO 8583 reconnect scheduled in " + delay + " ms");
+            reconnectTask = IO_EXECUTOR.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reconnect() {
+        lock.lock();
+        try {
+            reconnectTask = null;
+            if (closed || transport != null) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            ensureConnected(null);
+            LogUtil.e(TAG, "✓ ISO 8583 connection re-established");
+        } catch (IOException e) {
+            LogUtil.e(TAG, "⚠️ ISO 8583 reconnect failed: " + e.getMessage());
+            scheduleReconnect();
+        }
+    }
+
+    private static void cancel(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private static void sleep(long ms) throws IOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting", e);
+        }
+    }
+}
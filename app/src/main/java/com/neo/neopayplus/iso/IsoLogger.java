@@ -7,218 +7,192 @@ import com.neo.neopayplus.MyApplication;
 import com.neo.neopayplus.utils.LogUtil;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.Scanner;
 
 /**
  * ISO8583 Logger
- * 
- * Writes raw ISO8583 frames to disk for debugging
+ *
+ * Captures raw ISO8583 frames for debugging through {@link IsoCapture}:
+ * frames are queued in memory and written by a background thread to
+ * binary segment files, so saving adds no disk I/O to the send path.
+ * Hex dumps are only rendered when a log is read.
+ *
  * Location: /Android/data/com.neo.neopayplus/files/iso_logs/
- * Format: yyyymmdd_hhmmss_MTI.txt
- * 
+ *
  * No storage permission needed (app's external files directory)
  */
 public class IsoLogger {
-    
+
     private static final String TAG = Constant.TAG;
     private static final String LOG_DIR = "iso_logs";
-    private static final String FILE_PREFIX = "iso_";
-    private static final int MAX_LOG_FILES = 100; // Keep last 100 log files
-    
+    private static final String LEGACY_SUFFIX = ".txt";
+    private static final int RING_CAPACITY = 256;
+    private static final int SEGMENT_BYTES = 256 * 1024;
+    private static final int MAX_SEGMENTS = 8; // ~2 MB of frames
+    private static final long FLUSH_TIMEOUT_MS = 1000;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static volatile IsoCapture capture;
+
     /**
-     * Save ISO8583 frame to disk (DEBUG builds only)
-     * 
-     * SECURITY: Only saves files in DEBUG builds to prevent sensitive data leakage
-     * 
+     * Queue ISO8583 frame for capture (DEBUG builds only)
+     *
+     * SECURITY: Only captures frames in DEBUG builds to prevent sensitive data leakage
+     *
      * @param isoFrame Raw ISO8583 binary frame
      * @param mti Message Type Indicator (e.g., "0100", "0400")
-     * @return File path if successful, null otherwise
+     * @return true if the frame was queued
      */
-    public static String save(byte[] isoFrame, String mti) {
-        // SECURITY: Only save files in DEBUG builds
+    public static boolean save(byte[] isoFrame, String mti) {
+        // SECURITY: Only save frames in DEBUG builds
         if (!BuildConfig.DEBUG) {
-            return null;
+            return false;
         }
-        
+
         if (isoFrame == null || isoFrame.length == 0) {
             LogUtil.e(TAG, "⚠️ Empty ISO frame - skipping save");
-            return null;
+            return false;
         }
-        
+
         // Input validation
         if (mti == null || mti.trim().isEmpty()) {
             LogUtil.e(TAG, "⚠️ Invalid MTI - skipping save");
-            return null;
-        }
-        
-        try {
-            Context context = MyApplication.app;
-            File logDir = getLogDirectory(context);
-            
-            if (!logDir.exists() && !logDir.mkdirs()) {
-                LogUtil.e(TAG, "❌ Failed to create log directory: " + logDir.getAbsolutePath());
-                return null;
-            }
-            
-            // Generate filename: yyyymmdd_hhmmss_MTI.txt
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
-            String timestamp = dateFormat.format(new Date());
-            String filename = FILE_PREFIX + timestamp + "_" + mti + ".txt";
-            File logFile = new File(logDir, filename);
-            
-            // Write ISO frame as hex dump
-            FileWriter writer = new FileWriter(logFile);
-            writer.write("ISO8583 Frame - MTI: " + mti + "\n");
-            writer.write("Timestamp: " + new Date().toString() + "\n");
-            writer.write("Length: " + isoFrame.length + " bytes\n");
-            writer.write("Hex Dump:\n");
-            
-            // Write hex dump (16 bytes per line)
-            for (int i = 0; i < isoFrame.length; i++) {
-                if (i > 0 && i % 16 == 0) {
-                    writer.write("\n");
-                }
-                writer.write(String.format("%02X ", isoFrame[i]));
-            }
-            writer.write("\n");
-            
-            // Write ASCII representation (if printable)
-            writer.write("\nASCII (if printable):\n");
-            for (byte b : isoFrame) {
-                char c = (char) (b & 0xFF);
-                if (c >= 32 && c < 127) {
-                    writer.write(c);
-                } else {
-                    writer.write(".");
-                }
-            }
-            writer.write("\n");
-            
-            writer.close();
-            
-            LogUtil.e(TAG, "✓ ISO8583 frame saved: " + logFile.getAbsolutePath());
-            
-            // Clean up old log files (keep last MAX_LOG_FILES)
-            cleanupOldLogs(logDir);
-            
-            return logFile.getAbsolutePath();
-            
-        } catch (IOException e) {
-            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Saving ISO frame", e);
-            return null;
+            return false;
         }
+
+        return capture().capture(isoFrame, mti);
     }
-    
+
     /**
      * Get last N ISO log entries (DEBUG builds only)
-     * 
-     * SECURITY: Only retrieves files in DEBUG builds
-     * 
+     *
+     * SECURITY: Only retrieves entries in DEBUG builds
+     *
+     * Keys have the form "segment/index/iso_yyyyMMdd_HHmmss_MTI_STAN", so
+     * the part after the last '/' reads like the old dump file names.
+     *
      * @param count Number of entries to retrieve
-     * @return List of log file paths (most recent first)
+     * @return List of log keys for {@link #readLog(String)} (most recent first)
      */
     public static List<String> tail(int count) {
-        // SECURITY: Only retrieve files in DEBUG builds
+        // SECURITY: Only retrieve entries in DEBUG builds
         if (!BuildConfig.DEBUG) {
             return new ArrayList<>();
         }
-        
+
         // Input validation
         if (count <= 0) {
             LogUtil.e(TAG, "⚠️ Invalid count - must be > 0");
             return new ArrayList<>();
         }
-        
+
         List<String> logs = new ArrayList<>();
-        
+
         try {
-            Context context = MyApplication.app;
-            File logDir = getLogDirectory(context);
-            
-            if (!logDir.exists() || !logDir.isDirectory()) {
-                LogUtil.e(TAG, "Log directory does not exist: " + logDir.getAbsolutePath());
-                return logs;
-            }
-            
-            File[] files = logDir.listFiles();
-            if (files == null || files.length == 0) {
-                LogUtil.e(TAG, "No ISO log files found");
-                return logs;
-            }
-            
-            // Sort by last modified (newest first)
-            java.util.Arrays.sort(files, (f1, f2) -> 
-                Long.compare(f2.lastModified(), f1.lastModified())
-            );
-            
-            // Get last N files
-            int takeCount = Math.min(count, files.length);
-            for (int i = 0; i < takeCount; i++) {
-                logs.add(files[i].getAbsolutePath());
+            IsoCapture isoCapture = capture();
+            isoCapture.flush(FLUSH_TIMEOUT_MS);
+            for (IsoCapture.Entry entry : isoCapture.tail(count)) {
+                logs.add(entry.segment + "/" + entry.index + "/" + entry.name());
             }
-            
+
             LogUtil.e(TAG, "✓ Retrieved " + logs.size() + " ISO log entries");
-            
+
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Retrieving ISO logs", e);
         }
-        
+
         return logs;
     }
-    
+
     /**
-     * Read log file content (DEBUG builds only)
-     * 
-     * SECURITY: Only reads files in DEBUG builds
-     * 
-     * @param filePath Full path to log file
-     * @return Log file content, or null if error
+     * Render a captured frame as a hex dump (DEBUG builds only)
+     *
+     * SECURITY: Only reads frames in DEBUG builds
+     *
+     * @param logKey Key returned by {@link #tail(int)}
+     * @return Hex dump, or null if the frame is no longer available
      */
-    public static String readLog(String filePath) {
-        // SECURITY: Only read files in DEBUG builds
+    public static String readLog(String logKey) {
+        // SECURITY: Only read frames in DEBUG builds
         if (!BuildConfig.DEBUG) {
             return null;
         }
-        
+
         // Input validation
-        if (filePath == null || filePath.trim().isEmpty()) {
-            LogUtil.e(TAG, "⚠️ Invalid file path");
+        if (logKey == null || logKey.trim().isEmpty()) {
+            LogUtil.e(TAG, "⚠️ Invalid log key");
             return null;
         }
-        
+
         try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                LogUtil.e(TAG, "Log file not found: " + filePath);
+            String[] parts = logKey.split("/", 3);
+            IsoCapture isoCapture = capture();
+            IsoCapture.Entry entry = isoCapture.entry(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+            byte[] isoFrame = entry != null ? isoCapture.read(entry) : null;
+            if (isoFrame == null) {
+                LogUtil.e(TAG, "Log entry not found: " + logKey);
                 return null;
             }
-            
-            StringBuilder content = new StringBuilder();
-            Scanner scanner = new Scanner(file);
-            while (scanner.hasNextLine()) {
-                content.append(scanner.nextLine()).append("\n");
-            }
-            scanner.close();
-            
-            return content.toString();
-            
-        } catch (IOException e) {
-            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Reading log file", e);
+            return format(entry, isoFrame);
+
+        } catch (RuntimeException e) {
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Reading log entry", e);
             return null;
         }
     }
-    
+
+    /**
+     * Hex dump (16 bytes per line) plus printable ASCII
+     */
+    static String format(IsoCapture.Entry entry, byte[] isoFrame) {
+        StringBuilder dump = new StringBuilder(isoFrame.length * 4 + 160);
+        dump.append("ISO8583 Frame - MTI: ").append(entry.mti).append('\n');
+        dump.append("STAN: ").append(entry.stan).append('\n');
+        dump.append("Timestamp: ").append(new Date(entry.timestamp)).append('\n');
+        dump.append("Length: ").append(isoFrame.length).append(" bytes\n");
+        dump.append("Hex Dump:\n");
+        for (int i = 0; i < isoFrame.length; i++) {
+            if (i > 0 && i % 16 == 0) {
+                dump.append('\n');
+            }
+            dump.append(HEX[(isoFrame[i] >> 4) & 0x0F]).append(HEX[isoFrame[i] & 0x0F]).append(' ');
+        }
+        dump.append('\n');
+
+        dump.append("\nASCII (if printable):\n");
+        for (byte b : isoFrame) {
+            char c = (char) (b & 0xFF);
+            dump.append(c >= 32 && c < 127 ? c : '.');
+        }
+        dump.append('\n');
+        return dump.toString();
+    }
+
+    /**
+     * Lazily start the capture writer
+     */
+    private static IsoCapture capture() {
+        IsoCapture current = capture;
+        if (current == null) {
+            synchronized (IsoLogger.class) {
+                current = capture;
+                if (current == null) {
+                    File logDir = getLogDirectory(MyApplication.app);
+                    deleteLegacyDumps(logDir);
+                    current = new IsoCapture(logDir, RING_CAPACITY, SEGMENT_BYTES, MAX_SEGMENTS);
+                    capture = current;
+                }
+            }
+        }
+        return current;
+    }
+
     /**
      * Get log directory
      * Location: /Android/data/com.neo.neopayplus/files/iso_logs/
-     * 
+     *
      * @param context Application context
      * @return Log directory File object
      */
@@ -229,82 +203,45 @@ public class IsoLogger {
             // Fallback to internal files directory
             filesDir = context.getFilesDir();
         }
-        
+
         return new File(filesDir, LOG_DIR);
     }
-    
+
     /**
-     * Clean up old log files (keep last MAX_LOG_FILES)
-     * 
-     * @param logDir Log directory
+     * Remove text dumps written by earlier versions (one file per frame)
      */
-    private static void cleanupOldLogs(File logDir) {
-        try {
-            File[] files = logDir.listFiles();
-            if (files == null || files.length <= MAX_LOG_FILES) {
-                return; // No cleanup needed
-            }
-            
-            // Sort by last modified (oldest first)
-            java.util.Arrays.sort(files, (f1, f2) -> 
-                Long.compare(f1.lastModified(), f2.lastModified())
-            );
-            
-            // Delete oldest files
-            int deleteCount = files.length - MAX_LOG_FILES;
-            for (int i = 0; i < deleteCount; i++) {
-                boolean deleted = files[i].delete();
-                if (deleted) {
-                    LogUtil.e(TAG, "✓ Deleted old log file: " + files[i].getName());
-                }
+    private static void deleteLegacyDumps(File logDir) {
+        File[] legacy = logDir.listFiles((dir, name) -> name.endsWith(LEGACY_SUFFIX));
+        if (legacy != null) {
+            for (File file : legacy) {
+                file.delete();
             }
-            
-        } catch (Exception e) {
-            LogUtil.e(TAG, "❌ Error cleaning up old logs: " + e.getMessage());
         }
     }
-    
+
     /**
-     * Clear all log files (DEBUG builds only, for testing/admin)
-     * 
-     * SECURITY: Only clears files in DEBUG builds
-     * 
-     * @return Number of files deleted
+     * Clear all captured frames (DEBUG builds only, for testing/admin)
+     *
+     * SECURITY: Only clears frames in DEBUG builds
+     *
+     * @return Number of frames deleted
      */
     public static int clearAll() {
-        // SECURITY: Only clear files in DEBUG builds
+        // SECURITY: Only clear frames in DEBUG builds
         if (!BuildConfig.DEBUG) {
             return 0;
         }
-        
+
         int deleted = 0;
-        
+
         try {
-            Context context = MyApplication.app;
-            File logDir = getLogDirectory(context);
-            
-            if (!logDir.exists() || !logDir.isDirectory()) {
-                return 0;
-            }
-            
-            File[] files = logDir.listFiles();
-            if (files == null) {
-                return 0;
-            }
-            
-            for (File file : files) {
-                if (file.delete()) {
-                    deleted++;
-                }
-            }
-            
-            LogUtil.e(TAG, "✓ Cleared " + deleted + " ISO log files");
-            
+            deleted = capture().clear();
+            LogUtil.e(TAG, "✓ Cleared " + deleted + " ISO frames");
+
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Clearing ISO logs", e);
         }
-        
+
         return deleted;
     }
 }
-
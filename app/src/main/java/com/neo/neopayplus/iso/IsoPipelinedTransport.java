@@ -0,0 +1,476 @@
+package com.neo.neopayplus.iso;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.utils.LatencyTracer;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined ISO 8583 Transport (java.nio)
+ *
+ * Carries several outstanding requests over one TCP connection. A single
+ * selector thread writes queued frames and reads response frames
+ * (4-byte ASCII length prefix + message); each response is handed to the
+ * caller whose request it answers, matched on response MTI + STAN (DE11):
+ * - 1200 with STAN 000123 is answered by 1210 with STAN 000123
+ * - 1804 by 1814, 0400 by 0410, 1420 by 1430, etc.
+ *
+ * A response without a decodable DE11 goes to the oldest outstanding
+ * request expecting that MTI. Responses nobody waits for (late answers to
+ * timed-out requests) are logged and dropped.
+ *
+ * Timeouts are per request and run on a scheduler, so no thread blocks
+ * waiting for the host. When the connection fails every outstanding request
+ * completes exceptionally and the {@link Listener} is told.
+ */
+public final class IsoPipelinedTransport {
+
+    private static final String TAG = Constant.TAG;
+
+    private static final int LENGTH_PREFIX = 4;
+    private static final int INITIAL_READ_BUFFER = 4096;
+
+    /**
+     * Notified once when the connection fails (not when {@link #close()} is called)
+     */
+    public interface Listener {
+        void onClosed(IOException cause);
+    }
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final ScheduledExecutorService timer;
+    private final Listener listener;
+    private final Queue<Outgoing> writeQueue = new ConcurrentLinkedQueue<>();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread ioThread;
+    private volatile boolean closed;
+
+    // Selector thread only
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private Outgoing currentWrite;
+    private long frameStartNanos; // When the first byte of the frame being read arrived
+
+    private static final class Pending {
+        final String key;
+        final String responseMti;
+        final long order;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        ScheduledFuture<?> timeout;
+        volatile long sentNanos;
+
+        Pending(String key, String responseMti, long order) {
+            this.key = key;
+            this.responseMti = responseMti;
+            this.order = order;
+        }
+    }
+
+    private static final class Outgoing {
+        final ByteBuffer buffer;
+        final Pending request;
+        final long queuedNanos;
+
+        Outgoing(ByteBuffer buffer, Pending request, long queuedNanos) {
+            this.buffer = buffer;
+            this.request = request;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private IsoPipelinedTransport(SocketChannel channel, Selector selector,
+            ScheduledExecutorService timer, Listener listener) {
+        this.channel = channel;
+        this.selector = selector;
+        this.timer = timer;
+        this.listener = listener;
+        this.ioThread = new Thread(this::run, "iso-nio");
+        this.ioThread.setDaemon(true);
+    }
+
+    /**
+     * Connect to the host and start the selector thread
+     *
+     * @param host             Host address
+     * @param port             Port number
+     * @param connectTimeoutMs TCP connect timeout
+     * @param timer            Scheduler for per-request timeouts
+     * @param listener         Told when the connection fails (may be null)
+     * @return Connected transport
+     * @throws IOException if the connection cannot be established
+     */
+    public static IsoPipelinedTransport connect(String host, int port, int connectTimeoutMs,
+            ScheduledExecutorService timer, Listener listener) throws IOException {
+        return connect(host, port, connectTimeoutMs, timer, listener, null);
+    }
+
+    /**
+     * As {@link #connect(String, int, int, ScheduledExecutorService, Listener)},
+     * abortable from another thread while the TCP connect is under way
+     *
+     * @param abort Aborts the connect (may be null); once aborted this
+     *              throws {@link ClosedChannelException}
+     */
+    public static IsoPipelinedTransport connect(String host, int port, int connectTimeoutMs,
+            ScheduledExecutorService timer, Listener listener, ConnectAbort abort) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        Selector selector = null;
+        try {
+            if (abort != null && !abort.attach(channel)) {
+                throw new ClosedChannelException();
+            }
+            channel.socket().connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            if (abort != null && !abort.detach(channel)) {
+                throw new ClosedChannelException(); // Aborted just as the connect completed
+            }
+            channel.socket().setTcpNoDelay(true); // Disable Nagle's algorithm for low latency
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            if (selector != null) {
+                selector.close();
+            }
+            throw e;
+        }
+        IsoPipelinedTransport transport = new IsoPipelinedTransport(channel, selector, timer, listener);
+        transport.ioThread.start();
+        LogUtil.e(TAG, "✓ Connected to ISO 8583 server " + host + ":" + port);
+        return transport;
+    }
+
+    /**
+     * Aborts a {@link #connect} in progress by closing its channel, so the
+     * socket is released at once instead of when the connect times out
+     */
+    public static final class ConnectAbort {
+        private SocketChannel channel;
+        private boolean aborted;
+
+        /**
+         * Close the channel being connected; later connects with this abort fail at once
+         */
+        public synchronized void abort() {
+            aborted = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Closing anyway
+                }
+                channel = null;
+            }
+        }
+
+        public synchronized boolean isAborted() {
+            return aborted;
+        }
+
+        synchronized boolean attach(SocketChannel connecting) {
+            channel = connecting;
+            return !aborted;
+        }
+
+        synchronized boolean detach(SocketChannel connected) {
+            if (channel == connected) {
+                channel = null;
+            }
+            return !aborted;
+        }
+    }
+
+    /**
+     * Queue a request frame
+     *
+     * @param frame     Complete frame from {@link Iso8583MessageBuilder}
+     * @param stan      STAN (DE11) carried by the request, used to match the response
+     * @param timeoutMs Time allowed for the response
+     * @return Future completed with the complete response frame, or
+     *         exceptionally with {@link SocketTimeoutException} on timeout,
+     *         {@link IOException} if the connection fails first or
+     *         {@link IllegalArgumentException} if the frame has no MTI
+     */
+    public CompletableFuture<byte[]> send(byte[] frame, String stan, long timeoutMs) {
+        String requestMti = requestMti(frame);
+        if (requestMti == null) {
+            CompletableFuture<byte[]> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalArgumentException("Frame too short to carry an MTI"));
+            return failed;
+        }
+        String responseMti = responseMti(requestMti);
+        String key = correlationKey(responseMti, Iso8583Packer.zeroPadNumeric(stan, 6));
+        Pending request = new Pending(key, responseMti, sequence.getAndIncrement());
+
+        if (closed) {
+            request.future.completeExceptionally(new IOException("ISO 8583 connection closed"));
+            return request.future;
+        }
+        if (pending.putIfAbsent(key, request) != null) {
+            request.future.completeExceptionally(
+                    new IllegalStateException("Request " + key + " is already outstanding"));
+            return request.future;
+        }
+
+        request.timeout = timer.schedule(() -> {
+            if (pending.remove(key, request)) {
+                request.future.completeExceptionally(
+                        new SocketTimeoutException("No response to " + key + " within " + timeoutMs + " ms"));
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        // Caller cancellation or any completion releases the slot
+        request.future.whenComplete((response, error) -> {
+            pending.remove(key, request);
+            request.timeout.cancel(false);
+        });
+
+        if (closed) {
+            // Raced with a failing connection after registration
+            if (pending.remove(key, request)) {
+                request.future.completeExceptionally(new IOException("ISO 8583 connection closed"));
+            }
+            return request.future;
+        }
+
+        writeQueue.add(new Outgoing(ByteBuffer.wrap(frame), request, LatencyTracer.start()));
+        selector.wakeup();
+        return request.future;
+    }
+
+    /**
+     * @return Number of requests waiting for a response
+     */
+    public int outstanding() {
+        return pending.size();
+    }
+
+    /**
+     * @return true until the connection fails or is closed
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Close the connection; outstanding requests fail with {@link IOException}
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void run() {
+        IOException failure = null;
+        try {
+            SelectionKey key = channel.keyFor(selector);
+            while (!closed) {
+                boolean wantWrite = currentWrite != null || !writeQueue.isEmpty();
+                key.interestOps(wantWrite ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                selector.select();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey ready = selected.next();
+                    selected.remove();
+                    if (ready.isReadable()) {
+                        read();
+                    }
+                    if (ready.isValid() && ready.isWritable()) {
+                        write();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("ISO 8583 transport failed", e);
+        }
+        shutdown(failure);
+    }
+
+    private void write() throws IOException {
+        while (true) {
+            if (currentWrite == null) {
+                currentWrite = writeQueue.poll();
+                if (currentWrite == null) {
+                    return;
+                }
+            }
+            channel.write(currentWrite.buffer);
+            if (currentWrite.buffer.hasRemaining()) {
+                return; // Socket buffer full - wait for OP_WRITE
+            }
+            long now = LatencyTracer.start();
+            currentWrite.request.sentNanos = now;
+            LatencyTracer.get().record(LatencyTracer.Phase.HOST_SEND, now - currentWrite.queuedNanos);
+            currentWrite = null;
+        }
+    }
+
+    private void read() throws IOException {
+        if (!readBuffer.hasRemaining()) {
+            readBuffer = grow(readBuffer, readBuffer.capacity() * 2);
+        }
+        boolean empty = readBuffer.position() == 0;
+        if (channel.read(readBuffer) < 0) {
+            throw new EOFException("Connection closed by server");
+        }
+        long readNanos = LatencyTracer.start();
+        if (empty) {
+            frameStartNanos = readNanos;
+        }
+
+        readBuffer.flip();
+        while (readBuffer.remaining() >= LENGTH_PREFIX) {
+            int start = readBuffer.position();
+            int messageLength = parseLength(readBuffer, start);
+            int frameLength = LENGTH_PREFIX + messageLength;
+            if (readBuffer.remaining() < frameLength) {
+                if (readBuffer.capacity() < frameLength) {
+                    readBuffer.compact();
+                    readBuffer = grow(readBuffer, frameLength);
+                    readBuffer.flip();
+                }
+                break;
+            }
+            byte[] frame = new byte[frameLength];
+            readBuffer.get(frame);
+            dispatch(frame);
+            frameStartNanos = readNanos; // Any leftover bytes start the next frame
+        }
+        readBuffer.compact();
+    }
+
+    private static int parseLength(ByteBuffer buffer, int start) throws IOException {
+        int length = 0;
+        for (int i = 0; i < LENGTH_PREFIX; i++) {
+            int digit = buffer.get(start + i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Invalid message length prefix from server");
+            }
+            length = length * 10 + digit;
+        }
+        return length;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(capacity, buffer.capacity()));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    private void dispatch(byte[] frame) {
+        String mti = null;
+        String stan = null;
+        int dataOffset = Iso8583MessageBuilder.APPLICATION_DATA_OFFSET;
+        int dataLength = Iso8583MessageBuilder.applicationDataLength(frame);
+        if (dataLength >= 4) {
+            mti = new String(frame, dataOffset, 4, StandardCharsets.US_ASCII);
+            try {
+                // Decoded in place - only DE11 is materialized
+                stan = Iso8583MessageReader.parse(tableFor(mti), frame, dataOffset, dataLength).getString(11);
+            } catch (IllegalArgumentException e) {
+                // Fall back to MTI-only matching
+            }
+        }
+
+        Pending match = stan != null ? pending.remove(correlationKey(mti, stan)) : null;
+        if (stan == null && mti != null) {
+            match = removeOldest(mti);
+        }
+        if (match == null) {
+            LogUtil.e(TAG, "⚠️ Dropping unmatched ISO 8583 response (MTI " + mti + ", STAN " + stan + ")");
+            return;
+        }
+        if (match.sentNanos != 0) {
+            LatencyTracer.get().record(LatencyTracer.Phase.HOST_FIRST_BYTE, frameStartNanos - match.sentNanos);
+        }
+        match.future.complete(frame);
+    }
+
+    private Pending removeOldest(String responseMti) {
+        Pending oldest = null;
+        for (Pending candidate : pending.values()) {
+            if (candidate.responseMti.equals(responseMti)
+                    && (oldest == null || candidate.order < oldest.order)) {
+                oldest = candidate;
+            }
+        }
+        return oldest != null && pending.remove(oldest.key, oldest) ? oldest : null;
+    }
+
+    private void shutdown(IOException failure) {
+        boolean failed = !closed;
+        closed = true;
+        try {
+            channel.close();
+            selector.close();
+        } catch (IOException e) {
+            LogUtil.e(TAG, "Error closing ISO 8583 channel: " + e.getMessage());
+        }
+        IOException cause = failure != null ? failure : new IOException("ISO 8583 connection closed");
+        if (failed) {
+            // Tell the owner first so callers woken below already see the reconnect under way
+            LogUtil.e(TAG, "✗ ISO 8583 connection lost: " + cause.getMessage());
+            if (listener != null) {
+                listener.onClosed(cause);
+            }
+        }
+        for (Pending request : pending.values()) {
+            if (pending.remove(request.key, request)) {
+                request.future.completeExceptionally(cause);
+            }
+        }
+        writeQueue.clear();
+    }
+
+    private static Iso8583FieldSpec.Table tableFor(String mti) {
+        // Authorization responses use the host's 2-digit DE39 / binary DE55 layout
+        return mti.endsWith("10") ? Iso8583FieldSpec.POWERCARD_RESPONSE : Iso8583FieldSpec.POWERCARD;
+    }
+
+    private static String requestMti(byte[] frame) {
+        int offset = Iso8583MessageBuilder.APPLICATION_DATA_OFFSET;
+        if (frame == null || frame.length < offset + 4) {
+            return null;
+        }
+        return new String(frame, offset, 4, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Response MTI for a request MTI: the function digit moves from
+     * request (0) to response (1), e.g. 1200 -> 1210, 1804 -> 1814
+     */
+    static String responseMti(String requestMti) {
+        char[] chars = requestMti.toCharArray();
+        if (chars[2] == '0' || chars[2] == '2') {
+            chars[2]++;
+        }
+        return new String(chars);
+    }
+
+    private static String correlationKey(String mti, String stan) {
+        return mti + ":" + stan;
+    }
+}
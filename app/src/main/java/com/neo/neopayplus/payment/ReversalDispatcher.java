@@ -0,0 +1,315 @@
+package com.neo.neopayplus.payment;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reversal Dispatcher
+ *
+ * Sends queued reversals as soon as there is something to send, instead of
+ * polling: one thread sleeps until the earliest of
+ * <ul>
+ * <li>an enqueue (ReversalLog listener)</li>
+ * <li>connectivity coming back ({@link #setNetworkAvailable(boolean)})</li>
+ * <li>a send completing (frees an in-flight slot)</li>
+ * <li>the next scheduled retry</li>
+ * </ul>
+ * and waits without a timeout when the queue is empty, so an idle terminal
+ * is not woken up. While the network is reported down, queued reversals
+ * are tried again after {@code maxDelayMs} anyway, so a missed "network
+ * back" cannot park the queue.
+ *
+ * Up to {@code maxInFlight} reversals are outstanding at once over the
+ * sender's shared connection. A failed entry is rescheduled with
+ * exponential backoff plus jitter (between half and all of the doubled
+ * delay), so entries that failed together do not retry in lockstep.
+ */
+public final class ReversalDispatcher {
+
+    private static final String TAG = Constant.TAG;
+    private static final long RATE_WINDOW_MS = 60_000L;
+
+    /**
+     * Sends one reversal to the host
+     */
+    public interface Sender {
+        /**
+         * Must eventually call {@link Outcome#complete(boolean)} exactly once,
+         * on any thread
+         */
+        void send(ReversalLog.Entry entry, Outcome outcome);
+    }
+
+    /**
+     * Result of one send
+     */
+    public interface Outcome {
+        /**
+         * @param delivered true if the host has the reversal (approved, or
+         *                  already reversed) and it can leave the queue
+         */
+        void complete(boolean delivered);
+    }
+
+    /**
+     * Point-in-time queue metrics
+     */
+    public static final class Metrics {
+        public final int queueDepth;
+        public final int inFlight;
+        public final long delivered; // Since start
+        public final long failed; // Attempts that will be retried
+        public final int deliveredLastMinute;
+        public final long oldestAgeMs; // 0 if empty
+
+        Metrics(int queueDepth, int inFlight, long delivered, long failed, int deliveredLastMinute, long oldestAgeMs) {
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.delivered = delivered;
+            this.failed = failed;
+            this.deliveredLastMinute = deliveredLastMinute;
+            this.oldestAgeMs = oldestAgeMs;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + queueDepth + ", inFlight=" + inFlight + ", delivered=" + delivered
+                    + ", failed=" + failed + ", rate=" + deliveredLastMinute + "/min, oldest="
+                    + (oldestAgeMs / 1000) + "s";
+        }
+    }
+
+    private final ReversalLog log;
+    private final Sender sender;
+    private final int maxInFlight;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Thread thread;
+
+    // Guarded by this
+    private final Map<Long, Long> inFlight = new HashMap<>(); // id -> sent at
+    private final ArrayDeque<Long> deliveries = new ArrayDeque<>(); // times within RATE_WINDOW_MS
+    private boolean signalled;
+    private boolean networkAvailable = true;
+    private long pausedAt; // when networkAvailable last went false
+    private boolean running = true;
+    private long delivered;
+    private long failed;
+
+    /**
+     * @param log         Queue to drain
+     * @param sender      Sends one reversal
+     * @param maxInFlight Reversals outstanding at once
+     * @param baseDelayMs Backoff after the first failure
+     * @param maxDelayMs  Backoff cap
+     */
+    public ReversalDispatcher(ReversalLog log, Sender sender, int maxInFlight, long baseDelayMs, long maxDelayMs) {
+        this.log = log;
+        this.sender = sender;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.thread = new Thread(this::run, "reversal-dispatch");
+        thread.setDaemon(true);
+        log.setOnEnqueue(this::wake);
+        thread.start();
+    }
+
+    /**
+     * Re-evaluate the queue now
+     */
+    public synchronized void wake() {
+        signalled = true;
+        notifyAll();
+    }
+
+    /**
+     * Pause while the network is down; resume (and send at once) when it returns
+     */
+    public synchronized void setNetworkAvailable(boolean available) {
+        boolean resumed = available && !networkAvailable;
+        if (!available && networkAvailable) {
+            pausedAt = System.currentTimeMillis();
+        }
+        networkAvailable = available;
+        if (resumed) {
+            LogUtil.e(TAG, "ReversalDispatcher: network back - draining " + log.size() + " reversal(s)");
+            signalled = true;
+            notifyAll();
+        }
+    }
+
+    public Metrics metrics() {
+        ReversalLog.Entry oldest = log.peek();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            trimDeliveries(now);
+            return new Metrics(log.size(), inFlight.size(), delivered, failed, deliveries.size(),
+                    oldest != null ? Math.max(0, now - oldest.createdAt) : 0);
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        log.setOnEnqueue(null);
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (true) {
+            List<ReversalLog.Entry> batch;
+            synchronized (this) {
+                try {
+                    batch = awaitWork();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch == null) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                for (ReversalLog.Entry entry : batch) {
+                    inFlight.put(entry.id, now);
+                }
+            }
+            for (ReversalLog.Entry entry : batch) {
+                send(entry);
+            }
+        }
+    }
+
+    /**
+     * Block until entries can be sent (caller holds this)
+     *
+     * @return Entries leased for sending, or null when shut down
+     */
+    private List<ReversalLog.Entry> awaitWork() throws InterruptedException {
+        while (running) {
+            signalled = false;
+            long now = System.currentTimeMillis();
+            expireLostSends(now);
+
+            long waitMs = 0; // 0 = until signalled
+            int free = maxInFlight - inFlight.size();
+            boolean paused = !networkAvailable && now - pausedAt < maxDelayMs;
+            if (!paused && free > 0) {
+                List<ReversalLog.Entry> due = log.due(now, free);
+                if (!due.isEmpty()) {
+                    return due;
+                }
+                long next = log.nextAttemptAt();
+                if (next != Long.MAX_VALUE) {
+                    waitMs = Math.max(1, next - now);
+                }
+            }
+            if (paused && log.size() > 0) {
+                // Don't rely on the "network back" signal alone: retry once the backoff cap is up
+                long resume = Math.max(1, pausedAt + maxDelayMs - now);
+                waitMs = waitMs == 0 ? resume : Math.min(waitMs, resume);
+            }
+            if (!inFlight.isEmpty()) {
+                // Bound the wait so a send whose outcome never arrives is reclaimed
+                long lease = ReversalLog.LEASE_MS;
+                waitMs = waitMs == 0 ? lease : Math.min(waitMs, lease);
+            }
+            while (running && !signalled) {
+                long before = System.currentTimeMillis();
+                wait(waitMs);
+                if (waitMs > 0 && System.currentTimeMillis() - before >= waitMs) {
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void send(ReversalLog.Entry entry) {
+        Outcome outcome = new Outcome() {
+            private boolean done;
+
+            @Override
+            public void complete(boolean wasDelivered) {
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    done = true;
+                }
+                finish(entry, wasDelivered);
+            }
+        };
+        try {
+            sender.send(entry, outcome);
+        } catch (RuntimeException e) {
+            LogUtil.e(TAG, "ReversalDispatcher: send failed - " + e.getMessage());
+            outcome.complete(false);
+        }
+    }
+
+    private void finish(ReversalLog.Entry entry, boolean wasDelivered) {
+        try {
+            if (wasDelivered) {
+                log.ack(entry.id);
+            } else {
+                log.retry(entry.id, System.currentTimeMillis() + backoff(entry.attempts()));
+            }
+        } catch (IOException e) {
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Updating reversal queue", e);
+        }
+        synchronized (this) {
+            if (inFlight.remove(entry.id) != null) {
+                if (wasDelivered) {
+                    long now = System.currentTimeMillis();
+                    delivered++;
+                    deliveries.addLast(now);
+                    trimDeliveries(now);
+                } else {
+                    failed++;
+                }
+            }
+            signalled = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Delay before the next attempt after {@code attempts} failures:
+     * base * 2^attempts capped at max, then a random point in its upper half
+     */
+    long backoff(int attempts) {
+        long delay = Math.min(maxDelayMs, baseDelayMs << Math.min(attempts, 20));
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    /**
+     * Free slots of sends whose outcome never came back; the log's lease
+     * expires at the same time, so the entry is sent again
+     */
+    private void expireLostSends(long now) {
+        Iterator<Map.Entry<Long, Long>> it = inFlight.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() >= ReversalLog.LEASE_MS) {
+                it.remove();
+                failed++;
+            }
+        }
+    }
+
+    private void trimDeliveries(long now) {
+        while (!deliveries.isEmpty() && now - deliveries.peekFirst() > RATE_WINDOW_MS) {
+            deliveries.removeFirst();
+        }
+    }
+}
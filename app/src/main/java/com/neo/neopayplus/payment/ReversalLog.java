@@ -0,0 +1,505 @@
+package com.neo.neopayplus.payment;
+
+import com.neo.neopayplus.Constant;
+import com.neo.neopayplus.utils.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Reversal Log
+ *
+ * Append-only, crash-safe FIFO of pending reversals. Every change is one
+ * record appended to a single file, so enqueue, ack and retry cost the
+ * same whether the queue holds one entry or hundreds:
+ * <ul>
+ * <li>ENQUEUE - new entry with its opaque payload</li>
+ * <li>RETRY   - attempt count and next-attempt time of an entry</li>
+ * <li>ACK     - entry is done and leaves the queue</li>
+ * </ul>
+ * The live state is an in-memory index rebuilt by replaying the file on
+ * open. A torn or corrupt tail (crash mid-write) is cut off at the last
+ * intact record.
+ *
+ * Durability: {@link #enqueue(byte[])} returns only after the record is
+ * fsynced; concurrent enqueues share one fsync (group commit). ACK and
+ * RETRY records are fsynced in batches - losing one in a crash only means
+ * the reversal is sent again, which the host answers as a duplicate.
+ *
+ * Consumer cursor: {@link #due(long, int)} hands out the oldest entries
+ * whose next attempt is due and leases them, so a second poll does not
+ * deliver them again until they are acked, rescheduled with
+ * {@link #retry(long, long)}, or the lease expires.
+ *
+ * When acked records dominate the file it is compacted (live entries
+ * rewritten to a temp file, fsynced, renamed over the log).
+ *
+ * Record: length(4) | crc32(4) | type(1) | id(8) | body, big-endian;
+ * length and CRC cover type..body.
+ */
+public final class ReversalLog {
+
+    private static final String TAG = Constant.TAG;
+
+    private static final String LOG_FILE = "reversals.log";
+    private static final String COMPACT_FILE = "reversals.log.tmp";
+
+    private static final byte ENQUEUE = 1; // body: createdAt(8) + payload
+    private static final byte RETRY = 2; // body: attempts(4) + nextAttemptAt(8)
+    private static final byte ACK = 3; // no body
+
+    private static final int HEADER_BYTES = 8; // length + crc
+    private static final int MIN_RECORD = 9; // type + id
+    private static final int MAX_RECORD = 64 * 1024;
+    private static final int RETRY_RECORD = HEADER_BYTES + MIN_RECORD + 12;
+
+    /** ACK/RETRY records written before an fsync is forced */
+    private static final int SYNC_BATCH = 32;
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+    /** How long an entry handed out by due() is withheld from other polls */
+    static final long LEASE_MS = 2 * 60 * 1000L;
+
+    /**
+     * Queued reversal
+     */
+    public static final class Entry {
+        public final long id;
+        public final long createdAt;
+        public final byte[] payload;
+        int attempts;
+        long nextAttemptAt;
+        long leasedUntil;
+
+        Entry(long id, long createdAt, byte[] payload) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.payload = payload;
+        }
+
+        /** Failed attempts so far */
+        public int attempts() {
+            return attempts;
+        }
+
+        /** Earliest time (ms) of the next attempt, 0 = immediately */
+        public long nextAttemptAt() {
+            return nextAttemptAt;
+        }
+
+        int recordBytes() {
+            return HEADER_BYTES + MIN_RECORD + 8 + payload.length + (attempts > 0 ? RETRY_RECORD : 0);
+        }
+    }
+
+    private final File dir;
+    private final File file;
+    private final Object syncLock = new Object();
+
+    // Guarded by this
+    private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + MAX_RECORD);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long nextId = 1;
+    private long fileBytes;
+    private long liveBytes;
+    private long appended; // records written
+    private int unsynced; // lazy records since the last fsync
+
+    private final AtomicLong synced = new AtomicLong(); // records known to be on disk
+    private volatile Runnable onEnqueue;
+
+    /**
+     * Open (or create) the log in {@code dir} and replay it
+     */
+    public ReversalLog(File dir) throws IOException {
+        this.dir = dir;
+        this.file = new File(dir, LOG_FILE);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        new File(dir, COMPACT_FILE).delete(); // Unfinished compaction; the log is still intact
+        replay();
+        channel = new FileOutputStream(file, true).getChannel();
+    }
+
+    /**
+     * Append a reversal; durable when this returns
+     *
+     * @param payload Opaque reversal data (at most 64 KB)
+     * @return Entry id
+     */
+    public long enqueue(byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD - MIN_RECORD - 8) {
+            throw new IOException("Reversal payload too large: " + payload.length);
+        }
+        long target;
+        long id;
+        synchronized (this) {
+            id = nextId++;
+            Entry entry = new Entry(id, System.currentTimeMillis(), payload);
+            startRecord(ENQUEUE, id).putLong(entry.createdAt).put(payload);
+            write();
+            pending.put(id, entry);
+            liveBytes += entry.recordBytes();
+            target = appended;
+        }
+        syncTo(target);
+        Runnable listener = onEnqueue;
+        if (listener != null) {
+            listener.run();
+        }
+        return id;
+    }
+
+    /**
+     * Called (on the enqueuing thread) after each durable enqueue
+     */
+    public void setOnEnqueue(Runnable listener) {
+        onEnqueue = listener;
+    }
+
+    /**
+     * Remove an entry after the host accepted (or already had) the reversal
+     *
+     * @return false if the entry was not pending
+     */
+    public boolean ack(long id) throws IOException {
+        long target = 0;
+        synchronized (this) {
+            Entry entry = pending.remove(id);
+            if (entry == null) {
+                return false;
+            }
+            liveBytes -= entry.recordBytes();
+            if (pending.isEmpty()) {
+                truncate(); // Nothing left to replay: start from an empty file
+                return true;
+            }
+            startRecord(ACK, id);
+            write();
+            if (++unsynced >= SYNC_BATCH) {
+                target = appended;
+            }
+            compactIfWasteful();
+        }
+        if (target > 0) {
+            syncTo(target);
+        }
+        return true;
+    }
+
+    /**
+     * Record a failed attempt and when to try again
+     *
+     * @return false if the entry was not pending
+     */
+    public boolean retry(long id, long nextAttemptAt) throws IOException {
+        long target = 0;
+        synchronized (this) {
+            Entry entry = pending.get(id);
+            if (entry == null) {
+                return false;
+            }
+            liveBytes -= entry.recordBytes();
+            entry.attempts++;
+            entry.nextAttemptAt = nextAttemptAt;
+            entry.leasedUntil = 0;
+            liveBytes += entry.recordBytes();
+            startRecord(RETRY, id).putInt(entry.attempts).putLong(nextAttemptAt);
+            write();
+            if (++unsynced >= SYNC_BATCH) {
+                target = appended;
+            }
+            compactIfWasteful();
+        }
+        if (target > 0) {
+            syncTo(target);
+        }
+        return true;
+    }
+
+    /**
+     * Oldest entries due at {@code now}, leased to the caller
+     *
+     * @param limit Maximum number of entries
+     */
+    public synchronized List<Entry> due(long now, int limit) {
+        List<Entry> due = new ArrayList<>(Math.min(limit, pending.size()));
+        for (Entry entry : pending.values()) {
+            if (due.size() >= limit) {
+                break;
+            }
+            if (entry.nextAttemptAt <= now && entry.leasedUntil <= now) {
+                entry.leasedUntil = now + LEASE_MS;
+                due.add(entry);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Oldest pending entry, or null
+     */
+    public synchronized Entry peek() {
+        Iterator<Entry> it = pending.values().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Snapshot of all pending entries, oldest first
+     */
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Earliest next-attempt time of any pending entry, or
+     * {@link Long#MAX_VALUE} if the queue is empty
+     */
+    public synchronized long nextAttemptAt() {
+        long next = Long.MAX_VALUE;
+        for (Entry entry : pending.values()) {
+            next = Math.min(next, Math.max(entry.nextAttemptAt, entry.leasedUntil));
+        }
+        return next;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Drop every entry
+     *
+     * @return Number of entries removed
+     */
+    public synchronized int clear() throws IOException {
+        int removed = pending.size();
+        pending.clear();
+        liveBytes = 0;
+        truncate();
+        return removed;
+    }
+
+    /**
+     * Force outstanding ACK/RETRY records to disk
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        syncTo(target);
+    }
+
+    public void close() {
+        try {
+            sync();
+        } catch (IOException e) {
+            LogUtil.e(TAG, "ReversalLog: sync on close failed: " + e.getMessage());
+        }
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    // ---- Writing (callers hold this) ----
+
+    private ByteBuffer startRecord(byte type, long id) {
+        record.clear();
+        record.position(HEADER_BYTES);
+        return record.put(type).putLong(id);
+    }
+
+    private void write() throws IOException {
+        int end = record.position();
+        crc.reset();
+        crc.update(record.array(), HEADER_BYTES, end - HEADER_BYTES);
+        record.putInt(0, end - HEADER_BYTES).putInt(4, (int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        fileBytes += end;
+        appended++;
+    }
+
+    /**
+     * Group commit: whoever gets the lock first forces everything appended
+     * so far; callers that were waiting find their record already synced.
+     * Lock order: syncLock, then this.
+     */
+    private void syncTo(long target) throws IOException {
+        synchronized (syncLock) {
+            if (synced.get() >= target) {
+                return;
+            }
+            long upTo;
+            FileChannel current;
+            synchronized (this) {
+                upTo = appended;
+                unsynced = 0;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException compacted) {
+                // Replaced by compaction, which synced everything it kept
+            }
+            synced.accumulateAndGet(upTo, Math::max);
+        }
+    }
+
+    private void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+        fileBytes = 0;
+        unsynced = 0;
+        markSynced();
+    }
+
+    private void compactIfWasteful() throws IOException {
+        if (fileBytes < COMPACT_MIN_BYTES || fileBytes < liveBytes * 4) {
+            return;
+        }
+        File tmp = new File(dir, COMPACT_FILE);
+        FileChannel out = new FileOutputStream(tmp).getChannel();
+        FileChannel previous = channel;
+        long written = 0;
+        try {
+            channel = out;
+            for (Entry entry : pending.values()) {
+                startRecord(ENQUEUE, entry.id).putLong(entry.createdAt).put(entry.payload);
+                written += record.position();
+                write();
+                if (entry.attempts > 0) {
+                    startRecord(RETRY, entry.id).putInt(entry.attempts).putLong(entry.nextAttemptAt);
+                    written += record.position();
+                    write();
+                }
+            }
+            out.force(false);
+        } catch (IOException e) {
+            channel = previous;
+            out.close();
+            tmp.delete();
+            throw e;
+        }
+        out.close();
+        if (!tmp.renameTo(file)) {
+            channel = previous;
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        previous.close();
+        channel = new FileOutputStream(file, true).getChannel();
+        LogUtil.e(TAG, "ReversalLog: compacted " + fileBytes + " -> " + written + " bytes");
+        fileBytes = written;
+        liveBytes = written;
+        unsynced = 0;
+        markSynced();
+    }
+
+    private void markSynced() {
+        synced.accumulateAndGet(appended, Math::max);
+    }
+
+    // ---- Replay ----
+
+    private void replay() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long good = 0;
+        byte[] body = new byte[MAX_RECORD];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                if (length < MIN_RECORD || length > MAX_RECORD) {
+                    break;
+                }
+                int checksum = in.readInt();
+                in.readFully(body, 0, length);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(ByteBuffer.wrap(body, 0, length));
+                good += HEADER_BYTES + length;
+            }
+        } catch (EOFException torn) {
+            // Record cut short by a crash
+        }
+
+        if (good < file.length()) {
+            LogUtil.e(TAG, "ReversalLog: dropping " + (file.length() - good) + " bytes of damaged tail");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(good);
+                raf.getFD().sync();
+            }
+        }
+        fileBytes = good;
+        for (Entry entry : pending.values()) {
+            liveBytes += entry.recordBytes();
+        }
+    }
+
+    private void apply(ByteBuffer in) {
+        byte type = in.get();
+        long id = in.getLong();
+        nextId = Math.max(nextId, id + 1);
+        switch (type) {
+            case ENQUEUE: {
+                long createdAt = in.getLong();
+                byte[] payload = new byte[in.remaining()];
+                in.get(payload);
+                pending.put(id, new Entry(id, createdAt, payload));
+                break;
+            }
+            case RETRY: {
+                Entry entry = pending.get(id);
+                if (entry != null) {
+                    entry.attempts = in.getInt();
+                    entry.nextAttemptAt = in.getLong();
+                }
+                break;
+            }
+            case ACK:
+                pending.remove(id);
+                break;
+            default:
+                LogUtil.e(TAG, "ReversalLog: unknown record type " + type);
+        }
+    }
+
+    /** Test hook: bytes currently in the log file */
+    synchronized long fileBytes() {
+        return fileBytes;
+    }
+}
@@ -4,130 +4,335 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.neo.neopayplus.Constant;
-import com.neo.neopayplus.MyApplication;
+import com.neo.neopayplus.db.TxnDb;
 import com.neo.neopayplus.utils.LogUtil;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * Reversal Queue Store
- * 
- * Manages offline reversal queue using SharedPreferences.
- * Stores failed reversals and retries them automatically when host is available.
- * 
+ *
+ * Offline reversal queue (host down, timeouts), sent by
+ * {@link ReversalDispatcher} as soon as the host can be reached. Backed by a
+ * {@link ReversalLog} in the app's files directory: enqueue and ack are
+ * single appends, so the queue does not slow down as it grows during an
+ * outage.
+ *
  * FIFO queue behavior: First failed → First retried
+ *
+ * Reversal JSON: {rrn, transaction_id, amount (12-digit minor units, DE4),
+ * currency, reason, created_at}
+ *
+ * On first use, reversals left in the earlier stores (the SharedPreferences
+ * JSON array, TxnDb's reversals table and TransactionJournal's pending
+ * list) are moved into the log.
  */
 public class ReversalQueueStore {
-    
+
     private static final String TAG = Constant.TAG;
-    private static final String PREF = "REVERSAL_QUEUE";
-    private static final String KEY = "items";
-    
+    private static final String QUEUE_DIR = "reversal_queue";
+
+    // Earlier stores, read once for migration
+    private static final String LEGACY_PREF = "REVERSAL_QUEUE";
+    private static final String LEGACY_KEY = "items";
+    private static final String JOURNAL_PREF = "neopayplus_prefs";
+    private static final String JOURNAL_KEY = "pending_reversals";
+
+    private static volatile ReversalLog log;
+
     /**
      * Add reversal to queue (when host is down)
-     * 
+     *
      * @param ctx Context
-     * @param rev Reversal JSON object with {terminal_id, merchant_id, rrn, amount, currency, reversal_reason}
+     * @param rev Reversal JSON object with {rrn, transaction_id, amount, currency, reason}
+     * @return true if the reversal is stored durably
      */
-    public static void add(Context ctx, JSONObject rev) {
+    public static boolean add(Context ctx, JSONObject rev) {
         try {
-            SharedPreferences sp = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
-            JSONArray arr = new JSONArray(sp.getString(KEY, "[]"));
-            arr.put(rev);
-            sp.edit().putString(KEY, arr.toString()).apply();
-            LogUtil.e(TAG, "✓ Reversal queued offline: " + (rev.has("rrn") ? rev.optString("rrn") : "N/A"));
+            log(ctx).enqueue(normalize(rev).toString().getBytes(StandardCharsets.UTF_8));
+            LogUtil.e(TAG, "✓ Reversal queued offline: " + rev.optString("rrn", "N/A"));
+            return true;
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Queuing reversal", e);
+            return false;
         }
     }
-    
+
+    /**
+     * Reversals due for another attempt (oldest first); they are not handed
+     * out again until acked or rescheduled
+     *
+     * @param ctx Context
+     * @param limit Maximum number of reversals
+     */
+    public static List<ReversalLog.Entry> due(Context ctx, int limit) {
+        try {
+            return log(ctx).due(System.currentTimeMillis(), limit);
+        } catch (Exception e) {
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Loading reversal queue", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Remove a reversal from the queue (after the host accepted it)
+     *
+     * @param ctx Context
+     * @param id Entry id
+     */
+    public static void ack(Context ctx, long id) {
+        try {
+            log(ctx).ack(id);
+        } catch (Exception e) {
+            LogUtil.e(TAG, "❌ Error removing reversal from queue: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keep a reversal queued after a failed attempt
+     *
+     * @param ctx Context
+     * @param id Entry id
+     * @param delayMs Time until the next attempt
+     */
+    public static void retry(Context ctx, long id, long delayMs) {
+        try {
+            log(ctx).retry(id, System.currentTimeMillis() + delayMs);
+        } catch (Exception e) {
+            LogUtil.e(TAG, "❌ Error rescheduling reversal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reversal JSON of a queue entry
+     */
+    public static JSONObject reversal(ReversalLog.Entry entry) {
+        try {
+            return new JSONObject(new String(entry.payload, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            LogUtil.e(TAG, "Unreadable queued reversal, id=" + entry.id);
+            return new JSONObject();
+        }
+    }
+
     /**
      * Load all pending reversals
-     * 
+     *
      * @param ctx Context
      * @return JSONArray of pending reversals (FIFO order)
      */
     public static JSONArray load(Context ctx) {
+        JSONArray arr = new JSONArray();
         try {
-            SharedPreferences sp = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
-            String jsonStr = sp.getString(KEY, "[]");
-            return new JSONArray(jsonStr);
+            for (ReversalLog.Entry entry : log(ctx).entries()) {
+                arr.put(reversal(entry));
+            }
         } catch (Exception e) {
             LogUtil.e(TAG, "Error loading reversal queue: " + e.getMessage());
-            return new JSONArray();
         }
+        return arr;
     }
-    
+
     /**
      * Remove first item from queue (after successful reversal)
      * FIFO: First In, First Out
-     * 
+     *
      * @param ctx Context
      */
     public static void removeFirst(Context ctx) {
         try {
-            SharedPreferences sp = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
-            JSONArray arr = new JSONArray(sp.getString(KEY, "[]"));
-            if (arr.length() > 0) {
-                JSONArray newArr = new JSONArray();
-                for (int i = 1; i < arr.length(); i++) {
-                    newArr.put(arr.get(i));
-                }
-                sp.edit().putString(KEY, newArr.toString()).apply();
+            ReversalLog queue = log(ctx);
+            ReversalLog.Entry first = queue.peek();
+            if (first != null && queue.ack(first.id)) {
                 LogUtil.e(TAG, "✓ First reversal removed from queue");
             }
         } catch (Exception e) {
             LogUtil.e(TAG, "❌ Error removing reversal from queue: " + e.getMessage());
         }
     }
-    
+
+    /**
+     * Remove a queued reversal by RRN
+     *
+     * @param ctx Context
+     * @param rrn Retrieval Reference Number
+     * @return true if a reversal was removed
+     */
+    public static boolean removeByRrn(Context ctx, String rrn) {
+        try {
+            ReversalLog queue = log(ctx);
+            for (ReversalLog.Entry entry : queue.entries()) {
+                if (rrn.equals(reversal(entry).optString("rrn"))) {
+                    return queue.ack(entry.id);
+                }
+            }
+        } catch (Exception e) {
+            LogUtil.e(TAG, "❌ Error removing reversal from queue: " + e.getMessage());
+        }
+        return false;
+    }
+
     /**
      * Get queue size
-     * 
+     *
      * @param ctx Context
      * @return Number of pending reversals
      */
     public static int getQueueSize(Context ctx) {
         try {
-            JSONArray arr = load(ctx);
-            return arr.length();
+            return log(ctx).size();
         } catch (Exception e) {
             return 0;
         }
     }
-    
+
     /**
      * Clear queue (for admin/testing)
-     * 
+     *
      * @param ctx Context
      */
     public static void clear(Context ctx) {
         try {
-            SharedPreferences sp = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
-            sp.edit().remove(KEY).apply();
+            log(ctx).clear();
             LogUtil.e(TAG, "✓ Reversal queue cleared");
         } catch (Exception e) {
             LogUtil.e(TAG, "Error clearing reversal queue: " + e.getMessage());
         }
     }
-    
+
     /**
      * Get first reversal in queue (without removing it)
-     * 
+     *
      * @param ctx Context
      * @return First JSONObject in queue, or null if empty
      */
     public static JSONObject peekFirst(Context ctx) {
         try {
-            JSONArray arr = load(ctx);
-            if (arr.length() > 0) {
-                return arr.getJSONObject(0);
-            }
+            ReversalLog.Entry first = log(ctx).peek();
+            return first != null ? reversal(first) : null;
         } catch (Exception e) {
             LogUtil.e(TAG, "Error peeking first reversal: " + e.getMessage());
         }
         return null;
     }
-}
 
+    /**
+     * The queue's log (for {@link ReversalDispatcher}), or null if it cannot be opened
+     */
+    static ReversalLog open(Context ctx) {
+        try {
+            return log(ctx);
+        } catch (Exception e) {
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Opening reversal queue", e);
+            return null;
+        }
+    }
+
+    /**
+     * Open the log on first use and move legacy reversals into it
+     */
+    private static ReversalLog log(Context ctx) throws IOException {
+        ReversalLog current = log;
+        if (current == null) {
+            synchronized (ReversalQueueStore.class) {
+                current = log;
+                if (current == null) {
+                    Context app = ctx.getApplicationContext() != null ? ctx.getApplicationContext() : ctx;
+                    current = new ReversalLog(new File(app.getFilesDir(), QUEUE_DIR));
+                    migrateLegacy(app, current);
+                    log = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Same field names and amount format whichever store a reversal came from
+     */
+    private static JSONObject normalize(JSONObject rev) throws Exception {
+        JSONObject out = new JSONObject();
+        out.put("rrn", rev.optString("rrn", ""));
+        if (rev.has("transaction_id")) {
+            out.put("transaction_id", rev.optString("transaction_id"));
+        }
+
+        String amount = rev.optString("amount", "");
+        if (amount.isEmpty() && rev.has("amount_minor")) {
+            amount = String.valueOf(rev.optLong("amount_minor"));
+        } else if (amount.indexOf('.') >= 0) {
+            amount = new BigDecimal(amount).movePointRight(2).toBigInteger().toString(); // Major units
+        }
+        out.put("amount", amount.isEmpty() ? "" : String.format(Locale.US, "%012d", Long.parseLong(amount)));
+
+        out.put("currency", rev.optString("currency", rev.optString("currency_code", "")));
+        out.put("reason", rev.optString("reason", rev.optString("reversal_reason", "HOST_UNAVAILABLE")));
+        out.put("created_at", rev.optString("created_at", com.neo.neopayplus.utils.TimeSync.nowIso()));
+        return out;
+    }
+
+    private static void migrateLegacy(Context ctx, ReversalLog queue) {
+        int moved = 0;
+        try {
+            // 1. SharedPreferences JSON array
+            SharedPreferences sp = ctx.getSharedPreferences(LEGACY_PREF, Context.MODE_PRIVATE);
+            String items = sp.getString(LEGACY_KEY, null);
+            if (items != null) {
+                JSONArray arr = new JSONArray(items);
+                for (int i = 0; i < arr.length(); i++) {
+                    moved += migrate(queue, arr.getJSONObject(i));
+                }
+                sp.edit().remove(LEGACY_KEY).commit();
+            }
+
+            // 2. TxnDb reversals table
+            for (Map<String, Object> row : TxnDb.getInstance(ctx).takeLegacyReversals()) {
+                moved += migrate(queue, new JSONObject(row));
+            }
+
+            // 3. TransactionJournal pending list (Gson TransactionRecord fields)
+            SharedPreferences journal = ctx.getSharedPreferences(JOURNAL_PREF, Context.MODE_PRIVATE);
+            String pending = journal.getString(JOURNAL_KEY, null);
+            if (pending != null) {
+                JSONArray arr = new JSONArray(pending);
+                for (int i = 0; i < arr.length(); i++) {
+                    JSONObject record = arr.getJSONObject(i);
+                    JSONObject rev = new JSONObject();
+                    rev.put("rrn", record.optString("rrn", ""));
+                    rev.put("amount", record.optString("amount", ""));
+                    rev.put("currency", record.optString("currencyCode", ""));
+                    rev.put("reason", "HOST_UNAVAILABLE");
+                    moved += migrate(queue, rev);
+                }
+                journal.edit().remove(JOURNAL_KEY).commit();
+            }
+        } catch (Exception e) {
+            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "Migrating reversal queue", e);
+        }
+        if (moved > 0) {
+            LogUtil.e(TAG, "✓ Moved " + moved + " queued reversal(s) into the reversal log");
+        }
+    }
+
+    private static int migrate(ReversalLog queue, JSONObject rev) throws IOException {
+        try {
+            queue.enqueue(normalize(rev).toString().getBytes(StandardCharsets.UTF_8));
+            return 1;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            LogUtil.e(TAG, "Skipping unreadable legacy reversal: " + e.getMessage());
+            return 0;
+        }
+    }
+}
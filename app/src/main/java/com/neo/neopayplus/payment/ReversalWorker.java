@@ -6,118 +6,100 @@ import com.neo.neopayplus.Constant;
 import com.neo.neopayplus.api.PaymentApiFactory;
 import com.neo.neopayplus.api.PaymentApiService;
 import com.neo.neopayplus.config.PaymentConfig;
-import com.neo.neopayplus.db.TxnDb;
 import com.neo.neopayplus.utils.LogUtil;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import org.json.JSONObject;
 
 /**
  * Reversal Worker
- * 
- * Background worker that automatically retries pending reversals
- * Runs in background thread, processes FIFO queue
+ *
+ * Sends queued reversals for the {@link ReversalDispatcher}: builds the
+ * reversal request from the queued JSON and maps the host's answer to
+ * delivered (leave the queue) or retry.
  */
-public class ReversalWorker {
-    
+public class ReversalWorker implements ReversalDispatcher.Sender {
+
     private static final String TAG = Constant.TAG;
-    private final Context ctx;
+    private static final int MAX_IN_FLIGHT = 3; // Concurrent reversals over the shared HTTP client
+    private static final long RETRY_BASE_MS = 30_000L;
+    private static final long RETRY_MAX_MS = 15 * 60 * 1000L;
+
+    private static volatile ReversalDispatcher dispatcher;
+
     private final PaymentApiService apiService;
-    
+
     public ReversalWorker(Context c) {
-        this.ctx = c;
         this.apiService = PaymentApiFactory.getInstance();
     }
-    
+
     /**
-     * Process one batch of pending reversals
-     * Called periodically from background thread
+     * Start sending queued reversals (idempotent)
+     *
+     * @param ctx Context
+     * @return The running dispatcher, or null if the queue cannot be opened
      */
-    public void tick() {
-        try {
-            TxnDb db = new TxnDb(ctx);
-            List<Map<String, Object>> queue = db.pendingReversals(10); // Process up to 10 at a time
-            
-            if (queue.isEmpty()) {
-                return; // No pending reversals
-            }
-            
-            LogUtil.e(TAG, "ReversalWorker: Processing " + queue.size() + " pending reversals");
-            
-            for (Map<String, Object> reversal : queue) {
-                // Build reversal request
-                Map<String, Object> body = new HashMap<>();
-                body.put("terminal_id", PaymentConfig.getTerminalId());
-                body.put("merchant_id", PaymentConfig.getMerchantId());
-                body.put("rrn", reversal.get("rrn"));
-                
-                // Convert amount from minor units to main currency
-                Object amountObj = reversal.get("amount_minor");
-                if (amountObj instanceof Number) {
-                    long amountMinor = ((Number) amountObj).longValue();
-                    body.put("amount", amountMinor / 100.0);
-                } else {
-                    body.put("amount", 0.0);
-                }
-                
-                body.put("currency", String.valueOf(reversal.get("currency")));
-                body.put("reversal_reason", String.valueOf(reversal.get("reason")));
-                
-                // Send reversal request
-                PaymentApiService.ReversalRequest request = new PaymentApiService.ReversalRequest();
-                request.terminalId = PaymentConfig.getTerminalId();
-                request.merchantId = PaymentConfig.getMerchantId();
-                request.rrn = String.valueOf(reversal.get("rrn"));
-                // Amount must be ISO-8583 DE4 format (12-digit numeric string)
-                long amountMinor = 0L;
-                Object amtObj = reversal.get("amount_minor");
-                if (amtObj instanceof Number) {
-                    amountMinor = ((Number) amtObj).longValue();
-                }
-                request.amount = String.format(java.util.Locale.US, "%012d", amountMinor);
-                request.currencyCode = String.valueOf(reversal.get("currency"));
-                request.reversalReason = String.valueOf(reversal.get("reason"));
-                
-                final Map<String, Object> finalReversal = reversal;
-                
-                apiService.reverseTransaction(request, new PaymentApiService.ReversalCallback() {
-                    @Override
-                    public void onReversalComplete(PaymentApiService.ReversalResponse response) {
-                        String rc = response.responseCode != null ? response.responseCode : "";
-                        
-                        // Remove from queue if successful or already reversed/declined
-                        if ("00".equals(rc) || "94".equals(rc) || "12".equals(rc)) {
-                            TxnDb db = new TxnDb(ctx);
-                            Object idObj = finalReversal.get("id");
-                            if (idObj instanceof Number) {
-                                db.deleteReversal(((Number) idObj).longValue());
-                                LogUtil.e(TAG, "ReversalWorker: Reversal removed from queue - RRN: " + finalReversal.get("rrn") + ", RC: " + rc);
-                            }
-                        } else {
-                            LogUtil.e(TAG, "ReversalWorker: Reversal still pending - RRN: " + finalReversal.get("rrn") + ", RC: " + rc);
-                        }
-                    }
-                    
-                    @Override
-                    public void onReversalError(Throwable error) {
-                        LogUtil.e(TAG, "ReversalWorker: Reversal error - RRN: " + finalReversal.get("rrn") + ", Error: " + error.getMessage());
-                        // Keep in queue, will retry later
+    public static ReversalDispatcher start(Context ctx) {
+        ReversalDispatcher current = dispatcher;
+        if (current == null) {
+            synchronized (ReversalWorker.class) {
+                current = dispatcher;
+                if (current == null) {
+                    ReversalLog log = ReversalQueueStore.open(ctx);
+                    if (log == null) {
+                        return null;
                     }
-                });
-                
-                // Small delay between reversals to avoid overwhelming server
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
+                    current = new ReversalDispatcher(log, new ReversalWorker(ctx), MAX_IN_FLIGHT,
+                            RETRY_BASE_MS, RETRY_MAX_MS);
+                    dispatcher = current;
+                    LogUtil.e(TAG, "ReversalWorker: dispatcher started, " + log.size() + " reversal(s) queued");
                 }
             }
-            
-        } catch (Exception e) {
-            com.neo.neopayplus.utils.ErrorHandler.logError(TAG, "ReversalWorker tick", e);
         }
+        return current;
     }
-}
 
+    /**
+     * Running dispatcher, or null before {@link #start(Context)}
+     */
+    public static ReversalDispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void send(ReversalLog.Entry entry, ReversalDispatcher.Outcome outcome) {
+        JSONObject reversal = ReversalQueueStore.reversal(entry);
+
+        PaymentApiService.ReversalRequest request = new PaymentApiService.ReversalRequest();
+        request.terminalId = PaymentConfig.getTerminalId();
+        request.merchantId = PaymentConfig.getMerchantId();
+        request.transactionId = reversal.has("transaction_id") ? reversal.optString("transaction_id") : null;
+        request.rrn = reversal.optString("rrn");
+        // Amount is ISO-8583 DE4 format (12-digit numeric string)
+        request.amount = reversal.optString("amount", "000000000000");
+        request.currencyCode = reversal.optString("currency");
+        request.reversalReason = reversal.optString("reason");
+
+        apiService.reverseTransaction(request, new PaymentApiService.ReversalCallback() {
+            @Override
+            public void onReversalComplete(PaymentApiService.ReversalResponse response) {
+                String rc = response.responseCode != null ? response.responseCode : "";
+
+                // Remove from queue if successful or already reversed/declined
+                if ("00".equals(rc) || "94".equals(rc) || "12".equals(rc)) {
+                    LogUtil.e(TAG, "ReversalWorker: Reversal removed from queue - RRN: " + request.rrn + ", RC: " + rc);
+                    outcome.complete(true);
+                } else {
+                    LogUtil.e(TAG, "ReversalWorker: Reversal still pending - RRN: " + request.rrn + ", RC: " + rc);
+                    outcome.complete(false);
+                }
+            }
+
+            @Override
+            public void onReversalError(Throwable error) {
+                LogUtil.e(TAG, "ReversalWorker: Reversal error - RRN: " + request.rrn + ", Error: " + error.getMessage());
+                // Keep in queue, will retry later
+                outcome.complete(false);
+            }
+        });
+    }
+}
@@ -6,6 +6,7 @@ import com.neo.neopayplus.BuildConfig;
 import com.neo.neopayplus.Constant;
 import com.neo.neopayplus.api.PaymentApiService;
 import com.neo.neopayplus.config.PaymentConfig;
+import com.neo.neopayplus.emv.EmvTransactionContext;
 import com.neo.neopayplus.processing.CvmHandler;
 import com.neo.neopayplus.processing.repository.TransactionRepository;
 import com.neo.neopayplus.utils.ByteUtil;
@@ -55,12 +56,33 @@ public class ProcessEmvTransactionUseCase {
         public final int pinType;
         public final int stan;
         public final String field55; // Field 55 (DE55) hex string - built by Emv55Builder
+        public final EmvTransactionContext emvContext; // Decoded DE55 data, null if only the hex is known
         public final String transactionType; // "purchase" or "refund"
 
         public TransactionData(String pan, String amount, String currencyCode,
                 int cardType, boolean pinEntered, boolean fallbackUsed,
                 byte[] onlinePinBlock, String ksn, int pinType, int stan,
                 String field55, String transactionType) {
+            this(pan, amount, currencyCode, cardType, pinEntered, fallbackUsed, onlinePinBlock, ksn,
+                    pinType, stan, field55, null, transactionType);
+        }
+
+        /**
+         * Transaction data carrying the EMV context from Emv55Builder.buildContext();
+         * the packers and receipts use its decoded fields instead of re-parsing DE55
+         */
+        public TransactionData(String pan, String amount, String currencyCode,
+                int cardType, boolean pinEntered, boolean fallbackUsed,
+                byte[] onlinePinBlock, String ksn, int pinType, int stan,
+                EmvTransactionContext emvContext, String transactionType) {
+            this(pan, amount, currencyCode, cardType, pinEntered, fallbackUsed, onlinePinBlock, ksn,
+                    pinType, stan, emvContext != null ? emvContext.de55Hex() : null, emvContext, transactionType);
+        }
+
+        private TransactionData(String pan, String amount, String currencyCode,
+                int cardType, boolean pinEntered, boolean fallbackUsed,
+                byte[] onlinePinBlock, String ksn, int pinType, int stan,
+                String field55, EmvTransactionContext emvContext, String transactionType) {
             this.pan = pan;
             this.amount = amount;
             this.currencyCode = currencyCode;
@@ -72,6 +94,7 @@ public class ProcessEmvTransactionUseCase {
             this.pinType = pinType;
             this.stan = stan;
             this.field55 = field55;
+            this.emvContext = emvContext;
             this.transactionType = transactionType != null ? transactionType : "purchase";
         }
     }
@@ -204,6 +227,7 @@ public class ProcessEmvTransactionUseCase {
 
         PaymentApiService.AuthorizationRequest request = new PaymentApiService.AuthorizationRequest();
         request.field55 = field55;
+        request.emvContext = transactionData.emvContext;
         request.pan = transactionData.pan;
         request.amount = transactionData.amount;
         request.currencyCode = transactionData.currencyCode;
@@ -14,17 +14,9 @@ class ApprovedReceiptBuilder(private val data: ReceiptData) {
     fun build(isMerchantCopy: Boolean, isReprint: Boolean = false): List<ReceiptLine> {
         val lines = mutableListOf<ReceiptLine>()
         
-        // Header with logos - merchant logo (left) and bank logo (right) on same line
-        val merchantLogo = data.merchantLogoAssetPath ?: "images/receipt_logo.webp"
-        val bankLogo = data.bankLogoAssetPath ?: "images/banque_misr_logo.png"
-        lines.add(ReceiptLine.DualLogo(merchantLogo, bankLogo))
-        lines.add(ReceiptLine.Empty)
-        
-        // Merchant name
-        if (data.merchantName.isNotEmpty()) {
-            lines.add(ReceiptLine.Text(data.merchantName, Alignment.CENTER, FontSize.NORMAL, bold = true))
-            lines.add(ReceiptLine.Empty)
-        }
+        // Header - merchant logo (left) and bank logo (right) on same line, then merchant name and address
+        lines.add(ReceiptLineUtils.header(data.merchantName, data.merchantLogoAssetPath, data.bankLogoAssetPath,
+            ReceiptLineUtils.merchantAddress(data)))
         
         lines.add(createLabelValueLine(data.internalTerminalId, data.bankTerminalId ?: "00000001"))
 
@@ -117,8 +117,8 @@ object ReceiptDataMapper {
             receiptNumber = receiptNumber,
             date = date,
             time = time,
-            merchantLogoAssetPath = "images/receipt_logo.webp",
-            bankLogoAssetPath = "images/banque_misr_logo.png" // Bank logo from assets
+            merchantLogoAssetPath = ReceiptLineUtils.DEFAULT_MERCHANT_LOGO,
+            bankLogoAssetPath = ReceiptLineUtils.DEFAULT_BANK_LOGO // Bank logo from assets
         )
     }
     
@@ -247,8 +247,8 @@ object ReceiptDataMapper {
             receiptNumber = receiptNumber,
             date = receiptDate,
             time = receiptTime,
-            merchantLogoAssetPath = "images/receipt_logo.webp",
-            bankLogoAssetPath = "images/banque_misr_logo.png" // Bank logo from assets
+            merchantLogoAssetPath = ReceiptLineUtils.DEFAULT_MERCHANT_LOGO,
+            bankLogoAssetPath = ReceiptLineUtils.DEFAULT_BANK_LOGO // Bank logo from assets
         )
     }
 }
@@ -7,6 +7,35 @@ package com.neo.neopayplus.receipt
 object ReceiptLineUtils {
     
     private const val DEFAULT_RECEIPT_WIDTH = 32 // Typical thermal receipt width in characters
+
+    const val DEFAULT_MERCHANT_LOGO = "images/receipt_logo.webp"
+    const val DEFAULT_BANK_LOGO = "images/banque_misr_logo.png"
+
+    /**
+     * Receipt header: merchant logo (left), bank logo (right), merchant name
+     * and address, printed as one cached raster
+     *
+     * @return ReceiptLine.Header with the default logos filled in
+     */
+    fun header(merchantName: String, merchantLogo: String?, bankLogo: String?, address: String?): ReceiptLine.Header {
+        return ReceiptLine.Header(
+            merchantLogo ?: DEFAULT_MERCHANT_LOGO,
+            bankLogo ?: DEFAULT_BANK_LOGO,
+            merchantName,
+            address
+        )
+    }
+
+    /**
+     * Merchant address line from DE43 location fields (null when unknown)
+     */
+    fun merchantAddress(data: ReceiptData): String? {
+        if (data.merchantCity.isNullOrBlank()) {
+            return null
+        }
+        return listOfNotNull(data.merchantCity, data.merchantStateProvince?.takeIf { it.isNotBlank() })
+            .joinToString(", ")
+    }
     
     /**
      * Create a label-value line with proper spacing
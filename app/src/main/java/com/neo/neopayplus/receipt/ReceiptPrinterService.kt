@@ -1,10 +1,9 @@
 package com.neo.neopayplus.receipt
 
-import android.graphics.Bitmap
-import android.graphics.BitmapFactory
 import android.util.Log
-import com.neo.neopayplus.MyApplication
 import com.neo.neopayplus.R
+import com.neo.neopayplus.utils.LatencyTracer
+import com.neo.neopayplus.utils.LatencyTracer.Phase
 import com.sunmi.peripheral.printer.SunmiPrinterService
 import com.sunmi.peripheral.printer.InnerResultCallback
 import android.os.RemoteException
@@ -19,7 +18,7 @@ class ReceiptPrinterService(
 ) {
     companion object {
         private const val TAG = "ReceiptPrinterService"
-        private const val RECEIPT_WIDTH = 384 // 58mm paper width in dots (typical)
+        const val RECEIPT_WIDTH = 384 // 58mm paper width in dots (typical)
     }
 
     /**
@@ -163,6 +162,7 @@ class ReceiptPrinterService(
             val service = sunmiPrinterService!!
             
             // Use printer buffer for batch printing (following Sunmi SDK demo pattern)
+            val renderStart = LatencyTracer.start()
             service.enterPrinterBuffer(true)
             Log.d(TAG, "Entered printer buffer")
             
@@ -171,12 +171,9 @@ class ReceiptPrinterService(
             for (line in lines) {
                 when (line) {
                     is ReceiptLine.Logo -> {
-                        // Print logo bitmap
-                        val bitmap = loadLogoFromAsset(line.assetPath)
-                        if (bitmap != null) {
-                            // Convert to monochrome for thermal printer (prevents black boxes)
-                            val monochromeBitmap = convertToMonochrome(bitmap)
-                            val resizedBitmap = resizeBitmap(monochromeBitmap, RECEIPT_WIDTH)
+                        // Print logo bitmap (monochrome for thermal printer, prevents black boxes; cached)
+                        val resizedBitmap = ReceiptRasterCache.logo(line.assetPath, RECEIPT_WIDTH)
+                        if (resizedBitmap != null) {
                             try {
                                 // Set alignment using ESC/POS commands before printing bitmap
                                 val alignmentCmd = when (line.alignment) {
@@ -198,68 +195,33 @@ class ReceiptPrinterService(
                             Log.w(TAG, "Failed to load bitmap from asset: ${line.assetPath}")
                         }
                     }
+                    is ReceiptLine.Header -> {
+                        // Logos, merchant name and address as one pre-rendered raster
+                        val headerBitmap = ReceiptRasterCache.header(line, RECEIPT_WIDTH)
+                        if (headerBitmap != null) {
+                            try {
+                                service.sendRAWData(byteArrayOf(0x1B, 0x61, 0x01), null) // Center align
+                                service.printBitmap(headerBitmap, null)
+                                Log.d(TAG, "Printed header: left=${line.leftLogoPath}, right=${line.rightLogoPath}")
+                            } catch (e: Exception) {
+                                Log.e(TAG, "Print header error: ${e.message}", e)
+                                // Continue even if bitmap fails
+                            }
+                        } else {
+                            Log.w(TAG, "Header raster unavailable, printing merchant name as text")
+                            service.setAlignment(1, null)
+                            service.printText("${line.merchantName}\n\n", null)
+                        }
+                    }
                     is ReceiptLine.DualLogo -> {
                         // Print two logos side by side - left logo aligned left, right logo aligned right
-                        // with space between them
-                        val leftBitmap = loadLogoFromAsset(line.leftLogoPath)
-                        val rightBitmap = loadLogoFromAsset(line.rightLogoPath)
-                        
-                        if (leftBitmap != null || rightBitmap != null) {
+                        val finalBitmap = ReceiptRasterCache.dualLogo(line.leftLogoPath, line.rightLogoPath, RECEIPT_WIDTH)
+                        if (finalBitmap != null) {
                             try {
-                                // Make logos smaller - use 35% of receipt width each (leaves 30% for spacing)
-                                val logoWidth = (RECEIPT_WIDTH * 0.35f).toInt()
-                                val minSpacing = (RECEIPT_WIDTH * 0.15f).toInt() // Minimum spacing between logos
-                                
-                                // Process and resize left logo
-                                val leftProcessed = leftBitmap?.let {
-                                    val monochrome = convertToMonochrome(it)
-                                    resizeBitmap(monochrome, logoWidth)
-                                }
-                                
-                                // Process and resize right logo
-                                val rightProcessed = rightBitmap?.let {
-                                    val monochrome = convertToMonochrome(it)
-                                    resizeBitmap(monochrome, logoWidth)
-                                }
-                                
-                                // Determine combined height (max of both logos)
-                                val combinedHeight = maxOf(
-                                    leftProcessed?.height ?: 0,
-                                    rightProcessed?.height ?: 0
-                                )
-                                
-                                if (combinedHeight > 0) {
-                                    // Create combined bitmap with both logos side by side
-                                    val combinedBitmap = Bitmap.createBitmap(
-                                        RECEIPT_WIDTH,
-                                        combinedHeight,
-                                        Bitmap.Config.ARGB_8888
-                                    )
-                                    val canvas = android.graphics.Canvas(combinedBitmap)
-                                    
-                                    // Fill with white background
-                                    canvas.drawColor(android.graphics.Color.WHITE)
-                                    
-                                    // Draw left logo at left edge (x = 0)
-                                    leftProcessed?.let {
-                                        canvas.drawBitmap(it, 0f, 0f, null)
-                                    }
-                                    
-                                    // Draw right logo at right edge (x = RECEIPT_WIDTH - logo width)
-                                    // This ensures space between them since left logo is at 0 and right logo is at the end
-                                    rightProcessed?.let {
-                                        val rightX = (RECEIPT_WIDTH - it.width).toFloat()
-                                        canvas.drawBitmap(it, rightX, 0f, null)
-                                    }
-                                    
-                                    // Convert combined bitmap to monochrome
-                                    val finalBitmap = convertToMonochrome(combinedBitmap)
-                                    
-                                    // Print the combined bitmap (centered)
-                                    service.sendRAWData(byteArrayOf(0x1B, 0x61, 0x01), null) // Center align
-                                    service.printBitmap(finalBitmap, null)
-                                    Log.d(TAG, "Printed dual logos: left=${line.leftLogoPath}, right=${line.rightLogoPath}")
-                                }
+                                // Print the combined bitmap (centered)
+                                service.sendRAWData(byteArrayOf(0x1B, 0x61, 0x01), null) // Center align
+                                service.printBitmap(finalBitmap, null)
+                                Log.d(TAG, "Printed dual logos: left=${line.leftLogoPath}, right=${line.rightLogoPath}")
                             } catch (e: RemoteException) {
                                 Log.e(TAG, "Print dual logo error: ${e.message}", e)
                                 // Continue even if bitmap fails
@@ -267,8 +229,6 @@ class ReceiptPrinterService(
                                 Log.e(TAG, "Print dual logo error: ${e.message}", e)
                                 // Continue even if bitmap fails
                             }
-                        } else {
-                            Log.w(TAG, "Failed to load both logos from assets: ${line.leftLogoPath}, ${line.rightLogoPath}")
                         }
                     }
                     is ReceiptLine.Text -> {
@@ -353,12 +313,15 @@ class ReceiptPrinterService(
             // Feed paper
             service.lineWrap(3, null)
             Log.d(TAG, "Called lineWrap(3)")
+            LatencyTracer.end(Phase.RECEIPT_RENDER, renderStart)
+            var commitStart = 0L
             
             // Exit buffer with callback - this fires when all buffered content is printed
             // Following Sunmi SDK demo pattern: exitPrinterBufferWithCallback(true, callback)
             val exitCallback = object : InnerResultCallback() {
                 @Throws(RemoteException::class)
                 override fun onRunResult(isSuccess: Boolean) {
+                    LatencyTracer.end(Phase.RECEIPT_COMMIT, commitStart)
                     Log.d(TAG, "exitPrinterBufferWithCallback onRunResult: isSuccess=$isSuccess")
                     if (!isSuccess) {
                         Log.e(TAG, "Exit buffer failed")
@@ -369,9 +332,11 @@ class ReceiptPrinterService(
                     // After buffer exits, cut paper
                     try {
                         Log.d(TAG, "Cutting paper...")
+                        val cutStart = LatencyTracer.start()
                         service.cutPaper(object : InnerResultCallback() {
                             @Throws(RemoteException::class)
                             override fun onRunResult(isSuccess: Boolean) {
+                                LatencyTracer.end(Phase.RECEIPT_CUT, cutStart)
                                 Log.d(TAG, "cutPaper onRunResult: isSuccess=$isSuccess")
                                 if (isSuccess) {
                                     Log.d(TAG, "Receipt print completed successfully")
@@ -430,6 +395,7 @@ class ReceiptPrinterService(
             }
             
             Log.d(TAG, "Calling exitPrinterBufferWithCallback...")
+            commitStart = LatencyTracer.start()
             service.exitPrinterBufferWithCallback(true, exitCallback)
             
         } catch (e: Exception) {
@@ -446,65 +412,6 @@ class ReceiptPrinterService(
     
     
     
-    private fun resizeBitmap(bitmap: Bitmap, maxWidth: Int): Bitmap {
-        if (bitmap.width <= maxWidth) {
-            return bitmap
-        }
-        val aspectRatio = bitmap.height.toFloat() / bitmap.width.toFloat()
-        val newHeight = (maxWidth * aspectRatio).toInt()
-        return Bitmap.createScaledBitmap(bitmap, maxWidth, newHeight, true)
-    }
-    
-    /**
-     * Convert bitmap to monochrome (black and white) for thermal printer
-     * Thermal printers work best with 1-bit monochrome images
-     * This prevents black boxes and ensures proper printing
-     */
-    private fun convertToMonochrome(bitmap: Bitmap): Bitmap {
-        val width = bitmap.width
-        val height = bitmap.height
-        val monochrome = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
-        
-        val pixels = IntArray(width * height)
-        bitmap.getPixels(pixels, 0, width, 0, 0, width, height)
-        
-        for (i in pixels.indices) {
-            val pixel = pixels[i]
-            val alpha = (pixel shr 24) and 0xFF
-            val r = (pixel shr 16) and 0xFF
-            val g = (pixel shr 8) and 0xFF
-            val b = pixel and 0xFF
-            
-            // Skip transparent pixels
-            if (alpha < 128) {
-                pixels[i] = 0xFFFFFFFF.toInt() // White for transparent
-                continue
-            }
-            
-            // Convert to grayscale using luminance formula
-            val gray = (0.299 * r + 0.587 * g + 0.114 * b).toInt()
-            // Threshold: below 128 = black, above = white
-            val newPixel = if (gray < 128) 0xFF000000.toInt() else 0xFFFFFFFF.toInt()
-            pixels[i] = newPixel
-        }
-        
-        monochrome.setPixels(pixels, 0, width, 0, 0, width, height)
-        return monochrome
-    }
-
-    private fun loadLogoFromAsset(assetPath: String?): Bitmap? {
-        if (assetPath == null) return null
-        return try {
-            val inputStream = MyApplication.app.assets.open(assetPath)
-            val bitmap = BitmapFactory.decodeStream(inputStream)
-            inputStream.close()
-            bitmap
-        } catch (e: Exception) {
-            Log.e(TAG, "Failed to load logo from asset '$assetPath': ${e.message}", e)
-            null
-        }
-    }
-
     private fun getFontSize(size: FontSize): Float {
         return when (size) {
             FontSize.SMALL -> 20f
@@ -541,6 +448,17 @@ sealed class ReceiptLine {
         val alignment: Alignment = Alignment.CENTER
     ) : ReceiptLine()
     
+    /**
+     * Receipt header block - dual logos, merchant name and address, printed as
+     * one raster from [ReceiptRasterCache]
+     */
+    data class Header(
+        val leftLogoPath: String,
+        val rightLogoPath: String,
+        val merchantName: String,
+        val address: String? = null
+    ) : ReceiptLine()
+
     /**
      * Dual logos on the same line - left logo aligned left, right logo aligned right
      */
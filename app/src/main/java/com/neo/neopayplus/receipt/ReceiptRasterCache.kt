@@ -0,0 +1,313 @@
+package com.neo.neopayplus.receipt
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Typeface
+import android.util.Log
+import com.neo.neopayplus.BuildConfig
+import com.neo.neopayplus.MyApplication
+import com.neo.neopayplus.utils.MonoRaster
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Print-ready 1-bit rasters for the static parts of a receipt
+ *
+ * Logos (by asset and width), dual-logo lines and the composite header block
+ * (logos + merchant name + address) are decoded, scaled and thresholded once,
+ * then kept in memory as black/white bitmaps and on disk as [MonoRaster]
+ * files, so later receipts and later boots skip the asset decode entirely.
+ *
+ * A header key covers every input (logos, name, address, width), so a config
+ * change renders a new block; the [MAX_HEADERS] most recently used blocks are
+ * kept, so a receipt with a different address does not push out the usual
+ * one. Disk entries live under the app version code, so an update that ships
+ * new assets starts clean.
+ */
+object ReceiptRasterCache {
+    private const val TAG = "ReceiptRasterCache"
+    private const val DIR_NAME = "receipt_raster"
+    private const val HEADER_PREFIX = "header-"
+    private const val SUFFIX = ".ras"
+    private const val MAX_HEADERS = 4
+
+    /** Dual logos: 35% of the paper each, the rest is the gap */
+    private const val DUAL_LOGO_RATIO = 0.35f
+    private const val LINE_GAP_DOTS = 24
+    private const val NAME_TEXT_SIZE = 24f
+    private const val ADDRESS_TEXT_SIZE = 20f
+
+    private val memory = ConcurrentHashMap<String, Bitmap>()
+    private val lock = Any()
+
+    /** Header blocks in access order, least recently used first (guarded by [lock]) */
+    private val headers = object : LinkedHashMap<String, Bitmap>(MAX_HEADERS, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Bitmap>?): Boolean =
+            size > MAX_HEADERS
+    }
+
+    @Volatile
+    private var dir: File? = null
+
+    /**
+     * Persist rasters under `filesDir`; until called the cache is memory only
+     */
+    @JvmStatic
+    fun init(filesDir: File) {
+        val root = File(filesDir, DIR_NAME)
+        val versionDir = File(root, BuildConfig.VERSION_CODE.toString())
+        root.listFiles()?.filter { it != versionDir }?.forEach { it.deleteRecursively() }
+        if (!versionDir.isDirectory && !versionDir.mkdirs()) {
+            Log.e(TAG, "Cannot create $versionDir")
+            return
+        }
+        dir = versionDir
+    }
+
+    /**
+     * Render (or load) what the next receipts will need: the header for
+     * `merchantName` with the logos and address [ReceiptDataMapper] fills in,
+     * and the settlement logo
+     */
+    @JvmStatic
+    fun warmUp(merchantName: String) {
+        val start = System.currentTimeMillis()
+        val header = ReceiptLineUtils.header(
+            merchantName, ReceiptLineUtils.DEFAULT_MERCHANT_LOGO, ReceiptLineUtils.DEFAULT_BANK_LOGO, null
+        )
+        header(header, ReceiptPrinterService.RECEIPT_WIDTH)
+        logo(ReceiptLineUtils.DEFAULT_MERCHANT_LOGO, ReceiptPrinterService.RECEIPT_WIDTH)
+        val cached = memory.size + synchronized(lock) { headers.size }
+        Log.d(TAG, "Receipt rasters ready in ${System.currentTimeMillis() - start}ms ($cached cached)")
+    }
+
+    /**
+     * Single logo, scaled down to at most `width` dots
+     */
+    fun logo(assetPath: String, width: Int): Bitmap? =
+        get("logo|$assetPath@$width", false) { renderLogo(assetPath, width) }
+
+    /**
+     * Two logos on one `width`-dot line, left and right aligned
+     */
+    fun dualLogo(leftAssetPath: String, rightAssetPath: String, width: Int): Bitmap? =
+        get("dual|$leftAssetPath|$rightAssetPath@$width", false) {
+            renderDualLogo(leftAssetPath, rightAssetPath, width)
+        }
+
+    /**
+     * The whole header block as one bitmap
+     */
+    fun header(header: ReceiptLine.Header, width: Int): Bitmap? =
+        get("header|${header.leftLogoPath}|${header.rightLogoPath}|${header.merchantName}|${header.address}@$width", true) {
+            renderHeader(header, width)
+        }
+
+    /**
+     * Drop everything (memory and disk), e.g. after new logos are installed
+     */
+    fun clear() {
+        synchronized(lock) {
+            memory.clear()
+            headers.clear()
+            dir?.listFiles()?.forEach { it.delete() }
+        }
+    }
+
+    private fun get(key: String, isHeader: Boolean, render: () -> MonoRaster?): Bitmap? {
+        if (!isHeader) {
+            memory[key]?.let { return it }
+        }
+        synchronized(lock) {
+            // A header lookup also marks it most recently used
+            (if (isHeader) headers[key] else memory[key])?.let { return it }
+            val file = dir?.let { File(it, fileName(key, isHeader)) }
+            val raster = file?.let { load(it) } ?: render()?.also { rendered ->
+                if (file != null) {
+                    store(file, rendered)
+                }
+            } ?: return null
+            val bitmap = Bitmap.createBitmap(raster.toArgb(), raster.width, raster.height, Bitmap.Config.ARGB_8888)
+            if (isHeader) {
+                headers[key] = bitmap
+                dir?.let { trimHeaderFiles(it) }
+            } else {
+                memory[key] = bitmap
+            }
+            return bitmap
+        }
+    }
+
+    // ==================== RENDERING ====================
+
+    private fun renderLogo(assetPath: String, width: Int): MonoRaster? {
+        val bitmap = decodeScaled(assetPath, width) ?: return null
+        return threshold(bitmap).also { bitmap.recycle() }
+    }
+
+    private fun renderDualLogo(leftAssetPath: String, rightAssetPath: String, width: Int): MonoRaster? {
+        val canvasBitmap = drawDualLogo(leftAssetPath, rightAssetPath, width) ?: return null
+        return threshold(canvasBitmap).also { canvasBitmap.recycle() }
+    }
+
+    private fun renderHeader(header: ReceiptLine.Header, width: Int): MonoRaster? {
+        val logos = drawDualLogo(header.leftLogoPath, header.rightLogoPath, width)
+        val name = textPaint(NAME_TEXT_SIZE, true)
+        val address = textPaint(ADDRESS_TEXT_SIZE, false)
+        val lines = mutableListOf<Pair<String, Paint>>()
+        if (header.merchantName.isNotEmpty()) {
+            lines.add(header.merchantName to name)
+        }
+        val addressText = header.address
+        if (!addressText.isNullOrEmpty()) {
+            lines.add(addressText to address)
+        }
+        if (logos == null && lines.isEmpty()) {
+            return null
+        }
+
+        val logosHeight = logos?.height ?: 0
+        var height = logosHeight + LINE_GAP_DOTS
+        for ((text, paint) in lines) {
+            fitWidth(text, paint, width)
+            height += lineHeight(paint)
+        }
+        height += LINE_GAP_DOTS
+
+        val block = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        val canvas = Canvas(block)
+        canvas.drawColor(Color.WHITE)
+        logos?.let {
+            canvas.drawBitmap(it, 0f, 0f, null)
+            it.recycle()
+        }
+        var top = (logosHeight + LINE_GAP_DOTS).toFloat()
+        for ((text, paint) in lines) {
+            canvas.drawText(text, width / 2f, top - paint.fontMetrics.ascent, paint)
+            top += lineHeight(paint)
+        }
+        return threshold(block).also { block.recycle() }
+    }
+
+    /**
+     * Both logos on a white `width` canvas (null if neither loads)
+     */
+    private fun drawDualLogo(leftAssetPath: String, rightAssetPath: String, width: Int): Bitmap? {
+        val logoWidth = (width * DUAL_LOGO_RATIO).toInt()
+        val left = decodeScaled(leftAssetPath, logoWidth)
+        val right = decodeScaled(rightAssetPath, logoWidth)
+        val height = maxOf(left?.height ?: 0, right?.height ?: 0)
+        if (height == 0) {
+            Log.w(TAG, "Failed to load both logos from assets: $leftAssetPath, $rightAssetPath")
+            return null
+        }
+        val combined = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        val canvas = Canvas(combined)
+        canvas.drawColor(Color.WHITE)
+        left?.let {
+            canvas.drawBitmap(it, 0f, 0f, null)
+            it.recycle()
+        }
+        right?.let {
+            canvas.drawBitmap(it, (width - it.width).toFloat(), 0f, null)
+            it.recycle()
+        }
+        return combined
+    }
+
+    private fun decodeScaled(assetPath: String, maxWidth: Int): Bitmap? {
+        val decoded = try {
+            MyApplication.app.assets.open(assetPath).use { BitmapFactory.decodeStream(it) }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load logo from asset '$assetPath': ${e.message}", e)
+            null
+        } ?: return null
+        if (decoded.width <= maxWidth) {
+            return decoded
+        }
+        val height = (maxWidth * decoded.height.toFloat() / decoded.width).toInt()
+        val scaled = Bitmap.createScaledBitmap(decoded, maxWidth, height, true)
+        if (scaled !== decoded) {
+            decoded.recycle()
+        }
+        return scaled
+    }
+
+    private fun threshold(bitmap: Bitmap): MonoRaster {
+        val pixels = IntArray(bitmap.width * bitmap.height)
+        bitmap.getPixels(pixels, 0, bitmap.width, 0, 0, bitmap.width, bitmap.height)
+        return MonoRaster.fromArgb(pixels, bitmap.width, bitmap.height)
+    }
+
+    private fun textPaint(size: Float, bold: Boolean) = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = Color.BLACK
+        textSize = size
+        textAlign = Paint.Align.CENTER
+        typeface = if (bold) Typeface.DEFAULT_BOLD else Typeface.DEFAULT
+    }
+
+    private fun fitWidth(text: String, paint: Paint, width: Int) {
+        while (paint.textSize > 12f && paint.measureText(text) > width) {
+            paint.textSize = paint.textSize - 1f
+        }
+    }
+
+    private fun lineHeight(paint: Paint): Int = (paint.fontSpacing + 0.5f).toInt()
+
+    // ==================== DISK ====================
+
+    private fun fileName(key: String, isHeader: Boolean): String {
+        val digest = MessageDigest.getInstance("SHA-1").digest(key.toByteArray(Charsets.UTF_8))
+        val hex = digest.joinToString("") { "%02x".format(it) }
+        return (if (isHeader) HEADER_PREFIX else "") + hex + SUFFIX
+    }
+
+    /**
+     * Keep the files of the headers held in memory and, of the rest, the
+     * newest that still fit in [MAX_HEADERS]; called under [lock]
+     */
+    private fun trimHeaderFiles(dir: File) {
+        val keep = headers.keys.mapTo(HashSet()) { fileName(it, true) }
+        val files = dir.listFiles { f -> f.name.startsWith(HEADER_PREFIX) && f.name.endsWith(SUFFIX) } ?: return
+        files.filter { it.name !in keep }
+            .sortedByDescending { it.lastModified() }
+            .drop(MAX_HEADERS - keep.size)
+            .forEach { it.delete() }
+    }
+
+    private fun load(file: File): MonoRaster? {
+        if (!file.isFile) {
+            return null
+        }
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { MonoRaster.readFrom(it) }
+        } catch (e: Exception) {
+            Log.w(TAG, "Discarding unreadable raster ${file.name}: ${e.message}")
+            file.delete()
+            null
+        }
+    }
+
+    private fun store(file: File, raster: MonoRaster) {
+        val tmp = File(file.path + ".tmp")
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(tmp))).use { raster.writeTo(it) }
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Failed to replace ${file.name}")
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to write raster ${file.name}: ${e.message}", e)
+            tmp.delete()
+        }
+    }
+}
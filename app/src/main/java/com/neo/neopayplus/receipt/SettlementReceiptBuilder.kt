@@ -1,5 +1,6 @@
 package com.neo.neopayplus.receipt
 
+import com.neo.neopayplus.data.BatchTotals
 import java.math.BigDecimal
 import java.text.DecimalFormat
 
@@ -65,6 +66,24 @@ object SettlementReceiptBuilder {
         return lines
     }
     
+    /**
+     * Brand section from the POS running totals of a batch (see [BatchTotals])
+     * "GENERAL TOTAL" sums all brands.
+     */
+    fun brandTotals(brandName: String, totals: List<BatchTotals.Total>): BrandTotals {
+        val summary = BatchTotals.summarize(totals, if (brandName == "GENERAL TOTAL") null else brandName)
+        return BrandTotals(
+            brandName = brandName,
+            saleCount = summary.saleCount,
+            saleAmount = BigDecimal.valueOf(summary.saleAmountMinor, 2),
+            voidSaleCount = summary.voidCount,
+            voidSaleAmount = BigDecimal.valueOf(summary.voidAmountMinor, 2),
+            refundCount = summary.refundCount,
+            refundAmount = BigDecimal.valueOf(summary.refundAmountMinor, 2),
+            totalAmount = BigDecimal.valueOf(summary.netAmountMinor, 2)
+        )
+    }
+    
     private fun hasTransactions(totals: BrandTotals): Boolean {
         return totals.saleCount > 0 || totals.voidSaleCount > 0 || totals.refundCount > 0 ||
                totals.saleAmount > BigDecimal.ZERO || totals.voidSaleAmount > BigDecimal.ZERO || totals.refundAmount > BigDecimal.ZERO
@@ -0,0 +1,391 @@
+package com.neo.neopayplus.security;
+
+import android.annotation.SuppressLint;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Crypto Engine
+ *
+ * Software AES / TDES block operations and CMAC (NIST SP 800-38B) with
+ * per-key state computed once: the key spec and the CMAC subkeys K1/K2 live
+ * in a {@link Key}, and each thread gets its own initialized ECB ciphers and
+ * {@link Cmac} for that key, so repeated MACs and block operations neither
+ * call Cipher.getInstance nor copy the input.
+ *
+ * Keys are cached by value ({@link #CACHE_SIZE} most recently used), so the
+ * byte[]-based helpers in CMacUtil / DesAesUtil get the same reuse; hot paths
+ * should keep the {@link Key} they got from {@link #aes} / {@link #tdes}.
+ */
+public final class CryptoEngine {
+
+    public static final int CACHE_SIZE = 16;
+
+    public enum Algorithm {
+        AES("AES", 16, 0x87),
+        TDES("DESede", 8, 0x1B);
+
+        final String jceName;
+        public final int blockSize;
+        final int rb; // CMAC subkey constant
+
+        Algorithm(String jceName, int blockSize, int rb) {
+            this.jceName = jceName;
+            this.blockSize = blockSize;
+            this.rb = rb;
+        }
+    }
+
+    private static final Map<KeyId, Key> CACHE = new LinkedHashMap<KeyId, Key>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KeyId, Key> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private CryptoEngine() {
+        throw new AssertionError("create instance of CryptoEngine is prohibited");
+    }
+
+    /**
+     * @param key 16, 24 or 32 bytes
+     */
+    public static Key aes(byte[] key) {
+        return key(Algorithm.AES, key);
+    }
+
+    /**
+     * @param key 16 bytes (double length, K1K2K1) or 24 bytes (triple length)
+     */
+    public static Key tdes(byte[] key) {
+        return key(Algorithm.TDES, key);
+    }
+
+    public static Key key(Algorithm algorithm, byte[] key) {
+        KeyId id = new KeyId(algorithm, key);
+        synchronized (CACHE) {
+            Key cached = CACHE.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Key created = new Key(algorithm, key);
+        synchronized (CACHE) {
+            Key raced = CACHE.get(id);
+            if (raced != null) {
+                return raced;
+            }
+            CACHE.put(new KeyId(algorithm, key.clone()), created);
+            return created;
+        }
+    }
+
+    /**
+     * Drop every cached key (e.g. after a key change)
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    // ==================== KEY ====================
+
+    /**
+     * One key with its derived state. Thread-safe; the ciphers behind it are
+     * per thread.
+     */
+    public static final class Key {
+        public final Algorithm algorithm;
+        private final byte[] material;
+        private final SecretKeySpec spec;
+        private final byte[] k1;
+        private final byte[] k2;
+        private final ThreadLocal<Ciphers> ciphers = new ThreadLocal<Ciphers>() {
+            @Override
+            protected Ciphers initialValue() {
+                return new Ciphers(Key.this);
+            }
+        };
+
+        Key(Algorithm algorithm, byte[] key) {
+            this.algorithm = algorithm;
+            this.material = normalize(algorithm, key);
+            this.spec = new SecretKeySpec(material, algorithm.jceName);
+            int b = algorithm.blockSize;
+            byte[] l = new byte[b];
+            Ciphers own = ciphers.get(); // Fails fast on a bad key
+            own.encryptBlocks(l, 0, b, l, 0);
+            this.k1 = doubleBlock(l, algorithm.rb);
+            this.k2 = doubleBlock(k1, algorithm.rb);
+        }
+
+        public int blockSize() {
+            return algorithm.blockSize;
+        }
+
+        /**
+         * ECB encrypt; {@code data} must be a whole number of blocks
+         */
+        public byte[] encrypt(byte[] data) {
+            checkBlocks(data.length);
+            byte[] out = new byte[data.length];
+            ciphers.get().encryptBlocks(data, 0, data.length, out, 0);
+            return out;
+        }
+
+        /**
+         * ECB decrypt; {@code data} must be a whole number of blocks
+         */
+        public byte[] decrypt(byte[] data) {
+            checkBlocks(data.length);
+            byte[] out = new byte[data.length];
+            ciphers.get().decryptBlocks(data, 0, data.length, out, 0);
+            return out;
+        }
+
+        public byte[] cmac(byte[] data) {
+            return cmac(data, 0, data.length);
+        }
+
+        public byte[] cmac(byte[] data, int offset, int length) {
+            byte[] out = new byte[algorithm.blockSize];
+            cmac(data, offset, length, out, 0);
+            return out;
+        }
+
+        /**
+         * CMAC of {@code data[offset, offset + length)} written to
+         * {@code out[outOffset, outOffset + blockSize)}; no allocation after
+         * the first call on a thread
+         */
+        public void cmac(byte[] data, int offset, int length, byte[] out, int outOffset) {
+            Cmac mac = cmac();
+            mac.update(data, offset, length);
+            mac.doFinal(out, outOffset);
+        }
+
+        /**
+         * This thread's incremental CMAC for this key, reset
+         */
+        public Cmac cmac() {
+            Cmac mac = ciphers.get().cmac;
+            mac.reset();
+            return mac;
+        }
+
+        private void checkBlocks(int length) {
+            if (length % algorithm.blockSize != 0) {
+                throw new IllegalArgumentException(algorithm + " data must be a multiple of "
+                        + algorithm.blockSize + " bytes, got " + length);
+            }
+        }
+    }
+
+    /**
+     * Incremental CMAC: feed the message in any number of pieces, then
+     * {@link #doFinal}. Confined to the thread that got it from
+     * {@link Key#cmac()}.
+     */
+    public static final class Cmac {
+        private final Key key;
+        private final Ciphers ciphers;
+        private final byte[] state;
+        private final byte[] pending; // Last block seen, held back until we know it is not the final one
+        private int pendingLength;
+
+        Cmac(Key key, Ciphers ciphers) {
+            this.key = key;
+            this.ciphers = ciphers;
+            this.state = new byte[key.algorithm.blockSize];
+            this.pending = new byte[key.algorithm.blockSize];
+        }
+
+        /**
+         * Start from {@code iv} instead of zeros (zero IV = standard CMAC)
+         */
+        public Cmac init(byte[] iv) {
+            reset();
+            System.arraycopy(iv, 0, state, 0, state.length);
+            return this;
+        }
+
+        public Cmac update(byte[] data, int offset, int length) {
+            int b = state.length;
+            while (length > 0) {
+                if (pendingLength == b) {
+                    xorInto(state, pending, 0, b);
+                    ciphers.encryptBlocks(state, 0, b, state, 0);
+                    pendingLength = 0;
+                }
+                int take = Math.min(b - pendingLength, length);
+                System.arraycopy(data, offset, pending, pendingLength, take);
+                pendingLength += take;
+                offset += take;
+                length -= take;
+            }
+            return this;
+        }
+
+        public Cmac update(byte[] data) {
+            return update(data, 0, data.length);
+        }
+
+        /**
+         * Write the MAC (one block) to {@code out} and reset
+         */
+        public void doFinal(byte[] out, int outOffset) {
+            int b = state.length;
+            byte[] subkey;
+            if (pendingLength == b) {
+                subkey = key.k1;
+            } else {
+                pending[pendingLength] = (byte) 0x80;
+                Arrays.fill(pending, pendingLength + 1, b, (byte) 0);
+                subkey = key.k2;
+            }
+            xorInto(pending, subkey, 0, b);
+            xorInto(state, pending, 0, b);
+            ciphers.encryptBlocks(state, 0, b, out, outOffset);
+            reset();
+        }
+
+        public byte[] doFinal() {
+            byte[] out = new byte[state.length];
+            doFinal(out, 0);
+            return out;
+        }
+
+        public void reset() {
+            Arrays.fill(state, (byte) 0);
+            Arrays.fill(pending, (byte) 0);
+            pendingLength = 0;
+        }
+    }
+
+    // ==================== INTERNALS ====================
+
+    /**
+     * One thread's initialized ciphers for one key
+     */
+    private static final class Ciphers {
+        private final Key key;
+        private final Cipher encrypt;
+        private Cipher decrypt;
+        final Cmac cmac;
+
+        Ciphers(Key key) {
+            this.key = key;
+            this.encrypt = init(key, Cipher.ENCRYPT_MODE);
+            this.cmac = new Cmac(key, this);
+        }
+
+        void encryptBlocks(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+            run(encrypt, in, inOffset, length, out, outOffset);
+        }
+
+        void decryptBlocks(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+            if (decrypt == null) {
+                decrypt = init(key, Cipher.DECRYPT_MODE);
+            }
+            run(decrypt, in, inOffset, length, out, outOffset);
+        }
+
+        private static void run(Cipher cipher, byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+            try {
+                // ECB/NoPadding keeps no state between blocks, so update() never needs doFinal()
+                cipher.update(in, inOffset, length, out, outOffset);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Block cipher failed", e);
+            }
+        }
+
+        @SuppressLint("GetInstance")
+        private static Cipher init(Key key, int mode) {
+            try {
+                Cipher cipher = Cipher.getInstance(key.algorithm.jceName + "/ECB/NoPadding");
+                cipher.init(mode, key.spec);
+                return cipher;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("Invalid " + key.algorithm + " key: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static byte[] normalize(Algorithm algorithm, byte[] key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key is null");
+        }
+        if (algorithm == Algorithm.TDES) {
+            if (key.length == 16) {
+                byte[] triple = Arrays.copyOf(key, 24); // K1 K2 K1
+                System.arraycopy(key, 0, triple, 16, 8);
+                return triple;
+            }
+            if (key.length != 24) {
+                throw new IllegalArgumentException("TDES key must be 16 or 24 bytes, got " + key.length);
+            }
+        } else if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("AES key must be 16, 24 or 32 bytes, got " + key.length);
+        }
+        return key.clone();
+    }
+
+    /**
+     * Left shift by one bit, XOR Rb if the top bit was set (CMAC subkey step)
+     */
+    static byte[] doubleBlock(byte[] in, int rb) {
+        byte[] out = new byte[in.length];
+        int carry = 0;
+        for (int i = in.length - 1; i >= 0; i--) {
+            int v = in[i] & 0xFF;
+            out[i] = (byte) ((v << 1) | carry);
+            carry = v >>> 7;
+        }
+        if ((in[0] & 0x80) != 0) {
+            out[in.length - 1] ^= (byte) rb;
+        }
+        return out;
+    }
+
+    private static void xorInto(byte[] target, byte[] other, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            target[offset + i] ^= other[i];
+        }
+    }
+
+    /**
+     * Cache key: algorithm + key bytes by value
+     */
+    private static final class KeyId {
+        final Algorithm algorithm;
+        final byte[] key;
+        final int hash;
+
+        KeyId(Algorithm algorithm, byte[] key) {
+            this.algorithm = algorithm;
+            this.key = key;
+            this.hash = 31 * algorithm.hashCode() + Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof KeyId)) {
+                return false;
+            }
+            KeyId other = (KeyId) o;
+            return algorithm == other.algorithm && Arrays.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
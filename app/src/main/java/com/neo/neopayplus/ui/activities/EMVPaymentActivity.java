@@ -23,6 +23,7 @@ import com.neo.neopayplus.emv.EMVCallback;
 import com.neo.neopayplus.emv.EMVHandler;
 import com.neo.neopayplus.emv.EMVSteps;
 import com.neo.neopayplus.emv.Emv55Builder;
+import com.neo.neopayplus.emv.EmvTransactionContext;
 import com.neo.neopayplus.emv.PinPadManager;
 import com.neo.neopayplus.emv.TLV;
 import com.neo.neopayplus.emv.TLVUtil;
@@ -108,6 +109,8 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
     private String tsiFromField55 = null;
     // Field 55 hex string (for extracting PAN later)
     private String field55Hex = null;
+    // EMV data decoded with Field 55 (PAN, expiry, AID, ...)
+    private EmvTransactionContext emvContext = null;
 
     // Amount entry state
     private StringBuilder amountDigits = new StringBuilder();
@@ -161,6 +164,7 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
         if (amountDouble > 0) {
             // Amount passed via intent as double (from RefundActivity/VoidActivity) - skip amount entry
             selectedAid = null; // Reset AID for new transaction
+            emvContext = null;
             BigDecimal amount = BigDecimal.valueOf(amountDouble);
             viewModel.setAmount(amount);
             currentAmount = amountDouble; // Store amount for receipt
@@ -169,6 +173,7 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
         } else if (amountStr != null && !amountStr.isEmpty()) {
             // Amount passed via intent as string - skip amount entry
             selectedAid = null; // Reset AID for new transaction
+            emvContext = null;
             BigDecimal amount = new BigDecimal(amountStr);
             viewModel.setAmount(amount);
             currentAmount = amount.doubleValue(); // Store amount for receipt
@@ -340,6 +345,7 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
 
         // Reset transaction data for new transaction
         selectedAid = null;
+        emvContext = null;
         currentPan = null;
         currentCardType = 0;
         currentStan = 0;
@@ -1104,52 +1110,29 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
                     Log.e(TAG, "Detected brand from AID: " + aidToUse);
                 }
 
-                byte[] field55 = Emv55Builder.buildForBrand(
+                EmvTransactionContext emv = Emv55Builder.buildContext(
                         MyApplication.app.emvOptV2,
                         brand,
                         isContactless,
                         isManualPinEntry // Check if PIN was entered
                 );
-
-                Log.e(TAG, "Field 55 built: " + field55.length + " bytes");
-                field55Hex = ByteUtil.bytes2HexStr(field55, 0, field55.length);
-
-                // Extract TVR (tag 95), TSI (tag 9B), and Expiry Date (tag 59) from Field 55
-                // (EMV data sent to
-                // backend)
-                try {
-                    java.util.Map<String, com.neo.neopayplus.emv.TLV> tlvMap = com.neo.neopayplus.emv.TLVUtil
-                            .buildTLVMap(field55);
-                    com.neo.neopayplus.emv.TLV tvrTlv = tlvMap.get("95");
-                    com.neo.neopayplus.emv.TLV tsiTlv = tlvMap.get("9B");
-                    com.neo.neopayplus.emv.TLV expiry59Tlv = tlvMap.get("59");
-
-                    if (tvrTlv != null) {
-                        tvrFromField55 = tvrTlv.getValue();
-                        Log.e(TAG, "✓ TVR (95) extracted from Field 55: " + tvrFromField55);
-                    } else {
-                        Log.e(TAG, "⚠️ TVR (95) not found in Field 55");
-                    }
-                    if (tsiTlv != null) {
-                        tsiFromField55 = tsiTlv.getValue();
-                        Log.e(TAG, "✓ TSI (9B) extracted from Field 55: " + tsiFromField55);
-                    } else {
-                        Log.e(TAG, "⚠️ TSI (9B) not found in Field 55");
-                    }
-                    if (expiry59Tlv != null && expiry59Tlv.getValue() != null && !expiry59Tlv.getValue().isEmpty()) {
-                        String expiry59Hex = expiry59Tlv.getValue();
-                        String expiry59Display = expiry59Hex.toUpperCase().replaceAll("F+$", "");
-                        if (expiry59Display.length() >= 4) {
-                            String yy = expiry59Display.substring(0, 2);
-                            String mm = expiry59Display.substring(2, 4);
-                            Log.e(TAG, "✓ Expiry date (59) present in Field 55 (unmasked for backend): " + mm + "/" + yy
-                                    + " (hex: " + expiry59Hex + ")");
-                        }
-                    } else {
-                        Log.e(TAG, "⚠️ Expiry date (59) not found in Field 55");
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "❌ Failed to extract TVR/TSI/Expiry from Field 55: " + e.getMessage());
+                emvContext = emv;
+
+                Log.e(TAG, "Field 55 built: " + emv.de55Length() + " bytes");
+                field55Hex = emv.de55Hex();
+
+                // TVR (95), TSI (9B) and expiry as read with Field 55 (EMV data sent to backend)
+                tvrFromField55 = emv.tvr;
+                tsiFromField55 = emv.tsi;
+                Log.e(TAG, tvrFromField55 != null ? "✓ TVR (95) read with Field 55: " + tvrFromField55
+                        : "⚠️ TVR (95) not found in Field 55");
+                Log.e(TAG, tsiFromField55 != null ? "✓ TSI (9B) read with Field 55: " + tsiFromField55
+                        : "⚠️ TSI (9B) not found in Field 55");
+                if (emv.expiry != null) {
+                    Log.e(TAG, "✓ Expiry date present (unmasked for backend): "
+                            + emv.expiry.substring(2, 4) + "/" + emv.expiry.substring(0, 2));
+                } else {
+                    Log.e(TAG, "⚠️ Expiry date not found in Field 55 data");
                 }
 
                 // Read transaction data
@@ -1199,7 +1182,7 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
                         null, // ksn
                         0, // pinType (online)
                         stan,
-                        field55Hex,
+                        emv,
                         currentTransactionType); // transactionType: "purchase" or "refund"
 
                 // Clear the manual PIN block after use
@@ -1677,11 +1660,12 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
         // Extract expiry date from EMV kernel
         // Priority: tag 59 (Card expiration date) -> tag 5F24 (Application Expiration
         // Date) -> Track 2 (57/9F6B)
-        String expiryDate = null;
-        String maskedExpiryDate = null;
+        // Decoded with Field 55 already; the kernel is only asked when that found none
+        String expiryDate = emvContext != null ? emvContext.expiry : null;
+        String maskedExpiryDate = expiryDate != null ? "**/**" : null;
         try {
             // Try tag 59 first (Card expiration date - YYMM format)
-            String expiry59 = emvHandler.readTlv("59");
+            String expiry59 = expiryDate == null ? emvHandler.readTlv("59") : null;
             if (expiry59 != null && !expiry59.isEmpty()) {
                 // Tag 59 is BCD encoded: YYMM (4 hex chars = 2 bytes)
                 expiryDate = expiry59.toUpperCase().replaceAll("F+$", "");
@@ -1869,7 +1853,7 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
                         if (originalTx.batchNumber != null) {
                             savedTx.batchNumber = originalTx.batchNumber;
                             // Re-save with correct batch number
-                            com.neo.neopayplus.data.TransactionJournal.saveTransaction(savedTx);
+                            com.neo.neopayplus.data.TransactionJournal.resaveTransaction(savedTx);
                             intent.putExtra("batchNumber", originalTx.batchNumber);
                             Log.e(TAG, "✓ Refund using original batch number: " + originalTx.batchNumber);
                         }
@@ -2496,11 +2480,12 @@ public class EMVPaymentActivity extends AppCompatActivity implements EMVCallback
         // Extract expiry date from EMV kernel (declined transaction)
         // Priority: tag 59 (Card expiration date) -> tag 5F24 (Application Expiration
         // Date) -> Track 2 (57/9F6B)
-        String expiryDate = null;
-        String maskedExpiryDate = null;
+        // Decoded with Field 55 already; the kernel is only asked when that found none
+        String expiryDate = emvContext != null ? emvContext.expiry : null;
+        String maskedExpiryDate = expiryDate != null ? "**/**" : null;
         try {
             // Try tag 59 first (Card expiration date - YYMM format)
-            String expiry59 = emvHandler.readTlv("59");
+            String expiry59 = expiryDate == null ? emvHandler.readTlv("59") : null;
             if (expiry59 != null && !expiry59.isEmpty()) {
                 expiryDate = expiry59.toUpperCase().replaceAll("F+$", "");
                 if (expiryDate.length() >= 4) {
@@ -7,25 +7,49 @@ import androidx.compose.foundation.clickable
 import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.material3.*
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.collectAsState
+import androidx.compose.runtime.derivedStateOf
+import androidx.compose.runtime.getValue
 import androidx.compose.runtime.remember
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.unit.dp
+import androidx.hilt.navigation.compose.hiltViewModel
 import com.neo.neopayplus.data.TransactionJournal
 import com.neo.neopayplus.receipt.ReceiptDataMapper
 import com.neo.neopayplus.ui.activities.ReceiptActivity
 import com.neo.neopayplus.ui.theme.Background
 import com.neo.neopayplus.ui.theme.IndigoBlue
 import com.neo.neopayplus.ui.theme.MutedLavender
+import com.neo.neopayplus.ui.viewmodel.HistoryViewModel
 import java.math.BigDecimal
 import java.math.RoundingMode
 
+// Rows left below the viewport when the next page is requested
+private const val LOAD_AHEAD = 10
+
 @Composable
-fun HistoryScreen() {
-    val transactions = remember { TransactionJournal.getAllTransactions() }
+fun HistoryScreen(viewModel: HistoryViewModel = hiltViewModel()) {
+    val state by viewModel.uiState.collectAsState()
+    val transactions = state.transactions
     val context = LocalContext.current
+    val listState = rememberLazyListState()
+    val nearEnd by remember {
+        derivedStateOf {
+            val layout = listState.layoutInfo
+            val lastVisible = layout.visibleItemsInfo.lastOrNull()?.index ?: -1
+            lastVisible >= layout.totalItemsCount - LOAD_AHEAD
+        }
+    }
+    LaunchedEffect(nearEnd, transactions.size) {
+        if (nearEnd) {
+            viewModel.loadNextPage()
+        }
+    }
     
     Column(
         Modifier
@@ -39,8 +63,16 @@ fun HistoryScreen() {
             style = MaterialTheme.typography.titleLarge,
             color = IndigoBlue
         )
+
+        OutlinedTextField(
+            value = state.query,
+            onValueChange = viewModel::search,
+            modifier = Modifier.fillMaxWidth(),
+            singleLine = true,
+            placeholder = { Text("RRN, card last 4, amount or date", color = MutedLavender) }
+        )
         
-        if (transactions.isEmpty()) {
+        if (transactions.isEmpty() && !state.isLoading) {
             Card(
                 modifier = Modifier.fillMaxWidth(),
                 colors = CardDefaults.cardColors(
@@ -48,16 +80,17 @@ fun HistoryScreen() {
                 )
             ) {
                 Text(
-                    "No transactions found",
+                    if (state.query.isBlank()) "No transactions found" else "No matching transactions",
                     modifier = Modifier.padding(20.dp),
                     color = MutedLavender
                 )
             }
         } else {
             LazyColumn(
+                state = listState,
                 verticalArrangement = Arrangement.spacedBy(12.dp)
             ) {
-                items(transactions) { tx ->
+                items(transactions, key = { it.transactionId }) { tx ->
                     TransactionCard(
                         transaction = tx,
                         onReprint = { 
@@ -146,11 +179,13 @@ fun TransactionCard(
             }
             
             // Amount
-            val amount = try {
-                val amountMinor = transaction.amount?.toLongOrNull() ?: 0L
-                BigDecimal(amountMinor).movePointLeft(2).setScale(2, RoundingMode.HALF_UP)
-            } catch (e: Exception) {
-                BigDecimal.ZERO
+            val amount = remember(transaction.amount) {
+                try {
+                    val amountMinor = transaction.amount?.toLongOrNull() ?: 0L
+                    BigDecimal(amountMinor).movePointLeft(2).setScale(2, RoundingMode.HALF_UP)
+                } catch (e: Exception) {
+                    BigDecimal.ZERO
+                }
             }
             Text(
                 "EGP ${amount}",
@@ -17,7 +17,7 @@ import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import com.neo.neopayplus.BuildConfig
 import com.neo.neopayplus.MyApplication
-import com.neo.neopayplus.db.TxnDb
+import com.neo.neopayplus.data.SequenceService
 import com.neo.neopayplus.domain.payment.model.EntryMode
 import com.neo.neopayplus.emv.TransactionState
 import com.neo.neopayplus.app.di.ServiceLocator
@@ -103,7 +103,7 @@ fun PaymentScreen(
         
         // Get STAN and prepare amount
         val stan = withContext(Dispatchers.IO) {
-            TxnDb(MyApplication.app).nextStan()
+            SequenceService.getInstance().nextStanValue()
         }
         val amountPiasters = amount.multiply(BigDecimal("100")).toLong().toString().padStart(12, '0')
         
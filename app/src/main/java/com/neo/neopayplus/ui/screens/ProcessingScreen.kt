@@ -72,7 +72,7 @@ fun ProcessingScreen(
             coroutineScope.launch {
                 try {
                     val stan = withContext(Dispatchers.IO) {
-                        com.neo.neopayplus.db.TxnDb(com.neo.neopayplus.MyApplication.app).nextStan()
+                        com.neo.neopayplus.data.SequenceService.getInstance().nextStanValue()
                     }
                     withContext(Dispatchers.Main) {
                         android.util.Log.e("ProcessingScreen", "Starting EMV transaction with STAN: $stan")
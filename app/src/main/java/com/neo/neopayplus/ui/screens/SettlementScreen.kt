@@ -9,22 +9,28 @@ import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.setValue
 import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.unit.dp
 import com.neo.neopayplus.data.TransactionJournal
 import com.neo.neopayplus.data.BatchManager
+import com.neo.neopayplus.data.BatchTotals
 import com.neo.neopayplus.api.SettlementApiFactory
 import com.neo.neopayplus.api.SettlementApiService
 import com.neo.neopayplus.config.PaymentConfig
 import com.neo.neopayplus.receipt.ReceiptPrinterService
 import com.neo.neopayplus.receipt.SettlementReceiptData
+import com.neo.neopayplus.receipt.SettlementReceiptBuilder
 import com.neo.neopayplus.receipt.BrandTotals
 import com.neo.neopayplus.ui.theme.Background
 import com.neo.neopayplus.ui.theme.IndigoBlue
 import com.neo.neopayplus.ui.theme.MutedLavender
 import com.neo.neopayplus.ui.theme.White
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import java.math.BigDecimal
 import java.text.SimpleDateFormat
 import java.util.*
@@ -33,35 +39,34 @@ import java.util.*
 fun SettlementScreen(
     receiptPrinterService: ReceiptPrinterService? = null
 ) {
-    // Use mutableStateOf to make it reactive - updates when transactions change
-    var allTransactions by remember { mutableStateOf(TransactionJournal.getAllTransactions()) }
+    // Bumped when the journal changes (settlement) to re-read the batch totals
+    var journalVersion by remember { mutableStateOf(0) }
     var currentBatchNumber by remember { mutableStateOf(BatchManager.getCurrentBatchNumber()) }
     
-    // Get transactions for current batch (unsettled transactions only)
-    // All calculations are done by backend - POS only sends raw transaction data
-    // Recalculate when allTransactions OR currentBatchNumber changes
-    val batchTransactions = remember(allTransactions, currentBatchNumber) { 
-        TransactionJournal.getTransactionsByBatch(currentBatchNumber)
-            .filter { 
-                // Only include unsettled transactions
-                !it.isSettled &&
-                (
-                    // Include approved transactions (sales and refunds)
-                    it.status == "APPROVED" ||
-                    // Include voided transactions (original transactions marked as VOID)
-                    it.status == "VOID"
-                )
-            }
+    // Preview from the running batch totals (a few rows, independent of journal size)
+    // and the count of unsettled rows settlement will upload, both read off the main thread
+    // Final totals are still calculated by backend after settlement
+    var batchSummary by remember { mutableStateOf(BatchTotals.Summary()) }
+    var settleableCount by remember { mutableStateOf(0) }
+    LaunchedEffect(journalVersion, currentBatchNumber) {
+        val batchNumber = currentBatchNumber
+        val (summary, unsettled) = withContext(Dispatchers.IO) {
+            BatchTotals.summarize(BatchTotals.get(batchNumber), null) to
+                TransactionJournal.countUnsettled(batchNumber)
+        }
+        batchSummary = summary
+        settleableCount = unsettled
     }
+    val coroutineScope = rememberCoroutineScope()
     
     var isSettling by remember { mutableStateOf(false) }
     var settlementMessage by remember { mutableStateOf<String?>(null) }
     var settlementResponse by remember { mutableStateOf<SettlementApiService.BatchUploadResponse?>(null) }
     
-    // Refresh transactions list when settlement completes
+    // Refresh batch totals when settlement completes
     LaunchedEffect(settlementResponse) {
         if (settlementResponse != null) {
-            allTransactions = TransactionJournal.getAllTransactions()
+            journalVersion++
         }
     }
     
@@ -117,7 +122,20 @@ fun SettlementScreen(
                     horizontalArrangement = Arrangement.SpaceBetween
                 ) {
                     Text("Transactions in Batch:", color = MutedLavender)
-                    Text("${batchTransactions.size}", color = IndigoBlue)
+                    Text("$settleableCount", color = IndigoBlue)
+                }
+                
+                // Local running totals (preview)
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.SpaceBetween
+                ) {
+                    Text("Sales / Refunds:", color = MutedLavender)
+                    Text(
+                        "${batchSummary.saleCount} - ${formatMinor(batchSummary.saleAmountMinor)} / " +
+                            "${batchSummary.refundCount} - ${formatMinor(batchSummary.refundAmountMinor)}",
+                        color = IndigoBlue
+                    )
                 }
                 
                 Text(
@@ -254,110 +272,99 @@ fun SettlementScreen(
         Button(
             onClick = { 
                 // Allow settlement if there are any transactions (sales, refunds, or voids)
-                if (batchTransactions.isEmpty()) return@Button
+                if (settleableCount == 0) return@Button
                 
                 isSettling = true
                 settlementMessage = null
                 
-                // Build settlement request
-                val settlementService = SettlementApiFactory.getInstance()
-                val request = SettlementApiService.BatchUploadRequest().apply {
-                    terminalId = PaymentConfig.getTerminalId()
-                    batchNumber = currentBatchNumber
+                coroutineScope.launch {
+                    // Consistency check before settling: repairs the totals if they drifted
+                    // (may rebuild them from the whole batch, so not on the main thread)
+                    val verifyBatch = currentBatchNumber
+                    if (!withContext(Dispatchers.IO) { BatchTotals.verify(verifyBatch) }) {
+                        journalVersion++
+                    }
                     
-                    // Format batch date/time
-                    val dateFormat = SimpleDateFormat("yyyyMMdd", Locale.US)
-                    val timeFormat = SimpleDateFormat("HHmmss", Locale.US)
-                    val now = Date()
-                    batchDate = dateFormat.format(now)
-                    batchTime = timeFormat.format(now)
+                    // Build settlement request
+                    val settlementService = SettlementApiFactory.getInstance()
+                    val request = SettlementApiService.BatchUploadRequest().apply {
+                        terminalId = PaymentConfig.getTerminalId()
+                        batchNumber = currentBatchNumber
                     
-                    // Send transactions for validation - backend will compare with transactions found by batch number
-                    // Only transactions that match (in both storage and request) will be settled
-                    transactions = batchTransactions
-                        .filter { !it.isSettled } // Double-check: only unsettled transactions
-                        .map { tx ->
-                            SettlementApiService.SettlementTransaction().apply {
-                                transactionId = tx.transactionId ?: "" // Include transaction ID for matching
-                                rrn = tx.rrn ?: ""
-                                // Void transactions don't have authCode from bank (void operation doesn't get new authCode)
-                                authCode = if (tx.status == "VOID") "" else (tx.authCode ?: "")
-                                pan = tx.pan ?: ""
-                                amount = tx.amount ?: "0"
-                                currencyCode = tx.currencyCode ?: "818"
-                                transactionType = tx.transactionType ?: "00"
-                                date = tx.date ?: ""
-                                time = tx.time ?: ""
-                                field55 = "" // TODO: Store field55 if needed
-                                responseCode = tx.responseCode ?: ""
-                                status = tx.status ?: ""
-                            }
-                        }
-                }
+                        // Format batch date/time
+                        val dateFormat = SimpleDateFormat("yyyyMMdd", Locale.US)
+                        val timeFormat = SimpleDateFormat("HHmmss", Locale.US)
+                        val now = Date()
+                        batchDate = dateFormat.format(now)
+                        batchTime = timeFormat.format(now)
+                    
+                        // Unsettled approved and voided transactions are streamed from the journal
+                        // by the service (in chunks); the backend compares them with its own batch
+                        transactions = null
+                    }
                 
-                // Upload batch
-                settlementService.uploadBatch(request, object : SettlementApiService.BatchUploadCallback {
-                    override fun onBatchUploadComplete(response: SettlementApiService.BatchUploadResponse) {
-                        isSettling = false
-                        if (response.success) {
-                            // Mark transactions as settled
-                            val settledCount = TransactionJournal.markBatchAsSettled(
-                                currentBatchNumber,
-                                response.acceptedRrns
-                            )
+                    // Upload batch
+                    settlementService.uploadBatch(request, object : SettlementApiService.BatchUploadCallback {
+                        override fun onBatchUploadComplete(response: SettlementApiService.BatchUploadResponse) {
+                            isSettling = false
+                            if (response.success) {
+                                // Mark transactions as settled
+                                val settledCount = TransactionJournal.markBatchAsSettled(
+                                    currentBatchNumber,
+                                    response.acceptedRrns
+                                )
                             
-                            // Refresh transactions immediately to reflect settled status
-                            allTransactions = TransactionJournal.getAllTransactions()
+                                // Increment batch number for next batch
+                                val newBatchNumber = BatchManager.incrementBatchNumber()
+                                currentBatchNumber = newBatchNumber // Update UI immediately
                             
-                            // Increment batch number for next batch
-                            val newBatchNumber = BatchManager.incrementBatchNumber()
-                            currentBatchNumber = newBatchNumber // Update UI immediately
+                                // Refresh totals for the new batch
+                                journalVersion++
                             
-                            // Refresh transactions again after batch number change to get new batch transactions
-                            allTransactions = TransactionJournal.getAllTransactions()
+                                // Store response for display
+                                settlementResponse = response
+                                settlementMessage = "Settlement successful! ${response.acceptedCount} transactions settled."
                             
-                            // Store response for display
-                            settlementResponse = response
-                            settlementMessage = "Settlement successful! ${response.acceptedCount} transactions settled."
-                            
-                            // Print settlement report using backend-calculated data
-                            if (receiptPrinterService != null) {
-                                try {
-                                    val settlementData = createSettlementReceiptData(
-                                        response,
-                                        request.batchDate ?: "",
-                                        request.batchTime ?: ""
-                                    )
-                                    receiptPrinterService.printSettlementReport(
-                                        settlementData,
-                                        object : ReceiptPrinterService.PrintCallback {
-                                            override fun onSuccess() {
-                                                android.util.Log.d("SettlementScreen", "✓ Settlement report printed successfully")
-                                            }
-                                            override fun onError(message: String) {
-                                                android.util.Log.e("SettlementScreen", "✗ Settlement report print error: $message")
+                                // Print settlement report using backend-calculated data
+                                if (receiptPrinterService != null) {
+                                    try {
+                                        val settlementData = createSettlementReceiptData(
+                                            response,
+                                            request.batchDate ?: "",
+                                            request.batchTime ?: "",
+                                            BatchTotals.get(request.batchNumber)
+                                        )
+                                        receiptPrinterService.printSettlementReport(
+                                            settlementData,
+                                            object : ReceiptPrinterService.PrintCallback {
+                                                override fun onSuccess() {
+                                                    android.util.Log.d("SettlementScreen", "✓ Settlement report printed successfully")
+                                                }
+                                                override fun onError(message: String) {
+                                                    android.util.Log.e("SettlementScreen", "✗ Settlement report print error: $message")
+                                                }
                                             }
-                                        }
-                                    )
-                                } catch (e: Exception) {
-                                    android.util.Log.e("SettlementScreen", "Failed to create/print settlement report: ${e.message}", e)
+                                        )
+                                    } catch (e: Exception) {
+                                        android.util.Log.e("SettlementScreen", "Failed to create/print settlement report: ${e.message}", e)
+                                    }
                                 }
+                            } else {
+                                settlementResponse = null
+                                settlementMessage = "Settlement failed: ${response.message}"
                             }
-                        } else {
-                            settlementResponse = null
-                            settlementMessage = "Settlement failed: ${response.message}"
                         }
-                    }
                     
-                    override fun onBatchUploadError(error: Throwable) {
-                        isSettling = false
-                        settlementResponse = null
-                        settlementMessage = "Settlement error: ${error.message}"
-                    }
-                })
+                        override fun onBatchUploadError(error: Throwable) {
+                            isSettling = false
+                            settlementResponse = null
+                            settlementMessage = "Settlement error: ${error.message}"
+                        }
+                    })
+                }
             },
             modifier = Modifier.fillMaxWidth().height(52.dp),
-            enabled = batchTransactions.isNotEmpty() && !isSettling
+            enabled = settleableCount > 0 && !isSettling
         ) {
             Text(if (isSettling) "Settling..." else "Settle Now", color = White)
         }
@@ -421,7 +428,7 @@ fun SettlementScreen(
                         
                         // Transaction count info
                         Text(
-                            text = "Settling ${batchTransactions.size} transaction${if (batchTransactions.size != 1) "s" else ""}",
+                            text = "Settling $settleableCount transaction${if (settleableCount != 1) "s" else ""}",
                             style = MaterialTheme.typography.bodySmall,
                             color = MutedLavender
                         )
@@ -432,14 +439,22 @@ fun SettlementScreen(
     }
 }
 
+/**
+ * Minor units to a 2-decimal display amount
+ */
+private fun formatMinor(amountMinor: Long): String =
+    BigDecimal.valueOf(amountMinor).movePointLeft(2).toPlainString()
+
 /**
  * Helper function to create SettlementReceiptData from backend settlement response
- * All calculations are done by backend - POS only uses the response data
+ * All calculations are done by backend - POS only uses the response data.
+ * If the response carries no totals, the POS running totals of the batch are printed instead.
  */
 private fun createSettlementReceiptData(
     response: SettlementApiService.BatchUploadResponse,
     batchDate: String,
-    batchTime: String
+    batchTime: String,
+    localTotals: List<BatchTotals.Total>
 ): SettlementReceiptData {
     val totals = response.totals ?: return SettlementReceiptData(
         merchantLogoAssetPath = "images/receipt_logo.webp",
@@ -450,10 +465,10 @@ private fun createSettlementReceiptData(
         time = batchTime,
         batchNumber = response.batchNumber ?: "",
         batchStatus = "APPROVED",
-        visaTotals = BrandTotals("VISA", 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, BigDecimal.ZERO),
-        mastercardTotals = BrandTotals("MASTERCARD", 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, BigDecimal.ZERO),
-        meezaTotals = BrandTotals("MEEZA", 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, BigDecimal.ZERO),
-        generalTotals = BrandTotals("GENERAL TOTAL", 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, BigDecimal.ZERO)
+        visaTotals = SettlementReceiptBuilder.brandTotals("VISA", localTotals),
+        mastercardTotals = SettlementReceiptBuilder.brandTotals("MASTERCARD", localTotals),
+        meezaTotals = SettlementReceiptBuilder.brandTotals("MEEZA", localTotals),
+        generalTotals = SettlementReceiptBuilder.brandTotals("GENERAL TOTAL", localTotals)
     )
     
     // Helper to convert backend brand totals to BrandTotals
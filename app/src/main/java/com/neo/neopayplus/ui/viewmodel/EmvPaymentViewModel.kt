@@ -4,7 +4,7 @@ import android.app.Application
 import android.util.Log
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
-import com.neo.neopayplus.db.TxnDb
+import com.neo.neopayplus.data.SequenceService
 import com.neo.neopayplus.emv.EmvHandlerFactory
 import com.neo.neopayplus.emv.TransactionManager
 import dagger.hilt.android.lifecycle.HiltViewModel
@@ -101,7 +101,7 @@ class EmvPaymentViewModel @Inject constructor(
             try {
                 // Get STAN
                 val stan = withContext(Dispatchers.IO) {
-                    TxnDb(getApplication()).nextStan()
+                    SequenceService.getInstance().nextStanValue()
                 }
 
                 val amount = _uiState.value.amount
@@ -0,0 +1,121 @@
+package com.neo.neopayplus.ui.viewmodel
+
+import androidx.lifecycle.ViewModel
+import androidx.lifecycle.viewModelScope
+import com.neo.neopayplus.data.TransactionJournal
+import com.neo.neopayplus.data.TransactionJournal.TransactionRecord
+import com.neo.neopayplus.data.TransactionSearchIndex
+import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import javax.inject.Inject
+
+/**
+ * ViewModel for HistoryScreen.
+ *
+ * Loads the journal a page at a time (keyset on timestamp/row id) and runs
+ * searches against a [TransactionSearchIndex]; all journal reads happen on
+ * [Dispatchers.IO], so the list never waits on the database.
+ */
+@HiltViewModel
+class HistoryViewModel @Inject constructor() : ViewModel() {
+
+    companion object {
+        private const val PAGE_SIZE = 30
+        private const val SEARCH_LIMIT = 50
+        private const val SEARCH_DEBOUNCE_MS = 250L
+    }
+
+    data class UiState(
+        val transactions: List<TransactionRecord> = emptyList(),
+        val query: String = "",
+        val isLoading: Boolean = false,
+        val endReached: Boolean = false
+    )
+
+    private val _uiState = MutableStateFlow(UiState())
+    val uiState: StateFlow<UiState> = _uiState.asStateFlow()
+
+    // Pages loaded so far, shown again when the search is cleared
+    private var browsed: List<TransactionRecord> = emptyList()
+    private var nextTimestamp = Long.MAX_VALUE
+    private var nextId = Long.MAX_VALUE
+    private var searchJob: Job? = null
+
+    @Volatile
+    private var index: TransactionSearchIndex? = null
+
+    init {
+        loadNextPage()
+    }
+
+    /**
+     * Append the next page of history (no-op while searching, loading or at the end)
+     */
+    fun loadNextPage() {
+        val state = _uiState.value
+        if (state.isLoading || state.endReached || state.query.isNotBlank()) return
+        _uiState.update { it.copy(isLoading = true) }
+
+        viewModelScope.launch {
+            val page = withContext(Dispatchers.IO) {
+                TransactionJournal.getHistoryPage(nextTimestamp, nextId, PAGE_SIZE)
+            }
+            nextTimestamp = page.lastTimestamp
+            nextId = page.lastId
+            // A transaction re-saved mid-scroll comes back under a newer row id
+            browsed = (browsed + page.records).distinctBy { it.transactionId }
+            _uiState.update {
+                it.copy(
+                    transactions = if (it.query.isBlank()) browsed else it.transactions,
+                    isLoading = false,
+                    endReached = page.records.size < PAGE_SIZE
+                )
+            }
+            if (index == null) {
+                // Warm the search index while the operator looks at the first page
+                launch(Dispatchers.IO) { searchIndex() }
+            }
+        }
+    }
+
+    /**
+     * Filter by RRN, card last 4, amount or date (see [TransactionSearchIndex.search]);
+     * a blank query goes back to the paged history
+     */
+    fun search(query: String) {
+        searchJob?.cancel()
+        if (query.isBlank()) {
+            _uiState.update { it.copy(query = query, transactions = browsed) }
+            return
+        }
+        _uiState.update { it.copy(query = query) }
+
+        searchJob = viewModelScope.launch {
+            delay(SEARCH_DEBOUNCE_MS)
+            val results = withContext(Dispatchers.IO) {
+                TransactionJournal.getTransactionsByIds(searchIndex().search(query, SEARCH_LIMIT))
+            }
+            _uiState.update { it.copy(transactions = results) }
+        }
+    }
+
+    /**
+     * Current index, rebuilt when the journal has changed since it was built
+     */
+    @Synchronized
+    private fun searchIndex(): TransactionSearchIndex {
+        val current = index
+        if (current != null && current.version() == TransactionJournal.version()) {
+            return current
+        }
+        return TransactionJournal.buildSearchIndex().also { index = it }
+    }
+}
@@ -1,10 +1,12 @@
 package com.neo.neopayplus.utils;
 
-import android.annotation.SuppressLint;
-
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
+import com.neo.neopayplus.security.CryptoEngine;
 
+/**
+ * AES / 3DES ECB helpers; keys and initialized ciphers are cached by
+ * {@link CryptoEngine}, so repeated calls with one key skip the cipher setup.
+ * 3DES accepts 16-byte (K1K2K1) and 24-byte keys.
+ */
 public final class DesAesUtil {
     private DesAesUtil() {
         throw new AssertionError();
@@ -17,13 +19,9 @@ public final class DesAesUtil {
      * @param data 待加密的数据
      * @return 加密后的数据
      */
-    @SuppressLint("GetInstance")
     public static byte[] aseEncrypt(byte[] key, byte[] data) {
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
-            return cipher.doFinal(data);
+            return CryptoEngine.aes(key).encrypt(data);
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError("DesAesUtil", e);
         }
@@ -37,13 +35,9 @@ public final class DesAesUtil {
      * @param data 待解密的数据
      * @return 解密后的数据
      */
-    @SuppressLint("GetInstance")
     public static byte[] aseDecrypt(byte[] key, byte[] data) {
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
-            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
-            return cipher.doFinal(data);
+            return CryptoEngine.aes(key).decrypt(data);
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError("DesAesUtil", e);
         }
@@ -57,13 +51,9 @@ public final class DesAesUtil {
      * @param data 待加密的数据
      * @return 加密后的数据
      */
-    @SuppressLint("GetInstance")
     public static byte[] desEncrypt(byte[] key, byte[] data) {
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "DESede");
-            Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
-            return cipher.doFinal(data);
+            return CryptoEngine.tdes(key).encrypt(data);
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError("DesAesUtil", e);
         }
@@ -77,13 +67,9 @@ public final class DesAesUtil {
      * @param data 待解密的数据
      * @return 解密后的数据
      */
-    @SuppressLint("GetInstance")
     public static byte[] desDecrypt(byte[] key, byte[] data) {
         try {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key, "DESede");
-            Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
-            return cipher.doFinal(data);
+            return CryptoEngine.tdes(key).decrypt(data);
         } catch (Exception e) {
             com.neo.neopayplus.utils.ErrorHandler.logError("DesAesUtil", e);
         }
@@ -0,0 +1,23 @@
+package com.neo.neopayplus.utils;
+
+import com.google.gson.Gson;
+
+/**
+ * Gson Util
+ *
+ * The one Gson instance for API bodies, the journal and stored EMV config.
+ * Gson is thread-safe and caches a TypeAdapter per type, so a shared instance
+ * builds each adapter once instead of on every request.
+ */
+public final class GsonUtil {
+
+    private static final Gson GSON = new Gson();
+
+    private GsonUtil() {
+        throw new AssertionError("create instance of GsonUtil is prohibited");
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+}
@@ -0,0 +1,104 @@
+package com.neo.neopayplus.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency Histogram
+ *
+ * Fixed-size log-linear histogram of microsecond values, in the style of
+ * HdrHistogram: values below 64 get their own bucket, above that every
+ * power-of-two range is split into 32 buckets, so any recorded value is
+ * reported within ~3% (percentiles report the bucket's upper bound). Values
+ * are clamped at 2^37 - 1 µs (about 38 hours).
+ *
+ * {@link #record(long)} is lock-free and allocation-free (atomic array
+ * increments), so it can be called from kernel callbacks, the ISO selector
+ * thread and printer callbacks at once.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // 32
+    private static final int MAX_MSB = 36;
+    /** Largest value that keeps its own bucket */
+    public static final long MAX_VALUE = (1L << (MAX_MSB + 1)) - 1;
+    private static final int BUCKETS = (MAX_MSB - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        long value = micros < 0 ? 0 : Math.min(micros, MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long seen;
+        while (value > (seen = max.get()) && !max.compareAndSet(seen, value)) {
+            // Retry: another thread raised the max
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long mean() {
+        long n = total.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return Upper bound of the bucket holding that percentile (µs), 0 if empty
+     */
+    public long percentile(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), max.get());
+            }
+        }
+        return max.get(); // Counts moved on while walking
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BITS;
+        int sub = (int) (value >>> shift); // 32..63
+        return (shift + 1) * SUB_BUCKETS + (sub - SUB_BUCKETS);
+    }
+
+    static long highestInBucket(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
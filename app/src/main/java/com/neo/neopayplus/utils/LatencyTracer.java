@@ -0,0 +1,349 @@
+package com.neo.neopayplus.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.neo.neopayplus.Constant;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Latency Tracer
+ *
+ * Per-phase latency histograms for the card-present path: EMV kernel
+ * milestones (card detect through onTransResult), host pack / connect /
+ * pre-warm / send / first byte / round trip / parse, and receipt render / buffer commit / cut.
+ *
+ * A span is two calls, {@code long t = LatencyTracer.start();} then
+ * {@code LatencyTracer.end(Phase.X, t);} - a nanoTime read and a few atomic
+ * increments into a preallocated {@link LatencyHistogram}, no allocation and
+ * no lock. EMV phases use {@link #beginTransaction()} / {@link #milestone},
+ * each milestone recording the time since the previous one.
+ *
+ * Histograms cover a rolling window of {@link #WINDOW_TRANSACTIONS}
+ * transactions; when the window fills, its p50/p95/p99 summary moves to a
+ * history of the last {@link #HISTORY_SIZE} windows. Summaries are written to
+ * {@link #FILE_NAME} after each transaction (off the caller's thread) so they
+ * survive restarts, and shown in the debug screen.
+ */
+public final class LatencyTracer {
+
+    private static final String TAG = Constant.TAG;
+
+    public static final String FILE_NAME = "latency_summary.json";
+    public static final int WINDOW_TRANSACTIONS = 100;
+    public static final int HISTORY_SIZE = 20;
+
+    public enum Phase {
+        EMV_CARD_DETECT("emv.card_detect"),
+        EMV_APP_SELECT("emv.app_select"),
+        EMV_CARD_READ("emv.card_read"),
+        EMV_PIN_REQUEST("emv.pin_request"),
+        EMV_ONLINE_PROC("emv.online_proc"),
+        EMV_TRANS_RESULT("emv.trans_result"),
+        EMV_TAP_TO_RESULT("emv.tap_to_result"),
+        HOST_PACK("host.pack"),
+        HOST_CONNECT("host.connect"),
+        HOST_PREWARM("host.prewarm"),
+        HOST_SEND("host.send"),
+        HOST_FIRST_BYTE("host.first_byte"),
+        HOST_ROUND_TRIP("host.round_trip"),
+        HOST_PARSE("host.parse"),
+        RECEIPT_RENDER("receipt.render"),
+        RECEIPT_COMMIT("receipt.commit"),
+        RECEIPT_CUT("receipt.cut");
+
+        public final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Percentiles of one phase over one window (µs)
+     */
+    public static final class PhaseStats {
+        public long count;
+        public long p50;
+        public long p95;
+        public long p99;
+        public long max;
+        public long mean;
+    }
+
+    /**
+     * One window of transactions
+     */
+    public static final class Summary {
+        public long startedAt;
+        public long endedAt;
+        public int transactions;
+        public Map<String, PhaseStats> phases = new LinkedHashMap<>();
+    }
+
+    private static final class Stored {
+        Summary current;
+        List<Summary> history;
+    }
+
+    private static volatile LatencyTracer instance;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+    private final File file;
+    private final Executor writer;
+    private final List<Summary> history = new ArrayList<>();
+    private long windowStartedAt;
+    private int windowTransactions;
+
+    private volatile long lastMilestoneNanos;
+    private volatile long tapNanos;
+
+    /**
+     * @param file   Where summaries persist, or null to keep them in memory
+     * @param writer Runs the file writes
+     */
+    public LatencyTracer(File file, Executor writer) {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        this.file = file;
+        this.writer = writer;
+        this.windowStartedAt = System.currentTimeMillis();
+        load();
+    }
+
+    /**
+     * Persist to {@code filesDir}; call once at startup. Until then the tracer
+     * records in memory only.
+     */
+    public static synchronized void init(File filesDir) {
+        instance = new LatencyTracer(new File(filesDir, FILE_NAME), ThreadPoolUtil::executeInSinglePool);
+    }
+
+    public static LatencyTracer get() {
+        LatencyTracer tracer = instance;
+        if (tracer == null) {
+            synchronized (LatencyTracer.class) {
+                if (instance == null) {
+                    instance = new LatencyTracer(null, Runnable::run);
+                }
+                tracer = instance;
+            }
+        }
+        return tracer;
+    }
+
+    // ==================== RECORDING ====================
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time since {@code startNanos} (from {@link #start()})
+     */
+    public static void end(Phase phase, long startNanos) {
+        get().record(phase, System.nanoTime() - startNanos);
+    }
+
+    public void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos / 1000);
+    }
+
+    /**
+     * Card detection started: the first milestone is measured from here
+     */
+    public static void beginTransaction() {
+        LatencyTracer tracer = get();
+        tracer.lastMilestoneNanos = System.nanoTime();
+        tracer.tapNanos = 0;
+    }
+
+    /**
+     * Record the time since the previous milestone (or beginTransaction) under
+     * {@code phase}. {@link Phase#EMV_CARD_DETECT} also starts the tap-to-result
+     * clock.
+     */
+    public static void milestone(Phase phase) {
+        LatencyTracer tracer = get();
+        long now = System.nanoTime();
+        long last = tracer.lastMilestoneNanos;
+        tracer.lastMilestoneNanos = now;
+        if (last != 0) {
+            tracer.record(phase, now - last);
+        }
+        if (phase == Phase.EMV_CARD_DETECT) {
+            tracer.tapNanos = now;
+        }
+    }
+
+    /**
+     * onTransResult: close the EMV phases and count the transaction
+     */
+    public static void endTransaction() {
+        LatencyTracer tracer = get();
+        milestone(Phase.EMV_TRANS_RESULT);
+        long tap = tracer.tapNanos;
+        if (tap != 0) {
+            tracer.record(Phase.EMV_TAP_TO_RESULT, System.nanoTime() - tap);
+        }
+        tracer.lastMilestoneNanos = 0;
+        tracer.tapNanos = 0;
+        tracer.transactionDone();
+    }
+
+    void transactionDone() {
+        String json;
+        synchronized (this) {
+            if (++windowTransactions >= WINDOW_TRANSACTIONS) {
+                history.add(summary());
+                while (history.size() > HISTORY_SIZE) {
+                    history.remove(0);
+                }
+                for (LatencyHistogram histogram : histograms) {
+                    histogram.reset();
+                }
+                windowTransactions = 0;
+                windowStartedAt = System.currentTimeMillis();
+            }
+            if (file == null) {
+                return;
+            }
+            json = toJson();
+        }
+        writer.execute(() -> save(json));
+    }
+
+    // ==================== REPORTING ====================
+
+    public LatencyHistogram histogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * The current window
+     */
+    public synchronized Summary summary() {
+        Summary summary = new Summary();
+        summary.startedAt = windowStartedAt;
+        summary.endedAt = System.currentTimeMillis();
+        summary.transactions = windowTransactions;
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = histograms[phase.ordinal()];
+            if (histogram.count() == 0) {
+                continue;
+            }
+            PhaseStats stats = new PhaseStats();
+            stats.count = histogram.count();
+            stats.p50 = histogram.percentile(50);
+            stats.p95 = histogram.percentile(95);
+            stats.p99 = histogram.percentile(99);
+            stats.max = histogram.max();
+            stats.mean = histogram.mean();
+            summary.phases.put(phase.label, stats);
+        }
+        return summary;
+    }
+
+    public synchronized List<Summary> history() {
+        return new ArrayList<>(history);
+    }
+
+    /**
+     * Current window plus history, as persisted
+     */
+    public synchronized String toJson() {
+        Stored stored = new Stored();
+        stored.current = summary();
+        stored.history = new ArrayList<>(history);
+        return GSON.toJson(stored);
+    }
+
+    /**
+     * One line per recorded phase of the current window, in ms
+     */
+    public String report() {
+        Summary summary = summary();
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-18s %6s %8s %8s %8s%n", "phase", "n", "p50", "p95", "p99"));
+        for (Map.Entry<String, PhaseStats> entry : summary.phases.entrySet()) {
+            PhaseStats stats = entry.getValue();
+            out.append(String.format(Locale.US, "%-18s %6d %8s %8s %8s%n", entry.getKey(), stats.count,
+                    ms(stats.p50), ms(stats.p95), ms(stats.p99)));
+        }
+        return out.toString();
+    }
+
+    private static String ms(long micros) {
+        return String.format(Locale.US, "%.1f", micros / 1000.0);
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            Stored stored = GSON.fromJson(reader, Stored.class);
+            if (stored == null) {
+                return;
+            }
+            if (stored.history != null) {
+                history.addAll(stored.history);
+            }
+            // The previous process's partial window becomes history
+            if (stored.current != null && stored.current.transactions > 0) {
+                history.add(stored.current);
+            }
+            while (history.size() > HISTORY_SIZE) {
+                history.remove(0);
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            LogUtil.e(TAG, "⚠️ Latency summary unreadable, starting fresh: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write {@link #toJson()} to {@code target} (debug export)
+     */
+    public void dump(File target) throws IOException {
+        write(target, toJson());
+    }
+
+    private void save(String json) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            write(tmp, json);
+        } catch (IOException e) {
+            ErrorHandler.logError(TAG, "Failed to write latency summary", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            LogUtil.e(TAG, "⚠️ Failed to replace " + file.getName());
+        }
+    }
+
+    private static void write(File target, String json) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8)) {
+            out.write(json);
+        }
+    }
+}
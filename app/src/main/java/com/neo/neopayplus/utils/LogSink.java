@@ -0,0 +1,357 @@
+package com.neo.neopayplus.utils;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log Sink
+ *
+ * Asynchronous back end for {@link LogUtil} and {@link Logger}. Callers put
+ * a line into a fixed-size ring buffer and return; a single "log-sink"
+ * thread drains it in batches to logcat and, once {@link #attachFile(File)}
+ * has been called, to a rolling file ({@link #FILE_NAME}, rotated at
+ * {@link #MAX_FILE_BYTES}, {@link #MAX_FILES} files kept).
+ *
+ * Only {@link #FILE_LEVEL} and above reaches the file, and every line is
+ * passed through {@link LogSanitizer#sanitizeLogMessage(String)} first, so
+ * card numbers in a message are masked before they are stored.
+ *
+ * The ring slots are preallocated, so enqueueing allocates nothing. When the
+ * buffer is full the new line is dropped and counted; the count is reported
+ * with the next batch.
+ */
+public final class LogSink {
+
+    public static final String FILE_NAME = "app.log";
+    public static final long MAX_FILE_BYTES = 512 * 1024;
+    public static final int MAX_FILES = 3;
+    public static final int FILE_LEVEL = LogUtil.WARN;
+    private static final int CAPACITY = 1024;
+    private static final long CRASH_FLUSH_MS = 500;
+
+    private static volatile LogSink instance;
+
+    // Ring buffer, guarded by "this"
+    private final int mask;
+    private final long[] times;
+    private final int[] levels;
+    private final String[] tags;
+    private final String[] messages;
+    private final String[] threads;
+    private final Throwable[] errors;
+    private long head; // Next slot to write
+    private long tail; // Next slot to drain
+    private long drained; // Everything before this has been written out
+    private int dropped;
+    private boolean drainWaiting;
+
+    // Drain thread only
+    private final long[] batchTimes;
+    private final int[] batchLevels;
+    private final String[] batchTags;
+    private final String[] batchMessages;
+    private final String[] batchThreads;
+    private final Throwable[] batchErrors;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+    private final Date date = new Date();
+    private final boolean logcat;
+    private volatile File dir;
+    private Writer file;
+    private long fileBytes;
+
+    /**
+     * @param capacity Ring size, rounded up to a power of two
+     * @param logcat   Also write every line to logcat
+     */
+    LogSink(int capacity, boolean logcat) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.levels = new int[size];
+        this.tags = new String[size];
+        this.messages = new String[size];
+        this.threads = new String[size];
+        this.errors = new Throwable[size];
+        this.batchTimes = new long[size];
+        this.batchLevels = new int[size];
+        this.batchTags = new String[size];
+        this.batchMessages = new String[size];
+        this.batchThreads = new String[size];
+        this.batchErrors = new Throwable[size];
+        this.logcat = logcat;
+        Thread thread = new Thread(this::drainLoop, "log-sink");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public static LogSink get() {
+        LogSink sink = instance;
+        if (sink == null) {
+            synchronized (LogSink.class) {
+                if (instance == null) {
+                    instance = new LogSink(CAPACITY, true);
+                }
+                sink = instance;
+            }
+        }
+        return sink;
+    }
+
+    /**
+     * Start writing the rolling log file in {@code dir} (e.g. filesDir/logs)
+     */
+    public void attachFile(File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e("LogSink", "Cannot create log directory " + dir);
+            return;
+        }
+        this.dir = dir;
+    }
+
+    /**
+     * On an uncaught exception, log it and give the drain thread a moment to
+     * write out what is queued before the previous handler ends the process
+     */
+    public void flushOnCrash() {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> {
+            offer(LogUtil.ERROR, "LogSink", "❌ Uncaught exception in " + thread.getName(), error);
+            try {
+                flush(CRASH_FLUSH_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (previous != null) {
+                previous.uncaughtException(thread, error);
+            }
+        });
+    }
+
+    /**
+     * Queue one line; never blocks on I/O
+     */
+    public void offer(int level, String tag, String message, Throwable error) {
+        long now = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        synchronized (this) {
+            if (head - tail > mask) {
+                dropped++;
+                return;
+            }
+            int slot = (int) (head & mask);
+            times[slot] = now;
+            levels[slot] = level;
+            tags[slot] = tag;
+            messages[slot] = message;
+            threads[slot] = thread;
+            errors[slot] = error;
+            head++;
+            if (drainWaiting) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until every line queued before this call has been written
+     *
+     * @return false on timeout
+     */
+    public boolean flush(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (this) {
+            long target = head;
+            while (drained < target) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return true;
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            int count;
+            int lost;
+            try {
+                synchronized (this) {
+                    while (head == tail) {
+                        drainWaiting = true;
+                        wait();
+                    }
+                    drainWaiting = false;
+                    count = (int) (head - tail);
+                    for (int i = 0; i < count; i++) {
+                        int slot = (int) ((tail + i) & mask);
+                        batchTimes[i] = times[slot];
+                        batchLevels[i] = levels[slot];
+                        batchTags[i] = tags[slot];
+                        batchMessages[i] = messages[slot];
+                        batchThreads[i] = threads[slot];
+                        batchErrors[i] = errors[slot];
+                        tags[slot] = null;
+                        messages[slot] = null;
+                        errors[slot] = null;
+                    }
+                    tail += count;
+                    lost = dropped;
+                    dropped = 0;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (lost > 0) {
+                write(LogUtil.WARN, "LogSink", "⚠️ Log buffer full - dropped " + lost + " lines",
+                        System.currentTimeMillis(), "log-sink", null);
+            }
+            for (int i = 0; i < count; i++) {
+                write(batchLevels[i], batchTags[i], batchMessages[i], batchTimes[i], batchThreads[i], batchErrors[i]);
+                batchTags[i] = null;
+                batchMessages[i] = null;
+                batchErrors[i] = null;
+            }
+            flushFile();
+
+            synchronized (this) {
+                drained += count;
+                notifyAll();
+            }
+        }
+    }
+
+    private void write(int level, String tag, String message, long time, String thread, Throwable error) {
+        if (logcat) {
+            logcat(level, tag, message, error);
+        }
+        if (dir == null || level < FILE_LEVEL) {
+            return;
+        }
+        try {
+            Writer out = file();
+            date.setTime(time);
+            String line = timeFormat.format(date) + ' ' + levelChar(level) + '/' + tag
+                    + " [" + thread + "] " + LogSanitizer.INSTANCE.sanitizeLogMessage(message) + '\n';
+            out.write(line);
+            fileBytes += line.length();
+            if (error != null) {
+                StringWriter trace = new StringWriter();
+                error.printStackTrace(new PrintWriter(trace));
+                String stack = LogSanitizer.INSTANCE.sanitizeLogMessage(trace.toString());
+                out.write(stack);
+                fileBytes += stack.length();
+            }
+        } catch (IOException e) {
+            Log.e("LogSink", "Log file write failed: " + e.getMessage());
+            closeFile();
+        }
+    }
+
+    private static void logcat(int level, String tag, String message, Throwable error) {
+        switch (level) {
+            case LogUtil.VERBOSE:
+                Log.v(tag, message);
+                break;
+            case LogUtil.DEBUG:
+                Log.d(tag, message);
+                break;
+            case LogUtil.INFO:
+                Log.i(tag, message);
+                break;
+            case LogUtil.WARN:
+                if (error != null) {
+                    Log.w(tag, message, error);
+                } else {
+                    Log.w(tag, message);
+                }
+                break;
+            case LogUtil.ERROR:
+                if (error != null) {
+                    Log.e(tag, message, error);
+                } else {
+                    Log.e(tag, message);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static char levelChar(int level) {
+        switch (level) {
+            case LogUtil.VERBOSE:
+                return 'V';
+            case LogUtil.DEBUG:
+                return 'D';
+            case LogUtil.INFO:
+                return 'I';
+            case LogUtil.WARN:
+                return 'W';
+            default:
+                return 'E';
+        }
+    }
+
+    // ==================== ROLLING FILE ====================
+
+    private Writer file() throws IOException {
+        if (file != null && fileBytes >= MAX_FILE_BYTES) {
+            closeFile();
+            rotate();
+        }
+        if (file == null) {
+            File current = new File(dir, FILE_NAME);
+            fileBytes = current.length();
+            file = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(current, true), StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private void rotate() {
+        File oldest = new File(dir, FILE_NAME + "." + (MAX_FILES - 1));
+        if (oldest.exists() && !oldest.delete()) {
+            Log.e("LogSink", "Cannot delete " + oldest);
+        }
+        for (int i = MAX_FILES - 2; i >= 0; i--) {
+            File from = new File(dir, i == 0 ? FILE_NAME : FILE_NAME + "." + i);
+            if (from.exists() && !from.renameTo(new File(dir, FILE_NAME + "." + (i + 1)))) {
+                Log.e("LogSink", "Cannot rotate " + from);
+            }
+        }
+    }
+
+    private void flushFile() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.flush();
+        } catch (IOException e) {
+            Log.e("LogSink", "Log file flush failed: " + e.getMessage());
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        IOUtil.close(file);
+        file = null;
+    }
+}
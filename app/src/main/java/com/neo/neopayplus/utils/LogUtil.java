@@ -1,89 +1,142 @@
-package com.neo.neopayplus.utils;
-
-import android.text.TextUtils;
-import android.util.Log;
-
-public class LogUtil {
-
-    public static final int VERBOSE = 1;
-    public static final int DEBUG = 2;
-    public static final int INFO = 3;
-    public static final int WARN = 4;
-    public static final int ERROR = 5;
-    public static final int NOTHING = 6;
-    public static int LEVEL = VERBOSE;
-
-    public static void setLevel(int Level) {
-        LEVEL = Level;
-    }
-
-    public static void v(String TAG, String msg) {
-        if (LEVEL <= VERBOSE && !TextUtils.isEmpty(msg)) {
-            MyLog(VERBOSE, TAG, msg);
-        }
-    }
-
-    public static void d(String TAG, String msg) {
-        if (LEVEL <= DEBUG && !TextUtils.isEmpty(msg)) {
-            MyLog(DEBUG, TAG, msg);
-        }
-    }
-
-    public static void i(String TAG, String msg) {
-        if (LEVEL <= INFO && !TextUtils.isEmpty(msg)) {
-            MyLog(INFO, TAG, msg);
-        }
-    }
-
-    public static void w(String TAG, String msg) {
-        if (LEVEL <= WARN && !TextUtils.isEmpty(msg)) {
-            MyLog(WARN, TAG, msg);
-        }
-    }
-
-    public static void e(String TAG, String msg) {
-        if (LEVEL <= ERROR && !TextUtils.isEmpty(msg)) {
-            MyLog(ERROR, TAG, msg);
-        }
-    }
-
-    private static void MyLog(int type, String TAG, String msg) {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        int index = 4;
-        String className = stackTrace[index].getFileName();
-        String methodName = stackTrace[index].getMethodName();
-        int lineNumber = stackTrace[index].getLineNumber();
-        methodName = methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("[ (")
-                .append(className)
-                .append(":")
-                .append(lineNumber)
-                .append(")#")
-                .append(methodName)
-                .append(" ] ");
-        stringBuilder.append(msg);
-        String logStr = stringBuilder.toString();
-        switch (type) {
-            case VERBOSE:
-                Log.v(TAG, logStr);
-                break;
-            case DEBUG:
-                Log.d(TAG, logStr);
-                break;
-            case INFO:
-                Log.i(TAG, logStr);
-                break;
-            case WARN:
-                Log.w(TAG, logStr);
-                break;
-            case ERROR:
-                Log.e(TAG, logStr);
-                break;
-            default:
-                break;
-        }
-    }
-
-
-}
+package com.neo.neopayplus.utils;
+
+import android.text.TextUtils;
+
+import com.neo.neopayplus.BuildConfig;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Log facade
+ *
+ * The static methods keep their old behaviour for existing call sites;
+ * hot paths use a per-subsystem {@link Logger} from {@link #logger}, whose
+ * level can be changed at runtime and whose messages are only formatted when
+ * enabled. Everything is written asynchronously by {@link LogSink}.
+ *
+ * The "[ (File.java:123)#Method ]" caller prefix costs a stack walk per line,
+ * so it is only added while {@link #setCallerInfo(boolean)} is on (debug
+ * builds by default).
+ */
+public class LogUtil {
+
+    public static final int VERBOSE = 1;
+    public static final int DEBUG = 2;
+    public static final int INFO = 3;
+    public static final int WARN = 4;
+    public static final int ERROR = 5;
+    public static final int NOTHING = 6;
+    public static int LEVEL = VERBOSE;
+
+    /** Level for subsystem loggers without an explicit level */
+    public static final int DEFAULT_SUBSYSTEM_LEVEL = BuildConfig.DEBUG ? VERBOSE : INFO;
+
+    private static volatile boolean callerInfo = BuildConfig.DEBUG;
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> LEVELS = new ConcurrentHashMap<>();
+
+    public static void setLevel(int Level) {
+        LEVEL = Level;
+    }
+
+    /**
+     * Logger for {@code subsystem} (e.g. "iso", "emv", "payment"); one
+     * instance per subsystem, the tag is taken from the first call
+     */
+    public static Logger logger(String subsystem, String tag) {
+        Logger logger = LOGGERS.get(subsystem);
+        if (logger == null) {
+            Integer level = LEVELS.get(subsystem);
+            Logger created = new Logger(subsystem, tag, level != null ? level : DEFAULT_SUBSYSTEM_LEVEL);
+            logger = LOGGERS.putIfAbsent(subsystem, created);
+            if (logger == null) {
+                logger = created;
+            }
+        }
+        return logger;
+    }
+
+    /**
+     * Change a subsystem's level at runtime (also for loggers not created yet)
+     */
+    public static void setLevel(String subsystem, int level) {
+        LEVELS.put(subsystem, level);
+        Logger logger = LOGGERS.get(subsystem);
+        if (logger != null) {
+            logger.level = level;
+        }
+    }
+
+    /**
+     * Subsystem -> current level, for the debug screen
+     */
+    public static Map<String, Integer> levels() {
+        Map<String, Integer> out = new TreeMap<>();
+        for (Logger logger : LOGGERS.values()) {
+            out.put(logger.subsystem, logger.level);
+        }
+        return out;
+    }
+
+    public static void setCallerInfo(boolean enabled) {
+        callerInfo = enabled;
+    }
+
+    public static void v(String TAG, String msg) {
+        if (LEVEL <= VERBOSE && !TextUtils.isEmpty(msg)) {
+            MyLog(VERBOSE, TAG, msg);
+        }
+    }
+
+    public static void d(String TAG, String msg) {
+        if (LEVEL <= DEBUG && !TextUtils.isEmpty(msg)) {
+            MyLog(DEBUG, TAG, msg);
+        }
+    }
+
+    public static void i(String TAG, String msg) {
+        if (LEVEL <= INFO && !TextUtils.isEmpty(msg)) {
+            MyLog(INFO, TAG, msg);
+        }
+    }
+
+    public static void w(String TAG, String msg) {
+        if (LEVEL <= WARN && !TextUtils.isEmpty(msg)) {
+            MyLog(WARN, TAG, msg);
+        }
+    }
+
+    public static void e(String TAG, String msg) {
+        if (LEVEL <= ERROR && !TextUtils.isEmpty(msg)) {
+            MyLog(ERROR, TAG, msg);
+        }
+    }
+
+    private static void MyLog(int type, String TAG, String msg) {
+        LogSink.get().offer(type, TAG, withCaller(msg), null);
+    }
+
+    /**
+     * Prefix {@code msg} with the first caller outside the logging classes,
+     * if caller info is on
+     */
+    static String withCaller(String msg) {
+        if (!callerInfo) {
+            return msg;
+        }
+        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
+        for (StackTraceElement frame : stackTrace) {
+            String className = frame.getClassName();
+            if (className.equals(LogUtil.class.getName()) || className.equals(Logger.class.getName())
+                    || className.startsWith("java.lang.Thread") || className.startsWith("dalvik.")) {
+                continue;
+            }
+            String methodName = frame.getMethodName();
+            methodName = methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
+            return "[ (" + frame.getFileName() + ":" + frame.getLineNumber() + ")#" + methodName + " ] " + msg;
+        }
+        return msg;
+    }
+}
@@ -0,0 +1,219 @@
+package com.neo.neopayplus.utils;
+
+/**
+ * Logger
+ *
+ * Per-subsystem logger from {@link LogUtil#logger(String, String)}. Messages
+ * are SLF4J-style templates, each {@code {}} replaced by the next argument:
+ *
+ * <pre>
+ * private static final Logger LOG = LogUtil.logger("iso", TAG);
+ * LOG.d("DE4 amount {} ({} digits)", amount, amount.length());
+ * </pre>
+ *
+ * The level check runs before anything is formatted, and the one- to
+ * three-argument forms take no varargs array, so a disabled line costs a
+ * field read. Levels change at runtime with {@link LogUtil#setLevel(String, int)}.
+ * Enabled lines go to {@link LogSink}.
+ */
+public final class Logger {
+
+    public final String subsystem;
+    public final String tag;
+    volatile int level;
+
+    Logger(String subsystem, String tag, int level) {
+        this.subsystem = subsystem;
+        this.tag = tag;
+        this.level = level;
+    }
+
+    public int level() {
+        return level;
+    }
+
+    public boolean isLoggable(int level) {
+        return level >= this.level;
+    }
+
+    public boolean isDebug() {
+        return LogUtil.DEBUG >= level;
+    }
+
+    // ==================== DEBUG ====================
+
+    public void d(String message) {
+        if (LogUtil.DEBUG >= level) {
+            emit(LogUtil.DEBUG, message, null);
+        }
+    }
+
+    public void d(String template, Object arg) {
+        if (LogUtil.DEBUG >= level) {
+            emit(LogUtil.DEBUG, format(template, 1, arg, null, null, null), null);
+        }
+    }
+
+    public void d(String template, Object arg1, Object arg2) {
+        if (LogUtil.DEBUG >= level) {
+            emit(LogUtil.DEBUG, format(template, 2, arg1, arg2, null, null), null);
+        }
+    }
+
+    public void d(String template, Object arg1, Object arg2, Object arg3) {
+        if (LogUtil.DEBUG >= level) {
+            emit(LogUtil.DEBUG, format(template, 3, arg1, arg2, arg3, null), null);
+        }
+    }
+
+    public void d(String template, Object... args) {
+        if (LogUtil.DEBUG >= level) {
+            emit(LogUtil.DEBUG, format(template, args.length, null, null, null, args), null);
+        }
+    }
+
+    // ==================== INFO ====================
+
+    public void i(String message) {
+        if (LogUtil.INFO >= level) {
+            emit(LogUtil.INFO, message, null);
+        }
+    }
+
+    public void i(String template, Object arg) {
+        if (LogUtil.INFO >= level) {
+            emit(LogUtil.INFO, format(template, 1, arg, null, null, null), null);
+        }
+    }
+
+    public void i(String template, Object arg1, Object arg2) {
+        if (LogUtil.INFO >= level) {
+            emit(LogUtil.INFO, format(template, 2, arg1, arg2, null, null), null);
+        }
+    }
+
+    public void i(String template, Object arg1, Object arg2, Object arg3) {
+        if (LogUtil.INFO >= level) {
+            emit(LogUtil.INFO, format(template, 3, arg1, arg2, arg3, null), null);
+        }
+    }
+
+    public void i(String template, Object... args) {
+        if (LogUtil.INFO >= level) {
+            emit(LogUtil.INFO, format(template, args.length, null, null, null, args), null);
+        }
+    }
+
+    // ==================== WARN ====================
+
+    public void w(String message) {
+        if (LogUtil.WARN >= level) {
+            emit(LogUtil.WARN, message, null);
+        }
+    }
+
+    public void w(String template, Object arg) {
+        if (LogUtil.WARN >= level) {
+            emit(LogUtil.WARN, format(template, 1, arg, null, null, null), null);
+        }
+    }
+
+    public void w(String template, Object arg1, Object arg2) {
+        if (LogUtil.WARN >= level) {
+            emit(LogUtil.WARN, format(template, 2, arg1, arg2, null, null), null);
+        }
+    }
+
+    public void w(String template, Object arg1, Object arg2, Object arg3) {
+        if (LogUtil.WARN >= level) {
+            emit(LogUtil.WARN, format(template, 3, arg1, arg2, arg3, null), null);
+        }
+    }
+
+    public void w(String template, Object... args) {
+        if (LogUtil.WARN >= level) {
+            emit(LogUtil.WARN, format(template, args.length, null, null, null, args), null);
+        }
+    }
+
+    public void w(String message, Throwable error) {
+        if (LogUtil.WARN >= level) {
+            emit(LogUtil.WARN, message, error);
+        }
+    }
+
+    // ==================== ERROR ====================
+
+    public void e(String message) {
+        if (LogUtil.ERROR >= level) {
+            emit(LogUtil.ERROR, message, null);
+        }
+    }
+
+    public void e(String template, Object arg) {
+        if (LogUtil.ERROR >= level) {
+            emit(LogUtil.ERROR, format(template, 1, arg, null, null, null), null);
+        }
+    }
+
+    public void e(String template, Object arg1, Object arg2) {
+        if (LogUtil.ERROR >= level) {
+            emit(LogUtil.ERROR, format(template, 2, arg1, arg2, null, null), null);
+        }
+    }
+
+    public void e(String template, Object arg1, Object arg2, Object arg3) {
+        if (LogUtil.ERROR >= level) {
+            emit(LogUtil.ERROR, format(template, 3, arg1, arg2, arg3, null), null);
+        }
+    }
+
+    public void e(String template, Object... args) {
+        if (LogUtil.ERROR >= level) {
+            emit(LogUtil.ERROR, format(template, args.length, null, null, null, args), null);
+        }
+    }
+
+    public void e(String message, Throwable error) {
+        if (LogUtil.ERROR >= level) {
+            emit(LogUtil.ERROR, message, error);
+        }
+    }
+
+    // ==================== FORMATTING ====================
+
+    private void emit(int level, String message, Throwable error) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+        LogSink.get().offer(level, tag, LogUtil.withCaller(message), error);
+    }
+
+    /**
+     * Replace each {} in {@code template} with the next argument; missing
+     * arguments leave the {} in place, extra ones are ignored
+     *
+     * @param count Number of arguments: a1..a3 when {@code rest} is null
+     */
+    static String format(String template, int count, Object a1, Object a2, Object a3, Object[] rest) {
+        if (template == null) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(template.length() + 16 * count);
+        int from = 0;
+        int used = 0;
+        while (used < count) {
+            int at = template.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            out.append(template, from, at);
+            Object arg = rest != null ? rest[used] : used == 0 ? a1 : used == 1 ? a2 : a3;
+            out.append(arg);
+            used++;
+            from = at + 2;
+        }
+        out.append(template, from, template.length());
+        return out.toString();
+    }
+}
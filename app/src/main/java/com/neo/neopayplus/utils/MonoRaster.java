@@ -0,0 +1,123 @@
+package com.neo.neopayplus.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mono Raster
+ *
+ * A 1-bit image as the thermal printer sees it: rows packed MSB first,
+ * {@link #bytesPerRow()} bytes each, a set bit is a black dot. Built from
+ * ARGB pixels with the receipt threshold (transparent or light -> white),
+ * so a cached raster prints exactly like the bitmap it came from.
+ *
+ * Stored on disk as {@link #MAGIC}, width, height and the packed rows; a
+ * 384-dot logo is a few KB and loads without any image decoding.
+ */
+public final class MonoRaster {
+
+    public static final int MAGIC = 0x52415331; // "RAS1"
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+    private static final int MAX_DIMENSION = 8192;
+
+    public final int width;
+    public final int height;
+    private final byte[] bits;
+
+    private MonoRaster(int width, int height, byte[] bits) {
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+    }
+
+    /**
+     * Threshold ARGB pixels: alpha below 128 is white, otherwise luminance
+     * (0.299 R + 0.587 G + 0.114 B) below 128 is black
+     */
+    public static MonoRaster fromArgb(int[] pixels, int width, int height) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " pixels, got " + pixels.length);
+        }
+        int stride = (width + 7) >> 3;
+        byte[] bits = new byte[stride * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int out = y * stride;
+            for (int x = 0; x < width; x++) {
+                if (isBlack(pixels[row + x])) {
+                    bits[out + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+        }
+        return new MonoRaster(width, height, bits);
+    }
+
+    public static boolean isBlack(int argb) {
+        if ((argb >>> 24) < 128) {
+            return false;
+        }
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (int) (0.299 * r + 0.587 * g + 0.114 * b) < 128;
+    }
+
+    public int bytesPerRow() {
+        return (width + 7) >> 3;
+    }
+
+    public boolean isBlack(int x, int y) {
+        return (bits[y * bytesPerRow() + (x >> 3)] & (0x80 >> (x & 7))) != 0;
+    }
+
+    /**
+     * Expand to opaque black / white ARGB pixels (for Bitmap.setPixels)
+     */
+    public int[] toArgb() {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = isBlack(x, y) ? BLACK : WHITE;
+            }
+        }
+        return pixels;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(width);
+        out.writeShort(height);
+        out.write(bits);
+    }
+
+    public static MonoRaster readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a raster");
+        }
+        int width = in.readUnsignedShort();
+        int height = in.readUnsignedShort();
+        if (width == 0 || height == 0 || width > MAX_DIMENSION || height > MAX_DIMENSION) {
+            throw new IOException("Bad raster size " + width + "x" + height);
+        }
+        byte[] bits = new byte[((width + 7) >> 3) * height];
+        in.readFully(bits);
+        return new MonoRaster(width, height, bits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MonoRaster)) {
+            return false;
+        }
+        MonoRaster other = (MonoRaster) o;
+        return width == other.width && height == other.height && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + height) + Arrays.hashCode(bits);
+    }
+}
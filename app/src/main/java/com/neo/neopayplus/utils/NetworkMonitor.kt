@@ -8,6 +8,7 @@ import android.net.NetworkRequest
 import android.os.Build
 import android.util.Log
 import com.neo.neopayplus.Constant
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
 
 /**
@@ -16,6 +17,13 @@ import java.util.concurrent.CopyOnWriteArrayList
  */
 class NetworkMonitor private constructor(private val context: Context) {
     
+    /**
+     * Notified on every connectivity change (binder thread)
+     */
+    fun interface ConnectivityListener {
+        fun onConnectivityChanged(available: Boolean)
+    }
+    
     companion object {
         private const val TAG = Constant.TAG
         @Volatile
@@ -33,7 +41,11 @@ class NetworkMonitor private constructor(private val context: Context) {
         context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
     
     private val pendingOperations = CopyOnWriteArrayList<Runnable>()
+    private val connectivityListeners = CopyOnWriteArrayList<ConnectivityListener>()
     private var networkCallback: ConnectivityManager.NetworkCallback? = null
+    // Networks matching the request; losing one of several is not going offline
+    private val validNetworks = ConcurrentHashMap.newKeySet<Network>()
+    @Volatile
     private var isNetworkAvailable = false
     private var isMonitoring = false
     
@@ -72,18 +84,26 @@ class NetworkMonitor private constructor(private val context: Context) {
             networkCallback = object : ConnectivityManager.NetworkCallback() {
                 override fun onAvailable(network: Network) {
                     LogUtil.e(TAG, "NetworkMonitor: Network available")
+                    validNetworks.add(network)
                     val wasOffline = !isNetworkAvailable
                     isNetworkAvailable = true
                     
                     if (wasOffline) {
                         LogUtil.e(TAG, "NetworkMonitor: Network reconnected - retrying pending operations")
+                        notifyListeners(true)
                         retryPendingOperations()
                     }
                 }
                 
                 override fun onLost(network: Network) {
+                    validNetworks.remove(network)
+                    if (validNetworks.isNotEmpty() || isNetworkAvailable()) {
+                        LogUtil.e(TAG, "NetworkMonitor: Network lost - another network is still up")
+                        return
+                    }
                     LogUtil.e(TAG, "NetworkMonitor: Network lost")
                     isNetworkAvailable = false
+                    notifyListeners(false)
                 }
                 
                 override fun onCapabilitiesChanged(
@@ -97,9 +117,13 @@ class NetworkMonitor private constructor(private val context: Context) {
                         NetworkCapabilities.NET_CAPABILITY_VALIDATED
                     )
                     
+                    if (hasInternet && isValidated) {
+                        validNetworks.add(network)
+                    }
                     if (hasInternet && isValidated && !isNetworkAvailable) {
                         LogUtil.e(TAG, "NetworkMonitor: Network validated - retrying pending operations")
                         isNetworkAvailable = true
+                        notifyListeners(true)
                         retryPendingOperations()
                     }
                 }
@@ -130,6 +154,7 @@ class NetworkMonitor private constructor(private val context: Context) {
             connectivityManager.unregisterNetworkCallback(it)
             networkCallback = null
         }
+        validNetworks.clear()
         
         isMonitoring = false
         LogUtil.e(TAG, "NetworkMonitor: Stopped monitoring")
@@ -156,6 +181,28 @@ class NetworkMonitor private constructor(private val context: Context) {
         }
     }
     
+    /**
+     * Listen for connectivity changes; the listener is told the current state at once
+     */
+    fun addConnectivityListener(listener: ConnectivityListener) {
+        connectivityListeners.add(listener)
+        listener.onConnectivityChanged(isNetworkAvailable())
+    }
+    
+    fun removeConnectivityListener(listener: ConnectivityListener) {
+        connectivityListeners.remove(listener)
+    }
+    
+    private fun notifyListeners(available: Boolean) {
+        connectivityListeners.forEach { listener ->
+            try {
+                listener.onConnectivityChanged(available)
+            } catch (e: Exception) {
+                LogUtil.e(TAG, "NetworkMonitor: Listener failed: ${e.message}")
+            }
+        }
+    }
+    
     /**
      * Retry all pending operations
      */
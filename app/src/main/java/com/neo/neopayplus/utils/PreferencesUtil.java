@@ -143,6 +143,26 @@ public final class PreferencesUtil {
         editor.apply();
     }
 
+    private static final String KEY_EMV_CONFIG_SNAPSHOT = "key_emv_config_snapshot";
+
+    /**
+     * Save the snapshot of what EmvProvisioner installed (EmvConfigSnapshot JSON)
+     */
+    public static void saveEmvConfigSnapshot(String json) {
+        SharedPreferences pref = MyApplication.app.getSharedPreferences(
+                PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
+        pref.edit().putString(KEY_EMV_CONFIG_SNAPSHOT, json).apply();
+    }
+
+    /**
+     * Get the installed EMV configuration snapshot JSON, or null
+     */
+    public static String getEmvConfigSnapshot() {
+        SharedPreferences pref = MyApplication.app.getSharedPreferences(
+                PREFERENCE_FILE_NAME, Context.MODE_PRIVATE);
+        return pref.getString(KEY_EMV_CONFIG_SNAPSHOT, null);
+    }
+
     // ==================== TERMINAL CONFIG CACHE ====================
 
     private static final String PREFIX_TERMINAL_CONFIG = "terminal_config_";
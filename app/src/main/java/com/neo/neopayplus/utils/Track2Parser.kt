@@ -60,7 +60,7 @@ object Track2Parser {
                 cardInfo.serviceCode = track2Filtered.substring(index + 5, index + 8)
             }
             
-            LogUtil.e(Constant.TAG, "cardNumber:${cardInfo.cardNo} expireDate:${cardInfo.expireDate} serviceCode:${cardInfo.serviceCode}")
+            LogUtil.e(Constant.TAG, "cardNumber:${LogSanitizer.maskPan(cardInfo.cardNo)} expireDate:**** serviceCode:${cardInfo.serviceCode}")
             
         } catch (e: Exception) {
             ErrorHandler.logError(Constant.TAG, "parseTrack2", e)
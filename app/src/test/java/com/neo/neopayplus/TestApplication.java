@@ -0,0 +1,13 @@
+package com.neo.neopayplus;
+
+/**
+ * Application for Robolectric tests that use {@link MyApplication#app}
+ * (TxnDb, SharedPreferences) without running the startup graph
+ */
+public class TestApplication extends MyApplication {
+
+    @Override
+    public void onCreate() {
+        app = this;
+    }
+}
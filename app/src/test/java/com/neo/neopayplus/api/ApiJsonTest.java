@@ -0,0 +1,222 @@
+package com.neo.neopayplus.api;
+
+import com.neo.neopayplus.api.EmvConfigApiService.AidConfig;
+import com.neo.neopayplus.api.EmvConfigApiService.CapkConfig;
+import com.neo.neopayplus.api.SettlementApiService.BatchUploadResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming API decoders
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ApiJsonTest {
+
+    private static <T> T read(ApiJson.Decoder<T> decoder, String json) throws IOException {
+        return ApiJson.read(decoder, new StringReader(json));
+    }
+
+    // ==================== AUTHORIZATION ====================
+
+    @Test
+    public void testAuthorization_FieldsAndIssuerScripts() throws Exception {
+        ApiJson.AuthorizationBody body = read(ApiJson.AUTHORIZATION, "{\"response_code\":\"00\","
+                + "\"response_message\":\"APPROVED\",\"auth_code\":\"123456\",\"rrn\":\"000000000042\","
+                + "\"issuer_auth_data\":null,\"extra\":{\"nested\":[1,2]},"
+                + "\"issuer_scripts\":[{\"tag\":\"71\",\"value\":\"9F1804AABBCCDD\"},{\"tag\":\"72\"},7]}");
+
+        assertEquals("00", body.responseCode);
+        assertEquals("APPROVED", body.responseMessage);
+        assertEquals("123456", body.authCode);
+        assertEquals("000000000042", body.rrn);
+        assertEquals("", body.issuerAuthData); // null reads as absent
+        assertEquals(3, body.issuerScriptCount);
+        assertEquals(List.of("71"), body.scriptTags); // Entries without a value are dropped
+        assertEquals(List.of("9F1804AABBCCDD"), body.scriptValues);
+    }
+
+    @Test
+    public void testAuthorization_Defaults() throws Exception {
+        ApiJson.AuthorizationBody body = read(ApiJson.AUTHORIZATION, "{}");
+
+        assertEquals("XX", body.responseCode);
+        assertEquals("", body.authCode);
+        assertEquals(0, body.issuerScriptCount);
+    }
+
+    @Test(expected = IOException.class)
+    public void testAuthorization_NotAnObject() throws Exception {
+        read(ApiJson.AUTHORIZATION, "[]");
+    }
+
+    // ==================== SETTLEMENT ====================
+
+    @Test
+    public void testSettlement_SuccessWithTotals() throws Exception {
+        BatchUploadResponse response = read(ApiJson.SETTLEMENT, "{\"batch_id\":\"B1\",\"total_count\":3,"
+                + "\"accepted_count\":2,\"rejected_count\":1,\"accepted_rrns\":[\"1\",\"2\"],\"rejected_rrns\":[\"3\"],"
+                + "\"totals\":{\"count_sales\":2,\"total_sales\":\"15.50\",\"currency\":\"EGP\","
+                + "\"brands\":{\"visa\":{\"sales\":{\"count\":2,\"total\":\"15.50\"},\"total\":\"15.50\"}}},"
+                + "\"transactions\":[{\"rrn\":\"1\",\"amount\":10.25,\"status\":\"APPROVED\"}]}");
+
+        assertTrue(response.success);
+        assertEquals("B1", response.batchId);
+        assertEquals("B1", response.batchNumber);
+        assertEquals(3, response.totalCount);
+        assertEquals(List.of("1", "2"), response.acceptedRrns);
+        assertEquals(List.of("3"), response.rejectedRrns);
+        assertEquals(2, response.totals.countSales);
+        assertEquals("15.50", response.totals.totalSales);
+        assertEquals("0.00", response.totals.totalRefund);
+        assertEquals(2, response.totals.visa.sales.count);
+        assertEquals("0.00", response.totals.visa.voids.total);
+        assertNull(response.totals.mastercard);
+        assertEquals("1025", response.transactions.get(0).amount); // Minor units
+        assertEquals("00", response.transactions.get(0).transactionType);
+    }
+
+    @Test
+    public void testSettlement_ErrorCarriesMessage() throws Exception {
+        BatchUploadResponse response = read(ApiJson.SETTLEMENT, "{\"status\":\"error\",\"message\":\"closed\"}");
+
+        assertFalse(response.success);
+        assertEquals("closed", response.message);
+        assertNotNull(response.error);
+    }
+
+    // ==================== EMV BUNDLE ====================
+
+    @Test
+    public void testEmvBundle_DefaultsAndAliases() throws Exception {
+        ApiJson.EmvBundleBody bundle = read(ApiJson.EMV_BUNDLE, "{"
+                // Nested contactless values win, even when the flat ones come after them
+                + "\"aids_flat\":[{\"aid\":\"A0000000041010\",\"kernel\":\"MC\","
+                + "\"contactless\":{\"ttq\":\"3600C000\",\"merchantRiskParameters\":"
+                + "{\"contactless_no_cvm_limit\":\"000000050000\"}},\"ttq\":\"2600C080\",\"noCvmLimit\":\"000000010000\","
+                + "\"dDOL\":\"9F3704\",\"tac_default\":\"FC50BC2000\",\"tacDefault\":\"0000000000\"},"
+                + "{\"aidHex\":\"A0000007321010\",\"selFlag\":0,\"priority\":2,\"version\":\"0099\",\"ddol\":\"9F37\"}],"
+                + "\"capks\":[{\"ridHex\":\"A000000003\",\"index\":\"09\",\"modulus\":\"9D\",\"exponent\":3,"
+                + "\"expiry\":\"2028-12-31\"},{\"rid\":\"A000000004\",\"index\":\"05\",\"expiryDate\":\"291231\","
+                + "\"hashIndHex\":\"02\"}],"
+                + "\"currency_code\":\"0818\",\"iso_socket\":{\"host\":\"10.0.0.1\",\"port\":5000,\"enabled\":true},"
+                + "\"ok\":true}");
+
+        assertTrue(bundle.ok);
+        assertNull(bundle.aids);
+        assertEquals("0818", bundle.currencyCode);
+        assertNull(bundle.countryCode);
+        assertEquals("10.0.0.1", bundle.isoSocket.host);
+        assertEquals(5000, bundle.isoSocket.port);
+        assertTrue(bundle.isoSocket.enabled);
+
+        AidConfig mc = bundle.aidsFlat.get(0);
+        assertEquals("A0000000041010", mc.aidHex);
+        assertEquals(1, mc.selFlag); // MC kernel is contactless
+        assertEquals(1, mc.priority);
+        assertEquals("0002", mc.version); // Mastercard default
+        assertEquals("3600C000", mc.ttq);
+        assertEquals("00000000", mc.ctq);
+        assertEquals("000000050000", mc.noCvmLimit);
+        assertEquals("FC50BC2000", mc.tacDefault); // snake_case first
+        assertEquals("0000000000", mc.tacDenial);
+        assertEquals("9F3704", mc.ddol);
+        assertEquals("", mc.tdol);
+
+        AidConfig meeza = bundle.aidsFlat.get(1);
+        assertEquals("A0000007321010", meeza.aidHex);
+        assertEquals("EMV", meeza.kernel);
+        assertEquals(0, meeza.selFlag);
+        assertEquals(2, meeza.priority);
+        assertEquals("0099", meeza.version);
+        assertEquals("9F37", meeza.ddol);
+
+        CapkConfig visa = bundle.capks.get(0);
+        assertEquals("A000000003", visa.ridHex);
+        assertEquals("3", visa.exponentHex);
+        assertEquals("281231", visa.expiryDate);
+        assertEquals("01", visa.hashIndHex);
+        assertEquals("291231", bundle.capks.get(1).expiryDate);
+        assertEquals("02", bundle.capks.get(1).hashIndHex);
+        assertEquals("", bundle.capks.get(1).modulusHex);
+    }
+
+    @Test
+    public void testEmvBundle_OkFalseAndNoIsoSocket() throws Exception {
+        ApiJson.EmvBundleBody bundle = read(ApiJson.EMV_BUNDLE, "{\"ok\":false,\"aids\":[]}");
+
+        assertFalse(bundle.ok);
+        assertTrue(bundle.aids.isEmpty());
+        assertNull(bundle.aidsFlat);
+        assertNull(bundle.isoSocket);
+    }
+
+    // ==================== LARGE BUNDLE ====================
+
+    /**
+     * A production-sized bundle: 200 AIDs with contactless blocks and 100
+     * CAPKs with 248-byte moduli (~160 KB)
+     */
+    private static String largeBundle() {
+        StringBuilder json = new StringBuilder("{\"ok\":true,\"version\":\"42\",\"currency_code\":\"0818\","
+                + "\"country_code\":\"0818\",\"aids_flat\":[");
+        String[] rids = {"A000000003", "A000000004", "A000000732", "A000000025"};
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String rid = rids[i % rids.length];
+            json.append(String.format(Locale.US, "{\"aid\":\"%s%04X\",\"rid\":\"%s\",\"issuer\":\"Issuer %d\","
+                    + "\"label\":\"CARD %d\",\"kernel\":\"%s\",\"priority\":%d,\"tac_default\":\"FC50BC2000\","
+                    + "\"tac_denial\":\"0000000000\",\"tac_online\":\"FC50BCF800\",\"floorLimit\":\"000000000000\","
+                    + "\"threshold\":\"000000000000\",\"targetPer\":0,\"maxTargetPer\":0,\"dDOL\":\"9F3704\","
+                    + "\"contactless\":{\"ttq\":\"3600C000\",\"ctq\":\"0000\",\"merchantRiskParameters\":"
+                    + "{\"contactless_no_cvm_limit\":\"000000030000\",\"contactless_cvm_limit\":\"000000030000\","
+                    + "\"reader_contactless_floor_limit\":\"000000100000\"}}}",
+                    rid, i, rid, i, i, i % 2 == 0 ? "VISA" : "MC", 1 + i % 3));
+        }
+        json.append("],\"capks\":[");
+        StringBuilder modulus = new StringBuilder();
+        for (int i = 0; i < 248; i++) {
+            modulus.append(String.format(Locale.US, "%02X", (i * 31) & 0xFF));
+        }
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.US, "{\"brand\":\"B%d\",\"rid\":\"%s\",\"index\":\"%02X\","
+                    + "\"modulus\":\"%s\",\"exponent\":\"03\",\"sha1\":\"%040d\",\"status\":\"active\","
+                    + "\"expiry\":\"2030-12-31\"}", i, rids[i % rids.length], i, modulus, i));
+        }
+        json.append("],\"iso_socket\":{\"host\":\"10.0.0.1\",\"port\":5000,\"enabled\":false}}");
+        return json.toString();
+    }
+
+    @Test
+    public void testEmvBundle_ProductionSizedBundle() throws Exception {
+        ApiJson.EmvBundleBody bundle = read(ApiJson.EMV_BUNDLE, largeBundle());
+
+        assertEquals(200, bundle.aidsFlat.size());
+        assertEquals(100, bundle.capks.size());
+        AidConfig last = bundle.aidsFlat.get(199);
+        assertEquals("A00000002500C7", last.aidHex);
+        assertEquals("MC", last.kernel);
+        assertEquals("3600C000", last.ttq);
+        assertEquals("000000100000", last.contactlessFloorLimit);
+        assertEquals("9F3704", last.ddol);
+        CapkConfig capk = bundle.capks.get(99);
+        assertEquals("A000000025", capk.ridHex);
+        assertEquals("63", capk.indexHex);
+        assertEquals(496, capk.modulusHex.length());
+        assertEquals("301231", capk.expiryDate);
+        assertNotNull(bundle.isoSocket);
+    }
+}
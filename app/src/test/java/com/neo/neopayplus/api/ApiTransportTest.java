@@ -0,0 +1,154 @@
+package com.neo.neopayplus.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ApiTransport against a local mock host
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ApiTransportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ApiTransport transport;
+
+    /** Serves {@code body} under {@code etag}, 304 when If-None-Match matches */
+    private static final class EtagHost extends Dispatcher {
+        volatile String etag = "\"v1\"";
+        volatile String body = "{\"version\":\"1\"}";
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            switch (request.getPath()) {
+                case "/emv/bundle":
+                    if (etag.equals(request.getHeader("If-None-Match"))) {
+                        return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+                    }
+                    return new MockResponse().setHeader("ETag", etag).setBody(body);
+                case "/fail":
+                    return new MockResponse().setResponseCode(503);
+                case "/drop":
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                default:
+                    return new MockResponse().setBody("ok");
+            }
+        }
+    }
+
+    private EtagHost host;
+
+    @Before
+    public void setUp() throws IOException {
+        host = new EtagHost();
+        server = new MockWebServer();
+        server.setDispatcher(host);
+        server.start();
+        transport = new ApiTransport(folder.newFolder("http_cache"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private Request bundle() {
+        return ApiTransport.endpoint(new Request.Builder(), "emv.bundle")
+                .url(server.url("/emv/bundle"))
+                .cacheControl(ApiTransport.REVALIDATE)
+                .build();
+    }
+
+    @Test
+    public void testRevalidate_UnchangedBundleIs304FromCache() throws Exception {
+        try (Response first = transport.client().newCall(bundle()).execute()) {
+            assertEquals(200, first.code());
+            assertFalse(ApiTransport.isNotModified(first));
+            assertEquals(host.body, first.body().string());
+        }
+        try (Response second = transport.client().newCall(bundle()).execute()) {
+            assertEquals(200, second.code());
+            assertTrue(ApiTransport.isNotModified(second));
+            assertEquals(host.body, second.body().string()); // Served from the cache
+            assertEquals("\"v1\"", second.header("ETag"));
+        }
+
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        ApiTransport.Endpoint metrics = transport.metrics().get("emv.bundle");
+        assertEquals(2, metrics.calls.get());
+        assertEquals(1, metrics.notModified.get());
+        assertEquals(0, metrics.errors.get());
+    }
+
+    @Test
+    public void testRevalidate_ChangedBundleIsTransferred() throws Exception {
+        transport.client().newCall(bundle()).execute().close();
+        host.etag = "\"v2\"";
+        host.body = "{\"version\":\"2\"}";
+
+        try (Response response = transport.client().newCall(bundle()).execute()) {
+            assertFalse(ApiTransport.isNotModified(response));
+            assertEquals("{\"version\":\"2\"}", response.body().string());
+        }
+    }
+
+    @Test
+    public void testMetrics_PerEndpointErrorsAndLatency() throws Exception {
+        OkHttpClient client = transport.client();
+        for (int i = 0; i < 3; i++) {
+            client.newCall(new Request.Builder().url(server.url("/ok")).build()).execute().close();
+        }
+        client.newCall(new Request.Builder().url(server.url("/fail")).build()).execute().close();
+        try {
+            client.newCall(new Request.Builder().url(server.url("/drop")).build()).execute().close();
+            fail("Expected the dropped connection to fail");
+        } catch (IOException expected) {
+            // Counted as an error
+        }
+
+        Map<String, ApiTransport.Endpoint> metrics = transport.metrics();
+        assertEquals(3, metrics.get("/ok").calls.get());
+        assertEquals(0, metrics.get("/ok").errors.get());
+        assertEquals(3, metrics.get("/ok").latency.count());
+        assertEquals(1, metrics.get("/fail").errors.get());
+        assertEquals(1, metrics.get("/drop").errors.get());
+
+        transport.resetMetrics();
+        assertTrue(transport.metrics().isEmpty());
+    }
+
+    @Test
+    public void testSharedClient_ReusesOneConnection() throws Exception {
+        // Two services on one transport share the pool: the second call rides the first socket
+        OkHttpClient payment = transport.client();
+        OkHttpClient settlement = transport.client();
+        payment.newCall(new Request.Builder().url(server.url("/a")).build()).execute().close();
+        settlement.newCall(new Request.Builder().url(server.url("/b")).build()).execute().close();
+
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+        assertEquals(1, payment.connectionPool().connectionCount());
+    }
+}
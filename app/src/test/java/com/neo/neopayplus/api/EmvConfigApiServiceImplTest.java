@@ -0,0 +1,96 @@
+package com.neo.neopayplus.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the conditional EMV bundle fetch
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EmvConfigApiServiceImplTest {
+
+    private static final String BUNDLE = "{\"ok\":true,\"currency_code\":\"0818\",\"country_code\":\"0818\","
+            + "\"aids_flat\":[{\"aid\":\"A0000000031010\",\"kernel\":\"VISA\"},"
+            + "{\"aid\":\"A0000000041010\",\"kernel\":\"MC\"}],"
+            + "\"capks\":[{\"rid\":\"A000000003\",\"index\":\"09\",\"modulus\":\"9D\",\"exponent\":\"03\","
+            + "\"expiry\":\"2028-12-31\"}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ApiTransport transport;
+    private volatile String etag = "\"bundle-1\"";
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (etag.equals(request.getHeader("If-None-Match"))) {
+                    return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+                }
+                return new MockResponse().setHeader("ETag", etag).setBody(BUNDLE);
+            }
+        });
+        server.start();
+        transport = new ApiTransport(folder.newFolder("http_cache"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static EmvConfigApiService.EmvConfigResponse load(EmvConfigApiService service) throws Exception {
+        CompletableFuture<EmvConfigApiService.EmvConfigResponse> result = new CompletableFuture<>();
+        service.loadEmvConfiguration(new EmvConfigApiService.EmvConfigCallback() {
+            @Override
+            public void onConfigLoaded(EmvConfigApiService.EmvConfigResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onConfigError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLoad_UnchangedBundleReusesParsedResponse() throws Exception {
+        EmvConfigApiServiceImpl service = new EmvConfigApiServiceImpl(server.url("/v1").toString(), "key",
+                transport);
+
+        EmvConfigApiService.EmvConfigResponse first = load(service);
+        EmvConfigApiService.EmvConfigResponse second = load(service);
+
+        assertEquals(2, first.aids.size());
+        assertEquals(1, first.capks.size());
+        assertSame(first, second); // 304: not downloaded, not parsed again
+        assertEquals(1, transport.metrics().get("emv.bundle").notModified.get());
+
+        etag = "\"bundle-2\"";
+        EmvConfigApiService.EmvConfigResponse third = load(service);
+        assertNotSame(first, third);
+        assertEquals(2, third.aids.size());
+    }
+}
@@ -0,0 +1,266 @@
+package com.neo.neopayplus.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.neo.neopayplus.api.SettlementApiService.BatchUploadRequest;
+import com.neo.neopayplus.api.SettlementApiService.BatchUploadResponse;
+import com.neo.neopayplus.api.SettlementApiService.SettlementTransaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SettlementUploader against a local mock host
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SettlementUploaderTest {
+
+    private static final int CHUNK = 50;
+
+    private MockWebServer server;
+    private SettlementHost host;
+    private MemoryStore store;
+    private OkHttpClient client;
+
+    /** In-memory cursor store */
+    private static final class MemoryStore implements SettlementUploader.StateStore {
+        final Map<String, String> values = new HashMap<>();
+
+        @Override
+        public String read(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void write(String key, String value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public void delete(String key) {
+            values.remove(key);
+        }
+    }
+
+    /**
+     * Acknowledges every chunk (RRNs ending in "9" are rejected) and answers
+     * the last one with the batch result; can drop the connection on a chunk
+     */
+    private static final class SettlementHost extends Dispatcher {
+        final List<JsonObject> chunks = new CopyOnWriteArrayList<>();
+        final List<String> encodings = new CopyOnWriteArrayList<>();
+        volatile int dropChunk = -1;
+        volatile int rejectChunk = -1;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            JsonObject chunk;
+            try {
+                chunk = gunzip(request.getBody().readByteArray());
+            } catch (IOException e) {
+                return new MockResponse().setResponseCode(400).setBody("{\"message\":\"bad gzip\"}");
+            }
+            encodings.add(request.getHeader("Content-Encoding"));
+            chunks.add(chunk);
+            int index = chunk.get("chunk_index").getAsInt();
+            if (index == dropChunk) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+            if (index == rejectChunk) {
+                return new MockResponse().setResponseCode(409).setBody("{\"message\":\"unknown upload\"}");
+            }
+            JsonArray accepted = new JsonArray();
+            JsonArray rejected = new JsonArray();
+            for (JsonElement tx : chunk.getAsJsonArray("transactions")) {
+                String rrn = tx.getAsJsonObject().get("rrn").getAsString();
+                (rrn.endsWith("9") ? rejected : accepted).add(rrn);
+            }
+            JsonObject ack = new JsonObject();
+            ack.add("accepted_rrns", accepted);
+            ack.add("rejected_rrns", rejected);
+            if (chunk.get("last").getAsBoolean()) {
+                ack.addProperty("status", "success");
+                ack.addProperty("batch_id", "B-" + chunk.get("upload_id").getAsString());
+            }
+            return new MockResponse().setBody(ack.toString());
+        }
+
+        List<Integer> indices() {
+            List<Integer> indices = new ArrayList<>();
+            for (JsonObject chunk : chunks) {
+                indices.add(chunk.get("chunk_index").getAsInt());
+            }
+            return indices;
+        }
+    }
+
+    private static JsonObject gunzip(byte[] body) throws IOException {
+        try (InputStreamReader in = new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(in).getAsJsonObject();
+        }
+    }
+
+    /** Only what the uploader itself needs from the final body */
+    private static BatchUploadResponse parse(String body) {
+        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+        return BatchUploadResponse.success(json.get("batch_id").getAsString(), 0, 0, 0, null, null);
+    }
+
+    private static List<SettlementTransaction> transactions(int count) {
+        List<SettlementTransaction> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SettlementTransaction tx = new SettlementTransaction();
+            tx.transactionId = "TXN" + i;
+            tx.rrn = String.format("%012d", i);
+            tx.status = "APPROVED";
+            list.add(tx);
+        }
+        return list;
+    }
+
+    private static BatchUploadRequest request() {
+        BatchUploadRequest request = new BatchUploadRequest();
+        request.terminalId = "T0000001";
+        request.batchNumber = "000042";
+        request.batchDate = "20260101";
+        request.batchTime = "120000";
+        return request;
+    }
+
+    private SettlementUploader uploader() {
+        SettlementUploader uploader = new SettlementUploader(client, server.url("/tx/settlement").toString(),
+                "key", store, CHUNK, SettlementUploaderTest::parse);
+        uploader.setRetryBackoffMs(0);
+        return uploader;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        host = new SettlementHost();
+        server = new MockWebServer();
+        server.setDispatcher(host);
+        server.start();
+        store = new MemoryStore();
+        client = new OkHttpClient.Builder()
+                .readTimeout(5, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testUpload_ChunksAndReconciles() {
+        BatchUploadResponse response = uploader().upload(request(), SettlementUploader.listSource(transactions(125)));
+
+        assertTrue(response.message, response.success);
+        assertEquals(3, host.chunks.size());
+        assertEquals(List.of(0, 1, 2), host.indices());
+        assertEquals(CHUNK, host.chunks.get(0).getAsJsonArray("transactions").size());
+        assertEquals(25, host.chunks.get(2).getAsJsonArray("transactions").size());
+        assertFalse(host.chunks.get(1).get("last").getAsBoolean());
+        assertTrue(host.chunks.get(2).get("last").getAsBoolean());
+        assertEquals("000042", host.chunks.get(2).get("batch_number").getAsString());
+        for (String encoding : host.encodings) {
+            assertEquals("gzip", encoding);
+        }
+
+        // One upload id for the whole batch, and the batch result from the last chunk
+        String uploadId = host.chunks.get(0).get("upload_id").getAsString();
+        for (JsonObject chunk : host.chunks) {
+            assertEquals(uploadId, chunk.get("upload_id").getAsString());
+        }
+        assertEquals("B-" + uploadId, response.batchId);
+
+        // RRNs ending in 9: 0..124 has 12 of them
+        assertEquals(113, response.acceptedCount);
+        assertEquals(12, response.rejectedCount);
+        assertEquals(125, response.totalCount);
+        assertEquals(113, new HashSet<>(response.acceptedRrns).size());
+        assertTrue(store.values.isEmpty());
+    }
+
+    @Test
+    public void testUpload_EmptyBatchSendsOneLastChunk() {
+        BatchUploadResponse response = uploader().upload(request(), SettlementUploader.listSource(transactions(0)));
+
+        assertTrue(response.success);
+        assertEquals(1, host.chunks.size());
+        assertTrue(host.chunks.get(0).get("last").getAsBoolean());
+        assertEquals(0, response.totalCount);
+    }
+
+    @Test
+    public void testUpload_InterruptedUploadResumesAtNextChunk() {
+        List<SettlementTransaction> batch = transactions(160);
+        host.dropChunk = 2;
+
+        BatchUploadResponse failed = uploader().upload(request(), SettlementUploader.listSource(batch));
+
+        assertFalse(failed.success);
+        assertNotNull(failed.error);
+        assertEquals(List.of(0, 1, 2, 2, 2), host.indices()); // Retried, then gave up
+        assertEquals(1, store.values.size()); // Cursor kept for the next attempt
+        String uploadId = host.chunks.get(0).get("upload_id").getAsString();
+
+        host.dropChunk = -1;
+        host.chunks.clear();
+        BatchUploadResponse resumed = uploader().upload(request(), SettlementUploader.listSource(batch));
+
+        assertTrue(resumed.message, resumed.success);
+        assertEquals(List.of(2, 3), host.indices()); // Acknowledged chunks are not sent again
+        assertEquals(uploadId, host.chunks.get(0).get("upload_id").getAsString());
+        assertEquals("000000000100", host.chunks.get(0).getAsJsonArray("transactions").get(0)
+                .getAsJsonObject().get("rrn").getAsString());
+        assertEquals(160, resumed.totalCount); // Chunks 0-1 come from the saved cursor
+        assertEquals(16, resumed.rejectedCount);
+        assertTrue(store.values.isEmpty());
+    }
+
+    @Test
+    public void testUpload_RejectedChunkDropsCursor() {
+        host.rejectChunk = 1;
+
+        BatchUploadResponse response = uploader().upload(request(), SettlementUploader.listSource(transactions(120)));
+
+        assertFalse(response.success);
+        assertEquals(List.of(0, 1), host.indices()); // 4xx is not retried
+        assertTrue(store.values.isEmpty());
+
+        host.rejectChunk = -1;
+        host.chunks.clear();
+        assertTrue(uploader().upload(request(), SettlementUploader.listSource(transactions(120))).success);
+        assertEquals(List.of(0, 1, 2), host.indices()); // Starts over
+    }
+}
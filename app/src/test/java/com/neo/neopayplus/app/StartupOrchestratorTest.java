@@ -0,0 +1,159 @@
+package com.neo.neopayplus.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for StartupOrchestrator ordering, parallelism and failure handling
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StartupOrchestratorTest {
+
+    private ExecutorService main;
+    private ScheduledExecutorService pool;
+    private StartupOrchestrator startup;
+    private final List<String> order = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        main = Executors.newSingleThreadExecutor(r -> new Thread(r, "main"));
+        pool = Executors.newScheduledThreadPool(3);
+        startup = new StartupOrchestrator(main, pool);
+    }
+
+    @After
+    public void tearDown() {
+        main.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private StartupOrchestrator.Action record(String name) {
+        return () -> order.add(name);
+    }
+
+    @Test
+    public void testDependenciesRunFirst_IndependentTasksOverlap() throws Exception {
+        // a and b only pass the barrier if they run at the same time
+        CyclicBarrier both = new CyclicBarrier(2);
+        startup.task("a", false, () -> { both.await(2, TimeUnit.SECONDS); order.add("a"); })
+                .task("b", false, () -> { both.await(2, TimeUnit.SECONDS); order.add("b"); })
+                .task("c", false, record("c"), "a", "b")
+                .task("d", false, record("d"), "c");
+        startup.start();
+
+        assertTrue(startup.await("d", 5, TimeUnit.SECONDS));
+        assertEquals(StartupOrchestrator.Status.OK, startup.status("a"));
+        assertEquals(StartupOrchestrator.Status.OK, startup.status("b"));
+        assertEquals(4, order.size());
+        assertEquals("c", order.get(2));
+        assertEquals("d", order.get(3));
+    }
+
+    @Test
+    public void testMainTasks_RunOnMainExecutor() throws Exception {
+        AtomicReference<String> mainThread = new AtomicReference<>();
+        AtomicReference<String> bgThread = new AtomicReference<>();
+        startup.task("ui", true, () -> mainThread.set(Thread.currentThread().getName()))
+                .task("io", false, () -> bgThread.set(Thread.currentThread().getName()), "ui");
+        startup.start();
+
+        assertTrue(startup.await("io", 5, TimeUnit.SECONDS));
+        assertEquals("main", mainThread.get());
+        assertNotEquals("main", bgThread.get());
+        assertTrue(startup.report().contains("main"));
+    }
+
+    @Test
+    public void testAsyncTask_CompletesFromCallback() throws Exception {
+        AtomicReference<StartupOrchestrator.Completion> binding = new AtomicReference<>();
+        startup.asyncTask("bind", false, 5_000, binding::set)
+                .task("afterBind", false, record("afterBind"), "bind");
+        startup.start();
+
+        assertFalse(startup.await("afterBind", 200, TimeUnit.MILLISECONDS));
+        assertEquals(StartupOrchestrator.Status.RUNNING, startup.status("bind"));
+
+        // Service connected callback, from some other thread
+        new Thread(() -> binding.get().success()).start();
+        assertTrue(startup.await("afterBind", 5, TimeUnit.SECONDS));
+        assertEquals(StartupOrchestrator.Status.OK, startup.status("bind"));
+        assertEquals(1, order.size());
+    }
+
+    @Test
+    public void testAsyncTimeout_SkipsDependents() throws Exception {
+        AtomicReference<StartupOrchestrator.Completion> binding = new AtomicReference<>();
+        startup.asyncTask("bind", false, 100, binding::set)
+                .task("child", false, record("child"), "bind")
+                .task("grandchild", false, record("grandchild"), "child")
+                .task("unrelated", false, record("unrelated"));
+        startup.start();
+
+        assertTrue(startup.await("grandchild", 5, TimeUnit.SECONDS));
+        assertTrue(startup.await("unrelated", 5, TimeUnit.SECONDS));
+        assertEquals(StartupOrchestrator.Status.FAILED, startup.status("bind"));
+        assertEquals(StartupOrchestrator.Status.SKIPPED, startup.status("child"));
+        assertEquals(StartupOrchestrator.Status.SKIPPED, startup.status("grandchild"));
+        assertEquals(StartupOrchestrator.Status.OK, startup.status("unrelated"));
+        assertEquals(1, order.size());
+
+        // Connecting after the timeout changes nothing
+        binding.get().success();
+        assertEquals(StartupOrchestrator.Status.FAILED, startup.status("bind"));
+        assertTrue(startup.report().contains("timed out"));
+    }
+
+    @Test
+    public void testThrowingTask_Failed() throws Exception {
+        startup.task("broken", false, () -> { throw new IllegalStateException("no service"); })
+                .task("next", false, record("next"), "broken");
+        startup.start();
+
+        assertTrue(startup.await("next", 5, TimeUnit.SECONDS));
+        assertEquals(StartupOrchestrator.Status.FAILED, startup.status("broken"));
+        assertEquals(StartupOrchestrator.Status.SKIPPED, startup.status("next"));
+        assertTrue(startup.report().contains("no service"));
+        assertTrue(order.isEmpty());
+        assertTrue(startup.finishedAtMs("broken") >= 0);
+    }
+
+    @Test
+    public void testInvalidGraphs_Rejected() {
+        startup.task("a", false, record("a"), "b").task("b", false, record("b"), "a");
+        try {
+            startup.start();
+            fail("Cycle not detected");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("cycle"));
+        }
+
+        StartupOrchestrator unknown = new StartupOrchestrator(main, pool).task("a", false, record("a"), "missing");
+        try {
+            unknown.start();
+            fail("Unknown dependency not detected");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("missing"));
+        }
+
+        try {
+            new StartupOrchestrator(main, pool).task("a", false, record("a")).task("a", false, record("a"));
+            fail("Duplicate not detected");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
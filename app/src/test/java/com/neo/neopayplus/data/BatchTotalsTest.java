@@ -0,0 +1,164 @@
+package com.neo.neopayplus.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.neo.neopayplus.TestApplication;
+import com.neo.neopayplus.data.TransactionJournal.TransactionRecord;
+import com.neo.neopayplus.db.TxnDb;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BatchTotals (running totals kept next to the journal)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = TestApplication.class)
+public class BatchTotalsTest {
+
+    private static final String BATCH = "000001";
+
+    private int nextId;
+
+    @Before
+    public void setUp() {
+        TransactionJournal.clearJournal();
+    }
+
+    private TransactionRecord save(String brand, String type, String status, String amount) {
+        nextId++;
+        TransactionRecord record = new TransactionRecord();
+        record.transactionId = String.format("TXN%04d", nextId);
+        record.rrn = String.format("%012d", nextId);
+        record.cardBrand = brand;
+        record.transactionType = type;
+        record.status = status;
+        record.amount = amount;
+        record.batchNumber = BATCH;
+        record.receiptNumber = String.format("%06d", nextId);
+        assertNotNull(TransactionJournal.saveTransaction(record));
+        return record;
+    }
+
+    private static BatchTotals.Total find(List<BatchTotals.Total> totals, String brand, String type, String status) {
+        for (BatchTotals.Total total : totals) {
+            if (total.cardBrand.equals(brand) && total.transactionType.equals(type) && total.status.equals(status)) {
+                return total;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSummarize_SalesVoidsRefundsPerBrand() {
+        List<BatchTotals.Total> totals = Arrays.asList(
+                new BatchTotals.Total("VISA", "00", "APPROVED", 3, 30000),
+                new BatchTotals.Total("VISA", "00", "VOID", 1, 5000),
+                new BatchTotals.Total("VISA", "20", "APPROVED", 1, 2500),
+                new BatchTotals.Total("MASTERCARD", "00", "APPROVED", 2, 1000),
+                new BatchTotals.Total("MASTERCARD", "00", "DECLINED", 4, 9999));
+
+        BatchTotals.Summary all = BatchTotals.summarize(totals, null);
+        assertEquals(5, all.saleCount);
+        assertEquals(31000, all.saleAmountMinor);
+        assertEquals(1, all.voidCount);
+        assertEquals(5000, all.voidAmountMinor);
+        assertEquals(1, all.refundCount);
+        assertEquals(2500, all.refundAmountMinor);
+        assertEquals(28500, all.getNetAmountMinor());
+
+        BatchTotals.Summary visa = BatchTotals.summarize(totals, "visa");
+        assertEquals(3, visa.saleCount);
+        assertEquals(27500, visa.getNetAmountMinor());
+
+        assertEquals(0, BatchTotals.summarize(Collections.emptyList(), null).saleCount);
+    }
+
+    @Test
+    public void testGet_FollowsJournalWrites() {
+        save("VISA", "00", "APPROVED", "1000");
+        save("VISA", "00", "APPROVED", "2500");
+        TransactionRecord voided = save("MASTERCARD", "00", "APPROVED", "700");
+        TransactionJournal.updateTransactionStatus(voided.transactionId, "VOID");
+
+        List<BatchTotals.Total> totals = BatchTotals.get(BATCH);
+        BatchTotals.Total visa = find(totals, "VISA", "00", "APPROVED");
+        assertEquals(2, visa.count);
+        assertEquals(3500, visa.amountMinor);
+        assertNull(find(totals, "MASTERCARD", "00", "APPROVED"));
+        assertEquals(1, find(totals, "MASTERCARD", "00", "VOID").count);
+
+        assertTrue(BatchTotals.get("999999").isEmpty());
+        assertTrue(BatchTotals.get(null).isEmpty());
+    }
+
+    @Test
+    public void testVerify_RepairsDriftedTotals() {
+        save("VISA", "00", "APPROVED", "1000");
+        save("VISA", "00", "APPROVED", "2000");
+        assertTrue(BatchTotals.verify(BATCH));
+
+        TransactionJournal.db().execSQL("UPDATE " + TxnDb.TABLE_BATCH_TOTALS + " SET "
+                + TxnDb.COL_COUNT + " = 7, " + TxnDb.COL_AMOUNT_MINOR + " = 1");
+        assertFalse(BatchTotals.verify(BATCH));
+
+        BatchTotals.Total visa = find(BatchTotals.get(BATCH), "VISA", "00", "APPROVED");
+        assertEquals(2, visa.count);
+        assertEquals(3000, visa.amountMinor);
+        assertTrue(BatchTotals.verify(BATCH));
+    }
+
+    @Test
+    public void testVerifyAll_DropsRowsWithoutTransactions() {
+        save("VISA", "00", "APPROVED", "1000");
+        TransactionJournal.db().execSQL("INSERT INTO " + TxnDb.TABLE_BATCH_TOTALS
+                + " VALUES ('000002', 'VISA', '00', 'APPROVED', 1, 500)");
+
+        assertFalse(BatchTotals.verifyAll());
+        assertTrue(BatchTotals.get("000002").isEmpty());
+        assertEquals(1, BatchTotals.get(BATCH).size());
+        assertTrue(BatchTotals.verifyAll());
+    }
+
+    @Test
+    public void testRebuild_RestoresTotalsFromJournal() {
+        save("VISA", "00", "APPROVED", "1000");
+        save("VISA", "20", "APPROVED", "400");
+        save("MEEZA", "00", "DECLINED", "300");
+        SQLiteDatabase db = TransactionJournal.db();
+        db.delete(TxnDb.TABLE_BATCH_TOTALS, null, null);
+
+        TxnDb.rebuildBatchTotals(db, BATCH);
+
+        List<BatchTotals.Total> totals = BatchTotals.get(BATCH);
+        assertEquals(3, totals.size());
+        assertEquals(400, find(totals, "VISA", "20", "APPROVED").amountMinor);
+        assertEquals(1, find(totals, "MEEZA", "00", "DECLINED").count);
+        assertTrue(BatchTotals.verify(BATCH));
+    }
+
+    @Test
+    public void testCountUnsettled_SkipsSettledAndDeclined() {
+        TransactionRecord settled = save("VISA", "00", "APPROVED", "1000");
+        save("VISA", "00", "APPROVED", "2000");
+        TransactionRecord voided = save("VISA", "00", "APPROVED", "3000");
+        TransactionJournal.updateTransactionStatus(voided.transactionId, "VOID");
+        save("VISA", "00", "DECLINED", "4000");
+        assertEquals(3, TransactionJournal.countUnsettled(BATCH));
+
+        TransactionJournal.markBatchAsSettled(BATCH, Collections.singletonList(settled.rrn));
+
+        assertEquals(2, TransactionJournal.countUnsettled(BATCH));
+        // The totals themselves do not change on settlement
+        assertEquals(2, BatchTotals.summarize(BatchTotals.get(BATCH), null).saleCount);
+    }
+}
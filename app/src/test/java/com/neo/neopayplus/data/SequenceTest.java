@@ -0,0 +1,172 @@
+package com.neo.neopayplus.data;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for Sequence
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SequenceTest {
+
+    /** In-memory store that counts persists */
+    private static final class CountingStore implements Sequence.Store {
+        final AtomicLong ceiling = new AtomicLong();
+        final AtomicInteger saves = new AtomicInteger();
+
+        @Override
+        public void save(long value) {
+            ceiling.set(value);
+            saves.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testNext_SequentialAndPersistsPerBlock() {
+        CountingStore store = new CountingStore();
+        Sequence sequence = new Sequence(1, 999999, 100, 0, store);
+
+        for (int i = 1; i <= 250; i++) {
+            assertEquals(i, sequence.next());
+        }
+        assertEquals(250, sequence.current());
+        assertEquals(3, store.saves.get());
+        assertEquals(300, store.ceiling.get());
+    }
+
+    @Test
+    public void testRestart_ContinuesAboveCeiling() {
+        CountingStore store = new CountingStore();
+        Sequence sequence = new Sequence(1, 999999, 100, 0, store);
+        int last = 0;
+        for (int i = 0; i < 42; i++) {
+            last = sequence.next();
+        }
+
+        // Crash: only the persisted ceiling survives
+        Sequence restarted = new Sequence(1, 999999, 100, store.ceiling.get(), store);
+        int first = restarted.next();
+        assertTrue(first > last);
+        assertEquals(101, first);
+    }
+
+    @Test
+    public void testWrap() {
+        CountingStore store = new CountingStore();
+        Sequence sequence = new Sequence(1, 999999, 100, 999998, store);
+
+        assertEquals(999999, sequence.next());
+        assertEquals(1, sequence.next());
+        assertEquals(2, sequence.next());
+    }
+
+    @Test
+    public void testFailedPersist_NeverReturnsUnreservedValue() {
+        AtomicInteger failures = new AtomicInteger(1);
+        AtomicLong ceiling = new AtomicLong();
+        Sequence sequence = new Sequence(1, 999999, 10, 0, value -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("disk full");
+            }
+            ceiling.set(value);
+        });
+
+        try {
+            sequence.next();
+            fail("Expected the persist failure");
+        } catch (IllegalStateException expected) {
+            // Value 1 is burned, never returned
+        }
+        assertEquals(2, sequence.next());
+        assertTrue(ceiling.get() >= 2);
+    }
+
+    @Test
+    public void testReset() {
+        CountingStore store = new CountingStore();
+        Sequence sequence = new Sequence(1, 999999, 1, 0, store);
+        sequence.next();
+        sequence.next();
+
+        sequence.reset(1);
+        assertEquals(1, sequence.current());
+        assertEquals(2, sequence.next());
+        assertEquals(2, store.ceiling.get());
+    }
+
+    @Test
+    public void testConcurrentNext_NoDuplicatesNoGaps() throws Exception {
+        CountingStore store = new CountingStore();
+        Sequence sequence = new Sequence(1, 999999, 100, 0, store);
+        int threads = 8;
+        int perThread = 20000;
+        BitSet seen = new BitSet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                int[] values = new int[perThread];
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    values[i] = sequence.next();
+                }
+                synchronized (seen) {
+                    for (int value : values) {
+                        if (seen.get(value)) {
+                            duplicates.incrementAndGet();
+                        }
+                        seen.set(value);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        int total = threads * perThread;
+        assertEquals(0, duplicates.get());
+        assertEquals(total, seen.cardinality());
+        assertEquals(total, seen.nextClearBit(1) - 1); // 1..total, no gaps
+        assertEquals(total / 100, store.saves.get());
+        assertTrue(store.ceiling.get() >= total);
+    }
+
+    @Test
+    public void testConcurrentNext_AcrossRestartNeverReuses() throws Exception {
+        CountingStore store = new CountingStore();
+        Sequence before = new Sequence(1, 999999, 100, 0, store);
+        AtomicInteger highest = new AtomicInteger();
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 1234; i++) {
+                    highest.accumulateAndGet(before.next(), Math::max);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Sequence after = new Sequence(1, 999999, 100, store.ceiling.get(), store);
+        assertTrue(after.next() > highest.get());
+    }
+}
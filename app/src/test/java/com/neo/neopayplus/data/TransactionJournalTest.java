@@ -0,0 +1,158 @@
+package com.neo.neopayplus.data;
+
+import android.content.Context;
+
+import com.neo.neopayplus.MyApplication;
+import com.neo.neopayplus.TestApplication;
+import com.neo.neopayplus.data.TransactionJournal.TransactionRecord;
+import com.neo.neopayplus.utils.GsonUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TransactionJournal (TxnDb-backed)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = TestApplication.class)
+public class TransactionJournalTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Before
+    public void setUp() {
+        TransactionJournal.clearJournal();
+    }
+
+    private static TransactionRecord sale(String transactionId, String rrn, String amount, long timestamp) {
+        TransactionRecord record = new TransactionRecord(timestamp);
+        record.transactionId = transactionId;
+        record.rrn = rrn;
+        record.amount = amount;
+        record.cardBrand = "VISA";
+        record.transactionType = "00";
+        record.responseCode = "00";
+        record.status = "APPROVED";
+        record.batchNumber = "000001";
+        record.receiptNumber = "000001";
+        return record;
+    }
+
+    private static BatchTotals.Summary totals(String batchNumber) {
+        return BatchTotals.summarize(BatchTotals.get(batchNumber), null);
+    }
+
+    @Test
+    public void testSaveTransaction_GeneratedIdsAreDistinct() {
+        long now = System.currentTimeMillis();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            String id = TransactionJournal.saveTransaction(sale(null, null, "100", now));
+            assertNotNull(id);
+            assertTrue("duplicate " + id, ids.add(id));
+        }
+        assertEquals(300, TransactionJournal.getAllTransactions().size());
+        assertEquals(300, totals("000001").saleCount);
+    }
+
+    @Test
+    public void testSaveTransaction_NeverReplacesStoredId() {
+        long now = System.currentTimeMillis();
+        assertEquals("TXN0001", TransactionJournal.saveTransaction(sale("TXN0001", "000000000001", "1000", now)));
+        assertNull(TransactionJournal.saveTransaction(sale("TXN0001", "000000000002", "5000", now)));
+
+        TransactionRecord stored = TransactionJournal.findTransactionById("TXN0001");
+        assertEquals("000000000001", stored.rrn);
+        assertEquals("1000", stored.amount);
+        assertEquals(1, totals("000001").saleCount);
+        assertEquals(1000, totals("000001").saleAmountMinor);
+    }
+
+    @Test
+    public void testResaveTransaction_ReplacesAndMovesTotals() {
+        long now = System.currentTimeMillis();
+        TransactionRecord refund = sale("TXN0002", "000000000003", "2500", now);
+        refund.transactionType = "20";
+        refund.batchNumber = "000002";
+        TransactionJournal.saveTransaction(refund);
+        assertEquals(1, totals("000002").refundCount);
+
+        // Re-saved with the original sale's batch
+        refund.batchNumber = "000001";
+        assertEquals("TXN0002", TransactionJournal.resaveTransaction(refund));
+
+        assertEquals(1, TransactionJournal.getAllTransactions().size());
+        assertEquals("000001", TransactionJournal.findTransactionById("TXN0002").batchNumber);
+        assertEquals(0, totals("000002").refundCount);
+        assertEquals(1, totals("000001").refundCount);
+        assertEquals(2500, totals("000001").refundAmountMinor);
+        assertTrue(BatchTotals.verifyAll());
+    }
+
+    @Test
+    public void testMigrateLegacyJournal_ImportsNewestCopyAndRebuildsTotals() {
+        long now = System.currentTimeMillis();
+        TransactionRecord newest = sale("TXN0003", "000000000004", "700", now);
+        newest.status = "VOID";
+        TransactionRecord older = sale("TXN0003", "000000000004", "700", now - 1000);
+        TransactionRecord sameRrnNoId = sale(null, "000000000004", "700", now - 2000);
+        TransactionRecord noId = sale(null, "000000000005", "300", now - 3000);
+        List<TransactionRecord> legacy = Arrays.asList(newest, older, sameRrnNoId, noId);
+
+        Context context = MyApplication.app;
+        context.getSharedPreferences("neopayplus_prefs", Context.MODE_PRIVATE).edit()
+                .putString("transaction_journal", GsonUtil.gson().toJson(legacy))
+                .commit();
+        TransactionJournal.migrateLegacyJournal(TransactionJournal.db());
+
+        List<TransactionRecord> imported = TransactionJournal.getAllTransactions();
+        assertEquals(2, imported.size());
+        assertEquals("VOID", TransactionJournal.findTransactionById("TXN0003").status);
+        TransactionRecord generated = TransactionJournal.findTransactionByRrn("000000000005");
+        assertNotNull(generated.transactionId);
+        assertTrue(generated.transactionId.startsWith("TXN"));
+        assertEquals(now - 3000, generated.timestamp);
+
+        assertNull(context.getSharedPreferences("neopayplus_prefs", Context.MODE_PRIVATE)
+                .getString("transaction_journal", null));
+        BatchTotals.Summary summary = totals("000001");
+        assertEquals(1, summary.voidCount);
+        assertEquals(1, summary.saleCount);
+        assertEquals(300, summary.saleAmountMinor);
+    }
+
+    @Test
+    public void testPrune_RetentionAndCap() {
+        long now = System.currentTimeMillis();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            // Oldest first: 10, 8, 6, 4, 2 and 0 days old
+            String id = "TXN01" + i;
+            TransactionJournal.saveTransaction(sale(id, null, "100", now - (10 - 2 * i) * DAY));
+            ids.add(id);
+        }
+
+        // 10 and 8 days old expire; of the other 4 only the newest 3 fit
+        assertEquals(3, TransactionJournal.prune(now - 7 * DAY, 3));
+
+        List<TransactionRecord> left = TransactionJournal.getAllTransactions();
+        assertEquals(3, left.size());
+        assertEquals(ids.get(5), left.get(0).transactionId);
+        assertEquals(ids.get(4), left.get(1).transactionId);
+        assertEquals(ids.get(3), left.get(2).transactionId);
+        assertEquals(3, totals("000001").saleCount);
+        assertEquals(300, totals("000001").saleAmountMinor);
+        assertTrue(BatchTotals.verifyAll());
+    }
+}
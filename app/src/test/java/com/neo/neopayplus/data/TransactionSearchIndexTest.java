@@ -0,0 +1,94 @@
+package com.neo.neopayplus.data;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TransactionSearchIndex
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TransactionSearchIndexTest {
+
+    private TransactionSearchIndex index;
+
+    @Before
+    public void setUp() {
+        // Newest first, as the journal hands them over
+        index = new TransactionSearchIndex.Builder(7)
+                .add(30, "529112345678", "400000******1234", "125000", "251018")
+                .add(20, "529100001250", "510000******9876", "5000", "251018")
+                .add(10, "528900004321", "400000******1234", "1250", "251017")
+                .build();
+    }
+
+    @Test
+    public void testSearch_RrnFullAndSuffix() {
+        assertArrayEquals(new long[] { 30 }, index.search("529112345678", 10));
+        assertArrayEquals(new long[] { 30 }, index.search("345678", 10));
+        assertArrayEquals(new long[] { 10 }, index.search("4321", 10));
+    }
+
+    @Test
+    public void testSearch_PanLastFour() {
+        assertArrayEquals(new long[] { 30, 10 }, index.search("1234", 10));
+        assertArrayEquals(new long[] { 20 }, index.search("**** 9876", 10));
+    }
+
+    @Test
+    public void testSearch_Amount() {
+        assertArrayEquals(new long[] { 20 }, index.search("50", 10));
+        assertArrayEquals(new long[] { 20 }, index.search("50.00", 10));
+        assertArrayEquals(new long[] { 10 }, index.search("12.5", 10));
+        assertArrayEquals(new long[] { 30 }, index.search("EGP 1,250.00", 10));
+    }
+
+    @Test
+    public void testSearch_AmbiguousDigitsMatchEveryReading() {
+        // 1250.00 (id 30) and the RRN ending 1250 (id 20)
+        assertArrayEquals(new long[] { 30, 20 }, index.search("1250", 10));
+    }
+
+    @Test
+    public void testSearch_Date() {
+        assertArrayEquals(new long[] { 30, 20 }, index.search("251018", 10));
+        assertArrayEquals(new long[] { 30, 20 }, index.search("2025-10-18", 10));
+        assertArrayEquals(new long[] { 10 }, index.search("17/10/2025", 10));
+        assertArrayEquals(new long[] { 10 }, index.search("17/10", 10));
+    }
+
+    @Test
+    public void testSearch_LimitAndNoMatch() {
+        assertArrayEquals(new long[] { 30 }, index.search("251018", 1));
+        assertEquals(0, index.search("0000", 10).length);
+        assertEquals(0, index.search("abc", 10).length);
+        assertEquals(0, index.search(null, 10).length);
+        assertEquals(3, index.size());
+        assertEquals(7, index.version());
+    }
+
+    @Test
+    public void testSearch_LargeJournal() {
+        TransactionSearchIndex.Builder builder = new TransactionSearchIndex.Builder(1);
+        for (int i = 20000; i > 0; i--) {
+            builder.add(i, String.format("5291%08d", i), String.format("400000******%04d", i % 10000),
+                    Integer.toString(i * 100), String.format("2510%02d", 1 + i % 28));
+        }
+        TransactionSearchIndex large = builder.build();
+        assertEquals(20000, large.size());
+
+        // PAN ...0042 (ids 10042, 42) and RRN ending 0042 (same rows), newest first
+        assertArrayEquals(new long[] { 10042, 42 }, large.search("0042", 50));
+
+        // 2025-10-01 matches ids 28, 56, ...: the limit keeps the newest
+        long[] day = large.search("251001", 50);
+        assertEquals(50, day.length);
+        assertEquals(19992, day[0]);
+        for (int i = 1; i < day.length; i++) {
+            assertEquals(day[i - 1] - 28, day[i]);
+        }
+    }
+}
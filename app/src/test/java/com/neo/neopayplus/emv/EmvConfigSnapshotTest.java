@@ -0,0 +1,129 @@
+package com.neo.neopayplus.emv;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for EmvConfigSnapshot hashing and diffing
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EmvConfigSnapshotTest {
+
+    private static final String VISA = "A0000000031010";
+    private static final String MC = "A0000000041010";
+    private static final String MEEZA = "A0000007320001";
+
+    private static Map<String, String> map(String... keyValues) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void testHash_IndependentOfOrder() {
+        EmvConfigSnapshot a = new EmvConfigSnapshot("1", map(VISA, "v", MC, "m"), map("A000000004:05", "k"), 0);
+        EmvConfigSnapshot b = new EmvConfigSnapshot("2", map(MC, "m", VISA, "v"), map("A000000004:05", "k"), 5);
+        assertEquals(a.hash, b.hash);
+
+        EmvConfigSnapshot c = new EmvConfigSnapshot("1", map(VISA, "v", MC, "m2"), map("A000000004:05", "k"), 0);
+        assertNotEquals(a.hash, c.hash);
+        // An AID and a CAPK with the same key/fingerprint must not hash alike
+        assertNotEquals(new EmvConfigSnapshot("1", map("K", "f"), map(), 0).hash,
+                new EmvConfigSnapshot("1", map(), map("K", "f"), 0).hash);
+    }
+
+    @Test
+    public void testFingerprint() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                EmvConfigSnapshot.fingerprint(""));
+        assertEquals(EmvConfigSnapshot.fingerprint("{\"aid\":\"A0000000031010\"}"),
+                EmvConfigSnapshot.fingerprint("{\"aid\":\"A0000000031010\"}"));
+        assertEquals("A000000004:F1", EmvConfigSnapshot.capkKey("a000000004", "f1"));
+    }
+
+    @Test
+    public void testDiff_Unchanged_NothingToDo() {
+        Map<String, String> wanted = map(VISA, "v", MC, "m");
+        EmvConfigSnapshot.Diff diff = EmvConfigSnapshot.diff(wanted, wanted, Arrays.asList(VISA, MC));
+        assertTrue(diff.isEmpty());
+        assertEquals(Arrays.asList(VISA, MC), diff.unchanged); // Sorted
+        assertEquals("+0 ~0 -0 =2", diff.toString());
+    }
+
+    @Test
+    public void testDiff_AddedChangedRemoved() {
+        Map<String, String> installed = map(VISA, "v", MC, "m", MEEZA, "z");
+        Map<String, String> wanted = map(VISA, "v", MC, "m2", "A0000000043060", "maestro");
+        EmvConfigSnapshot.Diff diff = EmvConfigSnapshot.diff(wanted, installed,
+                Arrays.asList(VISA, MC.toLowerCase(), MEEZA));
+
+        assertEquals(Collections.singletonList("A0000000043060"), diff.added);
+        assertEquals(Collections.singletonList(MC), diff.changed);
+        assertEquals(Collections.singletonList(MEEZA), diff.removed);
+        assertEquals(Collections.singletonList(VISA), diff.unchanged);
+        assertEquals(Arrays.asList("A0000000043060", MC), diff.toInstall());
+    }
+
+    @Test
+    public void testDiff_MissingFromKernel_Reinstalled() {
+        // Snapshot says installed, but the kernel lost it (e.g. SDK reset)
+        Map<String, String> wanted = map(VISA, "v", MC, "m");
+        EmvConfigSnapshot.Diff diff = EmvConfigSnapshot.diff(wanted, wanted, Collections.singletonList(VISA));
+        assertEquals(Collections.singletonList(MC), diff.added);
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void testDiff_NoSnapshot_EverythingInKernelIsChanged() {
+        Map<String, String> wanted = map(VISA, "v");
+        EmvConfigSnapshot.Diff diff = EmvConfigSnapshot.diff(wanted, null, Collections.singletonList(VISA));
+        assertEquals(Collections.singletonList(VISA), diff.changed);
+        assertTrue(diff.unchanged.isEmpty());
+    }
+
+    @Test
+    public void testRetain_DropsFailedEntries() {
+        EmvConfigSnapshot wanted = new EmvConfigSnapshot("7", map(VISA, "v", MC, "m"),
+                map("A000000004:05", "k5", "A000000004:06", "k6"), 0);
+        EmvConfigSnapshot kept = wanted.retain(Collections.singleton(VISA),
+                Collections.singleton("A000000004:06"), 1234);
+
+        assertEquals(map(VISA, "v"), new HashMap<>(kept.aids));
+        assertEquals(map("A000000004:06", "k6"), new HashMap<>(kept.capks));
+        assertEquals("7", kept.version);
+        assertEquals(1234, kept.installedAt);
+        assertNotEquals(wanted.hash, kept.hash);
+    }
+
+    @Test
+    public void testJson_RoundTrip() {
+        EmvConfigSnapshot snapshot = new EmvConfigSnapshot("3", map(VISA, "v"), map("A000000003:92", "k"), 99);
+        EmvConfigSnapshot restored = EmvConfigSnapshot.fromJson(snapshot.toJson());
+        assertNotNull(restored);
+        assertEquals(snapshot.hash, restored.hash);
+        assertEquals(snapshot.aids, restored.aids);
+        assertEquals(snapshot.capks, restored.capks);
+        assertEquals("3", restored.version);
+        assertEquals(99, restored.installedAt);
+
+        // A tampered hash is recomputed, not trusted
+        String tampered = snapshot.toJson().replace(snapshot.hash, "00");
+        assertEquals(snapshot.hash, EmvConfigSnapshot.fromJson(tampered).hash);
+
+        assertNull(EmvConfigSnapshot.fromJson(null));
+        assertNull(EmvConfigSnapshot.fromJson(""));
+        assertNull(EmvConfigSnapshot.fromJson("{not json"));
+        assertNull(EmvConfigSnapshot.fromJson("{\"version\":\"1\"}"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.neo.neopayplus.emv;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for EmvTransactionContext decoding
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EmvTransactionContextTest {
+
+    @Test
+    public void testContactDe55_DecodedFields() {
+        EmvTransactionContext emv = EmvTransactionContext.fromDe55Hex(TlvBufferTest.DE55_CONTACT);
+        assertNotNull(emv);
+
+        assertEquals(15000, emv.amountMinor);
+        assertEquals("818", emv.currencyCode);
+        assertEquals("A0000000031010", emv.aid);
+        assertEquals("VISA", emv.brand);
+        assertEquals("1", emv.panSequenceNumber);
+        assertEquals("0080048000", emv.tvr);
+        assertNull(emv.pan);
+        assertNull(emv.expiry);
+        assertEquals("C2B5A1D3E4F5061F", emv.tag(0x9F26));
+        assertEquals(TlvBufferTest.DE55_CONTACT, emv.de55Hex());
+    }
+
+    @Test
+    public void testContactlessDe55_PanAndExpiry() {
+        EmvTransactionContext emv = EmvTransactionContext.fromDe55Hex(TlvBufferTest.DE55_CONTACTLESS);
+        assertNotNull(emv);
+
+        assertEquals("5413330089899123", emv.pan);
+        assertEquals("2812", emv.expiry);
+        assertEquals(1234, emv.amountMinor);
+        assertEquals("MASTERCARD", emv.brand); // No AID: from the PAN
+        assertNull(emv.panSequenceNumber);
+    }
+
+    @Test
+    public void testTrack2Fallback() {
+        // Track 2 only: PAN and expiry come from 57
+        EmvTransactionContext emv = EmvTransactionContext.fromDe55Hex("57114761739001010010D2812201123456789F");
+        assertNotNull(emv);
+        assertEquals("4761739001010010", emv.pan);
+        assertEquals("2812", emv.expiry);
+        assertEquals("VISA", emv.brand);
+        assertEquals(-1, emv.amountMinor);
+    }
+
+    @Test
+    public void testExplicitBrand_Wins() {
+        EmvTransactionContext emv = EmvTransactionContext.fromDe55(
+                EmvTransactionContext.fromDe55Hex(TlvBufferTest.DE55_CONTACT).de55(), "MEEZA");
+        assertEquals("MEEZA", emv.brand);
+        assertEquals("A0000000031010", emv.aid);
+    }
+
+    @Test
+    public void testDe55_IsCopied() {
+        byte[] raw = EmvTransactionContext.fromDe55Hex("5A021234").de55();
+        EmvTransactionContext emv = EmvTransactionContext.fromDe55(raw, null);
+        raw[2] = 0;
+        assertEquals("1234", emv.pan);
+
+        byte[] out = emv.de55();
+        out[2] = 0;
+        assertEquals("5A021234", emv.de55Hex());
+        assertEquals(4, emv.de55Length());
+    }
+
+    @Test
+    public void testMalformedHex_ReturnsNull() {
+        assertNull(EmvTransactionContext.fromDe55Hex(null));
+        assertNull(EmvTransactionContext.fromDe55Hex(""));
+        assertNull(EmvTransactionContext.fromDe55Hex("5A02123"));
+        assertNull(EmvTransactionContext.fromDe55Hex("5A02XY34"));
+        assertFalse(EmvTransactionContext.fromDe55(null, null).hasDe55());
+    }
+
+    @Test
+    public void testBrandFor() {
+        assertEquals("MASTERCARD", EmvTransactionContext.brandFor("A0000000041010", "4111111111111111"));
+        assertEquals("MEEZA", EmvTransactionContext.brandFor("A0000007320001", null));
+        assertEquals("MASTERCARD", EmvTransactionContext.brandFor(null, "2221000000000009"));
+        assertNull(EmvTransactionContext.brandFor(null, "6011000000000004"));
+        assertNull(EmvTransactionContext.brandFor(null, null));
+    }
+}
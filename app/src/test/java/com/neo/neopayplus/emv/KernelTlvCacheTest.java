@@ -0,0 +1,173 @@
+package com.neo.neopayplus.emv;
+
+import com.neo.neopayplus.utils.ByteUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for KernelTlvCache: answers must match the kernel's own, with
+ * fewer getTlvList() round-trips
+ */
+@RunWith(RobolectricTestRunner.class)
+public class KernelTlvCacheTest {
+
+    private static final int OP_NORMAL = 0;
+    private static final int OP_PAYPASS = 2;
+
+    /** Stands in for EMVOptV2.getTlvList(): requested tags that are present, in request order */
+    private static final class FakeKernel implements KernelTlvCache.Reader {
+        final Map<Integer, TlvBuffer> spaces = new HashMap<>();
+        int calls;
+
+        @Override
+        public int getTlvList(int opCode, String[] tags, byte[] out) {
+            calls++;
+            TlvBuffer tlvs = spaces.get(opCode);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (String tag : tags) {
+                int entry = tlvs != null ? tlvs.find(TlvBuffer.tag(tag)) : -1;
+                if (entry >= 0) {
+                    int start = tlvs.entryOffsetAt(entry);
+                    bytes.write(tlvs.array(), start, tlvs.valueOffsetAt(entry) + tlvs.valueLengthAt(entry) - start);
+                }
+            }
+            byte[] data = bytes.toByteArray();
+            System.arraycopy(data, 0, out, 0, data.length);
+            return data.length;
+        }
+    }
+
+    private FakeKernel kernel;
+    private KernelTlvCache cache;
+
+    @Before
+    public void setUp() {
+        kernel = new FakeKernel();
+        kernel.spaces.put(OP_NORMAL, TlvBuffer.parse(TLVUtil.hexToBytes(TlvBufferTest.DE55_CONTACT)));
+        kernel.spaces.put(OP_PAYPASS, TlvBuffer.parse(TLVUtil.hexToBytes(TlvBufferTest.DE55_CONTACTLESS)));
+        cache = new KernelTlvCache(kernel);
+        for (int opCode : new int[]{OP_NORMAL, OP_PAYPASS}) {
+            cache.register(opCode, "5A", "57", "9F6B", "4F", "9F06", "84");
+            cache.register(opCode, "9F6C", "8E", "9F34", "95", "9B", "9F26", "5F24", "5F20");
+        }
+    }
+
+    private static String read(KernelTlvCache.Reader reader, int opCode, String... tags) throws Exception {
+        byte[] out = new byte[1024];
+        int len = reader.getTlvList(opCode, tags, out);
+        return len > 0 ? ByteUtil.bytes2HexStr(out, 0, len) : "";
+    }
+
+    @Test
+    public void testSnapshot_SameAnswersAsKernel() throws Exception {
+        cache.beginTransaction();
+        cache.prefetch("test", OP_NORMAL, OP_PAYPASS);
+        assertEquals(2, kernel.calls);
+
+        String[][] reads = {
+                {"5A", "57", "9F6B"}, {"4F", "9F06"}, {"95"}, {"9B", "95"}, {"9F26"}, {"9F6C"}, {"84"}
+        };
+        for (int opCode : new int[]{OP_NORMAL, OP_PAYPASS}) {
+            for (String[] tags : reads) {
+                String expected = read(kernel, opCode, tags);
+                kernel.calls--;
+                assertEquals(expected, read(cache::getTlvList, opCode, tags));
+            }
+        }
+        assertEquals(2, kernel.calls); // All from the snapshots
+        assertEquals("0080048000", cache.getTlv(OP_NORMAL, "95"));
+        assertEquals("5413330089899123", cache.getTlv(OP_PAYPASS, "5A"));
+        assertNull(cache.getTlv(OP_NORMAL, "5A"));
+        assertEquals(2, kernel.calls);
+    }
+
+    @Test
+    public void testUnregisteredTag_ReadOnceThenCached() throws Exception {
+        cache.beginTransaction();
+        cache.prefetch("test", OP_NORMAL);
+
+        assertEquals("0818", cache.getTlv(OP_NORMAL, "5F2A"));
+        assertEquals("0818", cache.getTlv(OP_NORMAL, "5F2A"));
+        assertNull(cache.getTlv(OP_NORMAL, "9F6E"));
+        assertNull(cache.getTlv(OP_NORMAL, "9F6E"));
+        assertEquals(3, kernel.calls); // Prefetch + one read per unregistered tag
+    }
+
+    @Test
+    public void testNoSnapshot_PassesThrough() throws Exception {
+        cache.beginTransaction();
+        assertEquals("0080048000", cache.getTlv(OP_NORMAL, "95"));
+        assertEquals("0080048000", cache.getTlv(OP_NORMAL, "95"));
+        assertEquals(2, kernel.calls);
+
+        cache.prefetch("test", OP_NORMAL);
+        cache.invalidate(); // import*() call
+        kernel.spaces.put(OP_NORMAL, TlvBuffer.parse(TLVUtil.hexToBytes("95050000000000")));
+        assertEquals("0000000000", cache.getTlv(OP_NORMAL, "95"));
+    }
+
+    @Test
+    public void testNextMilestone_SeesNewValues() throws Exception {
+        cache.beginTransaction();
+        cache.prefetch("onOnlineProc", OP_NORMAL);
+        assertEquals("0080048000", cache.getTlv(OP_NORMAL, "95"));
+
+        kernel.spaces.put(OP_NORMAL, TlvBuffer.parse(TLVUtil.hexToBytes("95058000048000")));
+        cache.prefetch("onTransResult", OP_NORMAL);
+        assertEquals("8000048000", cache.getTlv(OP_NORMAL, "95"));
+    }
+
+    @Test
+    public void testTerminalWrite_UpdatesSnapshot() throws Exception {
+        cache.beginTransaction();
+        cache.prefetch("test", OP_NORMAL);
+        cache.put(OP_NORMAL, "9F1A", "0818");
+        cache.put(OP_NORMAL, "95", "0000000001");
+        int calls = kernel.calls;
+
+        assertEquals("0818", cache.getTlv(OP_NORMAL, "9F1A"));
+        assertEquals("0000000001", cache.getTlv(OP_NORMAL, "95"));
+        assertEquals(calls, kernel.calls);
+    }
+
+    @Test
+    public void testIpcCount_TypicalContactlessFlow() throws Exception {
+        // Reads done after onCardDataExchangeComplete and onTransResult:
+        // PanExtractor, CvmRequirementLogger, then receipt readTlv() calls
+        String[][] flow = {
+                {"4F", "9F06"}, {"5A", "57", "9F6B"},
+                {"9F6C"}, {"8E"}, {"9F34"},
+                {"4F", "9F06"}, {"95"}, {"4F", "9F06"}, {"9B"}, {"4F", "9F06"}, {"5F24"}, {"4F", "9F06"}, {"5F20"}
+        };
+
+        int before = 0;
+        for (String[] tags : flow) {
+            read(kernel, OP_PAYPASS, tags);
+            before++;
+        }
+        assertEquals(flow.length, kernel.calls);
+
+        kernel.calls = 0;
+        cache.beginTransaction();
+        cache.prefetch("onCardDataExchangeComplete", OP_NORMAL, OP_PAYPASS);
+        for (String[] tags : flow) {
+            read(cache::getTlvList, OP_PAYPASS, tags);
+        }
+        assertEquals(2, kernel.calls);
+
+        KernelTlvCache.Stats stats = cache.stats();
+        assertEquals(before, stats.reads);
+        assertEquals(2, stats.ipcCalls);
+        assertEquals(2, stats.prefetches);
+        assertEquals(before, stats.hits);
+    }
+}
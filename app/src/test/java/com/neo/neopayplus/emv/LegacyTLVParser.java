@@ -0,0 +1,85 @@
+package com.neo.neopayplus.emv;
+
+import com.neo.neopayplus.utils.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference copy of the hex-string TLVUtil parser that predates TlvBuffer
+ * (Tuples inlined, logging removed). Used only to prove the byte-level
+ * parser produces the same TLVs.
+ */
+final class LegacyTLVParser {
+
+    private LegacyTLVParser() {
+    }
+
+    static List<TLV> buildTLVList(byte[] bytes) {
+        String hexStr = ByteUtil.bytes2HexStr(bytes);
+        List<TLV> list = new ArrayList<>();
+        int position = 0;
+        while (position != hexStr.length()) {
+            String tag = getTag(hexStr, position);
+            if (tag.isEmpty() || "00".equals(tag)) {
+                break;
+            }
+            int[] len = getLength(hexStr, position + tag.length());
+            String value = getValue(hexStr, len[1], len[0]);
+            list.add(new TLV(tag, len[0], value));
+            position = len[1] + len[0] * 2;
+        }
+        return list;
+    }
+
+    static Map<String, TLV> buildTLVMap(byte[] bytes) {
+        Map<String, TLV> map = new LinkedHashMap<>();
+        for (TLV tlv : buildTLVList(bytes)) {
+            map.put(tlv.getTag(), tlv);
+        }
+        return map;
+    }
+
+    private static String getTag(String hexString, int position) {
+        String tag = "";
+        try {
+            int b1 = Integer.parseInt(hexString.substring(position, position + 2), 16);
+            int b2 = Integer.parseInt(hexString.substring(position + 2, position + 4), 16);
+            if ((b1 & 0x1F) == 0x1F) {
+                if ((b2 & 0x80) == 0x80) {
+                    tag = hexString.substring(position, position + 6);
+                } else {
+                    tag = hexString.substring(position, position + 4);
+                }
+            } else {
+                tag = hexString.substring(position, position + 2);
+            }
+        } catch (Exception ignored) {
+            // Ran off the end
+        }
+        return tag.toUpperCase();
+    }
+
+    private static int[] getLength(String hexStr, int position) {
+        int index = position;
+        String hexLen = hexStr.substring(index, index + 2);
+        index += 2;
+        int byte1 = Integer.parseInt(hexLen, 16);
+        if ((byte1 & 0x80) != 0) {
+            int subLen = byte1 & 0x7F;
+            hexLen = hexStr.substring(index, index + subLen * 2);
+            index += subLen * 2;
+        }
+        return new int[]{Integer.parseInt(hexLen, 16), index};
+    }
+
+    private static String getValue(String hexStr, int position, int len) {
+        try {
+            return hexStr.substring(position, position + len * 2).toUpperCase();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
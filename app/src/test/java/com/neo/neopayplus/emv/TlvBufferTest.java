@@ -0,0 +1,173 @@
+package com.neo.neopayplus.emv;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TlvBuffer, checked against the hex-string parser it
+ * replaced ({@link LegacyTLVParser}) on typical DE55 payloads.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TlvBufferTest {
+
+    /** Contact chip ARQC data as returned by getTlvList() */
+    static final String DE55_CONTACT = "9F2608C2B5A1D3E4F5061F"
+            + "9F2701809F100706010A03A0B8009F3704A1B2C3D4"
+            + "9F360200429505008004800"
+            + "09A032410189C01009F02060000000150005F2A020818"
+            + "820239009F1A0208189F34034203009F3303E0F8C8"
+            + "9F3501229F1E0831323334353637388407A0000000031010"
+            + "9F090200965F340101";
+
+    /** Contactless Mastercard with Track 2 and a long IAD */
+    static final String DE55_CONTACTLESS = "5A0854133300898991235F24032812319F6B13541333008989912"
+            + "3D28122011234567890000F9F6E04207000009F1020"
+            + "0110A04001220000000000000000000000FF0000000000000000000000000000"
+            + "9F2608AABBCCDDEEFF00119F2701809F02060000000012345F2A020818"
+            + "9F03060000000000009A032410189C0100950500000080019F37041A2B3C4D";
+
+    private static byte[] bytes(String hex) {
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return out;
+    }
+
+    private static void assertSameMap(Map<String, TLV> expected, Map<String, TLV> actual) {
+        assertEquals(expected.keySet().toString(), actual.keySet().toString()); // Same order
+        for (Map.Entry<String, TLV> e : expected.entrySet()) {
+            assertEquals(e.getKey(), e.getValue().toString(), actual.get(e.getKey()).toString());
+        }
+    }
+
+    @Test
+    public void testDe55Payloads_MatchLegacyParser() {
+        for (String hex : new String[]{DE55_CONTACT, DE55_CONTACTLESS}) {
+            byte[] data = bytes(hex);
+            Map<String, TLV> legacy = LegacyTLVParser.buildTLVMap(data);
+            assertFalse(legacy.isEmpty());
+
+            assertSameMap(legacy, TlvBuffer.parse(data).toMap());
+            assertSameMap(legacy, TLVUtil.buildTLVMap(data));
+            assertSameMap(legacy, TLVUtil.buildTLVMap(hex));
+            assertSameMap(legacy, TLVUtil.buildTLVMap(hex.toLowerCase()));
+
+            TlvBuffer tlvs = TlvBuffer.parse(data);
+            assertEquals(legacy.size(), tlvs.size());
+            for (TLV tlv : legacy.values()) {
+                assertEquals(tlv.getValue(), tlvs.valueHex(tlv.getTag()));
+                assertEquals(tlv.getLength(), tlvs.valueLength(TlvBuffer.tag(tlv.getTag())));
+            }
+        }
+    }
+
+    @Test
+    public void testKernelBuffer_ParsedInPlace() {
+        byte[] data = bytes(DE55_CONTACT);
+        byte[] out = new byte[1024]; // Kernel output buffer, only len bytes valid
+        System.arraycopy(data, 0, out, 7, data.length);
+
+        TlvBuffer tlvs = TlvBuffer.parse(out, 7, data.length);
+        assertSame(out, tlvs.array());
+        assertEquals("000000015000", tlvs.valueHex(0x9F02));
+        assertEquals("0818", tlvs.valueHex("5F2A"));
+        assertEquals(7 + 2 + 1, tlvs.valueOffsetAt(0)); // 9F26 value follows its tag and length
+    }
+
+    @Test
+    public void testByteBuffer_HeapAndDirect() {
+        byte[] data = bytes(DE55_CONTACTLESS);
+        ByteBuffer heap = ByteBuffer.allocate(data.length + 4);
+        heap.putInt(0xCAFEBABE).put(data).flip();
+        heap.position(4);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+
+        for (ByteBuffer buffer : new ByteBuffer[]{heap, direct}) {
+            int position = buffer.position();
+            TlvBuffer tlvs = TlvBuffer.parse(buffer);
+            assertEquals("5413330089899123", tlvs.valueHex("5A"));
+            assertEquals(position, buffer.position());
+        }
+        assertSame(heap.array(), TlvBuffer.parse(heap).array());
+    }
+
+    @Test
+    public void testTags_IntAndHex() {
+        assertEquals(0x5A, TlvBuffer.tag("5A"));
+        assertEquals(0x9F02, TlvBuffer.tag("9f02"));
+        assertEquals(0xDF8101, TlvBuffer.tag("DF8101"));
+        assertEquals(-1, TlvBuffer.tag("9F0"));
+        assertEquals(-1, TlvBuffer.tag("ZZ"));
+        assertEquals("5A", TlvBuffer.tagHex(0x5A));
+        assertEquals("9F02", TlvBuffer.tagHex(0x9F02));
+        assertEquals("DF8101", TlvBuffer.tagHex(0xDF8101));
+
+        // Three-byte tag and a 0x81 length
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            value.append("AB");
+        }
+        TlvBuffer tlvs = TlvBuffer.parse(bytes("DF810102ABCD" + "9F4681C8" + value + "5A021234"));
+        assertEquals("ABCD", tlvs.valueHex(0xDF8101));
+        assertEquals(200, tlvs.valueLength(0x9F46));
+        assertEquals("1234", tlvs.valueHex(0x5A));
+    }
+
+    @Test
+    public void testDuplicateTag_LastWins() {
+        byte[] data = bytes("9F02060000000001005A0212349F0206000000000200");
+        TlvBuffer tlvs = TlvBuffer.parse(data);
+
+        assertEquals(3, tlvs.entryCount());
+        assertEquals(2, tlvs.size());
+        assertEquals("000000000200", tlvs.valueHex("9F02"));
+        assertSameMap(LegacyTLVParser.buildTLVMap(data), tlvs.toMap());
+
+        List<TLV> list = TLVUtil.buildTLVList(data);
+        assertEquals(3, list.size());
+        assertEquals("000000000100", list.get(0).getValue());
+    }
+
+    @Test
+    public void testStopsAtZeroTagAndTruncation() {
+        TlvBuffer padded = TlvBuffer.parse(bytes("5A021234" + "0000000000"));
+        assertEquals(1, padded.entryCount());
+
+        TlvBuffer truncated = TlvBuffer.parse(bytes("5A021234" + "9F0206000000"));
+        assertEquals(1, truncated.entryCount());
+        assertFalse(truncated.has("9F02"));
+
+        assertEquals(0, TlvBuffer.parse(bytes("9F")).entryCount());
+        assertEquals(0, TlvBuffer.parse(new byte[0]).size());
+        assertNull(TlvBuffer.parse((byte[]) null).valueHex("5A"));
+    }
+
+    @Test
+    public void testValueCopies() {
+        TlvBuffer tlvs = TlvBuffer.parse(bytes(DE55_CONTACT));
+        assertArrayEquals(new byte[]{0x08, 0x18}, tlvs.value(0x5F2A));
+        byte[] dst = new byte[4];
+        assertEquals(2, tlvs.copyValue(0x5F2A, dst, 1));
+        assertArrayEquals(new byte[]{0, 0x08, 0x18, 0}, dst);
+        assertEquals(-1, tlvs.copyValue(0x9F6E, dst, 0));
+        assertNull(tlvs.value(0x9F6E));
+    }
+
+    @Test
+    public void testHexAdapters_RejectMalformedInput() {
+        assertTrue(TLVUtil.buildTLVMap("").isEmpty());
+        assertTrue(TLVUtil.buildTLVMap("5A0212345").isEmpty()); // Odd length
+        assertTrue(TLVUtil.buildTLVMap("5A02XY34").isEmpty());
+        assertTrue(TLVUtil.buildTLVList((String) null).isEmpty());
+        assertEquals("0818", TLVUtil.extractCurrencyCode(DE55_CONTACT));
+    }
+}
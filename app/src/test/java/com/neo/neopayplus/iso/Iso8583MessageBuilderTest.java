@@ -0,0 +1,147 @@
+package com.neo.neopayplus.iso;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for Iso8583MessageBuilder
+ *
+ * The table-driven CRC and single-buffer frame assembly are checked against
+ * the previous bit-by-bit CRC and array-concatenating assembly.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class Iso8583MessageBuilderTest {
+
+    private static final byte[] DESTINATION = { 0x00, 0x00 };
+    private static final byte[] ORIGINATOR = { 0x12, 0x34 };
+
+    @Test
+    public void testCrc_CheckValue() {
+        // CRC-16/X-25 check value
+        byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+        int crc = Iso8583MessageBuilder.crcFinish(
+                Iso8583MessageBuilder.crcUpdate(Iso8583MessageBuilder.CRC_INIT, data, 0, data.length));
+
+        assertEquals(0x906E, crc);
+    }
+
+    @Test
+    public void testCrc_MatchesBitwiseImplementation() {
+        Random random = new Random(8583);
+        for (int length = 0; length <= 1024; length += 7) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            int crc = Iso8583MessageBuilder.crcFinish(
+                    Iso8583MessageBuilder.crcUpdate(Iso8583MessageBuilder.CRC_INIT, data, 0, length));
+
+            assertEquals("length " + length, legacyCrc(data), crc);
+        }
+    }
+
+    @Test
+    public void testCrc_IncrementalAcrossSegments() {
+        byte[] data = new byte[300];
+        new Random(1).nextBytes(data);
+        int whole = Iso8583MessageBuilder.crcUpdate(Iso8583MessageBuilder.CRC_INIT, data, 0, data.length);
+
+        int split = Iso8583MessageBuilder.CRC_INIT;
+        split = Iso8583MessageBuilder.crcUpdate(split, data, 0, 3);
+        split = Iso8583MessageBuilder.crcUpdate(split, data, 3, 150);
+        split = Iso8583MessageBuilder.crcUpdate(split, data, 153, data.length - 153);
+
+        assertEquals(whole, split);
+    }
+
+    @Test
+    public void testBuildCompleteMessage_MatchesLegacyAssembly() {
+        Random random = new Random(42);
+        for (int length : new int[] { 12, 100, 333, 1024 }) {
+            byte[] applicationData = new byte[length];
+            random.nextBytes(applicationData);
+
+            assertArrayEquals(legacyBuild(applicationData, DESTINATION, ORIGINATOR),
+                    Iso8583MessageBuilder.buildCompleteMessage(applicationData, DESTINATION, ORIGINATOR));
+        }
+
+        byte[] authorization = Iso8583Packer.pack1200("4761730000000011", "000000", "10000", "123456",
+                "051", "818", null, "12345678", "123456789012345", null, "200");
+        assertArrayEquals(legacyBuild(authorization, new byte[] { 0x01, 0x02 }, ORIGINATOR),
+                Iso8583MessageBuilder.buildCompleteMessage(authorization, new byte[] { 0x01, 0x02 }, ORIGINATOR));
+    }
+
+    @Test
+    public void testParseResponse_RoundTrip() {
+        byte[] applicationData = Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD_RESPONSE, "1210")
+                .set(11, "000123")
+                .set(39, "00")
+                .pack();
+        byte[] frame = Iso8583MessageBuilder.buildCompleteMessage(applicationData, DESTINATION, ORIGINATOR);
+
+        assertArrayEquals(applicationData, Iso8583MessageBuilder.parseResponse(frame));
+        assertEquals(applicationData.length, Iso8583MessageBuilder.applicationDataLength(frame));
+
+        Iso8583MessageReader inPlace = Iso8583MessageReader.parse(Iso8583FieldSpec.POWERCARD_RESPONSE, frame,
+                Iso8583MessageBuilder.APPLICATION_DATA_OFFSET, Iso8583MessageBuilder.applicationDataLength(frame));
+        assertEquals("1210", inPlace.getMti());
+        assertEquals("000123", inPlace.getString(11));
+    }
+
+    @Test
+    public void testParseResponse_TooShort() {
+        assertEquals(0, Iso8583MessageBuilder.parseResponse(new byte[10]).length);
+        assertEquals(0, Iso8583MessageBuilder.parseResponse(null).length);
+    }
+
+    /**
+     * Previous bit-by-bit CCITT CRC-16 (reflected 8408h, inverted)
+     */
+    private static int legacyCrc(byte[] data) {
+        int crc = 0xFFFF;
+        for (byte b : data) {
+            crc ^= (b & 0xFF);
+            for (int i = 0; i < 8; i++) {
+                if ((crc & 0x0001) != 0) {
+                    crc = (crc >> 1) ^ 0x8408;
+                } else {
+                    crc = crc >> 1;
+                }
+            }
+        }
+        return ~crc & 0xFFFF;
+    }
+
+    /**
+     * Previous assembly: length prefix + protocol ID + header + TPDU + data + CRC
+     */
+    private static byte[] legacyBuild(byte[] applicationData, byte[] destination, byte[] originator) {
+        byte[] protocolId = "ISO".getBytes(StandardCharsets.US_ASCII);
+        byte[] header = "80100000".getBytes(StandardCharsets.US_ASCII);
+        byte[] tpdu = { 0x60, destination[0], destination[1], originator[0], originator[1] };
+
+        byte[] crcInput = concat(protocolId, header, tpdu, applicationData);
+        int crc = legacyCrc(crcInput);
+        byte[] prefix = String.format("%04d", crcInput.length + 2).getBytes(StandardCharsets.US_ASCII);
+        return concat(prefix, crcInput, new byte[] { (byte) (crc & 0xFF), (byte) ((crc >> 8) & 0xFF) });
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] out = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, offset, part.length);
+            offset += part.length;
+        }
+        return Arrays.copyOf(out, offset);
+    }
+}
@@ -0,0 +1,242 @@
+package com.neo.neopayplus.iso;
+
+import com.neo.neopayplus.security.CryptoEngine;
+import com.neo.neopayplus.utils.ByteUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for Iso8583Packer
+ *
+ * Compares the spec-driven packer byte-for-byte against the previous
+ * hex-string implementation ({@link LegacyIso8583Packer}) at a fixed clock.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class Iso8583PackerTest {
+
+    private static final long NOW = 1760781234000L;
+
+    // 9F26 (AC), 9F27 (CID), 5F24 (expiry 271231), 5F34 (PSN 01), 4F (Visa AID), 9F02 (amount)
+    private static final String FIELD_55 = "9F2608AABBCCDDEEFF0011"
+            + "9F270180"
+            + "5F2403271231"
+            + "5F340101"
+            + "4F07A0000000031010"
+            + "9F0206000000010000";
+
+    private static final String PIN_BLOCK = "0123456789ABCDEF";
+
+    @Test
+    public void testPack1200_MatchesLegacy() {
+        byte[] expected = LegacyIso8583Packer.pack1200("4761730000000011", "000000", "10000", "123456",
+                "051", "818", FIELD_55, "12345678", "123456789012345", PIN_BLOCK, "200", new Date(NOW));
+        byte[] actual = Iso8583Packer.pack1200("4761730000000011", "000000", "10000", "123456",
+                "051", "818", FIELD_55, "12345678", "123456789012345", PIN_BLOCK, "200", NOW);
+
+        assertTrue(expected.length > 0);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testPack1200_NoPanNoPin_MatchesLegacy() {
+        byte[] expected = LegacyIso8583Packer.pack1200(null, "000000", "250", "7",
+                "071", null, FIELD_55, "TERM0001", "MERCHANT-0042", null, "281", new Date(NOW));
+        byte[] actual = Iso8583Packer.pack1200(null, "000000", "250", "7",
+                "071", null, FIELD_55, "TERM0001", "MERCHANT-0042", null, "281", NOW);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testPack1200_MaskedPanAndInvalidFunctionCode_MatchesLegacy() {
+        byte[] expected = LegacyIso8583Packer.pack1200("557607******9549", "000000", "99999", "000123",
+                "051", "818", FIELD_55, "1", "2", "ABC", "999", new Date(NOW));
+        byte[] actual = Iso8583Packer.pack1200("557607******9549", "000000", "99999", "000123",
+                "051", "818", FIELD_55, "1", "2", "ABC", "999", NOW);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testPack0100_MatchesLegacyWithDe55BeforeDe60() {
+        byte[] legacy = LegacyIso8583Packer.pack0100("4761730000000011", "000000", "10000", "123456",
+                "051", "818", FIELD_55, "12345678", "123456789012345", PIN_BLOCK, new Date(NOW));
+        byte[] actual = Iso8583Packer.pack0100("4761730000000011", "000000", "10000", "123456",
+                "051", "818", FIELD_55, "12345678", "123456789012345", PIN_BLOCK, NOW);
+
+        // The legacy packer wrote DE60 ahead of DE55; the bitmap-ordered packer writes DE55 first
+        byte[] de60 = "003020".getBytes(StandardCharsets.US_ASCII);
+        int de60Offset = indexOf(legacy, de60);
+        assertTrue(de60Offset > 0);
+        int de55Length = FIELD_55.length() / 2;
+        int de55End = de60Offset + de60.length + 2 + de55Length;
+
+        byte[] expected = new byte[legacy.length];
+        int pos = 0;
+        System.arraycopy(legacy, 0, expected, pos, de60Offset);
+        pos += de60Offset;
+        System.arraycopy(legacy, de60Offset + de60.length, expected, pos, 2 + de55Length);
+        pos += 2 + de55Length;
+        System.arraycopy(de60, 0, expected, pos, de60.length);
+        pos += de60.length;
+        System.arraycopy(legacy, de55End, expected, pos, legacy.length - de55End);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testPack0400_MatchesLegacy() {
+        byte[] expected = LegacyIso8583Packer.pack0400("123456789012", "10000", "123456",
+                "818", "12345678", "123456789012345", "TIMEOUT", new Date(NOW));
+        byte[] actual = Iso8583Packer.pack0400("123456789012", "10000", "123456",
+                "818", "12345678", "123456789012345", "TIMEOUT", NOW);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testPack0400_DefaultsMatchLegacy() {
+        byte[] expected = LegacyIso8583Packer.pack0400(null, "", "", null, null, null, null, new Date(NOW));
+        byte[] actual = Iso8583Packer.pack0400(null, "", "", null, null, null, null, NOW);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testPack1420_FullReversal_MatchesLegacyExceptDe90Bit() {
+        byte[] legacy = LegacyIso8583Packer.pack1420("123456789012", "10000", "123456", "818",
+                "12345678", "123456789012345", null, null, null, null, new Date(NOW));
+        byte[] actual = Iso8583Packer.pack1420("123456789012", "10000", "123456", "818",
+                "12345678", "123456789012345", null, null, null, null, NOW);
+
+        assertSameExceptDe90Bit(legacy, actual);
+    }
+
+    @Test
+    public void testPack1420_PartialReversal_MatchesLegacyExceptDe90Bit() {
+        byte[] legacy = LegacyIso8583Packer.pack1420("42", "5000", "77", "",
+                "T1", null, "402", "4000", "10000", "5000", new Date(NOW));
+        byte[] actual = Iso8583Packer.pack1420("42", "5000", "77", "",
+                "T1", null, "402", "4000", "10000", "5000", NOW);
+
+        assertSameExceptDe90Bit(legacy, actual);
+    }
+
+    @Test
+    public void testPack1804_MatchesLegacyExceptSecondaryBitmap() {
+        for (String forwardingInstId : new String[] { null, "1234567890" }) {
+            byte[] legacy = LegacyIso8583Packer.pack1804("803", "123456", forwardingInstId, new Date(NOW));
+            byte[] actual = Iso8583Packer.pack1804("803", "123456", forwardingInstId, NOW);
+
+            assertEquals(legacy.length, actual.length);
+            // DE128 is on the wire, so the secondary bitmap (bytes 12-19) now flags it
+            assertEquals(0x00, legacy[19]);
+            assertEquals(0x01, actual[19]);
+            legacy[19] = actual[19];
+            assertArrayEquals(legacy, actual);
+        }
+    }
+
+    @Test
+    public void testPack1200_BitmapFollowsFields() {
+        byte[] frame = Iso8583Packer.pack1200(null, "000000", "100", "1", "051", "818",
+                null, "1", "1", null, "200", NOW);
+
+        assertEquals("1200", new String(frame, 0, 4, StandardCharsets.US_ASCII));
+        // DE1 set, DE2 absent; no chip data means no DE14, DE23 or DE55
+        assertTrue((frame[4] & 0x80) != 0);
+        assertTrue((frame[4] & 0x40) == 0);
+        assertTrue(!isFieldSet(frame, 14));
+        assertTrue(!isFieldSet(frame, 23));
+        assertTrue(!isFieldSet(frame, 55));
+        assertTrue(isFieldSet(frame, 124));
+        assertTrue(isFieldSet(frame, 128));
+    }
+
+    @Test
+    public void testPack_OversizedVariableFieldFails() {
+        byte[] frame = Iso8583Packer.pack1200("12345678901234567890123", "000000", "100", "1", "051", "818",
+                FIELD_55, "1", "1", null, "200", NOW);
+
+        assertEquals(0, frame.length);
+    }
+
+    @Test
+    public void testPack1200_MacCalculatorFillsDe128() {
+        byte[] unsigned = Iso8583Packer.pack1200("4761730000000011", "000000", "10000", "123456",
+                "051", "818", FIELD_55, "12345678", "123456789012345", PIN_BLOCK, "200", NOW);
+        CryptoEngine.Key tak = CryptoEngine.aes(ByteUtil.hexStr2Bytes("2B7E151628AED2A6ABF7158809CF4F3C"));
+        Iso8583Packer.setMacCalculator(tak::cmac);
+        try {
+            byte[] signed = Iso8583Packer.pack1200("4761730000000011", "000000", "10000", "123456",
+                    "051", "818", FIELD_55, "12345678", "123456789012345", PIN_BLOCK, "200", NOW);
+
+            int macOffset = signed.length - 16;
+            assertArrayEquals(Arrays.copyOf(unsigned, macOffset), Arrays.copyOf(signed, macOffset));
+            assertArrayEquals(new byte[16], Arrays.copyOfRange(unsigned, macOffset, unsigned.length));
+            assertArrayEquals(tak.cmac(signed, 0, macOffset), Arrays.copyOfRange(signed, macOffset, signed.length));
+        } finally {
+            Iso8583Packer.setMacCalculator(null);
+        }
+    }
+
+    @Test
+    public void testPack1420_MacCalculatorWritesHex() {
+        Iso8583Packer.setMacCalculator((data, offset, length, out, outOffset) -> {
+            for (int i = 0; i < 16; i++) {
+                out[outOffset + i] = (byte) (0xA0 + i);
+            }
+        });
+        try {
+            byte[] frame = Iso8583Packer.pack1420("123456789012", "10000", "123456", "818",
+                    "12345678", "123456789012345", null, null, null, null, NOW);
+
+            assertEquals("A0A1A2A3A4A5A6A7A8A9AAABACADAEAF",
+                    new String(frame, frame.length - 32, 32, StandardCharsets.US_ASCII));
+        } finally {
+            Iso8583Packer.setMacCalculator(null);
+        }
+    }
+
+    @Test
+    public void testZeroPadNumeric() {
+        assertEquals("000000", Iso8583Packer.zeroPadNumeric(null, 6));
+        assertEquals("000000", Iso8583Packer.zeroPadNumeric("abc", 6));
+        assertEquals("000123", Iso8583Packer.zeroPadNumeric("1-2-3", 6));
+        assertEquals("567890", Iso8583Packer.zeroPadNumeric("1234567890", 6));
+    }
+
+    /**
+     * DE90 is on the wire in 1420, so the secondary bitmap now flags it
+     * (bit 0x40 of byte 15); the legacy packer left it clear.
+     */
+    private static void assertSameExceptDe90Bit(byte[] legacy, byte[] actual) {
+        assertEquals(legacy.length, actual.length);
+        assertTrue(isFieldSet(actual, 90));
+        assertFalse(isFieldSet(legacy, 90));
+        legacy[15] |= 0x40;
+        assertArrayEquals(legacy, actual);
+    }
+
+    private static boolean isFieldSet(byte[] frame, int field) {
+        int bit = field - 1;
+        return (frame[4 + bit / 8] & (0x80 >> (bit % 8))) != 0;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
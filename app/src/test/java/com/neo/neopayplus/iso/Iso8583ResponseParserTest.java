@@ -0,0 +1,187 @@
+package com.neo.neopayplus.iso;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for Iso8583ResponseParser and Iso8583MessageReader
+ */
+@RunWith(RobolectricTestRunner.class)
+public class Iso8583ResponseParserTest {
+
+    private static final String FIELD_55 = "910A1122334455667788990072078601009F1804AABBCCDD";
+
+    @Test
+    public void testParse1210_LegacyLayout() throws Exception {
+        // MTI + primary bitmap (DE37, DE38, DE39, DE55) as the host sends it today
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ascii("1210"));
+        out.write(new byte[] { 0, 0, 0, 0, (byte) 0x0E, 0, 0x02, 0 });
+        out.write(ascii("123456789012"));
+        out.write(ascii("A1B2C3"));
+        out.write(ascii("00"));
+        byte[] icc = hex(FIELD_55);
+        out.write(icc.length >> 8);
+        out.write(icc.length);
+        out.write(icc);
+
+        Iso8583ResponseParser.ParsedResponse response = Iso8583ResponseParser.parse1210(out.toByteArray());
+
+        assertNotNull(response);
+        assertEquals("1210", response.mti);
+        assertEquals("123456789012", response.rrn);
+        assertEquals("A1B2C3", response.authCode);
+        assertEquals("00", response.responseCode);
+        assertEquals(FIELD_55, response.field55);
+        assertTrue(response.approved);
+    }
+
+    @Test
+    public void testParse1210_FullResponseWithSecondaryBitmap() {
+        byte[] data = Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD_RESPONSE, "1210")
+                .set(2, "4761730000000011")
+                .set(3, "000000")
+                .set(4, "000000010000")
+                .set(7, "1018123456")
+                .set(11, "000123")
+                .set(12, "261018153456")
+                .set(24, "200")
+                .set(32, "12345")
+                .set(37, "628912345678")
+                .set(38, "654321")
+                .set(39, "05")
+                .set(41, "12345678")
+                .set(42, "123456789012345")
+                .set(48, "002ABCDEFGH")
+                .set(55, FIELD_55)
+                .set(62, "0040001")
+                .set(124, "00000000000")
+                .set(128, "00000000000000000000000000000000")
+                .pack();
+
+        Iso8583ResponseParser.ParsedResponse response = Iso8583ResponseParser.parse1210(data);
+
+        assertNotNull(response);
+        assertEquals("628912345678", response.rrn);
+        assertEquals("654321", response.authCode);
+        assertEquals("05", response.responseCode);
+        assertEquals(FIELD_55, response.field55);
+        assertFalse(response.approved);
+
+        Iso8583MessageReader message = response.message;
+        assertEquals("4761730000000011", message.getString(2));
+        assertEquals("000123", message.getString(11));
+        assertEquals("12345", message.getString(32));
+        assertEquals("002ABCDEFGH", message.getString(48));
+        assertEquals("00000000000", message.getString(124));
+        assertEquals(16, message.getLength(128));
+        assertArrayEquals(new byte[16], message.getBytes(128));
+        assertFalse(message.has(5));
+        assertNull(message.getString(5));
+        assertEquals(-1, message.getLength(5));
+    }
+
+    @Test
+    public void testParse1210_TruncatedReturnsNull() {
+        byte[] data = Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD_RESPONSE, "1210")
+                .set(37, "628912345678")
+                .set(39, "00")
+                .set(55, FIELD_55)
+                .pack();
+
+        assertNotNull(Iso8583ResponseParser.parse1210(data));
+        assertNull(Iso8583ResponseParser.parse1210(Arrays.copyOf(data, data.length - 1)));
+        assertNull(Iso8583ResponseParser.parse1210(Arrays.copyOf(data, 11)));
+        assertNull(Iso8583ResponseParser.parse1210(null));
+    }
+
+    @Test
+    public void testParse_UndeclaredFieldReturnsNull() {
+        byte[] data = Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD_RESPONSE, "0110")
+                .set(39, "00")
+                .pack();
+        // Flag DE1 (secondary bitmap) without sending one
+        data[4] |= (byte) 0x80;
+
+        assertNull(Iso8583ResponseParser.parse0110(data));
+    }
+
+    @Test
+    public void testParse1814_FieldsInBitmapOrder() {
+        byte[] data = Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD, "1814")
+                .set(7, "1018123456")
+                .set(11, "000001")
+                .set(24, "803")
+                .set(37, "628912345678")
+                .set(39, "800")
+                .set(128, "00112233445566778899AABBCCDDEEFF")
+                .pack();
+
+        Iso8583ResponseParser.NetworkManagementResponse response = Iso8583ResponseParser.parse1814(data);
+
+        assertNotNull(response);
+        assertEquals("1814", response.mti);
+        assertEquals("803", response.functionCode);
+        assertEquals("628912345678", response.rrn);
+        assertEquals("800", response.actionCode);
+        assertTrue(response.success);
+        assertEquals("00112233445566778899AABBCCDDEEFF", response.message.getString(128));
+    }
+
+    @Test
+    public void testReader_RoundTripsPacked1200() {
+        byte[] frame = Iso8583Packer.pack1200("4761730000000011", "000000", "10000", "123456",
+                "051", "818", FIELD_55, "12345678", "123456789012345", "0123456789ABCDEF", "200",
+                1760781234000L);
+
+        Iso8583MessageReader message = Iso8583MessageReader.parse(Iso8583FieldSpec.POWERCARD, frame);
+
+        assertEquals("1200", message.getMti());
+        assertEquals("4761730000000011", message.getString(2));
+        assertEquals("000000010000", message.getString(4));
+        assertEquals("123456", message.getString(11));
+        assertEquals("12345678", message.getString(41));
+        assertEquals("123456789012345", message.getString(42));
+        assertEquals("0123456789ABCDEF", message.getString(52));
+        assertEquals(FIELD_55.length() / 2, message.getLength(55));
+        assertTrue(message.has(128));
+    }
+
+    @Test
+    public void testReader_BcdFields() {
+        Iso8583FieldSpec.Table table = Iso8583FieldSpec.Table.of(
+                Iso8583FieldSpec.fixed(3, Iso8583FieldSpec.Encoding.BCD, 6),
+                Iso8583FieldSpec.llvar(32, Iso8583FieldSpec.Encoding.BCD, 11, Iso8583FieldSpec.Encoding.BCD),
+                Iso8583FieldSpec.fixed(41, Iso8583FieldSpec.Encoding.ASCII, 8));
+        byte[] data = Iso8583MessageWriter.obtain(table, "0800")
+                .set(3, "990000")
+                .set(32, "1234")
+                .set(41, "TERM0001")
+                .pack();
+
+        Iso8583MessageReader message = Iso8583MessageReader.parse(table, data);
+
+        assertEquals("990000", message.getString(3));
+        assertEquals("1234", message.getString(32));
+        assertEquals("TERM0001", message.getString(41));
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) Integer.parseInt(s.substring(i * 2, i * 2 + 2), 16);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,205 @@
+package com.neo.neopayplus.iso;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IsoCapture
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IsoCaptureTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private IsoCapture capture;
+
+    @Before
+    public void setUp() {
+        dir = new File(folder.getRoot(), "iso_logs");
+    }
+
+    @After
+    public void tearDown() {
+        if (capture != null) {
+            capture.close();
+        }
+    }
+
+    @Test
+    public void testTail_NewestFirstWithMtiAndStan() {
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        byte[] first = IsoTestHost.authorizationFrame("000001");
+        byte[] second = IsoTestHost.authorizationFrame("000002");
+
+        assertTrue(capture.capture(first, "1200"));
+        assertTrue(capture.capture(second, "1200"));
+        assertTrue(capture.flush(2000));
+
+        List<IsoCapture.Entry> entries = capture.tail(10);
+        assertEquals(2, entries.size());
+        assertEquals("000002", entries.get(0).stan);
+        assertEquals("000001", entries.get(1).stan);
+        assertEquals("1200", entries.get(0).mti);
+        assertArrayEquals(second, capture.read(entries.get(0)));
+        assertArrayEquals(first, capture.read(entries.get(1)));
+        assertTrue(entries.get(0).name().endsWith("_1200_000002"));
+    }
+
+    @Test
+    public void testCapture_CopiesFrame() {
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        byte[] frame = IsoTestHost.authorizationFrame("000001");
+        byte[] expected = frame.clone();
+
+        capture.capture(frame, "1200");
+        frame[30] ^= 0x7F; // Caller reuses its buffer
+        capture.flush(2000);
+
+        assertArrayEquals(expected, capture.read(capture.tail(1).get(0)));
+    }
+
+    @Test
+    public void testCapture_UndecodableFrameHasNoStan() {
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        capture.capture(new byte[] { 1, 2, 3 }, "0400");
+        capture.flush(2000);
+
+        IsoCapture.Entry entry = capture.tail(1).get(0);
+        assertEquals("0400", entry.mti);
+        assertEquals("------", entry.stan);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, capture.read(entry));
+    }
+
+    @Test
+    public void testSegments_RollAndPrune() {
+        byte[] frame = IsoTestHost.authorizationFrame("000001");
+        capture = new IsoCapture(dir, 16, frame.length * 3, 2);
+
+        for (int i = 0; i < 10; i++) {
+            capture.capture(frame, "1200");
+            capture.flush(2000);
+        }
+
+        // 3 frames per segment, 2 segments kept: 10 frames -> segments 3 and 4
+        assertEquals(4, dir.list().length);
+        List<IsoCapture.Entry> entries = capture.tail(100);
+        assertEquals(4, entries.size());
+        for (IsoCapture.Entry entry : entries) {
+            assertArrayEquals(frame, capture.read(entry));
+        }
+        assertNull(capture.entry(1, 0));
+    }
+
+    @Test
+    public void testReopen_AppendsToExistingSegment() {
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        capture.capture(IsoTestHost.authorizationFrame("000001"), "1200");
+        capture.close();
+
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        capture.capture(IsoTestHost.authorizationFrame("000002"), "1200");
+        capture.flush(2000);
+
+        List<IsoCapture.Entry> entries = capture.tail(10);
+        assertEquals(2, entries.size());
+        assertEquals("000002", entries.get(0).stan);
+        assertEquals(entries.get(0).segment, entries.get(1).segment);
+        assertArrayEquals(IsoTestHost.authorizationFrame("000001"), capture.read(entries.get(1)));
+    }
+
+    @Test
+    public void testReopen_DropsEntriesPastTruncatedSegment() throws Exception {
+        byte[] first = IsoTestHost.authorizationFrame("000001");
+        byte[] third = IsoTestHost.authorizationFrame("000003");
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        capture.capture(first, "1200");
+        capture.capture(IsoTestHost.authorizationFrame("000002"), "1200");
+        capture.close();
+
+        // Killed while the second frame was being written
+        File segment = new File(dir, "iso_000001.seg");
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(segment, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        capture.capture(third, "1200");
+        capture.flush(2000);
+
+        List<IsoCapture.Entry> entries = capture.tail(10);
+        assertEquals(2, entries.size());
+        assertEquals("000003", entries.get(0).stan);
+        assertEquals("000001", entries.get(1).stan);
+        assertArrayEquals(third, capture.read(entries.get(0)));
+        assertArrayEquals(first, capture.read(entries.get(1)));
+    }
+
+    @Test
+    public void testConcurrentProducers_EveryQueuedFrameIsWritten() throws Exception {
+        capture = new IsoCapture(dir, 64, 1024 * 1024, 4);
+        int threads = 4;
+        int perThread = 500;
+        AtomicInteger queued = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            byte[] frame = new byte[] { (byte) t, 0x00, 0x01 };
+            producers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    if (capture.capture(frame, "1200")) {
+                        queued.incrementAndGet();
+                    }
+                }
+            });
+            producers[t].start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(capture.flush(5000));
+        assertEquals(threads * perThread, queued.get() + capture.dropped());
+        List<IsoCapture.Entry> entries = capture.tail(threads * perThread);
+        assertEquals(queued.get(), entries.size());
+        for (IsoCapture.Entry entry : entries) {
+            byte[] frame = capture.read(entry);
+            assertEquals(3, frame.length);
+            assertEquals(0x01, frame[2]);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        capture = new IsoCapture(dir, 16, 64 * 1024, 4);
+        capture.capture(IsoTestHost.authorizationFrame("000001"), "1200");
+        capture.capture(IsoTestHost.authorizationFrame("000002"), "1200");
+        capture.flush(2000);
+
+        assertEquals(2, capture.clear());
+        assertTrue(capture.tail(10).isEmpty());
+
+        capture.capture(IsoTestHost.authorizationFrame("000003"), "1200");
+        capture.flush(2000);
+        assertEquals("000003", capture.tail(10).get(0).stan);
+    }
+}
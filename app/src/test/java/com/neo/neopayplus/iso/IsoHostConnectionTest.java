@@ -0,0 +1,256 @@
+package com.neo.neopayplus.iso;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IsoHostConnection against an in-process host
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IsoHostConnectionTest {
+
+    private IsoTestHost host;
+    private IsoHostConnection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        host = new IsoTestHost();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (connection != null) {
+            connection.close();
+        }
+        host.close();
+    }
+
+    @Test
+    public void testExchange_ReusesConnection() throws Exception {
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+
+        byte[] first = connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+        byte[] second = connection.exchange(IsoTestHost.authorizationFrame("000002"), "000002", 5000);
+
+        assertEquals("000001", IsoTestHost.stanOf(first));
+        assertEquals("000002", IsoTestHost.stanOf(second));
+        assertEquals(1, host.connections.get());
+        assertTrue(connection.isConnected());
+    }
+
+    @Test
+    public void testExchange_ReconnectsAfterHostClosesConnection() throws Exception {
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+        host.closeAfterReply = true;
+
+        connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+        Thread.sleep(100); // Let the host close its end
+        byte[] second = connection.exchange(IsoTestHost.authorizationFrame("000002"), "000002", 5000);
+
+        assertEquals("000002", IsoTestHost.stanOf(second));
+        assertEquals(2, host.connections.get());
+    }
+
+    @Test
+    public void testExchange_TimeoutKeepsConnection() throws Exception {
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+        host.silentStans.add("000001");
+
+        try {
+            connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 200);
+            fail("Expected a timeout");
+        } catch (SocketTimeoutException expected) {
+            // The late answer would be matched by STAN, so the link stays up
+        }
+        byte[] next = connection.exchange(IsoTestHost.authorizationFrame("000002"), "000002", 5000);
+
+        assertEquals("000002", IsoTestHost.stanOf(next));
+        assertEquals(1, host.connections.get());
+    }
+
+    @Test
+    public void testKeepAlive_SendsEchoWhenIdle() throws Exception {
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 100);
+        connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!host.receivedMtis.contains("1804") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertTrue("No echo test sent", host.receivedMtis.contains("1804"));
+        assertTrue(connection.isConnected());
+        assertEquals(1, host.connections.get());
+    }
+
+    @Test
+    public void testPrewarm_SavesConnectionSetupAtAuthorization() throws Exception {
+        host.acceptDelayMs = 300;
+
+        // Cold: the authorization pays for the host setting up the connection
+        IsoHostConnection cold = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+        long coldMs;
+        try {
+            long start = System.nanoTime();
+            cold.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+            coldMs = (System.nanoTime() - start) / 1000000;
+        } finally {
+            cold.close();
+        }
+
+        // Pre-warmed at card detection, while the kernel reads the card
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+        CompletableFuture<Void> ready = connection.prewarm(5000);
+        ready.get(5, TimeUnit.SECONDS); // EMV processing up to onOnlineProc
+        byte[] response = connection.exchange(IsoTestHost.authorizationFrame("000002"), "000002", 5000);
+
+        assertEquals("000002", IsoTestHost.stanOf(response));
+        assertTrue("Connection not checked", host.receivedMtis.contains("1804"));
+        // No new connection at authorization: it went out on the pre-warmed one
+        assertEquals(2, host.connections.get());
+        assertTrue("cold " + coldMs + " ms", coldMs >= 300);
+    }
+
+    @Test
+    public void testPrewarm_ReusesLiveConnection() throws Exception {
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+        connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+
+        connection.prewarm(5000).get(5, TimeUnit.SECONDS);
+
+        // Recently used: no second socket, no echo test
+        assertEquals(1, host.connections.get());
+        assertFalse(host.receivedMtis.contains("1804"));
+    }
+
+    @Test
+    public void testPrewarm_NotHeldUpBySlowExchanges() throws Exception {
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+        connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+        host.silentStans.add("000002");
+        host.silentStans.add("000003");
+
+        // Two callers parked in exchange() until their response timeout
+        List<CompletableFuture<Void>> slow = new ArrayList<>();
+        for (String stan : new String[] { "000002", "000003" }) {
+            slow.add(CompletableFuture.runAsync(() -> {
+                try {
+                    connection.exchange(IsoTestHost.authorizationFrame(stan), stan, 3000);
+                } catch (IOException expected) {
+                    // Timed out
+                }
+            }, IsoHostConnection.exchangeExecutor()));
+        }
+        Thread.sleep(200);
+
+        connection.prewarm(1000).get(5, TimeUnit.SECONDS);
+        assertFalse(slow.get(0).isDone());
+        assertFalse(slow.get(1).isDone());
+    }
+
+    /**
+     * Fill the accept queue of a listener (backlog 1) so further connects hang in the handshake
+     */
+    private static List<Socket> fillAcceptQueue(ServerSocket stalled) throws IOException {
+        stalled.bind(new InetSocketAddress("127.0.0.1", 0), 1);
+        List<Socket> fillers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Socket filler = new Socket();
+            try {
+                filler.connect(stalled.getLocalSocketAddress(), 200);
+            } catch (SocketTimeoutException full) {
+                filler.close();
+                break;
+            }
+            fillers.add(filler);
+        }
+        return fillers;
+    }
+
+    @Test
+    public void testPrewarm_CancelAbortsConnectInProgress() throws Exception {
+        try (ServerSocket stalled = new ServerSocket()) {
+            List<Socket> fillers = fillAcceptQueue(stalled);
+            try {
+                connection = new IsoHostConnection("127.0.0.1", stalled.getLocalPort(), 60000);
+                CompletableFuture<Void> ready = connection.prewarm(30000);
+                Thread.sleep(200); // Connect under way
+                assertFalse(ready.isDone());
+
+                // The connect runs without the lock: isConnected() does not wait for it
+                assertFalse(CompletableFuture.supplyAsync(connection::isConnected).get(5, TimeUnit.SECONDS));
+
+                assertTrue(ready.cancel(false)); // Card removed
+                assertFalse(connection.isConnected());
+            } finally {
+                for (Socket filler : fillers) {
+                    filler.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrewarm_TimeoutFiresWhileConnectsHoldIoThreads() throws Exception {
+        try (ServerSocket stalled = new ServerSocket()) {
+            List<Socket> fillers = fillAcceptQueue(stalled);
+            try {
+                connection = new IsoHostConnection("127.0.0.1", stalled.getLocalPort(), 60000);
+                // Both I/O threads stuck: one connecting, one waiting for that connect
+                CompletableFuture<Void> first = connection.prewarm(30000);
+                CompletableFuture<Void> second = connection.prewarm(30000);
+                Thread.sleep(200);
+
+                CompletableFuture<Void> third = connection.prewarm(200);
+                try {
+                    third.get(5, TimeUnit.SECONDS);
+                    fail("Expected a timeout");
+                } catch (java.util.concurrent.ExecutionException expected) {
+                    assertTrue(expected.getCause() instanceof SocketTimeoutException);
+                }
+                assertFalse(first.isDone());
+                assertFalse(second.isDone());
+
+                first.cancel(false);
+                second.cancel(false);
+            } finally {
+                for (Socket filler : fillers) {
+                    filler.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrewarm_TimeoutCompletesExceptionally() throws Exception {
+        host.acceptDelayMs = 1000;
+        connection = new IsoHostConnection("127.0.0.1", host.port(), 60000);
+
+        CompletableFuture<Void> ready = connection.prewarm(200);
+        try {
+            ready.get(5, TimeUnit.SECONDS);
+            fail("Expected a timeout");
+        } catch (java.util.concurrent.ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof SocketTimeoutException);
+        }
+        // The connection itself was up; it stays for the authorization
+        byte[] response = connection.exchange(IsoTestHost.authorizationFrame("000001"), "000001", 5000);
+        assertEquals("000001", IsoTestHost.stanOf(response));
+        assertEquals(1, host.connections.get());
+    }
+}
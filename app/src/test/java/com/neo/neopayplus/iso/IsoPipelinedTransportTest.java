@@ -0,0 +1,169 @@
+package com.neo.neopayplus.iso;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IsoPipelinedTransport against an in-process host
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IsoPipelinedTransportTest {
+
+    private IsoTestHost host;
+    private ScheduledExecutorService timer;
+    private IsoPipelinedTransport transport;
+    private final AtomicReference<IOException> lost = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws IOException {
+        host = new IsoTestHost();
+        timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (transport != null) {
+            transport.close();
+        }
+        timer.shutdownNow();
+        host.close();
+    }
+
+    private void connect() throws IOException {
+        transport = IsoPipelinedTransport.connect("127.0.0.1", host.port(), 5000, timer, lost::set);
+    }
+
+    @Test
+    public void testResponsesAnsweredOutOfOrderReachTheirCallers() throws Exception {
+        host.batchSize = 3;
+        connect();
+
+        CompletableFuture<byte[]> first = transport.send(IsoTestHost.authorizationFrame("000101"), "000101", 5000);
+        CompletableFuture<byte[]> second = transport.send(IsoTestHost.authorizationFrame("000102"), "000102", 5000);
+        CompletableFuture<byte[]> third = transport.send(IsoTestHost.authorizationFrame("000103"), "000103", 5000);
+
+        assertEquals("000101", IsoTestHost.stanOf(first.get(5, TimeUnit.SECONDS)));
+        assertEquals("000102", IsoTestHost.stanOf(second.get(5, TimeUnit.SECONDS)));
+        assertEquals("000103", IsoTestHost.stanOf(third.get(5, TimeUnit.SECONDS)));
+        assertEquals(0, transport.outstanding());
+        assertEquals(1, host.connections.get());
+    }
+
+    @Test
+    public void testStanIsMatchedAfterZeroPadding() throws Exception {
+        connect();
+
+        byte[] response = transport.send(IsoTestHost.authorizationFrame("42"), "42", 5000).get(5, TimeUnit.SECONDS);
+
+        assertEquals("000042", IsoTestHost.stanOf(response));
+    }
+
+    @Test
+    public void testTimeoutFailsOnlyThatRequest() throws Exception {
+        host.silentStans.add("000202");
+        connect();
+
+        CompletableFuture<byte[]> first = transport.send(IsoTestHost.authorizationFrame("000201"), "000201", 5000);
+        CompletableFuture<byte[]> silent = transport.send(IsoTestHost.authorizationFrame("000202"), "000202", 300);
+        CompletableFuture<byte[]> third = transport.send(IsoTestHost.authorizationFrame("000203"), "000203", 5000);
+
+        try {
+            silent.get(5, TimeUnit.SECONDS);
+            fail("Expected a timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        assertEquals("000201", IsoTestHost.stanOf(first.get(5, TimeUnit.SECONDS)));
+        assertEquals("000203", IsoTestHost.stanOf(third.get(5, TimeUnit.SECONDS)));
+        assertTrue(transport.isOpen());
+    }
+
+    @Test
+    public void testLateResponseToTimedOutRequestIsDropped() throws Exception {
+        host.lateStans.add("000211");
+        host.lateReplyMs = 500;
+        host.silentStans.add("000212");
+        connect();
+
+        CompletableFuture<byte[]> timedOut = transport.send(IsoTestHost.authorizationFrame("000211"), "000211", 200);
+        CompletableFuture<byte[]> waiting = transport.send(IsoTestHost.authorizationFrame("000212"), "000212", 5000);
+        try {
+            timedOut.get(5, TimeUnit.SECONDS);
+            fail("Expected a timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        // Answered after the late 1210, so that one has been dispatched by now
+        assertEquals("000213", IsoTestHost.stanOf(
+                transport.send(IsoTestHost.authorizationFrame("000213"), "000213", 5000).get(5, TimeUnit.SECONDS)));
+
+        // Same MTI, but the STAN is not its own: the late answer must not complete it
+        assertFalse(waiting.isDone());
+        assertEquals(1, transport.outstanding());
+    }
+
+    @Test
+    public void testConnectionLossFailsOutstandingRequests() throws Exception {
+        host.closeOnReceive = true;
+        connect();
+
+        CompletableFuture<byte[]> request = transport.send(IsoTestHost.authorizationFrame("000301"), "000301", 5000);
+
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            fail("Expected the connection loss to fail the request");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertFalse(transport.isOpen());
+        assertNotNull(lost.get());
+    }
+
+    @Test
+    public void testDuplicateOutstandingStanIsRejected() throws Exception {
+        host.silentStans.add("000401");
+        connect();
+
+        transport.send(IsoTestHost.authorizationFrame("000401"), "000401", 5000);
+        CompletableFuture<byte[]> duplicate = transport.send(IsoTestHost.authorizationFrame("000401"), "000401", 5000);
+
+        assertTrue(duplicate.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testResponseMti() {
+        assertEquals("1210", IsoPipelinedTransport.responseMti("1200"));
+        assertEquals("1814", IsoPipelinedTransport.responseMti("1804"));
+        assertEquals("0410", IsoPipelinedTransport.responseMti("0400"));
+        assertEquals("1430", IsoPipelinedTransport.responseMti("1420"));
+    }
+
+    @Test
+    public void testShortFrameFailsTheFuture() throws Exception {
+        connect();
+
+        CompletableFuture<byte[]> result = transport.send(new byte[] { 0x30, 0x30 }, "000001", 5000);
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Expected the frame to be rejected");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(0, transport.outstanding());
+    }
+}
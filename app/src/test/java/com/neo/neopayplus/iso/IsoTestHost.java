@@ -0,0 +1,154 @@
+package com.neo.neopayplus.iso;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the acquirer host
+ *
+ * Reads PowerCARD frames and answers 1200 with 1210 (same STAN) and 1804
+ * with 1814. Requests are answered in batches of {@link #batchSize}, last
+ * received first, so a batch larger than one answers out of order.
+ * With {@link #acceptDelayMs} set, a new connection is not served until the
+ * delay has passed, like a host slow to accept or set up a session.
+ */
+final class IsoTestHost implements Closeable {
+
+    final AtomicInteger connections = new AtomicInteger();
+    final List<String> receivedMtis = new CopyOnWriteArrayList<>();
+    /** STANs that never get an answer */
+    final Set<String> silentStans = new CopyOnWriteArraySet<>();
+    /** STANs answered only after {@link #lateReplyMs} */
+    final Set<String> lateStans = new CopyOnWriteArraySet<>();
+    volatile long lateReplyMs;
+    volatile int batchSize = 1;
+    volatile boolean closeAfterReply;
+    volatile boolean closeOnReceive;
+    volatile long acceptDelayMs;
+
+    private final ServerSocket server;
+
+    IsoTestHost() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    new Thread(() -> serve(socket)).start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            if (acceptDelayMs > 0) {
+                Thread.sleep(acceptDelayMs);
+            }
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            List<byte[]> batch = new ArrayList<>();
+            while (true) {
+                byte[] prefix = new byte[4];
+                in.readFully(prefix);
+                byte[] body = new byte[Integer.parseInt(new String(prefix, StandardCharsets.US_ASCII))];
+                in.readFully(body);
+                if (closeOnReceive) {
+                    return;
+                }
+
+                byte[] frame = new byte[4 + body.length];
+                System.arraycopy(prefix, 0, frame, 0, 4);
+                System.arraycopy(body, 0, frame, 4, body.length);
+                byte[] request = Iso8583MessageBuilder.parseResponse(frame);
+                receivedMtis.add(new String(request, 0, 4, StandardCharsets.US_ASCII));
+                batch.add(request);
+                if (batch.size() < batchSize) {
+                    continue;
+                }
+
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    byte[] response = respond(batch.get(i));
+                    if (response != null) {
+                        out.write(Iso8583MessageBuilder.buildCompleteMessage(response,
+                                new byte[] { 0x00, 0x00 }, new byte[] { 0x00, 0x01 }));
+                    }
+                }
+                out.flush();
+                batch.clear();
+                if (closeAfterReply) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] respond(byte[] request) throws InterruptedException {
+        String mti = new String(request, 0, 4, StandardCharsets.US_ASCII);
+        if ("1804".equals(mti)) {
+            return Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD, "1814")
+                    .set(24, "803")
+                    .set(39, "800")
+                    .pack();
+        }
+        String stan = Iso8583MessageReader.parse(Iso8583FieldSpec.POWERCARD, request).getString(11);
+        if (silentStans.contains(stan)) {
+            return null;
+        }
+        if (lateStans.contains(stan)) {
+            Thread.sleep(lateReplyMs);
+        }
+        return Iso8583MessageWriter.obtain(Iso8583FieldSpec.POWERCARD_RESPONSE, "1210")
+                .set(11, stan)
+                .set(37, "RRN000" + stan)
+                .set(39, "00")
+                .pack();
+    }
+
+    /**
+     * Complete 1200 frame carrying the given STAN
+     */
+    static byte[] authorizationFrame(String stan) {
+        byte[] applicationData = Iso8583Packer.pack1200((String) null, "000000", "100", stan, "051", "818",
+                null, "12345678", "123456789012345", null, "200");
+        return Iso8583MessageBuilder.buildCompleteMessage(applicationData,
+                new byte[] { 0x00, 0x00 }, new byte[] { 0x00, 0x01 });
+    }
+
+    /**
+     * STAN (DE11) of a complete 1210 response frame
+     */
+    static String stanOf(byte[] responseFrame) {
+        byte[] applicationData = Iso8583MessageBuilder.parseResponse(responseFrame);
+        return Iso8583MessageReader.parse(Iso8583FieldSpec.POWERCARD_RESPONSE, applicationData).getString(11);
+    }
+}
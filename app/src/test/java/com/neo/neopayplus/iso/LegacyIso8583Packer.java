@@ -0,0 +1,1011 @@
+package com.neo.neopayplus.iso;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reference copy of the hex-string Iso8583Packer that predates the
+ * spec-driven codec (logging removed, clock injected). Used only to prove
+ * the new packer produces the same bytes.
+ */
+final class LegacyIso8583Packer {
+
+    public static byte[] pack0100(String pan, String processingCode, String amount,
+            String stan, String posEntryMode, String currencyCode,
+            String field55, String terminalId, String merchantId, String pinBlock, Date now) {
+        try {
+
+            StringBuilder buffer = new StringBuilder();
+
+            buffer.append("30313030");
+
+            boolean includePan = (pan != null && !pan.isEmpty());
+            boolean includePinBlock = false;
+            if (pinBlock != null && !pinBlock.isEmpty() && pinBlock.length() == 16) {
+                includePinBlock = true;
+            }
+
+            String expiryDate = extractExpiryDateFromField55(field55);
+            boolean includeExpiryDate = (expiryDate != null && expiryDate.length() >= 4);
+            
+            String cardSequenceNumber = extractCardSequenceNumberFromField55(field55);
+            boolean includeCardSequenceNumber = (cardSequenceNumber != null && cardSequenceNumber.length() > 0);
+
+            List<Integer> fieldList = new ArrayList<>();
+            fieldList.add(1);
+            if (includePan) {
+                fieldList.add(2);
+            }
+            fieldList.add(3);
+            fieldList.add(4);
+            fieldList.add(6);
+            fieldList.add(7);
+            fieldList.add(10);
+            fieldList.add(11);
+            fieldList.add(12);
+            if (includeExpiryDate) {
+                fieldList.add(14);
+            }
+            fieldList.add(15);
+            fieldList.add(16);
+            fieldList.add(18);
+            fieldList.add(19);
+            fieldList.add(21);
+            fieldList.add(22);
+            if (includeCardSequenceNumber) {
+                fieldList.add(23);
+            }
+            fieldList.add(24);
+            fieldList.add(27);
+            fieldList.add(32);
+            fieldList.add(33);
+            fieldList.add(37);
+            fieldList.add(41);
+            fieldList.add(42);
+            fieldList.add(43);
+            fieldList.add(48);
+            fieldList.add(49);
+            fieldList.add(51);
+            fieldList.add(53);
+            fieldList.add(60);
+            fieldList.add(61);
+            fieldList.add(62);
+            if (includePinBlock) {
+                fieldList.add(52);
+            }
+            fieldList.add(55);
+            fieldList.add(124);
+            fieldList.add(128);
+
+            int[] fields = new int[fieldList.size()];
+            for (int i = 0; i < fieldList.size(); i++) {
+                fields[i] = fieldList.get(i);
+            }
+            String bitmap = buildBitmap(fields);
+            buffer.append(bitmap);
+
+            long secondaryBitmap = 0L;
+            secondaryBitmap |= (1L << (63 - 59));
+            secondaryBitmap |= (1L << (63 - 63));
+            String secondaryBitmapHex = String.format("%016X", secondaryBitmap);
+            buffer.append(secondaryBitmapHex);
+
+            if (includePan) {
+                buffer.append(formatPan(pan));
+            }
+
+            if (processingCode != null && !processingCode.isEmpty()) {
+                buffer.append(asciiToHex(zeroPadNumeric(processingCode, 6)));
+            } else {
+                buffer.append(asciiToHex("000000"));
+            }
+
+            String paddedAmount = "000000000000";
+            if (amount != null && !amount.isEmpty()) {
+                paddedAmount = zeroPadNumeric(amount, 12);
+            }
+            buffer.append(asciiToHex(paddedAmount));
+
+            buffer.append(asciiToHex(paddedAmount));
+
+            SimpleDateFormat utcFormat = new SimpleDateFormat("yyMMddHHmm", Locale.US);
+            utcFormat.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+            String transmissionDateTime = utcFormat.format(now);
+            buffer.append(asciiToHex(transmissionDateTime));
+
+            buffer.append(asciiToHex("00000001"));
+
+            if (stan != null && !stan.isEmpty()) {
+                buffer.append(asciiToHex(zeroPadNumeric(stan, 6)));
+            } else {
+                buffer.append(asciiToHex("000000"));
+            }
+
+            SimpleDateFormat localFormat = new SimpleDateFormat("yyMMddHHmmss", Locale.US);
+            String transactionDateTime = localFormat.format(now);
+            buffer.append(asciiToHex(transactionDateTime));
+
+            if (includeExpiryDate) {
+                String expiryYYMM = expiryDate.substring(0, 4);
+                buffer.append(asciiToHex(expiryYYMM));
+            }
+
+            SimpleDateFormat settlementFormat = new SimpleDateFormat("yyMMdd", Locale.US);
+            String settlementDate = settlementFormat.format(now);
+            buffer.append(asciiToHex(settlementDate));
+
+            SimpleDateFormat exchangeFormat = new SimpleDateFormat("MMdd", Locale.US);
+            String exchangeDate = exchangeFormat.format(now);
+            buffer.append(asciiToHex(exchangeDate));
+
+            buffer.append(asciiToHex("6011"));
+
+            buffer.append(asciiToHex("818"));
+
+            buffer.append(asciiToHex("818"));
+
+            if (posEntryMode != null && !posEntryMode.isEmpty()) {
+                buffer.append(asciiToHex(zeroPadNumeric(posEntryMode, 3)));
+            } else {
+                buffer.append(asciiToHex("000"));
+            }
+
+            if (includeCardSequenceNumber) {
+                String paddedCsn = zeroPadNumeric(cardSequenceNumber, 3);
+                buffer.append(asciiToHex(paddedCsn));
+            }
+
+            buffer.append(asciiToHex("100"));
+
+            buffer.append(asciiToHex("6"));
+
+            String acquiringInstId = "00000000000";
+            buffer.append(asciiToHex(String.format("%02d", acquiringInstId.length())));
+            buffer.append(asciiToHex(acquiringInstId));
+
+            String forwardingInstId = "00000000000";
+            buffer.append(asciiToHex(String.format("%02d", forwardingInstId.length())));
+            buffer.append(asciiToHex(forwardingInstId));
+
+            buffer.append(asciiToHex("000000000000"));
+
+            String paddedTerminalId = zeroPadNumeric(terminalId, 8);
+            buffer.append(asciiToHex(paddedTerminalId));
+
+            String paddedMerchantId = zeroPadNumeric(merchantId, 15);
+            buffer.append(asciiToHex(paddedMerchantId));
+
+            String merchantName = "NeoPayPlus";
+            String merchantAddress = merchantName.substring(0, Math.min(40, merchantName.length()));
+            buffer.append(asciiToHex(String.format("%02d", merchantAddress.length())));
+            buffer.append(asciiToHex(merchantAddress));
+
+            String cardBrand = null;
+            if (field55 != null && !field55.isEmpty()) {
+                if (field55.contains("A000000003")) {
+                    cardBrand = "VISA";
+                } else if (field55.contains("A000000004") || field55.contains("A000000005")) {
+                    cardBrand = "MASTERCARD";
+                } else if (field55.contains("A000000732")) {
+                    cardBrand = "MEEZA";
+                }
+            }
+            if (cardBrand == null && pan != null && pan.length() >= 6) {
+                String bin = pan.substring(0, 6);
+                if (bin.startsWith("4")) {
+                    cardBrand = "VISA";
+                } else if (bin.startsWith("5") || bin.startsWith("2")) {
+                    cardBrand = "MASTERCARD";
+                }
+            }
+            
+            String arqcResult = (field55 != null && !field55.isEmpty()) ? "2" : null;
+            String messageReasonCode = "0000";
+            String de48Hex = De48Builder.buildDe48ForAuthorization(cardBrand, arqcResult, messageReasonCode);
+            if (de48Hex != null && !de48Hex.isEmpty()) {
+                buffer.append(de48Hex);
+            }
+
+            String finalCurrencyCode = currencyCode != null && !currencyCode.isEmpty() ? currencyCode : "818";
+            buffer.append(asciiToHex(zeroPadNumeric(finalCurrencyCode, 3)));
+
+            buffer.append(asciiToHex(zeroPadNumeric(finalCurrencyCode, 3)));
+
+            if (includePinBlock) {
+                buffer.append(pinBlock);
+            }
+
+            buffer.append(asciiToHex("0000000000000000"));
+
+            String de60Value = "000";
+            if (field55 != null && !field55.isEmpty()) {
+                de60Value = "020";
+            }
+            buffer.append(asciiToHex(String.format("%03d", de60Value.length())));
+            buffer.append(asciiToHex(de60Value));
+
+            if (field55 != null && !field55.isEmpty()) {
+                int byteLength = field55.length() / 2;
+                if (byteLength > 255) {
+                    byteLength = 255;
+                }
+                int thousands = byteLength / 1000;
+                int hundreds = (byteLength / 100) % 10;
+                int tens = (byteLength / 10) % 10;
+                int ones = byteLength % 10;
+                byte bcdByte1 = (byte) ((thousands << 4) | hundreds);
+                byte bcdByte2 = (byte) ((tens << 4) | ones);
+                String lengthHex = String.format("%02X%02X", bcdByte1 & 0xFF, bcdByte2 & 0xFF);
+                buffer.append(lengthHex);
+                buffer.append(field55);
+            }
+
+            StringBuilder de61Builder = new StringBuilder();
+            de61Builder.append("039");
+            de61Builder.append("002");
+            de61Builder.append("  ");
+            
+            String de61Value = de61Builder.toString();
+            buffer.append(asciiToHex(String.format("%03d", de61Value.length())));
+            buffer.append(asciiToHex(de61Value));
+
+            StringBuilder de62Builder = new StringBuilder();
+            de62Builder.append("F01");
+            de62Builder.append("001");
+            de62Builder.append("A");
+            
+            String transactionId = stan != null ? stan : "000000000000000";
+            if (transactionId.length() < 15) {
+                transactionId = String.format("%-15s", transactionId).substring(0, 15);
+            } else if (transactionId.length() > 15) {
+                transactionId = transactionId.substring(0, 15);
+            }
+            de62Builder.append("F02");
+            de62Builder.append("015");
+            de62Builder.append(transactionId);
+
+            String cpsValidationCode = "0000";
+            de62Builder.append("F03");
+            de62Builder.append("004");
+            de62Builder.append(cpsValidationCode);
+
+            String marketIdentifier = "N";
+            de62Builder.append("F04");
+            de62Builder.append("001");
+            de62Builder.append(marketIdentifier);
+
+            String preauthDuration = "00";
+            de62Builder.append("F05");
+            de62Builder.append("002");
+            de62Builder.append(preauthDuration);
+
+            String prestigeIndicator = " ";
+            de62Builder.append("F06");
+            de62Builder.append("001");
+            de62Builder.append(prestigeIndicator);
+            
+            String de62Value = de62Builder.toString();
+            buffer.append(asciiToHex(String.format("%03d", de62Value.length())));
+            buffer.append(asciiToHex(de62Value));
+
+            String originatorInstId = "00000000000";
+            buffer.append(asciiToHex(String.format("%02d", originatorInstId.length())));
+            buffer.append(asciiToHex(originatorInstId));
+
+            buffer.append("00000000000000000000000000000000");
+
+            String hexString = buffer.toString();
+            byte[] isoFrame = hexStringToBytes(hexString);
+
+            return isoFrame;
+
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+    public static byte[] pack0400(String rrn, String amount, String stan,
+            String currencyCode, String terminalId,
+            String merchantId, String reversalReason, Date now) {
+        try {
+
+            StringBuilder buffer = new StringBuilder();
+
+            buffer.append("30343030");
+
+            String bitmap = buildBitmap(new int[] { 2, 3, 4, 11, 22, 37, 49 });
+            buffer.append(bitmap);
+
+            buffer.append("0000000000000000");
+
+            buffer.append("000000");
+
+            if (amount != null && !amount.isEmpty()) {
+                buffer.append(zeroPadNumeric(amount, 12));
+            } else {
+                buffer.append("000000000000");
+            }
+
+            if (stan != null && !stan.isEmpty()) {
+                buffer.append(zeroPadNumeric(stan, 6));
+            } else {
+                SimpleDateFormat timeFormat = new SimpleDateFormat("HHmmss", Locale.US);
+                String time = timeFormat.format(now);
+                String seconds = time.substring(4, 6);
+                buffer.append(zeroPadNumeric(seconds + "00", 6));
+            }
+
+            buffer.append("051");
+
+            if (rrn != null && !rrn.isEmpty()) {
+                buffer.append(zeroPadNumeric(rrn, 12));
+            } else {
+                buffer.append("000000000000");
+            }
+
+            if (currencyCode != null && !currencyCode.isEmpty()) {
+                buffer.append(zeroPadNumeric(currencyCode, 3));
+            } else {
+                buffer.append("818");
+            }
+
+            String hexString = buffer.toString();
+            byte[] isoFrame = hexStringToBytes(hexString);
+
+            return isoFrame;
+
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+    public static byte[] pack1200(String pan, String processingCode, String amount,
+            String stan, String posEntryMode, String currencyCode,
+            String field55, String terminalId, String merchantId, String pinBlock,
+            String functionCode, Date now) {
+        try {
+            
+            if (functionCode == null || functionCode.isEmpty()) {
+                functionCode = "200";
+            }
+            if (!functionCode.equals("101") && !functionCode.equals("200") && !functionCode.equals("281")) {
+                functionCode = "200";
+            }
+
+            StringBuilder buffer = new StringBuilder();
+
+            buffer.append("31323030");
+
+            boolean includePan = (pan != null && !pan.isEmpty());
+            String expiryDate = extractExpiryDateFromField55(field55);
+            boolean includeExpiryDate = (expiryDate != null && expiryDate.length() >= 4);
+            String cardSequenceNumber = extractCardSequenceNumberFromField55(field55);
+            boolean includeCardSequenceNumber = (cardSequenceNumber != null && cardSequenceNumber.length() > 0);
+            boolean includePinBlock = (pinBlock != null && !pinBlock.isEmpty() && pinBlock.length() == 16);
+
+            List<Integer> fieldList = new ArrayList<>();
+            fieldList.add(1);
+            if (includePan) {
+                fieldList.add(2);
+            }
+            fieldList.add(3);
+            fieldList.add(4);
+            fieldList.add(5);
+            fieldList.add(6);
+            fieldList.add(7);
+            fieldList.add(9);
+            fieldList.add(10);
+            fieldList.add(11);
+            fieldList.add(12);
+            if (includeExpiryDate) {
+                fieldList.add(14);
+            }
+            fieldList.add(15);
+            fieldList.add(16);
+            fieldList.add(18);
+            fieldList.add(19);
+            fieldList.add(21);
+            fieldList.add(22);
+            if (includeCardSequenceNumber) {
+                fieldList.add(23);
+            }
+            fieldList.add(24);
+            fieldList.add(27);
+            fieldList.add(32);
+            fieldList.add(33);
+            fieldList.add(37);
+            fieldList.add(41);
+            fieldList.add(42);
+            fieldList.add(43);
+            fieldList.add(48);
+            fieldList.add(49);
+            fieldList.add(50);
+            fieldList.add(51);
+            fieldList.add(53);
+            fieldList.add(60);
+            fieldList.add(61);
+            fieldList.add(62);
+            if (includePinBlock) {
+                fieldList.add(52);
+            }
+            fieldList.add(55);
+            fieldList.add(124);
+            fieldList.add(128);
+
+            String bitmap = buildBitmap(fieldList.stream().mapToInt(i -> i).toArray());
+            buffer.append(bitmap);
+
+            long secondaryBitmap = 0L;
+            secondaryBitmap |= (1L << (63 - 59));
+            secondaryBitmap |= (1L << (63 - 63));
+            String secondaryBitmapHex = String.format("%016X", secondaryBitmap);
+            buffer.append(secondaryBitmapHex);
+
+            if (includePan) {
+                buffer.append(formatPan(pan));
+            }
+
+            buffer.append(asciiToHex(zeroPadNumeric(processingCode, 6)));
+
+            String paddedAmount = zeroPadNumeric(amount != null ? amount : "0", 12);
+            buffer.append(asciiToHex(paddedAmount));
+
+            buffer.append(asciiToHex(paddedAmount));
+
+            buffer.append(asciiToHex(paddedAmount));
+
+            SimpleDateFormat utcFormat = new SimpleDateFormat("yyMMddHHmm", Locale.US);
+            utcFormat.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+            buffer.append(asciiToHex(utcFormat.format(now)));
+
+            buffer.append(asciiToHex("00000001"));
+
+            buffer.append(asciiToHex("00000001"));
+
+            buffer.append(asciiToHex(zeroPadNumeric(stan, 6)));
+
+            SimpleDateFormat localFormat = new SimpleDateFormat("yyMMddHHmmss", Locale.US);
+            buffer.append(asciiToHex(localFormat.format(now)));
+
+            if (includeExpiryDate) {
+                buffer.append(asciiToHex(expiryDate.substring(0, 4)));
+            }
+
+            SimpleDateFormat settlementFormat = new SimpleDateFormat("yyMMdd", Locale.US);
+            buffer.append(asciiToHex(settlementFormat.format(now)));
+
+            SimpleDateFormat exchangeFormat = new SimpleDateFormat("MMdd", Locale.US);
+            buffer.append(asciiToHex(exchangeFormat.format(now)));
+
+            buffer.append(asciiToHex("6011"));
+
+            buffer.append(asciiToHex("818"));
+
+            buffer.append(asciiToHex("818"));
+
+            buffer.append(asciiToHex(zeroPadNumeric(posEntryMode, 3)));
+
+            if (includeCardSequenceNumber) {
+                buffer.append(asciiToHex(zeroPadNumeric(cardSequenceNumber, 3)));
+            }
+
+            buffer.append(asciiToHex(zeroPadNumeric(functionCode, 3)));
+
+            buffer.append(asciiToHex("6"));
+
+            String acquiringInstId = "00000000000";
+            buffer.append(asciiToHex(String.format("%02d", acquiringInstId.length())));
+            buffer.append(asciiToHex(acquiringInstId));
+
+            String forwardingInstId = "00000000000";
+            buffer.append(asciiToHex(String.format("%02d", forwardingInstId.length())));
+            buffer.append(asciiToHex(forwardingInstId));
+
+            buffer.append(asciiToHex("000000000000"));
+
+            buffer.append(asciiToHex(zeroPadNumeric(terminalId, 8)));
+
+            buffer.append(asciiToHex(zeroPadNumeric(merchantId, 15)));
+
+            buffer.append(asciiToHex(String.format("%02d", "NeoPayPlus".length())));
+            buffer.append(asciiToHex("NeoPayPlus"));
+
+            String cardBrand = null;
+            if (field55 != null && !field55.isEmpty()) {
+                if (field55.contains("A000000003")) {
+                    cardBrand = "VISA";
+                } else if (field55.contains("A000000004") || field55.contains("A000000005")) {
+                    cardBrand = "MASTERCARD";
+                } else if (field55.contains("A000000732")) {
+                    cardBrand = "MEEZA";
+                }
+            }
+            if (cardBrand == null && pan != null && pan.length() >= 6) {
+                String bin = pan.substring(0, 6);
+                if (bin.startsWith("4")) {
+                    cardBrand = "VISA";
+                } else if (bin.startsWith("5") || bin.startsWith("2")) {
+                    cardBrand = "MASTERCARD";
+                }
+            }
+            String arqcResult = (field55 != null && !field55.isEmpty()) ? "2" : null;
+            String messageReasonCode = "0000";
+            String de48Hex = De48Builder.buildDe48ForAuthorization(cardBrand, arqcResult, messageReasonCode);
+            if (de48Hex != null && !de48Hex.isEmpty()) {
+                buffer.append(de48Hex);
+            }
+
+            String finalCurrencyCode = currencyCode != null && !currencyCode.isEmpty() ? currencyCode : "818";
+            buffer.append(asciiToHex(zeroPadNumeric(finalCurrencyCode, 3)));
+
+            buffer.append(asciiToHex(zeroPadNumeric(finalCurrencyCode, 3)));
+
+            buffer.append(asciiToHex(zeroPadNumeric(finalCurrencyCode, 3)));
+
+            if (includePinBlock) {
+                buffer.append(pinBlock);
+            }
+
+            buffer.append(asciiToHex("0000000000000000"));
+
+            if (field55 != null && !field55.isEmpty()) {
+                int byteLength = field55.length() / 2;
+                if (byteLength > 255) {
+                    byteLength = 255;
+                }
+                int thousands = byteLength / 1000;
+                int hundreds = (byteLength / 100) % 10;
+                int tens = (byteLength / 10) % 10;
+                int ones = byteLength % 10;
+                byte bcdByte1 = (byte) ((thousands << 4) | hundreds);
+                byte bcdByte2 = (byte) ((tens << 4) | ones);
+                String lengthHex = String.format("%02X%02X", bcdByte1 & 0xFF, bcdByte2 & 0xFF);
+                buffer.append(lengthHex);
+                buffer.append(field55);
+            }
+
+            String de60Value = "020";
+            buffer.append(asciiToHex(String.format("%03d", de60Value.length())));
+            buffer.append(asciiToHex(de60Value));
+
+            StringBuilder de61Builder = new StringBuilder();
+            de61Builder.append("039");
+            de61Builder.append("002");
+            de61Builder.append("  ");
+            String de61Value = de61Builder.toString();
+            buffer.append(asciiToHex(String.format("%03d", de61Value.length())));
+            buffer.append(asciiToHex(de61Value));
+
+            StringBuilder de62Builder = new StringBuilder();
+            de62Builder.append("F01");
+            de62Builder.append("001");
+            de62Builder.append("A");
+            de62Builder.append("F02");
+            de62Builder.append("015");
+            String transactionId = stan != null ? stan : "000000000000000";
+            if (transactionId.length() < 15) {
+                transactionId = String.format("%-15s", transactionId).substring(0, 15);
+            } else if (transactionId.length() > 15) {
+                transactionId = transactionId.substring(0, 15);
+            }
+            de62Builder.append(transactionId);
+            de62Builder.append("F03");
+            de62Builder.append("004");
+            de62Builder.append("0000");
+            de62Builder.append("F04");
+            de62Builder.append("001");
+            de62Builder.append("N");
+            de62Builder.append("F05");
+            de62Builder.append("002");
+            de62Builder.append("00");
+            de62Builder.append("F06");
+            de62Builder.append("001");
+            de62Builder.append(" ");
+            String de62Value = de62Builder.toString();
+            buffer.append(asciiToHex(String.format("%03d", de62Value.length())));
+            buffer.append(asciiToHex(de62Value));
+
+            String originatorInstId = "00000000000";
+            buffer.append(asciiToHex(String.format("%02d", originatorInstId.length())));
+            buffer.append(asciiToHex(originatorInstId));
+
+            buffer.append("00000000000000000000000000000000");
+
+            String hexString = buffer.toString();
+            byte[] isoFrame = hexStringToBytes(hexString);
+
+            return isoFrame;
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+    public static byte[] pack1420(String rrn, String amount, String stan,
+            String currencyCode, String terminalId, String merchantId,
+            String functionCode, String messageReasonCode,
+            String originalAmount, String reconciliationAmount, Date now) {
+        try {
+
+            if (functionCode == null || functionCode.isEmpty()) {
+                functionCode = "400";
+            }
+            if (!functionCode.equals("400") && !functionCode.equals("401") && !functionCode.equals("402")) {
+                functionCode = "400";
+            }
+
+            if (messageReasonCode == null || messageReasonCode.isEmpty()) {
+                messageReasonCode = "4001";
+            }
+
+            StringBuilder buffer = new StringBuilder();
+
+            buffer.append("31343230");
+
+            List<Integer> fieldList = new ArrayList<>();
+            fieldList.add(1);
+            fieldList.add(2);
+            fieldList.add(3);
+            fieldList.add(4);
+            fieldList.add(7);
+            fieldList.add(11);
+            fieldList.add(12);
+            fieldList.add(24);
+            fieldList.add(25);
+            fieldList.add(30);
+            fieldList.add(37);
+            fieldList.add(41);
+            fieldList.add(42);
+            fieldList.add(43);
+            fieldList.add(49);
+            fieldList.add(90);
+            fieldList.add(124);
+            fieldList.add(128);
+
+            int[] fields = new int[fieldList.size()];
+            for (int i = 0; i < fieldList.size(); i++) {
+                fields[i] = fieldList.get(i);
+            }
+            String bitmap = buildBitmap(fields);
+            buffer.append(bitmap);
+
+            long secondaryBitmap = 0L;
+            secondaryBitmap |= (1L << (63 - 59));
+            secondaryBitmap |= (1L << (63 - 63));
+            String secondaryBitmapHex = String.format("%016X", secondaryBitmap);
+            buffer.append(secondaryBitmapHex);
+
+            buffer.append("0000000000000000");
+
+            buffer.append(asciiToHex("000000"));
+
+            String paddedAmount = "000000000000";
+            if (amount != null && !amount.isEmpty()) {
+                paddedAmount = zeroPadNumeric(amount, 12);
+            }
+            buffer.append(asciiToHex(paddedAmount));
+
+            SimpleDateFormat utcFormat = new SimpleDateFormat("yyMMddHHmm", Locale.US);
+            utcFormat.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+            String transmissionDateTime = utcFormat.format(now);
+            buffer.append(asciiToHex(transmissionDateTime));
+
+            if (stan != null && !stan.isEmpty()) {
+                buffer.append(asciiToHex(zeroPadNumeric(stan, 6)));
+            } else {
+                buffer.append(asciiToHex("000000"));
+            }
+
+            SimpleDateFormat localFormat = new SimpleDateFormat("yyMMddHHmmss", Locale.US);
+            String transactionDateTime = localFormat.format(now);
+            buffer.append(asciiToHex(transactionDateTime));
+
+            buffer.append(asciiToHex(zeroPadNumeric(functionCode, 3)));
+
+            buffer.append(asciiToHex(zeroPadNumeric(messageReasonCode, 4)));
+
+            String de30 = "";
+            if (functionCode.equals("402") && originalAmount != null && reconciliationAmount != null) {
+                de30 = zeroPadNumeric(originalAmount, 12) + zeroPadNumeric(reconciliationAmount, 12);
+            } else {
+                de30 = paddedAmount + paddedAmount;
+            }
+            buffer.append(asciiToHex(de30));
+
+            if (rrn != null && !rrn.isEmpty()) {
+                buffer.append(asciiToHex(zeroPadNumeric(rrn, 12)));
+            } else {
+                buffer.append(asciiToHex("000000000000"));
+            }
+
+            String paddedTerminalId = (terminalId != null ? terminalId : "00000001").substring(0, Math.min(8, (terminalId != null ? terminalId : "00000001").length()));
+            paddedTerminalId = String.format("%-8s", paddedTerminalId).substring(0, 8);
+            buffer.append(asciiToHex(paddedTerminalId));
+
+            String paddedMerchantId = (merchantId != null ? merchantId : "000000000000001").substring(0, Math.min(15, (merchantId != null ? merchantId : "000000000000001").length()));
+            paddedMerchantId = String.format("%-15s", paddedMerchantId).substring(0, 15);
+            buffer.append(asciiToHex(paddedMerchantId));
+
+            String merchantName = "MERCHANT NAME";
+            String merchantNameLength = String.format("%02d", merchantName.length());
+            buffer.append(asciiToHex(merchantNameLength));
+            buffer.append(asciiToHex(merchantName));
+
+            if (currencyCode != null && !currencyCode.isEmpty()) {
+                buffer.append(asciiToHex(zeroPadNumeric(currencyCode, 3)));
+            } else {
+                buffer.append(asciiToHex("818"));
+            }
+
+            String originalMti = "0100";
+            String originalStan = stan != null ? stan : "000000";
+            String originalTransmissionDateTime = transmissionDateTime;
+            String originalRrn = rrn != null ? rrn : "000000000000";
+            String originalAmountDe90 = paddedAmount;
+            String de90 = originalMti + originalStan + originalTransmissionDateTime + originalRrn + originalAmountDe90;
+            while (de90.length() < 42) {
+                de90 += "0";
+            }
+            de90 = de90.substring(0, 42);
+            buffer.append(asciiToHex(de90));
+
+            String originatorInstId = "00000001";
+            String originatorInstIdLength = String.format("%02d", originatorInstId.length());
+            buffer.append(asciiToHex(originatorInstIdLength));
+            buffer.append(asciiToHex(originatorInstId));
+
+            buffer.append(asciiToHex("00000000000000000000000000000000"));
+
+            String hexString = buffer.toString();
+            byte[] isoFrame = hexStringToBytes(hexString);
+
+            return isoFrame;
+
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+    private static String zeroPadNumeric(String value, int width) {
+        if (value == null) {
+            return String.format(Locale.US, "%0" + width + "d", 0);
+        }
+
+        String digits = value.replaceAll("\\D", "");
+        if (digits.isEmpty()) {
+            return String.format(Locale.US, "%0" + width + "d", 0);
+        }
+
+        if (digits.length() > width) {
+            digits = digits.substring(digits.length() - width);
+        }
+
+        long numeric;
+        try {
+            numeric = Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            numeric = 0L;
+        }
+
+        return String.format(Locale.US, "%0" + width + "d", numeric);
+    }
+
+    private static String asciiToHex(String asciiString) {
+        if (asciiString == null) {
+            return "";
+        }
+        StringBuilder hex = new StringBuilder();
+        for (char c : asciiString.toCharArray()) {
+            hex.append(String.format("%02X", (int) c));
+        }
+        return hex.toString();
+    }
+
+    private static String buildBitmap(int[] fieldNumbers) {
+        long bitmap = 0L;
+
+        for (int fieldNum : fieldNumbers) {
+            if (fieldNum > 0 && fieldNum <= 64) {
+                bitmap |= (1L << (64 - fieldNum));
+            }
+        }
+
+        return String.format("%016X", bitmap);
+    }
+
+    private static String formatPan(String pan) {
+        String cleanPan = pan.replaceAll("[*]", "");
+
+        int length = cleanPan.length();
+        if (length > 19) {
+            length = 19;
+        }
+        int tens = length / 10;
+        int ones = length % 10;
+        byte bcdByte = (byte) ((tens << 4) | ones);
+        String lengthHex = String.format("%02X", bcdByte & 0xFF);
+
+        String panHex = asciiToHex(cleanPan);
+
+        return lengthHex + panHex;
+    }
+
+    private static byte[] hexStringToBytes(String hexString) {
+        try {
+            hexString = hexString.replaceAll("\\s", "");
+
+            if (hexString.length() % 2 != 0) {
+                hexString = "0" + hexString;
+            }
+
+            byte[] bytes = new byte[hexString.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                int index = i * 2;
+                bytes[i] = (byte) Integer.parseInt(hexString.substring(index, index + 2), 16);
+            }
+
+            return bytes;
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+    private static String extractExpiryDateFromField55(String field55) {
+        if (field55 == null || field55.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String hexStr = field55.replaceAll("\\s", "").toUpperCase();
+
+            int tag59Index = hexStr.indexOf("59");
+            if (tag59Index != -1 && tag59Index % 2 == 0) {
+                int lengthStart = tag59Index + 2;
+                if (lengthStart + 2 <= hexStr.length()) {
+                    int length = Integer.parseInt(hexStr.substring(lengthStart, lengthStart + 2), 16);
+                    int valueStart = lengthStart + 2;
+                    int valueEnd = valueStart + length * 2;
+                    if (valueEnd <= hexStr.length()) {
+                        String expiryHex = hexStr.substring(valueStart, valueEnd);
+                        String expiryClean = expiryHex.replaceAll("F+$", "");
+                        if (expiryClean.length() >= 4) {
+                            return expiryClean.substring(0, 4);
+                        }
+                    }
+                }
+            }
+
+            int tag5F24Index = hexStr.indexOf("5F24");
+            if (tag5F24Index != -1 && tag5F24Index % 2 == 0) {
+                int lengthStart = tag5F24Index + 4;
+                if (lengthStart + 2 <= hexStr.length()) {
+                    int length = Integer.parseInt(hexStr.substring(lengthStart, lengthStart + 2), 16);
+                    int valueStart = lengthStart + 2;
+                    int valueEnd = valueStart + length * 2;
+                    if (valueEnd <= hexStr.length()) {
+                        String expiryHex = hexStr.substring(valueStart, valueEnd);
+                        String expiryClean = expiryHex.replaceAll("F+$", "");
+                        if (expiryClean.length() >= 4) {
+                            return expiryClean.substring(0, 4);
+                        }
+                    }
+                }
+            }
+
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String extractCardSequenceNumberFromField55(String field55) {
+        if (field55 == null || field55.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String hexStr = field55.replaceAll("\\s", "").toUpperCase();
+
+            int tag5F34Index = hexStr.indexOf("5F34");
+            if (tag5F34Index != -1 && tag5F34Index % 2 == 0) {
+                int lengthStart = tag5F34Index + 4;
+                if (lengthStart + 2 <= hexStr.length()) {
+                    int length = Integer.parseInt(hexStr.substring(lengthStart, lengthStart + 2), 16);
+                    int valueStart = lengthStart + 2;
+                    int valueEnd = valueStart + length * 2;
+                    if (valueEnd <= hexStr.length()) {
+                        String csnHex = hexStr.substring(valueStart, valueEnd);
+                        try {
+                            int csn = Integer.parseInt(csnHex, 16);
+                            return String.valueOf(csn);
+                        } catch (NumberFormatException e) {
+                            if (csnHex.length() >= 2) {
+                                int high = Character.digit(csnHex.charAt(0), 16);
+                                int low = Character.digit(csnHex.charAt(1), 16);
+                                if (high >= 0 && low >= 0) {
+                                    int csn = high * 10 + low;
+                                    return String.valueOf(csn);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static byte[] pack1804(String functionCode, String stan, String forwardingInstId, Date now) {
+        try {
+
+            StringBuilder buffer = new StringBuilder();
+
+            buffer.append("31383034");
+
+            String bitmap = buildBitmap(new int[] { 1, 7, 11, 12, 24, 25, 33, 37, 39, 128 });
+            buffer.append(bitmap);
+
+            buffer.append("0000000000000000");
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyMMddHHmm", Locale.US);
+            dateFormat.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+            String transmissionDateTime = dateFormat.format(now);
+            buffer.append(transmissionDateTime);
+
+            if (stan != null && !stan.isEmpty()) {
+                buffer.append(zeroPadNumeric(stan, 6));
+            } else {
+                SimpleDateFormat timeFormat = new SimpleDateFormat("HHmmss", Locale.US);
+                String time = timeFormat.format(now);
+                buffer.append(zeroPadNumeric(time, 6));
+            }
+
+            SimpleDateFormat localDateTimeFormat = new SimpleDateFormat("yyMMddHHmmss", Locale.US);
+            String localDateTime = localDateTimeFormat.format(now);
+            buffer.append(localDateTime);
+
+            if (functionCode != null && !functionCode.isEmpty()) {
+                buffer.append(zeroPadNumeric(functionCode, 3));
+            } else {
+                buffer.append("801");
+            }
+
+            buffer.append("0000");
+
+            if (forwardingInstId != null && !forwardingInstId.isEmpty()) {
+                int length = forwardingInstId.length();
+                if (length > 11) {
+                    length = 11;
+                    forwardingInstId = forwardingInstId.substring(0, 11);
+                }
+                byte lengthByte = (byte) length;
+                buffer.append(String.format("%02X", lengthByte & 0xFF));
+                buffer.append(forwardingInstId);
+            } else {
+                buffer.append("00");
+            }
+
+            SimpleDateFormat rrnFormat = new SimpleDateFormat("yyMMddHHmmss", Locale.US);
+            String rrn = rrnFormat.format(now);
+            buffer.append(zeroPadNumeric(rrn, 12));
+
+            buffer.append("000");
+
+            buffer.append("00000000000000000000000000000000");
+
+            String hexString = buffer.toString();
+            byte[] isoFrame = hexStringToBytes(hexString);
+
+            return isoFrame;
+
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.neo.neopayplus.payment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ReversalDispatcher
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ReversalDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ReversalLog log;
+    private ReversalDispatcher dispatcher;
+
+    /** Records sends; the test decides each outcome */
+    private static final class Send {
+        final ReversalLog.Entry entry;
+        final ReversalDispatcher.Outcome outcome;
+
+        Send(ReversalLog.Entry entry, ReversalDispatcher.Outcome outcome) {
+            this.entry = entry;
+            this.outcome = outcome;
+        }
+    }
+
+    private final BlockingQueue<Send> sends = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        log = new ReversalLog(new File(folder.getRoot(), "reversal_queue"));
+    }
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        log.close();
+    }
+
+    private void start(int maxInFlight, long baseDelayMs) {
+        dispatcher = new ReversalDispatcher(log, (entry, outcome) -> sends.add(new Send(entry, outcome)),
+                maxInFlight, baseDelayMs, baseDelayMs * 8);
+    }
+
+    private static byte[] payload(int n) {
+        return String.format("{\"rrn\":\"%012d\"}", n).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Send nextSend() throws InterruptedException {
+        Send send = sends.poll(2, TimeUnit.SECONDS);
+        assertNotNull("Expected a send", send);
+        return send;
+    }
+
+    @Test
+    public void testEnqueue_SendsWithoutPolling() throws Exception {
+        start(2, 1000);
+        assertNull(sends.poll(100, TimeUnit.MILLISECONDS)); // Idle while empty
+
+        long id = log.enqueue(payload(1));
+        Send send = nextSend();
+        assertEquals(id, send.entry.id);
+
+        send.outcome.complete(true);
+        assertEquals(0, log.size());
+        ReversalDispatcher.Metrics metrics = dispatcher.metrics();
+        assertEquals(1, metrics.delivered);
+        assertEquals(1, metrics.deliveredLastMinute);
+        assertEquals(0, metrics.queueDepth);
+    }
+
+    @Test
+    public void testQueuedBeforeStart_IsDrained() throws Exception {
+        log.enqueue(payload(1));
+        log.enqueue(payload(2));
+        start(4, 1000);
+
+        nextSend().outcome.complete(true);
+        nextSend().outcome.complete(true);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testInFlight_IsBounded() throws Exception {
+        start(2, 1000);
+        for (int i = 1; i <= 5; i++) {
+            log.enqueue(payload(i));
+        }
+
+        Send first = nextSend();
+        nextSend();
+        assertNull(sends.poll(200, TimeUnit.MILLISECONDS)); // Third waits for a free slot
+        assertEquals(2, dispatcher.metrics().inFlight);
+
+        first.outcome.complete(true);
+        assertNotNull(nextSend());
+    }
+
+    @Test
+    public void testFailure_RetriedAfterBackoff() throws Exception {
+        start(1, 200);
+        long id = log.enqueue(payload(1));
+
+        Send first = nextSend();
+        long failedAt = System.currentTimeMillis();
+        first.outcome.complete(false);
+
+        Send retry = nextSend();
+        long waited = System.currentTimeMillis() - failedAt;
+        assertEquals(id, retry.entry.id);
+        assertEquals(1, retry.entry.attempts());
+        assertTrue("Retried after " + waited + " ms", waited >= 100); // At least half the base delay
+        assertEquals(1, dispatcher.metrics().failed);
+
+        retry.outcome.complete(true);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testNetworkDown_PausesUntilBack() throws Exception {
+        start(2, 1000);
+        dispatcher.setNetworkAvailable(false);
+        log.enqueue(payload(1));
+        assertNull(sends.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, dispatcher.metrics().queueDepth);
+
+        dispatcher.setNetworkAvailable(true);
+        nextSend().outcome.complete(true);
+    }
+
+    @Test
+    public void testNetworkDown_RetriesAfterBackoffCapWithoutSignal() throws Exception {
+        start(2, 50); // Backoff cap 400 ms
+        dispatcher.setNetworkAvailable(false);
+        log.enqueue(payload(1));
+        assertNull(sends.poll(100, TimeUnit.MILLISECONDS));
+
+        // No "network back" arrives; the entry is still tried once the cap is up
+        nextSend().outcome.complete(true);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testOutcome_OnlyFirstCompletionCounts() throws Exception {
+        start(1, 1000);
+        log.enqueue(payload(1));
+        log.enqueue(payload(2));
+
+        Send send = nextSend();
+        send.outcome.complete(true);
+        send.outcome.complete(false);
+        nextSend().outcome.complete(true);
+
+        assertEquals(2, dispatcher.metrics().delivered);
+        assertEquals(0, dispatcher.metrics().failed);
+    }
+
+    @Test
+    public void testBackoff_DoublesWithJitterAndCap() {
+        start(1, 1000);
+        AtomicInteger below = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            long first = dispatcher.backoff(0);
+            assertTrue(first >= 500 && first <= 1000);
+            long third = dispatcher.backoff(2);
+            assertTrue(third >= 2000 && third <= 4000);
+            long capped = dispatcher.backoff(30);
+            assertTrue(capped >= 4000 && capped <= 8000);
+            if (third < 4000) {
+                below.incrementAndGet();
+            }
+        }
+        assertTrue(below.get() > 0); // Jittered, not fixed
+    }
+}
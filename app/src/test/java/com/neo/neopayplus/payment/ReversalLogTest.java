@@ -0,0 +1,212 @@
+package com.neo.neopayplus.payment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ReversalLog
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ReversalLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private ReversalLog log;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = new File(folder.getRoot(), "reversal_queue");
+        log = new ReversalLog(dir);
+    }
+
+    @After
+    public void tearDown() {
+        log.close();
+    }
+
+    private static byte[] payload(String rrn) {
+        return ("{\"rrn\":\"" + rrn + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String rrn(ReversalLog.Entry entry) {
+        String json = new String(entry.payload, StandardCharsets.UTF_8);
+        return json.substring(8, json.length() - 2);
+    }
+
+    private void reopen() throws Exception {
+        log.close();
+        log = new ReversalLog(dir);
+    }
+
+    @Test
+    public void testFifoAndAck() throws Exception {
+        long first = log.enqueue(payload("000000000001"));
+        long second = log.enqueue(payload("000000000002"));
+
+        assertEquals(2, log.size());
+        assertEquals(first, log.peek().id);
+        assertTrue(log.ack(first));
+        assertFalse(log.ack(first));
+        assertEquals(second, log.peek().id);
+        assertEquals("000000000002", rrn(log.peek()));
+    }
+
+    @Test
+    public void testReplay_RestoresPendingAndRetryState() throws Exception {
+        long first = log.enqueue(payload("000000000001"));
+        long second = log.enqueue(payload("000000000002"));
+        long third = log.enqueue(payload("000000000003"));
+        log.ack(second);
+        log.retry(third, 12345L);
+        log.retry(third, 67890L);
+
+        reopen();
+
+        List<ReversalLog.Entry> entries = log.entries();
+        assertEquals(2, entries.size());
+        assertEquals(first, entries.get(0).id);
+        assertEquals(0, entries.get(0).attempts());
+        assertEquals(third, entries.get(1).id);
+        assertEquals(2, entries.get(1).attempts());
+        assertEquals(67890L, entries.get(1).nextAttemptAt());
+
+        // Ids keep increasing after a restart
+        assertTrue(log.enqueue(payload("000000000004")) > third);
+    }
+
+    @Test
+    public void testDue_SkipsScheduledAndLeasedEntries() throws Exception {
+        long first = log.enqueue(payload("000000000001"));
+        long second = log.enqueue(payload("000000000002"));
+        log.retry(first, 10_000L);
+
+        List<ReversalLog.Entry> due = log.due(5_000L, 10);
+        assertEquals(1, due.size());
+        assertEquals(second, due.get(0).id);
+
+        // Leased: not handed out again until acked, retried or expired
+        assertTrue(log.due(5_000L, 10).isEmpty());
+        assertEquals(1, log.due(10_000L, 10).size()); // first is now due
+        assertEquals(second, log.due(5_000L + ReversalLog.LEASE_MS, 10).get(0).id);
+
+        assertEquals(2, log.size());
+    }
+
+    @Test
+    public void testTornTail_IsDropped() throws Exception {
+        log.enqueue(payload("000000000001"));
+        log.enqueue(payload("000000000002"));
+        log.close();
+
+        File file = new File(dir, "reversals.log");
+        long intact = file.length();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 }); // Record cut short by a crash
+        }
+
+        log = new ReversalLog(dir);
+        assertEquals(2, log.size());
+        assertEquals(intact, file.length());
+
+        log.enqueue(payload("000000000003"));
+        reopen();
+        assertEquals(3, log.size());
+    }
+
+    @Test
+    public void testCorruptRecord_StopsReplay() throws Exception {
+        log.enqueue(payload("000000000001"));
+        long recordBytes = new File(dir, "reversals.log").length();
+        log.enqueue(payload("000000000002"));
+        log.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, "reversals.log"), "rw")) {
+            raf.seek(recordBytes + 20);
+            raf.write('X');
+        }
+
+        log = new ReversalLog(dir);
+        assertEquals(1, log.size());
+        assertEquals("000000000001", rrn(log.peek()));
+    }
+
+    @Test
+    public void testAckLast_EmptiesFile() throws Exception {
+        long id = log.enqueue(payload("000000000001"));
+        log.ack(id);
+
+        assertEquals(0, new File(dir, "reversals.log").length());
+        reopen();
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testCompaction_KeepsLiveEntries() throws Exception {
+        long keep = log.enqueue(payload("000000000000"));
+        log.retry(keep, 42L);
+        // Churn through enough entries to make the log mostly dead records
+        for (int i = 1; i <= 2000; i++) {
+            long id = log.enqueue(payload(String.format("%012d", i)));
+            log.ack(id);
+        }
+
+        assertTrue(log.fileBytes() < 64 * 1024);
+        reopen();
+        assertEquals(1, log.size());
+        assertEquals(keep, log.peek().id);
+        assertEquals(1, log.peek().attempts());
+        assertEquals(42L, log.peek().nextAttemptAt());
+    }
+
+    @Test
+    public void testConcurrentEnqueue_AllDurable() throws Exception {
+        int threads = 4;
+        int perThread = 50;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        log.enqueue(payload(String.format("%012d", base + i)));
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        reopen();
+        assertEquals(threads * perThread, log.size());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        log.enqueue(payload("000000000001"));
+        log.enqueue(payload("000000000002"));
+
+        assertEquals(2, log.clear());
+        reopen();
+        assertEquals(0, log.size());
+        assertNull(log.peek());
+    }
+}
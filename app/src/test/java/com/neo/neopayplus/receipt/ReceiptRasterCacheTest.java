@@ -0,0 +1,61 @@
+package com.neo.neopayplus.receipt;
+
+import android.graphics.Bitmap;
+
+import com.neo.neopayplus.TestApplication;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ReceiptRasterCache header eviction (memory only: no init())
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = TestApplication.class)
+public class ReceiptRasterCacheTest {
+
+    private static final int WIDTH = 384;
+
+    @Before
+    public void setUp() {
+        ReceiptRasterCache.INSTANCE.clear();
+    }
+
+    /**
+     * Text-only header block (the logo assets do not exist, so only the name is drawn)
+     */
+    private static Bitmap header(String merchantName) {
+        Bitmap bitmap = ReceiptRasterCache.INSTANCE.header(
+                new ReceiptLine.Header("missing-left.png", "missing-right.png", merchantName, null), WIDTH);
+        assertNotNull(bitmap);
+        return bitmap;
+    }
+
+    @Test
+    public void testHeader_CachedByKey() {
+        Bitmap first = header("MERCHANT A");
+
+        assertSame(first, header("MERCHANT A"));
+        assertNotSame(first, header("MERCHANT B"));
+    }
+
+    @Test
+    public void testHeader_RecentlyUsedSurvivesEviction() {
+        Bitmap usual = header("MERCHANT A");
+        Bitmap second = header("MERCHANT B");
+        header("MERCHANT C");
+        header("MERCHANT D");
+
+        // Printed again just before a fifth header arrives: B is now the least recently used
+        assertSame(usual, header("MERCHANT A"));
+        header("MERCHANT E");
+
+        assertSame(usual, header("MERCHANT A"));
+        assertNotSame(second, header("MERCHANT B"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.neo.neopayplus.security;
+
+import com.neo.neopayplus.utils.ByteUtil;
+import com.neo.neopayplus.utils.CMacUtil;
+import com.neo.neopayplus.utils.DesAesUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for CryptoEngine
+ *
+ * Known-answer vectors from NIST SP 800-38B (D.1 AES-128, D.4 three-key
+ * TDEA) and FIPS-197, plus the CMacUtil / DesAesUtil wrappers.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CryptoEngineTest {
+
+    private static final String AES_KEY = "2B7E151628AED2A6ABF7158809CF4F3C";
+    private static final String TDES_KEY = "8AA83BF8CBDA10620BC1BF19FBB6CD58BC313D4A371CA8B5";
+    private static final String MESSAGE = "6BC1BEE22E409F96E93D7E117393172A"
+            + "AE2D8A571E03AC9C9EB76FAC45AF8E51"
+            + "30C81C46A35CE411E5FBC1191A0A52EF"
+            + "F69F2445DF4F9B17AD2B417BE66C3710";
+
+    @Test
+    public void testAesCmac_Sp800_38bVectors() {
+        CryptoEngine.Key key = CryptoEngine.aes(bytes(AES_KEY));
+
+        assertEquals("BB1D6929E95937287FA37D129B756746", hex(key.cmac(message(0))));
+        assertEquals("070A16B46B4D4144F79BDD9DD04A287C", hex(key.cmac(message(16))));
+        assertEquals("DFA66747DE9AE63030CA32611497C827", hex(key.cmac(message(40))));
+        assertEquals("51F0BEBF7E3B9D92FC49741779363CFE", hex(key.cmac(message(64))));
+    }
+
+    @Test
+    public void testTdesCmac_Sp800_38bVectors() {
+        CryptoEngine.Key key = CryptoEngine.tdes(bytes(TDES_KEY));
+
+        assertEquals("B7A688E122FFAF95", hex(key.cmac(message(0))));
+        assertEquals("8E8F293136283797", hex(key.cmac(message(8))));
+        assertEquals("743DDBE0CE2DC2ED", hex(key.cmac(message(20))));
+        assertEquals("33E6B1092400EAE5", hex(key.cmac(message(32))));
+    }
+
+    @Test
+    public void testCmac_SubkeysMatchSp800_38b() {
+        byte[] l = CryptoEngine.aes(bytes(AES_KEY)).encrypt(new byte[16]);
+        byte[] k1 = CryptoEngine.doubleBlock(l, 0x87);
+
+        assertEquals("7DF76B0C1AB899B33E42F047B91B546F", hex(l));
+        assertEquals("FBEED618357133667C85E08F7236A8DE", hex(k1));
+        assertEquals("F7DDAC306AE266CCF90BC11EE46D513B", hex(CryptoEngine.doubleBlock(k1, 0x87)));
+    }
+
+    @Test
+    public void testCmac_IncrementalMatchesOneShot() {
+        CryptoEngine.Key key = CryptoEngine.aes(bytes(AES_KEY));
+        byte[] data = message(64);
+        for (int length = 0; length <= data.length; length++) {
+            byte[] expected = key.cmac(data, 0, length);
+            for (int split = 0; split <= length; split++) {
+                CryptoEngine.Cmac cmac = key.cmac();
+                cmac.update(data, 0, split);
+                cmac.update(data, split, length - split);
+                assertArrayEquals("length " + length + " split " + split, expected, cmac.doFinal());
+            }
+        }
+    }
+
+    @Test
+    public void testCmac_WritesIntoCallerBuffer() {
+        CryptoEngine.Key key = CryptoEngine.aes(bytes(AES_KEY));
+        byte[] frame = Arrays.copyOf(message(40), 40 + 16);
+
+        key.cmac(frame, 0, 40, frame, 40);
+
+        assertEquals("DFA66747DE9AE63030CA32611497C827", hex(Arrays.copyOfRange(frame, 40, 56)));
+        assertArrayEquals(message(40), Arrays.copyOf(frame, 40));
+    }
+
+    @Test
+    public void testEcb_KnownAnswers() {
+        // FIPS-197 C.1
+        CryptoEngine.Key aes = CryptoEngine.aes(bytes("000102030405060708090A0B0C0D0E0F"));
+        byte[] ct = aes.encrypt(bytes("00112233445566778899AABBCCDDEEFF"));
+        assertEquals("69C4E0D86A7B0430D8CDB78070B4C55A", hex(ct));
+        assertEquals("00112233445566778899AABBCCDDEEFF", hex(aes.decrypt(ct)));
+
+        // K1 = K2 = K3 degrades to single DES: "Now is t" under 0123456789ABCDEF
+        byte[] des = CryptoEngine.tdes(bytes("0123456789ABCDEF0123456789ABCDEF")).encrypt(bytes("4E6F772069732074"));
+        assertEquals("3FA40E8A984D4815", hex(des));
+    }
+
+    @Test
+    public void testKeys_CachedByValueAndDoubleLengthExpanded() {
+        byte[] material = bytes("0123456789ABCDEFFEDCBA9876543210");
+        byte[] same = material.clone();
+        CryptoEngine.Key first = CryptoEngine.tdes(material);
+        Arrays.fill(material, (byte) 0); // The cache keeps its own copy
+
+        assertSame(first, CryptoEngine.tdes(same));
+        byte[] triple = bytes("0123456789ABCDEFFEDCBA98765432100123456789ABCDEF");
+        byte[] block = bytes("1122334455667788");
+        assertArrayEquals(CryptoEngine.tdes(triple).encrypt(block), first.encrypt(block));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeys_RejectsBadLength() {
+        CryptoEngine.aes(new byte[10]);
+    }
+
+    @Test
+    public void testWrappers_DelegateToEngine() {
+        byte[] key = bytes(AES_KEY);
+
+        assertEquals("DFA66747DE9AE63030CA32611497C827", hex(CMacUtil.calcMac(key, new byte[16], message(40))));
+        assertArrayEquals(CryptoEngine.aes(key).encrypt(message(32)), DesAesUtil.aseEncrypt(key, message(32)));
+        assertArrayEquals(message(32), DesAesUtil.aseDecrypt(key, DesAesUtil.aseEncrypt(key, message(32))));
+        assertArrayEquals(message(16), DesAesUtil.desDecrypt(bytes(TDES_KEY),
+                DesAesUtil.desEncrypt(bytes(TDES_KEY), message(16))));
+        // Not a whole number of blocks: the wrappers keep returning null
+        assertNull(DesAesUtil.aseEncrypt(key, message(20)));
+    }
+
+    @Test
+    public void testCachedKey_ReusesPerThreadCmac() throws Exception {
+        byte[] key = bytes(AES_KEY);
+        byte[] data = message(64);
+        CryptoEngine.Key cached = CryptoEngine.aes(key);
+
+        // One CMAC (and its initialized cipher) per thread, handed out again on every call
+        CryptoEngine.Cmac mac = cached.cmac();
+        assertSame(mac, cached.cmac());
+        CryptoEngine.Cmac other = CompletableFuture.supplyAsync(cached::cmac).get(5, TimeUnit.SECONDS);
+        assertNotSame(mac, other);
+
+        byte[] out = new byte[16];
+        cached.cmac(data, 0, data.length, out, 0);
+        cached.cmac(data, 0, data.length, out, 0);
+        assertArrayEquals(perCallCmac(key, data), out);
+    }
+
+    @Test
+    public void testKeys_CacheKeepsMostRecentlyUsed() {
+        CryptoEngine.clear();
+        CryptoEngine.Key first = CryptoEngine.aes(new byte[16]);
+        CryptoEngine.Key second = CryptoEngine.aes(bytes(AES_KEY));
+        for (int i = 1; i < CryptoEngine.CACHE_SIZE; i++) {
+            byte[] key = new byte[16];
+            key[0] = (byte) i;
+            CryptoEngine.aes(key);
+            assertSame(first, CryptoEngine.aes(new byte[16])); // Used again: stays the newest
+        }
+
+        assertSame(first, CryptoEngine.aes(new byte[16]));
+        assertNotSame(second, CryptoEngine.aes(bytes(AES_KEY)));
+    }
+
+    /**
+     * What CMacUtil used to do per MAC: new ciphers for the subkeys and the
+     * CBC pass, with copies of the message
+     */
+    private static byte[] perCallCmac(byte[] key, byte[] data) throws Exception {
+        SecretKeySpec spec = new SecretKeySpec(key, "AES");
+        Cipher subkeys = Cipher.getInstance("AES/CBC/NoPadding");
+        subkeys.init(Cipher.ENCRYPT_MODE, spec, new IvParameterSpec(new byte[16]));
+        byte[] k1 = CryptoEngine.doubleBlock(subkeys.doFinal(new byte[16]), 0x87);
+        byte[] last = Arrays.copyOfRange(data, data.length - 16, data.length);
+        for (int i = 0; i < 16; i++) {
+            last[i] ^= k1[i];
+        }
+        byte[] chained = Arrays.copyOf(data, data.length);
+        System.arraycopy(last, 0, chained, data.length - 16, 16);
+        Cipher cbc = Cipher.getInstance("AES/CBC/NoPadding");
+        cbc.init(Cipher.ENCRYPT_MODE, spec, new IvParameterSpec(new byte[16]));
+        byte[] ct = cbc.doFinal(chained);
+        return Arrays.copyOfRange(ct, ct.length - 16, ct.length);
+    }
+
+    private static byte[] message(int length) {
+        return Arrays.copyOf(bytes(MESSAGE), length);
+    }
+
+    private static byte[] bytes(String hex) {
+        return ByteUtil.hexStr2Bytes(hex);
+    }
+
+    private static String hex(byte[] bytes) {
+        return ByteUtil.bytes2HexStr(bytes);
+    }
+}
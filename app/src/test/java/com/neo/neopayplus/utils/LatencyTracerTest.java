@@ -0,0 +1,141 @@
+package com.neo.neopayplus.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for LatencyHistogram and LatencyTracer
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LatencyTracerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testHistogram_BucketsAreContiguous() {
+        int previous = -1;
+        for (long v = 0; v < 1 << 20; v++) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue("bucket went backwards at " + v, bucket >= previous);
+            assertTrue(v <= LatencyHistogram.highestInBucket(bucket));
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE,
+                LatencyHistogram.highestInBucket(LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE)));
+    }
+
+    @Test
+    public void testHistogram_Percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v);
+        }
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000, histogram.max());
+        assertEquals(5_000, histogram.mean());
+        assertWithin(5_000, histogram.percentile(50));
+        assertWithin(9_500, histogram.percentile(95));
+        assertWithin(9_900, histogram.percentile(99));
+        assertEquals(10_000, histogram.percentile(100));
+        assertEquals(1, histogram.percentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void testHistogram_ClampsOutOfRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.percentile(100));
+    }
+
+    @Test
+    public void testHistogram_ConcurrentRecords() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(i % 1000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.count());
+        assertEquals(999, histogram.max());
+    }
+
+    @Test
+    public void testTracer_MilestonesAndWindowRollover() {
+        LatencyTracer tracer = new LatencyTracer(null, Runnable::run);
+        for (int i = 0; i < LatencyTracer.WINDOW_TRANSACTIONS; i++) {
+            tracer.record(LatencyTracer.Phase.HOST_ROUND_TRIP, 120_000_000L); // 120 ms
+            tracer.transactionDone();
+        }
+        // Window full: summarised into history, histograms reset
+        assertEquals(1, tracer.history().size());
+        LatencyTracer.PhaseStats stats = tracer.history().get(0).phases.get("host.round_trip");
+        assertEquals(LatencyTracer.WINDOW_TRANSACTIONS, stats.count);
+        assertWithin(120_000, stats.p99);
+        assertEquals(0, tracer.histogram(LatencyTracer.Phase.HOST_ROUND_TRIP).count());
+        assertTrue(tracer.summary().phases.isEmpty());
+    }
+
+    @Test
+    public void testTracer_PersistsAcrossRestart() throws Exception {
+        File file = new File(tmp.getRoot(), LatencyTracer.FILE_NAME);
+        LatencyTracer tracer = new LatencyTracer(file, Runnable::run);
+        tracer.record(LatencyTracer.Phase.RECEIPT_CUT, 40_000_000L);
+        tracer.transactionDone();
+        assertTrue(file.exists());
+        assertTrue(tracer.toJson().contains("receipt.cut"));
+        assertTrue(tracer.report().contains("receipt.cut"));
+
+        // The previous run's partial window comes back as history
+        LatencyTracer restarted = new LatencyTracer(file, Runnable::run);
+        assertEquals(1, restarted.history().size());
+        assertEquals(1, restarted.history().get(0).transactions);
+        assertWithin(40_000, restarted.history().get(0).phases.get("receipt.cut").p50);
+
+        // A corrupt file is ignored
+        java.nio.file.Files.write(file.toPath(), "{broken".getBytes());
+        assertTrue(new LatencyTracer(file, Runnable::run).history().isEmpty());
+    }
+
+    @Test
+    public void testSpan_RecordsIntoPhaseHistogram() {
+        LatencyHistogram histogram = LatencyTracer.get().histogram(LatencyTracer.Phase.HOST_PACK);
+        long before = histogram.count();
+
+        for (int i = 0; i < 3; i++) {
+            LatencyTracer.end(LatencyTracer.Phase.HOST_PACK, LatencyTracer.start());
+        }
+
+        assertEquals(before + 3, histogram.count());
+    }
+
+    /** Within the histogram's ~3% bucket resolution */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * 0.04);
+    }
+}
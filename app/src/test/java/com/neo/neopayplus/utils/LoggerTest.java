@@ -0,0 +1,141 @@
+package com.neo.neopayplus.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for Logger templates and levels and the LogSink ring buffer
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LoggerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final class CountingArg {
+        int rendered;
+
+        @Override
+        public String toString() {
+            rendered++;
+            return "arg";
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("a=1 b=2", Logger.format("a={} b={}", 2, 1, 2, null, null));
+        assertEquals("x null y", Logger.format("x {} y", 1, null, null, null, null));
+        assertEquals("1 2 3 4 5", Logger.format("{} {} {} {} {}", 5, null, null, null,
+                new Object[] { 1, 2, 3, 4, 5 }));
+        // Missing arguments keep the placeholder, extra ones are ignored
+        assertEquals("only 7 {}", Logger.format("only {} {}", 1, 7, null, null, null));
+        assertEquals("none", Logger.format("none", 2, 1, 2, null, null));
+    }
+
+    @Test
+    public void testDisabledLevel_DoesNotFormat() {
+        Logger logger = LogUtil.logger("test.disabled", "Test");
+        LogUtil.setLevel("test.disabled", LogUtil.WARN);
+        CountingArg arg = new CountingArg();
+
+        logger.d("value {}", arg);
+        logger.i("value {} {}", arg, arg);
+        assertEquals(0, arg.rendered);
+        assertFalse(logger.isDebug());
+
+        logger.w("value {}", arg);
+        assertEquals(1, arg.rendered);
+    }
+
+    @Test
+    public void testSubsystemLevels_AtRuntime() {
+        LogUtil.setLevel("test.early", LogUtil.ERROR); // Before the logger exists
+        Logger early = LogUtil.logger("test.early", "Test");
+        assertEquals(LogUtil.ERROR, early.level());
+        assertSame(early, LogUtil.logger("test.early", "Other"));
+
+        LogUtil.setLevel("test.early", LogUtil.DEBUG);
+        assertTrue(early.isLoggable(LogUtil.DEBUG));
+        assertEquals(Integer.valueOf(LogUtil.DEBUG), LogUtil.levels().get("test.early"));
+
+        assertEquals(LogUtil.DEFAULT_SUBSYSTEM_LEVEL, LogUtil.logger("test.default", "Test").level());
+    }
+
+    @Test
+    public void testSink_WritesAndRotatesFile() throws Exception {
+        LogSink sink = new LogSink(64, false);
+        File dir = new File(tmp.getRoot(), "logs");
+        sink.attachFile(dir);
+
+        sink.offer(LogUtil.ERROR, "Tag", "first line", null);
+        sink.offer(LogUtil.WARN, "Tag", "second line", new IllegalStateException("boom"));
+        assertTrue(sink.flush(2000));
+        String log = new String(Files.readAllBytes(new File(dir, LogSink.FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(log.contains("E/Tag"));
+        assertTrue(log.contains("first line"));
+        assertTrue(log.contains("W/Tag"));
+        assertTrue(log.contains("IllegalStateException: boom"));
+
+        // Past the size limit the file rolls over to app.log.1
+        char[] chunk = new char[1024];
+        java.util.Arrays.fill(chunk, 'x');
+        String big = new String(chunk);
+        for (int i = 0; i < LogSink.MAX_FILE_BYTES / 1024 + 8; i++) {
+            sink.offer(LogUtil.WARN, "Tag", big, null);
+            if (i % 32 == 0) {
+                assertTrue(sink.flush(2000));
+            }
+        }
+        assertTrue(sink.flush(2000));
+        assertTrue(new File(dir, LogSink.FILE_NAME + ".1").exists());
+        assertTrue(new File(dir, LogSink.FILE_NAME).length() < LogSink.MAX_FILE_BYTES);
+    }
+
+    @Test
+    public void testSink_FileKeepsWarningsAndMasksCardNumbers() throws Exception {
+        LogSink sink = new LogSink(64, false);
+        File dir = new File(tmp.getRoot(), "filtered");
+        sink.attachFile(dir);
+
+        sink.offer(LogUtil.DEBUG, "Tag", "debug detail", null);
+        sink.offer(LogUtil.INFO, "Tag", "info detail", null);
+        sink.offer(LogUtil.ERROR, "Tag", "card 4000001234567899 declined", null);
+        sink.offer(LogUtil.WARN, "Tag", "retrying", new IllegalStateException("pan 5100009876543210"));
+        assertTrue(sink.flush(2000));
+        String log = new String(Files.readAllBytes(new File(dir, LogSink.FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+        assertFalse(log.contains("debug detail"));
+        assertFalse(log.contains("info detail"));
+        assertTrue(log.contains("card 400000****7899 declined"));
+        assertTrue(log.contains("pan 510000****3210"));
+        assertFalse(log.contains("4000001234567899"));
+        assertFalse(log.contains("5100009876543210"));
+    }
+
+    @Test
+    public void testSink_FullBufferDropsInsteadOfBlocking() throws Exception {
+        LogSink sink = new LogSink(4, false);
+        File dir = new File(tmp.getRoot(), "burst");
+        sink.attachFile(dir);
+        for (int i = 0; i < 10_000; i++) {
+            sink.offer(LogUtil.WARN, "Tag", "line " + i, null);
+        }
+        assertTrue(sink.flush(2000));
+        sink.offer(LogUtil.WARN, "Tag", "after burst", null);
+        assertTrue(sink.flush(2000));
+        String log = new String(Files.readAllBytes(new File(dir, LogSink.FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(log.contains("after burst"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.neo.neopayplus.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MonoRaster
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MonoRasterTest {
+
+    @Test
+    public void testThreshold_MatchesReceiptMonochromeRule() {
+        assertTrue(MonoRaster.isBlack(0xFF000000));
+        assertFalse(MonoRaster.isBlack(0xFFFFFFFF));
+        // Transparent is paper, whatever the colour
+        assertFalse(MonoRaster.isBlack(0x00000000));
+        assertFalse(MonoRaster.isBlack(0x7F000000));
+        assertTrue(MonoRaster.isBlack(0x80000000));
+        // Dark grey is black, light grey is white
+        assertTrue(MonoRaster.isBlack(0xFF606060));
+        assertFalse(MonoRaster.isBlack(0xFFA0A0A0));
+        // Pure red is dark (0.299 * 255 = 76), pure green is light (0.587 * 255 = 149)
+        assertTrue(MonoRaster.isBlack(0xFFFF0000));
+        assertFalse(MonoRaster.isBlack(0xFF00FF00));
+    }
+
+    @Test
+    public void testFromArgb_PacksRowsMsbFirst() {
+        int width = 10;
+        int[] pixels = new int[width * 2];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = MonoRaster.WHITE;
+        }
+        pixels[0] = MonoRaster.BLACK;
+        pixels[9] = MonoRaster.BLACK;
+        pixels[width + 8] = MonoRaster.BLACK;
+
+        MonoRaster raster = MonoRaster.fromArgb(pixels, width, 2);
+
+        assertEquals(2, raster.bytesPerRow());
+        assertTrue(raster.isBlack(0, 0));
+        assertTrue(raster.isBlack(9, 0));
+        assertFalse(raster.isBlack(8, 0));
+        assertTrue(raster.isBlack(8, 1));
+        assertArrayEquals(pixels, raster.toArgb());
+    }
+
+    @Test
+    public void testWriteRead_RoundTrip() throws IOException {
+        int width = 384;
+        int height = 37;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (i * 31 % 7 == 0) ? 0xFF202020 : 0x00000000;
+        }
+        MonoRaster raster = MonoRaster.fromArgb(pixels, width, height);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        raster.writeTo(new DataOutputStream(bytes));
+        MonoRaster read = MonoRaster.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(8 + 48 * height, bytes.size());
+        assertEquals(raster, read);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_RejectsForeignFile() throws IOException {
+        MonoRaster.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[] { 'P', 'N', 'G', 0, 0, 1, 0, 1 })));
+    }
+}